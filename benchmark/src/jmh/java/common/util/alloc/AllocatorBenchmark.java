@@ -0,0 +1,98 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package common.util.alloc;
+
+import net.daporkchop.fp2.common.util.alloc.Allocator;
+import net.daporkchop.fp2.common.util.alloc.SequentialSegregatedFitAllocator;
+import net.daporkchop.fp2.common.util.alloc.SequentialVariableSizedAllocator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the throughput of the variable-sized {@link Allocator} implementations under a steady-state workload of random frees and allocations, similar to
+ * the one generated by replacing baked tiles in the render index.
+ *
+ * @author DaPorkchop_
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AllocatorBenchmark {
+    @Param({ "SequentialVariableSizedAllocator", "SequentialSegregatedFitAllocator" })
+    public String allocator;
+
+    @Param({ "1024", "16384" })
+    public int liveAllocations;
+
+    @Param({ "64", "8192" })
+    public int maxSize;
+
+    protected Allocator alloc;
+    protected long[] addresses;
+
+    protected SplittableRandom random;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        Allocator.SequentialHeapManager manager = Allocator.SequentialHeapManager.unified(capacity -> {});
+        switch (this.allocator) {
+            case "SequentialVariableSizedAllocator":
+                this.alloc = new SequentialVariableSizedAllocator(1L, manager);
+                break;
+            case "SequentialSegregatedFitAllocator":
+                this.alloc = new SequentialSegregatedFitAllocator(1L, manager);
+                break;
+            default:
+                throw new IllegalArgumentException(this.allocator);
+        }
+
+        this.random = new SplittableRandom(1337L);
+
+        //fill the heap with the requested number of allocations
+        this.addresses = new long[this.liveAllocations];
+        for (int i = 0; i < this.liveAllocations; i++) {
+            this.addresses[i] = this.alloc.alloc(this.random.nextInt(1, this.maxSize + 1));
+        }
+    }
+
+    @Benchmark
+    public long replace() {
+        int i = this.random.nextInt(this.liveAllocations);
+        this.alloc.free(this.addresses[i]);
+        return this.addresses[i] = this.alloc.alloc(this.random.nextInt(1, this.maxSize + 1));
+    }
+}
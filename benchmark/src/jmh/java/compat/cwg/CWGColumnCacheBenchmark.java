@@ -0,0 +1,120 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package compat.cwg;
+
+import net.daporkchop.fp2.compat.cwg.CWGColumnCache;
+import net.daporkchop.fp2.compat.cwg.noise.CWGNoiseProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import static net.daporkchop.lib.common.math.PMath.*;
+
+/**
+ * Compares the cost of obtaining the 2D inputs for a column of vertically adjacent tiles with and without a {@link CWGColumnCache}.
+ * <p>
+ * Each operation produces the inputs for every tile in a single, previously unseen column. Without the cache, they are recomputed for every tile; with the
+ * cache, they are computed once and copied for every subsequent tile (as {@code CWGContext} does).
+ * <p>
+ * The inputs are generated using the raw pure-java noise functions rather than a {@link CWGNoiseProvider.Configured} instance, since creating one requires
+ * Minecraft to be bootstrapped. The relative cost of a cache hit vs. a miss is the same.
+ *
+ * @author DaPorkchop_
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CWGColumnCacheBenchmark {
+    protected static final int SIZE = 17; //the number of samples along each horizontal axis of a tile, including the extra edge sample
+    protected static final int OCTAVES = 16;
+    protected static final double FREQ = 1.0d / 200.0d;
+    protected static final int SEED = CWGNoiseProvider.packSeed(102978420983752L);
+
+    protected static void load(int baseX, int baseZ, int level, int size, int[] biomes, double[] heights, double[] variations, double[] depth) {
+        CWGNoiseProvider provider = CWGNoiseProvider.JAVA_INSTANCE;
+        double scale = CWGNoiseProvider.scale(OCTAVES);
+
+        provider.generate2d(depth, baseX, baseZ, level, FREQ, FREQ, size, size, SEED, OCTAVES, scale);
+        provider.generate2d(heights, baseX + 12345, baseZ - 6789, level, FREQ, FREQ, size, size, SEED, OCTAVES, scale);
+        provider.generate2d(variations, baseX - 2468, baseZ + 1357, level, FREQ, FREQ, size, size, SEED, OCTAVES, scale);
+        for (int i = 0; i < sq(size); i++) {
+            biomes[i] = (int) (Double.doubleToRawLongBits(depth[i]) & 0xFF);
+        }
+    }
+
+    @Param({ "1", "8", "32" })
+    public int tilesPerColumn;
+
+    protected CWGColumnCache cache;
+
+    protected int[] biomes;
+    protected double[] heights;
+    protected double[] variations;
+    protected double[] depth;
+
+    protected int column;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.cache = new CWGColumnCache(1024);
+
+        this.biomes = new int[sq(SIZE)];
+        this.heights = new double[sq(SIZE)];
+        this.variations = new double[sq(SIZE)];
+        this.depth = new double[sq(SIZE)];
+    }
+
+    @Benchmark
+    public double[] uncached() {
+        int baseX = this.column++ * (SIZE - 1);
+        for (int tile = 0; tile < this.tilesPerColumn; tile++) {
+            load(baseX, 0, 0, SIZE, this.biomes, this.heights, this.variations, this.depth);
+        }
+        return this.depth;
+    }
+
+    @Benchmark
+    public double[] cached() {
+        int baseX = this.column++ * (SIZE - 1);
+        for (int tile = 0; tile < this.tilesPerColumn; tile++) {
+            CWGColumnCache.Column cached = this.cache.get(baseX, 0, 0, SIZE, CWGColumnCacheBenchmark::load);
+            System.arraycopy(cached.biomes, 0, this.biomes, 0, this.biomes.length);
+            System.arraycopy(cached.heights, 0, this.heights, 0, this.heights.length);
+            System.arraycopy(cached.variations, 0, this.variations, 0, this.variations.length);
+            System.arraycopy(cached.depth, 0, this.depth, 0, this.depth.length);
+        }
+        return this.depth;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package compat.cwg.noise;
+
+import net.daporkchop.fp2.compat.cwg.noise.CWGNoiseProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of the pure-java {@link CWGNoiseProvider} implementation.
+ * <p>
+ * Only the raw noise generation methods are measured: {@link CWGNoiseProvider.Configured} instances are created from a CWG {@code CustomGeneratorSettings},
+ * which refers to block states and therefore requires Minecraft to be bootstrapped.
+ *
+ * @author DaPorkchop_
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JavaCWGNoiseProviderBenchmark {
+    protected static final int SIZE = 17; //the number of noise samples along each axis of a tile, including the extra edge sample
+    protected static final double FREQ = 1.0d / 684.412d;
+    protected static final int SEED = CWGNoiseProvider.packSeed(102978420983752L);
+
+    @Param({ "8", "16" })
+    public int octaves;
+
+    @Param({ "0", "4" })
+    public int level;
+
+    protected final CWGNoiseProvider provider = CWGNoiseProvider.JAVA_INSTANCE;
+
+    protected double[] out;
+    protected double scale;
+    protected int tile;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.out = new double[SIZE * SIZE * SIZE];
+        this.scale = CWGNoiseProvider.scale(this.octaves);
+    }
+
+    @Benchmark
+    public double[] generate3d() {
+        int base = (this.tile++ & 0xFF) * ((SIZE - 1) << this.level);
+        this.provider.generate3d(this.out, base, -base, base, this.level, FREQ, FREQ, FREQ, SIZE, SIZE, SIZE, SEED, this.octaves, this.scale);
+        return this.out;
+    }
+
+    @Benchmark
+    public double[] generate2d() {
+        int base = (this.tile++ & 0xFF) * ((SIZE - 1) << this.level);
+        this.provider.generate2d(this.out, base, -base, this.level, FREQ, FREQ, SIZE, SIZE, SEED, this.octaves, this.scale);
+        return this.out;
+    }
+
+    @Benchmark
+    public double generateSingle() {
+        int base = this.tile++ & 0xFFFF;
+        return this.provider.generateSingle(base, -base, base, FREQ, FREQ, FREQ, SEED, this.octaves, this.scale);
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package compat.vanilla.biome;
+
+import compat.vanilla.biome.layer.JavaFastLayerBenchmark;
+import net.daporkchop.fp2.compat.vanilla.biome.layer.CachingFastLayer;
+import net.daporkchop.fp2.compat.vanilla.biome.layer.IFastLayer;
+import net.daporkchop.lib.common.pool.array.ArrayAllocator;
+import net.daporkchop.lib.common.reference.ReferenceStrength;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks generating biomes for many adjacent tiles with and without {@link CachingFastLayer}s in front of the coarse layers.
+ * <p>
+ * Each invocation generates the (padded) biome grid for the next tile in a square area, walking along rows just like a player moving in a straight line
+ * would cause tiles to be generated. The layers are re-created for every iteration, so the caches start out cold.
+ * <p>
+ * The layers are the biome-free chain from {@link JavaFastLayerBenchmark}, so this runs without bootstrapping Minecraft.
+ *
+ * @author DaPorkchop_
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BiomeLayerCacheBenchmark {
+    protected static final int AREA_SHIFT = 6;
+    protected static final int AREA_MASK = (1 << AREA_SHIFT) - 1;
+
+    @Param({ "false", "true" })
+    public boolean cached;
+
+    @Param({ "16", "64" })
+    public int tileSize;
+
+    protected final ArrayAllocator<int[]> alloc = ArrayAllocator.pow2(int[]::new, ReferenceStrength.STRONG, 32);
+
+    protected IFastLayer layer;
+    protected int[] out;
+    protected int tile;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.out = new int[(this.tileSize + 2) * (this.tileSize + 2)];
+    }
+
+    @Setup(Level.Iteration)
+    public void createLayers() {
+        this.layer = JavaFastLayerBenchmark.createChain(this.cached);
+        this.tile = 0;
+    }
+
+    @Benchmark
+    public void adjacentTiles(Blackhole bh) {
+        int tile = this.tile++;
+        int tileX = (tile >> AREA_SHIFT) & AREA_MASK;
+        int tileZ = tile & AREA_MASK;
+
+        this.layer.getGrid(this.alloc, tileX * this.tileSize - 1, tileZ * this.tileSize - 1, this.tileSize + 2, this.tileSize + 2, this.out);
+        bh.consume(this.out);
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package compat.vanilla.biome.layer;
+
+import net.daporkchop.fp2.compat.vanilla.biome.layer.CachingFastLayer;
+import net.daporkchop.fp2.compat.vanilla.biome.layer.IFastLayer;
+import net.daporkchop.fp2.compat.vanilla.biome.layer.IZoomingLayer;
+import net.daporkchop.fp2.compat.vanilla.biome.layer.java.JavaFastLayerAddIsland;
+import net.daporkchop.fp2.compat.vanilla.biome.layer.java.JavaFastLayerFuzzyZoom;
+import net.daporkchop.fp2.compat.vanilla.biome.layer.java.JavaFastLayerIsland;
+import net.daporkchop.fp2.compat.vanilla.biome.layer.java.JavaFastLayerSmooth;
+import net.daporkchop.fp2.compat.vanilla.biome.layer.java.JavaFastLayerVoronoiZoom;
+import net.daporkchop.fp2.compat.vanilla.biome.layer.java.JavaFastLayerZoom;
+import net.daporkchop.lib.common.pool.array.ArrayAllocator;
+import net.daporkchop.lib.common.reference.ReferenceStrength;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of a chain of pure-java {@link IFastLayer}s, with and without {@link CachingFastLayer}s in front of the zooming layers' inputs.
+ * <p>
+ * The chain is assembled by hand instead of being converted from vanilla's {@code GenLayer}s, and only contains layers which don't look up any biomes.
+ * This means that it can be run without bootstrapping Minecraft, at the cost of being a less faithful reproduction of a real world's biome generation.
+ *
+ * @author DaPorkchop_
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JavaFastLayerBenchmark {
+    protected static final long SEED = 1234567890L;
+
+    /**
+     * Assembles the benchmarked chain of layers.
+     *
+     * @param cached whether or not to put a {@link CachingFastLayer} in front of each zooming layer's input
+     * @return the last layer in the chain
+     */
+    public static IFastLayer createChain(boolean cached) {
+        //roughly the start of vanilla's chain, without any of the layers that deal with actual biomes
+        IFastLayer layer = new JavaFastLayerIsland(SEED + 1L);
+        layer = link(new JavaFastLayerFuzzyZoom(SEED + 2000L), layer, cached);
+        layer = link(new JavaFastLayerAddIsland(SEED + 1L), layer, cached);
+        layer = link(new JavaFastLayerZoom(SEED + 2001L), layer, cached);
+        layer = link(new JavaFastLayerAddIsland(SEED + 2L), layer, cached);
+        layer = link(new JavaFastLayerAddIsland(SEED + 50L), layer, cached);
+        layer = link(new JavaFastLayerZoom(SEED + 1000L), layer, cached);
+        layer = link(new JavaFastLayerZoom(SEED + 1001L), layer, cached);
+        layer = link(new JavaFastLayerSmooth(SEED + 1000L), layer, cached);
+        return link(new JavaFastLayerVoronoiZoom(SEED + 10L), layer, cached);
+    }
+
+    protected static IFastLayer link(IFastLayer layer, IFastLayer child, boolean cached) {
+        if (cached && layer instanceof IZoomingLayer) {
+            child = new CachingFastLayer(child);
+        }
+        layer.init(new IFastLayer[]{ child });
+        return layer;
+    }
+
+    @Param({ "false", "true" })
+    public boolean cached;
+
+    @Param({ "16", "64" })
+    public int size;
+
+    protected final ArrayAllocator<int[]> alloc = ArrayAllocator.pow2(int[]::new, ReferenceStrength.STRONG, 32);
+
+    protected IFastLayer layer;
+    protected int[] out;
+    protected int tile;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        this.layer = createChain(this.cached);
+
+        this.out = new int[this.size * this.size];
+        this.tile = 0;
+    }
+
+    @Benchmark
+    public int[] getGrid() {
+        //walk along a line of adjacent grids, which is how tiles are usually requested when a player is exploring
+        int x = (this.tile++ & 0xFFFF) * this.size;
+        this.layer.getGrid(this.alloc, x, 0, this.size, this.size, this.out);
+        return this.out;
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package mode.common.client.bake.indexed;
+
+import net.daporkchop.fp2.gl.attribute.AttributeFormat;
+import net.daporkchop.fp2.gl.attribute.AttributeUsage;
+import net.daporkchop.fp2.gl.draw.index.IndexFormat;
+import net.daporkchop.fp2.gl.draw.index.IndexType;
+import net.daporkchop.fp2.gl.draw.index.IndexWriter;
+import net.daporkchop.fp2.gl.headless.GLAPIHeadless;
+import net.daporkchop.fp2.gl.opengl.OpenGL;
+import net.daporkchop.fp2.mode.common.client.bake.indexed.IndexedBakeOutput;
+import net.daporkchop.fp2.mode.common.client.bake.indexed.IndexedBakeOutputPool;
+import net.daporkchop.fp2.mode.voxel.client.struct.VoxelGlobalAttributes;
+import net.daporkchop.fp2.mode.voxel.client.struct.VoxelLocalAttributes;
+import net.daporkchop.lib.common.util.PArrays;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import util.HeadlessGL;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares filling freshly allocated {@link IndexedBakeOutput}s (as every bake used to do) against filling outputs from an {@link IndexedBakeOutputPool}
+ * using re-used attribute objects (as the bakers do now).
+ * <p>
+ * The actual bakers can't run here, as they need the block color registry and texture UVs from a running client, so each invocation writes the same
+ * amount of vertex and index data which a bake of a similar size would.
+ * <p>
+ * Run with {@code -prof gc} to see the allocation rate of each variant.
+ *
+ * @author DaPorkchop_
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BakeOutputBenchmark {
+    protected static final int PASSES = 3;
+
+    @Param({ "1024", "8192" })
+    public int vertices;
+
+    protected GLAPIHeadless api;
+    protected OpenGL gl;
+
+    protected AttributeFormat<VoxelGlobalAttributes> globalFormat;
+    protected AttributeFormat<VoxelLocalAttributes> vertexFormat;
+    protected IndexFormat indexFormat;
+
+    protected IndexedBakeOutputPool<VoxelGlobalAttributes, VoxelLocalAttributes> pool;
+
+    protected final VoxelGlobalAttributes globals = new VoxelGlobalAttributes();
+    protected final VoxelLocalAttributes attributes = new VoxelLocalAttributes();
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.api = new GLAPIHeadless();
+        this.gl = HeadlessGL.create(this.api);
+
+        this.globalFormat = this.gl.createAttributeFormat(VoxelGlobalAttributes.class).useFor(AttributeUsage.DRAW_GLOBAL).build();
+        this.vertexFormat = this.gl.createAttributeFormat(VoxelLocalAttributes.class).useFor(AttributeUsage.DRAW_LOCAL).build();
+        this.indexFormat = this.gl.createIndexFormat().type(IndexType.UNSIGNED_SHORT).build();
+
+        this.pool = new IndexedBakeOutputPool<>(this.globalFormat::createWriter, this.vertexFormat::createWriter, this.indexFormat::createWriter, PASSES, 4);
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        this.pool.close();
+        this.gl.close();
+        this.api.close();
+    }
+
+    @Benchmark
+    public int unpooled() {
+        IndexedBakeOutput<VoxelGlobalAttributes, VoxelLocalAttributes> output = new IndexedBakeOutput<>(this.globalFormat.createWriter(), this.vertexFormat.createWriter(),
+                PArrays.filledFrom(PASSES, IndexWriter[]::new, this.indexFormat::createWriter));
+        try {
+            output.globals().put(new VoxelGlobalAttributes(1, 2, 3, 0));
+            for (int v = 0; v < this.vertices; v++) {
+                output.verts().put(new VoxelLocalAttributes(v, -1, (byte) v, (byte) (v >> 4), (byte) (v >> 8)));
+            }
+            return this.writeIndices(output);
+        } finally {
+            output.release();
+        }
+    }
+
+    @Benchmark
+    public int pooled() {
+        IndexedBakeOutput<VoxelGlobalAttributes, VoxelLocalAttributes> output = this.pool.allocate();
+        try {
+            VoxelGlobalAttributes globals = this.globals;
+            globals.tilePosX = 1;
+            globals.tilePosY = 2;
+            globals.tilePosZ = 3;
+            globals.tilePosLevel = 0;
+            output.globals().put(globals);
+
+            VoxelLocalAttributes attributes = this.attributes;
+            for (int v = 0; v < this.vertices; v++) {
+                attributes.state = v;
+                attributes.color = -1;
+                attributes.posX = (byte) v;
+                attributes.posY = (byte) (v >> 4);
+                attributes.posZ = (byte) (v >> 8);
+                output.verts().put(attributes);
+            }
+            return this.writeIndices(output);
+        } finally {
+            output.release();
+        }
+    }
+
+    protected int writeIndices(IndexedBakeOutput<VoxelGlobalAttributes, VoxelLocalAttributes> output) {
+        IndexWriter[] indices = output.indices();
+        for (int v = 0; v + 4 <= this.vertices; v += 4) {
+            indices[(v >> 2) % PASSES].appendQuad(v, v + 1, v + 2, v + 3);
+        }
+        return indices[0].size();
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package mode.common.client.bake.indexed;
+
+import net.daporkchop.fp2.common.util.alloc.DirectMemoryAllocator;
+import net.daporkchop.fp2.debug.util.DebugStats;
+import net.daporkchop.fp2.gl.attribute.AttributeFormat;
+import net.daporkchop.fp2.gl.attribute.AttributeUsage;
+import net.daporkchop.fp2.gl.attribute.AttributeWriter;
+import net.daporkchop.fp2.gl.draw.index.IndexFormat;
+import net.daporkchop.fp2.gl.draw.index.IndexType;
+import net.daporkchop.fp2.gl.draw.index.IndexWriter;
+import net.daporkchop.fp2.gl.headless.GLAPIHeadless;
+import net.daporkchop.fp2.gl.opengl.OpenGL;
+import net.daporkchop.fp2.mode.common.client.bake.indexed.IndexedBakeOutput;
+import net.daporkchop.fp2.mode.common.client.bake.indexed.IndexedBakeOutputStorage;
+import net.daporkchop.fp2.mode.voxel.client.struct.VoxelGlobalAttributes;
+import net.daporkchop.fp2.mode.voxel.client.struct.VoxelLocalAttributes;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import util.HeadlessGL;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link IndexedBakeOutputStorage#add(IndexedBakeOutput)} and {@link IndexedBakeOutputStorage#delete(int)} against the headless OpenGL backend.
+ * <p>
+ * Each invocation replaces a random resident tile with a new bake output of a random size, which mimics the steady-state churn of the render index while the
+ * player is moving. The {@link Counters} report how much space is in use at the end of each iteration, which makes the effect of compaction on heap growth
+ * visible.
+ *
+ * @author DaPorkchop_
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IndexedBakeOutputStorageBenchmark {
+    protected static final int PASSES = 3;
+    protected static final int OUTPUTS = 64;
+
+    @Param({ "1024", "16384" })
+    public int residentTiles;
+
+    @Param({ "256", "4096" })
+    public int maxVertices;
+
+    @Param({ "0", "65536" })
+    public int compactionBudget;
+
+    protected GLAPIHeadless api;
+    protected OpenGL gl;
+
+    protected AttributeFormat<VoxelGlobalAttributes> globalFormat;
+    protected AttributeFormat<VoxelLocalAttributes> vertexFormat;
+    protected IndexFormat indexFormat;
+
+    protected IndexedBakeOutput<VoxelGlobalAttributes, VoxelLocalAttributes>[] outputs;
+    protected IndexedBakeOutputStorage<?, VoxelGlobalAttributes, VoxelLocalAttributes> storage;
+    protected int[] handles;
+
+    protected SplittableRandom random;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        this.api = new GLAPIHeadless();
+        this.gl = HeadlessGL.create(this.api);
+
+        this.globalFormat = this.gl.createAttributeFormat(VoxelGlobalAttributes.class).useFor(AttributeUsage.DRAW_GLOBAL).build();
+        this.vertexFormat = this.gl.createAttributeFormat(VoxelLocalAttributes.class).useFor(AttributeUsage.DRAW_LOCAL).build();
+        this.indexFormat = this.gl.createIndexFormat().type(IndexType.UNSIGNED_SHORT).build();
+
+        this.random = new SplittableRandom(1337L);
+
+        //pre-bake a fixed set of outputs with random sizes, these will be re-used for every insertion
+        this.outputs = new IndexedBakeOutput[OUTPUTS];
+        for (int i = 0; i < OUTPUTS; i++) {
+            AttributeWriter<VoxelGlobalAttributes> globals = this.globalFormat.createWriter();
+            globals.put(new VoxelGlobalAttributes(i, i, i, 0));
+
+            AttributeWriter<VoxelLocalAttributes> verts = this.vertexFormat.createWriter();
+            int vertexCount = this.random.nextInt(4, this.maxVertices + 1) & ~3;
+            for (int v = 0; v < vertexCount; v++) {
+                verts.put(new VoxelLocalAttributes(v, -1, (byte) v, (byte) (v >> 4), (byte) (v >> 8)));
+            }
+
+            IndexWriter[] indices = new IndexWriter[PASSES];
+            for (int pass = 0; pass < PASSES; pass++) {
+                indices[pass] = this.indexFormat.createWriter();
+                if (pass == 0 || this.random.nextBoolean()) {
+                    for (int v = 0; v < vertexCount; v += 4) {
+                        indices[pass].appendQuadAsTriangles(v, v + 1, v + 2, v + 3);
+                    }
+                }
+            }
+
+            this.outputs[i] = new IndexedBakeOutput<>(globals, verts, indices);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void fill() {
+        this.storage = new IndexedBakeOutputStorage<>(new DirectMemoryAllocator(), this.globalFormat, this.vertexFormat, this.indexFormat, PASSES, this.compactionBudget > 0);
+
+        this.handles = new int[this.residentTiles];
+        for (int i = 0; i < this.residentTiles; i++) {
+            this.handles[i] = this.storage.add(this.outputs[this.random.nextInt(OUTPUTS)]);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void drain(Counters counters) {
+        DebugStats.Renderer stats = this.storage.stats();
+        counters.allocatedVRAM = stats.allocatedVRAM();
+        counters.totalVRAM = stats.totalVRAM();
+
+        this.storage.release();
+        this.storage = null;
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        for (IndexedBakeOutput<?, ?> output : this.outputs) {
+            output.release();
+        }
+        this.gl.close();
+        this.api.close();
+    }
+
+    @Benchmark
+    public int replace(Counters counters) { //the counters are only set in drain(), but jmh only reports them if they're used by the benchmark method
+        int i = this.random.nextInt(this.residentTiles);
+        this.storage.delete(this.handles[i]);
+        this.handles[i] = this.storage.add(this.outputs[this.random.nextInt(OUTPUTS)]);
+
+        //simulate a frame's worth of defragmentation after each replacement
+        this.storage.compact(this.compactionBudget, handle -> {});
+        return this.handles[i];
+    }
+
+    /**
+     * Reports the amount of VRAM which is allocated by resident tiles and the total size of the storage's buffers.
+     *
+     * @author DaPorkchop_
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+        public long allocatedVRAM;
+        public long totalVRAM;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            this.allocatedVRAM = 0L;
+            this.totalVRAM = 0L;
+        }
+    }
+}
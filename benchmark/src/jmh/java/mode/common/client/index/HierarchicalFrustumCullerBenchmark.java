@@ -0,0 +1,224 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package mode.common.client.index;
+
+import net.daporkchop.fp2.client.gl.camera.Frustum;
+import net.daporkchop.fp2.mode.common.client.index.HierarchicalFrustumCuller;
+import net.daporkchop.fp2.mode.voxel.VoxelDirectPosAccess;
+import net.daporkchop.fp2.mode.voxel.VoxelPos;
+import net.daporkchop.lib.unsafe.PUnsafe;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.Math.*;
+
+/**
+ * Compares the cost of frustum culling every tile in a render index individually against {@link HierarchicalFrustumCuller}, both serially and in parallel.
+ * <p>
+ * Each operation culls all levels of a synthetic voxel render index against one of a fixed set of random frustums.
+ *
+ * @author DaPorkchop_
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HierarchicalFrustumCullerBenchmark {
+    protected static final int LEVELS = 6;
+    protected static final int RADIUS = 8;
+    protected static final int FRUSTUMS = 64;
+
+    protected static final VoxelDirectPosAccess ACCESS = VoxelDirectPosAccess.INSTANCE;
+
+    protected static Frustum randomFrustum(SplittableRandom r) {
+        //perspective projection
+        double fovy = toRadians(r.nextDouble(30.0d, 110.0d));
+        double aspect = r.nextDouble(0.5d, 2.5d);
+        double near = 0.05d;
+        double far = 1_000_000.0d;
+        double f = 1.0d / tan(fovy * 0.5d);
+
+        double[] projection = {
+                f / aspect, 0.0d, 0.0d, 0.0d,
+                0.0d, f, 0.0d, 0.0d,
+                0.0d, 0.0d, (far + near) / (near - far), -1.0d,
+                0.0d, 0.0d, 2.0d * far * near / (near - far), 0.0d
+        };
+
+        //rotation around the y axis, followed by rotation around the x axis
+        double yaw = r.nextDouble(0.0d, 2.0d * PI);
+        double pitch = r.nextDouble(-PI * 0.5d, PI * 0.5d);
+        double[] rotY = {
+                cos(yaw), 0.0d, -sin(yaw), 0.0d,
+                0.0d, 1.0d, 0.0d, 0.0d,
+                sin(yaw), 0.0d, cos(yaw), 0.0d,
+                0.0d, 0.0d, 0.0d, 1.0d
+        };
+        double[] rotX = {
+                1.0d, 0.0d, 0.0d, 0.0d,
+                0.0d, cos(pitch), sin(pitch), 0.0d,
+                0.0d, -sin(pitch), cos(pitch), 0.0d,
+                0.0d, 0.0d, 0.0d, 1.0d
+        };
+
+        Frustum frustum = new Frustum();
+        frustum.init(multiply(projection, multiply(rotX, rotY)));
+        frustum.setPosition(r.nextDouble(-256.0d, 256.0d), r.nextDouble(-256.0d, 256.0d), r.nextDouble(-256.0d, 256.0d));
+        return frustum;
+    }
+
+    protected static double[] multiply(double[] a, double[] b) {
+        double[] dst = new double[16];
+        for (int col = 0; col < 4; col++) {
+            for (int row = 0; row < 4; row++) {
+                double sum = 0.0d;
+                for (int i = 0; i < 4; i++) {
+                    sum += a[i * 4 + row] * b[col * 4 + i];
+                }
+                dst[col * 4 + row] = sum;
+            }
+        }
+        return dst;
+    }
+
+    protected final long[] positionsAddrs = new long[LEVELS];
+    protected final int[] counts = new int[LEVELS];
+
+    protected HierarchicalFrustumCuller<VoxelPos> serial;
+    protected HierarchicalFrustumCuller<VoxelPos> parallel;
+
+    protected Frustum[] frustums;
+    protected int frustum;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        SplittableRandom r = new SplittableRandom(42L);
+
+        List<Map<VoxelPos, Integer>> slots = new ArrayList<>();
+        for (int level = 0; level < LEVELS; level++) {
+            List<VoxelPos> positions = new ArrayList<>();
+            for (int x = -RADIUS; x < RADIUS; x++) {
+                for (int y = -RADIUS; y < RADIUS; y++) {
+                    for (int z = -RADIUS; z < RADIUS; z++) {
+                        positions.add(new VoxelPos(level, x, y, z));
+                    }
+                }
+            }
+
+            //assign slots in a random order, like a real render index would after a while
+            Collections.shuffle(positions, new Random(r.nextLong()));
+
+            long addr = this.positionsAddrs[level] = PUnsafe.allocateMemory(positions.size() * ACCESS.posSize());
+            Map<VoxelPos, Integer> levelSlots = new HashMap<>();
+            for (int slot = 0; slot < positions.size(); slot++) {
+                ACCESS.storePos(positions.get(slot), addr + slot * ACCESS.posSize());
+                levelSlots.put(positions.get(slot), slot);
+            }
+            this.counts[level] = positions.size();
+            slots.add(levelSlots);
+        }
+
+        this.serial = this.createCuller(slots, false);
+        this.parallel = this.createCuller(slots, true);
+
+        this.frustums = new Frustum[FRUSTUMS];
+        for (int i = 0; i < FRUSTUMS; i++) {
+            this.frustums[i] = randomFrustum(r);
+        }
+    }
+
+    protected HierarchicalFrustumCuller<VoxelPos> createCuller(List<Map<VoxelPos, Integer>> slots, boolean parallel) {
+        HierarchicalFrustumCuller<VoxelPos> culler = new HierarchicalFrustumCuller<>(ACCESS, LEVELS, parallel);
+        for (int level = 0; level < LEVELS; level++) {
+            culler.capacity(level, this.counts[level]);
+
+            Map<VoxelPos, Integer> parentSlots = level + 1 < LEVELS ? slots.get(level + 1) : Collections.emptyMap();
+            for (Map.Entry<VoxelPos, Integer> entry : slots.get(level).entrySet()) {
+                culler.occupy(level, entry.getValue(), parentSlots.getOrDefault(entry.getKey().up(), -1));
+            }
+        }
+        return culler;
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        for (long addr : this.positionsAddrs) {
+            PUnsafe.freeMemory(addr);
+        }
+    }
+
+    protected Frustum nextFrustum() {
+        return this.frustums[this.frustum++ & (FRUSTUMS - 1)];
+    }
+
+    @Benchmark
+    public int flat() {
+        Frustum frustum = this.nextFrustum();
+        int visible = 0;
+        for (int level = LEVELS - 1; level >= 0; level--) {
+            for (int slot = 0; slot < this.counts[level]; slot++) {
+                if (ACCESS.inFrustum(this.positionsAddrs[level] + slot * ACCESS.posSize(), frustum)) {
+                    visible++;
+                }
+            }
+        }
+        return visible;
+    }
+
+    @Benchmark
+    public HierarchicalFrustumCuller<VoxelPos> hierarchical() {
+        return this.cullAll(this.serial);
+    }
+
+    @Benchmark
+    public HierarchicalFrustumCuller<VoxelPos> hierarchicalParallel() {
+        return this.cullAll(this.parallel);
+    }
+
+    protected HierarchicalFrustumCuller<VoxelPos> cullAll(HierarchicalFrustumCuller<VoxelPos> culler) {
+        Frustum frustum = this.nextFrustum();
+        for (int level = LEVELS - 1; level >= 0; level--) {
+            culler.cull(level, this.positionsAddrs[level], frustum);
+        }
+        return culler;
+    }
+}
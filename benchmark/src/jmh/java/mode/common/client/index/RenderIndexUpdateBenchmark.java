@@ -0,0 +1,324 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package mode.common.client.index;
+
+import lombok.Getter;
+import lombok.NonNull;
+import net.daporkchop.fp2.client.gl.camera.IFrustum;
+import net.daporkchop.fp2.common.util.alloc.Allocator;
+import net.daporkchop.fp2.common.util.alloc.DirectMemoryAllocator;
+import net.daporkchop.fp2.gl.attribute.AttributeFormat;
+import net.daporkchop.fp2.gl.attribute.AttributeUsage;
+import net.daporkchop.fp2.gl.attribute.AttributeWriter;
+import net.daporkchop.fp2.gl.command.CommandBufferBuilder;
+import net.daporkchop.fp2.gl.draw.DrawLayout;
+import net.daporkchop.fp2.gl.draw.DrawMode;
+import net.daporkchop.fp2.gl.draw.binding.DrawBindingBuilder;
+import net.daporkchop.fp2.gl.draw.binding.DrawBindingIndexed;
+import net.daporkchop.fp2.gl.draw.index.IndexFormat;
+import net.daporkchop.fp2.gl.draw.index.IndexType;
+import net.daporkchop.fp2.gl.draw.index.IndexWriter;
+import net.daporkchop.fp2.gl.draw.list.DrawCommandIndexed;
+import net.daporkchop.fp2.gl.draw.list.DrawListBuilder;
+import net.daporkchop.fp2.gl.draw.list.selected.JavaSelectedDrawList;
+import net.daporkchop.fp2.gl.draw.shader.DrawShaderProgram;
+import net.daporkchop.fp2.gl.headless.GLAPIHeadless;
+import net.daporkchop.fp2.gl.opengl.OpenGL;
+import net.daporkchop.fp2.mode.api.IFarRenderMode;
+import net.daporkchop.fp2.mode.common.client.ICullingStrategy;
+import net.daporkchop.fp2.mode.common.client.bake.IBakeOutputStorage;
+import net.daporkchop.fp2.mode.common.client.bake.IRenderBaker;
+import net.daporkchop.fp2.mode.common.client.bake.indexed.IndexedBakeOutput;
+import net.daporkchop.fp2.mode.common.client.bake.indexed.IndexedBakeOutputStorage;
+import net.daporkchop.fp2.mode.common.client.index.AbstractRenderIndex;
+import net.daporkchop.fp2.mode.common.client.index.IRenderIndex;
+import net.daporkchop.fp2.mode.common.client.strategy.IFarRenderStrategy;
+import net.daporkchop.fp2.mode.voxel.VoxelDirectPosAccess;
+import net.daporkchop.fp2.mode.voxel.VoxelPos;
+import net.daporkchop.fp2.mode.voxel.VoxelTile;
+import net.daporkchop.fp2.mode.voxel.client.struct.VoxelGlobalAttributes;
+import net.daporkchop.fp2.mode.voxel.client.struct.VoxelLocalAttributes;
+import net.daporkchop.lib.common.misc.refcount.AbstractRefCounted;
+import net.daporkchop.lib.unsafe.util.exception.AlreadyReleasedException;
+import net.minecraft.util.BlockRenderLayer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import util.HeadlessGL;
+
+import java.lang.reflect.Proxy;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import static net.daporkchop.fp2.mode.common.client.RenderConstants.*;
+import static net.daporkchop.lib.common.util.PorkUtil.*;
+
+/**
+ * Benchmarks {@link AbstractRenderIndex#update(Iterable, Iterable)} against the headless OpenGL backend.
+ * <p>
+ * Each invocation applies one batch of data and renderability updates, similar to what the client applies after receiving tiles from the server. Batches
+ * contain a random mix of insertions, replacements and removals spread over the lowest few detail levels.
+ *
+ * @author DaPorkchop_
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderIndexUpdateBenchmark {
+    protected static final int LEVELS = 3;
+    protected static final int RADIUS = 8;
+    protected static final int OUTPUTS = 32;
+    protected static final int BATCHES = 64;
+
+    @Param({ "16", "256" })
+    public int batchSize;
+
+    protected GLAPIHeadless api;
+    protected BenchmarkRenderStrategy strategy;
+    protected IndexedBakeOutput<VoxelGlobalAttributes, VoxelLocalAttributes>[] outputs;
+
+    protected List<List<Map.Entry<VoxelPos, Optional<IndexedBakeOutput<VoxelGlobalAttributes, VoxelLocalAttributes>>>>> dataBatches;
+    protected List<List<Map.Entry<VoxelPos, Boolean>>> renderableBatches;
+    protected int batch;
+
+    protected BenchmarkRenderIndex index;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        this.api = new GLAPIHeadless();
+        this.strategy = new BenchmarkRenderStrategy(HeadlessGL.create(this.api));
+
+        SplittableRandom random = new SplittableRandom(1337L);
+
+        //pre-bake a fixed set of outputs, these will be re-used for every insertion
+        this.outputs = new IndexedBakeOutput[OUTPUTS];
+        for (int i = 0; i < OUTPUTS; i++) {
+            this.outputs[i] = this.strategy.createBakeOutput();
+            this.outputs[i].globals().put(new VoxelGlobalAttributes(i, i, i, 0));
+
+            int vertexCount = random.nextInt(1, 512) << 2;
+            for (int v = 0; v < vertexCount; v++) {
+                this.outputs[i].verts().put(new VoxelLocalAttributes(v, -1, (byte) v, (byte) (v >> 4), (byte) (v >> 8)));
+            }
+            for (int v = 0; v < vertexCount; v += 4) {
+                this.outputs[i].indices()[random.nextInt(RENDER_PASS_COUNT)].appendQuadAsTriangles(v, v + 1, v + 2, v + 3);
+            }
+        }
+
+        //generate update batches
+        this.dataBatches = new ArrayList<>(BATCHES);
+        this.renderableBatches = new ArrayList<>(BATCHES);
+        for (int i = 0; i < BATCHES; i++) {
+            List<Map.Entry<VoxelPos, Optional<IndexedBakeOutput<VoxelGlobalAttributes, VoxelLocalAttributes>>>> dataBatch = new ArrayList<>(this.batchSize);
+            List<Map.Entry<VoxelPos, Boolean>> renderableBatch = new ArrayList<>(this.batchSize);
+            for (int j = 0; j < this.batchSize; j++) {
+                VoxelPos pos = randomPos(random);
+                dataBatch.add(new AbstractMap.SimpleImmutableEntry<>(pos, random.nextInt(4) != 0
+                        ? Optional.of(this.outputs[random.nextInt(OUTPUTS)])
+                        : Optional.empty()));
+                renderableBatch.add(new AbstractMap.SimpleImmutableEntry<>(randomPos(random), random.nextBoolean()));
+            }
+            this.dataBatches.add(dataBatch);
+            this.renderableBatches.add(renderableBatch);
+        }
+    }
+
+    protected static VoxelPos randomPos(SplittableRandom random) {
+        return new VoxelPos(random.nextInt(LEVELS), random.nextInt(-RADIUS, RADIUS), random.nextInt(-RADIUS, RADIUS), random.nextInt(-RADIUS, RADIUS));
+    }
+
+    @Setup(Level.Iteration)
+    public void createIndex() {
+        this.index = new BenchmarkRenderIndex(this.strategy);
+        this.batch = 0;
+    }
+
+    @TearDown(Level.Iteration)
+    public void releaseIndex() {
+        this.index.release();
+        this.index = null;
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        for (IndexedBakeOutput<?, ?> output : this.outputs) {
+            output.release();
+        }
+        this.strategy.release();
+        this.api.close();
+    }
+
+    @Benchmark
+    public void update() {
+        int batch = this.batch++ & (BATCHES - 1);
+        this.index.update(this.dataBatches.get(batch), this.renderableBatches.get(batch));
+    }
+
+    /**
+     * Minimal {@link IFarRenderStrategy} which provides only what is needed for updating a render index.
+     *
+     * @author DaPorkchop_
+     */
+    @Getter
+    protected static class BenchmarkRenderStrategy extends AbstractRefCounted implements IFarRenderStrategy<VoxelPos, VoxelTile, IndexedBakeOutput<VoxelGlobalAttributes, VoxelLocalAttributes>, DrawBindingIndexed, DrawCommandIndexed> {
+        //the render index only ever uses the mode's direct position access, so there's no need to initialize the actual voxel render mode
+        protected final IFarRenderMode<VoxelPos, VoxelTile> mode = uncheckedCast(Proxy.newProxyInstance(IFarRenderMode.class.getClassLoader(), new Class[]{ IFarRenderMode.class }, (proxy, method, args) -> {
+            if ("directPosAccess".equals(method.getName())) {
+                return VoxelDirectPosAccess.INSTANCE;
+            }
+            throw new UnsupportedOperationException(method.toString());
+        }));
+        protected final OpenGL gl;
+
+        protected final AttributeFormat<VoxelGlobalAttributes> globalFormat;
+        protected final AttributeFormat<VoxelLocalAttributes> vertexFormat;
+        protected final IndexFormat indexFormat;
+        protected final DrawLayout drawLayout;
+
+        public BenchmarkRenderStrategy(@NonNull OpenGL gl) {
+            this.gl = gl;
+
+            this.globalFormat = gl.createAttributeFormat(VoxelGlobalAttributes.class).useFor(AttributeUsage.DRAW_GLOBAL).build();
+            this.vertexFormat = gl.createAttributeFormat(VoxelLocalAttributes.class).useFor(AttributeUsage.DRAW_LOCAL).build();
+            this.indexFormat = gl.createIndexFormat().type(IndexType.UNSIGNED_SHORT).build();
+
+            this.drawLayout = gl.createDrawLayout()
+                    .withGlobal(this.globalFormat)
+                    .withLocal(this.vertexFormat)
+                    .build();
+        }
+
+        @Override
+        public BenchmarkRenderStrategy retain() throws AlreadyReleasedException {
+            super.retain();
+            return this;
+        }
+
+        @Override
+        protected void doRelease() {
+            this.drawLayout.close();
+            this.gl.close();
+        }
+
+        @Override
+        public ICullingStrategy<VoxelPos> cullingStrategy() {
+            return null; //culling is never done
+        }
+
+        @Override
+        public IRenderIndex<VoxelPos, IndexedBakeOutput<VoxelGlobalAttributes, VoxelLocalAttributes>, DrawBindingIndexed, DrawCommandIndexed> createIndex() {
+            return new BenchmarkRenderIndex(this);
+        }
+
+        @Override
+        public IRenderBaker<VoxelPos, VoxelTile, IndexedBakeOutput<VoxelGlobalAttributes, VoxelLocalAttributes>> createBaker() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public IndexedBakeOutput<VoxelGlobalAttributes, VoxelLocalAttributes> createBakeOutput() {
+            IndexWriter[] indices = new IndexWriter[RENDER_PASS_COUNT];
+            for (int pass = 0; pass < RENDER_PASS_COUNT; pass++) {
+                indices[pass] = this.indexFormat.createWriter();
+            }
+            return new IndexedBakeOutput<>(this.globalFormat.createWriter(), this.vertexFormat.createWriter(), indices);
+        }
+
+        @Override
+        public IBakeOutputStorage<IndexedBakeOutput<VoxelGlobalAttributes, VoxelLocalAttributes>, DrawBindingIndexed, DrawCommandIndexed> createBakeOutputStorage() {
+            return new IndexedBakeOutputStorage<>(new DirectMemoryAllocator(), this.globalFormat, this.vertexFormat, this.indexFormat, RENDER_PASS_COUNT);
+        }
+
+        @Override
+        public DrawListBuilder<DrawCommandIndexed> createCommandBuffer(@NonNull DrawBindingIndexed binding) {
+            return this.gl.createDrawListIndexed(binding);
+        }
+
+        @Override
+        public DrawBindingBuilder<DrawBindingIndexed> configureDrawBinding(@NonNull DrawBindingBuilder<DrawBindingIndexed> builder) {
+            return builder;
+        }
+
+        @Override
+        public void render(@NonNull IRenderIndex<VoxelPos, IndexedBakeOutput<VoxelGlobalAttributes, VoxelLocalAttributes>, DrawBindingIndexed, DrawCommandIndexed> index, @NonNull BlockRenderLayer layer, boolean pre) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Render index which is never selected or drawn from.
+     *
+     * @author DaPorkchop_
+     */
+    protected static class BenchmarkRenderIndex extends AbstractRenderIndex<VoxelPos, IndexedBakeOutput<VoxelGlobalAttributes, VoxelLocalAttributes>, DrawBindingIndexed, DrawCommandIndexed, JavaSelectedDrawList<DrawCommandIndexed>> {
+        public BenchmarkRenderIndex(@NonNull BenchmarkRenderStrategy strategy) {
+            super(strategy);
+        }
+
+        @Override
+        protected AbstractRenderIndex<VoxelPos, IndexedBakeOutput<VoxelGlobalAttributes, VoxelLocalAttributes>, DrawBindingIndexed, DrawCommandIndexed, JavaSelectedDrawList<DrawCommandIndexed>>.Level createLevel(int level) {
+            return new Level(level);
+        }
+
+        /**
+         * @author DaPorkchop_
+         */
+        protected class Level extends AbstractRenderIndex<VoxelPos, IndexedBakeOutput<VoxelGlobalAttributes, VoxelLocalAttributes>, DrawBindingIndexed, DrawCommandIndexed, JavaSelectedDrawList<DrawCommandIndexed>>.Level {
+            public Level(int level) {
+                super(level, Allocator.GrowFunction.pow2(1L));
+            }
+
+            @Override
+            protected JavaSelectedDrawList<DrawCommandIndexed> buildCommandBuffer(@NonNull DrawListBuilder<DrawCommandIndexed> builder) {
+                return builder.buildJavaSelected();
+            }
+
+            @Override
+            protected void select0(@NonNull IFrustum frustum, float partialTicks) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            protected void draw(@NonNull CommandBufferBuilder builder, @NonNull DrawShaderProgram shader, @NonNull DrawMode mode, @NonNull JavaSelectedDrawList<DrawCommandIndexed> list, int pass) {
+                throw new UnsupportedOperationException();
+            }
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package mode.heightmap;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import net.daporkchop.fp2.mode.heightmap.HeightmapTile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import static net.daporkchop.fp2.mode.heightmap.HeightmapConstants.*;
+import static net.daporkchop.fp2.util.Constants.*;
+
+/**
+ * Measures the cost of scanning, serializing and deserializing a {@link HeightmapTile}.
+ * <p>
+ * {@link HeightmapTile#setLayer} and {@link HeightmapTile#getLayer} convert between block states/biomes and their registry ids, which would require
+ * Minecraft to be bootstrapped. Tiles are therefore filled by deserializing randomly generated raw tile data, and only the registry-independent accessors
+ * are measured.
+ *
+ * @author DaPorkchop_
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HeightmapTileBenchmark {
+    /**
+     * Fills the given {@link HeightmapTile} with random samples.
+     * <p>
+     * The default layer is always set, the water layer is set with the given probability.
+     *
+     * @param tile  the tile to fill
+     * @param r     the source of randomness to use
+     * @param water the probability of a sample having a water layer
+     */
+    public static void fillRandom(HeightmapTile tile, SplittableRandom r, double water) {
+        ByteBuf buf = Unpooled.buffer(HeightmapTile.TILE_SIZE_BYTES);
+        try {
+            int baseHeight = r.nextInt(-64, 256);
+            for (int i = 0; i < HeightmapTile.ENTRY_COUNT; i++) {
+                int flags = HeightmapTile.layerFlag(DEFAULT_LAYER);
+                if (r.nextDouble() < water) {
+                    flags |= HeightmapTile.layerFlag(WATER_LAYER);
+                }
+                buf.writeIntLE(flags);
+
+                for (int layer = 0; layer < MAX_LAYERS; layer++) {
+                    if ((flags & HeightmapTile.layerFlag(layer)) != 0) {
+                        buf.writeIntLE(baseHeight + r.nextInt(-8, 9)); //height_int
+                        buf.writeIntLE((r.nextInt(1 << 16) << 8) | r.nextInt(256)); //(state << 8) | height_frac
+                        buf.writeIntLE((DEFAULT_LAYER << 16) | (r.nextInt(16) << 8) | r.nextInt(256)); //(secondary_connection << 16) | (light << 8) | biome
+                    } else {
+                        buf.writeZero(HeightmapTile.LAYER_SIZE_BYTES);
+                    }
+                }
+            }
+            tile.read(buf);
+        } finally {
+            buf.release();
+        }
+    }
+
+    @Param({ "0.0", "0.5" })
+    public double water;
+
+    protected HeightmapTile tile;
+    protected HeightmapTile scratch;
+
+    protected ByteBuf encoded;
+    protected ByteBuf buf;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.tile = new HeightmapTile();
+        fillRandom(this.tile, new SplittableRandom(1337L), this.water);
+        this.scratch = new HeightmapTile();
+
+        this.encoded = Unpooled.directBuffer(HeightmapTile.TILE_SIZE_BYTES);
+        this.tile.write(this.encoded);
+        this.buf = Unpooled.directBuffer(HeightmapTile.TILE_SIZE_BYTES);
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        this.encoded.release();
+        this.buf.release();
+    }
+
+    @Benchmark
+    public double getLayerOnlyHeight() {
+        double sum = 0.0d;
+        for (int x = 0; x < T_VOXELS; x++) {
+            for (int z = 0; z < T_VOXELS; z++) {
+                for (int layer = 0; layer < MAX_LAYERS; layer++) {
+                    double height = this.tile.getLayerOnlyHeight(x, z, layer);
+                    if (!Double.isNaN(height)) {
+                        sum += height;
+                    }
+                }
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public HeightmapTile copyLayerTo() {
+        HeightmapTile dst = this.scratch;
+        dst.reset();
+        for (int x = 0; x < T_VOXELS; x++) {
+            for (int z = 0; z < T_VOXELS; z++) {
+                int flags = this.tile._getLayerFlags(x, z);
+                for (int layer = 0; layer < MAX_LAYERS; layer++) {
+                    if ((flags & HeightmapTile.layerFlag(layer)) != 0) {
+                        this.tile.copyLayerTo(x, z, layer, dst, x, z);
+                    }
+                }
+            }
+        }
+        return dst;
+    }
+
+    @Benchmark
+    public ByteBuf write() {
+        this.buf.clear();
+        this.tile.write(this.buf);
+        return this.buf;
+    }
+
+    @Benchmark
+    public HeightmapTile read() {
+        this.scratch.read(this.encoded.readerIndex(0));
+        return this.scratch;
+    }
+}
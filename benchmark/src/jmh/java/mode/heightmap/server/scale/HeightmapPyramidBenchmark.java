@@ -0,0 +1,189 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package mode.heightmap.server.scale;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import mode.heightmap.HeightmapTileBenchmark;
+import net.daporkchop.fp2.mode.heightmap.HeightmapPos;
+import net.daporkchop.fp2.mode.heightmap.HeightmapTile;
+import net.daporkchop.fp2.mode.heightmap.server.scale.HeightmapPyramidBuilder;
+import net.daporkchop.fp2.mode.heightmap.server.scale.HeightmapScalerMinMax;
+import net.daporkchop.fp2.util.SimpleRecycler;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares building a whole pyramid of heightmap tiles using {@link HeightmapPyramidBuilder} against the existing per-level scheduling, where every scale task
+ * reads its four inputs from storage, decodes them, scales them and encodes the result back into storage.
+ * <p>
+ * Storage is simulated by a {@link Map} of encoded tiles, so only the encoding and decoding costs are included (not RocksDB itself). The {@link Counters} report
+ * the number of output tiles per second and the number of bytes read from and written to storage.
+ *
+ * @author DaPorkchop_
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HeightmapPyramidBenchmark {
+    @Param({ "1", "3", "5" })
+    public int levels;
+
+    protected final HeightmapScalerMinMax scaler = new HeightmapScalerMinMax();
+    protected final HeightmapPyramidBuilder builder = new HeightmapPyramidBuilder(this.scaler);
+    protected final SimpleRecycler<HeightmapTile> recycler = new SimpleRecycler.OfReusablePersistent<>(HeightmapTile::new);
+
+    protected HeightmapPos root;
+    protected Map<HeightmapPos, byte[]> base;
+    protected Map<HeightmapPos, byte[]> storage;
+    protected ByteBuf buf;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.root = new HeightmapPos(this.levels, 0, 0);
+        this.base = new HashMap<>();
+        this.buf = Unpooled.buffer(HeightmapTile.TILE_SIZE_BYTES);
+
+        SplittableRandom r = new SplittableRandom(1337L);
+        HeightmapTile tile = new HeightmapTile();
+        for (int x = 0; x < 1 << this.levels; x++) {
+            for (int z = 0; z < 1 << this.levels; z++) {
+                tile.reset();
+                HeightmapTileBenchmark.fillRandom(tile, r, 0.25d);
+                this.base.put(new HeightmapPos(0, x, z), this.encode(tile));
+            }
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void reset() {
+        this.storage = new HashMap<>(this.base);
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        this.buf.release();
+    }
+
+    protected byte[] encode(HeightmapTile tile) {
+        this.buf.clear();
+        tile.write(this.buf);
+        return Arrays.copyOfRange(this.buf.array(), this.buf.arrayOffset(), this.buf.arrayOffset() + this.buf.writerIndex());
+    }
+
+    protected HeightmapTile load(HeightmapPos pos, Counters counters) {
+        byte[] bytes = this.storage.get(pos);
+        counters.bytesRead += bytes.length;
+
+        HeightmapTile tile = this.recycler.allocate();
+        tile.read(Unpooled.wrappedBuffer(bytes));
+        return tile;
+    }
+
+    protected void store(HeightmapPos pos, HeightmapTile tile, Counters counters) {
+        byte[] bytes = this.encode(tile);
+        this.storage.put(pos, bytes);
+        counters.tiles++;
+        counters.bytesWritten += bytes.length;
+    }
+
+    @Benchmark
+    public void perLevel(Counters counters) {
+        //each scale task loads its inputs, scales them and stores the result, one level at a time
+        HeightmapTile[] srcs = new HeightmapTile[4];
+        for (int level = 1; level <= this.levels; level++) {
+            for (int x = 0; x < 1 << (this.levels - level); x++) {
+                for (int z = 0; z < 1 << (this.levels - level); z++) {
+                    HeightmapPos pos = new HeightmapPos(level, x, z);
+
+                    HeightmapPos[] inputs = this.scaler.inputs(pos).toArray(HeightmapPos[]::new);
+                    for (int i = 0; i < 4; i++) {
+                        srcs[i] = this.load(inputs[i], counters);
+                    }
+
+                    HeightmapTile dst = this.recycler.allocate();
+                    this.scaler.scale(srcs, dst);
+                    this.store(pos, dst, counters);
+
+                    this.recycler.release(dst);
+                    for (HeightmapTile src : srcs) {
+                        this.recycler.release(src);
+                    }
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void pyramid(Counters counters) {
+        //load all the level-0 tiles up front (each is only needed once), then build and store the whole pyramid in one batch
+        Map<HeightmapPos, HeightmapTile> sources = new HashMap<>();
+        try {
+            Map<HeightmapPos, HeightmapTile> tiles = this.builder.build(this.root, pos -> sources.computeIfAbsent(pos, p -> this.load(p, counters)), this.recycler);
+            try {
+                tiles.forEach((pos, tile) -> this.store(pos, tile, counters));
+            } finally {
+                HeightmapPyramidBuilder.release(tiles, this.recycler);
+            }
+        } finally {
+            sources.values().forEach(this.recycler::release);
+        }
+    }
+
+    /**
+     * @author DaPorkchop_
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+        public long tiles;
+        public long bytesRead;
+        public long bytesWritten;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            this.tiles = 0L;
+            this.bytesRead = 0L;
+            this.bytesWritten = 0L;
+        }
+    }
+}
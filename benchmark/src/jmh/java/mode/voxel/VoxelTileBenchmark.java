@@ -0,0 +1,178 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package mode.voxel;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import net.daporkchop.fp2.mode.voxel.VoxelData;
+import net.daporkchop.fp2.mode.voxel.VoxelTile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import static net.daporkchop.fp2.mode.voxel.VoxelConstants.*;
+import static net.daporkchop.fp2.util.Constants.*;
+
+/**
+ * Measures the cost of filling, scanning, serializing and deserializing a {@link VoxelTile}.
+ * <p>
+ * This doesn't require Minecraft to be bootstrapped: voxel samples only contain raw block state and biome ids.
+ *
+ * @author DaPorkchop_
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VoxelTileBenchmark {
+    /**
+     * Fills the given {@link VoxelTile} with random samples.
+     *
+     * @param tile    the tile to fill
+     * @param r       the source of randomness to use
+     * @param density the fraction of voxels which should be set
+     */
+    public static void fillRandom(VoxelTile tile, SplittableRandom r, double density) {
+        VoxelData data = new VoxelData();
+        tile.reset();
+        for (int x = 0; x < T_VOXELS; x++) {
+            for (int y = 0; y < T_VOXELS; y++) {
+                for (int z = 0; z < T_VOXELS; z++) {
+                    if (r.nextDouble() < density) {
+                        tile.set(x, y, z, randomSample(r, data));
+                    }
+                }
+            }
+        }
+    }
+
+    protected static VoxelData randomSample(SplittableRandom r, VoxelData data) {
+        data.x = r.nextInt(POS_ONE + 1);
+        data.y = r.nextInt(POS_ONE + 1);
+        data.z = r.nextInt(POS_ONE + 1);
+        data.edges = r.nextInt(1 << (EDGE_COUNT << 1));
+        for (int edge = 0; edge < EDGE_COUNT; edge++) {
+            data.states[edge] = r.nextInt(1 << 16);
+        }
+        data.biome = r.nextInt(256);
+        data.light = r.nextInt(256);
+        return data;
+    }
+
+    @Param({ "0.1", "0.5", "1.0" })
+    public double density;
+
+    protected VoxelTile tile;
+    protected VoxelTile scratch;
+    protected final VoxelData data = new VoxelData();
+
+    protected int[] positions;
+    protected VoxelData[] samples;
+
+    protected ByteBuf encoded;
+    protected ByteBuf buf;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        SplittableRandom r = new SplittableRandom(1337L);
+
+        this.tile = new VoxelTile();
+        fillRandom(this.tile, r, this.density);
+        this.scratch = new VoxelTile();
+
+        //pre-generate the samples written by set(), so that we don't end up benchmarking the random number generator
+        int count = 0;
+        this.positions = new int[VoxelTile.ENTRY_COUNT];
+        this.samples = new VoxelData[VoxelTile.ENTRY_COUNT];
+        for (int i = 0; i < VoxelTile.ENTRY_COUNT; i++) {
+            if (r.nextDouble() < this.density) {
+                this.positions[count] = i;
+                this.samples[count++] = randomSample(r, new VoxelData());
+            }
+        }
+        this.positions = Arrays.copyOf(this.positions, count);
+
+        this.encoded = Unpooled.directBuffer();
+        this.tile.write(this.encoded);
+        this.buf = Unpooled.directBuffer(this.encoded.readableBytes());
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        this.encoded.release();
+        this.buf.release();
+    }
+
+    @Benchmark
+    public VoxelTile set() {
+        VoxelTile tile = this.scratch;
+        tile.reset();
+        for (int i = 0; i < this.positions.length; i++) {
+            int pos = this.positions[i];
+            tile.set(pos >> (T_SHIFT << 1), (pos >> T_SHIFT) & T_MASK, pos & T_MASK, this.samples[i]);
+        }
+        return tile;
+    }
+
+    @Benchmark
+    public int get() {
+        int sum = 0;
+        for (int x = 0; x < T_VOXELS; x++) {
+            for (int y = 0; y < T_VOXELS; y++) {
+                for (int z = 0; z < T_VOXELS; z++) {
+                    if (this.tile.get(x, y, z, this.data)) {
+                        sum += this.data.x + this.data.edges + this.data.states[0];
+                    }
+                }
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public ByteBuf write() {
+        this.buf.clear();
+        this.tile.write(this.buf);
+        return this.buf;
+    }
+
+    @Benchmark
+    public VoxelTile read() {
+        this.scratch.read(this.encoded.readerIndex(0));
+        return this.scratch;
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package mode.voxel.server.scale;
+
+import net.daporkchop.fp2.mode.voxel.VoxelData;
+import net.daporkchop.fp2.mode.voxel.VoxelTile;
+import net.daporkchop.fp2.mode.voxel.server.scale.VoxelScalerIntersection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.Math.*;
+import static net.daporkchop.fp2.mode.voxel.VoxelConstants.*;
+import static net.daporkchop.fp2.util.Constants.*;
+
+/**
+ * Measures the cost of scaling a neighborhood of {@link VoxelTile}s down into one using {@link VoxelScalerIntersection}.
+ * <p>
+ * The source tiles contain a single rolling surface, which is roughly what the scaler sees for most tiles in a real world.
+ *
+ * @author DaPorkchop_
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VoxelScalerIntersectionBenchmark {
+    /**
+     * The number of source tiles along each axis, as expected by {@link VoxelScalerIntersection#scale(VoxelTile[], VoxelTile)}.
+     */
+    protected static final int SRC_TILES = (((VoxelScalerIntersection.SRC_MAX - 1) >> T_SHIFT) + 1) - (VoxelScalerIntersection.SRC_MIN >> T_SHIFT);
+
+    @Param({ "2.0", "8.0" })
+    public double amplitude;
+
+    protected final VoxelScalerIntersection scaler = new VoxelScalerIntersection();
+
+    protected VoxelTile[] srcs;
+    protected VoxelTile dst;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        VoxelData data = new VoxelData();
+        data.x = data.y = data.z = POS_ONE >> 1;
+        data.edges = EDGE_DIR_POSITIVE << (1 << 1); //the surface always crosses the vertical edge
+        data.states[1] = 1;
+
+        this.srcs = new VoxelTile[SRC_TILES * SRC_TILES * SRC_TILES];
+        for (int tileX = 0, i = 0; tileX < SRC_TILES; tileX++) {
+            for (int tileY = 0; tileY < SRC_TILES; tileY++) {
+                for (int tileZ = 0; tileZ < SRC_TILES; tileZ++, i++) {
+                    VoxelTile tile = this.srcs[i] = new VoxelTile();
+
+                    //the first source tile is at -1 on all axes
+                    int baseX = (tileX - 1) << T_SHIFT;
+                    int baseY = (tileY - 1) << T_SHIFT;
+                    int baseZ = (tileZ - 1) << T_SHIFT;
+
+                    for (int x = 0; x < T_VOXELS; x++) {
+                        for (int z = 0; z < T_VOXELS; z++) {
+                            int y = (int) floor(T_VOXELS + this.amplitude * (sin((baseX + x) * 0.3d) + cos((baseZ + z) * 0.2d))) - baseY;
+                            if (y >= 0 && y < T_VOXELS) {
+                                tile.set(x, y, z, data);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        this.dst = new VoxelTile();
+    }
+
+    @Benchmark
+    public VoxelTile scale() {
+        this.dst.reset();
+        this.scaler.scale(this.srcs, this.dst);
+        return this.dst;
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package util.datastructure;
+
+import net.daporkchop.fp2.util.datastructure.java.ndimensionalintset.Int3HashSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of {@link Int3HashSet} queries and updates.
+ * <p>
+ * The set is filled with a cube of points centered on the origin, and half of the queried points lie outside of it.
+ *
+ * @author DaPorkchop_
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Int3HashSetBenchmark {
+    protected static final int QUERIES = 1 << 16;
+
+    @Param({ "8", "32" })
+    public int radius;
+
+    protected Int3HashSet set;
+    protected int[] queries; //x, y, z
+    protected int query;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        this.set = new Int3HashSet();
+        for (int x = -this.radius; x < this.radius; x++) {
+            for (int y = -this.radius; y < this.radius; y++) {
+                for (int z = -this.radius; z < this.radius; z++) {
+                    this.set.add(x, y, z);
+                }
+            }
+        }
+
+        SplittableRandom r = new SplittableRandom(1337L);
+        this.queries = new int[QUERIES * 3];
+        for (int i = 0; i < QUERIES * 3; i += 3) {
+            this.queries[i + 0] = r.nextInt(-this.radius, this.radius);
+            this.queries[i + 1] = r.nextInt(-this.radius, this.radius);
+            this.queries[i + 2] = r.nextInt(-this.radius, this.radius);
+            if (r.nextBoolean()) { //move the point outside of the filled volume
+                this.queries[i + r.nextInt(3)] += r.nextBoolean() ? this.radius << 1 : -(this.radius << 1);
+            }
+        }
+        this.query = 0;
+    }
+
+    @TearDown(Level.Iteration)
+    public void teardown() {
+        this.set.release();
+    }
+
+    protected int nextQuery() {
+        return (this.query = (this.query + 1) & (QUERIES - 1)) * 3;
+    }
+
+    @Benchmark
+    public boolean contains() {
+        int i = this.nextQuery();
+        return this.set.contains(this.queries[i], this.queries[i + 1], this.queries[i + 2]);
+    }
+
+    @Benchmark
+    public boolean removeAdd() {
+        //toggle a point twice, so that the set's contents don't change over the course of an iteration
+        int i = this.nextQuery();
+        int x = this.queries[i];
+        int y = this.queries[i + 1];
+        int z = this.queries[i + 2];
+        if (this.set.remove(x, y, z)) {
+            return this.set.add(x, y, z);
+        } else {
+            return this.set.add(x, y, z) & this.set.remove(x, y, z);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package util.datastructure;
+
+import lombok.SneakyThrows;
+import net.daporkchop.fp2.util.datastructure.Datastructures;
+import net.daporkchop.fp2.util.datastructure.NDimensionalIntSegtreeSet;
+import net.daporkchop.fp2.util.datastructure.java.ndimensionalintsegtree.BitmapNDimensionalIntSegtreeSet;
+import net.daporkchop.fp2.util.datastructure.java.ndimensionalintsegtree.JavaNDimensionalIntSegtreeSet;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Field;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the memory usage and query throughput of {@link JavaNDimensionalIntSegtreeSet} and {@link BitmapNDimensionalIntSegtreeSet}.
+ * <p>
+ * The sets are filled with the cubes of a roughly circular explored area, with columns of cubes of random height and the occasional missing cube, which is
+ * what an existence cache for a cubic chunks world typically contains. The memory usage of each set is reported by the {@link Counters} at the end of every
+ * iteration.
+ *
+ * @author DaPorkchop_
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NDimensionalIntSegtreeSetBenchmark {
+    protected static final int QUERIES = 1 << 16;
+
+    @Param({ "java", "bitmap" })
+    public String implementation;
+
+    @Param({ "64", "256" })
+    public int radius;
+
+    protected NDimensionalIntSegtreeSet set;
+    protected int[][] queries;
+    protected int[] queryShifts;
+    protected int query;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.set = this.createSet();
+
+        SplittableRandom r = new SplittableRandom(1337L);
+        for (int x = -this.radius; x <= this.radius; x++) {
+            for (int z = -this.radius; z <= this.radius; z++) {
+                if (x * x + z * z > this.radius * this.radius) {
+                    continue;
+                }
+
+                int height = r.nextInt(4, 16);
+                for (int y = -4; y < height; y++) {
+                    if (r.nextInt(32) != 0) {
+                        this.set.add(x, y, z);
+                    }
+                }
+            }
+        }
+
+        //random tile queries at all detail levels, around half of which will be outside of the explored area
+        this.queries = new int[QUERIES][];
+        this.queryShifts = new int[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            int shift = r.nextInt(0, 20);
+            this.queryShifts[i] = shift;
+            this.queries[i] = new int[]{
+                    r.nextInt(-this.radius * 2, this.radius * 2) >> shift,
+                    r.nextInt(-8, 24) >> shift,
+                    r.nextInt(-this.radius * 2, this.radius * 2) >> shift
+            };
+        }
+    }
+
+    protected NDimensionalIntSegtreeSet createSet() {
+        switch (this.implementation) {
+            case "java":
+                return new JavaNDimensionalIntSegtreeSet(3, Datastructures.INSTANCE);
+            case "bitmap":
+                return new BitmapNDimensionalIntSegtreeSet(3);
+            default:
+                throw new IllegalArgumentException(this.implementation);
+        }
+    }
+
+    @SneakyThrows(ReflectiveOperationException.class)
+    protected long memoryUsage() {
+        if (this.set instanceof BitmapNDimensionalIntSegtreeSet) {
+            return ((BitmapNDimensionalIntSegtreeSet) this.set).memoryUsage();
+        }
+
+        //the java implementation stores everything off-heap in Int3HashSets, sum up the size of their tables
+        Field delegatesField = JavaNDimensionalIntSegtreeSet.class.getDeclaredField("delegates");
+        delegatesField.setAccessible(true);
+        long total = 0L;
+        for (Object delegate : (Object[]) delegatesField.get(this.set)) {
+            Field tableSizeField = delegate.getClass().getDeclaredField("tableSize");
+            Field bucketBytesField = delegate.getClass().getDeclaredField("BUCKET_BYTES");
+            tableSizeField.setAccessible(true);
+            bucketBytesField.setAccessible(true);
+            total += tableSizeField.getLong(delegate) * bucketBytesField.getLong(null);
+        }
+        return total;
+    }
+
+    @TearDown(Level.Iteration)
+    public void report(Counters counters) {
+        counters.cubes = this.set.count();
+        counters.memoryUsage = this.memoryUsage();
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        this.set.release();
+    }
+
+    @Benchmark
+    public boolean containsAny(Counters counters) { //the counters are only set in report(), but jmh only reports them if they're used by the benchmark method
+        int i = this.query++ & (QUERIES - 1);
+        int[] point = this.queries[i];
+        return this.set.containsAny(this.queryShifts[i], point[0], point[1], point[2]);
+    }
+
+    @Benchmark
+    public NDimensionalIntSegtreeSet fill(Counters counters) {
+        //insert a column of cubes just outside of the explored area, then remove it again
+        NDimensionalIntSegtreeSet set = this.set;
+        int x = this.query++ & 0xFFFF;
+        for (int y = 0; y < 16; y++) {
+            set.add(x + this.radius * 4, y, 0);
+        }
+        for (int y = 0; y < 16; y++) {
+            set.remove(x + this.radius * 4, y, 0);
+        }
+        return set;
+    }
+
+    /**
+     * Reports the number of cubes in the set and the number of bytes used to store them.
+     *
+     * @author DaPorkchop_
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+        public long cubes;
+        public long memoryUsage;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            this.cubes = 0L;
+            this.memoryUsage = 0L;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package util.datastructure;
+
+import net.daporkchop.fp2.util.datastructure.ConcurrentUnboundedPriorityBlockingQueue;
+import net.daporkchop.fp2.util.datastructure.UnboundedPriorityBlockingQueue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares the throughput of {@link ConcurrentUnboundedPriorityBlockingQueue} and {@link UnboundedPriorityBlockingQueue}, both with a single thread and
+ * with several producers and consumers contending for the same queue, similarly to how the tile generation workers use them.
+ *
+ * @author DaPorkchop_
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PriorityBlockingQueueBenchmark {
+    @Param({ "ConcurrentUnboundedPriorityBlockingQueue", "UnboundedPriorityBlockingQueue" })
+    public String implementation;
+
+    @Param({ "1024", "65536" })
+    public int size;
+
+    protected BlockingQueue<Long> queue;
+
+    //both queues discard duplicate elements, so each element gets a unique sequence number in its low bits
+    protected final AtomicLong sequence = new AtomicLong();
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        switch (this.implementation) {
+            case "ConcurrentUnboundedPriorityBlockingQueue":
+                this.queue = new ConcurrentUnboundedPriorityBlockingQueue<>();
+                break;
+            case "UnboundedPriorityBlockingQueue":
+                this.queue = new UnboundedPriorityBlockingQueue<>();
+                break;
+            default:
+                throw new IllegalArgumentException(this.implementation);
+        }
+
+        SplittableRandom r = new SplittableRandom(1337L);
+        for (int i = 0; i < this.size; i++) {
+            this.queue.add(this.nextElement(r.nextInt(1 << 16)));
+        }
+    }
+
+    protected Long nextElement(int priority) {
+        return ((long) priority << 40L) | this.sequence.getAndIncrement();
+    }
+
+    @Benchmark
+    public Long addPoll() {
+        this.queue.add(this.nextElement(ThreadLocalRandom.current().nextInt(1 << 16)));
+        return this.queue.poll();
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(2)
+    public boolean contendedAdd() {
+        return this.queue.add(this.nextElement(ThreadLocalRandom.current().nextInt(1 << 16)));
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(2)
+    public Long contendedPoll() {
+        return this.queue.poll();
+    }
+}
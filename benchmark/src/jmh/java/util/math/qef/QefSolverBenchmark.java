@@ -0,0 +1,127 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package util.math.qef;
+
+import net.daporkchop.fp2.util.math.Vector3d;
+import net.daporkchop.fp2.util.math.qef.QefSolver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of accumulating a voxel's edge intersections into a {@link QefSolver} and solving for the vertex position.
+ * <p>
+ * The intersections lie on the surfaces of randomly oriented planes passing through the voxel, using the same solver parameters as the voxel scaler.
+ *
+ * @author DaPorkchop_
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QefSolverBenchmark {
+    protected static final int VOXELS = 1024;
+
+    /**
+     * The number of intersection points per voxel. A voxel has 12 edges, of which at most 6 may be crossed by a single plane.
+     */
+    @Param({ "3", "6", "12" })
+    public int points;
+
+    @Param({ "1", "2" })
+    public int planes;
+
+    protected final QefSolver qef = new QefSolver();
+    protected final Vector3d out = new Vector3d();
+
+    protected double[] samples; //px, py, pz, nx, ny, nz
+    protected int voxel;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        SplittableRandom r = new SplittableRandom(1337L);
+
+        this.samples = new double[VOXELS * this.points * 6];
+        for (int voxel = 0, i = 0; voxel < VOXELS; voxel++) {
+            //generate the planes for this voxel
+            double[] normals = new double[this.planes * 3];
+            double[] origins = new double[this.planes * 3];
+            for (int plane = 0; plane < this.planes; plane++) {
+                double nx = r.nextDouble(-1.0d, 1.0d);
+                double ny = r.nextDouble(-1.0d, 1.0d);
+                double nz = r.nextDouble(-1.0d, 1.0d);
+                double len = Math.sqrt(nx * nx + ny * ny + nz * nz);
+                normals[plane * 3 + 0] = nx / len;
+                normals[plane * 3 + 1] = ny / len;
+                normals[plane * 3 + 2] = nz / len;
+                origins[plane * 3 + 0] = r.nextDouble();
+                origins[plane * 3 + 1] = r.nextDouble();
+                origins[plane * 3 + 2] = r.nextDouble();
+            }
+
+            //project random points in the voxel onto the planes
+            for (int point = 0; point < this.points; point++, i += 6) {
+                int plane = point % this.planes;
+                double nx = normals[plane * 3 + 0];
+                double ny = normals[plane * 3 + 1];
+                double nz = normals[plane * 3 + 2];
+                double px = r.nextDouble();
+                double py = r.nextDouble();
+                double pz = r.nextDouble();
+                double d = (px - origins[plane * 3 + 0]) * nx + (py - origins[plane * 3 + 1]) * ny + (pz - origins[plane * 3 + 2]) * nz;
+
+                this.samples[i + 0] = px - d * nx;
+                this.samples[i + 1] = py - d * ny;
+                this.samples[i + 2] = pz - d * nz;
+                this.samples[i + 3] = nx;
+                this.samples[i + 4] = ny;
+                this.samples[i + 5] = nz;
+            }
+        }
+    }
+
+    @Benchmark
+    public double solve() {
+        int voxel = this.voxel = (this.voxel + 1) % VOXELS;
+        double[] samples = this.samples;
+
+        QefSolver qef = this.qef;
+        qef.reset();
+        for (int i = voxel * this.points * 6, end = i + this.points * 6; i < end; i += 6) {
+            qef.add(samples[i + 0], samples[i + 1], samples[i + 2], samples[i + 3], samples[i + 4], samples[i + 5]);
+        }
+        return qef.solve(this.out, 0.1d, 1, 0.5d);
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package net.daporkchop.fp2.common.util.alloc;
+
+import lombok.NonNull;
+
+import static java.lang.Math.*;
+import static net.daporkchop.lib.common.util.PValidation.*;
+
+/**
+ * Base implementation of a {@link CompactingAllocator} backed by a single sequential heap.
+ * <p>
+ * Implementations are responsible for choosing which allocation to move in each compaction step, while this class drives the compaction loop and shrinks
+ * the heap once enough unallocated space has accumulated at its end.
+ *
+ * @author DaPorkchop_
+ */
+public abstract class AbstractCompactingAllocator implements CompactingAllocator {
+    /**
+     * Copies an allocation to a lower address which overlaps the allocation's current location.
+     * <p>
+     * The data is copied in chunks no larger than the distance the allocation is being moved by, so that no individual copy overlaps itself.
+     *
+     * @param mover   the {@link Mover} to use for copying the data
+     * @param oldBase the allocation's old starting address
+     * @param newBase the allocation's new starting address
+     * @param size    the allocation's size
+     */
+    protected static void slideDown(@NonNull Mover mover, long oldBase, long newBase, long size) {
+        long distance = oldBase - newBase;
+        for (long offset = 0L; offset < size; offset += distance) {
+            mover.copy(oldBase + offset, newBase + offset, min(distance, size - offset));
+        }
+    }
+
+    protected final long blockSize;
+    protected final GrowFunction growFunction;
+    protected final SequentialHeapManager manager;
+    protected long capacity;
+
+    protected long allocatedSpace;
+
+    protected AbstractCompactingAllocator(long blockSize, @NonNull SequentialHeapManager manager, @NonNull GrowFunction growFunction) {
+        this.blockSize = positive(blockSize, "blockSize");
+        this.manager = manager;
+        this.growFunction = growFunction;
+    }
+
+    @Override
+    public long compact(long budget, @NonNull Mover mover) {
+        notNegative(budget, "budget");
+
+        long moved = 0L;
+        while (this.fragmentedSpace() > 0L && (moved == 0L || moved < budget)) {
+            moved += this.compactStep(mover);
+        }
+
+        this.trim();
+        return moved;
+    }
+
+    /**
+     * Moves a single allocation towards the start of the heap.
+     * <p>
+     * This is only called while {@link #fragmentedSpace()} is greater than {@code 0}.
+     *
+     * @param mover the {@link Mover} to use for moving the allocation
+     * @return the size of the allocation which was moved
+     */
+    protected abstract long compactStep(@NonNull Mover mover);
+
+    /**
+     * Releases unallocated space at the end of the heap by shrinking it.
+     */
+    protected void trim() {
+        long tailBase = this.freeTailBase();
+        if (tailBase < 0L) { //nothing to trim
+            return;
+        }
+
+        //only shrink the heap if doing so would release at least a quarter of it, to avoid repeatedly resizing the heap by small amounts
+        long newCapacity = this.growFunction.grow(tailBase, this.blockSize);
+        if (newCapacity <= this.capacity - (this.capacity >> 2L)) {
+            this.manager.sbrk(newCapacity);
+            this.resizeFreeTail(newCapacity);
+            this.capacity = newCapacity;
+        }
+    }
+
+    /**
+     * @return the starting address of the unallocated region at the end of the heap, or {@code -1L} if the last region in the heap is allocated
+     */
+    protected abstract long freeTailBase();
+
+    /**
+     * Resizes the unallocated region at the end of the heap after the heap has been shrunk.
+     *
+     * @param newCapacity the heap's new capacity
+     */
+    protected abstract void resizeFreeTail(long newCapacity);
+}
@@ -0,0 +1,80 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package net.daporkchop.fp2.common.util.alloc;
+
+import lombok.NonNull;
+
+/**
+ * An {@link Allocator} which is able to move its allocations in order to reduce fragmentation.
+ * <p>
+ * Compaction is performed incrementally: each call to {@link #compact(long, Mover)} moves a bounded amount of data, so that long-lived heaps can be
+ * kept compact without ever having to pause for a full pass.
+ *
+ * @author DaPorkchop_
+ */
+public interface CompactingAllocator extends Allocator {
+    /**
+     * @return the total size of all unallocated regions which are followed by an allocated region, and are therefore unable to be released by
+     * shrinking the heap
+     */
+    long fragmentedSpace();
+
+    /**
+     * Moves allocations towards the start of the heap, and shrinks the heap if a sufficiently large amount of unallocated space remains at its end.
+     * <p>
+     * Whenever an allocation is moved, its contents are copied to the new location using {@link Mover#copy(long, long, long)}, after which
+     * {@link Mover#moved(long, long)} is notified of its new address. The old address is no longer valid once this has happened.
+     * <p>
+     * The heap may be resized (using the allocator's {@link SequentialHeapManager}) before this method returns.
+     *
+     * @param budget the maximum amount of allocated space to move. If the heap isn't already compact, at least one allocation will be moved, regardless of
+     *               its size.
+     * @param mover  the {@link Mover} to use for moving allocations
+     * @return the amount of allocated space which was moved
+     */
+    long compact(long budget, @NonNull Mover mover);
+
+    /**
+     * Callbacks used by {@link #compact(long, Mover)} to notify the user of moved allocations.
+     *
+     * @author DaPorkchop_
+     */
+    interface Mover {
+        /**
+         * Copies a range of data from one location in the heap to another.
+         * <p>
+         * The source and destination ranges are guaranteed not to overlap. A single allocation may be moved using multiple copies.
+         *
+         * @param src  the address of the data to copy
+         * @param dst  the address to copy the data to
+         * @param size the size of the data to copy
+         */
+        void copy(long src, long dst, long size);
+
+        /**
+         * Notifies the user that an allocation has been moved. All of the allocation's data will already have been copied.
+         *
+         * @param oldAddress the allocation's old starting address
+         * @param newAddress the allocation's new starting address
+         */
+        void moved(long oldAddress, long newAddress);
+    }
+}
@@ -0,0 +1,444 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package net.daporkchop.fp2.common.util.alloc;
+
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import lombok.NonNull;
+import net.daporkchop.lib.common.math.PMath;
+
+import java.util.Arrays;
+
+import static net.daporkchop.lib.common.util.PValidation.*;
+
+/**
+ * A memory allocator for arbitrarily sized blocks of memory backed by a sequential heap, using a two-level segregated fit (TLSF) strategy.
+ * <p>
+ * Unallocated memory blocks are sorted into size classes: the first level divides sizes into powers of two, and the second level subdivides each
+ * power of two into {@link #SL_COUNT} linearly spaced classes. Each size class has its own free list, and a bitmap of non-empty classes is maintained
+ * for each level, which allows a suitable block to be found using a few bit operations.
+ * <p>
+ * All node metadata is stored in parallel primitive arrays, so allocating and freeing memory doesn't create any garbage.
+ *
+ * @author DaPorkchop_
+ * @see <a href="http://www.gii.upv.es/tlsf/">TLSF: a New Dynamic Memory Allocator for Real-Time Systems</a>
+ */
+public final class SequentialSegregatedFitAllocator extends AbstractCompactingAllocator {
+    /*
+     * Performance characteristics (N=extents, L=number of free blocks in a single size class):
+     *
+     * alloc():
+     *   - O(1) (average)
+     *   - O(L) (worst-case, only if the heap would otherwise need to be expanded)
+     * free():
+     *   - O(1)
+     * compact():
+     *   - O(N) per moved allocation
+     */
+
+    protected static final int SL_BITS = 4;
+    protected static final int SL_COUNT = 1 << SL_BITS;
+    protected static final int FL_COUNT = Long.SIZE - SL_BITS + 1;
+
+    protected static final int NIL = -1;
+    protected static final int USED = -2; //stored in a node's prevFree field to indicate that it's allocated
+
+    protected static final int INITIAL_NODES = 64;
+
+    /**
+     * Gets the index of the size class which the given size belongs to.
+     *
+     * @param size the size
+     * @return the size class index
+     */
+    protected static int sizeClass(long size) {
+        int log2 = Long.SIZE - 1 - Long.numberOfLeadingZeros(size);
+        if (log2 < SL_BITS) { //small sizes are all placed in the first level, one size per class
+            return (int) size;
+        }
+        return ((log2 - SL_BITS + 1) << SL_BITS) | ((int) (size >>> (log2 - SL_BITS)) & (SL_COUNT - 1));
+    }
+
+    /**
+     * Rounds the given size up to the smallest size which is greater than or equal to every size in the size class which follows the given size's
+     * size class.
+     * <p>
+     * Every block in the size class of the returned size is guaranteed to be large enough to fit the original size.
+     *
+     * @param size the size
+     * @return the rounded size
+     */
+    protected static long roundUpToSizeClass(long size) {
+        int log2 = Long.SIZE - 1 - Long.numberOfLeadingZeros(size);
+        return log2 < SL_BITS ? size : size + (1L << (log2 - SL_BITS)) - 1L;
+    }
+
+    //node metadata, indexed by node id
+    protected long[] bases;
+    protected long[] sizes;
+    protected int[] prevs; //the previous node in the heap
+    protected int[] nexts; //the next node in the heap
+    protected int[] prevFrees; //the previous node in the node's free list, or USED if the node is allocated
+    protected int[] nextFrees; //the next node in the node's free list
+
+    protected int nodeCount;
+    protected int[] recycledNodes = new int[INITIAL_NODES];
+    protected int recycledCount;
+
+    protected long firstLevelBitmap;
+    protected final int[] secondLevelBitmaps = new int[FL_COUNT];
+    protected final int[] freeLists = new int[FL_COUNT * SL_COUNT];
+
+    protected final Long2IntMap usedNodes = new Long2IntOpenHashMap();
+    protected final int head;
+    protected int tail;
+
+    public SequentialSegregatedFitAllocator(long blockSize, @NonNull SequentialHeapManager manager) {
+        this(blockSize, manager, GrowFunction.DEFAULT);
+    }
+
+    public SequentialSegregatedFitAllocator(long blockSize, @NonNull SequentialHeapManager manager, @NonNull GrowFunction growFunction) {
+        super(blockSize, manager, growFunction);
+
+        this.bases = new long[INITIAL_NODES];
+        this.sizes = new long[INITIAL_NODES];
+        this.prevs = new int[INITIAL_NODES];
+        this.nexts = new int[INITIAL_NODES];
+        this.prevFrees = new int[INITIAL_NODES];
+        this.nextFrees = new int[INITIAL_NODES];
+
+        Arrays.fill(this.freeLists, NIL);
+        this.usedNodes.defaultReturnValue(NIL);
+
+        this.manager.brk(this.capacity = this.growFunction.grow(0L, blockSize << 4L));
+
+        //create wilderness node
+        this.head = this.tail = this.allocateNode();
+        this.bases[this.head] = 0L;
+        this.sizes[this.head] = this.usableCapacity(this.capacity);
+        this.prevs[this.head] = this.nexts[this.head] = NIL;
+        this.insertFree(this.head);
+    }
+
+    @Override
+    public long alloc(long rawSize) {
+        //round up to block size
+        long size = PMath.roundUp(positive(rawSize, "rawSize"), this.blockSize);
+
+        int node;
+        while ((node = this.findFree(size)) == NIL) {
+            this.expand(size);
+        }
+
+        this.removeFree(node);
+        this.markUsed(node, size);
+        return this.bases[node];
+    }
+
+    @Override
+    public void free(long address) {
+        int node = this.usedNodes.remove(address);
+        checkArg(node != NIL, "invalid address for free(): %d", address);
+
+        this.allocatedSpace -= this.sizes[node];
+
+        int next = this.nexts[node];
+        if (next != NIL && !this.isUsed(next)) { //next node isn't used either, we can merge forwards
+            this.removeFree(next);
+            this.sizes[node] += this.sizes[next];
+            this.unlink(next);
+        }
+
+        int prev = this.prevs[node];
+        if (prev != NIL && !this.isUsed(prev)) { //previous node isn't used, we can merge backwards
+            this.removeFree(prev);
+            this.sizes[prev] += this.sizes[node];
+            this.unlink(node);
+            node = prev;
+        }
+
+        this.insertFree(node);
+    }
+
+    private long usableCapacity(long capacity) {
+        return capacity - capacity % this.blockSize;
+    }
+
+    private boolean isUsed(int node) {
+        return this.prevFrees[node] == USED;
+    }
+
+    /**
+     * Marks the given node (which must not be in any free list) as allocated, splitting off any space beyond the given size into a new unallocated node.
+     */
+    private void markUsed(int node, long size) {
+        long remaining = this.sizes[node] - size;
+        if (remaining > 0L) { //split the node in two and leave the remaining space unallocated
+            int split = this.allocateNode();
+            this.bases[split] = this.bases[node] + size;
+            this.sizes[split] = remaining;
+            this.linkAfter(node, split);
+            this.insertFree(split);
+
+            this.sizes[node] = size;
+        }
+
+        this.prevFrees[node] = USED;
+        this.usedNodes.put(this.bases[node], node);
+        this.allocatedSpace += size;
+    }
+
+    private int findFree(long size) {
+        //search for a block in a size class where every block is guaranteed to fit
+        int sizeClass = sizeClass(roundUpToSizeClass(size));
+        int fl = sizeClass >>> SL_BITS;
+        int sl = sizeClass & (SL_COUNT - 1);
+
+        int slBitmap = this.secondLevelBitmaps[fl] & (-1 << sl);
+        if (slBitmap == 0) { //no suitable classes at this level, try the next non-empty first level
+            long flBitmap = this.firstLevelBitmap & (-1L << (fl + 1));
+            if (flBitmap != 0L) {
+                fl = Long.numberOfTrailingZeros(flBitmap);
+                slBitmap = this.secondLevelBitmaps[fl];
+            }
+        }
+        if (slBitmap != 0) {
+            return this.freeLists[(fl << SL_BITS) | Integer.numberOfTrailingZeros(slBitmap)];
+        }
+
+        //before expanding the heap, check if any of the blocks in the requested size's own size class are large enough
+        for (int node = this.freeLists[sizeClass(size)]; node != NIL; node = this.nextFrees[node]) {
+            if (this.sizes[node] >= size) {
+                return node;
+            }
+        }
+        return NIL;
+    }
+
+    private void expand(long size) {
+        long oldCapacity = this.capacity;
+        long tailFreeSpace = this.isUsed(this.tail) ? 0L : this.sizes[this.tail];
+        long newCapacity = this.growFunction.grow(oldCapacity, size - tailFreeSpace);
+        checkState(newCapacity > oldCapacity, "newCapacity (%d) must be greater than oldCapacity (%d)", newCapacity, oldCapacity);
+        this.manager.sbrk(newCapacity);
+        this.capacity = newCapacity;
+
+        long end = this.usableCapacity(newCapacity);
+        if (this.isUsed(this.tail)) { //tail node is allocated, create new node to be used as tail
+            int node = this.allocateNode();
+            this.bases[node] = this.bases[this.tail] + this.sizes[this.tail];
+            this.sizes[node] = end - this.bases[node];
+            this.linkAfter(this.tail, node);
+            this.insertFree(node);
+        } else { //tail node is unused, expand it
+            this.removeFree(this.tail);
+            this.sizes[this.tail] = end - this.bases[this.tail];
+            this.insertFree(this.tail);
+        }
+    }
+
+    //
+    // node management
+    //
+
+    private int allocateNode() {
+        if (this.recycledCount > 0) {
+            return this.recycledNodes[--this.recycledCount];
+        }
+
+        if (this.nodeCount == this.bases.length) { //grow metadata arrays
+            int newLength = this.nodeCount << 1;
+            this.bases = Arrays.copyOf(this.bases, newLength);
+            this.sizes = Arrays.copyOf(this.sizes, newLength);
+            this.prevs = Arrays.copyOf(this.prevs, newLength);
+            this.nexts = Arrays.copyOf(this.nexts, newLength);
+            this.prevFrees = Arrays.copyOf(this.prevFrees, newLength);
+            this.nextFrees = Arrays.copyOf(this.nextFrees, newLength);
+        }
+        return this.nodeCount++;
+    }
+
+    private void linkAfter(int node, int inserted) {
+        int next = this.nexts[node];
+        this.prevs[inserted] = node;
+        this.nexts[inserted] = next;
+        this.nexts[node] = inserted;
+        if (next != NIL) {
+            this.prevs[next] = inserted;
+        } else {
+            this.tail = inserted;
+        }
+    }
+
+    /**
+     * Removes the given node from the heap, and releases it for re-use. It must not be the head node.
+     */
+    private void unlink(int node) {
+        int prev = this.prevs[node];
+        int next = this.nexts[node];
+        this.nexts[prev] = next;
+        if (next != NIL) {
+            this.prevs[next] = prev;
+        } else {
+            this.tail = prev;
+        }
+
+        if (this.recycledCount == this.recycledNodes.length) {
+            this.recycledNodes = Arrays.copyOf(this.recycledNodes, this.recycledCount << 1);
+        }
+        this.recycledNodes[this.recycledCount++] = node;
+    }
+
+    private void insertFree(int node) {
+        int sizeClass = sizeClass(this.sizes[node]);
+        int head = this.freeLists[sizeClass];
+
+        this.prevFrees[node] = NIL;
+        this.nextFrees[node] = head;
+        if (head != NIL) {
+            this.prevFrees[head] = node;
+        }
+        this.freeLists[sizeClass] = node;
+
+        int fl = sizeClass >>> SL_BITS;
+        this.secondLevelBitmaps[fl] |= 1 << (sizeClass & (SL_COUNT - 1));
+        this.firstLevelBitmap |= 1L << fl;
+    }
+
+    /**
+     * Removes the given node from its free list. This must be done before modifying the node's size.
+     */
+    private void removeFree(int node) {
+        int sizeClass = sizeClass(this.sizes[node]);
+        int prev = this.prevFrees[node];
+        int next = this.nextFrees[node];
+
+        if (prev != NIL) {
+            this.nextFrees[prev] = next;
+        } else {
+            this.freeLists[sizeClass] = next;
+        }
+        if (next != NIL) {
+            this.prevFrees[next] = prev;
+        }
+
+        if (this.freeLists[sizeClass] == NIL) { //the free list is now empty, clear its bit in the bitmaps
+            int fl = sizeClass >>> SL_BITS;
+            if ((this.secondLevelBitmaps[fl] &= ~(1 << (sizeClass & (SL_COUNT - 1)))) == 0) {
+                this.firstLevelBitmap &= ~(1L << fl);
+            }
+        }
+    }
+
+    //
+    // compaction
+    //
+
+    @Override
+    public long fragmentedSpace() {
+        long end = this.bases[this.tail] + this.sizes[this.tail];
+        return end - this.allocatedSpace - (this.isUsed(this.tail) ? 0L : this.sizes[this.tail]);
+    }
+
+    @Override
+    protected long compactStep(@NonNull Mover mover) {
+        //find the lowest unallocated node. it can't be the tail, otherwise the heap would already be compact, and since adjacent unallocated nodes are
+        //  always merged, the node after it must be allocated
+        int gap = this.head;
+        while (this.isUsed(gap)) {
+            gap = this.nexts[gap];
+        }
+
+        //try to fill the gap with the highest allocation which fits into it, as this also allows the heap to be shrunk
+        for (int node = this.tail; node != gap; node = this.prevs[node]) {
+            if (this.isUsed(node) && this.sizes[node] <= this.sizes[gap]) {
+                return this.relocate(node, gap, mover);
+            }
+        }
+
+        //nothing fits into the gap, slide the following allocation down to the start of the gap instead
+        return this.slide(gap, mover);
+    }
+
+    private long relocate(int node, int dst, Mover mover) {
+        long oldBase = this.bases[node];
+        long size = this.sizes[node];
+        mover.copy(oldBase, this.bases[dst], size);
+
+        this.removeFree(dst);
+        this.markUsed(dst, size);
+        this.free(oldBase);
+
+        mover.moved(oldBase, this.bases[dst]);
+        return size;
+    }
+
+    private long slide(int gap, Mover mover) {
+        int node = this.nexts[gap];
+        long oldBase = this.bases[node];
+        long newBase = this.bases[gap];
+        long size = this.sizes[node];
+        long distance = this.sizes[gap];
+        slideDown(mover, oldBase, newBase, size);
+
+        //the two nodes swap roles: the gap's node now describes the allocation, and the allocation's node describes the gap
+        this.removeFree(gap);
+        this.usedNodes.remove(oldBase);
+        this.sizes[gap] = size;
+        this.prevFrees[gap] = USED;
+        this.usedNodes.put(newBase, gap);
+
+        this.bases[node] = newBase + size;
+        this.sizes[node] = distance;
+        int next = this.nexts[node];
+        if (next != NIL && !this.isUsed(next)) { //the gap is now adjacent to another unallocated node, merge them
+            this.removeFree(next);
+            this.sizes[node] += this.sizes[next];
+            this.unlink(next);
+        }
+        this.insertFree(node);
+
+        mover.moved(oldBase, newBase);
+        return size;
+    }
+
+    @Override
+    protected long freeTailBase() {
+        return this.isUsed(this.tail) ? -1L : this.bases[this.tail];
+    }
+
+    @Override
+    protected void resizeFreeTail(long newCapacity) {
+        this.removeFree(this.tail);
+        this.sizes[this.tail] = this.usableCapacity(newCapacity) - this.bases[this.tail];
+        this.insertFree(this.tail);
+    }
+
+    @Override
+    public Stats stats() {
+        return Stats.builder()
+                .heapRegions(1L)
+                .allocations(this.usedNodes.size())
+                .allocatedSpace(this.allocatedSpace)
+                .totalSpace(this.capacity)
+                .build();
+    }
+}
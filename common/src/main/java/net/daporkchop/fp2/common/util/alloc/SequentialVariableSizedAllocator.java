@@ -40,10 +40,12 @@ import static net.daporkchop.lib.common.util.PorkUtil.*;
  * Nodes are inserted and removed from the list whenever an allocation is added or removed, and merged whenever possible.
  * <p>
  * Unallocated memory blocks are stored in a TreeSet to allow efficient detection of the smallest possible block that would fit an allocation of the given size.
+ * <p>
+ * This allocator never moves allocations on its own, but may be incrementally defragmented using {@link #compact(long, Mover)}.
  *
  * @author DaPorkchop_
  */
-public final class SequentialVariableSizedAllocator implements Allocator {
+public final class SequentialVariableSizedAllocator extends AbstractCompactingAllocator {
     /*
      * Performance characteristics (C=capacity, N=extents):
      *
@@ -52,15 +54,12 @@ public final class SequentialVariableSizedAllocator implements Allocator {
      *   - O(log2(N) + C) (worst-case)
      * free():
      *   - O(log2(N))
+     * compact():
+     *   - O(N) per moved allocation
      */
 
     protected static final long MIN_ALLOC_SZ = 64L; //the maximum number of bytes we are willing to waste as padding at the end of a block
 
-    protected final long blockSize;
-    protected final GrowFunction growFunction;
-    protected final SequentialHeapManager manager;
-    protected long capacity;
-
     protected final NavigableSet<Node> emptyNodes = new TreeSet<>((Comparator<Object>) (_a, _b) -> {
         Node b = (Node) _b;
         if (_a instanceof Long) {
@@ -72,6 +71,7 @@ public final class SequentialVariableSizedAllocator implements Allocator {
         }
     });
     protected final Long2ObjectMap<Node> usedNodes = new Long2ObjectRBTreeMap<>();
+    protected final Node head;
     protected Node tail;
 
     public SequentialVariableSizedAllocator(long blockSize, @NonNull SequentialHeapManager manager) {
@@ -79,14 +79,12 @@ public final class SequentialVariableSizedAllocator implements Allocator {
     }
 
     public SequentialVariableSizedAllocator(long blockSize, @NonNull SequentialHeapManager manager, @NonNull GrowFunction growFunction) {
-        this.blockSize = positive(blockSize, "blockSize");
-        this.manager = manager;
-        this.growFunction = growFunction;
+        super(blockSize, manager, growFunction);
 
         this.manager.brk(this.capacity = toInt(this.growFunction.grow(0L, blockSize << 4L)));
 
         //create wilderness node
-        this.tail = new Node().base(0L).size(this.capacity);
+        this.head = this.tail = new Node().base(0L).size(this.capacity);
         this.emptyNodes.add(this.tail);
     }
 
@@ -118,6 +116,7 @@ public final class SequentialVariableSizedAllocator implements Allocator {
 
         found.used(true);
         this.usedNodes.put(found.base, found);
+        this.allocatedSpace += found.size;
         return found.base;
     }
 
@@ -127,6 +126,7 @@ public final class SequentialVariableSizedAllocator implements Allocator {
         checkArg(node != null, "invalid address for free(): %d (allocator state: %s)", address, this);
 
         node.used(false);
+        this.allocatedSpace -= node.size;
         if (node.next != null && !node.next.used) { //next node isn't used either, we can merge forwards
             Node next = node.next;
             this.emptyNodes.remove(next);
@@ -168,6 +168,7 @@ public final class SequentialVariableSizedAllocator implements Allocator {
             long newPrevTailSize = PMath.roundUp(oldPrevTailSize, this.blockSize);
             long newTailOffset = newPrevTailSize - oldPrevTailSize;
             this.tail.size(newPrevTailSize);
+            this.allocatedSpace += newTailOffset;
 
             Node node = new Node().prev(this.tail).base(oldCapacity + newTailOffset).size(deltaCapacity - newTailOffset);
             this.tail.next(node);
@@ -182,14 +183,106 @@ public final class SequentialVariableSizedAllocator implements Allocator {
     }
 
     @Override
-    public Stats stats() {
-        long allocations = this.usedNodes.size();
-        long allocatedSpace = this.usedNodes.values().stream().mapToLong(Node::size).sum();
+    public long fragmentedSpace() {
+        return this.capacity - this.allocatedSpace - (this.tail.used ? 0L : this.tail.size);
+    }
+
+    @Override
+    protected long compactStep(@NonNull Mover mover) {
+        //find the lowest unallocated block. it can't be the tail, otherwise the heap would already be compact, and since adjacent unallocated blocks are
+        //  always merged, the block after it must be allocated
+        Node gap = this.head;
+        while (gap.used) {
+            gap = gap.next;
+        }
+
+        //try to fill the gap with the highest allocation which fits into it, as this also allows the heap to be shrunk
+        for (Node node = this.tail; node != gap; node = node.prev) {
+            if (node.used && node.size <= gap.size) {
+                return this.relocate(node, gap, mover);
+            }
+        }
+
+        //nothing fits into the gap, slide the following allocation down to the start of the gap instead
+        return this.slide(gap, mover);
+    }
 
+    private long relocate(Node node, Node dst, Mover mover) {
+        long oldBase = node.base;
+        long size = node.size;
+        mover.copy(oldBase, dst.base, size);
+
+        //carve a new allocation out of the destination block
+        this.emptyNodes.remove(dst);
+        if (dst.size > size) {
+            Node split = new Node()
+                    .base(dst.base + size).size(dst.size - size)
+                    .next(dst.next).prev(dst);
+            dst.next(split);
+            split.next.prev(split); //dst is below node, so split.next can never be null
+            this.emptyNodes.add(split);
+        }
+        dst.size(size).used(true);
+        this.usedNodes.put(dst.base, dst);
+        this.allocatedSpace += size;
+
+        //release the allocation's old region
+        this.free(oldBase);
+
+        mover.moved(oldBase, dst.base);
+        return size;
+    }
+
+    private long slide(Node gap, Mover mover) {
+        Node node = gap.next;
+        long oldBase = node.base;
+        long newBase = gap.base;
+        long size = node.size;
+        long distance = gap.size;
+        slideDown(mover, oldBase, newBase, size);
+
+        //the two nodes swap roles: the gap's node now describes the allocation, and the allocation's node describes the gap
+        this.emptyNodes.remove(gap);
+        this.usedNodes.remove(oldBase);
+        gap.size(size).used(true);
+        node.base(newBase + size).size(distance).used(false);
+        this.usedNodes.put(newBase, gap);
+
+        if (node.next != null && !node.next.used) { //the gap is now adjacent to another unallocated block, merge them
+            Node next = node.next;
+            this.emptyNodes.remove(next);
+
+            node.size(node.size + next.size).next(next.next);
+            if (next.next != null) {
+                next.next.prev(node);
+            } else {
+                this.tail = node;
+            }
+        }
+        this.emptyNodes.add(node);
+
+        mover.moved(oldBase, newBase);
+        return size;
+    }
+
+    @Override
+    protected long freeTailBase() {
+        return this.tail.used ? -1L : this.tail.base;
+    }
+
+    @Override
+    protected void resizeFreeTail(long newCapacity) {
+        this.emptyNodes.remove(this.tail);
+        this.tail.size(newCapacity - this.tail.base);
+        this.emptyNodes.add(this.tail);
+    }
+
+    @Override
+    public Stats stats() {
         return Stats.builder()
                 .heapRegions(1L)
-                .allocations(allocations)
-                .allocatedSpace(allocatedSpace)
+                .allocations(this.usedNodes.size())
+                .allocatedSpace(this.allocatedSpace)
                 .totalSpace(this.capacity)
                 .build();
     }
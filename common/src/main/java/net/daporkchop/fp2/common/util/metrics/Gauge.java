@@ -0,0 +1,80 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package net.daporkchop.fp2.common.util.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * A value which may be set or moved up and down arbitrarily.
+ * <p>
+ * Gauges whose value is already tracked elsewhere should be registered as a {@link LongSupplier} using {@link MetricsRegistry#gauge(String, LongSupplier)}
+ * instead.
+ *
+ * @author DaPorkchop_
+ */
+public final class Gauge implements LongSupplier {
+    private final AtomicLong value = new AtomicLong();
+
+    /**
+     * Increments this gauge by {@code 1}.
+     */
+    public void inc() {
+        this.value.incrementAndGet();
+    }
+
+    /**
+     * Decrements this gauge by {@code 1}.
+     */
+    public void dec() {
+        this.value.decrementAndGet();
+    }
+
+    /**
+     * Adds the given amount to this gauge.
+     *
+     * @param delta the amount to add (may be negative)
+     */
+    public void add(long delta) {
+        this.value.addAndGet(delta);
+    }
+
+    /**
+     * Sets this gauge to the given value.
+     *
+     * @param value the new value
+     */
+    public void set(long value) {
+        this.value.set(value);
+    }
+
+    /**
+     * @return the current value of this gauge
+     */
+    public long value() {
+        return this.value.get();
+    }
+
+    @Override
+    public long getAsLong() {
+        return this.value.get();
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package net.daporkchop.fp2.common.util.metrics;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import static java.lang.Math.*;
+import static net.daporkchop.lib.common.util.PValidation.*;
+
+/**
+ * Records the distribution of a stream of non-negative values, typically latencies in nanoseconds.
+ * <p>
+ * Values are counted in power-of-two buckets: bucket {@code 0} contains {@code 0}, and bucket {@code i > 0} contains all values in the range
+ * {@code [2^(i-1), 2^i)}. Quantiles computed from a {@link Snapshot} are therefore accurate to within a factor of two, which is plenty for spotting
+ * regressions and outliers while keeping {@link #record(long)} lock-free and allocation-free.
+ *
+ * @author DaPorkchop_
+ */
+public final class Histogram {
+    public static final int BUCKET_COUNT = Long.SIZE + 1;
+
+    /**
+     * Gets the index of the bucket which the given value belongs in.
+     *
+     * @param value the value
+     * @return the bucket index
+     */
+    public static int bucketIndex(long value) {
+        return Long.SIZE - Long.numberOfLeadingZeros(max(value, 0L));
+    }
+
+    /**
+     * Gets the largest value which belongs in the given bucket.
+     *
+     * @param bucket the bucket index
+     * @return the largest value in the bucket
+     */
+    public static long bucketUpperBound(int bucket) {
+        checkIndex(BUCKET_COUNT, bucket);
+        return bucket == Long.SIZE ? Long.MAX_VALUE : (1L << bucket) - 1L;
+    }
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0L);
+
+    private final LongSupplier clock;
+
+    public Histogram() {
+        this(System::nanoTime);
+    }
+
+    /**
+     * @param clock the source of {@link System#nanoTime()}-style timestamps used by {@link #nanoTime()} and {@link #recordNanosSince(long)}
+     */
+    public Histogram(@NonNull LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Records a single value.
+     * <p>
+     * Negative values are clamped to {@code 0}.
+     *
+     * @param value the value to record
+     */
+    public void record(long value) {
+        value = max(value, 0L);
+        this.buckets.incrementAndGet(bucketIndex(value));
+        this.sum.add(value);
+        this.max.accumulate(value);
+    }
+
+    /**
+     * @return the current time according to this histogram's clock, in nanoseconds
+     */
+    public long nanoTime() {
+        return this.clock.getAsLong();
+    }
+
+    /**
+     * Records the time elapsed since the given timestamp.
+     *
+     * @param startNanos the value of {@link #nanoTime()} when the measured operation started
+     */
+    public void recordNanosSince(long startNanos) {
+        this.record(this.clock.getAsLong() - startNanos);
+    }
+
+    /**
+     * Takes a snapshot of this histogram's current state.
+     * <p>
+     * The snapshot is not atomic with respect to concurrent calls to {@link #record(long)}, but every value recorded before this method was called will be
+     * included.
+     *
+     * @return a {@link Snapshot} of this histogram
+     */
+    public Snapshot snapshot() {
+        long[] buckets = new long[BUCKET_COUNT];
+        long count = 0L;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            count += buckets[i] = this.buckets.get(i);
+        }
+        return new Snapshot(buckets, count, this.sum.sum(), this.max.get());
+    }
+
+    /**
+     * An immutable snapshot of a {@link Histogram}'s state.
+     *
+     * @author DaPorkchop_
+     */
+    @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+    @Getter
+    public static final class Snapshot {
+        @Getter(AccessLevel.NONE)
+        private final long[] buckets;
+
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        /**
+         * @param bucket the bucket index
+         * @return the number of values recorded in the given bucket
+         */
+        public long bucket(int bucket) {
+            return this.buckets[checkIndex(BUCKET_COUNT, bucket)];
+        }
+
+        /**
+         * @return the arithmetic mean of all recorded values, or {@code 0.0d} if no values were recorded
+         */
+        public double mean() {
+            return this.count == 0L ? 0.0d : this.sum / (double) this.count;
+        }
+
+        /**
+         * Estimates the value at the given quantile.
+         * <p>
+         * The result is the upper bound of the bucket containing the requested rank, capped to the largest value actually recorded.
+         *
+         * @param quantile the quantile, in range {@code [0, 1]}
+         * @return the estimated value, or {@code 0} if no values were recorded
+         */
+        public long quantile(double quantile) {
+            checkArg(quantile >= 0.0d && quantile <= 1.0d, "quantile (%s) must be in range [0, 1]", quantile);
+            if (this.count == 0L) {
+                return 0L;
+            }
+
+            long rank = max((long) ceil(quantile * this.count), 1L);
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                if ((rank -= this.buckets[i]) <= 0L) {
+                    return min(bucketUpperBound(i), this.max);
+                }
+            }
+            return this.max; //only reachable if a concurrent record() raced with the snapshot
+        }
+    }
+}
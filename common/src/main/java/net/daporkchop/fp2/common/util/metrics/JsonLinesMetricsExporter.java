@@ -0,0 +1,131 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package net.daporkchop.fp2.common.util.metrics;
+
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * {@link MetricsExporter} which appends each {@link MetricsSnapshot} to a file as a single line of JSON.
+ * <p>
+ * Each line has the form:
+ * <pre>
+ * {"timestamp":1634567890123,"counters":{"name":1,...},"gauges":{"name":2,...},"histograms":{"name":{"count":3,"sum":4,"max":5,"mean":1.33,"p50":1,"p90":3,"p99":5},...}}
+ * </pre>
+ * which can be fed to most log shippers or loaded into a notebook without any additional tooling.
+ *
+ * @author DaPorkchop_
+ */
+public class JsonLinesMetricsExporter implements MetricsExporter {
+    /**
+     * Encodes the given {@link MetricsSnapshot} as a single-line JSON object.
+     *
+     * @param snapshot the {@link MetricsSnapshot}
+     * @return the JSON string
+     */
+    public static String toJson(@NonNull MetricsSnapshot snapshot) {
+        StringBuilder builder = new StringBuilder();
+        builder.append("{\"timestamp\":").append(snapshot.timestamp());
+
+        builder.append(",\"counters\":{");
+        appendLongs(builder, snapshot.counters());
+        builder.append("},\"gauges\":{");
+        appendLongs(builder, snapshot.gauges());
+
+        builder.append("},\"histograms\":{");
+        boolean first = true;
+        for (Map.Entry<String, Histogram.Snapshot> entry : snapshot.histograms().entrySet()) {
+            if (!first) {
+                builder.append(',');
+            }
+            first = false;
+
+            Histogram.Snapshot histogram = entry.getValue();
+            appendString(builder, entry.getKey());
+            builder.append(":{\"count\":").append(histogram.count())
+                    .append(",\"sum\":").append(histogram.sum())
+                    .append(",\"max\":").append(histogram.max())
+                    .append(",\"mean\":").append(histogram.mean())
+                    .append(",\"p50\":").append(histogram.quantile(0.5d))
+                    .append(",\"p90\":").append(histogram.quantile(0.9d))
+                    .append(",\"p99\":").append(histogram.quantile(0.99d))
+                    .append('}');
+        }
+        return builder.append("}}").toString();
+    }
+
+    private static void appendLongs(@NonNull StringBuilder builder, @NonNull Map<String, Long> values) {
+        boolean first = true;
+        for (Map.Entry<String, Long> entry : values.entrySet()) {
+            if (!first) {
+                builder.append(',');
+            }
+            first = false;
+
+            appendString(builder, entry.getKey());
+            builder.append(':').append(entry.getValue().longValue());
+        }
+    }
+
+    private static void appendString(@NonNull StringBuilder builder, @NonNull String s) {
+        builder.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                builder.append('\\').append(c);
+            } else if (c < 0x20) {
+                builder.append(String.format("\\u%04x", (int) c));
+            } else {
+                builder.append(c);
+            }
+        }
+        builder.append('"');
+    }
+
+    protected final Writer writer;
+
+    public JsonLinesMetricsExporter(@NonNull Path file) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, WRITE, CREATE, APPEND);
+    }
+
+    @Override
+    public synchronized void export(@NonNull MetricsSnapshot snapshot) throws IOException {
+        this.writer.write(toJson(snapshot));
+        this.writer.write('\n');
+        this.writer.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        this.writer.close();
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package net.daporkchop.fp2.common.util.metrics;
+
+import lombok.NonNull;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import static net.daporkchop.lib.common.util.PValidation.*;
+import static net.daporkchop.lib.common.util.PorkUtil.*;
+
+/**
+ * A thread-safe collection of named {@link Counter}s, gauges and {@link Histogram}s.
+ * <p>
+ * Metric names are dot-separated paths (e.g. {@code "voxel.dim0.storage.write"}). Components usually don't access the registry directly, but rather obtain a
+ * {@link MetricsScope} for their own prefix and close it when they are shut down.
+ *
+ * @author DaPorkchop_
+ */
+public final class MetricsRegistry {
+    private final Map<String, Object> metrics = new ConcurrentHashMap<>();
+    private final LongSupplier clock;
+
+    public MetricsRegistry() {
+        this(System::nanoTime);
+    }
+
+    /**
+     * @param clock the source of {@link System#nanoTime()}-style timestamps used by this registry's {@link Histogram}s
+     */
+    public MetricsRegistry(@NonNull LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    private <M> M getOrCreate(@NonNull String name, @NonNull Class<M> type, @NonNull Supplier<M> factory) {
+        Object metric = this.metrics.computeIfAbsent(name, n -> factory.get());
+        checkState(type.isInstance(metric), "metric %s is a %s, not a %s", name, metric.getClass().getSimpleName(), type.getSimpleName());
+        return uncheckedCast(metric);
+    }
+
+    /**
+     * Gets the {@link Counter} with the given name, creating it if it doesn't exist.
+     *
+     * @param name the metric name
+     * @return the {@link Counter}
+     * @throws IllegalStateException if a metric with the given name exists, but isn't a {@link Counter}
+     */
+    public Counter counter(@NonNull String name) {
+        return this.getOrCreate(name, Counter.class, Counter::new);
+    }
+
+    /**
+     * Gets the {@link Gauge} with the given name, creating it if it doesn't exist.
+     *
+     * @param name the metric name
+     * @return the {@link Gauge}
+     * @throws IllegalStateException if a metric with the given name exists, but isn't a {@link Gauge}
+     */
+    public Gauge gauge(@NonNull String name) {
+        return this.getOrCreate(name, Gauge.class, Gauge::new);
+    }
+
+    /**
+     * Registers a gauge whose value is computed by the given {@link LongSupplier} each time a snapshot is taken.
+     * <p>
+     * If a callback gauge with the given name is already registered, it is replaced.
+     *
+     * @param name     the metric name
+     * @param supplier the {@link LongSupplier} which computes the gauge's value
+     * @throws IllegalStateException if a metric with the given name exists, but isn't a callback gauge
+     */
+    public void gauge(@NonNull String name, @NonNull LongSupplier supplier) {
+        this.metrics.compute(name, (n, existing) -> {
+            checkState(existing == null || existing instanceof CallbackGauge, "metric %s is a %s, not a callback gauge", n, existing);
+            return new CallbackGauge(supplier);
+        });
+    }
+
+    /**
+     * Gets the {@link Histogram} with the given name, creating it if it doesn't exist.
+     *
+     * @param name the metric name
+     * @return the {@link Histogram}
+     * @throws IllegalStateException if a metric with the given name exists, but isn't a {@link Histogram}
+     */
+    public Histogram histogram(@NonNull String name) {
+        return this.getOrCreate(name, Histogram.class, () -> new Histogram(this.clock));
+    }
+
+    /**
+     * Removes the metric with the given name.
+     *
+     * @param name the metric name
+     * @return whether or not a metric was removed
+     */
+    public boolean remove(@NonNull String name) {
+        return this.metrics.remove(name) != null;
+    }
+
+    /**
+     * Removes every metric whose name starts with the given prefix.
+     *
+     * @param prefix the prefix
+     */
+    public void removeAll(@NonNull String prefix) {
+        this.metrics.keySet().removeIf(name -> name.startsWith(prefix));
+    }
+
+    /**
+     * Gets a {@link MetricsScope} which creates metrics in this registry with the given prefix.
+     *
+     * @param prefix the prefix
+     * @return a {@link MetricsScope}
+     */
+    public MetricsScope scope(@NonNull String prefix) {
+        checkArg(!prefix.isEmpty(), "prefix may not be empty");
+        return new MetricsScope(this, prefix);
+    }
+
+    /**
+     * @return a snapshot of the current value of every metric in this registry
+     */
+    public MetricsSnapshot snapshot() {
+        SortedMap<String, Long> counters = new TreeMap<>();
+        SortedMap<String, Long> gauges = new TreeMap<>();
+        SortedMap<String, Histogram.Snapshot> histograms = new TreeMap<>();
+
+        this.metrics.forEach((name, metric) -> {
+            if (metric instanceof Counter) {
+                counters.put(name, ((Counter) metric).count());
+            } else if (metric instanceof LongSupplier) {
+                gauges.put(name, ((LongSupplier) metric).getAsLong());
+            } else if (metric instanceof Histogram) {
+                histograms.put(name, ((Histogram) metric).snapshot());
+            } else {
+                throw new IllegalStateException("unknown metric type: " + metric);
+            }
+        });
+
+        return new MetricsSnapshot(System.currentTimeMillis(),
+                Collections.unmodifiableSortedMap(counters), Collections.unmodifiableSortedMap(gauges), Collections.unmodifiableSortedMap(histograms));
+    }
+
+    /**
+     * Wrapper around a {@link LongSupplier} registered using {@link #gauge(String, LongSupplier)}, used to tell it apart from a {@link Gauge}.
+     *
+     * @author DaPorkchop_
+     */
+    private static final class CallbackGauge implements LongSupplier {
+        private final LongSupplier delegate;
+
+        CallbackGauge(@NonNull LongSupplier delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public long getAsLong() {
+            return this.delegate.getAsLong();
+        }
+    }
+}
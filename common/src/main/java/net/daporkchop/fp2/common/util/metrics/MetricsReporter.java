@@ -0,0 +1,98 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package net.daporkchop.fp2.common.util.metrics;
+
+import lombok.Getter;
+import lombok.NonNull;
+import net.daporkchop.lib.common.misc.threadfactory.PThreadFactories;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static net.daporkchop.lib.common.util.PValidation.*;
+
+/**
+ * Periodically takes a {@link MetricsSnapshot} of a {@link MetricsRegistry} and passes it to a {@link MetricsExporter}.
+ * <p>
+ * Snapshots are taken on a dedicated daemon thread, so exporting never stalls the server thread or the worker threads which are updating the metrics.
+ *
+ * @author DaPorkchop_
+ */
+public class MetricsReporter implements AutoCloseable {
+    protected final MetricsRegistry registry;
+    protected final MetricsExporter exporter;
+    protected final ScheduledExecutorService executor;
+
+    /**
+     * The number of times that exporting a snapshot has failed.
+     */
+    @Getter
+    protected final Counter failures;
+
+    protected boolean closed = false;
+
+    public MetricsReporter(@NonNull MetricsRegistry registry, @NonNull MetricsExporter exporter, long interval, @NonNull TimeUnit unit) {
+        positive(interval, "interval");
+
+        this.registry = registry;
+        this.exporter = exporter;
+        this.failures = registry.counter("metrics.export.failures");
+
+        this.executor = Executors.newSingleThreadScheduledExecutor(PThreadFactories.builder().daemon().minPriority().name("FP2 Metrics Reporter").build());
+        this.executor.scheduleAtFixedRate(this::report, interval, interval, unit);
+    }
+
+    /**
+     * Immediately exports a snapshot of the registry's current state.
+     *
+     * @return whether or not the snapshot was exported successfully
+     */
+    public synchronized boolean report() {
+        if (this.closed) {
+            return false;
+        }
+
+        try {
+            this.exporter.export(this.registry.snapshot());
+            return true;
+        } catch (IOException e) { //don't rethrow, that would prevent any further snapshots from being exported
+            this.failures.inc();
+            return false;
+        }
+    }
+
+    /**
+     * Stops exporting snapshots, exporting one last snapshot before closing the {@link MetricsExporter}.
+     */
+    @Override
+    public void close() throws IOException, InterruptedException {
+        this.executor.shutdown();
+        this.executor.awaitTermination(1L, TimeUnit.MINUTES);
+
+        synchronized (this) {
+            this.report();
+            this.closed = true;
+            this.exporter.close();
+        }
+    }
+}
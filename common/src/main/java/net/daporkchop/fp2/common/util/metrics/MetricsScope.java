@@ -0,0 +1,95 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package net.daporkchop.fp2.common.util.metrics;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.function.LongSupplier;
+
+/**
+ * A view of a {@link MetricsRegistry} which prepends a fixed prefix to all metric names.
+ * <p>
+ * Closing a scope removes every metric which was created through it (or through any of its child scopes) from the registry. This allows per-world components
+ * to clean up after themselves when they are shut down.
+ *
+ * @author DaPorkchop_
+ */
+@Getter
+public final class MetricsScope implements AutoCloseable {
+    private final MetricsRegistry registry;
+    private final String prefix;
+
+    MetricsScope(@NonNull MetricsRegistry registry, @NonNull String prefix) {
+        this.registry = registry;
+        this.prefix = prefix;
+    }
+
+    private String name(@NonNull String name) {
+        return this.prefix + '.' + name;
+    }
+
+    /**
+     * @see MetricsRegistry#counter(String)
+     */
+    public Counter counter(@NonNull String name) {
+        return this.registry.counter(this.name(name));
+    }
+
+    /**
+     * @see MetricsRegistry#gauge(String)
+     */
+    public Gauge gauge(@NonNull String name) {
+        return this.registry.gauge(this.name(name));
+    }
+
+    /**
+     * @see MetricsRegistry#gauge(String, LongSupplier)
+     */
+    public void gauge(@NonNull String name, @NonNull LongSupplier supplier) {
+        this.registry.gauge(this.name(name), supplier);
+    }
+
+    /**
+     * @see MetricsRegistry#histogram(String)
+     */
+    public Histogram histogram(@NonNull String name) {
+        return this.registry.histogram(this.name(name));
+    }
+
+    /**
+     * Gets a child scope of this scope.
+     *
+     * @param name the child scope's name, which will be appended to this scope's prefix
+     * @return the child scope
+     */
+    public MetricsScope scope(@NonNull String name) {
+        return this.registry.scope(this.name(name));
+    }
+
+    /**
+     * Removes all metrics in this scope from the registry.
+     */
+    @Override
+    public void close() {
+        this.registry.removeAll(this.prefix + '.');
+    }
+}
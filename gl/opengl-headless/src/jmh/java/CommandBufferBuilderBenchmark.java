@@ -0,0 +1,123 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+import net.daporkchop.fp2.common.util.exception.ResourceNotFoundException;
+import net.daporkchop.fp2.gl.command.BlendFactor;
+import net.daporkchop.fp2.gl.command.BlendOp;
+import net.daporkchop.fp2.gl.command.CommandBuffer;
+import net.daporkchop.fp2.gl.command.CommandBufferBuilder;
+import net.daporkchop.fp2.gl.command.Compare;
+import net.daporkchop.fp2.gl.command.FramebufferLayer;
+import net.daporkchop.fp2.gl.command.StencilOperation;
+import net.daporkchop.fp2.gl.headless.GLAPIHeadless;
+import net.daporkchop.fp2.gl.opengl.OpenGL;
+import net.daporkchop.fp2.gl.opengl.OpenGLBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks code generation and execution of {@link CommandBuffer}s using the headless OpenGL backend.
+ *
+ * @author DaPorkchop_
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommandBufferBuilderBenchmark {
+    @Param({ "1", "16" })
+    public int clears;
+
+    protected GLAPIHeadless api;
+    protected OpenGL gl;
+    protected CommandBuffer commandBuffer;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.api = new GLAPIHeadless();
+        this.gl = (OpenGL) new OpenGLBuilder()
+                .withApi(this.api)
+                .withResourceProvider(id -> {
+                    throw new ResourceNotFoundException(id);
+                })
+                .wrapCurrent();
+
+        this.commandBuffer = this.populate(this.gl.createCommandBuffer()).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        this.commandBuffer.close();
+        this.gl.close();
+        this.api.close();
+    }
+
+    protected CommandBufferBuilder populate(CommandBufferBuilder builder) {
+        for (int i = 0; i < this.clears; i++) {
+            builder.blendEnable()
+                    .blendFunctionSrc(BlendFactor.SRC_ALPHA, BlendFactor.ONE)
+                    .blendFunctionDst(BlendFactor.ONE_MINUS_SRC_ALPHA, BlendFactor.ZERO)
+                    .blendOp(BlendOp.ADD, BlendOp.ADD)
+                    .colorClear(i * 0x01010101)
+                    .depthEnable()
+                    .depthCompare((i & 1) == 0 ? Compare.LESS : Compare.LESS_OR_EQUAL)
+                    .depthClear(1.0d)
+                    .stencilEnable()
+                    .stencilClear(i & 0xFF)
+                    .stencilOperation(StencilOperation.KEEP, StencilOperation.REPLACE, StencilOperation.KEEP)
+                    .framebufferClear(FramebufferLayer.COLOR, FramebufferLayer.DEPTH, FramebufferLayer.STENCIL);
+        }
+        return builder;
+    }
+
+    /**
+     * Measures the cost of generating and loading a new command buffer class.
+     */
+    @Benchmark
+    public void build(Blackhole bh) {
+        try (CommandBuffer commandBuffer = this.populate(this.gl.createCommandBuffer()).build()) {
+            bh.consume(commandBuffer);
+        }
+    }
+
+    /**
+     * Measures the cost of executing an already generated command buffer, including backing up and restoring the OpenGL state.
+     */
+    @Benchmark
+    public void execute() {
+        this.commandBuffer.execute();
+    }
+}
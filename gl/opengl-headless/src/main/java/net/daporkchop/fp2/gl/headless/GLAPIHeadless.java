@@ -0,0 +1,1730 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package net.daporkchop.fp2.gl.headless;
+
+import lombok.Getter;
+import lombok.NonNull;
+import net.daporkchop.fp2.gl.opengl.GLAPI;
+import net.daporkchop.fp2.gl.opengl.GLExtension;
+import net.daporkchop.fp2.gl.opengl.GLVersion;
+import net.daporkchop.fp2.gl.opengl.attribute.texture.TextureTarget;
+import net.daporkchop.fp2.gl.opengl.buffer.BufferTarget;
+import net.daporkchop.fp2.gl.opengl.buffer.IndexedBufferTarget;
+import net.daporkchop.lib.unsafe.PUnsafe;
+
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import static net.daporkchop.fp2.gl.opengl.OpenGLConstants.*;
+import static net.daporkchop.lib.common.util.PValidation.*;
+
+/**
+ * Implementation of {@link GLAPI} which doesn't require an OpenGL context.
+ * <p>
+ * Buffer contents are stored in off-heap memory, and all other object and context state is tracked in memory so that it can be queried back in the same way as
+ * a real driver would report it. Shaders always compile and programs always link successfully, and draw commands are validated but not executed.
+ * <p>
+ * Any usage which would result in an OpenGL error (or undefined behavior) causes an {@link IllegalStateException} or {@link IllegalArgumentException} to be
+ * thrown immediately, rather than being reported by {@link #glGetError()}.
+ * <p>
+ * Every function call is counted, along with the number of bytes transferred to, from and between buffers. These statistics may be read using
+ * {@link #callCount(String)}, {@link #calls()}, {@link #bytesUploaded()} etc., and cleared using {@link #resetStats()}.
+ * <p>
+ * Like a real OpenGL context, instances of this class are not thread-safe.
+ *
+ * @author DaPorkchop_
+ */
+public class GLAPIHeadless implements GLAPI, AutoCloseable {
+    public static final int MAX_DRAW_BUFFERS = 8;
+    public static final int MAX_VERTEX_ATTRIBS = 16;
+    public static final int MAX_INDEXED_BUFFER_BINDINGS = 16;
+    public static final int MAX_TEXTURE_UNITS = 80;
+
+    protected static final int DRAW_ARRAYS_INDIRECT_COMMAND_SIZE = 4 * Integer.BYTES;
+    protected static final int DRAW_ELEMENTS_INDIRECT_COMMAND_SIZE = 5 * Integer.BYTES;
+
+    @Getter
+    protected final GLVersion version;
+    protected final String[] extensions;
+
+    //objects
+    protected final Map<Integer, Buffer> buffers = new HashMap<>();
+    protected final Map<Integer, Texture> textures = new HashMap<>();
+    protected final Map<Integer, Shader> shaders = new HashMap<>();
+    protected final Map<Integer, Program> programs = new HashMap<>();
+    protected final Map<Integer, VertexArray> vertexArrays = new HashMap<>();
+    protected int nextId = 1;
+
+    //bindings
+    protected final Map<Integer, Integer> bufferBindings = new HashMap<>();
+    protected final Map<Integer, IndexedBindings> indexedBufferBindings = new HashMap<>();
+    protected final Map<Integer, int[]> textureBindings = new HashMap<>();
+    protected int activeTexture = 0;
+    protected int boundProgram = 0;
+    protected VertexArray boundVertexArray;
+    protected boolean transformFeedbackActive;
+
+    //fixed-function state
+    protected final Set<Integer> enabledCaps = new HashSet<>();
+    protected final Map<Integer, Integer> intState = new HashMap<>();
+    protected final Map<Integer, float[]> floatState = new HashMap<>();
+    protected final boolean[] colorMask = { true, true, true, true };
+    protected boolean depthMask = true;
+    protected double clearDepth = 1.0d;
+
+    //statistics
+    protected final Map<String, long[]> calls = new TreeMap<>();
+    @Getter
+    protected long bytesUploaded;
+    @Getter
+    protected long bytesDownloaded;
+    @Getter
+    protected long bytesCopied;
+    @Getter
+    protected long drawCalls;
+    @Getter
+    protected long drawCommands;
+
+    public GLAPIHeadless() {
+        this(GLVersion.OpenGL46);
+    }
+
+    public GLAPIHeadless(@NonNull GLVersion version) {
+        this.version = version;
+
+        //report every known extension as being supported, OpenGL will ignore the ones which are already part of the core version
+        this.extensions = Stream.of(GLExtension.values())
+                .map(GLExtension::name)
+                .toArray(String[]::new);
+
+        //default vertex array object
+        this.vertexArrays.put(0, this.boundVertexArray = new VertexArray());
+
+        for (BufferTarget target : BufferTarget.values()) {
+            this.bufferBindings.put(target.id(), 0);
+        }
+        for (IndexedBufferTarget target : IndexedBufferTarget.values()) {
+            this.indexedBufferBindings.put(target.id(), new IndexedBindings());
+        }
+        for (TextureTarget target : TextureTarget.values()) {
+            this.textureBindings.put(target.target(), new int[MAX_TEXTURE_UNITS]);
+        }
+
+        //default values for fixed-function state, as defined by the OpenGL specification
+        this.intState.put(GL_BLEND_SRC_RGB, GL_ONE);
+        this.intState.put(GL_BLEND_SRC_ALPHA, GL_ONE);
+        this.intState.put(GL_BLEND_DST_RGB, GL_ZERO);
+        this.intState.put(GL_BLEND_DST_ALPHA, GL_ZERO);
+        this.intState.put(GL_BLEND_EQUATION_RGB, GL_FUNC_ADD);
+        this.intState.put(GL_BLEND_EQUATION_ALPHA, GL_FUNC_ADD);
+        this.intState.put(GL_DEPTH_FUNC, GL_LESS);
+        this.intState.put(GL_STENCIL_CLEAR_VALUE, 0);
+        this.intState.put(GL_STENCIL_WRITEMASK, -1);
+        this.intState.put(GL_STENCIL_FUNC, GL_ALWAYS);
+        this.intState.put(GL_STENCIL_REF, 0);
+        this.intState.put(GL_STENCIL_VALUE_MASK, -1);
+        this.intState.put(GL_STENCIL_FAIL, GL_KEEP);
+        this.intState.put(GL_STENCIL_PASS_DEPTH_FAIL, GL_KEEP);
+        this.intState.put(GL_STENCIL_PASS_DEPTH_PASS, GL_KEEP);
+        this.floatState.put(GL_BLEND_COLOR, new float[4]);
+        this.floatState.put(GL_COLOR_CLEAR_VALUE, new float[4]);
+    }
+
+    //
+    // STATISTICS
+    //
+
+    protected void call(@NonNull String function) {
+        this.calls.computeIfAbsent(function, f -> new long[1])[0]++;
+    }
+
+    /**
+     * @return the number of times the OpenGL function with the given name has been called since the last call to {@link #resetStats()}
+     */
+    public long callCount(@NonNull String function) {
+        long[] count = this.calls.get(function);
+        return count != null ? count[0] : 0L;
+    }
+
+    /**
+     * @return a snapshot of the number of times each OpenGL function has been called since the last call to {@link #resetStats()}
+     */
+    public Map<String, Long> calls() {
+        Map<String, Long> out = new TreeMap<>();
+        this.calls.forEach((function, count) -> out.put(function, count[0]));
+        return Collections.unmodifiableMap(out);
+    }
+
+    /**
+     * @return the total number of function calls since the last call to {@link #resetStats()}
+     */
+    public long totalCalls() {
+        return this.calls.values().stream().mapToLong(count -> count[0]).sum();
+    }
+
+    /**
+     * Resets all recorded statistics.
+     * <p>
+     * This does not affect any tracked OpenGL state.
+     */
+    public void resetStats() {
+        this.calls.clear();
+        this.bytesUploaded = 0L;
+        this.bytesDownloaded = 0L;
+        this.bytesCopied = 0L;
+        this.drawCalls = 0L;
+        this.drawCommands = 0L;
+    }
+
+    /**
+     * @return the number of buffer objects which currently exist
+     */
+    public int liveBuffers() {
+        return this.buffers.size();
+    }
+
+    /**
+     * @return the combined size of the data stores of all buffer objects which currently exist
+     */
+    public long liveBufferBytes() {
+        return this.buffers.values().stream().mapToLong(buffer -> buffer.capacity).sum();
+    }
+
+    /**
+     * @return the number of OpenGL objects of any kind which currently exist
+     */
+    public int liveObjects() {
+        return this.buffers.size() + this.textures.size() + this.shaders.size() + this.programs.size() + (this.vertexArrays.size() - 1);
+    }
+
+    /**
+     * Releases the off-heap memory used by all buffer objects which haven't been deleted.
+     */
+    @Override
+    public void close() {
+        this.buffers.values().forEach(Buffer::free);
+        this.buffers.clear();
+    }
+
+    //
+    // INTERNAL HELPERS
+    //
+
+    protected static IllegalStateException invalid(@NonNull String format, Object... args) {
+        return new IllegalStateException(String.format(format, args));
+    }
+
+    protected Buffer buffer(int id) {
+        Buffer buffer = this.buffers.get(id);
+        if (buffer == null) {
+            throw invalid("unknown buffer object: %d", id);
+        }
+        return buffer;
+    }
+
+    protected int boundBufferId(int target) {
+        if (target == GL_ELEMENT_ARRAY_BUFFER) {
+            return this.boundVertexArray.elementArray;
+        }
+
+        Integer id = this.bufferBindings.get(target);
+        if (id == null) {
+            throw new IllegalArgumentException("invalid buffer target: " + target);
+        }
+        return id;
+    }
+
+    protected Buffer boundBuffer(int target) {
+        int id = this.boundBufferId(target);
+        if (id == 0) {
+            throw invalid("no buffer is bound to target %d", target);
+        }
+        return this.buffer(id);
+    }
+
+    protected Buffer boundUnmappedBuffer(int target) {
+        Buffer buffer = this.boundBuffer(target);
+        if (buffer.mapped) {
+            throw invalid("buffer %d is currently mapped", buffer.id);
+        }
+        return buffer;
+    }
+
+    protected Texture texture(int id) {
+        Texture texture = this.textures.get(id);
+        if (texture == null) {
+            throw invalid("unknown texture object: %d", id);
+        }
+        return texture;
+    }
+
+    protected Texture boundTexture(int target) {
+        int[] units = this.textureBindings.get(target);
+        if (units == null) {
+            throw new IllegalArgumentException("invalid texture target: " + target);
+        } else if (units[this.activeTexture] == 0) {
+            throw invalid("no texture is bound to target %d on texture unit %d", target, this.activeTexture);
+        }
+        return this.texture(units[this.activeTexture]);
+    }
+
+    protected Shader shader(int id) {
+        Shader shader = this.shaders.get(id);
+        if (shader == null) {
+            throw invalid("unknown shader object: %d", id);
+        }
+        return shader;
+    }
+
+    protected Program program(int id) {
+        Program program = this.programs.get(id);
+        if (program == null) {
+            throw invalid("unknown program object: %d", id);
+        }
+        return program;
+    }
+
+    protected Program linkedProgram(int id) {
+        Program program = this.program(id);
+        if (!program.linked) {
+            throw invalid("program %d has not been linked", id);
+        }
+        return program;
+    }
+
+    protected void checkDrawState() {
+        if (this.boundProgram == 0) {
+            throw invalid("no program is bound");
+        } else if (this.boundVertexArray.id == 0) {
+            throw invalid("no vertex array object is bound");
+        }
+        this.linkedProgram(this.boundProgram);
+
+        this.buffers.values().stream()
+                .filter(buffer -> buffer.mapped)
+                .findAny().ifPresent(buffer -> {
+                    throw invalid("buffer %d is mapped while drawing", buffer.id);
+                });
+    }
+
+    protected void checkVertexAttribIndex(int index) {
+        if (index < 0 || index >= MAX_VERTEX_ATTRIBS) {
+            throw new IllegalArgumentException("invalid vertex attribute index: " + index);
+        }
+    }
+
+    protected long bufferRange(@NonNull Buffer buffer, long offset, long size) {
+        if (offset < 0L || size < 0L || offset + size > buffer.capacity) {
+            throw invalid("range [%d, %d) is out of bounds for buffer %d with size %d", offset, offset + size, buffer.id, buffer.capacity);
+        }
+        return buffer.addr + offset;
+    }
+
+    protected static byte[] toArray(@NonNull ByteBuffer data) {
+        byte[] arr = new byte[data.remaining()];
+        data.duplicate().get(arr);
+        return arr;
+    }
+
+    protected static long imageSize(int format, int type, long pixels) {
+        int components;
+        switch (format) {
+            case GL_RED:
+            case GL_RED_INTEGER:
+                components = 1;
+                break;
+            case GL_RG:
+            case GL_RG_INTEGER:
+                components = 2;
+                break;
+            case GL_RGB:
+            case GL_BGR:
+            case GL_RGB_INTEGER:
+                components = 3;
+                break;
+            case GL_RGBA:
+            case GL_BGRA:
+            case GL_RGBA_INTEGER:
+            case GL_BGRA_INTEGER:
+                components = 4;
+                break;
+            default:
+                throw new IllegalArgumentException("unsupported pixel format: " + format);
+        }
+
+        switch (type) {
+            case GL_BYTE:
+            case GL_UNSIGNED_BYTE:
+                return pixels * components;
+            case GL_SHORT:
+            case GL_UNSIGNED_SHORT:
+            case GL_HALF_FLOAT:
+                return pixels * components * 2L;
+            case GL_INT:
+            case GL_UNSIGNED_INT:
+            case GL_FLOAT:
+                return pixels * components * 4L;
+            case GL_UNSIGNED_INT_8_8_8_8:
+            case GL_UNSIGNED_INT_8_8_8_8_REV:
+                return pixels * 4L;
+            default:
+                throw new IllegalArgumentException("unsupported pixel type: " + type);
+        }
+    }
+
+    protected void texImage(int target, int level, int format, int type, long data, int... dimensions) {
+        notNegative(level, "level");
+        Texture texture = this.boundTexture(target);
+
+        long pixels = 1L;
+        for (int dimension : dimensions) {
+            pixels *= notNegative(dimension, "dimension");
+        }
+        if (level == 0) {
+            texture.dimensions = dimensions.clone();
+        }
+        texture.levels = Math.max(texture.levels, level + 1);
+
+        if (data != 0L) {
+            this.bytesUploaded += imageSize(format, type, pixels);
+        }
+    }
+
+    protected void texSubImage(int target, int level, int format, int type, int[] offsets, int... dimensions) {
+        Texture texture = this.boundTexture(target);
+        if (level < 0 || level >= texture.levels) {
+            throw invalid("texture %d has no level %d", texture.id, level);
+        }
+
+        long pixels = 1L;
+        for (int i = 0; i < dimensions.length; i++) {
+            if (offsets[i] < 0 || dimensions[i] < 0 || offsets[i] + dimensions[i] > Math.max(texture.dimensions[i] >> level, 1)) {
+                throw invalid("sub-image is out of bounds for texture %d", texture.id);
+            }
+            pixels *= dimensions[i];
+        }
+        this.bytesUploaded += imageSize(format, type, pixels);
+    }
+
+    //
+    //
+    // OpenGL 1.1
+    //
+    //
+
+    @Override
+    public void glEnable(int cap) {
+        this.call("glEnable");
+        this.enabledCaps.add(cap);
+    }
+
+    @Override
+    public void glDisable(int cap) {
+        this.call("glDisable");
+        this.enabledCaps.remove(cap);
+    }
+
+    @Override
+    public int glGetError() {
+        this.call("glGetError");
+        return GL_NO_ERROR;
+    }
+
+    @Override
+    public boolean glGetBoolean(int pname) {
+        this.call("glGetBoolean");
+        if (pname == GL_DEPTH_WRITEMASK) {
+            return this.depthMask;
+        }
+        return this.getInteger0(pname) != 0;
+    }
+
+    @Override
+    public void glGetBoolean(int pname, long data) {
+        this.call("glGetBoolean");
+        if (pname == GL_COLOR_WRITEMASK) {
+            for (int i = 0; i < 4; i++) {
+                PUnsafe.putByte(data + i, (byte) (this.colorMask[i] ? GL_TRUE : GL_FALSE));
+            }
+        } else {
+            PUnsafe.putByte(data, (byte) (this.glGetBoolean(pname) ? GL_TRUE : GL_FALSE));
+        }
+    }
+
+    @Override
+    public int glGetInteger(int pname) {
+        this.call("glGetInteger");
+        return this.getInteger0(pname);
+    }
+
+    protected int getInteger0(int pname) {
+        switch (pname) {
+            case GL_NUM_EXTENSIONS:
+                return this.extensions.length;
+            case GL_CONTEXT_FLAGS:
+                return GL_CONTEXT_FLAG_FORWARD_COMPATIBLE_BIT;
+            case GL_CONTEXT_PROFILE_MASK:
+                return GL_CONTEXT_CORE_PROFILE_BIT;
+            case GL_MAX_DRAW_BUFFERS:
+                return MAX_DRAW_BUFFERS;
+            case GL_MAX_VERTEX_ATTRIBS:
+                return MAX_VERTEX_ATTRIBS;
+            case GL_MAX_COMBINED_TEXTURE_IMAGE_UNITS:
+                return MAX_TEXTURE_UNITS;
+            case GL_MAX_UNIFORM_BUFFER_BINDINGS:
+            case GL_MAX_SHADER_STORAGE_BUFFER_BINDINGS:
+            case GL_MAX_TRANSFORM_FEEDBACK_SEPARATE_ATTRIBS:
+                return MAX_INDEXED_BUFFER_BINDINGS;
+            case GL_ACTIVE_TEXTURE:
+                return GL_TEXTURE0 + this.activeTexture;
+            case GL_CURRENT_PROGRAM:
+                return this.boundProgram;
+            case GL_VERTEX_ARRAY_BINDING:
+                return this.boundVertexArray.id;
+            case GL_ELEMENT_ARRAY_BUFFER_BINDING:
+                return this.boundVertexArray.elementArray;
+        }
+
+        for (TextureTarget target : TextureTarget.values()) {
+            if (target.binding() == pname) {
+                return this.textureBindings.get(target.target())[this.activeTexture];
+            }
+        }
+        for (BufferTarget target : BufferTarget.values()) {
+            if (target.binding() == pname) {
+                return this.boundBufferId(target.id());
+            }
+        }
+
+        Integer value = this.intState.get(pname);
+        if (value != null) {
+            return value;
+        }
+
+        switch (pname) { //capabilities which can be enabled or disabled
+            case GL_BLEND:
+            case GL_CULL_FACE:
+            case GL_DEPTH_TEST:
+            case GL_STENCIL_TEST:
+            case GL_RASTERIZER_DISCARD:
+                return this.enabledCaps.contains(pname) ? GL_TRUE : GL_FALSE;
+        }
+        if (this.enabledCaps.contains(pname)) {
+            return GL_TRUE;
+        }
+
+        throw new IllegalArgumentException("unsupported parameter name: " + pname);
+    }
+
+    @Override
+    public void glGetInteger(int pname, long data) {
+        PUnsafe.putInt(data, this.glGetInteger(pname));
+    }
+
+    @Override
+    public float glGetFloat(int pname) {
+        this.call("glGetFloat");
+        float[] value = this.floatState.get(pname);
+        return value != null ? value[0] : this.getInteger0(pname);
+    }
+
+    @Override
+    public void glGetFloat(int pname, long data) {
+        this.call("glGetFloat");
+        float[] value = this.floatState.get(pname);
+        if (value != null) {
+            for (int i = 0; i < value.length; i++) {
+                PUnsafe.putFloat(data + i * (long) Float.BYTES, value[i]);
+            }
+        } else {
+            PUnsafe.putFloat(data, this.getInteger0(pname));
+        }
+    }
+
+    @Override
+    public double glGetDouble(int pname) {
+        this.call("glGetDouble");
+        if (pname == GL_DEPTH_CLEAR_VALUE) {
+            return this.clearDepth;
+        }
+        float[] value = this.floatState.get(pname);
+        return value != null ? value[0] : this.getInteger0(pname);
+    }
+
+    @Override
+    public void glGetDouble(int pname, long data) {
+        this.call("glGetDouble");
+        float[] value = this.floatState.get(pname);
+        if (value != null) {
+            for (int i = 0; i < value.length; i++) {
+                PUnsafe.putDouble(data + i * (long) Double.BYTES, value[i]);
+            }
+        } else {
+            PUnsafe.putDouble(data, pname == GL_DEPTH_CLEAR_VALUE ? this.clearDepth : this.getInteger0(pname));
+        }
+    }
+
+    @Override
+    public String glGetString(int pname) {
+        this.call("glGetString");
+        switch (pname) {
+            case GL_VENDOR:
+                return "DaPorkchop_";
+            case GL_RENDERER:
+                return "fp2 headless";
+            case GL_VERSION:
+                return this.version.major() + "." + this.version.minor() + " headless";
+            case GL_SHADING_LANGUAGE_VERSION:
+                return this.version.glsl() / 100 + "." + this.version.glsl() % 100;
+            case GL_EXTENSIONS:
+                return String.join(" ", this.extensions);
+            default:
+                throw new IllegalArgumentException("unsupported parameter name: " + pname);
+        }
+    }
+
+    @Override
+    public void glDrawArrays(int mode, int first, int count) {
+        this.call("glDrawArrays");
+        notNegative(first, "first");
+        notNegative(count, "count");
+        this.checkDrawState();
+
+        this.drawCalls++;
+        this.drawCommands++;
+    }
+
+    @Override
+    public void glDrawElements(int mode, int count, int type, long indices) {
+        this.call("glDrawElements");
+        notNegative(count, "count");
+        this.checkDrawState();
+        this.boundUnmappedBuffer(GL_ELEMENT_ARRAY_BUFFER);
+
+        this.drawCalls++;
+        this.drawCommands++;
+    }
+
+    @Override
+    public void glDrawElements(int mode, int count, int type, @NonNull ByteBuffer indices) {
+        this.call("glDrawElements");
+        notNegative(count, "count");
+        this.checkDrawState();
+
+        this.drawCalls++;
+        this.drawCommands++;
+    }
+
+    @Override
+    public int glGenTexture() {
+        this.call("glGenTexture");
+        int id = this.nextId++;
+        this.textures.put(id, new Texture(id));
+        return id;
+    }
+
+    @Override
+    public void glDeleteTexture(int texture) {
+        this.call("glDeleteTexture");
+        if (texture == 0) {
+            return;
+        }
+
+        this.texture(texture);
+        this.textures.remove(texture);
+
+        //deleting a texture unbinds it from all texture units
+        this.textureBindings.values().forEach(units -> {
+            for (int i = 0; i < units.length; i++) {
+                if (units[i] == texture) {
+                    units[i] = 0;
+                }
+            }
+        });
+    }
+
+    @Override
+    public void glBindTexture(int target, int texture) {
+        this.call("glBindTexture");
+        int[] units = this.textureBindings.get(target);
+        if (units == null) {
+            throw new IllegalArgumentException("invalid texture target: " + target);
+        }
+
+        if (texture != 0) {
+            Texture obj = this.texture(texture);
+            if (obj.target == 0) {
+                obj.target = target;
+            } else if (obj.target != target) {
+                throw invalid("texture %d was previously bound to target %d, cannot bind to %d", texture, obj.target, target);
+            }
+        }
+        units[this.activeTexture] = texture;
+    }
+
+    @Override
+    public void glTexParameter(int target, int pname, int param) {
+        this.call("glTexParameter");
+        this.boundTexture(target).parameters.put(pname, param);
+    }
+
+    @Override
+    public void glTexParameter(int target, int pname, float param) {
+        this.call("glTexParameter");
+        this.boundTexture(target).parameters.put(pname, (int) param);
+    }
+
+    @Override
+    public int glGetTexParameterInteger(int target, int pname) {
+        this.call("glGetTexParameterInteger");
+        Texture texture = this.boundTexture(target);
+        Integer value = texture.parameters.get(pname);
+        if (value != null) {
+            return value;
+        } else if (pname == GL_TEXTURE_MAX_LEVEL) {
+            return 1000;
+        }
+        throw new IllegalArgumentException("unsupported texture parameter name: " + pname);
+    }
+
+    @Override
+    public void glTexImage1D(int target, int level, int internalformat, int width, int format, int type, long data) {
+        this.call("glTexImage1D");
+        this.texImage(target, level, format, type, data, width);
+    }
+
+    @Override
+    public void glTexImage1D(int target, int level, int internalformat, int width, int format, int type, @NonNull ByteBuffer data) {
+        this.call("glTexImage1D");
+        this.texImage(target, level, format, type, 1L, width);
+    }
+
+    @Override
+    public void glTexImage2D(int target, int level, int internalformat, int width, int height, int format, int type, long data) {
+        this.call("glTexImage2D");
+        this.texImage(target, level, format, type, data, width, height);
+    }
+
+    @Override
+    public void glTexImage2D(int target, int level, int internalformat, int width, int height, int format, int type, @NonNull ByteBuffer data) {
+        this.call("glTexImage2D");
+        this.texImage(target, level, format, type, 1L, width, height);
+    }
+
+    @Override
+    public void glTexSubImage1D(int target, int level, int xoffset, int width, int format, int type, long data) {
+        this.call("glTexSubImage1D");
+        this.texSubImage(target, level, format, type, new int[]{ xoffset }, width);
+    }
+
+    @Override
+    public void glTexSubImage1D(int target, int level, int xoffset, int width, int format, int type, @NonNull ByteBuffer data) {
+        this.call("glTexSubImage1D");
+        this.texSubImage(target, level, format, type, new int[]{ xoffset }, width);
+    }
+
+    @Override
+    public void glTexSubImage2D(int target, int level, int xoffset, int yoffset, int width, int height, int format, int type, long data) {
+        this.call("glTexSubImage2D");
+        this.texSubImage(target, level, format, type, new int[]{ xoffset, yoffset }, width, height);
+    }
+
+    @Override
+    public void glTexSubImage2D(int target, int level, int xoffset, int yoffset, int width, int height, int format, int type, @NonNull ByteBuffer data) {
+        this.call("glTexSubImage2D");
+        this.texSubImage(target, level, format, type, new int[]{ xoffset, yoffset }, width, height);
+    }
+
+    @Override
+    public void glClear(int mask) {
+        this.call("glClear");
+    }
+
+    @Override
+    public void glClearColor(float red, float green, float blue, float alpha) {
+        this.call("glClearColor");
+        this.floatState.put(GL_COLOR_CLEAR_VALUE, new float[]{ red, green, blue, alpha });
+    }
+
+    @Override
+    public void glColorMask(boolean red, boolean green, boolean blue, boolean alpha) {
+        this.call("glColorMask");
+        this.colorMask[0] = red;
+        this.colorMask[1] = green;
+        this.colorMask[2] = blue;
+        this.colorMask[3] = alpha;
+    }
+
+    @Override
+    public void glClearDepth(double depth) {
+        this.call("glClearDepth");
+        this.clearDepth = depth;
+    }
+
+    @Override
+    public void glDepthFunc(int func) {
+        this.call("glDepthFunc");
+        this.intState.put(GL_DEPTH_FUNC, func);
+    }
+
+    @Override
+    public void glDepthMask(boolean flag) {
+        this.call("glDepthMask");
+        this.depthMask = flag;
+    }
+
+    @Override
+    public void glClearStencil(int s) {
+        this.call("glClearStencil");
+        this.intState.put(GL_STENCIL_CLEAR_VALUE, s);
+    }
+
+    @Override
+    public void glStencilFunc(int func, int ref, int mask) {
+        this.call("glStencilFunc");
+        this.intState.put(GL_STENCIL_FUNC, func);
+        this.intState.put(GL_STENCIL_REF, ref);
+        this.intState.put(GL_STENCIL_VALUE_MASK, mask);
+    }
+
+    @Override
+    public void glStencilMask(int mask) {
+        this.call("glStencilMask");
+        this.intState.put(GL_STENCIL_WRITEMASK, mask);
+    }
+
+    @Override
+    public void glStencilOp(int sfail, int dpfail, int dppass) {
+        this.call("glStencilOp");
+        this.intState.put(GL_STENCIL_FAIL, sfail);
+        this.intState.put(GL_STENCIL_PASS_DEPTH_FAIL, dpfail);
+        this.intState.put(GL_STENCIL_PASS_DEPTH_PASS, dppass);
+    }
+
+    //
+    //
+    // OpenGL 1.2
+    //
+    //
+
+    @Override
+    public void glTexImage3D(int target, int level, int internalformat, int width, int height, int depth, int format, int type, long data) {
+        this.call("glTexImage3D");
+        this.texImage(target, level, format, type, data, width, height, depth);
+    }
+
+    @Override
+    public void glTexImage3D(int target, int level, int internalformat, int width, int height, int depth, int format, int type, @NonNull ByteBuffer data) {
+        this.call("glTexImage3D");
+        this.texImage(target, level, format, type, 1L, width, height, depth);
+    }
+
+    @Override
+    public void glTexSubImage3D(int target, int level, int xoffset, int yoffset, int zoffset, int width, int height, int depth, int format, int type, long data) {
+        this.call("glTexSubImage3D");
+        this.texSubImage(target, level, format, type, new int[]{ xoffset, yoffset, zoffset }, width, height, depth);
+    }
+
+    @Override
+    public void glTexSubImage3D(int target, int level, int xoffset, int yoffset, int zoffset, int width, int height, int depth, int format, int type, @NonNull ByteBuffer data) {
+        this.call("glTexSubImage3D");
+        this.texSubImage(target, level, format, type, new int[]{ xoffset, yoffset, zoffset }, width, height, depth);
+    }
+
+    //
+    //
+    // OpenGL 1.3
+    //
+    //
+
+    @Override
+    public void glActiveTexture(int texture) {
+        this.call("glActiveTexture");
+        int unit = texture - GL_TEXTURE0;
+        if (unit < 0 || unit >= MAX_TEXTURE_UNITS) {
+            throw new IllegalArgumentException("invalid texture unit: " + texture);
+        }
+        this.activeTexture = unit;
+    }
+
+    //
+    //
+    // OpenGL 1.4
+    //
+    //
+
+    @Override
+    public void glMultiDrawArrays(int mode, long first, long count, int drawcount) {
+        this.call("glMultiDrawArrays");
+        notNegative(drawcount, "drawcount");
+        this.checkDrawState();
+
+        this.drawCalls++;
+        this.drawCommands += drawcount;
+    }
+
+    @Override
+    public void glBlendColor(float red, float green, float blue, float alpha) {
+        this.call("glBlendColor");
+        this.floatState.put(GL_BLEND_COLOR, new float[]{ red, green, blue, alpha });
+    }
+
+    @Override
+    public void glBlendFuncSeparate(int sfactorRGB, int dfactorRGB, int sfactorAlpha, int dfactorAlpha) {
+        this.call("glBlendFuncSeparate");
+        this.intState.put(GL_BLEND_SRC_RGB, sfactorRGB);
+        this.intState.put(GL_BLEND_DST_RGB, dfactorRGB);
+        this.intState.put(GL_BLEND_SRC_ALPHA, sfactorAlpha);
+        this.intState.put(GL_BLEND_DST_ALPHA, dfactorAlpha);
+    }
+
+    //
+    //
+    // OpenGL 1.5
+    //
+    //
+
+    @Override
+    public int glGenBuffer() {
+        this.call("glGenBuffer");
+        int id = this.nextId++;
+        this.buffers.put(id, new Buffer(id));
+        return id;
+    }
+
+    @Override
+    public void glDeleteBuffer(int buffer) {
+        this.call("glDeleteBuffer");
+        if (buffer == 0) {
+            return;
+        }
+
+        this.buffer(buffer).free();
+        this.buffers.remove(buffer);
+
+        //deleting a buffer unbinds it from all bindings in the current context
+        this.bufferBindings.replaceAll((target, id) -> id == buffer ? 0 : id);
+        this.indexedBufferBindings.values().forEach(bindings -> bindings.unbind(buffer));
+        this.vertexArrays.values().forEach(vao -> vao.unbind(buffer));
+    }
+
+    @Override
+    public void glBindBuffer(int target, int buffer) {
+        this.call("glBindBuffer");
+        if (buffer != 0) {
+            this.buffer(buffer);
+        }
+
+        if (target == GL_ELEMENT_ARRAY_BUFFER) {
+            this.boundVertexArray.elementArray = buffer;
+        } else if (this.bufferBindings.containsKey(target)) {
+            this.bufferBindings.put(target, buffer);
+        } else {
+            throw new IllegalArgumentException("invalid buffer target: " + target);
+        }
+    }
+
+    @Override
+    public void glBufferData(int target, long data_size, long data, int usage) {
+        this.call("glBufferData");
+        notNegative(data_size, "data_size");
+        Buffer buffer = this.boundUnmappedBuffer(target);
+
+        buffer.allocate(data_size, usage);
+        if (data != 0L) {
+            PUnsafe.copyMemory(data, buffer.addr, data_size);
+            this.bytesUploaded += data_size;
+        } else {
+            PUnsafe.setMemory(buffer.addr, data_size, (byte) 0);
+        }
+    }
+
+    @Override
+    public void glBufferData(int target, @NonNull ByteBuffer data, int usage) {
+        this.call("glBufferData");
+        Buffer buffer = this.boundUnmappedBuffer(target);
+        byte[] arr = toArray(data);
+
+        buffer.allocate(arr.length, usage);
+        PUnsafe.copyMemory(arr, PUnsafe.ARRAY_BYTE_BASE_OFFSET, null, buffer.addr, arr.length);
+        this.bytesUploaded += arr.length;
+    }
+
+    @Override
+    public void glBufferSubData(int target, long offset, long data_size, long data) {
+        this.call("glBufferSubData");
+        Buffer buffer = this.boundUnmappedBuffer(target);
+
+        PUnsafe.copyMemory(data, this.bufferRange(buffer, offset, data_size), data_size);
+        this.bytesUploaded += data_size;
+    }
+
+    @Override
+    public void glBufferSubData(int target, long offset, @NonNull ByteBuffer data) {
+        this.call("glBufferSubData");
+        Buffer buffer = this.boundUnmappedBuffer(target);
+        byte[] arr = toArray(data);
+
+        PUnsafe.copyMemory(arr, PUnsafe.ARRAY_BYTE_BASE_OFFSET, null, this.bufferRange(buffer, offset, arr.length), arr.length);
+        this.bytesUploaded += arr.length;
+    }
+
+    @Override
+    public void glGetBufferSubData(int target, long offset, long data_size, long data) {
+        this.call("glGetBufferSubData");
+        Buffer buffer = this.boundUnmappedBuffer(target);
+
+        PUnsafe.copyMemory(this.bufferRange(buffer, offset, data_size), data, data_size);
+        this.bytesDownloaded += data_size;
+    }
+
+    @Override
+    public void glGetBufferSubData(int target, long offset, @NonNull ByteBuffer data) {
+        this.call("glGetBufferSubData");
+        Buffer buffer = this.boundUnmappedBuffer(target);
+        byte[] arr = new byte[data.remaining()];
+
+        PUnsafe.copyMemory(null, this.bufferRange(buffer, offset, arr.length), arr, PUnsafe.ARRAY_BYTE_BASE_OFFSET, arr.length);
+        data.duplicate().put(arr);
+        this.bytesDownloaded += arr.length;
+    }
+
+    @Override
+    public long glMapBuffer(int target, int usage) {
+        this.call("glMapBuffer");
+        Buffer buffer = this.boundUnmappedBuffer(target);
+        if (buffer.capacity == 0L) {
+            throw invalid("cannot map buffer %d with no data store", buffer.id);
+        }
+
+        buffer.mapped = true;
+        return buffer.addr;
+    }
+
+    @Override
+    public void glUnmapBuffer(int target) {
+        this.call("glUnmapBuffer");
+        Buffer buffer = this.boundBuffer(target);
+        if (!buffer.mapped) {
+            throw invalid("buffer %d is not mapped", buffer.id);
+        }
+
+        buffer.mapped = false;
+    }
+
+    //
+    //
+    // OpenGL 2.0
+    //
+    //
+
+    @Override
+    public int glCreateShader(int type) {
+        this.call("glCreateShader");
+        int id = this.nextId++;
+        this.shaders.put(id, new Shader(id, type));
+        return id;
+    }
+
+    @Override
+    public void glDeleteShader(int shader) {
+        this.call("glDeleteShader");
+        if (shader == 0) {
+            return;
+        }
+
+        this.shader(shader);
+        this.shaders.remove(shader);
+    }
+
+    @Override
+    public void glShaderSource(int shader, @NonNull CharSequence... source) {
+        this.call("glShaderSource");
+        this.shader(shader).source = String.join("", source);
+    }
+
+    @Override
+    public void glCompileShader(int shader) {
+        this.call("glCompileShader");
+        Shader obj = this.shader(shader);
+        if (obj.source == null) {
+            throw invalid("shader %d has no source code", shader);
+        }
+        obj.compiled = true;
+    }
+
+    @Override
+    public int glGetShaderi(int shader, int pname) {
+        this.call("glGetShaderi");
+        Shader obj = this.shader(shader);
+        switch (pname) {
+            case GL_COMPILE_STATUS:
+                return obj.compiled ? GL_TRUE : GL_FALSE;
+            case GL_INFO_LOG_LENGTH:
+                return 0;
+            default:
+                throw new IllegalArgumentException("unsupported shader parameter name: " + pname);
+        }
+    }
+
+    @Override
+    public String glGetShaderInfoLog(int shader) {
+        this.call("glGetShaderInfoLog");
+        this.shader(shader);
+        return "";
+    }
+
+    @Override
+    public int glCreateProgram() {
+        this.call("glCreateProgram");
+        int id = this.nextId++;
+        this.programs.put(id, new Program(id));
+        return id;
+    }
+
+    @Override
+    public void glDeleteProgram(int program) {
+        this.call("glDeleteProgram");
+        if (program == 0) {
+            return;
+        }
+
+        this.program(program);
+        this.programs.remove(program);
+        if (this.boundProgram == program) {
+            this.boundProgram = 0;
+        }
+    }
+
+    @Override
+    public void glAttachShader(int program, int shader) {
+        this.call("glAttachShader");
+        this.shader(shader);
+        if (!this.program(program).shaders.add(shader)) {
+            throw invalid("shader %d is already attached to program %d", shader, program);
+        }
+    }
+
+    @Override
+    public void glDetachShader(int program, int shader) {
+        this.call("glDetachShader");
+        if (!this.program(program).shaders.remove(shader)) {
+            throw invalid("shader %d is not attached to program %d", shader, program);
+        }
+    }
+
+    @Override
+    public void glLinkProgram(int program) {
+        this.call("glLinkProgram");
+        Program obj = this.program(program);
+        if (obj.shaders.isEmpty()) {
+            throw invalid("program %d has no attached shaders", program);
+        }
+        for (int shader : obj.shaders) {
+            if (!this.shader(shader).compiled) {
+                throw invalid("shader %d attached to program %d has not been compiled", shader, program);
+            }
+        }
+        obj.linked = true;
+    }
+
+    @Override
+    public int glGetProgrami(int program, int pname) {
+        this.call("glGetProgrami");
+        Program obj = this.program(program);
+        switch (pname) {
+            case GL_LINK_STATUS:
+                return obj.linked ? GL_TRUE : GL_FALSE;
+            case GL_INFO_LOG_LENGTH:
+                return 0;
+            default:
+                throw new IllegalArgumentException("unsupported program parameter name: " + pname);
+        }
+    }
+
+    @Override
+    public String glGetProgramInfoLog(int program) {
+        this.call("glGetProgramInfoLog");
+        this.program(program);
+        return "";
+    }
+
+    @Override
+    public void glUseProgram(int program) {
+        this.call("glUseProgram");
+        if (program != 0) {
+            this.linkedProgram(program);
+        }
+        this.boundProgram = program;
+    }
+
+    @Override
+    public void glEnableVertexAttribArray(int index) {
+        this.call("glEnableVertexAttribArray");
+        this.checkVertexAttribIndex(index);
+        this.boundVertexArray.enabledAttributes.set(index);
+    }
+
+    @Override
+    public void glDisableVertexArray(int index) {
+        this.call("glDisableVertexArray");
+        this.checkVertexAttribIndex(index);
+        this.boundVertexArray.enabledAttributes.clear(index);
+    }
+
+    @Override
+    public void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride, long pointer) {
+        this.call("glVertexAttribPointer");
+        this.vertexAttribPointer(index, size, stride, pointer);
+    }
+
+    protected void vertexAttribPointer(int index, int size, int stride, long pointer) {
+        this.checkVertexAttribIndex(index);
+        checkArg(size >= 1 && size <= 4, "invalid vertex attribute size: %d", size);
+        notNegative(stride, "stride");
+        notNegative(pointer, "pointer");
+
+        int buffer = this.boundBufferId(GL_ARRAY_BUFFER);
+        if (buffer == 0 && this.boundVertexArray.id != 0) {
+            throw invalid("no buffer is bound to GL_ARRAY_BUFFER");
+        }
+        this.boundVertexArray.attributeBuffers[index] = buffer;
+    }
+
+    @Override
+    public void glBindAttribLocation(int program, int index, @NonNull CharSequence name) {
+        this.call("glBindAttribLocation");
+        this.checkVertexAttribIndex(index);
+        this.program(program);
+    }
+
+    @Override
+    public int glGetUniformLocation(int program, @NonNull CharSequence name) {
+        this.call("glGetUniformLocation");
+        return this.linkedProgram(program).location(name.toString());
+    }
+
+    protected void uniform(int location) {
+        if (this.boundProgram == 0) {
+            throw invalid("no program is bound");
+        } else if (location < -1) {
+            throw new IllegalArgumentException("invalid uniform location: " + location);
+        }
+    }
+
+    @Override
+    public void glUniform(int location, int v0) {
+        this.call("glUniform");
+        this.uniform(location);
+    }
+
+    @Override
+    public void glUniform(int location, int v0, int v1) {
+        this.call("glUniform");
+        this.uniform(location);
+    }
+
+    @Override
+    public void glUniform(int location, int v0, int v1, int v2) {
+        this.call("glUniform");
+        this.uniform(location);
+    }
+
+    @Override
+    public void glUniform(int location, int v0, int v1, int v2, int v3) {
+        this.call("glUniform");
+        this.uniform(location);
+    }
+
+    @Override
+    public void glUniform(int location, float v0) {
+        this.call("glUniform");
+        this.uniform(location);
+    }
+
+    @Override
+    public void glUniform(int location, float v0, float v1) {
+        this.call("glUniform");
+        this.uniform(location);
+    }
+
+    @Override
+    public void glUniform(int location, float v0, float v1, float v2) {
+        this.call("glUniform");
+        this.uniform(location);
+    }
+
+    @Override
+    public void glUniform(int location, float v0, float v1, float v2, float v3) {
+        this.call("glUniform");
+        this.uniform(location);
+    }
+
+    @Override
+    public void glBlendEquationSeparate(int modeRGB, int modeAlpha) {
+        this.call("glBlendEquationSeparate");
+        this.intState.put(GL_BLEND_EQUATION_RGB, modeRGB);
+        this.intState.put(GL_BLEND_EQUATION_ALPHA, modeAlpha);
+    }
+
+    //
+    //
+    // OpenGL 3.0
+    //
+    //
+
+    @Override
+    public int glGetInteger(int pname, int idx) {
+        this.call("glGetInteger");
+        for (IndexedBufferTarget target : IndexedBufferTarget.values()) {
+            IndexedBindings bindings = this.indexedBufferBindings.get(target.id());
+            checkIndex(MAX_INDEXED_BUFFER_BINDINGS, idx);
+            if (target.binding() == pname) {
+                return bindings.buffers[idx];
+            } else if (target.bindingStart() == pname) {
+                return (int) bindings.starts[idx];
+            } else if (target.bindingSize() == pname) {
+                return (int) bindings.sizes[idx];
+            }
+        }
+        throw new IllegalArgumentException("unsupported indexed parameter name: " + pname);
+    }
+
+    @Override
+    public String glGetString(int pname, int idx) {
+        this.call("glGetString");
+        if (pname == GL_EXTENSIONS) {
+            checkIndex(this.extensions.length, idx);
+            return this.extensions[idx];
+        }
+        throw new IllegalArgumentException("unsupported indexed parameter name: " + pname);
+    }
+
+    @Override
+    public int glGenVertexArray() {
+        this.call("glGenVertexArray");
+        int id = this.nextId++;
+        this.vertexArrays.put(id, new VertexArray(id));
+        return id;
+    }
+
+    @Override
+    public void glDeleteVertexArray(int array) {
+        this.call("glDeleteVertexArray");
+        if (array == 0) {
+            return;
+        }
+
+        VertexArray vao = this.vertexArrays.get(array);
+        if (vao == null) {
+            throw invalid("unknown vertex array object: %d", array);
+        }
+        this.vertexArrays.remove(array);
+        if (this.boundVertexArray == vao) {
+            this.boundVertexArray = this.vertexArrays.get(0);
+        }
+    }
+
+    @Override
+    public void glBindVertexArray(int array) {
+        this.call("glBindVertexArray");
+        VertexArray vao = this.vertexArrays.get(array);
+        if (vao == null) {
+            throw invalid("unknown vertex array object: %d", array);
+        }
+        this.boundVertexArray = vao;
+    }
+
+    @Override
+    public void glVertexAttribIPointer(int index, int size, int type, int stride, long pointer) {
+        this.call("glVertexAttribIPointer");
+        this.vertexAttribPointer(index, size, stride, pointer);
+    }
+
+    @Override
+    public void glBindFragDataLocation(int program, int colorNumber, @NonNull CharSequence name) {
+        this.call("glBindFragDataLocation");
+        checkIndex(MAX_DRAW_BUFFERS, colorNumber);
+        this.program(program);
+    }
+
+    protected IndexedBindings indexedBindings(int target, int index) {
+        IndexedBindings bindings = this.indexedBufferBindings.get(target);
+        if (bindings == null) {
+            throw new IllegalArgumentException("invalid indexed buffer target: " + target);
+        }
+        checkIndex(MAX_INDEXED_BUFFER_BINDINGS, index);
+        return bindings;
+    }
+
+    @Override
+    public void glBindBufferBase(int target, int index, int buffer) {
+        this.call("glBindBufferBase");
+        IndexedBindings bindings = this.indexedBindings(target, index);
+        long size = buffer != 0 ? this.buffer(buffer).capacity : 0L;
+
+        bindings.buffers[index] = buffer;
+        bindings.starts[index] = 0L;
+        bindings.sizes[index] = size;
+        this.bufferBindings.put(target, buffer); //also binds to the generic binding point
+    }
+
+    @Override
+    public void glBindBufferRange(int target, int index, int buffer, long offset, long size) {
+        this.call("glBindBufferRange");
+        IndexedBindings bindings = this.indexedBindings(target, index);
+        if (buffer != 0) {
+            checkArg(size > 0L, "size (%d) must be positive", size);
+            this.bufferRange(this.buffer(buffer), offset, size);
+        }
+
+        bindings.buffers[index] = buffer;
+        bindings.starts[index] = offset;
+        bindings.sizes[index] = size;
+        this.bufferBindings.put(target, buffer); //also binds to the generic binding point
+    }
+
+    @Override
+    public void glBeginTransformFeedback(int primitiveMode) {
+        this.call("glBeginTransformFeedback");
+        if (this.transformFeedbackActive) {
+            throw invalid("transform feedback is already active");
+        } else if (this.boundProgram == 0) {
+            throw invalid("no program is bound");
+        }
+        this.transformFeedbackActive = true;
+    }
+
+    @Override
+    public void glEndTransformFeedback() {
+        this.call("glEndTransformFeedback");
+        if (!this.transformFeedbackActive) {
+            throw invalid("transform feedback is not active");
+        }
+        this.transformFeedbackActive = false;
+    }
+
+    @Override
+    public void glTransformFeedbackVaryings(int program, @NonNull CharSequence[] varyings, int bufferMode) {
+        this.call("glTransformFeedbackVaryings");
+        this.program(program);
+    }
+
+    //
+    //
+    // OpenGL 3.1
+    //
+    //
+
+    @Override
+    public void glCopyBufferSubData(int readTarget, int writeTarget, long readOffset, long writeOffset, long size) {
+        this.call("glCopyBufferSubData");
+        Buffer src = this.boundUnmappedBuffer(readTarget);
+        Buffer dst = this.boundUnmappedBuffer(writeTarget);
+        long srcAddr = this.bufferRange(src, readOffset, size);
+        long dstAddr = this.bufferRange(dst, writeOffset, size);
+        if (src == dst && readOffset < writeOffset + size && writeOffset < readOffset + size) {
+            throw invalid("source and destination ranges overlap in buffer %d", src.id);
+        }
+
+        PUnsafe.copyMemory(srcAddr, dstAddr, size);
+        this.bytesCopied += size;
+    }
+
+    @Override
+    public void glTexBuffer(int target, int internalFormat, int buffer) {
+        this.call("glTexBuffer");
+        Texture texture = this.boundTexture(target);
+        if (buffer != 0) {
+            this.buffer(buffer);
+        }
+        texture.buffer = buffer;
+    }
+
+    @Override
+    public int glGetUniformBlockIndex(int program, @NonNull CharSequence uniformBlockName) {
+        this.call("glGetUniformBlockIndex");
+        return this.linkedProgram(program).blockIndex(uniformBlockName.toString());
+    }
+
+    @Override
+    public void glUniformBlockBinding(int program, int uniformBlockIndex, int uniformBlockBinding) {
+        this.call("glUniformBlockBinding");
+        checkIndex(MAX_INDEXED_BUFFER_BINDINGS, uniformBlockBinding);
+        this.linkedProgram(program).checkBlockIndex(uniformBlockIndex);
+    }
+
+    //
+    //
+    // OpenGL 3.2
+    //
+    //
+
+    @Override
+    public void glDrawElementsBaseVertex(int mode, int count, int type, long indices, int basevertex) {
+        this.call("glDrawElementsBaseVertex");
+        notNegative(count, "count");
+        this.checkDrawState();
+        this.boundUnmappedBuffer(GL_ELEMENT_ARRAY_BUFFER);
+
+        this.drawCalls++;
+        this.drawCommands++;
+    }
+
+    @Override
+    public void glMultiDrawElementsBaseVertex(int mode, long count, int type, long indices, int drawcount, long basevertex) {
+        this.call("glMultiDrawElementsBaseVertex");
+        notNegative(drawcount, "drawcount");
+        this.checkDrawState();
+        this.boundUnmappedBuffer(GL_ELEMENT_ARRAY_BUFFER);
+
+        this.drawCalls++;
+        this.drawCommands += drawcount;
+    }
+
+    //
+    //
+    // OpenGL 3.3
+    //
+    //
+
+    @Override
+    public void glVertexAttribDivisor(int index, int divisor) {
+        this.call("glVertexAttribDivisor");
+        this.checkVertexAttribIndex(index);
+        notNegative(divisor, "divisor");
+    }
+
+    //
+    //
+    // OpenGL 4.2
+    //
+    //
+
+    @Override
+    public void glMemoryBarrier(int barriers) {
+        this.call("glMemoryBarrier");
+    }
+
+    //
+    //
+    // OpenGL 4.3
+    //
+    //
+
+    protected void multiDrawIndirect(long indirect, int primcount, int stride, int commandSize) {
+        notNegative(primcount, "primcount");
+        notNegative(stride, "stride");
+        this.checkDrawState();
+
+        Buffer buffer = this.boundUnmappedBuffer(GL_DRAW_INDIRECT_BUFFER);
+        if (primcount != 0) {
+            this.bufferRange(buffer, indirect, (primcount - 1L) * (stride != 0 ? stride : commandSize) + commandSize);
+        }
+
+        this.drawCalls++;
+        this.drawCommands += primcount;
+    }
+
+    @Override
+    public void glMultiDrawArraysIndirect(int mode, long indirect, int primcount, int stride) {
+        this.call("glMultiDrawArraysIndirect");
+        this.multiDrawIndirect(indirect, primcount, stride, DRAW_ARRAYS_INDIRECT_COMMAND_SIZE);
+    }
+
+    @Override
+    public void glMultiDrawElementsIndirect(int mode, int type, long indirect, int primcount, int stride) {
+        this.call("glMultiDrawElementsIndirect");
+        this.boundUnmappedBuffer(GL_ELEMENT_ARRAY_BUFFER);
+        this.multiDrawIndirect(indirect, primcount, stride, DRAW_ELEMENTS_INDIRECT_COMMAND_SIZE);
+    }
+
+    @Override
+    public int glGetProgramResourceIndex(int program, int programInterface, @NonNull CharSequence name) {
+        this.call("glGetProgramResourceIndex");
+        return this.linkedProgram(program).blockIndex(name.toString());
+    }
+
+    @Override
+    public void glShaderStorageBlockBinding(int program, int storageBlockIndex, int storageBlockBinding) {
+        this.call("glShaderStorageBlockBinding");
+        checkIndex(MAX_INDEXED_BUFFER_BINDINGS, storageBlockBinding);
+        this.linkedProgram(program).checkBlockIndex(storageBlockIndex);
+    }
+
+    //
+    // OBJECTS
+    //
+
+    /**
+     * A buffer object, whose data store is allocated off-heap.
+     *
+     * @author DaPorkchop_
+     */
+    protected static class Buffer {
+        protected final int id;
+
+        protected long addr;
+        protected long capacity;
+        protected int usage;
+        protected boolean mapped;
+
+        protected Buffer(int id) {
+            this.id = id;
+        }
+
+        protected void allocate(long capacity, int usage) {
+            this.free();
+            this.addr = PUnsafe.allocateMemory(Math.max(capacity, 1L));
+            this.capacity = capacity;
+            this.usage = usage;
+        }
+
+        protected void free() {
+            if (this.addr != 0L) {
+                PUnsafe.freeMemory(this.addr);
+                this.addr = 0L;
+                this.capacity = 0L;
+            }
+        }
+    }
+
+    /**
+     * @author DaPorkchop_
+     */
+    protected static class Texture {
+        protected final int id;
+        protected final Map<Integer, Integer> parameters = new HashMap<>();
+
+        protected int target;
+        protected int[] dimensions = new int[0];
+        protected int levels;
+        protected int buffer;
+
+        protected Texture(int id) {
+            this.id = id;
+        }
+    }
+
+    /**
+     * @author DaPorkchop_
+     */
+    protected static class Shader {
+        protected final int id;
+        protected final int type;
+
+        protected String source;
+        protected boolean compiled;
+
+        protected Shader(int id, int type) {
+            this.id = id;
+            this.type = type;
+        }
+    }
+
+    /**
+     * @author DaPorkchop_
+     */
+    protected static class Program {
+        protected final int id;
+        protected final Set<Integer> shaders = new HashSet<>();
+        protected final Map<String, Integer> locations = new HashMap<>();
+        protected final Map<String, Integer> blockIndices = new HashMap<>();
+
+        protected boolean linked;
+
+        protected Program(int id) {
+            this.id = id;
+        }
+
+        protected int location(@NonNull String name) {
+            return this.locations.computeIfAbsent(name, n -> this.locations.size());
+        }
+
+        protected int blockIndex(@NonNull String name) {
+            return this.blockIndices.computeIfAbsent(name, n -> this.blockIndices.size());
+        }
+
+        protected void checkBlockIndex(int index) {
+            if (index < 0 || index >= this.blockIndices.size()) {
+                throw invalid("invalid block index %d for program %d", index, this.id);
+            }
+        }
+    }
+
+    /**
+     * @author DaPorkchop_
+     */
+    protected static class VertexArray {
+        protected final int id;
+        protected final BitSet enabledAttributes = new BitSet(MAX_VERTEX_ATTRIBS);
+        protected final int[] attributeBuffers = new int[MAX_VERTEX_ATTRIBS];
+
+        protected int elementArray;
+
+        protected VertexArray() {
+            this(0);
+        }
+
+        protected VertexArray(int id) {
+            this.id = id;
+        }
+
+        protected void unbind(int buffer) {
+            if (this.elementArray == buffer) {
+                this.elementArray = 0;
+            }
+            for (int i = 0; i < this.attributeBuffers.length; i++) {
+                if (this.attributeBuffers[i] == buffer) {
+                    this.attributeBuffers[i] = 0;
+                }
+            }
+        }
+    }
+
+    /**
+     * The state of all the indexed binding points for a single {@link IndexedBufferTarget}.
+     *
+     * @author DaPorkchop_
+     */
+    protected static class IndexedBindings {
+        protected final int[] buffers = new int[MAX_INDEXED_BUFFER_BINDINGS];
+        protected final long[] starts = new long[MAX_INDEXED_BUFFER_BINDINGS];
+        protected final long[] sizes = new long[MAX_INDEXED_BUFFER_BINDINGS];
+
+        protected void unbind(int buffer) {
+            for (int i = 0; i < this.buffers.length; i++) {
+                if (this.buffers[i] == buffer) {
+                    this.buffers[i] = 0;
+                    this.starts[i] = 0L;
+                    this.sizes[i] = 0L;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+import net.daporkchop.fp2.common.util.exception.ResourceNotFoundException;
+import net.daporkchop.fp2.gl.attribute.BufferUsage;
+import net.daporkchop.fp2.gl.headless.GLAPIHeadless;
+import net.daporkchop.fp2.gl.opengl.OpenGL;
+import net.daporkchop.fp2.gl.opengl.OpenGLBuilder;
+import net.daporkchop.fp2.gl.opengl.buffer.BufferTarget;
+import net.daporkchop.fp2.gl.opengl.buffer.GLBuffer;
+import net.daporkchop.lib.unsafe.PUnsafe;
+import org.junit.Test;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import static net.daporkchop.fp2.gl.opengl.OpenGLConstants.*;
+import static org.junit.Assert.*;
+
+/**
+ * @author DaPorkchop_
+ */
+public class TestGLAPIHeadless {
+    private static OpenGL createContext(GLAPIHeadless api) {
+        return (OpenGL) new OpenGLBuilder()
+                .withApi(api)
+                .withResourceProvider(id -> {
+                    throw new ResourceNotFoundException(id);
+                })
+                .wrapCurrent();
+    }
+
+    @Test
+    public void testBufferContents() {
+        try (GLAPIHeadless api = new GLAPIHeadless();
+             OpenGL gl = createContext(api);
+             GLBuffer buffer = gl.createBuffer(BufferUsage.STATIC_DRAW)) {
+            int size = 1 << 16;
+            long src = PUnsafe.allocateMemory(size);
+            long dst = PUnsafe.allocateMemory(size);
+            try {
+                for (int i = 0; i < size; i++) {
+                    PUnsafe.putByte(src + i, (byte) ThreadLocalRandom.current().nextInt());
+                }
+
+                api.resetStats();
+                buffer.upload(src, size);
+                assertEquals(size, api.bytesUploaded());
+
+                //growing the buffer must preserve its existing contents
+                buffer.resize(size * 2L);
+                buffer.downloadRange(0L, dst, size);
+                for (int i = 0; i < size; i++) {
+                    assertEquals(PUnsafe.getByte(src + i), PUnsafe.getByte(dst + i));
+                }
+                assertEquals(size * 2L, api.liveBufferBytes());
+            } finally {
+                PUnsafe.freeMemory(src);
+                PUnsafe.freeMemory(dst);
+            }
+        }
+    }
+
+    @Test
+    public void testBindingRestored() {
+        try (GLAPIHeadless api = new GLAPIHeadless();
+             OpenGL gl = createContext(api);
+             GLBuffer buffer = gl.createBuffer(BufferUsage.STATIC_DRAW)) {
+            int other = api.glGenBuffer();
+            api.glBindBuffer(GL_ARRAY_BUFFER, other);
+
+            buffer.bind(BufferTarget.ARRAY_BUFFER, target -> assertNotEquals(other, api.glGetInteger(GL_ARRAY_BUFFER_BINDING)));
+            assertEquals(other, api.glGetInteger(GL_ARRAY_BUFFER_BINDING));
+
+            api.glDeleteBuffer(other);
+            assertEquals(0, api.glGetInteger(GL_ARRAY_BUFFER_BINDING));
+        }
+    }
+
+    @Test
+    public void testStats() {
+        try (GLAPIHeadless api = new GLAPIHeadless()) {
+            int buffer = api.glGenBuffer();
+            api.glBindBuffer(GL_COPY_READ_BUFFER, buffer);
+            api.glBufferData(GL_COPY_READ_BUFFER, 64L, 0L, GL_STATIC_DRAW);
+            api.glBufferData(GL_COPY_READ_BUFFER, 128L, 0L, GL_STATIC_DRAW);
+
+            assertEquals(1L, api.callCount("glGenBuffer"));
+            assertEquals(2L, api.callCount("glBufferData"));
+            assertEquals(4L, api.totalCalls());
+            assertEquals(0L, api.bytesUploaded()); //no source data was given
+
+            api.resetStats();
+            assertEquals(0L, api.totalCalls());
+            assertEquals(1, api.liveBuffers());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testBindUnknownBuffer() {
+        try (GLAPIHeadless api = new GLAPIHeadless()) {
+            api.glBindBuffer(GL_ARRAY_BUFFER, 1337);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testDoubleDelete() {
+        try (GLAPIHeadless api = new GLAPIHeadless()) {
+            int buffer = api.glGenBuffer();
+            api.glDeleteBuffer(buffer);
+            api.glDeleteBuffer(buffer);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testSubDataOutOfBounds() {
+        try (GLAPIHeadless api = new GLAPIHeadless()) {
+            int buffer = api.glGenBuffer();
+            api.glBindBuffer(GL_ARRAY_BUFFER, buffer);
+            api.glBufferData(GL_ARRAY_BUFFER, 16L, 0L, GL_STATIC_DRAW);
+
+            long addr = PUnsafe.allocateMemory(16L);
+            try {
+                api.glBufferSubData(GL_ARRAY_BUFFER, 8L, 16L, addr);
+            } finally {
+                PUnsafe.freeMemory(addr);
+            }
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testDrawWithoutProgram() {
+        try (GLAPIHeadless api = new GLAPIHeadless()) {
+            api.glBindVertexArray(api.glGenVertexArray());
+            api.glDrawArrays(GL_TRIANGLES, 0, 3);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testIndirectOutOfBounds() {
+        try (GLAPIHeadless api = new GLAPIHeadless()) {
+            int shader = api.glCreateShader(GL_VERTEX_SHADER);
+            api.glShaderSource(shader, "void main() {}");
+            api.glCompileShader(shader);
+            int program = api.glCreateProgram();
+            api.glAttachShader(program, shader);
+            api.glLinkProgram(program);
+            api.glUseProgram(program);
+            api.glBindVertexArray(api.glGenVertexArray());
+
+            int buffer = api.glGenBuffer();
+            api.glBindBuffer(GL_DRAW_INDIRECT_BUFFER, buffer);
+            api.glBufferData(GL_DRAW_INDIRECT_BUFFER, 4L * Integer.BYTES * 3L, 0L, GL_STREAM_DRAW);
+
+            api.glMultiDrawArraysIndirect(GL_TRIANGLES, 0L, 3, 0);
+            assertEquals(1L, api.drawCalls());
+            assertEquals(3L, api.drawCommands());
+
+            api.glMultiDrawArraysIndirect(GL_TRIANGLES, 0L, 4, 0);
+        }
+    }
+}
@@ -0,0 +1,303 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+import lombok.NonNull;
+import net.daporkchop.fp2.common.util.Identifier;
+import net.daporkchop.fp2.common.util.ResourceProvider;
+import net.daporkchop.fp2.common.util.exception.ResourceNotFoundException;
+import net.daporkchop.fp2.gl.opengl.shader.source.DirectiveTree;
+import net.daporkchop.fp2.gl.opengl.shader.source.Expression;
+import net.daporkchop.fp2.gl.opengl.shader.source.Preprocessor;
+import net.daporkchop.fp2.gl.opengl.shader.source.SourceCache;
+import net.daporkchop.fp2.gl.opengl.shader.source.SourceLine;
+import net.daporkchop.fp2.gl.opengl.shader.source.TokenizingPreprocessor;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that {@link TokenizingPreprocessor} produces exactly the same output as the reference {@link Preprocessor} on the mod's shader sources.
+ *
+ * @author DaPorkchop_
+ */
+public class TestPreprocessor {
+    private static final String[] SHADERS = {
+            "fp2:shaders/vert/voxel/voxel.vert",
+            "fp2:shaders/vert/heightmap/heightmap.vert",
+            "fp2:shaders/vert/fog.vert",
+            "fp2:shaders/frag/block.frag",
+            "fp2:shaders/frag/stencil.frag",
+            "fp2:shaders/frag/fog.frag",
+            "fp2:shaders/geom/xfb.geom",
+            "fp2:shaders/comp/indirect_draw.comp",
+            "fp2:shaders/comp/command_buffer_selection.comp",
+            "fp2:shaders/comp/voxel/voxel_frustum_culling.comp",
+            "fp2:shaders/comp/heightmap/heightmap_frustum_culling.comp",
+    };
+
+    private static final Identifier TEST_LOCATION = Identifier.from("fp2:test");
+
+    /**
+     * Loads resources straight out of the root project's resources directory, as the mod's assets aren't on the classpath of this module.
+     */
+    private static final ResourceProvider PROVIDER = new ResourceProvider() {
+        private final Path root = findAssetsRoot();
+
+        private Path findAssetsRoot() {
+            for (Path dir = Paths.get("").toAbsolutePath(); dir != null; dir = dir.getParent()) {
+                Path assets = dir.resolve("src/main/resources/assets");
+                if (Files.isDirectory(assets.resolve("fp2"))) {
+                    return assets;
+                }
+            }
+            throw new IllegalStateException("couldn't find shader sources");
+        }
+
+        @Override
+        public InputStream provideResourceAsStream(@NonNull Identifier id) throws ResourceNotFoundException {
+            try {
+                return new FileInputStream(this.root.resolve(id.namespace()).resolve(id.path()).toFile());
+            } catch (FileNotFoundException e) {
+                throw new ResourceNotFoundException(id);
+            }
+        }
+    };
+
+    private static SourceLine[] lines(@NonNull String... text) {
+        SourceLine[] lines = new SourceLine[text.length];
+        for (int i = 0; i < text.length; i++) {
+            lines[i] = new SourceLine(text[i], TEST_LOCATION, i + 1);
+        }
+        return lines;
+    }
+
+    private static Map<String, Object> macros(Object fogEnabled, int fogMode, Object debugColorsEnabled, int debugColorsMode) {
+        Map<String, Object> macros = new LinkedHashMap<>();
+        macros.put("T_SHIFT", 4);
+        macros.put("RENDER_PASS_COUNT", 3);
+        macros.put("LEVEL_0", debugColorsMode == 0);
+        if (fogEnabled != null) {
+            macros.put("FP2_FOG_ENABLED", fogEnabled);
+            macros.put("FP2_FOG_MODE", fogMode);
+        }
+        if (debugColorsEnabled != null) {
+            macros.put("FP2_DEBUG_COLORS_ENABLED", debugColorsEnabled);
+            macros.put("FP2_DEBUG_COLORS_MODE", debugColorsMode);
+        }
+
+        macros.put("COMPUTE_SHADER_LOCAL_SIZE_X", 64);
+        macros.put("COMPUTE_SHADER_LOCAL_SIZE_Y", 1);
+        macros.put("COMPUTE_SHADER_LOCAL_SIZE_Z", 1);
+        macros.put("COMPUTE_SHADER_LOCAL_SIZE_TOTAL", 64);
+        macros.put("COMPUTE_SHADER_LOCAL_ENABLE_X", true);
+        macros.put("COMPUTE_SHADER_LOCAL_ENABLE_Y", false);
+        macros.put("COMPUTE_SHADER_LOCAL_ENABLE_Z", false);
+        macros.put("COMPUTE_SHADER_GLOBAL_ENABLE_X", true);
+        macros.put("COMPUTE_SHADER_GLOBAL_ENABLE_Y", true);
+        macros.put("COMPUTE_SHADER_GLOBAL_ENABLE_Z", false);
+        macros.put("MULTIPASS_COMMAND_BUFFER_PASS_COUNT", 3);
+        macros.put("MULTIPASS_COMMAND_BUFFER_TYPE_MULTIDRAW_INDIRECT", debugColorsMode != 0);
+        return macros;
+    }
+
+    private static void assertSameOutput(@NonNull SourceCache cache, @NonNull Map<String, Object> macros, @NonNull Identifier location, @NonNull SourceLine... header) {
+        SourceLine[] expected = null;
+        RuntimeException expectedException = null;
+        try {
+            expected = new Preprocessor(PROVIDER).appendLines(header).appendLines(location).define(macros).preprocess().lines();
+        } catch (RuntimeException e) {
+            expectedException = e;
+        }
+
+        SourceLine[] actual = null;
+        RuntimeException actualException = null;
+        try {
+            actual = new TokenizingPreprocessor(cache).appendLines(header).appendLines(location).define(macros).preprocess().lines();
+        } catch (RuntimeException e) {
+            actualException = e;
+        }
+
+        if (expectedException != null) {
+            assertNotNull("expected " + expectedException + " for " + location + ' ' + macros, actualException);
+            assertEquals(location + " " + macros, expectedException.getClass(), actualException.getClass());
+        } else {
+            if (actualException != null) {
+                throw new AssertionError(location + " " + macros, actualException);
+            }
+            assertArrayEquals(location + " " + macros, expected, actual);
+        }
+    }
+
+    private static void assertSameOutput(@NonNull Map<String, Object> macros, @NonNull String... text) {
+        ResourceProvider provider = id -> {
+            throw new ResourceNotFoundException(id);
+        };
+
+        SourceLine[] expected = null;
+        RuntimeException expectedException = null;
+        try {
+            expected = new Preprocessor(provider).appendLines(lines(text)).define(macros).preprocess().lines();
+        } catch (RuntimeException e) {
+            expectedException = e;
+        }
+
+        SourceLine[] actual = null;
+        RuntimeException actualException = null;
+        try {
+            actual = new TokenizingPreprocessor(new SourceCache(provider)).appendLines(lines(text)).define(macros).preprocess().lines();
+        } catch (RuntimeException e) {
+            actualException = e;
+        }
+
+        if (expectedException != null) {
+            assertNotNull("expected " + expectedException, actualException);
+            assertEquals(expectedException.getClass(), actualException.getClass());
+        } else {
+            if (actualException != null) {
+                throw new AssertionError(String.join("\n", text), actualException);
+            }
+            assertArrayEquals(String.join("\n", text), expected, actual);
+        }
+    }
+
+    @Test
+    public void testShaderSources() {
+        SourceCache cache = new SourceCache(PROVIDER);
+        SourceLine[] header = { new SourceLine("#version 430 core", Identifier.from("fp2:header"), 1) };
+
+        for (String shader : SHADERS) {
+            Identifier location = Identifier.from(shader);
+            for (Object fogEnabled : new Object[]{ null, false, true }) {
+                for (int fogMode : new int[]{ 9729, 2048, 2049 }) {
+                    for (Object debugColorsEnabled : new Object[]{ null, false, true }) {
+                        for (int debugColorsMode = 0; debugColorsMode < 4; debugColorsMode++) {
+                            assertSameOutput(cache, macros(fogEnabled, fogMode, debugColorsEnabled, debugColorsMode), location, header);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testDirectives() {
+        Map<String, Object> macros = new HashMap<>();
+        macros.put("FOO", 1);
+        macros.put("BAR", 7);
+        macros.put("BAZ", "FOO + BAR");
+        macros.put("QUX", true);
+
+        assertSameOutput(macros, "#if 1 + 2 * 3 == 7", "a", "#else", "b", "#endif");
+        assertSameOutput(macros, "#if (1 + 2) * 3 == 9 && !defined(FOO)", "a", "#endif");
+        assertSameOutput(macros, "#ifdef FOO", "a", "#elif BAR > 3", "b", "#else", "c", "#endif");
+        assertSameOutput(macros, "#ifndef FOO", "a", "#elif BAR > 3", "b", "#else", "c", "#endif");
+        assertSameOutput(macros, "#if BAZ == 8 && QUX", "BAZ", "#endif");
+        assertSameOutput(macros, "#define AB 5", "#if AB << 1 == 10", "AB AB ABC", "#endif");
+        assertSameOutput(macros, "#undef FOO", "#ifndef FOO", "FOO", "#endif");
+        assertSameOutput(macros, "#if -3 < 0 || 0", "a", "#endif");
+        assertSameOutput(macros, "#ifdef FOO", "#if BAR", "#ifdef NOPE", "a", "#else", "b", "#endif", "#endif", "#endif");
+        assertSameOutput(macros, "#version 430 core", "#extension GL_ARB_compute_shader : require", "FOO");
+    }
+
+    @Test
+    public void testErrors() {
+        Map<String, Object> macros = Collections.singletonMap("FOO", 1);
+
+        assertSameOutput(macros, "#endif");
+        assertSameOutput(macros, "#else");
+        assertSameOutput(macros, "#if 1", "a");
+        assertSameOutput(macros, "#if", "#endif");
+        assertSameOutput(macros, "#if 1 +", "#endif");
+        assertSameOutput(macros, "#if 5 / 0", "#endif");
+        assertSameOutput(macros, "#if 1", "#else junk", "#endif");
+        assertSameOutput(macros, "#ifdef FOO junk", "#endif");
+        assertSameOutput(macros, "#error oops");
+        assertSameOutput(macros, "#define FOO 2");
+        assertSameOutput(macros, "#bogus");
+    }
+
+    @Test
+    public void testExpressions() {
+        Map<String, Long> values = new HashMap<>();
+        values.put("FOO", 3L);
+        values.put("BAR", 5L);
+
+        Expression.Context context = new Expression.Context() {
+            @Override
+            public long macroValue(@NonNull String name) {
+                Long value = values.get(name);
+                if (value == null) {
+                    throw new IllegalArgumentException("undefined macro: " + name);
+                }
+                return value;
+            }
+
+            @Override
+            public boolean isDefined(@NonNull String name) {
+                return values.containsKey(name);
+            }
+        };
+
+        assertEquals(7L, Expression.parse("1 + 2 * 3").evaluate(context));
+        assertEquals(9L, Expression.parse("(1 + 2) * 3").evaluate(context));
+        assertEquals(1L, Expression.parse("8 - 4 - 2 - 1").evaluate(context));
+        assertEquals(1L, Expression.parse("FOO < BAR && defined(FOO)").evaluate(context));
+        assertEquals(0L, Expression.parse("defined(NOPE) || !FOO").evaluate(context));
+        assertEquals(40L, Expression.parse("BAR << FOO").evaluate(context));
+        assertEquals(-2L, Expression.parse("-FOO + 1").evaluate(context));
+        assertEquals(1L, Expression.parse("(FOO | 4) == 7 && (BAR ^ 1) == 4 && (BAR & 4) == 4 && BAR % FOO == 2").evaluate(context));
+    }
+
+    @Test
+    public void testCacheReuse() {
+        Identifier location = Identifier.from("fp2:cached");
+        String[] contents = { "#ifdef FOO\na\n#endif\n" };
+        ResourceProvider provider = id -> new ByteArrayInputStream(contents[0].getBytes(StandardCharsets.UTF_8));
+        SourceCache cache = new SourceCache(provider);
+
+        DirectiveTree first = cache.get(location);
+        assertSame(first, cache.get(location));
+
+        contents[0] = "#ifndef FOO\nb\n#endif\n";
+        DirectiveTree second = cache.get(location);
+        assertNotSame(first, second);
+        assertSame(second, cache.get(location));
+
+        SourceLine[] output = new TokenizingPreprocessor(cache).appendLines(location).preprocess().lines();
+        assertEquals(1, output.length);
+        assertEquals("b", output[0].text());
+
+        cache.clear();
+        assertNotSame(second, cache.get(location));
+    }
+}
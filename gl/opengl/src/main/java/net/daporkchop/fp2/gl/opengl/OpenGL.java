@@ -76,6 +76,7 @@ import net.daporkchop.fp2.gl.opengl.draw.shader.VertexShaderImpl;
 import net.daporkchop.fp2.gl.opengl.shader.BaseShaderBuilderImpl;
 import net.daporkchop.fp2.gl.opengl.shader.BaseShaderProgramBuilderImpl;
 import net.daporkchop.fp2.gl.opengl.shader.ShaderType;
+import net.daporkchop.fp2.gl.opengl.shader.source.SourceCache;
 import net.daporkchop.fp2.gl.opengl.shader.source.SourceLine;
 import net.daporkchop.fp2.gl.opengl.transform.TransformLayoutBuilderImpl;
 import net.daporkchop.fp2.gl.opengl.transform.TransformLayoutImpl;
@@ -116,6 +117,7 @@ public class OpenGL implements GL {
 
     protected final ResourceArena resourceArena = new ResourceArena();
     protected final ResourceProvider resourceProvider;
+    protected final SourceCache shaderSourceCache;
 
     protected final Allocator directMemoryAllocator = new DirectMemoryAllocator();
 
@@ -131,10 +133,11 @@ public class OpenGL implements GL {
 
     protected OpenGL(@NonNull OpenGLBuilder builder) {
         this.resourceProvider = ResourceProvider.selectingByNamespace(OPENGL_NAMESPACE, ResourceProvider.loadingClassResources(OpenGL.class), builder.resourceProvider);
+        this.shaderSourceCache = new SourceCache(this.resourceProvider);
 
-        this.api = GlobalProperties.find(OpenGL.class, "opengl")
-                .<Supplier<GLAPI>>getInstance("api.supplier")
-                .get();
+        this.api = builder.api != null
+                ? builder.api
+                : GlobalProperties.find(OpenGL.class, "opengl").<Supplier<GLAPI>>getInstance("api.supplier").get();
 
         this.version = this.api.version();
         this.preserveInputGlState = true;
@@ -30,6 +30,19 @@ import net.daporkchop.fp2.gl.GLBuilder;
  */
 public class OpenGLBuilder implements GLBuilder.ResourceStage, GLBuilder {
     protected ResourceProvider resourceProvider;
+    protected GLAPI api;
+
+    /**
+     * Overrides the {@link GLAPI} implementation used by the created {@link OpenGL} context.
+     * <p>
+     * If not set, the implementation configured by the {@code api.supplier} property will be used.
+     *
+     * @param api the {@link GLAPI} implementation to use
+     */
+    public OpenGLBuilder withApi(@NonNull GLAPI api) {
+        this.api = api;
+        return this;
+    }
 
     //
     // ResourceStage
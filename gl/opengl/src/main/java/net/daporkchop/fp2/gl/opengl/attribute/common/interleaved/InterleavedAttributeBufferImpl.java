@@ -79,6 +79,15 @@ public final class InterleavedAttributeBufferImpl<F extends InterleavedAttribute
         //no-op
     }
 
+    @Override
+    public void copyRange(int srcIndex, int dstIndex, int count) {
+        checkRangeLen(this.capacity, srcIndex, count);
+        checkRangeLen(this.capacity, dstIndex, count);
+        checkArg(srcIndex >= dstIndex + count || dstIndex >= srcIndex + count, "source range [%d,%d) overlaps destination range [%d,%d)", srcIndex, srcIndex + count, dstIndex, dstIndex + count);
+
+        this.buffer.copyRange(this.buffer, srcIndex * this.stride, dstIndex * this.stride, count * this.stride);
+    }
+
     @Override
     public void setContents(@NonNull S struct) {
         this.structFormat.upload(struct, this.buffer);
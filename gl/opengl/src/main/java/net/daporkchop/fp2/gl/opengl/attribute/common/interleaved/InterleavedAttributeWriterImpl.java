@@ -73,6 +73,11 @@ public final class InterleavedAttributeWriterImpl<F extends InterleavedAttribute
         return this.index++;
     }
 
+    @Override
+    public void clear() {
+        this.index = 0;
+    }
+
     protected void resize(int capacity) {
         checkArg(capacity > this.capacity, "cannot resize from %d to %d", this.capacity, capacity);
 
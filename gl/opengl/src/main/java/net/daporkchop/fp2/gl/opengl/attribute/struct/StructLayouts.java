@@ -72,8 +72,12 @@ public class StructLayouts {
     }
 
     public <S> InterleavedStructLayout vertexAttributesInterleaved(@NonNull OpenGL gl, @NonNull StructInfo<S> structInfo, boolean unpacked) {
+        return vertexAttributesInterleaved(structInfo, gl.vertexAttributeAlignment(), unpacked);
+    }
+
+    public <S> InterleavedStructLayout vertexAttributesInterleaved(@NonNull StructInfo<S> structInfo, long alignment, boolean unpacked) {
         MutableLong offset = new MutableLong();
-        InterleavedStructLayout.Member member = interleaved(offset, gl.vertexAttributeAlignment(), unpacked ? structInfo.unpackedProperty() : structInfo.packedProperty());
+        InterleavedStructLayout.Member member = interleaved(offset, alignment, unpacked ? structInfo.unpackedProperty() : structInfo.packedProperty());
 
         return InterleavedStructLayout.builder()
                 .structInfo(structInfo)
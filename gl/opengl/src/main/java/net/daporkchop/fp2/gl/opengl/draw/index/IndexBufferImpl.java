@@ -64,4 +64,14 @@ public class IndexBufferImpl implements IndexBuffer {
         long size = this.format.size();
         this.buffer.uploadRange(startIndex * size, writer.addr, writer.size() * size);
     }
+
+    @Override
+    public void copyRange(int srcIndex, int dstIndex, int count) {
+        checkRangeLen(this.capacity, srcIndex, count);
+        checkRangeLen(this.capacity, dstIndex, count);
+        checkArg(srcIndex >= dstIndex + count || dstIndex >= srcIndex + count, "source range [%d,%d) overlaps destination range [%d,%d)", srcIndex, srcIndex + count, dstIndex, dstIndex + count);
+
+        long size = this.format.size();
+        this.buffer.copyRange(this.buffer, srcIndex * size, dstIndex * size, count * size);
+    }
 }
@@ -62,6 +62,11 @@ public abstract class IndexWriterImpl implements IndexWriter {
         this.addr = this.alloc.realloc(this.addr, this.capacity * (long) this.format.size());
     }
 
+    @Override
+    public void clear() {
+        this.size = 0;
+    }
+
     @Override
     public void close() {
         this.alloc.free(this.addr);
@@ -39,10 +39,30 @@ import static net.daporkchop.fp2.gl.opengl.draw.list.arrays.multidrawindirect.Mu
  * @author DaPorkchop_
  */
 public class JavaSelectedDrawListMultiDrawArraysIndirect extends DrawListMultiDrawArraysIndirect implements SimpleDrawListImpl.JavaSelected<DrawCommandArrays> {
+    /**
+     * Scratch buffer which the selected commands are compacted into before being uploaded. It is always sized to fit {@link #capacity} commands, and is
+     * re-used between frames in order to avoid allocating a new buffer every time the list is drawn.
+     */
+    protected long selectedCommandsAddr;
+
     public JavaSelectedDrawListMultiDrawArraysIndirect(@NonNull DrawListBuilderImpl builder) {
         super(builder);
     }
 
+    @Override
+    protected void resize0(int oldCapacity, int newCapacity) {
+        super.resize0(oldCapacity, newCapacity);
+
+        this.selectedCommandsAddr = this.alloc.realloc(this.selectedCommandsAddr, newCapacity * _SIZE);
+    }
+
+    @Override
+    public void close() {
+        super.close();
+
+        this.alloc.free(this.selectedCommandsAddr);
+    }
+
     @Override
     public Map<StateValueProperty<?>, Object> configureStateForDrawSelected0(@NonNull State state) {
         return this.configureStateForDraw0(state);
@@ -50,23 +70,27 @@ public class JavaSelectedDrawListMultiDrawArraysIndirect extends DrawListMultiDr
 
     @Override
     public void drawSelected0(GLAPI api, int mode, IntPredicate selector) {
-        long dstCommands = PUnsafe.allocateMemory(this.capacity * _SIZE);
-        try {
-            { //copy all commands, setting the instance count to 0 if the selector wants it disabled
-                long srcCommandAddr = this.commandsAddr;
-                long dstCommandAddr = dstCommands;
-                for (int i = 0; i < this.capacity; i++, srcCommandAddr += _SIZE, dstCommandAddr += _SIZE) {
-                    _first(dstCommandAddr, _first(srcCommandAddr));
-                    _count(dstCommandAddr, _count(srcCommandAddr));
-                    _baseInstance(dstCommandAddr, _baseInstance(srcCommandAddr));
-                    _instanceCount(dstCommandAddr, selector.test(i) ? _instanceCount(srcCommandAddr) : 0);
+        int selectedCount = 0;
+
+        { //copy all non-empty commands which the selector wants enabled into the scratch buffer, packing them tightly together
+            long srcCommandAddr = this.commandsAddr;
+            long dstCommandAddr = this.selectedCommandsAddr;
+            for (int i = 0; i < this.capacity; i++, srcCommandAddr += _SIZE) {
+                if (_instanceCount(srcCommandAddr) != 0 && _count(srcCommandAddr) != 0 && selector.test(i)) {
+                    PUnsafe.copyMemory(srcCommandAddr, dstCommandAddr, _SIZE);
+                    dstCommandAddr += _SIZE;
+                    selectedCount++;
                 }
             }
+        }
 
-            api.glBufferData(GL_DRAW_INDIRECT_BUFFER, this.capacity * _SIZE, dstCommands, GL_STREAM_DRAW);
-            api.glMultiDrawArraysIndirect(mode, 0L, this.capacity, 0);
-        } finally {
-            PUnsafe.freeMemory(dstCommands);
+        if (selectedCount == 0) { //nothing to draw
+            return;
         }
+
+        //only upload the commands which will actually be drawn. the base instance is retained from the original command, so per-command instance attributes
+        //  are still resolved correctly
+        api.glBufferData(GL_DRAW_INDIRECT_BUFFER, selectedCount * _SIZE, this.selectedCommandsAddr, GL_STREAM_DRAW);
+        api.glMultiDrawArraysIndirect(mode, 0L, selectedCount, 0);
     }
 }
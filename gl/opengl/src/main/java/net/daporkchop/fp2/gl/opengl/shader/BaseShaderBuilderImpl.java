@@ -26,8 +26,8 @@ import net.daporkchop.fp2.gl.layout.BaseLayout;
 import net.daporkchop.fp2.gl.opengl.GLExtension;
 import net.daporkchop.fp2.gl.opengl.OpenGL;
 import net.daporkchop.fp2.gl.opengl.layout.BaseLayoutImpl;
-import net.daporkchop.fp2.gl.opengl.shader.source.Preprocessor;
 import net.daporkchop.fp2.gl.opengl.shader.source.SourceLine;
+import net.daporkchop.fp2.gl.opengl.shader.source.TokenizingPreprocessor;
 import net.daporkchop.fp2.gl.shader.BaseShader;
 import net.daporkchop.fp2.gl.shader.BaseShaderBuilder;
 import net.daporkchop.fp2.gl.shader.ShaderCompilationException;
@@ -45,14 +45,14 @@ public abstract class BaseShaderBuilderImpl<S extends BaseShader<L>, L extends B
     protected final L layout;
 
     protected final ShaderType type;
-    protected final Preprocessor preprocessor;
+    protected final TokenizingPreprocessor preprocessor;
 
     public BaseShaderBuilderImpl(@NonNull OpenGL gl, @NonNull ShaderType type, @NonNull L layout) {
         this.gl = gl;
         this.type = type;
         this.layout = layout;
 
-        this.preprocessor = new Preprocessor(this.gl.resourceProvider());
+        this.preprocessor = new TokenizingPreprocessor(this.gl.shaderSourceCache());
 
         //generate header source
         StringBuilder builder = new StringBuilder();
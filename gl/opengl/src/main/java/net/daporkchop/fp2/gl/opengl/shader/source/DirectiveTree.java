@@ -0,0 +1,664 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package net.daporkchop.fp2.gl.opengl.shader.source;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import net.daporkchop.fp2.common.util.Identifier;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * A sequence of source lines which has been parsed into a tree of preprocessor directives.
+ * <p>
+ * Parsing only depends on the source text, so a tree can be built once and then evaluated any number of times with different macros by a
+ * {@link TokenizingPreprocessor}.
+ * <p>
+ * Errors in the source are only reported once the offending line is reached during evaluation, exactly like {@link Preprocessor} never looks at the lines
+ * in branches which weren't selected. The one difference is that conditional blocks must be closed in the same tree which opened them.
+ *
+ * @author DaPorkchop_
+ */
+@Getter
+public final class DirectiveTree {
+    public static final char DIRECTIVE_PREFIX = '#';
+
+    protected static final Element[] EMPTY = new Element[0];
+
+    /**
+     * Parses the given source lines.
+     * <p>
+     * The lines are expected to have already had their comments stripped.
+     *
+     * @param lines the source lines
+     * @return the parsed {@link DirectiveTree}
+     */
+    public static DirectiveTree parse(@NonNull SourceLine... lines) {
+        return new DirectiveTree(new Parser(lines).parseBlock(-1));
+    }
+
+    //
+    // character classes, these match the ones used by Preprocessor's regular expressions
+    //
+
+    /**
+     * Equivalent to a regex {@code \s}.
+     */
+    protected static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+    }
+
+    /**
+     * Equivalent to a regex {@code [A-Za-z]}.
+     */
+    protected static boolean isMacroStart(char c) {
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z');
+    }
+
+    /**
+     * Equivalent to a regex {@code [A-Za-z0-9_]}.
+     */
+    protected static boolean isMacroPart(char c) {
+        return isMacroStart(c) || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    /**
+     * Equivalent to the characters considered to be part of a word by a regex {@code \b}.
+     */
+    protected static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    protected static int skipSpaces(String text, int i) {
+        while (i < text.length() && isSpace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * @return the index of the end of the macro name starting at the given index, or {@code -1} if there isn't a macro name at the given index
+     */
+    protected static int macroEnd(String text, int start) {
+        int i = start;
+        if (i < text.length() && isMacroStart(text.charAt(i))) {
+            do {
+                i++;
+            } while (i < text.length() && isMacroPart(text.charAt(i)));
+        }
+        return i - start >= 2 ? i : -1; //macro names must be at least 2 characters long
+    }
+
+    /**
+     * Finds all of the words in the given text which could be macro names.
+     *
+     * @return the start and end indices of each word, or {@code null} if there are none
+     */
+    protected static int[] findMacroWords(String text) {
+        int[] words = null;
+        int count = 0;
+
+        for (int i = 0, len = text.length(); i < len; ) {
+            char c = text.charAt(i);
+            if (!isMacroPart(c)) {
+                i++;
+                continue;
+            }
+
+            //find the end of the run of word characters
+            int start = i;
+            do {
+                i++;
+            } while (i < len && isMacroPart(text.charAt(i)));
+
+            if (isMacroStart(c) && i - start >= 2 //the run is a valid macro name
+                && (start == 0 || !isWordChar(text.charAt(start - 1))) && (i == len || !isWordChar(text.charAt(i)))) { //the run is surrounded by word boundaries
+                if (words == null) {
+                    words = new int[8];
+                } else if (count == words.length) {
+                    int[] grown = new int[count << 1];
+                    System.arraycopy(words, 0, grown, 0, count);
+                    words = grown;
+                }
+                words[count++] = start;
+                words[count++] = i;
+            }
+        }
+
+        if (words != null && words.length != count) {
+            int[] trimmed = new int[count];
+            System.arraycopy(words, 0, trimmed, 0, count);
+            words = trimmed;
+        }
+        return words;
+    }
+
+    protected static Supplier<RuntimeException> syntaxError(@NonNull SourceLine line) {
+        return () -> new IllegalArgumentException(line.toString("syntax error"));
+    }
+
+    protected final Element[] elements;
+
+    protected DirectiveTree(@NonNull Element[] elements) {
+        this.elements = elements;
+    }
+
+    /**
+     * Splits source lines into {@link Element}s.
+     *
+     * @author DaPorkchop_
+     */
+    protected static class Parser {
+        //branch directive kinds, as recognized by Preprocessor.ANY_BRANCH_PATTERN
+        protected static final int BRANCH_NONE = -1;
+        protected static final int BRANCH_IF = 0;
+        protected static final int BRANCH_IFDEF = 1;
+        protected static final int BRANCH_IFNDEF = 2;
+        protected static final int BRANCH_EL = 3; //added to one of the condition kinds
+        protected static final int BRANCH_ELSE = 6;
+        protected static final int BRANCH_ENDIF = 7;
+
+        protected static final String[] CONDITION_SUFFIXES = { "", "def", "ndef" };
+
+        protected static int conditionKind(String text, int start) {
+            if (text.startsWith("if", start)) {
+                //try the longer suffixes first, the same way the regex would backtrack
+                for (int kind = BRANCH_IFNDEF; kind >= BRANCH_IF; kind--) {
+                    int end = start + 2 + CONDITION_SUFFIXES[kind].length();
+                    if (text.startsWith(CONDITION_SUFFIXES[kind], start + 2) && end < text.length() && isSpace(text.charAt(end))) {
+                        return kind;
+                    }
+                }
+            }
+            return BRANCH_NONE;
+        }
+
+        protected static int branchKind(String text) {
+            int kind;
+            if (text.startsWith("el", 1) && (kind = conditionKind(text, 3)) != BRANCH_NONE) {
+                return kind + BRANCH_EL;
+            } else if ((kind = conditionKind(text, 1)) != BRANCH_NONE) {
+                return kind;
+            } else if (text.startsWith("else", 1)) {
+                return BRANCH_ELSE;
+            } else if (text.startsWith("endif", 1)) {
+                return BRANCH_ENDIF;
+            } else {
+                return BRANCH_NONE;
+            }
+        }
+
+        /**
+         * @return the name of the directive on the given line, or {@code null} if it isn't a valid directive name
+         */
+        protected static String directiveName(String text) {
+            int end = 1;
+            while (end < text.length() && text.charAt(end) >= 'a' && text.charAt(end) <= 'z') {
+                end++;
+            }
+            return end > 1 && (end == text.length() || isSpace(text.charAt(end))) ? text.substring(1, end) : null;
+        }
+
+        protected final SourceLine[] lines;
+        protected int index;
+
+        protected Parser(@NonNull SourceLine[] lines) {
+            this.lines = lines;
+        }
+
+        /**
+         * Parses elements until the end of the source, or until a directive which continues the enclosing conditional block is reached.
+         *
+         * @param depth the number of conditional blocks which enclose the elements, or {@code -1} if they aren't the body of a conditional block
+         */
+        protected Element[] parseBlock(int depth) {
+            List<Element> elements = new ArrayList<>();
+
+            while (this.index < this.lines.length) {
+                SourceLine line = this.lines[this.index];
+                String text = line.text();
+
+                if (text.isEmpty() || text.charAt(0) != DIRECTIVE_PREFIX) { //not a directive, the line is just text
+                    elements.add(new Text(line, findMacroWords(text)));
+                    this.index++;
+                    continue;
+                }
+
+                int branchKind = branchKind(text);
+                if (depth >= 0 && branchKind >= BRANCH_EL) { //this directive belongs to the enclosing block
+                    break;
+                }
+
+                elements.add(this.parseDirective(line, text, branchKind, depth + 1));
+            }
+
+            return elements.isEmpty() ? EMPTY : elements.toArray(EMPTY);
+        }
+
+        protected Element parseDirective(SourceLine line, String text, int branchKind, int depth) {
+            String name = directiveName(text);
+            if (name == null) {
+                this.index++;
+                return new Failure(syntaxError(line));
+            }
+
+            switch (name) {
+                case "define":
+                    this.index++;
+                    return this.parseDefine(line, text);
+                case "undef":
+                    this.index++;
+                    return this.parseUndef(line, text);
+                case "include":
+                    this.index++;
+                    return this.parseInclude(line, text);
+                case "error":
+                    this.index++;
+                    return this.parseError(line, text);
+                case "if":
+                case "ifdef":
+                case "ifndef":
+                    if (branchKind < BRANCH_IF || branchKind > BRANCH_IFNDEF) {
+                        this.index++;
+                        return new Failure(() -> new IllegalStateException(line.toString("first directive in branch expression isn't a condition")));
+                    }
+                    return this.parseConditional(depth);
+                case "elif":
+                case "elifdef":
+                case "elifndef":
+                case "else":
+                case "endif":
+                    this.index++;
+                    return new Failure(() -> new IllegalArgumentException(line.toString("dangling " + name)));
+                case "version": //we don't want to process these directives ourselves, so we ignore them to let GLSL process them
+                case "extension":
+                    this.index++;
+                    return new Passthrough(line);
+                default:
+                    this.index++;
+                    return new Failure(() -> new IllegalArgumentException(line.toString("invalid preprocessor directive")));
+            }
+        }
+
+        protected Element parseDefine(SourceLine line, String text) {
+            //#define\s+(MACRO)(?:\s+(.+))?
+            int keyStart = skipSpaces(text, 7);
+            int keyEnd;
+            if (keyStart == 7 || (keyEnd = macroEnd(text, keyStart)) < 0) {
+                return new Failure(syntaxError(line));
+            }
+
+            String value = null;
+            int valueStart = skipSpaces(text, keyEnd);
+            if (valueStart < text.length()) {
+                if (valueStart != keyEnd) {
+                    value = text.substring(valueStart);
+                }
+            } else if (valueStart - keyEnd >= 2) { //only whitespace follows the name, the regex would have backtracked to give the last space to the value
+                value = text.substring(text.length() - 1);
+            }
+            return new Define(line, text.substring(keyStart, keyEnd), value);
+        }
+
+        protected Element parseUndef(SourceLine line, String text) {
+            //#undef\s+(MACRO)\s*$
+            int keyStart = skipSpaces(text, 6);
+            int keyEnd;
+            if (keyStart == 6 || (keyEnd = macroEnd(text, keyStart)) < 0 || skipSpaces(text, keyEnd) != text.length()) {
+                return new Failure(syntaxError(line));
+            }
+            return new Undef(line, text.substring(keyStart, keyEnd));
+        }
+
+        protected Element parseInclude(SourceLine line, String text) {
+            //#include\s+(?:<"(.*?)">|"(.*?)")\s*$
+            int start = skipSpaces(text, 8);
+            int end = text.length();
+            while (end > start && isSpace(text.charAt(end - 1))) {
+                end--;
+            }
+
+            if (start != 8) {
+                if (end - start >= 4 && text.startsWith("<\"", start) && text.startsWith("\">", end - 2)) {
+                    return new Include(line, text.substring(start + 2, end - 2));
+                } else if (end - start >= 2 && text.charAt(start) == '"' && text.charAt(end - 1) == '"') {
+                    return new Failure(() -> new UnsupportedOperationException("relative include path"));
+                }
+            }
+            return new Failure(syntaxError(line));
+        }
+
+        protected Element parseError(SourceLine line, String text) {
+            //#error(\s+.+)?$
+            String message;
+            if (text.length() == 6) {
+                message = null;
+            } else if (text.length() - 6 >= 2) {
+                message = text.substring(6);
+            } else {
+                return new Failure(syntaxError(line));
+            }
+            return new Failure(() -> new IllegalStateException(line.toString(message + '\n', false)));
+        }
+
+        /**
+         * Parses a conditional block, starting at the current line.
+         * <p>
+         * Structural errors in the block (or in any blocks nested inside it) are recorded in the outermost block, as {@link Preprocessor} only reports them
+         * once it reaches that block.
+         *
+         * @param depth the number of conditional blocks which enclose this one
+         */
+        protected Element parseConditional(int depth) {
+            List<Branch> branches = new ArrayList<>();
+            SourceLine lastLine = null;
+
+            try {
+                while (true) {
+                    if (this.index == this.lines.length) {
+                        SourceLine line = lastLine;
+                        throw new ScanError(() -> new IllegalStateException(line.toString("EOF reached before block could be closed")));
+                    }
+
+                    SourceLine line = lastLine = this.lines[this.index++];
+                    int kind = Parser.branchKind(line.text());
+
+                    if (kind == BRANCH_ELSE) {
+                        if (skipSpaces(line.text(), 5) != line.text().length()) { //#else\s*$
+                            throw new ScanError(syntaxError(line));
+                        }
+                        branches.add(new Branch(line, null, EMPTY));
+                    } else if (kind == BRANCH_ENDIF) {
+                        if (skipSpaces(line.text(), 6) != line.text().length()) { //#endif\s*$
+                            throw new ScanError(syntaxError(line));
+                        }
+                        return new Conditional(branches.toArray(new Branch[0]), null);
+                    } else { //a condition, nested conditions are handled by parseBlock, so this is either the first one or an elif
+                        branches.add(new Branch(line, this.parseCondition(line, kind), EMPTY));
+                    }
+
+                    //the branch's body is parsed separately, so that the branch is still present if the body is malformed
+                    Element[] body = this.parseBlock(depth);
+                    Branch branch = branches.get(branches.size() - 1);
+                    branches.set(branches.size() - 1, new Branch(branch.line, branch.condition, body));
+                }
+            } catch (ScanError e) {
+                if (depth != 0) { //let the outermost block record the error
+                    throw e;
+                }
+
+                //nothing after this block can be reached, as evaluation will always fail here
+                this.index = this.lines.length;
+                return new Conditional(branches.toArray(new Branch[0]), e.factory);
+            }
+        }
+
+        protected Condition parseCondition(SourceLine line, int kind) {
+            String text = line.text();
+            boolean el = kind >= BRANCH_EL;
+            int start = (el ? 3 : 1) + 2 + CONDITION_SUFFIXES[kind % BRANCH_EL].length(); //skip the directive name
+
+            switch (kind % BRANCH_EL) {
+                case BRANCH_IF: { //#(?:el)?if\s+(.+)\s*$
+                    String expr = text.substring(start).trim();
+                    if (expr.isEmpty()) {
+                        return new FailedCondition(syntaxError(line));
+                    }
+
+                    try {
+                        return new ExpressionCondition(Expression.parse(expr));
+                    } catch (RuntimeException e) {
+                        return new FailedCondition(() -> new IllegalArgumentException(line.toString("failed to parse expression"), e));
+                    }
+                }
+                case BRANCH_IFDEF:
+                case BRANCH_IFNDEF: { //#(?:el)?ifn?def\s+(MACRO)\s*$
+                    int keyStart = skipSpaces(text, start);
+                    int keyEnd;
+                    if ((keyEnd = macroEnd(text, keyStart)) < 0 || skipSpaces(text, keyEnd) != text.length()) {
+                        return new FailedCondition(syntaxError(line));
+                    }
+                    return new DefinedCondition(text.substring(keyStart, keyEnd), kind % BRANCH_EL == BRANCH_IFDEF);
+                }
+                default: //impossible
+                    throw new IllegalArgumentException(String.valueOf(kind));
+            }
+        }
+    }
+
+    /**
+     * Thrown while parsing a conditional block to abort parsing it.
+     *
+     * @author DaPorkchop_
+     */
+    @RequiredArgsConstructor
+    protected static final class ScanError extends RuntimeException {
+        @NonNull
+        protected final Supplier<RuntimeException> factory;
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this; //this is only used for control flow
+        }
+    }
+
+    //
+    // ELEMENTS
+    //
+
+    /**
+     * A single element of a {@link DirectiveTree}.
+     *
+     * @author DaPorkchop_
+     */
+    public static abstract class Element {
+    }
+
+    /**
+     * A line of ordinary source code, which will have macros substituted into it.
+     *
+     * @author DaPorkchop_
+     */
+    @RequiredArgsConstructor
+    @Getter
+    public static final class Text extends Element {
+        @NonNull
+        protected final SourceLine line;
+
+        /**
+         * The start and end indices of each word in the line which could be a macro name, or {@code null} if there are none.
+         */
+        protected final int[] words;
+    }
+
+    /**
+     * A directive which should be passed through to the GLSL compiler unmodified.
+     *
+     * @author DaPorkchop_
+     */
+    @RequiredArgsConstructor
+    @Getter
+    public static final class Passthrough extends Element {
+        @NonNull
+        protected final SourceLine line;
+    }
+
+    /**
+     * {@code #define}
+     *
+     * @author DaPorkchop_
+     */
+    @RequiredArgsConstructor
+    @Getter
+    public static final class Define extends Element {
+        @NonNull
+        protected final SourceLine line;
+        @NonNull
+        protected final String key;
+        protected final String value;
+    }
+
+    /**
+     * {@code #undef}
+     *
+     * @author DaPorkchop_
+     */
+    @RequiredArgsConstructor
+    @Getter
+    public static final class Undef extends Element {
+        @NonNull
+        protected final SourceLine line;
+        @NonNull
+        protected final String key;
+    }
+
+    /**
+     * {@code #include}
+     *
+     * @author DaPorkchop_
+     */
+    @RequiredArgsConstructor
+    @Getter
+    public static final class Include extends Element {
+        @NonNull
+        protected final SourceLine line;
+        @NonNull
+        protected final String path;
+
+        public Identifier location() {
+            return Identifier.from(this.path);
+        }
+    }
+
+    /**
+     * An element which always fails, either because it is malformed or because it is an {@code #error} directive.
+     *
+     * @author DaPorkchop_
+     */
+    @RequiredArgsConstructor
+    @Getter
+    public static final class Failure extends Element {
+        @NonNull
+        protected final Supplier<RuntimeException> factory;
+    }
+
+    /**
+     * A conditional block.
+     *
+     * @author DaPorkchop_
+     */
+    @RequiredArgsConstructor
+    @Getter
+    public static final class Conditional extends Element {
+        @NonNull
+        protected final Branch[] branches;
+
+        /**
+         * If non-{@code null}, the block is malformed. All of the branches' conditions must be evaluated before the error is reported.
+         */
+        protected final Supplier<RuntimeException> error;
+    }
+
+    /**
+     * A single branch of a {@link Conditional}.
+     *
+     * @author DaPorkchop_
+     */
+    @RequiredArgsConstructor
+    @Getter
+    public static final class Branch {
+        @NonNull
+        protected final SourceLine line;
+
+        /**
+         * The branch's condition, or {@code null} if this is an {@code #else} branch.
+         */
+        protected final Condition condition;
+
+        @NonNull
+        protected final Element[] body;
+    }
+
+    //
+    // CONDITIONS
+    //
+
+    /**
+     * The condition of a {@link Branch}.
+     *
+     * @author DaPorkchop_
+     */
+    public static abstract class Condition {
+        public abstract boolean test(@NonNull Expression.Context context);
+    }
+
+    /**
+     * {@code #if} and {@code #elif}
+     *
+     * @author DaPorkchop_
+     */
+    @RequiredArgsConstructor
+    protected static final class ExpressionCondition extends Condition {
+        @NonNull
+        protected final Expression expression;
+
+        @Override
+        public boolean test(@NonNull Expression.Context context) {
+            return this.expression.evaluate(context) != 0L;
+        }
+    }
+
+    /**
+     * {@code #ifdef}, {@code #ifndef}, {@code #elifdef} and {@code #elifndef}
+     *
+     * @author DaPorkchop_
+     */
+    @RequiredArgsConstructor
+    protected static final class DefinedCondition extends Condition {
+        @NonNull
+        protected final String key;
+        protected final boolean expected;
+
+        @Override
+        public boolean test(@NonNull Expression.Context context) {
+            return context.isDefined(this.key) == this.expected;
+        }
+    }
+
+    /**
+     * A malformed condition, which fails when it is evaluated.
+     *
+     * @author DaPorkchop_
+     */
+    @RequiredArgsConstructor
+    protected static final class FailedCondition extends Condition {
+        @NonNull
+        protected final Supplier<RuntimeException> factory;
+
+        @Override
+        public boolean test(@NonNull Expression.Context context) {
+            throw this.factory.get();
+        }
+    }
+}
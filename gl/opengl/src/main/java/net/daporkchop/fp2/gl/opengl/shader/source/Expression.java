@@ -0,0 +1,369 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package net.daporkchop.fp2.gl.opengl.shader.source;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A parsed preprocessor expression, as used by {@code #if} and {@code #elif} directives.
+ * <p>
+ * Supports integer literals, macro names, {@code defined(MACRO)}, parentheses, the unary operators {@code !} and {@code -}, and the usual C binary operators,
+ * with the usual C precedence. All binary operators are left-associative, and both operands are always evaluated.
+ *
+ * @author DaPorkchop_
+ */
+public abstract class Expression {
+    //binary operators, from lowest to highest precedence
+    protected static final String[][] BINARY_OPERATORS_PRIORITIZED = {
+            { "||" },
+            { "&&" },
+            { "|" },
+            { "^" },
+            { "&" },
+            { "==", "!=" },
+            { "<", ">", "<=", ">=" },
+            { "<<", ">>", ">>>" },
+            { "+", "-" },
+            { "*", "/", "%" },
+    };
+
+    //all multi-character operators must come before any of their prefixes
+    protected static final String[] OPERATOR_TOKENS = {
+            ">>>", "<<", ">>", "<=", ">=", "==", "!=", "&&", "||",
+            "+", "-", "*", "/", "%", "&", "|", "^", "<", ">", "!", "(", ")",
+    };
+
+    /**
+     * Parses the given expression.
+     *
+     * @param expr the expression
+     * @return the parsed expression
+     * @throws IllegalArgumentException if the expression is malformed
+     */
+    public static Expression parse(@NonNull String expr) {
+        Parser parser = new Parser(tokenize(expr), expr);
+        Expression expression = parser.parseBinary(0);
+        if (parser.index != parser.tokens.size()) {
+            throw new IllegalArgumentException("unexpected token '" + parser.tokens.get(parser.index) + "' in expression: " + expr);
+        }
+        return expression;
+    }
+
+    protected static List<String> tokenize(String expr) {
+        List<String> tokens = new ArrayList<>();
+
+        TOKENS:
+        for (int i = 0, len = expr.length(); i < len; ) {
+            char c = expr.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+
+            if (isIdentifierStart(c) || isDigit(c)) { //identifiers and numbers are both a run of word characters
+                int start = i;
+                do {
+                    i++;
+                } while (i < len && (isIdentifierStart(expr.charAt(i)) || isDigit(expr.charAt(i))));
+                tokens.add(expr.substring(start, i));
+                continue;
+            }
+
+            for (String operator : OPERATOR_TOKENS) {
+                if (expr.startsWith(operator, i)) {
+                    tokens.add(operator);
+                    i += operator.length();
+                    continue TOKENS;
+                }
+            }
+            throw new IllegalArgumentException("unexpected character '" + c + "' in expression: " + expr);
+        }
+        return tokens;
+    }
+
+    protected static boolean isIdentifierStart(char c) {
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || c == '_';
+    }
+
+    protected static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    protected static long evaluateOperation(long a, long b, @NonNull String operation) {
+        switch (operation) {
+            case "+":
+                return Math.addExact(a, b);
+            case "-":
+                return Math.subtractExact(a, b);
+            case "*":
+                return Math.multiplyExact(a, b);
+            case "/":
+                return a / b;
+            case "%":
+                return a % b;
+            case "&":
+                return a & b;
+            case "|":
+                return a | b;
+            case "^":
+                return a ^ b;
+            case "==":
+                return a == b ? 1L : 0L;
+            case "!=":
+                return a != b ? 1L : 0L;
+            case "<":
+                return a < b ? 1L : 0L;
+            case ">":
+                return a > b ? 1L : 0L;
+            case "<=":
+                return a <= b ? 1L : 0L;
+            case ">=":
+                return a >= b ? 1L : 0L;
+            case "&&":
+                return a != 0L && b != 0L ? 1L : 0L;
+            case "||":
+                return (a | b) != 0L ? 1L : 0L;
+            case "<<":
+                return a << b;
+            case ">>":
+                return a >> b;
+            case ">>>":
+                return a >>> b;
+            default: //impossible
+                throw new IllegalArgumentException("invalid operation: " + operation);
+        }
+    }
+
+    /**
+     * Evaluates this expression.
+     *
+     * @param context the {@link Context} to resolve macros with
+     * @return the expression's value
+     */
+    public abstract long evaluate(@NonNull Context context);
+
+    /**
+     * Resolves macros while evaluating an {@link Expression}.
+     *
+     * @author DaPorkchop_
+     */
+    public interface Context {
+        /**
+         * @param name the macro's name
+         * @return the macro's value
+         */
+        long macroValue(@NonNull String name);
+
+        /**
+         * @param name the macro's name
+         * @return whether or not the macro is defined
+         */
+        boolean isDefined(@NonNull String name);
+    }
+
+    /**
+     * Recursive-descent parser over a list of tokens.
+     *
+     * @author DaPorkchop_
+     */
+    @RequiredArgsConstructor
+    protected static class Parser {
+        @NonNull
+        protected final List<String> tokens;
+        @NonNull
+        protected final String expr;
+
+        protected int index;
+
+        protected String peek() {
+            return this.index < this.tokens.size() ? this.tokens.get(this.index) : null;
+        }
+
+        protected String next() {
+            if (this.index >= this.tokens.size()) {
+                throw new IllegalArgumentException("unexpected end of expression: " + this.expr);
+            }
+            return this.tokens.get(this.index++);
+        }
+
+        protected void expect(@NonNull String token) {
+            String next = this.next();
+            if (!token.equals(next)) {
+                throw new IllegalArgumentException("expected '" + token + "' but found '" + next + "' in expression: " + this.expr);
+            }
+        }
+
+        protected Expression parseBinary(int level) {
+            if (level == BINARY_OPERATORS_PRIORITIZED.length) {
+                return this.parseUnary();
+            }
+
+            Expression result = this.parseBinary(level + 1);
+            OPERATORS:
+            while (true) {
+                String token = this.peek();
+                for (String operator : BINARY_OPERATORS_PRIORITIZED[level]) {
+                    if (operator.equals(token)) {
+                        this.index++;
+                        result = new Binary(operator, result, this.parseBinary(level + 1));
+                        continue OPERATORS;
+                    }
+                }
+                return result;
+            }
+        }
+
+        protected Expression parseUnary() {
+            String token = this.peek();
+            if ("!".equals(token)) {
+                this.index++;
+                return new Not(this.parseUnary());
+            } else if ("-".equals(token)) {
+                this.index++;
+                String operand = this.peek();
+                if (operand != null && isDigit(operand.charAt(0))) { //negative literal, parse it directly so that Long.MIN_VALUE doesn't overflow
+                    this.index++;
+                    return new Literal(Long.parseLong('-' + operand));
+                }
+                return new Negate(this.parseUnary());
+            }
+            return this.parsePrimary();
+        }
+
+        protected Expression parsePrimary() {
+            String token = this.next();
+            if ("(".equals(token)) {
+                Expression inner = this.parseBinary(0);
+                this.expect(")");
+                return inner;
+            } else if (isDigit(token.charAt(0))) {
+                return new Literal(Long.parseLong(token));
+            } else if (isIdentifierStart(token.charAt(0))) {
+                if ("defined".equals(token)) {
+                    this.expect("(");
+                    String name = this.next();
+                    if (!isIdentifierStart(name.charAt(0))) {
+                        throw new IllegalArgumentException("expected macro name but found '" + name + "' in expression: " + this.expr);
+                    }
+                    this.expect(")");
+                    return new Defined(name);
+                }
+                return new Macro(token);
+            } else {
+                throw new IllegalArgumentException("unexpected token '" + token + "' in expression: " + this.expr);
+            }
+        }
+    }
+
+    /**
+     * @author DaPorkchop_
+     */
+    @RequiredArgsConstructor
+    protected static final class Literal extends Expression {
+        protected final long value;
+
+        @Override
+        public long evaluate(@NonNull Context context) {
+            return this.value;
+        }
+    }
+
+    /**
+     * @author DaPorkchop_
+     */
+    @RequiredArgsConstructor
+    protected static final class Macro extends Expression {
+        @NonNull
+        protected final String name;
+
+        @Override
+        public long evaluate(@NonNull Context context) {
+            return context.macroValue(this.name);
+        }
+    }
+
+    /**
+     * @author DaPorkchop_
+     */
+    @RequiredArgsConstructor
+    protected static final class Defined extends Expression {
+        @NonNull
+        protected final String name;
+
+        @Override
+        public long evaluate(@NonNull Context context) {
+            return context.isDefined(this.name) ? 1L : 0L;
+        }
+    }
+
+    /**
+     * @author DaPorkchop_
+     */
+    @RequiredArgsConstructor
+    protected static final class Not extends Expression {
+        @NonNull
+        protected final Expression operand;
+
+        @Override
+        public long evaluate(@NonNull Context context) {
+            return this.operand.evaluate(context) == 0L ? 1L : 0L;
+        }
+    }
+
+    /**
+     * @author DaPorkchop_
+     */
+    @RequiredArgsConstructor
+    protected static final class Negate extends Expression {
+        @NonNull
+        protected final Expression operand;
+
+        @Override
+        public long evaluate(@NonNull Context context) {
+            return Math.negateExact(this.operand.evaluate(context));
+        }
+    }
+
+    /**
+     * @author DaPorkchop_
+     */
+    @RequiredArgsConstructor
+    protected static final class Binary extends Expression {
+        @NonNull
+        protected final String operation;
+        @NonNull
+        protected final Expression a;
+        @NonNull
+        protected final Expression b;
+
+        @Override
+        public long evaluate(@NonNull Context context) {
+            //both operands are always evaluated, there is no short-circuiting
+            long a = this.a.evaluate(context);
+            long b = this.b.evaluate(context);
+            return evaluateOperation(a, b, this.operation);
+        }
+    }
+}
@@ -43,6 +43,8 @@ import static net.daporkchop.lib.common.util.PValidation.*;
 
 /**
  * Custom preprocessor implementation for GLSL source files.
+ * <p>
+ * Shaders are now preprocessed by {@link TokenizingPreprocessor}, this implementation is only kept as a reference to compare its output against.
  *
  * @author DaPorkchop_
  */
@@ -0,0 +1,155 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package net.daporkchop.fp2.gl.opengl.shader.source;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.SneakyThrows;
+import net.daporkchop.fp2.common.util.Identifier;
+import net.daporkchop.fp2.common.util.ResourceProvider;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches the {@link DirectiveTree}s of shader source files, so that each file only needs to be parsed once no matter how many shaders include it.
+ * <p>
+ * Source files are still read every time they are requested, and are only re-parsed if their contents have changed. This ensures that reloading shaders
+ * after the underlying resources have been changed (e.g. by a resource pack) picks up the new sources.
+ *
+ * @author DaPorkchop_
+ */
+@RequiredArgsConstructor
+public class SourceCache {
+    /**
+     * Strips all comments from the given source lines, discarding any lines which are left empty.
+     *
+     * @param lines the source lines
+     * @return the remaining source lines
+     */
+    public static SourceLine[] stripComments(@NonNull List<SourceLine> lines) {
+        List<SourceLine> out = new ArrayList<>(lines.size());
+        StringBuilder builder = new StringBuilder();
+        boolean inMultilineComment = false;
+
+        for (SourceLine line : lines) {
+            String text = line.text();
+
+            builder.setLength(0);
+
+            ITERATE_CHARS:
+            for (int i = 0, len = text.length(); i < len; i++) {
+                char c = text.charAt(i);
+
+                if (inMultilineComment) { //we're currently in a multiline comment
+                    if (c == '*' && i + 1 < len && text.charAt(i + 1) == '/') { //we reached the end of the comment
+                        inMultilineComment = false;
+                        i++;
+                    }
+                } else {
+                    if (c == '/' && i + 1 < len) { //this is a potential comment start
+                        switch (text.charAt(i + 1)) {
+                            case '/': //single line comment
+                                break ITERATE_CHARS;
+                            case '*': //multiline comment
+                                inMultilineComment = true;
+                                i++;
+                                continue;
+                        }
+                    }
+
+                    //no special handling required for this char, copy it
+                    builder.append(c);
+                }
+            }
+
+            if (builder.length() == 0) { //line is empty, discard it
+                continue;
+            }
+
+            String stripped = builder.length() == text.length() ? text : builder.toString();
+            if (!stripped.trim().isEmpty()) { //line isn't effectively empty, keep it
+                out.add(line.withText(stripped));
+            }
+        }
+        return out.toArray(new SourceLine[0]);
+    }
+
+    @NonNull
+    protected final ResourceProvider resourceProvider;
+
+    protected final Map<Identifier, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Gets the {@link DirectiveTree} for the source file with the given {@link Identifier}.
+     *
+     * @param location the source file's location
+     * @return the parsed source file
+     */
+    public DirectiveTree get(@NonNull Identifier location) {
+        List<String> text = this.read(location);
+
+        Entry entry = this.entries.get(location);
+        if (entry == null || !entry.text.equals(text)) { //the file hasn't been parsed yet, or its contents have changed since the last time
+            List<SourceLine> lines = new ArrayList<>(text.size());
+            for (String line : text) {
+                lines.add(new SourceLine(line, location, lines.size() + 1));
+            }
+
+            entry = new Entry(text, DirectiveTree.parse(stripComments(lines)));
+            this.entries.put(location, entry);
+        }
+        return entry.tree;
+    }
+
+    /**
+     * Discards all cached {@link DirectiveTree}s.
+     */
+    public void clear() {
+        this.entries.clear();
+    }
+
+    @SneakyThrows(IOException.class)
+    protected List<String> read(@NonNull Identifier location) {
+        List<String> text = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(this.resourceProvider.provideResourceAsReader(location))) {
+            for (String line; (line = reader.readLine()) != null; ) {
+                text.add(line);
+            }
+        }
+        return text;
+    }
+
+    /**
+     * @author DaPorkchop_
+     */
+    @RequiredArgsConstructor
+    protected static final class Entry {
+        @NonNull
+        protected final List<String> text;
+        @NonNull
+        protected final DirectiveTree tree;
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package net.daporkchop.fp2.gl.opengl.shader.source;
+
+import lombok.NonNull;
+import net.daporkchop.fp2.common.util.Identifier;
+import net.daporkchop.lib.common.util.PorkUtil;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static net.daporkchop.lib.common.util.PValidation.*;
+
+/**
+ * Preprocessor for GLSL source files, which produces the same output as {@link Preprocessor}.
+ * <p>
+ * Rather than running regular expressions over every line each time a shader is built, each source file is parsed once into a {@link DirectiveTree}, which
+ * is cached by a {@link SourceCache}. Preprocessing then only has to walk the trees for the current set of macros.
+ *
+ * @author DaPorkchop_
+ */
+public class TokenizingPreprocessor {
+    protected final SourceCache cache;
+
+    protected final List<DirectiveTree> sources = new ArrayList<>();
+    protected final Map<String, Object> macros = new HashMap<>();
+
+    protected SourceLine[] lines;
+
+    public TokenizingPreprocessor(@NonNull SourceCache cache) {
+        this.cache = cache;
+    }
+
+    //
+    // EXTERNAL API
+    //
+
+    /**
+     * Loads the source lines from the given {@link Identifier} and appends them to the preprocessing buffer.
+     *
+     * @param location the location of the source file to load
+     */
+    public TokenizingPreprocessor appendLines(@NonNull Identifier location) {
+        this.sources.add(this.cache.get(location));
+        return this;
+    }
+
+    /**
+     * Appends the given source lines to the preprocessing buffer.
+     * <p>
+     * Unlike source files, the lines will not have comments stripped from them.
+     *
+     * @param lines the source lines
+     */
+    public TokenizingPreprocessor appendLines(@NonNull SourceLine... lines) {
+        this.sources.add(DirectiveTree.parse(lines));
+        return this;
+    }
+
+    /**
+     * Defines the given preprocessor macros.
+     *
+     * @param macros the macros
+     */
+    public TokenizingPreprocessor define(@NonNull Map<String, Object> macros) {
+        this.macros.putAll(macros);
+        return this;
+    }
+
+    /**
+     * Preprocesses this shader's source code.
+     * <p>
+     * Macros defined by the source code itself don't affect subsequent calls to this method.
+     */
+    public TokenizingPreprocessor preprocess() {
+        Evaluation evaluation = new Evaluation(new HashMap<>(this.macros));
+        for (DirectiveTree source : this.sources) {
+            evaluation.evaluate(source.elements());
+        }
+        this.lines = evaluation.output.toArray(new SourceLine[0]);
+        return this;
+    }
+
+    /**
+     * @return all of the preprocessed source lines
+     */
+    public SourceLine[] lines() {
+        checkState(this.lines != null, "not preprocessed");
+        return this.lines.clone();
+    }
+
+    /**
+     * The state of a single {@link #preprocess()} invocation.
+     *
+     * @author DaPorkchop_
+     */
+    protected class Evaluation implements Expression.Context {
+        protected final Map<String, Object> macros;
+        protected final List<SourceLine> output = new ArrayList<>();
+
+        //files are only loaded once per evaluation, no matter how often they're included
+        protected final Map<Identifier, DirectiveTree> includes = new HashMap<>();
+
+        //macros are usually defined to the same expressions over and over again, so there's no need to re-parse them each time
+        protected final Map<String, Expression> expressions = new HashMap<>();
+
+        protected Evaluation(@NonNull Map<String, Object> macros) {
+            this.macros = macros;
+        }
+
+        protected void evaluate(@NonNull DirectiveTree.Element[] elements) {
+            for (DirectiveTree.Element element : elements) {
+                if (element instanceof DirectiveTree.Text) {
+                    this.output.add(this.substituteMacros((DirectiveTree.Text) element));
+                } else if (element instanceof DirectiveTree.Conditional) {
+                    this.evaluateConditional((DirectiveTree.Conditional) element);
+                } else if (element instanceof DirectiveTree.Define) {
+                    DirectiveTree.Define define = (DirectiveTree.Define) element;
+                    if (this.macros.putIfAbsent(define.key(), define.value()) != null) {
+                        throw new IllegalArgumentException(define.line().toString("attempted to redefine macro " + define.key()));
+                    }
+                } else if (element instanceof DirectiveTree.Undef) {
+                    this.macros.remove(((DirectiveTree.Undef) element).key());
+                } else if (element instanceof DirectiveTree.Include) {
+                    Identifier location = ((DirectiveTree.Include) element).location();
+                    this.evaluate(this.includes.computeIfAbsent(location, TokenizingPreprocessor.this.cache::get).elements());
+                } else if (element instanceof DirectiveTree.Passthrough) {
+                    this.output.add(((DirectiveTree.Passthrough) element).line());
+                } else if (element instanceof DirectiveTree.Failure) {
+                    throw ((DirectiveTree.Failure) element).factory().get();
+                } else {
+                    throw new IllegalArgumentException(PorkUtil.className(element));
+                }
+            }
+        }
+
+        protected void evaluateConditional(@NonNull DirectiveTree.Conditional conditional) {
+            DirectiveTree.Branch selected = null;
+            for (DirectiveTree.Branch branch : conditional.branches()) {
+                if (branch.condition() == null || branch.condition().test(this)) {
+                    selected = branch;
+                    break;
+                }
+            }
+
+            if (conditional.error() != null) {
+                throw conditional.error().get();
+            } else if (selected != null) {
+                this.evaluate(selected.body());
+            }
+        }
+
+        protected SourceLine substituteMacros(@NonNull DirectiveTree.Text element) {
+            SourceLine line = element.line();
+            String text = line.text();
+
+            //the first pass can use the words found when the line was parsed
+            String newText = this.substituteMacros(text, element.words());
+
+            //replace macros repeatedly until nothing changes, in case some macros expand to other macros
+            while (newText != text && !newText.equals(text)) {
+                text = newText;
+                newText = this.substituteMacros(text, DirectiveTree.findMacroWords(text));
+            }
+
+            return line.withText(text);
+        }
+
+        /**
+         * @return the text with all macros replaced with their values, or the exact same instance if there weren't any macros
+         */
+        protected String substituteMacros(@NonNull String text, int[] words) {
+            if (words == null) {
+                return text;
+            }
+
+            StringBuilder builder = null;
+            int last = 0;
+            for (int i = 0; i < words.length; i += 2) {
+                int start = words[i];
+                int end = words[i + 1];
+                String key = text.substring(start, end);
+
+                Object value = this.macros.get(key);
+                if (value == null && !this.macros.containsKey(key)) { //not a macro
+                    continue;
+                }
+
+                if (builder == null) {
+                    builder = new StringBuilder(text.length() + 16);
+                }
+                builder.append(text, last, start).append(value.toString()); //a macro defined without a value can't be substituted
+                last = end;
+            }
+
+            return builder == null ? text : builder.append(text, last, text.length()).toString();
+        }
+
+        @Override
+        public long macroValue(@NonNull String name) {
+            Object value = this.macros.get(name);
+            if (value == null) {
+                value = this.macros.containsKey(name);
+            }
+
+            if (value instanceof Number) {
+                return ((Number) value).longValue();
+            } else if (value instanceof Boolean) {
+                return (Boolean) value ? 1L : 0L;
+            } else if (value instanceof String) {
+                return this.expressions.computeIfAbsent((String) value, expr -> Expression.parse(expr.trim())).evaluate(this);
+            } else {
+                throw new IllegalArgumentException("invalid type for " + name + ": " + PorkUtil.className(value));
+            }
+        }
+
+        @Override
+        public boolean isDefined(@NonNull String name) {
+            return this.macros.containsKey(name);
+        }
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+import lombok.NonNull;
+import net.daporkchop.fp2.gl.attribute.annotation.ArrayTransform;
+import net.daporkchop.fp2.gl.attribute.annotation.Attribute;
+import net.daporkchop.fp2.gl.attribute.annotation.FieldsAsArrayAttribute;
+import net.daporkchop.fp2.gl.attribute.annotation.ScalarConvert;
+import net.daporkchop.fp2.gl.attribute.annotation.ScalarExpand;
+import net.daporkchop.fp2.gl.attribute.annotation.ScalarType;
+import net.daporkchop.fp2.gl.opengl.attribute.struct.StructFormatGenerator;
+import net.daporkchop.fp2.gl.opengl.attribute.struct.StructInfo;
+import net.daporkchop.fp2.gl.opengl.attribute.struct.StructLayouts;
+import net.daporkchop.fp2.gl.opengl.attribute.struct.format.InterleavedStructFormat;
+import net.daporkchop.fp2.gl.opengl.attribute.struct.layout.InterleavedStructLayout;
+import net.daporkchop.lib.unsafe.PUnsafe;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the packed vertex encodings used by the render modes survive a round trip through the generated copy code, decoding the output the same way
+ * OpenGL and the vertex shaders do.
+ *
+ * @author DaPorkchop_
+ */
+public class TestPackedVertexFormats {
+    private static final StructFormatGenerator GENERATOR = new StructFormatGenerator();
+
+    private static <S> InterleavedStructFormat<S> format(@NonNull Class<S> clazz, long alignment) {
+        return GENERATOR.getInterleaved(StructLayouts.vertexAttributesInterleaved(new StructInfo<>(clazz, Collections.emptyMap()), alignment, false));
+    }
+
+    private static long offset(@NonNull InterleavedStructLayout layout, int member, int component) {
+        return layout.member().child(member).component(component).offset();
+    }
+
+    private static float unorm8(long addr) {
+        return (PUnsafe.getByte(addr) & 0xFF) / 255.0f;
+    }
+
+    //equivalent to unpackLight() in common.vert, but returns the unscaled light levels
+    private static int unpackLight(float packedLight) {
+        return (int) (packedLight * 255.0f + 0.5f);
+    }
+
+    @Test
+    public void testVoxelStride() {
+        assertEquals(11L, format(VoxelVertex.class, 1L).totalSize());
+        assertEquals(12L, format(VoxelVertex.class, Integer.BYTES).totalSize());
+    }
+
+    @Test
+    public void testHeightmapStride() {
+        assertEquals(15L, format(HeightmapVertex.class, 1L).totalSize());
+        assertEquals(16L, format(HeightmapVertex.class, Integer.BYTES).totalSize());
+    }
+
+    @Test
+    public void testVoxelRoundTrip() {
+        this.testVoxelRoundTrip(1L);
+        this.testVoxelRoundTrip(Integer.BYTES);
+    }
+
+    private void testVoxelRoundTrip(long alignment) {
+        InterleavedStructLayout layout = StructLayouts.vertexAttributesInterleaved(new StructInfo<>(VoxelVertex.class, Collections.emptyMap()), alignment, false);
+        InterleavedStructFormat<VoxelVertex> format = GENERATOR.getInterleaved(layout);
+
+        SplittableRandom r = new SplittableRandom(1337L);
+        long addr = PUnsafe.allocateMemory(format.totalSize());
+        try {
+            for (int i = 0; i < 10000; i++) {
+                int state = r.nextInt();
+                int rgb = r.nextInt() & 0x00FFFFFF;
+                int light = r.nextInt(256);
+                byte posX = (byte) r.nextInt();
+                byte posY = (byte) r.nextInt();
+                byte posZ = (byte) r.nextInt();
+
+                format.copy(new VoxelVertex(state, (light << 24) | rgb, posX, posY, posZ), null, addr);
+
+                assertEquals(state, PUnsafe.getInt(addr + offset(layout, 0, 0)));
+
+                assertEquals((rgb >>> 16) & 0xFF, Math.round(unorm8(addr + offset(layout, 1, 0)) * 255.0f));
+                assertEquals((rgb >>> 8) & 0xFF, Math.round(unorm8(addr + offset(layout, 1, 1)) * 255.0f));
+                assertEquals(rgb & 0xFF, Math.round(unorm8(addr + offset(layout, 1, 2)) * 255.0f));
+                int decodedLight = unpackLight(unorm8(addr + offset(layout, 1, 3)));
+                assertEquals(light & 0xF, decodedLight & 0xF);
+                assertEquals(light >> 4, decodedLight >> 4);
+
+                assertEquals(posX & 0xFF, PUnsafe.getByte(addr + offset(layout, 2, 0)) & 0xFF);
+                assertEquals(posY & 0xFF, PUnsafe.getByte(addr + offset(layout, 2, 1)) & 0xFF);
+                assertEquals(posZ & 0xFF, PUnsafe.getByte(addr + offset(layout, 2, 2)) & 0xFF);
+            }
+        } finally {
+            PUnsafe.freeMemory(addr);
+        }
+    }
+
+    @Test
+    public void testHeightmapRoundTrip() {
+        this.testHeightmapRoundTrip(1L);
+        this.testHeightmapRoundTrip(Integer.BYTES);
+    }
+
+    private void testHeightmapRoundTrip(long alignment) {
+        InterleavedStructLayout layout = StructLayouts.vertexAttributesInterleaved(new StructInfo<>(HeightmapVertex.class, Collections.emptyMap()), alignment, false);
+        InterleavedStructFormat<HeightmapVertex> format = GENERATOR.getInterleaved(layout);
+
+        SplittableRandom r = new SplittableRandom(1337L);
+        long addr = PUnsafe.allocateMemory(format.totalSize());
+        try {
+            for (int i = 0; i < 10000; i++) {
+                int light = r.nextInt(256);
+                byte posHorizX = (byte) r.nextInt(17);
+                byte posHorizZ = (byte) r.nextInt(17);
+                byte heightFrac = (byte) r.nextInt();
+                int heightInt = r.nextInt();
+
+                format.copy(new HeightmapVertex(0, (light << 24) | 0x00FFFFFF, posHorizX, posHorizZ, heightFrac, heightInt), null, addr);
+
+                int decodedLight = unpackLight(unorm8(addr + offset(layout, 1, 3)));
+                assertEquals(light & 0xF, decodedLight & 0xF);
+                assertEquals(light >> 4, decodedLight >> 4);
+
+                assertEquals(posHorizX, PUnsafe.getByte(addr + offset(layout, 2, 0)));
+                assertEquals(posHorizZ, PUnsafe.getByte(addr + offset(layout, 2, 1)));
+                assertEquals(heightFrac & 0xFF, PUnsafe.getByte(addr + offset(layout, 2, 2)) & 0xFF);
+
+                //the shader reinterprets the unsigned value as a signed one, so negative heights must survive as-is
+                assertEquals(heightInt, PUnsafe.getInt(addr + offset(layout, 3, 0)));
+            }
+        } finally {
+            PUnsafe.freeMemory(addr);
+        }
+    }
+
+    //mirrors VoxelLocalAttributes
+    public static class VoxelVertex {
+        @Attribute
+        public int state;
+
+        @Attribute
+        @ScalarType(expand = @ScalarExpand(
+                value = ScalarExpand.Type.INT_ARGB8_TO_BYTE_VECTOR_RGBA, alpha = true,
+                thenConvert = @ScalarConvert(value = ScalarConvert.Type.TO_FLOAT, normalized = true)))
+        public int color;
+
+        @FieldsAsArrayAttribute(
+                attribute = @Attribute(name = "pos"),
+                names = { "posX", "posY", "posZ" },
+                scalarType = @ScalarType(convert = {
+                        @ScalarConvert(ScalarConvert.Type.TO_UNSIGNED),
+                        @ScalarConvert(value = ScalarConvert.Type.TO_FLOAT, normalized = false)
+                }),
+                transform = @ArrayTransform(ArrayTransform.Type.TO_VECTOR))
+        public byte posX;
+        public byte posY;
+        public byte posZ;
+
+        public VoxelVertex(int state, int color, byte posX, byte posY, byte posZ) {
+            this.state = state;
+            this.color = color;
+            this.posX = posX;
+            this.posY = posY;
+            this.posZ = posZ;
+        }
+    }
+
+    //mirrors HeightmapLocalAttributes
+    public static class HeightmapVertex {
+        @Attribute
+        public int state;
+
+        @Attribute
+        @ScalarType(expand = @ScalarExpand(
+                value = ScalarExpand.Type.INT_ARGB8_TO_BYTE_VECTOR_RGBA, alpha = true,
+                thenConvert = @ScalarConvert(value = ScalarConvert.Type.TO_FLOAT, normalized = true)))
+        public int color;
+
+        @FieldsAsArrayAttribute(
+                attribute = @Attribute(name = "posLow"),
+                names = { "posHorizX", "posHorizZ", "heightFrac" },
+                scalarType = @ScalarType(convert = @ScalarConvert(ScalarConvert.Type.TO_UNSIGNED)),
+                transform = @ArrayTransform(ArrayTransform.Type.TO_VECTOR))
+        public byte posHorizX;
+        public byte posHorizZ;
+        public byte heightFrac;
+
+        @Attribute
+        @ScalarType(convert = @ScalarConvert(ScalarConvert.Type.TO_UNSIGNED))
+        public int heightInt;
+
+        public HeightmapVertex(int state, int color, byte posHorizX, byte posHorizZ, byte heightFrac, int heightInt) {
+            this.state = state;
+            this.color = color;
+            this.posHorizX = posHorizX;
+            this.posHorizZ = posHorizZ;
+            this.heightFrac = heightFrac;
+            this.heightInt = heightInt;
+        }
+    }
+}
@@ -77,6 +77,16 @@ public interface AttributeBuffer<S> extends BaseAttributeBuffer {
      */
     void invalidate(int startIndex, int count);
 
+    /**
+     * Copies a range of elements from one position in this buffer to another.
+     *
+     * @param srcIndex the index of the first element to copy
+     * @param dstIndex the destination index for the first element
+     * @param count    the number of elements to copy
+     * @throws IllegalArgumentException if the source and destination ranges overlap
+     */
+    void copyRange(int srcIndex, int dstIndex, int count);
+
     /**
      * Sets this buffer's contents to exactly the given struct, discarding any existing data and modifying its capacity.
      *
@@ -46,4 +46,11 @@ public interface AttributeWriter<S> extends CloseableResource {
      * @return the index of the completed element
      */
     int put(@NonNull S struct);
+
+    /**
+     * Discards all elements written so far.
+     * <p>
+     * The writer's memory is retained, allowing it to be re-used without having to grow again.
+     */
+    void clear();
 }
@@ -45,6 +45,13 @@ public interface IndexWriter extends CloseableResource {
      */
     IndexWriter append(int index);
 
+    /**
+     * Discards all indices written so far.
+     * <p>
+     * The writer's memory is retained, allowing it to be re-used without having to grow again.
+     */
+    void clear();
+
     /**
      * Appends 4 indices to this writer, forming a single quad.
      *
@@ -69,4 +76,17 @@ public interface IndexWriter extends CloseableResource {
         return this.append(oppositeCorner).append(c0).append(provoking) //first triangle
                 .append(c1).append(oppositeCorner).append(provoking); //second triangle
     }
+
+    /**
+     * Appends 4 indices to this writer, forming a single degenerate quad with the same shape as the given triangle.
+     * <p>
+     * This allows individual triangles to be drawn alongside quads.
+     *
+     * @param a         the index of the first vertex
+     * @param b         the index of the second vertex
+     * @param provoking the index of the provoking vertex
+     */
+    default IndexWriter appendTriangleAsQuad(int a, int b, int provoking) {
+        return this.append(a).append(b).append(provoking).append(provoking);
+    }
 }
@@ -26,6 +26,7 @@ import net.daporkchop.fp2.config.FP2Config;
 import net.daporkchop.fp2.config.listener.ConfigListenerManager;
 import net.daporkchop.fp2.debug.FP2Debug;
 import net.daporkchop.fp2.net.FP2Network;
+import net.daporkchop.fp2.server.FP2Metrics;
 import net.daporkchop.fp2.server.FP2Server;
 import net.daporkchop.fp2.util.threading.futureexecutor.ServerThreadMarkedFutureExecutor;
 import net.minecraftforge.fml.common.FMLCommonHandler;
@@ -34,6 +35,7 @@ import net.minecraftforge.fml.common.event.FMLInitializationEvent;
 import net.minecraftforge.fml.common.event.FMLModIdMappingEvent;
 import net.minecraftforge.fml.common.event.FMLPostInitializationEvent;
 import net.minecraftforge.fml.common.event.FMLPreInitializationEvent;
+import net.minecraftforge.fml.common.event.FMLServerStartingEvent;
 import net.minecraftforge.fml.common.event.FMLServerStoppedEvent;
 import net.minecraftforge.fml.common.network.NetworkCheckHandler;
 import net.minecraftforge.fml.relauncher.Side;
@@ -94,6 +96,11 @@ public class FP2 {
         }
     }
 
+    @Mod.EventHandler
+    public void serverStarting(FMLServerStartingEvent event) {
+        FP2Metrics.serverStarting();
+    }
+
     @Mod.EventHandler
     public void serverStopped(FMLServerStoppedEvent event) {
         try {
@@ -101,6 +108,8 @@ public class FP2 {
         } catch (Exception e) {
             e.printStackTrace();
         }
+
+        FP2Metrics.serverStopped();
     }
 
     @Mod.EventHandler
@@ -20,6 +20,7 @@
 
 package net.daporkchop.fp2.asm.core.client;
 
+import net.daporkchop.fp2.config.FP2Config;
 import net.daporkchop.fp2.mode.api.player.IFarPlayerClient;
 import net.daporkchop.fp2.util.threading.futureexecutor.ClientThreadMarkedFutureExecutor;
 import net.minecraft.client.Minecraft;
@@ -34,6 +35,8 @@ import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 
+import java.util.concurrent.TimeUnit;
+
 import static net.daporkchop.lib.common.util.PorkUtil.*;
 
 /**
@@ -75,7 +78,7 @@ public abstract class MixinMinecraft implements ClientThreadMarkedFutureExecutor
             allow = 1)
     private void fp2_runGameLoop_runScheduledClientTasks(CallbackInfo ci) {
         this.profiler.startSection("fp2_scheduled_tasks");
-        this.fp2_executor.doAllWork();
+        this.fp2_executor.doWorkFor(TimeUnit.MILLISECONDS.toNanos(FP2Config.global().performance().maxWorldThreadTaskTime()));
         this.profiler.endSection();
     }
 
@@ -72,6 +72,7 @@ public abstract class MixinWorldServer extends MixinWorld implements IFarWorldSe
     @Override
     public void fp2_IFarWorld_close() {
         this.fp2_IFarWorldServer_forEachTileProvider(IFarTileProvider::close);
+        this.fp2_asyncBlockAccess.close();
     }
 
     @Override
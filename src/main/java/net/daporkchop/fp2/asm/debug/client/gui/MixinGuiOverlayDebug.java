@@ -80,6 +80,14 @@ public abstract class MixinGuiOverlayDebug extends Gui {
                     DebugStats.Renderer stats = renderer.stats();
                     list.add("Baked Tiles: " + numberFormat.format(stats.bakedTiles()) + "T " + numberFormat.format(stats.bakedTilesWithData()) + "D "
                              + numberFormat.format(stats.bakedTiles() - stats.bakedTilesWithData()) + 'E');
+                    DebugStats.Baking bakeStats = renderer.bakeStats();
+                    list.add("Bakes: " + numberFormat.format(bakeStats.tilesReceived()) + "R " + numberFormat.format(bakeStats.bakesRequested()) + "N "
+                             + numberFormat.format(bakeStats.bakesPending()) + "P " + numberFormat.format(bakeStats.bakesExecuted()) + "B ("
+                             + numberFormat.format(bakeStats.bakesPerReceivedTile()) + "/tile), inflated " + numberFormat.format(bakeStats.tilesInflated())
+                             + " + " + numberFormat.format(bakeStats.tilesInflatedShared()) + " shared");
+                    list.add("Uploads: " + numberFormat.format(bakeStats.uploadsPending()) + " pending, " + numberFormat.format(bakeStats.lastUploadCount()) + " last frame ("
+                             + GuiHelper.formatByteCount(bakeStats.lastUploadBytes()) + "), " + GuiHelper.formatDuration(bakeStats.avgUploadDuration()) + " avg, "
+                             + GuiHelper.formatDuration(bakeStats.lastUploadDuration()) + " last");
                     list.add("All VRAM: " + percentFormat.format(stats.allocatedVRAM() / (double) stats.totalVRAM())
                              + ' ' + GuiHelper.formatByteCount(stats.allocatedVRAM()) + '/' + GuiHelper.formatByteCount(stats.totalVRAM()));
                     list.add("Indices: " + percentFormat.format(stats.allocatedIndices() / (double) stats.totalIndices())
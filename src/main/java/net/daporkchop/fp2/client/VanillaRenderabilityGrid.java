@@ -0,0 +1,412 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package net.daporkchop.fp2.client;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import net.daporkchop.fp2.common.util.alloc.Allocator;
+import net.daporkchop.lib.common.math.PMath;
+import net.daporkchop.lib.unsafe.PUnsafe;
+import net.daporkchop.lib.unsafe.util.AbstractReleasable;
+
+import java.util.Arrays;
+
+import static net.daporkchop.fp2.client.gl.OpenGL.*;
+
+/**
+ * The CPU-side state of a {@link VanillaRenderabilityTracker}.
+ * <p>
+ * Stores a bit grid in direct memory (in the layout expected by the shaders) indicating which chunk sections are renderable by vanilla. The grid is persistent:
+ * the state of each chunk section is retained between updates, so each update only needs to be told about the chunk sections whose state has changed, and only
+ * recomputes those cells and their neighbors. The range of bytes which were modified is tracked so that only those need to be re-uploaded.
+ * <p>
+ * If the area covered by vanilla's view frustum moves without changing size, the grid's contents are translated by the offset rather than being rebuilt. Only
+ * the cells which were previously on the edge of the grid need to be recomputed, and the chunk sections which have newly entered the grid are initially
+ * unset.
+ * <p>
+ * An update consists of a call to {@link #begin(int, int, int, int, int, int)}, followed by a call to {@link #set(int, int, int, int)} for every chunk section
+ * whose state has changed (or which was previously outside of the grid), followed by a call to {@link #end()}.
+ *
+ * @author DaPorkchop_
+ */
+@RequiredArgsConstructor
+@Getter
+public class VanillaRenderabilityGrid extends AbstractReleasable {
+    public static final long HEADERS_OFFSET = 0L;
+    public static final long FLAGS_OFFSET = HEADERS_OFFSET + 2L * IVEC3_SIZE;
+
+    /**
+     * Flag indicating that a chunk section has been compiled. The lower 6 bits indicate which of the section's faces are visible, indexed by
+     * {@link net.minecraft.util.EnumFacing#ordinal()}.
+     */
+    public static final int FLAG_COMPILED = 0x80;
+
+    //the (x, y, z) offsets to each neighbor, in the same order as EnumFacing
+    protected static final int[] NEIGHBOR_OFFSETS = {
+            0, -1, 0, //DOWN
+            0, 1, 0, //UP
+            0, 0, -1, //NORTH
+            0, 0, 1, //SOUTH
+            -1, 0, 0, //WEST
+            1, 0, 0, //EAST
+    };
+
+    @NonNull
+    protected final Allocator alloc;
+
+    protected int offsetX;
+    protected int offsetY;
+    protected int offsetZ;
+    protected int sizeX;
+    protected int sizeY;
+    protected int sizeZ;
+
+    @Getter(AccessLevel.NONE)
+    protected byte[] srcBits = new byte[0];
+    @Getter(AccessLevel.NONE)
+    protected byte[] tmpSrcBits = new byte[0];
+    @Getter(AccessLevel.NONE)
+    protected final IntArrayList changed = new IntArrayList(); //the indices of the cells whose state has changed during the current update
+
+    protected long sizeBytes;
+    protected long addr;
+
+    @Getter(AccessLevel.NONE)
+    protected boolean rebuild = true;
+
+    /**
+     * Whether or not the grid's memory has been re-allocated since the last call to {@link #markClean()}, in which case it must be re-uploaded in full.
+     */
+    protected boolean resized;
+    protected long dirtyStart = Long.MAX_VALUE;
+    protected long dirtyEnd = Long.MIN_VALUE;
+
+    @Override
+    protected void doRelease() {
+        if (this.addr != 0L) {
+            this.alloc.free(this.addr);
+        }
+    }
+
+    /**
+     * Begins a new update.
+     *
+     * @param offsetX the offset to add to chunk X coordinates to get the X coordinate in the grid
+     * @param offsetY the offset to add to chunk Y coordinates to get the Y coordinate in the grid
+     * @param offsetZ the offset to add to chunk Z coordinates to get the Z coordinate in the grid
+     * @param sizeX   the size of the grid along the X axis
+     * @param sizeY   the size of the grid along the Y axis
+     * @param sizeZ   the size of the grid along the Z axis
+     * @return whether or not the grid's contents have been discarded, in which case the state of every compiled chunk section must be set again
+     */
+    public boolean begin(int offsetX, int offsetY, int offsetZ, int sizeX, int sizeY, int sizeZ) {
+        if (sizeX != this.sizeX || sizeY != this.sizeY || sizeZ != this.sizeZ) { //the grid has been resized, we'll need to rebuild everything
+            this.offsetX = offsetX;
+            this.offsetY = offsetY;
+            this.offsetZ = offsetZ;
+            this.sizeX = sizeX;
+            this.sizeY = sizeY;
+            this.sizeZ = sizeZ;
+
+            int cells = sizeX * sizeY * sizeZ;
+            this.srcBits = new byte[cells];
+            this.tmpSrcBits = new byte[cells];
+            this.changed.clear();
+            this.rebuild = true;
+            return true;
+        }
+
+        if (offsetX != this.offsetX || offsetY != this.offsetY || offsetZ != this.offsetZ) { //the grid has moved, translate its contents to the new position
+            this.translate(offsetX - this.offsetX, offsetY - this.offsetY, offsetZ - this.offsetZ);
+        }
+        return this.rebuild;
+    }
+
+    /**
+     * Discards the state of every chunk section, as if the grid had just been created.
+     * <p>
+     * May only be called during an update.
+     */
+    public void reset() {
+        Arrays.fill(this.srcBits, (byte) 0);
+        this.changed.clear();
+        this.rebuild = true;
+    }
+
+    /**
+     * Sets the state of the chunk section at the given position.
+     *
+     * @param chunkX the chunk section's X coordinate
+     * @param chunkY the chunk section's Y coordinate
+     * @param chunkZ the chunk section's Z coordinate
+     * @param flags  the chunk section's flags, or {@code 0} if the chunk section isn't compiled. If non-zero, {@link #FLAG_COMPILED} should always be set.
+     */
+    public void set(int chunkX, int chunkY, int chunkZ, int flags) {
+        int x = chunkX + this.offsetX;
+        int y = chunkY + this.offsetY;
+        int z = chunkZ + this.offsetZ;
+
+        if (x < 0 || x >= this.sizeX || y < 0 || y >= this.sizeY || z < 0 || z >= this.sizeZ) { //out of bounds, ignore
+            return;
+        }
+
+        int idx = (x * this.sizeY + y) * this.sizeZ + z;
+        if (this.srcBits[idx] != (byte) flags) {
+            this.srcBits[idx] = (byte) flags;
+            if (!this.rebuild) { //no need to keep track of individual changes if everything is going to be rebuilt anyway
+                this.changed.add(idx);
+            }
+        }
+    }
+
+    /**
+     * Finishes an update, recomputing all of the cells affected by the changes since the previous update.
+     */
+    public void end() {
+        if (this.rebuild) {
+            this.rebuild = false;
+            this.rebuildAll();
+        } else {
+            this.updateChanged();
+        }
+        this.changed.clear();
+    }
+
+    protected void writeHeaders() {
+        long headersAddr = this.addr + HEADERS_OFFSET;
+
+        //ivec3 offset
+        PUnsafe.putInt(headersAddr + 0 * INT_SIZE, this.offsetX);
+        PUnsafe.putInt(headersAddr + 1 * INT_SIZE, this.offsetY);
+        PUnsafe.putInt(headersAddr + 2 * INT_SIZE, this.offsetZ);
+        headersAddr += IVEC3_SIZE;
+
+        //ivec3 size
+        PUnsafe.putInt(headersAddr + 0 * INT_SIZE, this.sizeX);
+        PUnsafe.putInt(headersAddr + 1 * INT_SIZE, this.sizeY);
+        PUnsafe.putInt(headersAddr + 2 * INT_SIZE, this.sizeZ);
+        headersAddr += IVEC3_SIZE;
+    }
+
+    protected void rebuildAll() {
+        long sizeBits = (long) this.sizeX * this.sizeY * this.sizeZ;
+        long sizeBytes = FLAGS_OFFSET + (PMath.roundUp(sizeBits, 32) >> 2);
+
+        if (this.addr == 0L || this.sizeBytes != sizeBytes) { //the grid's size has changed, we need to re-allocate it
+            if (this.addr != 0L) {
+                this.alloc.free(this.addr);
+            }
+            this.addr = this.alloc.alloc(sizeBytes);
+            this.sizeBytes = sizeBytes;
+            this.resized = true;
+        }
+
+        long addr = this.addr;
+        PUnsafe.setMemory(addr, sizeBytes, (byte) 0);
+        this.writeHeaders();
+
+        for (int x = 1; x < this.sizeX - 2; x++) {
+            for (int y = 1; y < this.sizeY - 2; y++) {
+                for (int z = 1; z < this.sizeZ - 2; z++) {
+                    int idx = (x * this.sizeY + y) * this.sizeZ + z;
+                    if (this.compute(this.srcBits, idx)) {
+                        long wordAddr = addr + FLAGS_OFFSET + (idx >> 5 << 2);
+                        PUnsafe.putInt(wordAddr, PUnsafe.getInt(wordAddr) | (1 << idx));
+                    }
+                }
+            }
+        }
+
+        this.dirtyStart = 0L;
+        this.dirtyEnd = sizeBytes;
+    }
+
+    /**
+     * Moves the grid by the given offset, keeping the state of every chunk section which is still inside of it.
+     * <p>
+     * The renderability of a cell only depends on the state of the cell itself and its direct neighbors. Every cell which was previously in the interior of
+     * the grid therefore keeps its result, and only the cells which were previously on the grid's edge (or outside of it) need to be recomputed.
+     */
+    protected void translate(int dx, int dy, int dz) {
+        this.offsetX += dx;
+        this.offsetY += dy;
+        this.offsetZ += dz;
+
+        //the translated state is written to the spare array, which then becomes the current state
+        byte[] tmp = this.tmpSrcBits;
+        this.translateSrc(this.srcBits, tmp, dx, dy, dz);
+        this.tmpSrcBits = this.srcBits;
+        this.srcBits = tmp;
+
+        if (this.rebuild) { //the grid will be rebuilt from scratch anyway, so there are no results to keep
+            return;
+        }
+
+        //copy the old results aside, since they'll be moved around in place
+        long flagsSize = this.sizeBytes - FLAGS_OFFSET;
+        long flagsAddr = this.addr + FLAGS_OFFSET;
+        long oldFlagsAddr = this.alloc.alloc(flagsSize);
+        try {
+            PUnsafe.copyMemory(flagsAddr, oldFlagsAddr, flagsSize);
+            PUnsafe.setMemory(flagsAddr, flagsSize, (byte) 0);
+
+            for (int x = 1; x < this.sizeX - 2; x++) {
+                for (int y = 1; y < this.sizeY - 2; y++) {
+                    for (int z = 1; z < this.sizeZ - 2; z++) {
+                        int idx = (x * this.sizeY + y) * this.sizeZ + z;
+                        int oldX = x - dx;
+                        int oldY = y - dy;
+                        int oldZ = z - dz;
+
+                        if (oldX < 1 || oldX >= this.sizeX - 2 || oldY < 1 || oldY >= this.sizeY - 2 || oldZ < 1 || oldZ >= this.sizeZ - 2) {
+                            //the cell was previously on the edge of the grid (or outside of it) and therefore never computed, it'll be recomputed by end()
+                            this.changed.add(idx);
+                            continue;
+                        }
+
+                        int oldIdx = (oldX * this.sizeY + oldY) * this.sizeZ + oldZ;
+                        if ((PUnsafe.getInt(oldFlagsAddr + (oldIdx >> 5 << 2)) & (1 << oldIdx)) != 0) {
+                            long wordAddr = flagsAddr + (idx >> 5 << 2);
+                            PUnsafe.putInt(wordAddr, PUnsafe.getInt(wordAddr) | (1 << idx));
+                        }
+                    }
+                }
+            }
+        } finally {
+            this.alloc.free(oldFlagsAddr);
+        }
+
+        //the headers and the position of every cell have changed, so the whole grid needs to be re-uploaded (although it didn't need to be re-allocated)
+        this.writeHeaders();
+        this.dirtyStart = 0L;
+        this.dirtyEnd = this.sizeBytes;
+    }
+
+    protected void translateSrc(@NonNull byte[] src, @NonNull byte[] dst, int dx, int dy, int dz) {
+        for (int idx = 0, x = 0; x < this.sizeX; x++) {
+            for (int y = 0; y < this.sizeY; y++) {
+                for (int z = 0; z < this.sizeZ; z++, idx++) {
+                    int oldX = x - dx;
+                    int oldY = y - dy;
+                    int oldZ = z - dz;
+
+                    dst[idx] = oldX < 0 || oldX >= this.sizeX || oldY < 0 || oldY >= this.sizeY || oldZ < 0 || oldZ >= this.sizeZ
+                            ? 0 //the chunk section was previously outside of the grid, its state is unknown
+                            : src[(oldX * this.sizeY + oldY) * this.sizeZ + oldZ];
+                }
+            }
+        }
+    }
+
+    protected void updateChanged() {
+        for (int i = 0, size = this.changed.size(); i < size; i++) {
+            int idx = this.changed.getInt(i);
+
+            //the cell's state has changed, which affects both the cell itself and all of its neighbors
+            int x = idx / (this.sizeY * this.sizeZ);
+            int y = (idx / this.sizeZ) % this.sizeY;
+            int z = idx % this.sizeZ;
+
+            this.recompute(x, y, z);
+            for (int j = 0; j < NEIGHBOR_OFFSETS.length; j += 3) {
+                this.recompute(x + NEIGHBOR_OFFSETS[j + 0], y + NEIGHBOR_OFFSETS[j + 1], z + NEIGHBOR_OFFSETS[j + 2]);
+            }
+        }
+    }
+
+    protected void recompute(int x, int y, int z) {
+        if (x < 1 || x >= this.sizeX - 2 || y < 1 || y >= this.sizeY - 2 || z < 1 || z >= this.sizeZ - 2) { //cells on the edges of the grid are never set
+            return;
+        }
+
+        int idx = (x * this.sizeY + y) * this.sizeZ + z;
+        long wordOffset = FLAGS_OFFSET + (idx >> 5 << 2);
+        long wordAddr = this.addr + wordOffset;
+
+        int oldWord = PUnsafe.getInt(wordAddr);
+        int newWord = this.compute(this.srcBits, idx) ? oldWord | (1 << idx) : oldWord & ~(1 << idx);
+        if (oldWord != newWord) {
+            PUnsafe.putInt(wordAddr, newWord);
+
+            this.dirtyStart = Math.min(this.dirtyStart, wordOffset);
+            this.dirtyEnd = Math.max(this.dirtyEnd, wordOffset + INT_SIZE);
+        }
+    }
+
+    /**
+     * Checks whether or not the chunk section at the given index is renderable by vanilla: that is, it has been compiled and all of its visible neighbors have
+     * been compiled as well.
+     */
+    protected boolean compute(@NonNull byte[] srcBits, int idx) {
+        int centerFlags = srcBits[idx] & 0xFF;
+        if ((centerFlags & FLAG_COMPILED) == 0) {
+            return false;
+        }
+
+        for (int i = 0, face = 0; i < NEIGHBOR_OFFSETS.length; i += 3, face++) {
+            if ((centerFlags & (1 << face)) != 0
+                && (srcBits[idx + (NEIGHBOR_OFFSETS[i + 0] * this.sizeY + NEIGHBOR_OFFSETS[i + 1]) * this.sizeZ + NEIGHBOR_OFFSETS[i + 2]] & FLAG_COMPILED) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return whether or not any data has been modified since the last call to {@link #markClean()}
+     */
+    public boolean dirty() {
+        return this.dirtyStart < this.dirtyEnd;
+    }
+
+    /**
+     * Resets the dirty range, indicating that all modified data has been uploaded.
+     */
+    public void markClean() {
+        this.resized = false;
+        this.dirtyStart = Long.MAX_VALUE;
+        this.dirtyEnd = Long.MIN_VALUE;
+    }
+
+    /**
+     * Checks whether or not vanilla terrain at the given chunk section would prevent us from rendering level-0 FP2 terrain.
+     *
+     * @param chunkX the chunk section's X coordinate
+     * @param chunkY the chunk section's Y coordinate
+     * @param chunkZ the chunk section's Z coordinate
+     * @return whether or not vanilla terrain at the given chunk section would prevent us from rendering level-0 FP2 terrain
+     */
+    public boolean vanillaBlocksFP2RenderingAtLevel0(int chunkX, int chunkY, int chunkZ) {
+        int x = chunkX + this.offsetX;
+        int y = chunkY + this.offsetY;
+        int z = chunkZ + this.offsetZ;
+
+        if (x < 0 || x >= this.sizeX || y < 0 || y >= this.sizeY || z < 0 || z >= this.sizeZ) {
+            return false;
+        }
+
+        int idx = (x * this.sizeY + y) * this.sizeZ + z;
+        return (PUnsafe.getInt(this.addr + FLAGS_OFFSET + (idx >> 5 << 2)) & (1 << idx)) != 0;
+    }
+}
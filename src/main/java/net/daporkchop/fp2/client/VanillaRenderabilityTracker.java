@@ -20,24 +20,20 @@
 
 package net.daporkchop.fp2.client;
 
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 import lombok.NonNull;
-import lombok.RequiredArgsConstructor;
 import net.daporkchop.fp2.client.gl.object.GLBuffer;
 import net.daporkchop.fp2.util.Constants;
 import net.daporkchop.fp2.common.util.alloc.Allocator;
-import net.daporkchop.lib.common.math.PMath;
 import net.daporkchop.lib.common.misc.refcount.AbstractRefCounted;
-import net.daporkchop.lib.unsafe.PUnsafe;
 import net.daporkchop.lib.unsafe.util.exception.AlreadyReleasedException;
 import net.minecraft.client.renderer.RenderGlobal;
 import net.minecraft.client.renderer.ViewFrustum;
 import net.minecraft.client.renderer.chunk.CompiledChunk;
+import net.minecraft.client.renderer.chunk.RenderChunk;
 import net.minecraft.util.EnumFacing;
 import net.minecraft.util.math.BlockPos;
 
-import java.util.stream.Stream;
-
-import static net.daporkchop.fp2.client.gl.OpenGL.*;
 import static net.daporkchop.lib.common.math.PMath.*;
 import static org.lwjgl.opengl.GL15.*;
 import static org.lwjgl.opengl.GL43.*;
@@ -46,12 +42,9 @@ import static org.lwjgl.opengl.GL43.*;
  * Keeps track of which chunk sections are able to be rendered by vanilla, and therefore should not be rendered by fp2 at detail level 0.
  *
  * @author DaPorkchop_
+ * @see VanillaRenderabilityGrid
  */
-@RequiredArgsConstructor
 public class VanillaRenderabilityTracker extends AbstractRefCounted {
-    protected static final long HEADERS_OFFSET = 0L;
-    protected static final long FLAGS_OFFSET = HEADERS_OFFSET + 2L * IVEC3_SIZE;
-
     protected static int visibilityMask(@NonNull CompiledChunk compiledChunk) {
         int mask = 0;
         for (EnumFacing facing : EnumFacing.VALUES) {
@@ -62,21 +55,22 @@ public class VanillaRenderabilityTracker extends AbstractRefCounted {
         return mask;
     }
 
-    @NonNull
-    protected final Allocator alloc;
-    protected final GLBuffer glBuffer = new GLBuffer(GL_STREAM_DRAW);
+    protected static boolean inBounds(int x, int y, int z, int sizeX, int sizeY, int sizeZ) {
+        return x >= 0 && x < sizeX && y >= 0 && y < sizeY && z >= 0 && z < sizeZ;
+    }
 
-    protected int offsetX;
-    protected int offsetY;
-    protected int offsetZ;
-    protected int sizeX;
-    protected int sizeY;
-    protected int sizeZ;
+    protected final VanillaRenderabilityGrid grid;
+    protected final GLBuffer glBuffer = new GLBuffer(GL_STREAM_DRAW);
 
-    protected long sizeBytes;
-    protected long addr;
+    //the state of each RenderChunk in the ViewFrustum as of the last update, indexed by the RenderChunk's index in ViewFrustum#renderChunks
+    protected ViewFrustum viewFrustum;
+    protected CompiledChunk[] lastCompiledChunks = new CompiledChunk[0];
+    protected int[] lastPositions = new int[0]; //(x, y, z) chunk section coordinates
+    protected final IntArrayList changedRenderChunks = new IntArrayList();
 
-    protected boolean dirty;
+    public VanillaRenderabilityTracker(@NonNull Allocator alloc) {
+        this.grid = new VanillaRenderabilityGrid(alloc);
+    }
 
     @Override
     public VanillaRenderabilityTracker retain() throws AlreadyReleasedException {
@@ -86,9 +80,7 @@ public class VanillaRenderabilityTracker extends AbstractRefCounted {
 
     @Override
     protected void doRelease() {
-        if (this.addr != 0L) {
-            this.alloc.free(this.addr);
-        }
+        this.grid.release();
         this.glBuffer.delete();
     }
 
@@ -126,118 +118,80 @@ public class VanillaRenderabilityTracker extends AbstractRefCounted {
             maxChunkY = 16;
         }
 
-        int offsetChunkX = -minChunkX + 1;
-        int offsetChunkY = -minChunkY + 1;
-        int offsetChunkZ = -minChunkZ + 1;
-        int factorChunkX = maxChunkX - minChunkX + 3;
-        int factorChunkY = maxChunkY - minChunkY + 3;
-        int factorChunkZ = maxChunkZ - minChunkZ + 3;
-
-        //iterate over all the RenderChunks which have been compiled, setting bits indicating whether or not they exist and which edges' neighboring
-        //  chunk sections are visible
-        byte[] srcBits = new byte[factorChunkX * factorChunkY * factorChunkZ];
-        Stream.of(viewFrustum.renderChunks).forEach(renderChunk -> {
-            CompiledChunk compiledChunk = renderChunk.getCompiledChunk();
-            if (compiledChunk == CompiledChunk.DUMMY) {
-                return;
+        //remember the grid's old bounds so that we can find the chunk sections which have just entered it
+        int oldOffsetX = this.grid.offsetX();
+        int oldOffsetY = this.grid.offsetY();
+        int oldOffsetZ = this.grid.offsetZ();
+
+        //if the grid's size is unchanged since the last update, it keeps its contents (translating them if the grid has moved), and only the cells which
+        //  actually changed will be recomputed
+        boolean reset = this.grid.begin(-minChunkX + 1, -minChunkY + 1, -minChunkZ + 1,
+                maxChunkX - minChunkX + 3, maxChunkY - minChunkY + 3, maxChunkZ - minChunkZ + 3);
+        boolean moved = oldOffsetX != this.grid.offsetX() || oldOffsetY != this.grid.offsetY() || oldOffsetZ != this.grid.offsetZ();
+
+        RenderChunk[] renderChunks = viewFrustum.renderChunks;
+        if (reset || viewFrustum != this.viewFrustum || renderChunks.length != this.lastCompiledChunks.length) { //we can't make use of the previous state
+            if (!reset) {
+                this.grid.reset();
             }
 
-            BlockPos pos = renderChunk.getPosition();
-            int chunkX = pos.getX() >> 4;
-            int chunkY = pos.getY() >> 4;
-            int chunkZ = pos.getZ() >> 4;
-
-            byte flags = (byte) (0x80 | visibilityMask(compiledChunk));
-            srcBits[((chunkX + offsetChunkX) * factorChunkY + (chunkY + offsetChunkY)) * factorChunkZ + (chunkZ + offsetChunkZ)] = flags;
-        });
-
-        //iterate over the whole grid again, setting the flag to indicate fp2 rendering is blocked by the RenderChunk at the given position if
-        //  the following applies:
-        //  - the RenderChunk has been compiled
-        //  - all of the RenderChunk's visible neighbors have been compiled
-
-        int offset0 = (EnumFacing.DOWN.getXOffset() * factorChunkY + EnumFacing.DOWN.getYOffset()) * factorChunkZ + EnumFacing.DOWN.getZOffset();
-        int offset1 = (EnumFacing.UP.getXOffset() * factorChunkY + EnumFacing.UP.getYOffset()) * factorChunkZ + EnumFacing.UP.getZOffset();
-        int offset2 = (EnumFacing.NORTH.getXOffset() * factorChunkY + EnumFacing.NORTH.getYOffset()) * factorChunkZ + EnumFacing.NORTH.getZOffset();
-        int offset3 = (EnumFacing.SOUTH.getXOffset() * factorChunkY + EnumFacing.SOUTH.getYOffset()) * factorChunkZ + EnumFacing.SOUTH.getZOffset();
-        int offset4 = (EnumFacing.WEST.getXOffset() * factorChunkY + EnumFacing.WEST.getYOffset()) * factorChunkZ + EnumFacing.WEST.getZOffset();
-        int offset5 = (EnumFacing.EAST.getXOffset() * factorChunkY + EnumFacing.EAST.getYOffset()) * factorChunkZ + EnumFacing.EAST.getZOffset();
-
-        long sizeBits = factorChunkX * factorChunkY * factorChunkZ;
-        long sizeBytes = FLAGS_OFFSET + (PMath.roundUp(sizeBits, 32) >> 2);
-
-        long addr = this.alloc.alloc(sizeBytes);
-        PUnsafe.setMemory(addr, sizeBytes, (byte) 0);
-
-        for (int x = 1; x < factorChunkX - 2; x++) {
-            for (int y = 1; y < factorChunkY - 2; y++) {
-                for (int z = 1; z < factorChunkZ - 2; z++) {
-                    int idx = (x * factorChunkY + y) * factorChunkZ + z;
-                    int centerFlags = srcBits[idx] & 0xFF;
-
-                    //look ma, no branches!
-                    long wordAddr = addr + FLAGS_OFFSET + (idx >> 5 << 2);
-                    PUnsafe.putInt(wordAddr, PUnsafe.getInt(wordAddr)
-                                             | (((centerFlags >> 7)
-                                                 & (((~centerFlags >> 0) & 1) | (srcBits[idx + offset0] >> 7))
-                                                 & (((~centerFlags >> 1) & 1) | (srcBits[idx + offset1] >> 7))
-                                                 & (((~centerFlags >> 2) & 1) | (srcBits[idx + offset2] >> 7))
-                                                 & (((~centerFlags >> 3) & 1) | (srcBits[idx + offset3] >> 7))
-                                                 & (((~centerFlags >> 4) & 1) | (srcBits[idx + offset4] >> 7))
-                                                 & (((~centerFlags >> 5) & 1) | (srcBits[idx + offset5] >> 7))) << idx));
-
-                    //equivalent code:
-                    /*flags[idx] = (centerFlags & 0x80) != 0
-                                 && ((centerFlags & (1 << 0)) == 0 || (srcBits[idx + offset0] & 0x80) != 0)
-                                 && ((centerFlags & (1 << 1)) == 0 || (srcBits[idx + offset1] & 0x80) != 0)
-                                 && ((centerFlags & (1 << 2)) == 0 || (srcBits[idx + offset2] & 0x80) != 0)
-                                 && ((centerFlags & (1 << 3)) == 0 || (srcBits[idx + offset3] & 0x80) != 0)
-                                 && ((centerFlags & (1 << 4)) == 0 || (srcBits[idx + offset4] & 0x80) != 0)
-                                 && ((centerFlags & (1 << 5)) == 0 || (srcBits[idx + offset5] & 0x80) != 0);*/
+            this.viewFrustum = viewFrustum;
+            this.lastCompiledChunks = new CompiledChunk[renderChunks.length];
+            this.lastPositions = new int[renderChunks.length * 3];
+        }
 
-                    //equivalent code:
-                    /*IF:
-                    if ((centerFlags & 0x80) != 0) {
-                        for (int i = 0; i < offsets.length; i++) {
-                            if ((centerFlags & (1 << i)) != 0 && (srcBits[idx + offsets[i]] & 0x80) == 0) {
-                                break GOTO;
-                            }
-                        }
-                        flags[idx] = true;
-                    }*/
-                }
+        //find all the RenderChunks which have been compiled, un-compiled or moved since the last update, or which are in a part of the grid which was
+        //  previously out of bounds. first un-set the state at their previous positions...
+        IntArrayList changed = this.changedRenderChunks;
+        int gridSizeX = this.grid.sizeX();
+        int gridSizeY = this.grid.sizeY();
+        int gridSizeZ = this.grid.sizeZ();
+        for (int i = 0; i < renderChunks.length; i++) {
+            RenderChunk renderChunk = renderChunks[i];
+            CompiledChunk compiledChunk = renderChunk.getCompiledChunk();
+            BlockPos pos = renderChunk.getPosition();
+            int x = pos.getX() >> 4;
+            int y = pos.getY() >> 4;
+            int z = pos.getZ() >> 4;
+
+            CompiledChunk lastCompiledChunk = this.lastCompiledChunks[i];
+            int lastX = this.lastPositions[i * 3 + 0];
+            int lastY = this.lastPositions[i * 3 + 1];
+            int lastZ = this.lastPositions[i * 3 + 2];
+
+            if (compiledChunk == lastCompiledChunk && x == lastX && y == lastY && z == lastZ
+                && (!moved || inBounds(x + oldOffsetX, y + oldOffsetY, z + oldOffsetZ, gridSizeX, gridSizeY, gridSizeZ))) { //nothing has changed
+                continue;
             }
-        }
 
-        if (this.addr != 0L) {
-            this.alloc.free(this.addr);
+            if (lastCompiledChunk != null && lastCompiledChunk != CompiledChunk.DUMMY) {
+                this.grid.set(lastX, lastY, lastZ, 0);
+            }
+            changed.add(i);
         }
 
-        {
-            long headersAddr = addr + HEADERS_OFFSET;
+        //...then set the state at their new positions, so that a RenderChunk which moved to another RenderChunk's previous position isn't overwritten
+        for (int j = 0, size = changed.size(); j < size; j++) {
+            int i = changed.getInt(j);
+            RenderChunk renderChunk = renderChunks[i];
+            CompiledChunk compiledChunk = renderChunk.getCompiledChunk();
+            BlockPos pos = renderChunk.getPosition();
+            int x = pos.getX() >> 4;
+            int y = pos.getY() >> 4;
+            int z = pos.getZ() >> 4;
 
-            //ivec3 offset
-            PUnsafe.putInt(headersAddr + 0 * INT_SIZE, offsetChunkX);
-            PUnsafe.putInt(headersAddr + 1 * INT_SIZE, offsetChunkY);
-            PUnsafe.putInt(headersAddr + 2 * INT_SIZE, offsetChunkZ);
-            headersAddr += IVEC3_SIZE;
+            if (compiledChunk != CompiledChunk.DUMMY) {
+                this.grid.set(x, y, z, VanillaRenderabilityGrid.FLAG_COMPILED | visibilityMask(compiledChunk));
+            }
 
-            //ivec3 size
-            PUnsafe.putInt(headersAddr + 0 * INT_SIZE, factorChunkX);
-            PUnsafe.putInt(headersAddr + 1 * INT_SIZE, factorChunkY);
-            PUnsafe.putInt(headersAddr + 2 * INT_SIZE, factorChunkZ);
-            headersAddr += IVEC3_SIZE;
+            this.lastCompiledChunks[i] = compiledChunk;
+            this.lastPositions[i * 3 + 0] = x;
+            this.lastPositions[i * 3 + 1] = y;
+            this.lastPositions[i * 3 + 2] = z;
         }
+        changed.clear();
 
-        this.offsetX = offsetChunkX;
-        this.offsetY = offsetChunkY;
-        this.offsetZ = offsetChunkZ;
-        this.sizeX = factorChunkX;
-        this.sizeY = factorChunkY;
-        this.sizeZ = factorChunkZ;
-        this.sizeBytes = sizeBytes;
-        this.addr = addr;
-        this.dirty = true;
+        this.grid.end();
     }
 
     /**
@@ -249,28 +203,23 @@ public class VanillaRenderabilityTracker extends AbstractRefCounted {
      * @return whether or not vanilla terrain at the given chunk section would prevent us from rendering level-0 FP2 terrain
      */
     public boolean vanillaBlocksFP2RenderingAtLevel0(int chunkX, int chunkY, int chunkZ) {
-        int x = chunkX + this.offsetX;
-        int y = chunkY + this.offsetY;
-        int z = chunkZ + this.offsetZ;
-
-        if (x < 0 || x >= this.sizeX || y < 0 || y >= this.sizeY || z < 0 || z >= this.sizeZ) {
-            return false;
-        }
-
-        int idx = (x * this.sizeY + y) * this.sizeZ + z;
-        return (PUnsafe.getInt(this.addr + FLAGS_OFFSET + (idx >> 5 << 2)) & (1 << idx)) != 0;
+        return this.grid.vanillaBlocksFP2RenderingAtLevel0(chunkX, chunkY, chunkZ);
     }
 
     /**
      * Binds the current state of this tracker to be accessed by shaders.
      */
     public void bindForShaderUse() {
-        if (this.dirty) { //re-upload data if needed
-            this.dirty = false;
-
+        if (this.grid.dirty()) { //re-upload data if needed
             try (GLBuffer buffer = this.glBuffer.bind(GL_SHADER_STORAGE_BUFFER)) {
-                buffer.upload(this.addr, this.sizeBytes);
+                if (this.grid.resized()) { //the grid has been re-allocated, upload all of it
+                    buffer.upload(this.grid.addr(), this.grid.sizeBytes());
+                } else { //only upload the range which was actually modified
+                    buffer.uploadRange(this.grid.dirtyStart(), this.grid.addr() + this.grid.dirtyStart(), this.grid.dirtyEnd() - this.grid.dirtyStart());
+                }
             }
+
+            this.grid.markClean();
         }
 
         this.glBuffer.bindBase(GL_SHADER_STORAGE_BUFFER, 6);
@@ -30,13 +30,16 @@ import io.github.opencubicchunks.cubicchunks.api.worldgen.ICubeGenerator;
 import io.github.opencubicchunks.cubicchunks.core.asm.mixin.ICubicWorldInternal;
 import io.github.opencubicchunks.cubicchunks.core.server.chunkio.AsyncBatchingCubeIO;
 import io.github.opencubicchunks.cubicchunks.core.server.chunkio.ICubeIO;
+import io.github.opencubicchunks.cubicchunks.core.server.chunkio.RegionCubeStorage;
 import io.github.opencubicchunks.cubicchunks.core.world.ICubeProviderInternal;
 import io.github.opencubicchunks.cubicchunks.core.world.cube.Cube;
 import lombok.NonNull;
 import lombok.SneakyThrows;
 import net.daporkchop.fp2.compat.cc.biome.Column2dBiomeAccessWrapper;
 import net.daporkchop.fp2.compat.cc.biome.CubeBiomeAccessWrapper;
+import net.daporkchop.fp2.compat.cc.cube.CubeSummary;
 import net.daporkchop.fp2.compat.cc.cube.CubeWithoutWorld;
+import net.daporkchop.fp2.compat.cc.cube.ICubeSummaryAccess;
 import net.daporkchop.fp2.compat.vanilla.IBiomeAccess;
 import net.daporkchop.fp2.compat.vanilla.IBlockHeightAccess;
 import net.daporkchop.fp2.mode.api.ctx.IFarWorldServer;
@@ -44,12 +47,14 @@ import net.daporkchop.fp2.server.worldlistener.IWorldChangeListener;
 import net.daporkchop.fp2.server.worldlistener.WorldChangeListenerManager;
 import net.daporkchop.fp2.util.datastructure.Datastructures;
 import net.daporkchop.fp2.util.datastructure.NDimensionalIntSegtreeSet;
+import net.daporkchop.fp2.util.datastructure.PersistentExistenceIndex;
 import net.daporkchop.fp2.util.threading.ThreadingHelper;
 import net.daporkchop.fp2.util.threading.asyncblockaccess.AsyncCacheNBTBase;
 import net.daporkchop.fp2.util.threading.asyncblockaccess.IAsyncBlockAccess;
 import net.daporkchop.fp2.util.threading.futurecache.GenerationNotAllowedException;
 import net.daporkchop.fp2.util.threading.futurecache.IAsyncCache;
 import net.daporkchop.fp2.util.threading.lazy.LazyFutureTask;
+import net.daporkchop.lib.common.function.throwing.ESupplier;
 import net.daporkchop.lib.common.util.PorkUtil;
 import net.daporkchop.lib.unsafe.PUnsafe;
 import net.minecraft.block.state.IBlockState;
@@ -67,12 +72,18 @@ import net.minecraft.world.chunk.IChunkProvider;
 import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
 
 import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 import java.util.stream.Stream;
 
+import static net.daporkchop.fp2.util.Constants.*;
 import static net.daporkchop.lib.common.util.PorkUtil.*;
 
 /**
@@ -93,10 +104,15 @@ public class CCAsyncBlockAccessImpl implements IAsyncBlockAccess, IWorldChangeLi
 
     protected final ExtendedBlockStorage emptyStorage;
 
+    protected final PersistentExistenceIndex columnsExistIndex;
+    protected final PersistentExistenceIndex cubesExistIndex;
+
     protected final NDimensionalIntSegtreeSet columnsExistCache;
     protected final NDimensionalIntSegtreeSet cubesExistCache;
 
     protected final AtomicInteger generatedCount = new AtomicInteger();
+    protected long lastIndexCheckpoint = System.nanoTime();
+    protected CompletableFuture<Void> indexCheckpoint = CompletableFuture.completedFuture(null);
 
     public CCAsyncBlockAccessImpl(@NonNull WorldServer world) {
         this.world = world;
@@ -108,26 +124,79 @@ public class CCAsyncBlockAccessImpl implements IAsyncBlockAccess, IWorldChangeLi
 
         WorldChangeListenerManager.add(this.world, this);
 
+        //the existence caches are initialized from a persisted index if possible, since scanning the whole storage can take a very long time
+        Path indexRoot = world.getChunkSaveLocation().toPath().resolve("fp2/cc");
+        this.columnsExistIndex = new PersistentExistenceIndex(indexRoot.resolve("columns.idx"), 2);
+        this.cubesExistIndex = new PersistentExistenceIndex(indexRoot.resolve("cubes.idx"), 3);
+
         this.columnsExistCache = Datastructures.INSTANCE.nDimensionalIntSegtreeSet()
                 .dimensions(2)
                 .threadSafe(true)
-                .initialPoints(() -> {
+                .initialPoints(() -> this.loadOrRebuildIndex(this.columnsExistIndex, () -> {
                     List<int[]> positions = new ArrayList<>();
                     CCAsyncBlockAccessImpl.this.storage.forEachColumn(pos -> positions.add(new int[]{ pos.x, pos.z }));
-                    return positions.stream();
-                })
+                    return positions;
+                }))
                 .build();
         this.cubesExistCache = Datastructures.INSTANCE.nDimensionalIntSegtreeSet()
                 .dimensions(3)
                 .threadSafe(true)
-                .initialPoints(() -> {
+                .initialPoints(() -> this.loadOrRebuildIndex(this.cubesExistIndex, () -> {
                     List<int[]> positions = new ArrayList<>();
                     CCAsyncBlockAccessImpl.this.storage.forEachCube(pos -> positions.add(new int[]{ pos.getX(), pos.getY(), pos.getZ() }));
-                    return positions.stream();
-                })
+                    return positions;
+                }))
                 .build();
     }
 
+    protected Stream<int[]> loadOrRebuildIndex(@NonNull PersistentExistenceIndex index, @NonNull ESupplier<List<int[]>> scanner) throws IOException {
+        List<int[]> positions = index.load(this.storageLastModified());
+        if (positions != null) {
+            return positions.stream();
+        }
+
+        FP2_LOG.info("existence index {} is missing or stale, rebuilding it from a full scan...", index.snapshotFile());
+        return index.rebuild(scanner).stream();
+    }
+
+    /**
+     * @return the time at which the cubic chunks storage was last modified
+     */
+    protected long storageLastModified() throws IOException {
+        if (!(this.storage instanceof RegionCubeStorage)) { //we don't know how to check when a custom storage implementation was last modified, so always assume it's newer
+            return Long.MAX_VALUE;
+        }
+
+        long lastModified = 0L;
+        for (String dir : new String[]{ "region2d", "region3d" }) {
+            Path path = this.world.getChunkSaveLocation().toPath().resolve(dir);
+            if (Files.isDirectory(path)) {
+                try (DirectoryStream<Path> stream = Files.newDirectoryStream(path)) {
+                    for (Path file : stream) {
+                        lastModified = Math.max(lastModified, Files.getLastModifiedTime(file).toMillis());
+                    }
+                }
+            }
+        }
+        return lastModified;
+    }
+
+    @Override
+    public void close() {
+        //wait for any checkpoint which is still being written before compacting the indices
+        this.indexCheckpoint.join();
+
+        //this is called when the world is unloaded, before forge flushes cubic chunks' queued region writes. those will make the region files newer than the
+        //  snapshots written here, which the indices tolerate for a short grace period after being closed
+
+        try {
+            this.columnsExistIndex.close(callback -> this.columnsExistCache.forEach2D((x, z) -> callback.accept(new int[]{ x, z })));
+            this.cubesExistIndex.close(callback -> this.cubesExistCache.forEach3D((x, y, z) -> callback.accept(new int[]{ x, y, z })));
+        } catch (IOException e) {
+            FP2_LOG.error("unable to save existence indices for " + this.world.getChunkSaveLocation(), e);
+        }
+    }
+
     @Override
     public IBlockHeightAccess prefetch(@NonNull Stream<ChunkPos> columns) {
         //collect all futures into a list first in order to issue all tasks at once before blocking, thus ensuring maximum parallelism
@@ -174,12 +243,14 @@ public class CCAsyncBlockAccessImpl implements IAsyncBlockAccess, IWorldChangeLi
     @Override
     public void onColumnSaved(@NonNull World world, int columnX, int columnZ, @NonNull NBTTagCompound nbt, @NonNull Chunk column) {
         this.columnsExistCache.add(columnX, columnZ);
+        this.columnsExistIndex.add(columnX, columnZ);
         this.columns.notifyUpdate(new ChunkPos(columnX, columnZ), nbt);
     }
 
     @Override
     public void onCubeSaved(@NonNull World world, int cubeX, int cubeY, int cubeZ, @NonNull NBTTagCompound nbt, @NonNull ICube cube) {
         this.cubesExistCache.add(cubeX, cubeY, cubeZ);
+        this.cubesExistIndex.add(cubeX, cubeY, cubeZ);
         this.cubes.notifyUpdate(new CubePos(cubeX, cubeY, cubeZ), nbt);
     }
 
@@ -193,6 +264,21 @@ public class CCAsyncBlockAccessImpl implements IAsyncBlockAccess, IWorldChangeLi
 
             ((ICubicWorldServer) this.world).unloadOldCubes();
         }
+
+        //persist all newly saved columns and cubes at most once per second. the journals are written and synced to disk in the background to avoid blocking
+        //  the server thread, and a new checkpoint is only started once the previous one is complete.
+        long now = System.nanoTime();
+        if (now - this.lastIndexCheckpoint >= TimeUnit.SECONDS.toNanos(1L) && this.indexCheckpoint.isDone()) {
+            this.lastIndexCheckpoint = now;
+            this.indexCheckpoint = CompletableFuture.runAsync(() -> {
+                try {
+                    this.columnsExistIndex.checkpoint();
+                    this.cubesExistIndex.checkpoint();
+                } catch (IOException e) {
+                    FP2_LOG.error("unable to update existence indices for " + this.world.getChunkSaveLocation(), e);
+                }
+            });
+        }
     }
 
     @Override
@@ -224,6 +310,17 @@ public class CCAsyncBlockAccessImpl implements IAsyncBlockAccess, IWorldChangeLi
         return GenerationNotAllowedException.throwIfNull(this.cubes.get(new CubePos(cubeX, cubeY, cubeZ), allowGeneration).join());
     }
 
+    /**
+     * Gets the summary of the cube at the given position, but only if the cube is already loaded.
+     *
+     * @return the cube's summary, or {@link CubeSummary#NONE} if the cube isn't loaded
+     * @see ICubeSummaryAccess#getCubeSummary(int, int, int)
+     */
+    public int getLoadedCubeSummary(int cubeX, int cubeY, int cubeZ) {
+        ICube cube = this.cubes.getIfLoaded(new CubePos(cubeX, cubeY, cubeZ));
+        return cube instanceof CubeWithoutWorld ? ((CubeWithoutWorld) cube).summary() : CubeSummary.NONE;
+    }
+
     @Override
     public int getBlockLight(BlockPos pos, boolean allowGeneration) {
         if (!this.world.isValid(pos)) {
@@ -22,6 +22,7 @@ package net.daporkchop.fp2.compat.cc.asyncblockaccess;
 
 import io.github.opencubicchunks.cubicchunks.api.world.IColumn;
 import lombok.NonNull;
+import net.daporkchop.fp2.compat.cc.cube.ICubeSummaryAccess;
 import net.daporkchop.fp2.util.threading.asyncblockaccess.AbstractPrefetchedAsyncBlockAccess;
 import net.daporkchop.fp2.util.threading.asyncblockaccess.IAsyncBlockAccess;
 import net.daporkchop.lib.primitive.map.LongObjMap;
@@ -38,7 +39,7 @@ import static net.daporkchop.lib.common.util.PValidation.*;
  *
  * @author DaPorkchop_
  */
-public class PrefetchedColumnsCCAsyncBlockAccess extends AbstractPrefetchedAsyncBlockAccess<CCAsyncBlockAccessImpl> {
+public class PrefetchedColumnsCCAsyncBlockAccess extends AbstractPrefetchedAsyncBlockAccess<CCAsyncBlockAccessImpl> implements ICubeSummaryAccess {
     protected final LongObjMap<IColumn> columns = new LongObjOpenHashMap<>();
 
     public PrefetchedColumnsCCAsyncBlockAccess(CCAsyncBlockAccessImpl parent, WorldServer world, boolean allowGeneration, @NonNull Stream<IColumn> columns) {
@@ -68,5 +69,11 @@ public class PrefetchedColumnsCCAsyncBlockAccess extends AbstractPrefetchedAsync
         return super.getTopBlockYBelow(blockX, blockY, blockZ);
     }
 
+    @Override
+    public int getCubeSummary(int cubeX, int cubeY, int cubeZ) {
+        //loading an entire cube just to summarize it would defeat the purpose of the summary, so we only use cubes which are already loaded
+        return this.parent.getLoadedCubeSummary(cubeX, cubeY, cubeZ);
+    }
+
     //leave all other implementations blank because IColumn can't access them directly
 }
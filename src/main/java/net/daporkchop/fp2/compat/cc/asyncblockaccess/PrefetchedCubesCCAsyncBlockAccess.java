@@ -24,6 +24,8 @@ import io.github.opencubicchunks.cubicchunks.api.util.XYZMap;
 import io.github.opencubicchunks.cubicchunks.api.world.IColumn;
 import io.github.opencubicchunks.cubicchunks.api.world.ICube;
 import lombok.NonNull;
+import net.daporkchop.fp2.compat.cc.cube.CubeSummary;
+import net.daporkchop.fp2.compat.cc.cube.CubeWithoutWorld;
 import net.daporkchop.fp2.util.threading.asyncblockaccess.IAsyncBlockAccess;
 import net.minecraft.block.state.IBlockState;
 import net.minecraft.util.math.BlockPos;
@@ -52,6 +54,15 @@ public class PrefetchedCubesCCAsyncBlockAccess extends PrefetchedColumnsCCAsyncB
         });
     }
 
+    @Override
+    public int getCubeSummary(int cubeX, int cubeY, int cubeZ) {
+        ICube cube = this.cubes.get(cubeX, cubeY, cubeZ);
+        if (cube != null) {
+            return cube instanceof CubeWithoutWorld ? ((CubeWithoutWorld) cube).summary() : CubeSummary.NONE;
+        }
+        return super.getCubeSummary(cubeX, cubeY, cubeZ);
+    }
+
     @Override
     public int getCombinedLight(BlockPos pos, int defaultBlockLightValue) {
         if (!this.world.isValid(pos)) {
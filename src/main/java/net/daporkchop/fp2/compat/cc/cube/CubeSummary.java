@@ -0,0 +1,135 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package net.daporkchop.fp2.compat.cc.cube;
+
+import lombok.NonNull;
+import lombok.experimental.UtilityClass;
+import net.minecraft.block.material.Material;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+
+/**
+ * Coarse summaries of the block states contained in a single cube.
+ * <p>
+ * A summary is a bitfield of the {@code FLAG_*} constants. Each flag is a guarantee about <i>every</i> block in the cube, so a summary of {@link #NONE} is always
+ * correct (if not very useful), and is what should be returned whenever nothing is known about a cube.
+ *
+ * @author DaPorkchop_
+ */
+@UtilityClass
+public class CubeSummary {
+    /**
+     * Nothing is known about the cube.
+     */
+    public static final int NONE = 0;
+
+    /**
+     * The cube contains no blocks other than air.
+     */
+    public static final int FLAG_EMPTY = 1 << 0;
+
+    /**
+     * The cube contains no blocks for which {@link IBlockState#isOpaqueCube()} is {@code true}.
+     */
+    public static final int FLAG_NO_OPAQUE = 1 << 1;
+
+    /**
+     * The cube contains no blocks whose {@link Material} is {@link Material#isSolid() solid}.
+     */
+    public static final int FLAG_NO_SOLID = 1 << 2;
+
+    /**
+     * The cube contains no blocks whose {@link Material} is {@link Material#isLiquid() a liquid}.
+     */
+    public static final int FLAG_NO_LIQUID = 1 << 3;
+
+    /**
+     * All flags which are implied by {@link #FLAG_EMPTY}.
+     */
+    public static final int ALL = FLAG_EMPTY | FLAG_NO_OPAQUE | FLAG_NO_SOLID | FLAG_NO_LIQUID;
+
+    /**
+     * Checks whether or not the given summary has all of the given flags set.
+     *
+     * @param summary the summary
+     * @param flags   the flags to check for
+     * @return whether or not all of the flags are set
+     */
+    public static boolean hasAll(int summary, int flags) {
+        return (summary & flags) == flags;
+    }
+
+    /**
+     * Computes the summary of a single block state.
+     *
+     * @param state the {@link IBlockState}
+     * @return the summary of a cube consisting only of the given block state
+     */
+    public static int summarize(@NonNull IBlockState state) {
+        Material material = state.getMaterial();
+        if (material == Material.AIR) {
+            return ALL;
+        }
+
+        int summary = NONE;
+        if (!state.isOpaqueCube()) {
+            summary |= FLAG_NO_OPAQUE;
+        }
+        if (!material.isSolid()) {
+            summary |= FLAG_NO_SOLID;
+        }
+        if (!material.isLiquid()) {
+            summary |= FLAG_NO_LIQUID;
+        }
+        return summary;
+    }
+
+    /**
+     * Computes the summary of the given {@link ExtendedBlockStorage}.
+     * <p>
+     * This has to visit every block in the storage, and should therefore be cached by the caller.
+     *
+     * @param storage the {@link ExtendedBlockStorage}
+     * @return the summary
+     */
+    public static int summarize(@NonNull ExtendedBlockStorage storage) {
+        if (storage.isEmpty()) { //the storage keeps track of the number of non-air blocks, so we can skip the scan entirely
+            return ALL;
+        }
+
+        int summary = ALL & ~FLAG_EMPTY;
+        IBlockState prevState = null;
+        for (int y = 0; y < 16; y++) {
+            for (int z = 0; z < 16; z++) {
+                for (int x = 0; x < 16; x++) {
+                    IBlockState state = storage.get(x, y, z);
+                    if (state != prevState) { //skip duplicate block states, there are usually long runs of them
+                        prevState = state;
+                        if ((summary &= summarize(state)) == NONE) { //no flags are left, no need to look any further
+                            return NONE;
+                        }
+                    }
+                }
+            }
+        }
+        return summary;
+    }
+}
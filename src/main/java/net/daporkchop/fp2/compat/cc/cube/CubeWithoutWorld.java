@@ -63,6 +63,19 @@ public class CubeWithoutWorld implements ICube {
     @NonNull
     protected final CubePos pos;
 
+    protected int summary = -1;
+
+    /**
+     * @return this cube's {@link CubeSummary summary}
+     */
+    public int summary() {
+        int summary = this.summary;
+        if (summary < 0) { //compute summary lazily. this is racy, but harmless: every thread will compute the same value
+            this.summary = summary = CubeSummary.summarize(this.storage);
+        }
+        return summary;
+    }
+
     @Override
     public IBlockState getBlockState(BlockPos pos) {
         return this.getBlockState(pos.getX(), pos.getY(), pos.getZ());
@@ -0,0 +1,126 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package net.daporkchop.fp2.compat.cwg;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static net.daporkchop.lib.common.math.PMath.*;
+import static net.daporkchop.lib.common.util.PValidation.*;
+
+/**
+ * A bounded, thread-safe cache of the 2D inputs to CubicWorldGen's terrain generator (biomes, biome heights/variations and depth noise).
+ * <p>
+ * These only depend on the horizontal position and detail level, and are therefore identical for every voxel tile in a vertical column. Sharing a single
+ * cache between all the {@link CWGContext}s for a world allows them to be computed once per column rather than once per tile.
+ * <p>
+ * The cache is direct-mapped: each column can only be stored in a single slot, which is simply overwritten when another column is stored there. This makes
+ * it lossy, but lookups and insertions are lock-free and require no bookkeeping. If multiple threads miss on the same column at once, each of them will
+ * compute it, which is harmless since the results are identical.
+ *
+ * @author DaPorkchop_
+ */
+public class CWGColumnCache {
+    protected final AtomicReferenceArray<Column> slots;
+    protected final int mask;
+
+    /**
+     * @param capacity the maximum number of columns to cache. Will be rounded up to the next power of two.
+     */
+    public CWGColumnCache(int capacity) {
+        positive(capacity, "capacity");
+
+        int slotCount = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(slotCount);
+        this.mask = slotCount - 1;
+    }
+
+    protected static int hash(int baseX, int baseZ, int level, int size) {
+        int hash = baseX * 1317194159 + baseZ * 1656858407 + level * 1964379643 + size;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Gets the column at the given position, computing it if it isn't cached.
+     * <p>
+     * The returned {@link Column}'s arrays must not be modified.
+     *
+     * @param baseX  the base X coordinate (in blocks)
+     * @param baseZ  the base Z coordinate (in blocks)
+     * @param level  the detail level
+     * @param size   the size of the column along the X and Z axes (in samples)
+     * @param loader the {@link Loader} to use for computing the column if it isn't cached
+     * @return the column
+     */
+    public Column get(int baseX, int baseZ, int level, int size, @NonNull Loader loader) {
+        int slot = hash(baseX, baseZ, level, size) & this.mask;
+
+        Column column = this.slots.get(slot);
+        if (column != null && column.baseX == baseX && column.baseZ == baseZ && column.level == level && column.size == size) { //cache hit
+            return column;
+        }
+
+        //cache miss: compute the column and store it, replacing whatever was there before
+        int[] biomes = new int[sq(size)];
+        double[] heights = new double[sq(size)];
+        double[] variations = new double[sq(size)];
+        double[] depth = new double[sq(size)];
+        loader.load(baseX, baseZ, level, size, biomes, heights, variations, depth);
+
+        column = new Column(baseX, baseZ, level, size, biomes, heights, variations, depth);
+        this.slots.set(slot, column);
+        return column;
+    }
+
+    /**
+     * Computes the 2D inputs for a column.
+     *
+     * @author DaPorkchop_
+     */
+    @FunctionalInterface
+    public interface Loader {
+        void load(int baseX, int baseZ, int level, int size, @NonNull int[] biomes, @NonNull double[] heights, @NonNull double[] variations, @NonNull double[] depth);
+    }
+
+    /**
+     * The cached 2D inputs for a single column.
+     *
+     * @author DaPorkchop_
+     */
+    @RequiredArgsConstructor
+    public static final class Column {
+        public final int baseX;
+        public final int baseZ;
+        public final int level;
+        public final int size;
+
+        @NonNull
+        public final int[] biomes;
+        @NonNull
+        public final double[] heights;
+        @NonNull
+        public final double[] variations;
+        @NonNull
+        public final double[] depth;
+    }
+}
@@ -66,6 +66,8 @@ public class CWGContext {
 
     protected final int expectedBaseHeight;
 
+    protected final CWGColumnCache columnCache;
+
     //current initialization position
     protected int baseX;
     protected int baseZ;
@@ -78,17 +80,46 @@ public class CWGContext {
     protected int cacheBaseZ;
 
     public CWGContext(@NonNull World world, int size, int smoothRadius) {
+        this(world, size, smoothRadius, null);
+    }
+
+    /**
+     * @param columnCache a {@link CWGColumnCache} to share the 2D inputs of each column with other contexts, or {@code null} if they should always be recomputed
+     */
+    public CWGContext(@NonNull World world, int size, int smoothRadius, CWGColumnCache columnCache) {
+        this(world, size, smoothRadius, columnCache, CustomGeneratorSettings.getFromWorld(world));
+    }
+
+    protected CWGContext(@NonNull World world, int size, int smoothRadius, CWGColumnCache columnCache, @NonNull CustomGeneratorSettings conf) {
+        this(world, size, smoothRadius, columnCache, conf,
+                new BiomeSource(world, conf.createBiomeBlockReplacerConfig(), CustomCubicWorldType.makeBiomeProvider(world, conf), smoothRadius));
+    }
+
+    protected CWGContext(@NonNull World world, int size, int smoothRadius, CWGColumnCache columnCache, @NonNull CustomGeneratorSettings conf, @NonNull BiomeSource biomeSource) {
+        this(size, smoothRadius, columnCache, conf, world.getSeed(),
+                BiomeHelper.from(CWGHelper.getBiomeGen(biomeSource)), CWGHelper.blockReplacerMapToArray(CWGHelper.getReplacerMap(biomeSource)));
+    }
+
+    /**
+     * Creates a new {@link CWGContext} which isn't bound to a {@link World}.
+     *
+     * @param columnCache         a {@link CWGColumnCache} to share the 2D inputs of each column with other contexts, or {@code null} if they should always be recomputed
+     * @param conf                the CWG generator settings
+     * @param seed                the world seed
+     * @param biomeProvider       the {@link IBiomeProvider} to generate biomes with
+     * @param biomeBlockReplacers the block replacers for each biome, indexed by biome ID
+     */
+    public CWGContext(int size, int smoothRadius, CWGColumnCache columnCache, @NonNull CustomGeneratorSettings conf, long seed,
+                      @NonNull IBiomeProvider biomeProvider, @NonNull IBiomeBlockReplacer[][] biomeBlockReplacers) {
+        this.columnCache = columnCache;
         this.size = notNegative(size, "size");
         this.biomes = new int[this.size * this.size];
 
-        CustomGeneratorSettings conf = CustomGeneratorSettings.getFromWorld(world);
-        BiomeSource biomeSource = new BiomeSource(world, conf.createBiomeBlockReplacerConfig(), CustomCubicWorldType.makeBiomeProvider(world, conf), smoothRadius);
-
-        this.biomeProvider = BiomeHelper.from(CWGHelper.getBiomeGen(biomeSource));
+        this.biomeProvider = biomeProvider;
         this.weightHelper = new VanillaBiomeWeightHelper(0.0d, 1.0d, 0.0d, 1.0d, smoothRadius);
-        this.biomeBlockReplacers = CWGHelper.blockReplacerMapToArray(CWGHelper.getReplacerMap(biomeSource));
+        this.biomeBlockReplacers = biomeBlockReplacers;
 
-        this.configuredNoiseGen = CWGNoiseProvider.INSTANCE.forSettings(conf, world.getSeed());
+        this.configuredNoiseGen = CWGNoiseProvider.INSTANCE.forSettings(conf, seed);
 
         this.heights = new double[this.size * this.size];
         this.variations = new double[this.size * this.size];
@@ -137,16 +168,33 @@ public class CWGContext {
             this.cacheBaseZ = baseZ;
         }
 
-        this.biomeProvider.generateBiomesAndWeightedHeightsVariations(this.cacheBaseX, this.cacheBaseZ, this.cacheLevel, this.cacheSize, this.biomes, this.heights, this.variations, this.weightHelper);
+        if (this.columnCache != null) { //get the 2d inputs from the shared cache, and copy them into our own arrays
+            CWGColumnCache.Column column = this.columnCache.get(this.cacheBaseX, this.cacheBaseZ, this.cacheLevel, this.cacheSize, this::init2d);
+
+            int count = sq(this.cacheSize);
+            System.arraycopy(column.biomes, 0, this.biomes, 0, count);
+            System.arraycopy(column.heights, 0, this.heights, 0, count);
+            System.arraycopy(column.variations, 0, this.variations, 0, count);
+            System.arraycopy(column.depth, 0, this.depth, 0, count);
+        } else {
+            this.init2d(this.cacheBaseX, this.cacheBaseZ, this.cacheLevel, this.cacheSize, this.biomes, this.heights, this.variations, this.depth);
+        }
+    }
+
+    /**
+     * Computes the 2D inputs (biomes, biome heights/variations and depth noise) for the given column.
+     */
+    protected void init2d(int baseX, int baseZ, int level, int size, @NonNull int[] biomes, @NonNull double[] heights, @NonNull double[] variations, @NonNull double[] depth) {
+        this.biomeProvider.generateBiomesAndWeightedHeightsVariations(baseX, baseZ, level, size, biomes, heights, variations, this.weightHelper);
 
         //convert biome heights/variations to CWG forms
-        for (int i = 0; i < sq(this.cacheSize); i++) {
-            this.heights[i] = BiomeHelper.biomeHeightVanilla(this.heights[i]);
-            this.variations[i] = BiomeHelper.biomeHeightVariationVanilla(this.variations[i]);
+        for (int i = 0; i < sq(size); i++) {
+            heights[i] = BiomeHelper.biomeHeightVanilla(heights[i]);
+            variations[i] = BiomeHelper.biomeHeightVariationVanilla(variations[i]);
         }
 
         //precompute depth noise
-        this.configuredNoiseGen.generateDepth2d(this.depth, this.cacheBaseX, this.cacheBaseZ, 1 << this.cacheLevel, 1 << this.cacheLevel, this.cacheSize, this.cacheSize);
+        this.configuredNoiseGen.generateDepth2d(depth, baseX, baseZ, 1 << level, 1 << level, size, size);
     }
 
     protected int cacheIndex(int x, int z) {
@@ -0,0 +1,182 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package net.daporkchop.fp2.compat.vanilla.biome.layer;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import net.daporkchop.lib.common.pool.array.ArrayAllocator;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static java.lang.Math.*;
+import static net.daporkchop.fp2.util.math.MathUtil.*;
+import static net.daporkchop.lib.common.util.PValidation.*;
+
+/**
+ * An {@link IFastLayer} which caches the output of another layer in fixed-size, grid-aligned tiles.
+ * <p>
+ * Grid requests are served by copying from the cached tiles which intersect the requested area, and tiles which are missing are generated by requesting the
+ * whole tile from the delegate layer. Because the value generated by a layer at any given position does not depend on the area being requested, the output
+ * is always identical to that of the delegate layer.
+ * <p>
+ * This is intended to be placed in front of the coarse layers of the generation chain (the children of {@link IZoomingLayer}s), whose output is requested
+ * repeatedly (with overlapping padding) when generating adjacent areas.
+ * <p>
+ * The cache is direct-mapped with a fixed number of slots, so its memory usage is bounded by {@code capacity * TILE_SIZE * TILE_SIZE * 4} bytes. Tiles are
+ * immutable once published, so the cache may be read and written concurrently without locking: at worst, two threads will generate the same tile at the
+ * same time.
+ *
+ * @author DaPorkchop_
+ */
+@Getter
+public class CachingFastLayer implements IFastLayer {
+    public static final int TILE_SHIFT = 4;
+    public static final int TILE_SIZE = 1 << TILE_SHIFT;
+    public static final int TILE_MASK = TILE_SIZE - 1;
+
+    public static final int DEFAULT_CAPACITY = 256;
+
+    protected final IFastLayer delegate;
+
+    @Getter(AccessLevel.NONE)
+    protected final AtomicReferenceArray<Tile> tiles;
+    @Getter(AccessLevel.NONE)
+    protected final int mask;
+
+    public CachingFastLayer(@NonNull IFastLayer delegate) {
+        this(delegate, DEFAULT_CAPACITY);
+    }
+
+    public CachingFastLayer(@NonNull IFastLayer delegate, int capacity) {
+        positive(capacity, "capacity");
+        capacity = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+
+        this.delegate = delegate;
+        this.tiles = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * @return the maximum number of tiles which may be cached at once
+     */
+    public int capacity() {
+        return this.mask + 1;
+    }
+
+    @Override
+    public void init(@NonNull IFastLayer[] children) {
+        //no-op: the delegate layer is initialized separately
+    }
+
+    @Override
+    public int getSingle(@NonNull ArrayAllocator<int[]> alloc, int x, int z) {
+        int tileX = x >> TILE_SHIFT;
+        int tileZ = z >> TILE_SHIFT;
+
+        Tile tile = this.tiles.get(hash(tileX, tileZ) & this.mask);
+        if (tile != null && tile.tileX == tileX && tile.tileZ == tileZ) {
+            return tile.values[((x & TILE_MASK) << TILE_SHIFT) | (z & TILE_MASK)];
+        } else { //generating a whole tile for a single value would be a waste of time
+            return this.delegate.getSingle(alloc, x, z);
+        }
+    }
+
+    @Override
+    public void getGrid(@NonNull ArrayAllocator<int[]> alloc, int x, int z, int sizeX, int sizeZ, @NonNull int[] out) {
+        int minTileX = x >> TILE_SHIFT;
+        int minTileZ = z >> TILE_SHIFT;
+        int maxTileX = (x + sizeX - 1) >> TILE_SHIFT;
+        int maxTileZ = (z + sizeZ - 1) >> TILE_SHIFT;
+
+        if ((long) (maxTileX - minTileX + 1) * (maxTileZ - minTileZ + 1) > (this.capacity() >> 2)) {
+            //the request covers so many tiles that caching them would only serve to evict everything else, get the grid directly from the delegate layer
+            this.delegate.getGrid(alloc, x, z, sizeX, sizeZ, out);
+            return;
+        }
+
+        for (int tileX = minTileX; tileX <= maxTileX; tileX++) {
+            int tileBaseX = tileX << TILE_SHIFT;
+            int minX = max(x, tileBaseX);
+            int maxX = min(x + sizeX, tileBaseX + TILE_SIZE);
+
+            for (int tileZ = minTileZ; tileZ <= maxTileZ; tileZ++) {
+                int tileBaseZ = tileZ << TILE_SHIFT;
+                int minZ = max(z, tileBaseZ);
+                int maxZ = min(z + sizeZ, tileBaseZ + TILE_SIZE);
+
+                int[] values = this.tile(alloc, tileX, tileZ).values;
+
+                //copy the intersecting region of the tile into the output grid, one row at a time
+                for (int xx = minX; xx < maxX; xx++) {
+                    System.arraycopy(values, ((xx - tileBaseX) << TILE_SHIFT) + (minZ - tileBaseZ), out, (xx - x) * sizeZ + (minZ - z), maxZ - minZ);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void multiGetGrids(@NonNull ArrayAllocator<int[]> alloc, int x, int z, int size, int dist, int depth, int count, @NonNull int[] out) {
+        //each individual grid is served from the cache, so there's no point in trying to merge them
+        int[] tmp = alloc.atLeast(size * size);
+        try {
+            for (int i = 0, gridX = 0; gridX < count; gridX++) {
+                for (int gridZ = 0; gridZ < count; gridZ++, i += size * size) {
+                    this.getGrid(alloc, mulAddShift(gridX, dist, x, depth), mulAddShift(gridZ, dist, z, depth), size, size, tmp);
+                    System.arraycopy(tmp, 0, out, i, size * size);
+                }
+            }
+        } finally {
+            alloc.release(tmp);
+        }
+    }
+
+    protected Tile tile(@NonNull ArrayAllocator<int[]> alloc, int tileX, int tileZ) {
+        int slot = hash(tileX, tileZ) & this.mask;
+
+        Tile tile = this.tiles.get(slot);
+        if (tile == null || tile.tileX != tileX || tile.tileZ != tileZ) { //cache miss: generate the whole tile and store it, replacing whatever was there before
+            int[] values = new int[TILE_SIZE * TILE_SIZE];
+            this.delegate.getGrid(alloc, tileX << TILE_SHIFT, tileZ << TILE_SHIFT, TILE_SIZE, TILE_SIZE, values);
+
+            this.tiles.set(slot, tile = new Tile(tileX, tileZ, values));
+        }
+        return tile;
+    }
+
+    protected static int hash(int tileX, int tileZ) {
+        int h = tileX * 0x9E3779B9 + tileZ * 0x632BE5AB;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * A single cached tile.
+     *
+     * @author DaPorkchop_
+     */
+    @RequiredArgsConstructor
+    protected static final class Tile {
+        protected final int tileX;
+        protected final int tileZ;
+        protected final int[] values;
+    }
+}
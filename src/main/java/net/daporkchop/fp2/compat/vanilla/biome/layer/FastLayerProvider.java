@@ -47,8 +47,22 @@ public interface FastLayerProvider extends Feature<FastLayerProvider> {
      * Note that if you have multiple {@link GenLayer}s to convert, you should convert them all at once with a single invocation of this method, rather than
      * converting them each individually. Doing so may provide a not insignificant performance boost.
      *
+     * The inputs of all zooming layers will be wrapped in a {@link CachingFastLayer}.
+     *
      * @param inputs the {@link GenLayer}s
      * @return the converted {@link IFastLayer}s, in the same order as the inputs were provided in
      */
-    IFastLayer[] makeFast(@NonNull GenLayer... inputs);
+    default IFastLayer[] makeFast(@NonNull GenLayer... inputs) {
+        return this.makeFast(true, inputs);
+    }
+
+    /**
+     * Converts the given {@link GenLayer}s to their {@link IFastLayer} equivalents.
+     *
+     * @param cacheCoarseLayers whether or not the inputs of all zooming layers should be wrapped in a {@link CachingFastLayer}
+     * @param inputs            the {@link GenLayer}s
+     * @return the converted {@link IFastLayer}s, in the same order as the inputs were provided in
+     * @see #makeFast(GenLayer...)
+     */
+    IFastLayer[] makeFast(boolean cacheCoarseLayers, @NonNull GenLayer... inputs);
 }
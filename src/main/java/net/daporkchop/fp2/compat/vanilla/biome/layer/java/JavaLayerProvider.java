@@ -22,8 +22,10 @@ package net.daporkchop.fp2.compat.vanilla.biome.layer.java;
 
 import lombok.NonNull;
 import net.daporkchop.fp2.compat.vanilla.biome.BiomeHelper;
+import net.daporkchop.fp2.compat.vanilla.biome.layer.CachingFastLayer;
 import net.daporkchop.fp2.compat.vanilla.biome.layer.FastLayerProvider;
 import net.daporkchop.fp2.compat.vanilla.biome.layer.IFastLayer;
+import net.daporkchop.fp2.compat.vanilla.biome.layer.IZoomingLayer;
 import net.minecraft.world.gen.layer.GenLayer;
 
 import java.util.Arrays;
@@ -66,7 +68,7 @@ public class JavaLayerProvider implements FastLayerProvider {
     }
 
     @Override
-    public IFastLayer[] makeFast(@NonNull GenLayer... inputs) {
+    public IFastLayer[] makeFast(boolean cacheCoarseLayers, @NonNull GenLayer... inputs) {
         //initial add all layers and find their children
         Map<GenLayer, GenLayer[]> children = new IdentityHashMap<>();
         for (GenLayer layer : inputs) {
@@ -77,9 +79,21 @@ public class JavaLayerProvider implements FastLayerProvider {
         Map<GenLayer, IFastLayer> fastLayers = new IdentityHashMap<>();
         children.keySet().forEach(layer -> fastLayers.put(layer, this.convertLayer(layer)));
 
+        //wrap the children of zooming layers in a cache, since the same coarse values will be requested over and over again when generating adjacent areas
+        Map<GenLayer, IFastLayer> childLayers = new IdentityHashMap<>(fastLayers);
+        if (cacheCoarseLayers) {
+            fastLayers.forEach((vanilla, fast) -> {
+                if (fast instanceof IZoomingLayer) {
+                    for (GenLayer child : children.get(vanilla)) {
+                        childLayers.computeIfPresent(child, (k, childFast) -> childFast instanceof CachingFastLayer ? childFast : new CachingFastLayer(childFast));
+                    }
+                }
+            });
+        }
+
         //init fast layers with their children
         fastLayers.forEach((vanilla, fast) -> {
-            IFastLayer[] fastChildren = Arrays.stream(children.get(vanilla)).map(fastLayers::get).toArray(IFastLayer[]::new);
+            IFastLayer[] fastChildren = Arrays.stream(children.get(vanilla)).map(childLayers::get).toArray(IFastLayer[]::new);
             fast.init(fastChildren);
         });
 
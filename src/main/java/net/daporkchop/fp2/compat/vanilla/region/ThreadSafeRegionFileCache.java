@@ -21,12 +21,12 @@
 package net.daporkchop.fp2.compat.vanilla.region;
 
 import io.netty.buffer.ByteBuf;
+import lombok.AccessLevel;
 import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
 import net.daporkchop.fp2.util.FastByteArrayOutputStream;
-import net.daporkchop.lib.common.function.io.IOBiFunction;
 import net.daporkchop.lib.common.function.io.IOFunction;
 import net.daporkchop.lib.common.misc.string.PStrings;
-import net.daporkchop.lib.unsafe.PUnsafe;
 import net.minecraft.util.math.ChunkPos;
 import net.minecraft.world.chunk.storage.RegionFile;
 import net.minecraft.world.chunk.storage.RegionFileCache;
@@ -38,18 +38,32 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.LinkedHashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
 import java.util.zip.DeflaterOutputStream;
 
+import static net.daporkchop.fp2.util.Constants.*;
 import static net.daporkchop.lib.common.util.PValidation.*;
 
 /**
  * Re-implementation of {@link RegionFileCache}, but with actual thread-safety and stuff, since the vanilla code has a crazy number of race conditions.
+ * <p>
+ * Open regions are stored in a {@link ConcurrentHashMap}, so looking up a region which is already open never blocks on other regions. When the number of
+ * open regions exceeds the configured maximum, regions are evicted using the CLOCK algorithm (an approximation of LRU).
+ * <p>
+ * Each open region is reference-counted, and is only actually closed once it has been evicted and all threads which were using it at the time have released
+ * it. An evicted region stays in the map and may still be retained by other threads until it has been closed, so that a region file is never in use by more
+ * than one instance at the same time (the {@link RegionFile} keeps a copy of the sector allocation table in memory, so two instances writing to the same file
+ * would corrupt it).
  *
  * @author DaPorkchop_
  */
@@ -61,58 +75,105 @@ public class ThreadSafeRegionFileCache {
     }
 
     private final int maxSize;
-    private final Map<Path, RegionFile> openFiles = Collections.synchronizedMap(new LinkedHashMap<Path, RegionFile>(256, 0.75f, true) {
-        @Override
-        protected boolean removeEldestEntry(Map.Entry<Path, RegionFile> eldest) {
-            if (this.size() >= ThreadSafeRegionFileCache.this.maxSize) {
-                try {
-                    synchronized (eldest.getValue()) {
-                        eldest.getValue().close();
-                    }
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-                return true;
-            } else {
-                return false;
-            }
-        }
-    });
+    private final Map<Path, Handle> openFiles = new ConcurrentHashMap<>();
+
+    //the CLOCK hand, only accessed while holding evictionLock
+    private final Lock evictionLock = new ReentrantLock();
+    private Iterator<Handle> hand = Collections.emptyIterator();
 
     public ThreadSafeRegionFileCache(int maxSize) {
-        this.maxSize = positive(maxSize, "maxSize") - 1;
+        this.maxSize = positive(maxSize, "maxSize");
+    }
+
+    /**
+     * @return the number of currently open regions
+     */
+    public int size() {
+        return this.openFiles.size();
     }
 
     /**
      * Closes all currently open regions.
+     * <p>
+     * Regions which are currently in use by another thread will be closed as soon as that thread is finished with them.
      */
     public void clear() throws IOException {
-        //close and uncache all regions
-        this.openFiles.values().removeIf(region -> {
-            try {
-                synchronized (region) {
-                    region.close();
+        //retire all regions, they'll each be closed and removed from the map once the last thread using them releases them
+        this.openFiles.values().forEach(Handle::retire);
+    }
+
+    /**
+     * Gets the region at the given path, opening it if necessary.
+     * <p>
+     * The returned {@link Handle} has been retained, and must be released using {@link Handle#release()} once the caller is finished with it. Access to
+     * the {@link RegionFile} itself must be synchronized on the {@link RegionFile} instance.
+     *
+     * @param path   the path to the region file
+     * @param create whether or not the region should be created if it doesn't exist
+     * @return a {@link Handle} for the region, or {@code null} if {@code create} is {@code false} and the region doesn't exist
+     */
+    protected Handle getRegion(@NonNull Path path, boolean create) throws IOException {
+        while (true) {
+            Handle handle = this.openFiles.get(path);
+            if (handle == null) { //region isn't cached, we need to open a new one
+                if (!create && !Files.exists(path)) {
+                    return null;
+                }
+
+                handle = this.openFiles.computeIfAbsent(path, (IOFunction<Path, Handle>) p -> {
+                    if (create || Files.exists(p)) {
+                        Files.createDirectories(p.getParent());
+                        return new Handle(p, new RegionFile(p.toFile()));
+                    }
+                    return null;
+                });
+                if (handle == null) { //region was deleted in the meantime
+                    return null;
+                }
+
+                if (this.openFiles.size() > this.maxSize) {
+                    this.evict();
                 }
-            } catch (IOException e) {
-                e.printStackTrace();
             }
-            return true;
-        });
+
+            if (handle.tryRetain()) {
+                handle.referenced = true;
+                return handle;
+            }
+
+            //the handle has already been closed, so nobody can be using its region any more. make sure it's removed from the map and open a new one
+            this.openFiles.remove(path, handle);
+        }
     }
 
-    protected RegionFile getRegion(@NonNull Path _path, boolean create) throws IOException {
-        return this.openFiles.compute(_path, (IOBiFunction<Path, RegionFile, RegionFile>) (path, region) -> {
-            if (region == null) { //region isn't cached, we need to open a new one
-                if (create || Files.exists(path)) {
-                    Files.createDirectories(path.getParent());
-                    region = new RegionFile(path.toFile());
+    /**
+     * Evicts regions until the number of open regions is no longer greater than the maximum size.
+     */
+    protected void evict() {
+        if (!this.evictionLock.tryLock()) { //another thread is already evicting regions, no need for us to do anything
+            return;
+        }
+
+        try {
+            //each region gets a second chance if it's been accessed since the hand last passed it, so we'll never need more than two full sweeps
+            for (int remaining = this.openFiles.size() << 1, excess = this.openFiles.size() - this.maxSize; remaining > 0 && excess > 0; remaining--) {
+                if (!this.hand.hasNext()) {
+                    this.hand = this.openFiles.values().iterator();
+                    if (!this.hand.hasNext()) {
+                        break;
+                    }
+                }
+
+                Handle handle = this.hand.next();
+                if (handle.referenced) { //give the region a second chance
+                    handle.referenced = false;
+                } else if (handle.retire()) {
+                    excess--;
                 }
             }
-            if (region != null) { //begin synchronize on region
-                PUnsafe.monitorEnter(region);
-            }
-            return region;
-        });
+        } finally {
+            this.evictionLock.unlock();
+        }
     }
 
     /**
@@ -131,14 +192,15 @@ public class ThreadSafeRegionFileCache {
         }
 
         //attempt to open region
-        RegionFile region = this.getRegion(region(regionDir, chunkX, chunkZ), true);
-        checkState(region != null, "region was null?!?");
+        Handle handle = this.getRegion(region(regionDir, chunkX, chunkZ), true);
+        checkState(handle != null, "region was null?!?");
 
         try {
-            //write compressed data to region
-            region.write(chunkX & 0x1F, chunkZ & 0x1F, baos.buf(), baos.size());
+            synchronized (handle.region) { //write compressed data to region
+                handle.region.write(chunkX & 0x1F, chunkZ & 0x1F, baos.buf(), baos.size());
+            }
         } finally {
-            PUnsafe.monitorExit(region);
+            handle.release();
         }
     }
 
@@ -152,18 +214,19 @@ public class ThreadSafeRegionFileCache {
      */
     public DataInputStream read(@NonNull Path regionDir, int chunkX, int chunkZ) throws IOException {
         //attempt to open region
-        RegionFile region = this.getRegion(region(regionDir, chunkX, chunkZ), false);
+        Handle handle = this.getRegion(region(regionDir, chunkX, chunkZ), false);
 
         //region doesn't exist, so we know that the chunk doesn't exist either
-        if (region == null) {
+        if (handle == null) {
             return null;
         }
 
         try {
-            //read chunk from region
-            return region.getChunkDataInputStream(chunkX & 0x1F, chunkZ & 0x1F);
+            synchronized (handle.region) { //read chunk from region
+                return handle.region.getChunkDataInputStream(chunkX & 0x1F, chunkZ & 0x1F);
+            }
         } finally {
-            PUnsafe.monitorExit(region);
+            handle.release();
         }
     }
 
@@ -177,18 +240,19 @@ public class ThreadSafeRegionFileCache {
      */
     public boolean exists(@NonNull Path regionDir, int chunkX, int chunkZ) throws IOException {
         //attempt to open region
-        RegionFile region = this.getRegion(region(regionDir, chunkX, chunkZ), false);
+        Handle handle = this.getRegion(region(regionDir, chunkX, chunkZ), false);
 
         //region doesn't exist, so we know that the chunk doesn't exist either
-        if (region == null) {
+        if (handle == null) {
             return false;
         }
 
         try {
-            //check if the chunk is stored in the region
-            return region.isChunkSaved(chunkX & 0x1F, chunkZ & 0x1F);
+            synchronized (handle.region) { //check if the chunk is stored in the region
+                return handle.region.isChunkSaved(chunkX & 0x1F, chunkZ & 0x1F);
+            }
         } finally {
-            PUnsafe.monitorExit(region);
+            handle.release();
         }
     }
 
@@ -210,23 +274,95 @@ public class ThreadSafeRegionFileCache {
                 .map(Pattern.compile("^r\\.(-?\\d+)\\.(-?\\d+)\\.mca$")::matcher)
                 .filter(Matcher::matches)
                 .flatMap((IOFunction<Matcher, Stream<ChunkPos>>) matcher -> {
-                    RegionFile region = this.getRegion(regionDir.resolve(matcher.group()), true);
+                    Handle handle = this.getRegion(regionDir.resolve(matcher.group()), true);
                     try {
-                        int baseX = Integer.parseInt(matcher.group(1)) << 4;
-                        int baseZ = Integer.parseInt(matcher.group(2)) << 4;
+                        int baseX = Integer.parseInt(matcher.group(1)) << 5;
+                        int baseZ = Integer.parseInt(matcher.group(2)) << 5;
 
                         List<ChunkPos> positions = new ArrayList<>();
-                        for (int dx = 0; dx < 32; dx++) {
-                            for (int dz = 0; dz < 32; dz++) {
-                                if (region.isChunkSaved(dx, dz)) {
-                                    positions.add(new ChunkPos(baseX + dx, baseZ + dz));
+                        synchronized (handle.region) {
+                            for (int dx = 0; dx < 32; dx++) {
+                                for (int dz = 0; dz < 32; dz++) {
+                                    if (handle.region.isChunkSaved(dx, dz)) {
+                                        positions.add(new ChunkPos(baseX + dx, baseZ + dz));
+                                    }
                                 }
                             }
                         }
                         return positions.stream();
                     } finally {
-                        PUnsafe.monitorExit(region);
+                        handle.release();
                     }
                 });
     }
+
+    /**
+     * A reference-counted handle to an open {@link RegionFile}.
+     * <p>
+     * The cache itself holds one reference to each handle until it is retired.
+     *
+     * @author DaPorkchop_
+     */
+    @RequiredArgsConstructor(access = AccessLevel.PROTECTED)
+    protected final class Handle {
+        @NonNull
+        protected final Path path;
+        @NonNull
+        protected final RegionFile region;
+
+        protected final AtomicInteger refCnt = new AtomicInteger(1);
+        protected final AtomicBoolean retired = new AtomicBoolean();
+        protected volatile boolean referenced = true;
+
+        /**
+         * Attempts to retain this handle.
+         * <p>
+         * A handle which has been retired but is still in use by another thread may still be retained, as its region remains open until the last
+         * reference is released.
+         *
+         * @return whether or not the handle could be retained. If {@code false}, the handle has been closed and may no longer be used
+         */
+        protected boolean tryRetain() {
+            int refCnt;
+            do {
+                if ((refCnt = this.refCnt.get()) <= 0) {
+                    return false;
+                }
+            } while (!this.refCnt.compareAndSet(refCnt, refCnt + 1));
+            return true;
+        }
+
+        /**
+         * Releases this handle, closing the region and removing it from the cache if this was the last reference.
+         */
+        protected void release() {
+            int refCnt = this.refCnt.decrementAndGet();
+            checkState(refCnt >= 0, "handle was over-released!");
+
+            if (refCnt == 0) {
+                try {
+                    synchronized (this.region) {
+                        this.region.close();
+                    }
+                } catch (IOException e) {
+                    FP2_LOG.error("unable to close region file " + this.path, e);
+                } finally {
+                    ThreadSafeRegionFileCache.this.openFiles.remove(this.path, this);
+                }
+            }
+        }
+
+        /**
+         * Retires this handle, preventing it from being retained again and releasing the cache's reference to it.
+         *
+         * @return whether or not this handle was retired by this call
+         */
+        protected boolean retire() {
+            if (this.retired.compareAndSet(false, true)) {
+                this.release();
+                return true;
+            }
+            return false;
+        }
+    }
 }
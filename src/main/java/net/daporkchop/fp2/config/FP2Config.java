@@ -259,12 +259,60 @@ public final class FP2Config implements Cloneable<FP2Config> {
         @Config.GuiCategory(CATEGORY_CLIENT)
         private final boolean gpuFrustumCulling = preventInline(true);
 
+        @Builder.Default
+        @Config.RestartRequired(Config.Requirement.WORLD)
+        @Config.GuiCategory(CATEGORY_CLIENT)
+        private final boolean parallelCpuFrustumCulling = preventInline(true);
+
         @Builder.Default
         @Config.Range(min = @Config.Constant(1), max = @Config.Constant(Integer.MAX_VALUE))
         @Config.GuiRange(min = @Config.Constant(1), max = @Config.Constant(1024))
         @Config.GuiCategory(CATEGORY_CLIENT)
         private final int maxBakesProcessedPerFrame = preventInline(256);
 
+        @Builder.Default
+        @Config.Range(min = @Config.Constant(1), max = @Config.Constant(Integer.MAX_VALUE))
+        @Config.GuiRange(min = @Config.Constant(64), max = @Config.Constant(65536))
+        @Config.GuiCategory(CATEGORY_CLIENT)
+        private final int maxUploadPerFrame = preventInline(4096);
+
+        @Builder.Default
+        @Config.Range(min = @Config.Constant(1), max = @Config.Constant(Integer.MAX_VALUE))
+        @Config.GuiRange(min = @Config.Constant(1), max = @Config.Constant(50))
+        @Config.GuiCategory(CATEGORY_CLIENT)
+        private final int maxUploadTimePerFrame = preventInline(4);
+
+        @Builder.Default
+        @Config.Range(min = @Config.Constant(0), max = @Config.Constant(Integer.MAX_VALUE))
+        @Config.GuiRange(min = @Config.Constant(0), max = @Config.Constant(1000))
+        @Config.RestartRequired(Config.Requirement.WORLD)
+        @Config.GuiCategory(CATEGORY_CLIENT)
+        private final int bakeSettleDelay = preventInline(50);
+
+        @Builder.Default
+        @Config.Range(min = @Config.Constant(0), max = @Config.Constant(Integer.MAX_VALUE))
+        @Config.GuiRange(min = @Config.Constant(0), max = @Config.Constant(5000))
+        @Config.RestartRequired(Config.Requirement.WORLD)
+        @Config.GuiCategory(CATEGORY_CLIENT)
+        private final int bakeMaxDelay = preventInline(500);
+
+        @Builder.Default
+        @Config.Range(min = @Config.Constant(0), max = @Config.Constant(Integer.MAX_VALUE))
+        @Config.GuiRange(min = @Config.Constant(0), max = @Config.Constant(65536))
+        @Config.RestartRequired(Config.Requirement.WORLD)
+        @Config.GuiCategory(CATEGORY_CLIENT)
+        private final int maxDefragmentationPerFrame = preventInline(1024);
+
+        @Builder.Default
+        @Config.Range(min = @Config.Constant(0), max = @Config.Constant(64))
+        @Config.GuiRange(min = @Config.Constant(0), max = @Config.Constant(16))
+        @Config.GuiCategory(CATEGORY_CLIENT)
+        private final int voxelSimplificationError = preventInline(0);
+
+        @Builder.Default
+        @Config.GuiCategory(CATEGORY_CLIENT)
+        private final boolean heightmapAdaptiveMeshing = preventInline(true);
+
         @Builder.Default
         @Config.Range(min = @Config.Constant(1), max = @Config.Constant(Integer.MAX_VALUE))
         @Config.GuiRange(min = @Config.Constant(1), max = @Config.Constant(field = "net.daporkchop.lib.common.util.PorkUtil#CPU_COUNT"))
@@ -286,6 +334,12 @@ public final class FP2Config implements Cloneable<FP2Config> {
         @Config.GuiCategory(CATEGORY_THREADS)
         private final int bakeThreads = max((PorkUtil.CPU_COUNT >> 1) + (PorkUtil.CPU_COUNT >> 2), 1);
 
+        @Builder.Default
+        @Config.Range(min = @Config.Constant(1), max = @Config.Constant(Integer.MAX_VALUE))
+        @Config.GuiRange(min = @Config.Constant(1), max = @Config.Constant(50))
+        @Config.GuiCategory(CATEGORY_THREADS)
+        private final int maxWorldThreadTaskTime = preventInline(10);
+
         @Override
         public Performance clone() {
             return this.toBuilder().build();
@@ -94,6 +94,38 @@ public class DebugStats {
         protected final long uncompressedSize;
     }
 
+    /**
+     * @author DaPorkchop_
+     */
+    @Builder
+    @Data
+    @SideOnly(Side.CLIENT)
+    public static final class Baking extends AbstractLongStatistics<Baking> {
+        public static final Baking ZERO = builder().build();
+
+        protected final long tilesReceived;
+        protected final long bakesRequested;
+        protected final long bakesPending;
+        protected final long bakesExecuted;
+
+        protected final long tilesInflated;
+        protected final long tilesInflatedShared;
+
+        protected final long uploadsPending;
+        protected final long lastUploadCount;
+        protected final long lastUploadBytes;
+
+        protected final long avgUploadDuration;
+        protected final long lastUploadDuration;
+
+        /**
+         * @return the average number of bakes executed for every tile received from the server
+         */
+        public double bakesPerReceivedTile() {
+            return this.tilesReceived != 0L ? this.bakesExecuted / (double) this.tilesReceived : 0.0d;
+        }
+    }
+
     /**
      * @author DaPorkchop_
      */
@@ -77,6 +77,15 @@ public interface IFarDirectPosAccess<POS extends IFarPos> {
      */
     int getAxisDirect(long addr, int axis);
 
+    /**
+     * Creates a new position from its offsets along each axis.
+     *
+     * @param level the position's level
+     * @param axes  the position's offset along each axis, in the same order as used by {@link #getAxisHeap(IFarPos, int)}. The array is not retained.
+     * @return the position
+     */
+    POS fromAxes(int level, @NonNull int[] axes);
+
     /**
      * Checks the positions at the given memory addresses for equality.
      * <p>
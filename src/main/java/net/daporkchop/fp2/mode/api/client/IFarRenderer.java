@@ -42,4 +42,7 @@ public interface IFarRenderer extends Releasable {
 
     @DebugOnly
     DebugStats.Renderer stats();
+
+    @DebugOnly
+    DebugStats.Baking bakeStats();
 }
@@ -21,6 +21,7 @@
 package net.daporkchop.fp2.mode.api.server;
 
 import lombok.NonNull;
+import net.daporkchop.fp2.common.util.metrics.MetricsScope;
 import net.daporkchop.fp2.mode.api.IFarPos;
 import net.daporkchop.fp2.mode.api.IFarRenderMode;
 import net.daporkchop.fp2.mode.api.IFarTile;
@@ -78,6 +79,11 @@ public interface IFarTileProvider<POS extends IFarPos, T extends IFarTile> exten
      */
     IFarRenderMode<POS, T> mode();
 
+    /**
+     * @return the {@link MetricsScope} which metrics for this world are recorded in
+     */
+    MetricsScope metrics();
+
     @Override
     void close();
 }
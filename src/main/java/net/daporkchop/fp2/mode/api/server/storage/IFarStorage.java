@@ -24,10 +24,13 @@ import lombok.NonNull;
 import net.daporkchop.fp2.mode.api.IFarPos;
 import net.daporkchop.fp2.mode.api.IFarTile;
 import net.daporkchop.fp2.mode.api.tile.ITileHandle;
+import net.daporkchop.fp2.mode.api.tile.ITileMetadata;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.Map;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 /**
@@ -66,6 +69,31 @@ public interface IFarStorage<POS extends IFarPos, T extends IFarTile> extends Cl
                 .filter(pos -> this.handleFor(pos).markDirty(dirtyTimestamp));
     }
 
+    /**
+     * Atomically sets the tile data at multiple positions.
+     * <p>
+     * Conceptually implemented by
+     * <blockquote><pre>{@code
+     * return tiles.entrySet().stream()
+     *         .filter(entry -> this.handleFor(entry.getKey()).set(metadata, entry.getValue()))
+     *         .map(Map.Entry::getKey);
+     * }</pre></blockquote>
+     * except the implementation has the opportunity to optimize this beyond what the user could write (e.g. by writing all of the tiles in a single batch).
+     * <p>
+     * Unlike the snippet above, all of the writes will have been completed by the time this method returns.
+     *
+     * @param metadata the new metadata for all of the tiles
+     * @param tiles    the tiles to write, keyed by position
+     * @return the positions for which the operation was able to be applied
+     * @see ITileHandle#set(ITileMetadata, IFarTile)
+     */
+    default Stream<POS> setAll(@NonNull ITileMetadata metadata, @NonNull Map<POS, T> tiles) {
+        return tiles.entrySet().stream()
+                .filter(entry -> this.handleFor(entry.getKey()).set(metadata, entry.getValue()))
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList()).stream();
+    }
+
     //void markVanillaRenderable(@NonNull Stream<POS> positions);
 
     /**
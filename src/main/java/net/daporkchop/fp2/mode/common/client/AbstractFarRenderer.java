@@ -36,8 +36,11 @@ import net.daporkchop.fp2.mode.common.client.strategy.IFarRenderStrategy;
 import net.daporkchop.fp2.util.annotation.DebugOnly;
 import net.daporkchop.lib.unsafe.util.AbstractReleasable;
 import net.minecraft.client.Minecraft;
+import net.minecraft.entity.Entity;
 import net.minecraft.util.BlockRenderLayer;
 
+import java.util.Comparator;
+
 import static net.daporkchop.fp2.client.gl.OpenGL.*;
 import static net.daporkchop.fp2.util.Constants.*;
 import static net.daporkchop.lib.common.util.PorkUtil.*;
@@ -74,6 +77,17 @@ public abstract class AbstractFarRenderer<POS extends IFarPos, T extends IFarTil
      */
     protected abstract IFarRenderStrategy<POS, T, ?, ?, ?> strategy0();
 
+    /**
+     * Gets a {@link Comparator} which can be used for sorting tile positions by the priority with which their baked render data should be uploaded, based on the
+     * position of the camera.
+     *
+     * @param x the camera's X coordinate
+     * @param y the camera's Y coordinate
+     * @param z the camera's Z coordinate
+     * @return a {@link Comparator} for sorting tile positions
+     */
+    protected abstract Comparator<POS> uploadComparatorFor(double x, double y, double z);
+
     /**
      * @return a new {@link BakeManager}
      */
@@ -86,6 +100,14 @@ public abstract class AbstractFarRenderer<POS extends IFarPos, T extends IFarTil
         checkGLError("pre fp2 select");
 
         this.gl.runCleanup();
+        this.bakeManager.flushPendingBakes();
+
+        Entity camera = mc.getRenderViewEntity();
+        this.bakeManager.applyPendingUpdates(this.uploadComparatorFor(
+                camera.lastTickPosX + (camera.posX - camera.lastTickPosX) * partialTicks,
+                camera.lastTickPosY + (camera.posY - camera.lastTickPosY) * partialTicks,
+                camera.lastTickPosZ + (camera.posZ - camera.lastTickPosZ) * partialTicks));
+
         this.bakeManager.index.select(frustum, partialTicks);
 
         checkGLError("post fp2 select");
@@ -106,6 +128,12 @@ public abstract class AbstractFarRenderer<POS extends IFarPos, T extends IFarTil
         return this.bakeManager.index.stats();
     }
 
+    @DebugOnly
+    @Override
+    public DebugStats.Baking bakeStats() {
+        return this.bakeManager.stats();
+    }
+
     @Override
     protected void doRelease() {
         this.strategy.release();
@@ -0,0 +1,129 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package net.daporkchop.fp2.mode.common.client;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+import static net.daporkchop.lib.common.util.PValidation.*;
+
+/**
+ * Collects re-bake requests for tile positions and holds them back until the position's neighborhood has stopped changing.
+ * <p>
+ * A single tile arriving from the server causes every output position which depends on it to be re-baked. When a whole area of tiles arrives at once (as is
+ * usually the case), the same output position would be baked once for every one of its inputs, with all but the last bake being thrown away immediately.
+ * Instead, each notification only records the time at which it was received, and a position is released for baking once either no further notifications
+ * have arrived for a short settle delay, or a maximum delay has elapsed since the first notification (to prevent a constantly changing area from never being
+ * baked at all).
+ * <p>
+ * Notifications may be received from any thread. {@link #drain(Consumer)} is expected to be called periodically from a single thread.
+ *
+ * @author DaPorkchop_
+ */
+public class BakeCoalescer<POS> {
+    protected final Map<POS, Pending> pending = new ConcurrentHashMap<>();
+
+    protected final LongSupplier clock;
+    protected final long settleDelay;
+    protected final long maxDelay;
+
+    /**
+     * @param clock       a {@link LongSupplier} which returns the current time
+     * @param settleDelay the amount of time which must pass without any new notifications for a position before the position is released
+     * @param maxDelay    the maximum amount of time a position may be held back after the first notification, regardless of further notifications
+     */
+    public BakeCoalescer(@NonNull LongSupplier clock, long settleDelay, long maxDelay) {
+        this.clock = clock;
+        this.settleDelay = notNegative(settleDelay, "settleDelay");
+        this.maxDelay = notNegative(maxDelay, "maxDelay");
+    }
+
+    /**
+     * Notifies this coalescer that the given position needs to be re-baked.
+     *
+     * @param pos the position
+     * @return {@code true} if the position was not already pending
+     */
+    public boolean notify(@NonNull POS pos) {
+        long now = this.clock.getAsLong();
+
+        //entries are immutable so that drain() can tell whether or not a position was notified again while it was being checked
+        Pending prev = this.pending.get(pos);
+        while (true) {
+            if (prev == null) {
+                if ((prev = this.pending.putIfAbsent(pos, new Pending(now, now))) == null) {
+                    return true;
+                }
+            } else if (this.pending.replace(pos, prev, new Pending(prev.first, now))) {
+                return false;
+            } else {
+                prev = this.pending.get(pos);
+            }
+        }
+    }
+
+    /**
+     * Releases all pending positions which are ready to be baked.
+     *
+     * @param action a callback function which will be invoked for every released position
+     * @return the number of released positions
+     */
+    public int drain(@NonNull Consumer<POS> action) {
+        long now = this.clock.getAsLong();
+
+        int released = 0;
+        for (Iterator<Map.Entry<POS, Pending>> itr = this.pending.entrySet().iterator(); itr.hasNext(); ) {
+            Map.Entry<POS, Pending> entry = itr.next();
+            Pending value = entry.getValue();
+
+            if (now - value.last >= this.settleDelay || now - value.first >= this.maxDelay) {
+                //only release the position if it hasn't been notified again in the meantime. if it has, it'll be checked again during the next drain.
+                if (this.pending.remove(entry.getKey(), value)) {
+                    action.accept(entry.getKey());
+                    released++;
+                }
+            }
+        }
+        return released;
+    }
+
+    /**
+     * @return the number of positions which are currently pending
+     */
+    public int size() {
+        return this.pending.size();
+    }
+
+    /**
+     * @author DaPorkchop_
+     */
+    @RequiredArgsConstructor
+    protected static final class Pending {
+        protected final long first;
+        protected final long last;
+    }
+}
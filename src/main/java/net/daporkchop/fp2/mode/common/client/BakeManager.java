@@ -21,7 +21,9 @@ package net.daporkchop.fp2.mode.common.client;
 
 import lombok.Getter;
 import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
 import net.daporkchop.fp2.config.FP2Config;
+import net.daporkchop.fp2.debug.util.DebugStats;
 import net.daporkchop.fp2.mode.api.IFarPos;
 import net.daporkchop.fp2.mode.api.IFarTile;
 import net.daporkchop.fp2.mode.api.client.IFarTileCache;
@@ -31,6 +33,7 @@ import net.daporkchop.fp2.mode.common.client.bake.IRenderBaker;
 import net.daporkchop.fp2.mode.common.client.index.IRenderIndex;
 import net.daporkchop.fp2.mode.common.client.strategy.IFarRenderStrategy;
 import net.daporkchop.fp2.util.SimpleRecycler;
+import net.daporkchop.fp2.util.annotation.DebugOnly;
 import net.daporkchop.fp2.util.math.IntAxisAlignedBB;
 import net.daporkchop.fp2.util.threading.ThreadingHelper;
 import net.daporkchop.fp2.util.threading.scheduler.NoFutureScheduler;
@@ -42,13 +45,17 @@ import net.minecraft.world.World;
 
 import java.util.AbstractMap;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Semaphore;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
 import java.util.stream.Stream;
 
@@ -59,7 +66,7 @@ import static net.daporkchop.lib.common.util.PorkUtil.*;
  * @author DaPorkchop_
  */
 @Getter
-public class BakeManager<POS extends IFarPos, T extends IFarTile> extends AbstractReleasable implements IFarTileCache.Listener<POS, T>, Consumer<POS>, Runnable {
+public class BakeManager<POS extends IFarPos, T extends IFarTile> extends AbstractReleasable implements IFarTileCache.Listener<POS, T>, Consumer<POS> {
     protected final AbstractFarRenderer<POS, T> renderer;
     protected final IFarRenderStrategy<POS, T, ?, ?, ?> strategy;
 
@@ -74,9 +81,32 @@ public class BakeManager<POS extends IFarPos, T extends IFarTile> extends Abstra
 
     protected final Map<POS, Optional<IBakeOutput>> pendingDataUpdates = new ConcurrentHashMap<>();
     protected final Map<POS, Boolean> pendingRenderableUpdates = new ConcurrentHashMap<>();
-    protected final AtomicBoolean isBulkUpdateQueued = new AtomicBoolean();
     protected final Semaphore dataUpdatesLock = new Semaphore(FP2Config.global().performance().maxBakesProcessedPerFrame());
 
+    protected final BakeCoalescer<POS> coalescer = new BakeCoalescer<>(System::nanoTime,
+            TimeUnit.MILLISECONDS.toNanos(FP2Config.global().performance().bakeSettleDelay()),
+            TimeUnit.MILLISECONDS.toNanos(FP2Config.global().performance().bakeMaxDelay()));
+    protected final Map<POS, SharedTile> inflatedTiles = new ConcurrentHashMap<>();
+
+    @DebugOnly
+    protected final LongAdder tilesReceived = new LongAdder();
+    @DebugOnly
+    protected final LongAdder bakesRequested = new LongAdder();
+    @DebugOnly
+    protected final LongAdder bakesExecuted = new LongAdder();
+    @DebugOnly
+    protected final LongAdder tilesInflated = new LongAdder();
+    @DebugOnly
+    protected final LongAdder tilesInflatedShared = new LongAdder();
+    @DebugOnly
+    protected long lastUploadCount;
+    @DebugOnly
+    protected long lastUploadBytes;
+    @DebugOnly
+    protected long avgUploadDuration;
+    @DebugOnly
+    protected long lastUploadDuration;
+
     public BakeManager(@NonNull AbstractFarRenderer<POS, T> renderer, @NonNull IFarTileCache<POS, T> tileCache) {
         this.renderer = renderer;
         this.strategy = renderer.strategy();
@@ -99,23 +129,26 @@ public class BakeManager<POS extends IFarPos, T extends IFarTile> extends Abstra
     protected void doRelease() {
         this.tileCache.removeListener(this, false);
 
-        //prevent workers from scheduling tasks on the client thread
-        this.isBulkUpdateQueued.set(true);
-
         //reset permit count to maximum possible to prevent infinite blocking while shutting down executor
         this.dataUpdatesLock.drainPermits();
         this.dataUpdatesLock.release(Integer.MAX_VALUE);
 
         this.bakeScheduler.close();
+
+        //release any bake outputs which were still waiting to be uploaded
+        this.pendingDataUpdates.values().forEach(output -> output.ifPresent(IBakeOutput::release));
+        this.pendingDataUpdates.clear();
     }
 
     @Override
     public void tileAdded(@NonNull ITileSnapshot<POS, T> tile) {
+        this.tilesReceived.increment();
         this.notifyOutputs(tile.pos());
     }
 
     @Override
     public void tileModified(@NonNull ITileSnapshot<POS, T> tile) {
+        this.tilesReceived.increment();
         this.notifyOutputs(tile.pos());
     }
 
@@ -132,11 +165,21 @@ public class BakeManager<POS extends IFarPos, T extends IFarTile> extends Abstra
                 return;
             }
 
-            //schedule tile for baking
-            this.bakeScheduler.schedule(outputPos);
+            //don't schedule the tile for baking right away, as more of its inputs are likely to arrive soon
+            this.bakesRequested.increment();
+            this.coalescer.notify(outputPos);
         });
     }
 
+    /**
+     * Schedules all tiles whose pending re-bakes have settled for baking.
+     * <p>
+     * Must be called periodically (usually once per frame).
+     */
+    public void flushPendingBakes() {
+        this.coalescer.drain(this.bakeScheduler::schedule);
+    }
+
     /**
      * Bakes the tile at the given position.
      *
@@ -145,9 +188,19 @@ public class BakeManager<POS extends IFarPos, T extends IFarTile> extends Abstra
     @Override
     @Deprecated
     public void accept(@NonNull POS pos) { //this function is called from inside of bakeScheduler, which doesn't execute the task multiple times on the same position
-        this.checkSelfRenderable(pos);
-        this.checkParentsRenderable(pos);
+        this.bakesExecuted.increment();
+
+        try {
+            this.bake(pos);
+        } finally {
+            //only update renderability once the bake output has been enqueued, so that applyPendingUpdates() can hold back the renderability change until the
+            //  tile's data has actually been uploaded
+            this.checkSelfRenderable(pos);
+            this.checkParentsRenderable(pos);
+        }
+    }
 
+    protected void bake(@NonNull POS pos) {
         ITileSnapshot<POS, T>[] compressedInputTiles = uncheckedCast(this.tileCache.getTilesCached(this.baker.bakeInputs(pos)).toArray(ITileSnapshot[]::new));
         if (compressedInputTiles[0] == null //tile isn't cached any more
             || compressedInputTiles[0].isEmpty()) { //tile data is empty
@@ -155,12 +208,13 @@ public class BakeManager<POS extends IFarPos, T extends IFarTile> extends Abstra
             return;
         }
 
-        SimpleRecycler<T> recycler = this.renderer.mode().tileRecycler();
+        SharedTile[] sharedSrcs = uncheckedCast(new BakeManager.SharedTile[compressedInputTiles.length]);
         T[] srcs = this.renderer.mode().tileArray(compressedInputTiles.length);
         try {
             for (int i = 0; i < srcs.length; i++) { //inflate tiles
                 if (compressedInputTiles[i] != null) {
-                    srcs[i] = compressedInputTiles[i].loadTile(recycler);
+                    sharedSrcs[i] = this.retainInflated(compressedInputTiles[i]);
+                    srcs[i] = sharedSrcs[i].tile(this.renderer.mode().tileRecycler());
                 }
             }
 
@@ -173,14 +227,66 @@ public class BakeManager<POS extends IFarPos, T extends IFarTile> extends Abstra
                 output.release();
             }
         } finally { //release tiles again
-            for (T src : srcs) {
-                if (src != null) {
-                    recycler.release(src);
+            for (SharedTile sharedSrc : sharedSrcs) {
+                if (sharedSrc != null) {
+                    this.releaseInflated(sharedSrc);
                 }
             }
         }
     }
 
+    /**
+     * Gets a reference to the inflated tile data for the given snapshot, sharing it with any other bakes which are currently using the same snapshot.
+     * <p>
+     * Neighboring output tiles are usually baked at around the same time and have most of their inputs in common, so this avoids inflating the same tile
+     * once for every bake which needs it.
+     */
+    protected SharedTile retainInflated(@NonNull ITileSnapshot<POS, T> snapshot) {
+        //the reference count is only ever modified while holding the map's lock on the position, so we don't need any additional synchronization
+        return this.inflatedTiles.compute(snapshot.pos(), (pos, shared) -> {
+            if (shared != null && shared.snapshot == snapshot) { //another bake is already using this exact snapshot, share its inflated tile
+                shared.refCnt++;
+                this.tilesInflatedShared.increment();
+                return shared;
+            } else { //no existing entry, or the existing entry is for an outdated snapshot (which will be released by its remaining users)
+                return new SharedTile(snapshot);
+            }
+        });
+    }
+
+    protected void releaseInflated(@NonNull SharedTile shared) {
+        this.inflatedTiles.compute(shared.snapshot.pos(), (pos, current) -> {
+            if (--shared.refCnt == 0) { //this was the last reference, recycle the tile
+                //the tile may end up in a different thread's recycler than the one it was allocated from, which is fine since all bake threads allocate
+                //  and release tiles at roughly the same rate
+                if (shared.tile != null) {
+                    this.renderer.mode().tileRecycler().release(shared.tile);
+                }
+
+                //only remove the entry if it hasn't already been replaced by a newer one
+                return current == shared ? null : current;
+            }
+            return current;
+        });
+    }
+
+    @DebugOnly
+    public DebugStats.Baking stats() {
+        return DebugStats.Baking.builder()
+                .tilesReceived(this.tilesReceived.sum())
+                .bakesRequested(this.bakesRequested.sum())
+                .bakesPending(this.coalescer.size())
+                .bakesExecuted(this.bakesExecuted.sum())
+                .tilesInflated(this.tilesInflated.sum())
+                .tilesInflatedShared(this.tilesInflatedShared.sum())
+                .uploadsPending(this.pendingDataUpdates.size())
+                .lastUploadCount(this.lastUploadCount)
+                .lastUploadBytes(this.lastUploadBytes)
+                .avgUploadDuration(this.avgUploadDuration)
+                .lastUploadDuration(this.lastUploadDuration)
+                .build();
+    }
+
     protected void checkParentsRenderable(@NonNull POS posIn) {
         if (posIn.level() >= MAX_LODS - 1) {
             //the position is at the highest possible level, there are no tiles above so re-checking them would be pointless
@@ -207,54 +313,132 @@ public class BakeManager<POS extends IFarPos, T extends IFarTile> extends Abstra
             }
             return newOutput;
         });
-
-        if (this.isBulkUpdateQueued.compareAndSet(false, true)) { //we won the race to enqueue a bulk update!
-            ThreadingHelper.scheduleTaskInWorldThread(this.world, this);
-        }
     }
 
     protected void updateRenderable(@NonNull POS pos, boolean renderable) {
         this.pendingRenderableUpdates.put(pos, renderable);
-
-        if (this.isBulkUpdateQueued.compareAndSet(false, true)) { //we won the race to enqueue a bulk update!
-            ThreadingHelper.scheduleTaskInWorldThread(this.world, this);
-        }
     }
 
     /**
-     * @deprecated internal API, do not touch!
+     * Applies pending updates to the render index.
+     * <p>
+     * Data updates are applied in order of priority until either the per-frame upload byte budget or time budget has been exhausted, with any remaining updates
+     * being left for the next frame. At least one data update is always applied (if any are pending), to ensure that progress is made even if a single bake
+     * output exceeds the entire budget.
+     * <p>
+     * Renderability updates are paced together with the data updates: a position's renderability is only changed once neither it nor any of its children
+     * have any data left to upload, and a position is additionally only hidden once its parent has no data left to upload. Otherwise, a tile could be hidden
+     * before the tiles which are meant to replace it have been uploaded, leaving a hole in the terrain until the next frame(s).
+     * <p>
+     * Must be called from the client thread, usually once per frame.
+     *
+     * @param priority a {@link Comparator} which orders positions by their upload priority (highest priority first)
      */
-    @Override
-    @Deprecated
-    public void run() { //executes a bulk update on the client thread
-        this.isBulkUpdateQueued.set(false);
+    public void applyPendingUpdates(@NonNull Comparator<POS> priority) {
+        long startTime = System.nanoTime();
+
+        FP2Config.Performance config = FP2Config.global().performance();
+        long byteBudget = config.maxUploadPerFrame() * 1024L;
+        long timeBudget = TimeUnit.MILLISECONDS.toNanos(config.maxUploadTimePerFrame());
 
         int dataUpdatesSize = this.pendingDataUpdates.size();
         List<Map.Entry<POS, Optional<IBakeOutput>>> dataUpdates = new ArrayList<>(dataUpdatesSize + (dataUpdatesSize >> 3)); //pre-allocate a bit of extra space in case it grows while we're iterating
-        for (Iterator<POS> itr = this.pendingDataUpdates.keySet().iterator(); itr.hasNext(); ) {
-            this.pendingDataUpdates.compute(itr.next(), (pos, output) -> {
-                dataUpdates.add(new AbstractMap.SimpleEntry<>(pos, output));
-                return null;
-            });
-        }
+        dataUpdates.addAll(this.pendingDataUpdates.entrySet());
+        dataUpdates.sort(Map.Entry.comparingByKey(priority));
+
+        long uploadCount = 0L;
+        long uploadBytes = 0L;
+        for (Map.Entry<POS, Optional<IBakeOutput>> update : dataUpdates) {
+            if (uploadCount != 0L && (uploadBytes >= byteBudget || System.nanoTime() - startTime >= timeBudget)) { //we've run out of budget for this frame
+                break;
+            }
 
-        //this is the best we can do of resetting a semaphore to its initial permit count
-        this.dataUpdatesLock.drainPermits();
-        this.dataUpdatesLock.release(FP2Config.global().performance().maxBakesProcessedPerFrame());
+            //atomically take ownership of the bake output. if this fails, a worker has replaced it with a newer one (releasing the old one in the process), which
+            //  is still in the map and will be handled on a later frame.
+            if (!this.pendingDataUpdates.remove(update.getKey(), update.getValue())) {
+                continue;
+            }
+
+            Optional<IBakeOutput> output = update.getValue();
+            try {
+                if (output.isPresent()) {
+                    uploadBytes += output.get().sizeBytes();
+                }
+
+                this.index.update(uncheckedCast(Collections.singletonList(update)), Collections.emptyList());
+                uploadCount++;
+            } finally { //release the bake output now that its contents have been uploaded
+                if (output.isPresent()) {
+                    output.get().release();
+                }
+            }
+        }
 
         int renderableUpdatesSize = this.pendingRenderableUpdates.size();
         List<Map.Entry<POS, Boolean>> renderableUpdates = new ArrayList<>(renderableUpdatesSize + (renderableUpdatesSize >> 3)); //pre-allocate a bit of extra space in case it grows while we're iterating
-        renderableUpdates.addAll(this.pendingRenderableUpdates.entrySet());
-        renderableUpdates.forEach(update -> this.pendingRenderableUpdates.remove(update.getKey(), update.getValue())); //atomically remove the corresponding entries from the pending update queue
-
-        //execute the bulk update
-        this.index.update(uncheckedCast(dataUpdates), renderableUpdates);
+        this.pendingRenderableUpdates.forEach((pos, renderable) -> renderableUpdates.add(new AbstractMap.SimpleEntry<>(pos, renderable)));
+
+        //figure out which positions still have data waiting to be uploaded, either on themselves or on one of their children. this has to happen after the
+        //  renderability updates have been collected: bake workers always enqueue the data update before the renderability updates it causes, so this way we can't
+        //  miss a data update for any of the renderability updates we've seen.
+        Set<POS> pendingData = new HashSet<>(this.pendingDataUpdates.keySet());
+        Set<POS> pendingChildData = new HashSet<>();
+        pendingData.forEach(pos -> {
+            if (pos.level() < MAX_LODS - 1) {
+                pendingChildData.add(uncheckedCast(pos.up()));
+            }
+        });
 
-        //release all bake outputs which are still sitting around in memory
-        dataUpdates.forEach(update -> {
-            if (update.getValue().isPresent()) {
-                update.getValue().get().release();
+        renderableUpdates.removeIf(update -> {
+            POS pos = update.getKey();
+            if (pendingData.contains(pos) || pendingChildData.contains(pos) //the position's own data or its children's data hasn't been uploaded yet
+                || (!update.getValue() && pos.level() < MAX_LODS - 1 && pendingData.contains(pos.up()))) { //the parent which is meant to replace this position hasn't been uploaded yet
+                return true;
             }
+
+            //atomically remove the corresponding entry from the pending update queue, skipping it if it was replaced in the meantime
+            return !this.pendingRenderableUpdates.remove(pos, update.getValue());
         });
+
+        if (!renderableUpdates.isEmpty()) {
+            this.index.update(Collections.emptyList(), renderableUpdates);
+        }
+
+        //this is the best we can do of resetting a semaphore to its initial permit count, minus the updates which are still pending
+        this.dataUpdatesLock.drainPermits();
+        this.dataUpdatesLock.release(Math.max(config.maxBakesProcessedPerFrame() - this.pendingDataUpdates.size(), 0));
+
+        long duration = System.nanoTime() - startTime;
+        this.lastUploadCount = uploadCount;
+        this.lastUploadBytes = uploadBytes;
+        this.lastUploadDuration = duration;
+        this.avgUploadDuration = this.avgUploadDuration + ((duration - this.avgUploadDuration) >> 4); //exponential moving average
+    }
+
+    /**
+     * An inflated tile which may be shared between multiple concurrent bakes.
+     *
+     * @author DaPorkchop_
+     */
+    @RequiredArgsConstructor
+    protected final class SharedTile {
+        @NonNull
+        protected final ITileSnapshot<POS, T> snapshot;
+        protected int refCnt = 1;
+
+        protected T tile;
+        protected boolean inflated;
+
+        /**
+         * @return the inflated tile, or {@code null} if the snapshot is empty
+         */
+        public synchronized T tile(@NonNull SimpleRecycler<T> recycler) {
+            if (!this.inflated) { //the first user to get here inflates the tile
+                this.inflated = true;
+                this.tile = this.snapshot.loadTile(recycler);
+                BakeManager.this.tilesInflated.increment();
+            }
+            return this.tile;
+        }
     }
 }
@@ -54,4 +54,18 @@ public class RenderConstants {
     public static void emitQuad(ByteBuf indices, int oppositeCorner, int c0, int c1, int provoking) {
         indices.writeShortLE(c1).writeShortLE(oppositeCorner).writeShortLE(c0).writeShortLE(provoking);
     }
+
+    /**
+     * Packs a color and a light value into a single ARGB8 value, as expected by the {@code color} vertex attribute.
+     * <p>
+     * The light value is stored unmodified in the alpha channel, so the block light ends up in the low nibble and the sky light in the high nibble. The shaders unpack
+     * it again using {@code unpackLight}.
+     *
+     * @param color the RGB color (the alpha channel is ignored)
+     * @param light the light value, as stored in tiles
+     * @return the packed value
+     */
+    public static int packColorAndLight(int color, int light) {
+        return (light << 24) | (color & 0x00FFFFFF);
+    }
 }
@@ -34,6 +34,11 @@ public interface IBakeOutput extends RefCounted {
      */
     boolean isEmpty();
 
+    /**
+     * @return an estimate of the number of bytes of render data which will be uploaded when this bake output is inserted into a {@link IBakeOutputStorage}
+     */
+    long sizeBytes();
+
     @Override
     int refCnt();
 
@@ -30,6 +30,8 @@ import net.daporkchop.fp2.util.annotation.DebugOnly;
 import net.daporkchop.lib.common.misc.refcount.RefCounted;
 import net.daporkchop.lib.unsafe.util.exception.AlreadyReleasedException;
 
+import java.util.function.IntConsumer;
+
 /**
  * Stores data contained in multiple {@link IBakeOutput}.
  *
@@ -64,6 +66,20 @@ public interface IBakeOutputStorage<BO extends IBakeOutput, DB extends DrawBindi
      */
     DC[] toDrawCommands(int handle);
 
+    /**
+     * Incrementally defragments the memory used by this storage, moving the data associated with previously added {@link IBakeOutput}s.
+     * <p>
+     * The draw commands for any moved handles must be re-obtained using {@link #toDrawCommands(int)}.
+     *
+     * @param budget    the maximum number of bytes of data to move
+     * @param relocated a callback which will be notified with the handle of each {@link IBakeOutput} whose data has been moved. A handle may be
+     *                  reported more than once.
+     * @return the number of bytes of data which were moved
+     */
+    default long compact(long budget, @NonNull IntConsumer relocated) {
+        return 0L;
+    }
+
     DrawBindingBuilder<DB> createDrawBinding(@NonNull DrawLayout layout, int pass);
 
     @Override
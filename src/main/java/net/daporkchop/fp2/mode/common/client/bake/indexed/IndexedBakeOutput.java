@@ -20,9 +20,9 @@
 
 package net.daporkchop.fp2.mode.common.client.bake.indexed;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NonNull;
-import lombok.RequiredArgsConstructor;
 import net.daporkchop.fp2.gl.attribute.AttributeWriter;
 import net.daporkchop.fp2.gl.draw.index.IndexWriter;
 import net.daporkchop.fp2.mode.common.client.bake.AbstractBakeOutput;
@@ -35,25 +35,49 @@ import java.util.stream.Stream;
  *
  * @author DaPorkchop_
  */
-@RequiredArgsConstructor
 @Getter
 public class IndexedBakeOutput<SG, SL> extends AbstractBakeOutput {
     //TODO: this will only store a single value, there's no reason to use an AttributeWriter...
-    @NonNull
     protected final AttributeWriter<SG> globals;
 
-    @NonNull
     protected final AttributeWriter<SL> verts;
 
-    @NonNull
     protected final IndexWriter[] indices;
 
+    //if non-null, the writers are returned to this pool instead of being closed when this output is released
+    @Getter(AccessLevel.NONE)
+    protected final IndexedBakeOutputPool<SG, SL> pool;
+    @Getter(AccessLevel.NONE)
+    protected final IndexedBakeOutputPool.Writers<SG, SL> pooledWriters;
+
+    public IndexedBakeOutput(@NonNull AttributeWriter<SG> globals, @NonNull AttributeWriter<SL> verts, @NonNull IndexWriter[] indices) {
+        this.globals = globals;
+        this.verts = verts;
+        this.indices = indices;
+
+        this.pool = null;
+        this.pooledWriters = null;
+    }
+
+    IndexedBakeOutput(@NonNull IndexedBakeOutputPool<SG, SL> pool, @NonNull IndexedBakeOutputPool.Writers<SG, SL> writers) {
+        this.globals = writers.globals;
+        this.verts = writers.verts;
+        this.indices = writers.indices;
+
+        this.pool = pool;
+        this.pooledWriters = writers;
+    }
+
     @Override
     protected void doRelease() {
-        this.globals.close();
-        this.verts.close();
-        for (IndexWriter writer : this.indices) {
-            writer.close();
+        if (this.pool != null) {
+            this.pool.release(this.pooledWriters);
+        } else {
+            this.globals.close();
+            this.verts.close();
+            for (IndexWriter writer : this.indices) {
+                writer.close();
+            }
         }
     }
 
@@ -61,4 +85,13 @@ public class IndexedBakeOutput<SG, SL> extends AbstractBakeOutput {
     public boolean isEmpty() {
         return this.verts.size() == 0 || Stream.of(this.indices).allMatch(writer -> writer.size() == 0);
     }
+
+    @Override
+    public long sizeBytes() {
+        long size = this.globals.size() * this.globals.format().size() + this.verts.size() * this.verts.format().size();
+        for (IndexWriter writer : this.indices) {
+            size += (long) writer.size() * writer.format().size();
+        }
+        return size;
+    }
 }
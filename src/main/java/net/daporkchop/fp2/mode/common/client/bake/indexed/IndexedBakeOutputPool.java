@@ -0,0 +1,139 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package net.daporkchop.fp2.mode.common.client.bake.indexed;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import net.daporkchop.fp2.gl.attribute.AttributeWriter;
+import net.daporkchop.fp2.gl.draw.index.IndexWriter;
+import net.daporkchop.lib.common.util.PArrays;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Supplier;
+
+import static net.daporkchop.lib.common.util.PValidation.*;
+
+/**
+ * A bounded pool of the writers used by {@link IndexedBakeOutput}s.
+ * <p>
+ * Writers keep their memory while they're pooled, so once the pool has warmed up, baking a tile neither allocates nor grows any buffers.
+ * <p>
+ * Bake outputs are filled on the bake threads, but are released on the client thread once their contents have been uploaded. A thread-local pool would therefore
+ * end up moving every writer to the client thread, so a single pool is shared between all threads instead.
+ *
+ * @author DaPorkchop_
+ */
+public class IndexedBakeOutputPool<SG, SL> implements AutoCloseable {
+    protected final Supplier<AttributeWriter<SG>> globalsFactory;
+    protected final Supplier<AttributeWriter<SL>> vertsFactory;
+    protected final Supplier<IndexWriter> indicesFactory;
+    protected final int passes;
+
+    protected final BlockingQueue<Writers<SG, SL>> pooled;
+    protected volatile boolean closed;
+
+    public IndexedBakeOutputPool(@NonNull Supplier<AttributeWriter<SG>> globalsFactory, @NonNull Supplier<AttributeWriter<SL>> vertsFactory, @NonNull Supplier<IndexWriter> indicesFactory, int passes, int capacity) {
+        this.globalsFactory = globalsFactory;
+        this.vertsFactory = vertsFactory;
+        this.indicesFactory = indicesFactory;
+        this.passes = positive(passes, "passes");
+
+        this.pooled = new ArrayBlockingQueue<>(positive(capacity, "capacity"));
+    }
+
+    /**
+     * @return a new, empty {@link IndexedBakeOutput} whose writers will be returned to this pool once it is released
+     */
+    public IndexedBakeOutput<SG, SL> allocate() {
+        Writers<SG, SL> writers = this.pooled.poll();
+        if (writers == null) { //the pool is empty, we need to create some new writers
+            writers = new Writers<>(this.globalsFactory.get(), this.vertsFactory.get(), PArrays.filledFrom(this.passes, IndexWriter[]::new, this.indicesFactory));
+        }
+        return new IndexedBakeOutput<>(this, writers);
+    }
+
+    /**
+     * Returns the given writers to this pool.
+     *
+     * @param writers the writers
+     */
+    protected void release(@NonNull Writers<SG, SL> writers) {
+        writers.clear();
+
+        if (this.closed || !this.pooled.offer(writers)) { //the pool is closed or full, discard the writers
+            writers.close();
+        } else if (this.closed) { //the pool was closed while the writers were being added, make sure they don't leak
+            this.drain();
+        }
+    }
+
+    /**
+     * @return the number of sets of writers which are currently pooled
+     */
+    public int size() {
+        return this.pooled.size();
+    }
+
+    @Override
+    public void close() {
+        this.closed = true;
+        this.drain();
+    }
+
+    protected void drain() {
+        for (Writers<SG, SL> writers; (writers = this.pooled.poll()) != null; ) {
+            writers.close();
+        }
+    }
+
+    /**
+     * The writers used by a single {@link IndexedBakeOutput}.
+     *
+     * @author DaPorkchop_
+     */
+    @RequiredArgsConstructor
+    protected static final class Writers<SG, SL> implements AutoCloseable {
+        @NonNull
+        protected final AttributeWriter<SG> globals;
+        @NonNull
+        protected final AttributeWriter<SL> verts;
+        @NonNull
+        protected final IndexWriter[] indices;
+
+        public void clear() {
+            this.globals.clear();
+            this.verts.clear();
+            for (IndexWriter writer : this.indices) {
+                writer.clear();
+            }
+        }
+
+        @Override
+        public void close() {
+            this.globals.close();
+            this.verts.close();
+            for (IndexWriter writer : this.indices) {
+                writer.close();
+            }
+        }
+    }
+}
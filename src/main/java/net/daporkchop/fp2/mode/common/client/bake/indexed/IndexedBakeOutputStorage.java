@@ -20,11 +20,14 @@
 
 package net.daporkchop.fp2.mode.common.client.bake.indexed;
 
+import it.unimi.dsi.fastutil.ints.Int2IntMap;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
 import lombok.Getter;
 import lombok.NonNull;
 import net.daporkchop.fp2.common.util.alloc.Allocator;
+import net.daporkchop.fp2.common.util.alloc.CompactingAllocator;
 import net.daporkchop.fp2.common.util.alloc.SequentialFixedSizeAllocator;
-import net.daporkchop.fp2.common.util.alloc.SequentialVariableSizedAllocator;
+import net.daporkchop.fp2.common.util.alloc.SequentialSegregatedFitAllocator;
 import net.daporkchop.fp2.debug.util.DebugStats;
 import net.daporkchop.fp2.gl.attribute.AttributeBuffer;
 import net.daporkchop.fp2.gl.attribute.AttributeFormat;
@@ -41,6 +44,7 @@ import net.daporkchop.fp2.mode.common.client.bake.IBakeOutputStorage;
 import net.daporkchop.fp2.util.annotation.DebugOnly;
 import net.daporkchop.lib.unsafe.PUnsafe;
 
+import java.util.function.IntConsumer;
 import java.util.stream.Stream;
 
 import static net.daporkchop.fp2.client.gl.OpenGL.*;
@@ -48,6 +52,9 @@ import static net.daporkchop.lib.common.util.PValidation.*;
 
 /**
  * Implementation of {@link IBakeOutputStorage} which contains indexed geometry in multiple render passes.
+ * <p>
+ * If compaction is enabled, vertex and index data will be moved to eliminate fragmentation once more than a quarter of the allocated space is lost
+ * to gaps between allocations.
  *
  * @author DaPorkchop_
  */
@@ -64,6 +71,8 @@ public class IndexedBakeOutputStorage<SU, SG, SL> extends AbstractBakeOutputStor
      * };
      */
 
+    protected static final long FRAGMENTATION_THRESHOLD_DIVISOR = 4L;
+
     protected static final long _SLOT_BASEVERTEX_OFFSET = 0L;
     protected static final long _SLOT_PASSES_OFFSET = _SLOT_BASEVERTEX_OFFSET + INT_SIZE;
 
@@ -111,18 +120,33 @@ public class IndexedBakeOutputStorage<SU, SG, SL> extends AbstractBakeOutputStor
 
     protected final AttributeBuffer<SG> globalBuffer;
 
-    protected final Allocator vertexAlloc;
+    protected final CompactingAllocator vertexAlloc;
     protected final AttributeBuffer<SL> vertexBuffer;
 
     protected final int indexSize;
-    protected final Allocator[] indexAllocs;
+    protected final CompactingAllocator[] indexAllocs;
     protected final IndexBuffer[] indexBuffers;
 
     @Getter
     protected final int passes;
 
+    @Getter
+    protected final boolean compacting;
+
+    //maps the address of each vertex/index allocation to the handle which owns it. only present if compaction is enabled
+    protected final Int2IntMap vertexOwners;
+    protected final Int2IntMap[] indexOwners;
+
+    //whether or not each allocator (vertices, followed by the index allocator for each pass) is currently being compacted
+    protected final boolean[] defragmenting;
+
     public IndexedBakeOutputStorage(@NonNull Allocator alloc, @NonNull AttributeFormat<SG> globalFormat, @NonNull AttributeFormat<SL> vertexFormat, @NonNull IndexFormat indexFormat, int passes) {
+        this(alloc, globalFormat, vertexFormat, indexFormat, passes, false);
+    }
+
+    public IndexedBakeOutputStorage(@NonNull Allocator alloc, @NonNull AttributeFormat<SG> globalFormat, @NonNull AttributeFormat<SL> vertexFormat, @NonNull IndexFormat indexFormat, int passes, boolean compacting) {
         this.alloc = alloc;
+        this.compacting = compacting;
 
         this.passes = positive(passes, "passes");
         this.indexSize = indexFormat.size();
@@ -136,13 +160,26 @@ public class IndexedBakeOutputStorage<SU, SG, SL> extends AbstractBakeOutputStor
         }));
 
         this.vertexBuffer = vertexFormat.createBuffer(BufferUsage.STATIC_DRAW);
-        this.vertexAlloc = new SequentialVariableSizedAllocator(1L, Allocator.SequentialHeapManager.unified(capacity -> this.vertexBuffer.resize(toInt(capacity))));
+        this.vertexAlloc = new SequentialSegregatedFitAllocator(1L, Allocator.SequentialHeapManager.unified(capacity -> this.vertexBuffer.resize(toInt(capacity))));
 
-        this.indexAllocs = new Allocator[passes];
+        this.indexAllocs = new CompactingAllocator[passes];
         this.indexBuffers = new IndexBuffer[passes];
         for (int pass = 0; pass < passes; pass++) {
             IndexBuffer indexBuffer = this.indexBuffers[pass] = indexFormat.createBuffer(BufferUsage.STATIC_DRAW);
-            this.indexAllocs[pass] = new SequentialVariableSizedAllocator(1L, Allocator.SequentialHeapManager.unified(capacity -> indexBuffer.resize(toInt(capacity))));
+            this.indexAllocs[pass] = new SequentialSegregatedFitAllocator(1L, Allocator.SequentialHeapManager.unified(capacity -> indexBuffer.resize(toInt(capacity))));
+        }
+
+        if (compacting) {
+            this.vertexOwners = new Int2IntOpenHashMap();
+            this.indexOwners = new Int2IntMap[passes];
+            for (int pass = 0; pass < passes; pass++) {
+                this.indexOwners[pass] = new Int2IntOpenHashMap();
+            }
+            this.defragmenting = new boolean[1 + passes];
+        } else {
+            this.vertexOwners = null;
+            this.indexOwners = null;
+            this.defragmenting = null;
         }
     }
 
@@ -175,6 +212,9 @@ public class IndexedBakeOutputStorage<SU, SG, SL> extends AbstractBakeOutputStor
         int baseVertex = toInt(this.vertexAlloc.alloc(output.verts.size()));
         _slot_baseVertex(slotAddr, baseVertex);
         this.vertexBuffer.set(baseVertex, output.verts);
+        if (this.compacting) {
+            this.vertexOwners.put(baseVertex, handle);
+        }
 
         //for each pass, allocate and upload index data if needed
         for (int i = 0; i < this.passes; i++) {
@@ -188,6 +228,9 @@ public class IndexedBakeOutputStorage<SU, SG, SL> extends AbstractBakeOutputStor
                 firstIndex = toInt(this.indexAllocs[i].alloc(indices.size()));
 
                 this.indexBuffers[i].set(firstIndex, indices);
+                if (this.compacting) {
+                    this.indexOwners[i].put(firstIndex, handle);
+                }
             }
 
             _pass_firstIndex(passAddr, firstIndex);
@@ -205,6 +248,9 @@ public class IndexedBakeOutputStorage<SU, SG, SL> extends AbstractBakeOutputStor
 
         //free vertex data
         this.vertexAlloc.free(_slot_baseVertex(slotAddr));
+        if (this.compacting) {
+            this.vertexOwners.remove(_slot_baseVertex(slotAddr));
+        }
 
         //for each pass, free index data if needed
         for (int i = 0; i < this.passes; i++) {
@@ -212,6 +258,9 @@ public class IndexedBakeOutputStorage<SU, SG, SL> extends AbstractBakeOutputStor
 
             if (_pass_count(passAddr) > 0) {
                 this.indexAllocs[i].free(_pass_firstIndex(passAddr));
+                if (this.compacting) {
+                    this.indexOwners[i].remove(_pass_firstIndex(passAddr));
+                }
             }
         }
 
@@ -231,6 +280,72 @@ public class IndexedBakeOutputStorage<SU, SG, SL> extends AbstractBakeOutputStor
         return commands;
     }
 
+    @Override
+    public long compact(long budget, @NonNull IntConsumer relocated) {
+        if (!this.compacting || budget <= 0L) {
+            return 0L;
+        }
+
+        long moved = 0L;
+
+        //compact vertex data
+        long vertexSize = this.vertexBuffer.format().size();
+        if (this.shouldCompact(0, this.vertexAlloc)) {
+            moved += this.vertexAlloc.compact(budget / vertexSize, new CompactingAllocator.Mover() {
+                @Override
+                public void copy(long src, long dst, long size) {
+                    IndexedBakeOutputStorage.this.vertexBuffer.copyRange(toInt(src), toInt(dst), toInt(size));
+                }
+
+                @Override
+                public void moved(long oldAddress, long newAddress) {
+                    int handle = IndexedBakeOutputStorage.this.vertexOwners.remove(toInt(oldAddress));
+                    IndexedBakeOutputStorage.this.vertexOwners.put(toInt(newAddress), handle);
+
+                    _slot_baseVertex(IndexedBakeOutputStorage.this.slotsAddr + handle * IndexedBakeOutputStorage.this.slotSize, toInt(newAddress));
+                    relocated.accept(handle);
+                }
+            }) * vertexSize;
+        }
+
+        //compact index data for each pass, as long as there's budget remaining
+        for (int i = 0; i < this.passes && moved < budget; i++) {
+            if (this.shouldCompact(1 + i, this.indexAllocs[i])) {
+                IndexBuffer indexBuffer = this.indexBuffers[i];
+                Int2IntMap indexOwners = this.indexOwners[i];
+                int pass = i;
+
+                moved += this.indexAllocs[i].compact((budget - moved) / this.indexSize, new CompactingAllocator.Mover() {
+                    @Override
+                    public void copy(long src, long dst, long size) {
+                        indexBuffer.copyRange(toInt(src), toInt(dst), toInt(size));
+                    }
+
+                    @Override
+                    public void moved(long oldAddress, long newAddress) {
+                        int handle = indexOwners.remove(toInt(oldAddress));
+                        indexOwners.put(toInt(newAddress), handle);
+
+                        _pass_firstIndex(_slot_pass(IndexedBakeOutputStorage.this.slotsAddr + handle * IndexedBakeOutputStorage.this.slotSize, pass), toInt(newAddress));
+                        relocated.accept(handle);
+                    }
+                }) * this.indexSize;
+            }
+        }
+
+        return moved;
+    }
+
+    protected boolean shouldCompact(int index, @NonNull CompactingAllocator alloc) {
+        long fragmentedSpace = alloc.fragmentedSpace();
+        if (fragmentedSpace == 0L) { //allocator is already fully compacted
+            return this.defragmenting[index] = false;
+        } else if (!this.defragmenting[index]) { //only start compacting once fragmentation has exceeded the threshold, then keep going until it's gone
+            this.defragmenting[index] = fragmentedSpace > alloc.stats().allocatedSpace() / FRAGMENTATION_THRESHOLD_DIVISOR;
+        }
+        return this.defragmenting[index];
+    }
+
     @DebugOnly
     @Override
     public DebugStats.Renderer stats() {
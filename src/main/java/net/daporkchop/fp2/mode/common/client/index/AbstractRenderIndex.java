@@ -118,11 +118,25 @@ public abstract class AbstractRenderIndex<POS extends IFarPos, BO extends IBakeO
 
     @Override
     public void select(@NonNull IFrustum frustum, float partialTicks) {
+        this.compact();
+
         for (Level level : this.levels) {
             level.select(frustum, partialTicks);
         }
     }
 
+    /**
+     * Incrementally defragments each level's bake output storage, limited by the configured per-frame budget.
+     * <p>
+     * This must be called before selection, as it may modify the draw commands.
+     */
+    protected void compact() {
+        long budget = FP2Config.global().performance().maxDefragmentationPerFrame() * 1024L;
+        for (int level = 0; level < MAX_LODS && budget > 0L; level++) {
+            budget -= this.levels[level].compact(budget);
+        }
+    }
+
     @Override
     public void draw(@NonNull CommandBufferBuilder builder, int level, int pass, @NonNull DrawShaderProgram shader) {
         checkIndex(RENDER_PASS_COUNT, pass);
@@ -268,6 +282,21 @@ public abstract class AbstractRenderIndex<POS extends IFarPos, BO extends IBakeO
             }
         }
 
+        public long compact(long budget) {
+            long moved = this.storage.compact(budget, handle -> {
+                //if the moved handle's draw commands are currently set, they need to be replaced with the new ones
+                POS pos = this.directPosAccess.loadPos(this.positionsAddr + handle * this.positionSize);
+                if (pos.level() == 0 || AbstractRenderIndex.this.renderablePositions.contains(pos)) {
+                    this.addDrawCommands(handle);
+                }
+            });
+
+            if (moved > 0L) {
+                this.dirty = true;
+            }
+            return moved;
+        }
+
         public void select(@NonNull IFrustum frustum, float partialTicks) {
             if (this.positionsToHandles.isEmpty()) { //nothing to do
                 return;
@@ -25,6 +25,7 @@ import net.daporkchop.fp2.asm.interfaz.client.renderer.IMixinRenderGlobal;
 import net.daporkchop.fp2.client.VanillaRenderabilityTracker;
 import net.daporkchop.fp2.client.gl.camera.IFrustum;
 import net.daporkchop.fp2.common.util.alloc.Allocator;
+import net.daporkchop.fp2.config.FP2Config;
 import net.daporkchop.fp2.gl.command.CommandBufferBuilder;
 import net.daporkchop.fp2.gl.draw.DrawMode;
 import net.daporkchop.fp2.gl.draw.binding.DrawBinding;
@@ -37,22 +38,31 @@ import net.daporkchop.fp2.mode.api.IFarTile;
 import net.daporkchop.fp2.mode.common.client.ICullingStrategy;
 import net.daporkchop.fp2.mode.common.client.bake.IBakeOutput;
 import net.daporkchop.fp2.mode.common.client.strategy.IFarRenderStrategy;
+import net.daporkchop.lib.common.util.PorkUtil;
 
 import java.util.function.IntPredicate;
-import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 import static net.daporkchop.fp2.util.Constants.*;
+import static net.daporkchop.lib.common.util.PorkUtil.*;
 
 /**
  * Implementation of {@link AbstractRenderIndex} which does frustum culling on the CPU.
+ * <p>
+ * Culling is done hierarchically using a {@link HierarchicalFrustumCuller}: levels are culled starting from the highest one, and tiles whose parent tile is
+ * outside of the frustum are rejected without being tested.
  *
  * @author DaPorkchop_
  */
 public class CPUCulledRenderIndex<POS extends IFarPos, BO extends IBakeOutput, DB extends DrawBinding, DC extends DrawCommand> extends AbstractRenderIndex<POS, BO, DB, DC, JavaSelectedDrawList<DC>> {
     protected static final Allocator.GrowFunction GROW_FUNCTION = Allocator.GrowFunction.pow2(1L);
 
+    protected final HierarchicalFrustumCuller<POS> culler;
+
     public <T extends IFarTile> CPUCulledRenderIndex(@NonNull IFarRenderStrategy<POS, T, BO, DB, DC> strategy) {
         super(strategy);
+
+        this.culler = new HierarchicalFrustumCuller<>(this.strategy.mode().directPosAccess(), MAX_LODS, FP2Config.global().performance().parallelCpuFrustumCulling());
     }
 
     @Override
@@ -60,6 +70,16 @@ public class CPUCulledRenderIndex<POS extends IFarPos, BO extends IBakeOutput, D
         return new Level(level);
     }
 
+    @Override
+    public void select(@NonNull IFrustum frustum, float partialTicks) {
+        this.compact();
+
+        //levels must be selected from the top down, as the culling results for each level depend on the results for the level above it
+        for (int level = MAX_LODS - 1; level >= 0; level--) {
+            this.levels[level].select(frustum, partialTicks);
+        }
+    }
+
     /**
      * @author DaPorkchop_
      */
@@ -75,21 +95,57 @@ public class CPUCulledRenderIndex<POS extends IFarPos, BO extends IBakeOutput, D
             return builder.buildJavaSelected();
         }
 
+        @Override
+        public void put(@NonNull POS pos, BO output) {
+            int oldHandle = this.positionsToHandles.getInt(pos);
+            super.put(pos, output);
+            int newHandle = this.positionsToHandles.getInt(pos);
+
+            HierarchicalFrustumCuller<POS> culler = CPUCulledRenderIndex.this.culler;
+            culler.capacity(this.level, this.capacity);
+
+            if (oldHandle >= 0) {
+                culler.release(this.level, oldHandle);
+            }
+            if (newHandle >= 0) {
+                culler.occupy(this.level, newHandle, this.level + 1 < MAX_LODS ? this.levelAbove().positionsToHandles.getInt(pos.up()) : -1);
+            }
+
+            if (oldHandle != newHandle && this.level > 0) { //the tile's slot has changed, update the links from all of its children
+                Level levelBelow = this.levelBelow();
+                PorkUtil.<Stream<POS>>uncheckedCast(pos.down().allPositionsInBB(0, 1)).forEach(childPos -> {
+                    int childHandle = levelBelow.positionsToHandles.getInt(childPos);
+                    if (childHandle >= 0) {
+                        culler.parent(levelBelow.level, childHandle, newHandle);
+                    }
+                });
+            }
+        }
+
+        protected Level levelAbove() {
+            return uncheckedCast(CPUCulledRenderIndex.this.levels[this.level + 1]);
+        }
+
+        protected Level levelBelow() {
+            return uncheckedCast(CPUCulledRenderIndex.this.levels[this.level - 1]);
+        }
+
         @Override
         protected void select0(@NonNull IFrustum frustum, float partialTicks) {
             this.selector = this.cull(frustum);
         }
 
         protected IntPredicate cull(@NonNull IFrustum frustum) {
+            HierarchicalFrustumCuller<POS> culler = CPUCulledRenderIndex.this.culler;
+            culler.cull(this.level, this.positionsAddr, frustum);
+
             if (this.level == 0) { //level-0 is tested for vanilla terrain intersection AND frustum intersection
                 ICullingStrategy<POS> cullingStrategy = CPUCulledRenderIndex.this.cullingStrategy;
                 VanillaRenderabilityTracker vanillaRenderabilityTracker = ((IMixinRenderGlobal) MC.renderGlobal).fp2_vanillaRenderabilityTracker();
-                return slot -> {
-                    long posAddr = this.positionsAddr + slot * this.positionSize;
-                    return !cullingStrategy.blockedByVanilla(vanillaRenderabilityTracker, posAddr) && this.directPosAccess.inFrustum(posAddr, frustum);
-                };
+                return slot -> culler.visible(0, slot) && !cullingStrategy.blockedByVanilla(vanillaRenderabilityTracker, this.positionsAddr + slot * this.positionSize);
             } else { //all other levels are only tested for frustum intersection
-                return slot -> this.directPosAccess.inFrustum(this.positionsAddr + slot * this.positionSize, frustum);
+                int level = this.level;
+                return slot -> culler.visible(level, slot);
             }
         }
 
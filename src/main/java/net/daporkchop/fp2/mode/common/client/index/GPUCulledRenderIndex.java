@@ -84,6 +84,8 @@ public class GPUCulledRenderIndex<POS extends IFarPos, BO extends IBakeOutput, D
 
     @Override
     public void select(@NonNull IFrustum frustum, float partialTicks) {
+        this.compact();
+
         ShaderClippingStateHelper.update(frustum);
         ShaderClippingStateHelper.bind();
 
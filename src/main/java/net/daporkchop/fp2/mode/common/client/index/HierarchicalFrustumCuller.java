@@ -0,0 +1,187 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package net.daporkchop.fp2.mode.common.client.index;
+
+import lombok.NonNull;
+import net.daporkchop.fp2.client.gl.camera.IFrustum;
+import net.daporkchop.fp2.mode.api.IFarDirectPosAccess;
+import net.daporkchop.fp2.mode.api.IFarPos;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import static net.daporkchop.lib.common.util.PValidation.*;
+
+/**
+ * Computes frustum visibility for the tiles in a {@link CPUCulledRenderIndex}, making use of the fact that a tile's bounding box is always contained by the
+ * bounding box of its parent tile one level up.
+ * <p>
+ * Each level is identified by its detail level, and consists of a number of slots. Every occupied slot may optionally be linked to the slot containing its
+ * parent tile in the next level up. Levels must be culled in descending order (starting with the highest level), so that the results for a tile's parent are
+ * already available when the tile itself is tested: if the parent was found to be outside of the frustum, the tile is rejected without being tested at all.
+ * <p>
+ * This class does not depend on any OpenGL state, and may therefore be used without a GL context.
+ *
+ * @author DaPorkchop_
+ */
+public class HierarchicalFrustumCuller<POS extends IFarPos> {
+    /**
+     * The minimum number of 64-slot words a level must contain before it is culled in parallel.
+     */
+    protected static final int PARALLEL_THRESHOLD_WORDS = 64;
+
+    protected final IFarDirectPosAccess<POS> directPosAccess;
+    protected final boolean parallel;
+
+    protected final int[][] parentSlots;
+    protected final long[][] occupied;
+    protected final long[][] visible;
+
+    public HierarchicalFrustumCuller(@NonNull IFarDirectPosAccess<POS> directPosAccess, int levels, boolean parallel) {
+        this.directPosAccess = directPosAccess;
+        this.parallel = parallel;
+
+        this.parentSlots = new int[positive(levels, "levels")][0];
+        this.occupied = new long[levels][0];
+        this.visible = new long[levels][0];
+    }
+
+    /**
+     * Sets the number of slots in the given level.
+     * <p>
+     * All slots which are added are initially unoccupied. If the capacity is reduced, the caller is responsible for ensuring that no remaining slots are
+     * linked to a parent slot which no longer exists.
+     *
+     * @param level    the level
+     * @param capacity the new number of slots
+     */
+    public void capacity(int level, int capacity) {
+        int oldCapacity = this.parentSlots[level].length;
+        if (oldCapacity == notNegative(capacity, "capacity")) { //capacity is unchanged, nothing to do
+            return;
+        }
+
+        int words = (capacity + 63) >>> 6;
+
+        this.parentSlots[level] = Arrays.copyOf(this.parentSlots[level], capacity);
+        if (capacity > oldCapacity) {
+            Arrays.fill(this.parentSlots[level], oldCapacity, capacity, -1);
+        }
+
+        this.occupied[level] = Arrays.copyOf(this.occupied[level], words);
+        this.visible[level] = Arrays.copyOf(this.visible[level], words);
+    }
+
+    /**
+     * Marks the given slot as occupied.
+     *
+     * @param level      the level
+     * @param slot       the slot
+     * @param parentSlot the slot in the next level up containing this slot's parent tile, or {@code -1} if the parent tile isn't present
+     */
+    public void occupy(int level, int slot, int parentSlot) {
+        this.occupied[level][slot >>> 6] |= 1L << slot;
+        this.parentSlots[level][slot] = parentSlot;
+    }
+
+    /**
+     * Marks the given slot as unoccupied.
+     *
+     * @param level the level
+     * @param slot  the slot
+     */
+    public void release(int level, int slot) {
+        this.occupied[level][slot >>> 6] &= ~(1L << slot);
+        this.visible[level][slot >>> 6] &= ~(1L << slot);
+        this.parentSlots[level][slot] = -1;
+    }
+
+    /**
+     * Updates the link between an occupied slot and its parent tile.
+     *
+     * @param level      the level
+     * @param slot       the slot
+     * @param parentSlot the slot in the next level up containing this slot's parent tile, or {@code -1} if the parent tile isn't present
+     */
+    public void parent(int level, int slot, int parentSlot) {
+        this.parentSlots[level][slot] = parentSlot;
+    }
+
+    /**
+     * Tests every occupied slot in the given level for frustum intersection.
+     * <p>
+     * If the given level is not the highest level, the next level up must already have been culled against the same frustum.
+     *
+     * @param level         the level
+     * @param positionsAddr the base address of the off-heap tile positions, indexed by slot
+     * @param frustum       the frustum
+     */
+    public void cull(int level, long positionsAddr, @NonNull IFrustum frustum) {
+        long[] visible = this.visible[level];
+        int words = visible.length;
+
+        if (this.parallel && words >= PARALLEL_THRESHOLD_WORDS) {
+            IntStream.range(0, words).parallel().forEach(word -> visible[word] = this.cullWord(level, word, positionsAddr, frustum));
+        } else {
+            for (int word = 0; word < words; word++) {
+                visible[word] = this.cullWord(level, word, positionsAddr, frustum);
+            }
+        }
+    }
+
+    protected long cullWord(int level, int word, long positionsAddr, IFrustum frustum) {
+        long occupied = this.occupied[level][word];
+        if (occupied == 0L) { //no slots in this word are occupied, nothing to test
+            return 0L;
+        }
+
+        int[] parentSlots = this.parentSlots[level];
+        long[] parentVisible = level + 1 < this.visible.length ? this.visible[level + 1] : null;
+        long posSize = this.directPosAccess.posSize();
+
+        long result = 0L;
+        for (long remaining = occupied; remaining != 0L; remaining &= remaining - 1L) {
+            int slot = (word << 6) | Long.numberOfTrailingZeros(remaining);
+
+            int parentSlot = parentSlots[slot];
+            if (parentSlot >= 0 && parentVisible != null && (parentVisible[parentSlot >>> 6] & (1L << parentSlot)) == 0L) {
+                //the parent tile is outside of the frustum, so this tile must be as well
+                continue;
+            }
+
+            if (this.directPosAccess.inFrustum(positionsAddr + slot * posSize, frustum)) {
+                result |= 1L << slot;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Checks whether or not the given slot was found to be inside the frustum by the most recent call to {@link #cull(int, long, IFrustum)}.
+     *
+     * @param level the level
+     * @param slot  the slot
+     * @return whether or not the given slot is visible
+     */
+    public boolean visible(int level, int slot) {
+        return (this.visible[level][slot >>> 6] & (1L << slot)) != 0L;
+    }
+}
@@ -30,7 +30,6 @@ import net.daporkchop.fp2.gl.command.CommandBufferBuilder;
 import net.daporkchop.fp2.gl.draw.binding.DrawBindingBuilder;
 import net.daporkchop.fp2.gl.draw.binding.DrawBindingIndexed;
 import net.daporkchop.fp2.gl.draw.index.IndexFormat;
-import net.daporkchop.fp2.gl.draw.index.IndexWriter;
 import net.daporkchop.fp2.gl.draw.list.DrawCommandIndexed;
 import net.daporkchop.fp2.gl.draw.list.DrawListBuilder;
 import net.daporkchop.fp2.mode.api.IFarPos;
@@ -38,11 +37,11 @@ import net.daporkchop.fp2.mode.api.IFarRenderMode;
 import net.daporkchop.fp2.mode.api.IFarTile;
 import net.daporkchop.fp2.mode.common.client.bake.IBakeOutputStorage;
 import net.daporkchop.fp2.mode.common.client.bake.indexed.IndexedBakeOutput;
+import net.daporkchop.fp2.mode.common.client.bake.indexed.IndexedBakeOutputPool;
 import net.daporkchop.fp2.mode.common.client.bake.indexed.IndexedBakeOutputStorage;
 import net.daporkchop.fp2.mode.common.client.index.CPUCulledRenderIndex;
 import net.daporkchop.fp2.mode.common.client.index.GPUCulledRenderIndex;
 import net.daporkchop.fp2.mode.common.client.index.IRenderIndex;
-import net.daporkchop.lib.common.util.PArrays;
 import net.minecraft.util.BlockRenderLayer;
 
 import static net.daporkchop.fp2.mode.common.client.RenderConstants.*;
@@ -54,6 +53,11 @@ import static net.daporkchop.fp2.util.Constants.*;
 public abstract class AbstractMultipassIndexedRenderStrategy<POS extends IFarPos, T extends IFarTile, SG, SL> extends AbstractRenderStrategy<POS, T, IndexedBakeOutput<SG, SL>, DrawBindingIndexed, DrawCommandIndexed> implements IMultipassRenderStrategy<POS, T, IndexedBakeOutput<SG, SL>, DrawBindingIndexed, DrawCommandIndexed> {
     protected CommandBuffer commandBuffer;
 
+    //the formats are only initialized by subclass constructors, so the writers have to be created lazily
+    protected final IndexedBakeOutputPool<SG, SL> bakeOutputPool = new IndexedBakeOutputPool<>(
+            () -> this.globalFormat().createWriter(), () -> this.vertexFormat().createWriter(), () -> this.indexFormat().createWriter(),
+            RENDER_PASS_COUNT, FP2Config.global().performance().bakeThreads() << 2);
+
     public AbstractMultipassIndexedRenderStrategy(@NonNull IFarRenderMode<POS, T> mode, @NonNull GL gl) {
         super(mode, gl);
     }
@@ -73,12 +77,13 @@ public abstract class AbstractMultipassIndexedRenderStrategy<POS extends IFarPos
 
     @Override
     public IndexedBakeOutput<SG, SL> createBakeOutput() {
-        return new IndexedBakeOutput<>(this.globalFormat().createWriter(), this.vertexFormat().createWriter(), PArrays.filledFrom(RENDER_PASS_COUNT, IndexWriter[]::new, this.indexFormat()::createWriter));
+        return this.bakeOutputPool.allocate();
     }
 
     @Override
     public IBakeOutputStorage<IndexedBakeOutput<SG, SL>, DrawBindingIndexed, DrawCommandIndexed> createBakeOutputStorage() {
-        return new IndexedBakeOutputStorage<>(this.alloc, this.globalFormat(), this.vertexFormat(), this.indexFormat(), RENDER_PASS_COUNT);
+        return new IndexedBakeOutputStorage<>(this.alloc, this.globalFormat(), this.vertexFormat(), this.indexFormat(), RENDER_PASS_COUNT,
+                FP2Config.global().performance().maxDefragmentationPerFrame() > 0);
     }
 
     @Override
@@ -120,4 +125,12 @@ public abstract class AbstractMultipassIndexedRenderStrategy<POS extends IFarPos
         this.render(builder, index);
         this.commandBuffer = builder.build();
     }
+
+    @Override
+    protected void doRelease() {
+        super.doRelease();
+
+        //any outputs which are still in use will close their writers themselves once they're released
+        this.bakeOutputPool.close();
+    }
 }
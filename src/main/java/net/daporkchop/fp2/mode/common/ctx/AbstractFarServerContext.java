@@ -36,14 +36,19 @@ import net.daporkchop.fp2.mode.api.tile.TileSnapshot;
 import net.daporkchop.fp2.net.packet.debug.server.SPacketDebugUpdateStatistics;
 import net.daporkchop.fp2.net.packet.standard.server.SPacketTileData;
 import net.daporkchop.fp2.net.packet.standard.server.SPacketUnloadTile;
+import net.daporkchop.fp2.net.packet.standard.server.SPacketUnloadTiles;
+import net.daporkchop.fp2.server.FP2Metrics;
 import net.daporkchop.fp2.util.annotation.CalledFromServerThread;
 import net.daporkchop.fp2.util.annotation.DebugOnly;
 import net.daporkchop.fp2.util.annotation.RemovalPolicy;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.TreeMap;
 
+import static java.lang.Math.*;
 import static net.daporkchop.fp2.debug.FP2Debug.*;
 import static net.daporkchop.lib.common.util.PValidation.*;
 
@@ -103,11 +108,32 @@ public abstract class AbstractFarServerContext<POS extends IFarPos, T extends IF
     @Synchronized("sendQueue")
     protected void flushSendQueue() {
         if (!this.sendQueue.isEmpty()) {
-            this.sendQueue.forEach((pos, optionalSnapshot) -> this.player.fp2_IFarPlayer_sendPacket(optionalSnapshot.isPresent()
-                    ? new SPacketTileData().mode(this.mode).tile(optionalSnapshot.get())
-                    : new SPacketUnloadTile().mode(this.mode).pos(pos)));
+            List<IFarPos> unloadedPositions = new ArrayList<>();
+            this.sendQueue.forEach((pos, optionalSnapshot) -> {
+                if (optionalSnapshot.isPresent()) {
+                    this.player.fp2_IFarPlayer_sendPacket(new SPacketTileData().mode(this.mode).tile(optionalSnapshot.get()));
+                    FP2Metrics.NET_TILES_SENT.inc();
+                } else {
+                    unloadedPositions.add(pos);
+                }
+            });
             this.sendQueue.clear();
+
+            if (!unloadedPositions.isEmpty()) {
+                this.sendUnloads(unloadedPositions);
+            }
+        }
+    }
+
+    protected void sendUnloads(@NonNull List<IFarPos> positions) {
+        if (positions.size() == 1) { //only a single tile is being unloaded, there's no point in using a bulk packet
+            this.player.fp2_IFarPlayer_sendPacket(new SPacketUnloadTile().mode(this.mode).pos(positions.get(0)));
+        } else { //split the positions into batches to prevent packets from getting too big
+            for (int i = 0; i < positions.size(); i += SPacketUnloadTiles.MAX_POSITIONS) {
+                this.player.fp2_IFarPlayer_sendPacket(new SPacketUnloadTiles().mode(this.mode).positions(positions.subList(i, min(i + SPacketUnloadTiles.MAX_POSITIONS, positions.size()))));
+            }
         }
+        FP2Metrics.NET_TILES_UNLOADED.add(positions.size());
     }
 
     @DebugOnly(RemovalPolicy.DROP)
@@ -25,6 +25,8 @@ import lombok.Getter;
 import lombok.NonNull;
 import lombok.SneakyThrows;
 import lombok.Synchronized;
+import net.daporkchop.fp2.common.util.metrics.Histogram;
+import net.daporkchop.fp2.common.util.metrics.MetricsScope;
 import net.daporkchop.fp2.config.FP2Config;
 import net.daporkchop.fp2.mode.api.IFarPos;
 import net.daporkchop.fp2.mode.api.IFarRenderMode;
@@ -37,6 +39,7 @@ import net.daporkchop.fp2.mode.api.server.storage.IFarStorage;
 import net.daporkchop.fp2.mode.api.server.tracking.IFarTrackerManager;
 import net.daporkchop.fp2.mode.api.tile.ITileHandle;
 import net.daporkchop.fp2.mode.common.server.storage.rocksdb.RocksStorage;
+import net.daporkchop.fp2.server.FP2Metrics;
 import net.daporkchop.fp2.server.worldlistener.IWorldChangeListener;
 import net.daporkchop.fp2.server.worldlistener.WorldChangeListenerManager;
 import net.daporkchop.fp2.util.Constants;
@@ -50,9 +53,12 @@ import net.minecraft.world.WorldServer;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Map;
 import java.util.Set;
 import java.util.Spliterators;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
@@ -82,6 +88,11 @@ public abstract class AbstractFarTileProvider<POS extends IFarPos, T extends IFa
 
     protected final boolean lowResolution;
 
+    protected final MetricsScope metrics;
+    protected final Histogram metricGenerateRough;
+    protected final Histogram metricGenerateExact;
+    protected final Histogram metricGenerateScale;
+
     protected Set<POS> updatesPending = new ObjectRBTreeSet<>();
     protected long lastCompletedTick = -1L;
 
@@ -89,6 +100,11 @@ public abstract class AbstractFarTileProvider<POS extends IFarPos, T extends IFa
         this.world = world;
         this.mode = mode;
 
+        this.metrics = FP2Metrics.scopeFor(mode, world.provider.getDimension());
+        this.metricGenerateRough = this.metrics.histogram("gen.rough");
+        this.metricGenerateExact = this.metrics.histogram("gen.exact");
+        this.metricGenerateScale = this.metrics.histogram("gen.scale");
+
         this.generatorRough = this.mode().roughGenerator(world);
         this.generatorExact = this.mode().exactGenerator(world);
 
@@ -121,6 +137,7 @@ public abstract class AbstractFarTileProvider<POS extends IFarPos, T extends IFa
                         .threads(FP2Config.global().performance().terrainThreads())
                         .threadFactory(PThreadFactories.builder().daemon().minPriority().collapsingId()
                                 .name(PStrings.fastFormat("FP2 %s DIM%d Worker #%%d", mode.name(), world.provider.getDimension())).build()),
+                this.metrics.scope("scheduler"),
                 PriorityTask.approxComparator());
 
         this.trackerManager = this.createTracker();
@@ -134,6 +151,27 @@ public abstract class AbstractFarTileProvider<POS extends IFarPos, T extends IFa
 
     protected abstract boolean anyVanillaTerrainExistsAt(@NonNull POS pos);
 
+    /**
+     * @return the maximum number of levels which a single task may scale at once using {@link #scalePyramid(IFarPos, Predicate, Function)}, or {@code 1} if
+     * tiles should only ever be scaled one level at a time
+     */
+    protected int scalePyramidLevels() {
+        return 1;
+    }
+
+    /**
+     * Scales the tile at the given position along with every tile below it down to the given base, without writing any of them to storage.
+     *
+     * @param root   the position of the tile at the top of the pyramid
+     * @param isBase a function which checks whether or not the tile at a given position is part of the pyramid's base
+     * @param source a function which provides the base tile at a given position, or {@code null} if the tile is empty
+     * @return all of the tiles in the pyramid above the base, keyed by position. The tiles are allocated from {@link IFarRenderMode#tileRecycler()}, and must be
+     * released by the caller.
+     */
+    protected Map<POS, T> scalePyramid(@NonNull POS root, @NonNull Predicate<POS> isBase, @NonNull Function<POS, T> source) {
+        throw new UnsupportedOperationException(this.mode.name() + " tiles can't be scaled multiple levels at once!");
+    }
+
     protected PriorityTask<POS> taskFor(@NonNull TaskStage stage, @NonNull POS pos) {
         return PriorityTask.forStageAndPosition(stage, pos);
     }
@@ -216,5 +254,7 @@ public abstract class AbstractFarTileProvider<POS extends IFarPos, T extends IFa
 
         FP2_LOG.trace("Shutting down storage in DIM{}", this.world.provider.getDimension());
         this.storage.close();
+
+        this.metrics.close();
     }
 }
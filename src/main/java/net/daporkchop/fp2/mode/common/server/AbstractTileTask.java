@@ -35,7 +35,10 @@ import net.daporkchop.fp2.util.threading.scheduler.Scheduler;
 import net.minecraft.util.math.ChunkPos;
 import net.minecraft.util.math.Vec3i;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
@@ -64,6 +67,11 @@ public abstract class AbstractTileTask<POS extends IFarPos, T extends IFarTile>
 
     protected abstract long minimumTimestamp();
 
+    /**
+     * @return the minimum timestamp which the tile with the given handle must have in order for a task of this type to consider it up-to-date
+     */
+    protected abstract long minimumTimestampFor(@NonNull ITileHandle<POS, T> handle);
+
     protected abstract boolean allowNewGeneration();
 
     protected abstract PriorityTask<POS> taskFor(@NonNull POS pos);
@@ -78,7 +86,7 @@ public abstract class AbstractTileTask<POS extends IFarPos, T extends IFarTile>
             return this.handle;
         }
 
-        if (!(FP2_DEBUG && !FP2Config.global().debug().exactGeneration()) && this.world.anyVanillaTerrainExistsAt(this.pos)) {
+        if (this.useVanillaTerrainAt(this.pos)) {
             //there's some terrain at the given position, let's try to generate something with it
             if (this.pos.level() == 0) {
                 //the position is at detail level 0, do exact generation
@@ -122,13 +130,19 @@ public abstract class AbstractTileTask<POS extends IFarPos, T extends IFarTile>
         }
     }
 
+    protected boolean useVanillaTerrainAt(@NonNull POS pos) {
+        return !(FP2_DEBUG && !FP2Config.global().debug().exactGeneration()) && this.world.anyVanillaTerrainExistsAt(pos);
+    }
+
     protected void generateRough(long minimumTimestamp) {
         checkArg(this.pos.level() == 0 || this.world.canGenerateRough(this.pos), "cannot do rough generation at %s!", this.pos);
 
         SimpleRecycler<T> tileRecycler = this.world.mode().tileRecycler();
         T tile = tileRecycler.allocate();
         try {
+            long startTime = this.world.metricGenerateRough().nanoTime();
             this.world.generatorRough().generate(this.pos, tile);
+            this.world.metricGenerateRough().recordNanosSince(startTime);
 
             this.handle.set(ITileMetadata.ofTimestamp(minimumTimestamp), tile);
         } finally {
@@ -149,7 +163,9 @@ public abstract class AbstractTileTask<POS extends IFarPos, T extends IFarTile>
                     : this.world.blockAccess().prefetchWithoutGenerating(columns, cubesMappingFunction);
 
             //generate tile
+            long startTime = this.world.metricGenerateExact().nanoTime();
             this.world.generatorExact().generate(access, this.pos, tile);
+            this.world.metricGenerateExact().recordNanosSince(startTime);
 
             this.handle.set(ITileMetadata.ofTimestamp(minimumTimestamp), tile);
         } finally {
@@ -158,6 +174,11 @@ public abstract class AbstractTileTask<POS extends IFarPos, T extends IFarTile>
     }
 
     protected void generateScale(long minimumTimestamp) {
+        if (this.pos.level() > 1 && this.world.scalePyramidLevels() > 1) { //scale multiple levels at once
+            this.generateScalePyramid(minimumTimestamp);
+            return;
+        }
+
         //generate scale inputs
         List<ITileHandle<POS, T>> srcHandles = this.scheduler.scatterGather(this.world.scaler().inputs(this.pos).map(this::taskFor).collect(Collectors.toList()));
 
@@ -179,7 +200,9 @@ public abstract class AbstractTileTask<POS extends IFarPos, T extends IFarTile>
         T dst = tileRecycler.allocate();
         try {
             //actually do scaling
+            long startTime = this.world.metricGenerateScale().nanoTime();
             this.world.scaler().scale(srcs, dst);
+            this.world.metricGenerateScale().recordNanosSince(startTime);
 
             this.handle.set(ITileMetadata.ofTimestamp(minimumTimestamp), dst);
         } finally {
@@ -192,6 +215,75 @@ public abstract class AbstractTileTask<POS extends IFarPos, T extends IFarTile>
         }
     }
 
+    /**
+     * Scales this tile along with the tiles below it which would otherwise each be scaled by a task of their own, and writes them all in a single batch.
+     * <p>
+     * The pyramid's base consists of the tiles {@link AbstractFarTileProvider#scalePyramidLevels()} levels below this one, along with any tiles in between
+     * which are already up-to-date or which their own task wouldn't generate by scaling. The base tiles are requested from the scheduler just like regular
+     * scale inputs, so they're shared with any other tasks which need them. Once the batch has been written, tasks for any of the tiles inside the pyramid will
+     * find them up-to-date and return immediately.
+     */
+    protected void generateScalePyramid(long minimumTimestamp) {
+        int baseLevel = Math.max(this.pos.level() - this.world.scalePyramidLevels(), 0);
+        List<POS> basePositions = new ArrayList<>();
+        this.findPyramidBase(this.pos, baseLevel, basePositions);
+
+        //generate base tiles
+        List<ITileHandle<POS, T>> baseHandles = this.scheduler.scatterGather(basePositions.stream().map(this::taskFor).collect(Collectors.toList()));
+
+        if (this.handle.timestamp() >= minimumTimestamp) { //break out early if tile is already done
+            return;
+        }
+
+        SimpleRecycler<T> tileRecycler = this.world.mode().tileRecycler();
+        Map<POS, T> base = new HashMap<>();
+        Map<POS, T> tiles = null;
+        try {
+            //inflate base tiles
+            for (int i = 0; i < basePositions.size(); i++) {
+                base.put(basePositions.get(i), baseHandles.get(i).snapshot().loadTile(tileRecycler));
+            }
+
+            if (this.handle.timestamp() >= minimumTimestamp) { //break out early if tile is already done
+                return;
+            }
+
+            //actually do scaling
+            long startTime = this.world.metricGenerateScale().nanoTime();
+            tiles = this.world.scalePyramid(this.pos, base::containsKey, base::get);
+            this.world.metricGenerateScale().recordNanosSince(startTime);
+
+            this.world.storage().setAll(ITileMetadata.ofTimestamp(minimumTimestamp), tiles);
+        } finally {
+            if (tiles != null) {
+                tiles.values().forEach(tileRecycler::release);
+            }
+            for (T tile : base.values()) {
+                if (tile != null) {
+                    tileRecycler.release(tile);
+                }
+            }
+        }
+    }
+
+    protected void findPyramidBase(@NonNull POS pos, int baseLevel, @NonNull List<POS> basePositions) {
+        this.world.scaler().inputs(pos).forEach(input -> {
+            if (input.level() > baseLevel && this.scaledInPyramid(input)) {
+                this.findPyramidBase(input, baseLevel, basePositions);
+            } else {
+                basePositions.add(input);
+            }
+        });
+    }
+
+    /**
+     * @return whether or not the tile at the given position isn't up-to-date, and would be generated by scaling if it were processed by its own task
+     */
+    protected boolean scaledInPyramid(@NonNull POS pos) {
+        ITileHandle<POS, T> handle = this.world.storage().handleFor(pos);
+        return handle.timestamp() < this.minimumTimestampFor(handle) && this.useVanillaTerrainAt(pos);
+    }
+
     /**
      * @author DaPorkchop_
      */
@@ -205,6 +297,11 @@ public abstract class AbstractTileTask<POS extends IFarPos, T extends IFarTile>
             return ITileMetadata.TIMESTAMP_GENERATED;
         }
 
+        @Override
+        protected long minimumTimestampFor(@NonNull ITileHandle<POS, T> handle) {
+            return ITileMetadata.TIMESTAMP_GENERATED;
+        }
+
         @Override
         protected boolean allowNewGeneration() {
             return true;
@@ -226,8 +323,13 @@ public abstract class AbstractTileTask<POS extends IFarPos, T extends IFarTile>
         public Update(@NonNull AbstractFarTileProvider<POS, T> world, @NonNull Scheduler<PriorityTask<POS>, ITileHandle<POS, T>> scheduler, @NonNull POS pos) {
             super(world, scheduler, pos);
 
-            long minimumTimestamp = this.handle.dirtyTimestamp();
-            this.minimumTimestamp = minimumTimestamp == ITileMetadata.TIMESTAMP_BLANK ? ITileMetadata.TIMESTAMP_GENERATED : minimumTimestamp;
+            this.minimumTimestamp = this.minimumTimestampFor(this.handle);
+        }
+
+        @Override
+        protected long minimumTimestampFor(@NonNull ITileHandle<POS, T> handle) {
+            long minimumTimestamp = handle.dirtyTimestamp();
+            return minimumTimestamp == ITileMetadata.TIMESTAMP_BLANK ? ITileMetadata.TIMESTAMP_GENERATED : minimumTimestamp;
         }
 
         @Override
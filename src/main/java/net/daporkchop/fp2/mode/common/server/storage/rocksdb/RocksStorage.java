@@ -28,12 +28,16 @@ import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.Unpooled;
 import lombok.NonNull;
 import lombok.SneakyThrows;
+import net.daporkchop.fp2.common.util.metrics.Counter;
+import net.daporkchop.fp2.common.util.metrics.Histogram;
+import net.daporkchop.fp2.common.util.metrics.MetricsScope;
 import net.daporkchop.fp2.config.FP2Config;
 import net.daporkchop.fp2.mode.api.IFarPos;
 import net.daporkchop.fp2.mode.api.IFarRenderMode;
 import net.daporkchop.fp2.mode.api.IFarTile;
 import net.daporkchop.fp2.mode.api.server.storage.IFarStorage;
 import net.daporkchop.fp2.mode.api.tile.ITileHandle;
+import net.daporkchop.fp2.mode.api.tile.ITileMetadata;
 import net.daporkchop.fp2.mode.common.server.AbstractFarTileProvider;
 import net.daporkchop.lib.common.misc.file.PFiles;
 import net.daporkchop.lib.common.system.PlatformInfo;
@@ -60,6 +64,7 @@ import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.function.Consumer;
@@ -68,6 +73,7 @@ import java.util.stream.Stream;
 
 import static java.lang.Math.*;
 import static net.daporkchop.fp2.mode.api.tile.ITileMetadata.*;
+import static net.daporkchop.fp2.util.Constants.*;
 import static net.daporkchop.lib.common.util.PValidation.*;
 
 /**
@@ -166,8 +172,14 @@ public class RocksStorage<POS extends IFarPos, T extends IFarTile> implements IF
 
     protected final int version;
 
+    protected final Histogram metricReadDuration;
+    protected final Histogram metricWriteDuration;
+    protected final Counter metricBytesRead;
+    protected final Counter metricBytesWritten;
+    protected final Counter metricTilesDirtied;
+
     protected final LoadingCache<POS, ITileHandle<POS, T>> handleCache = CacheBuilder.newBuilder()
-            .concurrencyLevel(FP2Config.global().performance().terrainThreads())
+            .concurrencyLevel(FP2_TEST ? 1 : FP2Config.global().performance().terrainThreads()) //the global config is never loaded in unit tests
             .weakValues()
             .build(CacheLoader.from(pos -> new RocksTileHandle<>(pos, this)));
 
@@ -176,6 +188,13 @@ public class RocksStorage<POS extends IFarPos, T extends IFarTile> implements IF
         this.world = world;
         this.version = world.mode().storageVersion();
 
+        MetricsScope metrics = world.metrics().scope("storage");
+        this.metricReadDuration = metrics.histogram("read.duration");
+        this.metricWriteDuration = metrics.histogram("write.duration");
+        this.metricBytesRead = metrics.counter("read.bytes");
+        this.metricBytesWritten = metrics.counter("write.bytes");
+        this.metricTilesDirtied = metrics.counter("tiles.dirtied");
+
         File markerFile = new File(storageRoot, "v4");
         if (PFiles.checkDirectoryExists(storageRoot) && !PFiles.checkFileExists(markerFile)) { //it's an old storage
             PFiles.rmContentsParallel(storageRoot);
@@ -217,59 +236,143 @@ public class RocksStorage<POS extends IFarPos, T extends IFarTile> implements IF
         }
     }
 
+    /**
+     * Reads both the timestamp and dirty timestamp for each of the given keys, obtaining an exclusive lock on all of them.
+     *
+     * @param txn         the {@link Transaction} to read in
+     * @param allKeyBytes the keys
+     * @return an array containing the timestamp and dirty timestamp for each key (in that order), so twice the length of {@code allKeyBytes}
+     */
+    protected byte[][] multiGetTimestampsForUpdate(@NonNull Transaction txn, @NonNull byte[][] allKeyBytes) throws RocksDBException {
+        //double up the keys and column families to pass them to multiGetForUpdate
+        int doubleLength = multiplyExact(allKeyBytes.length, 2);
+        ColumnFamilyHandle[] handles = new ColumnFamilyHandle[doubleLength];
+        byte[][] keys = new byte[doubleLength][];
+
+        for (int i = 0; i < doubleLength; ) {
+            byte[] keyBytes = allKeyBytes[i >> 1];
+
+            handles[i] = this.cfTileTimestamp;
+            keys[i++] = keyBytes;
+            handles[i] = this.cfTileDirtyTimestamp;
+            keys[i++] = keyBytes;
+        }
+
+        final int MAX_BATCH_SIZE = 65536;
+        if (keys.length <= MAX_BATCH_SIZE) {
+            return txn.multiGetForUpdate(READ_OPTIONS, Arrays.asList(handles), keys);
+        } else { //workaround for https://github.com/facebook/rocksdb/issues/9006
+            byte[][] get = new byte[keys.length][];
+
+            for (int i = 0; i < keys.length; ) {
+                int batchSize = min(keys.length - i, MAX_BATCH_SIZE);
+
+                byte[][] tmp = txn.multiGetForUpdate(READ_OPTIONS, Arrays.asList(handles).subList(i, i + batchSize), Arrays.copyOfRange(keys, i, i + batchSize));
+                System.arraycopy(tmp, 0, get, i, batchSize);
+
+                i += batchSize;
+            }
+            return get;
+        }
+    }
+
     @Override
     @SneakyThrows(RocksDBException.class)
-    public Stream<POS> markAllDirty(@NonNull Stream<POS> positionsIn, long dirtyTimestamp) {
-        //we'll buffer all the positions, lock all of them at once, compare each one and then commit as many as needed. the logic here is identical to
-        //  RocksTileHandle#markDirty(long), but in bulk, and since RocksTileHandle doesn't cache anything internally, we don't need to get any instances
-        //  of RocksTileHandle or do any additional synchronization.
-
-        List<POS> positions = positionsIn.distinct().collect(Collectors.toList());
-        int length = positions.size();
+    public Stream<POS> setAll(@NonNull ITileMetadata metadata, @NonNull Map<POS, T> tiles) {
+        //the logic here is identical to RocksTileHandle#set(ITileMetadata, IFarTile), but all of the tiles are written in a single transaction
 
+        int length = tiles.size();
         if (length == 0) { //nothing to do!
             return Stream.empty();
         }
 
+        long startTime = this.metricWriteDuration.nanoTime();
         try (Transaction txn = this.db.beginTransaction(WRITE_OPTIONS)) {
-            //convert positions to key bytes
+            List<POS> positions = new ArrayList<>(tiles.keySet());
             byte[][] allKeyBytes = positions.stream().map(POS::toBytes).toArray(byte[][]::new);
 
-            byte[][] get;
-            {
-                //double up the keys and column families to pass them to multiGetForUpdate
-                int doubleLength = multiplyExact(length, 2);
-                ColumnFamilyHandle[] handles = new ColumnFamilyHandle[doubleLength];
-                byte[][] keys = new byte[doubleLength][];
-
-                for (int i = 0; i < doubleLength; ) {
-                    byte[] keyBytes = allKeyBytes[i >> 1];
-
-                    handles[i] = this.cfTileTimestamp;
-                    keys[i++] = keyBytes;
-                    handles[i] = this.cfTileDirtyTimestamp;
-                    keys[i++] = keyBytes;
-                }
+            //obtain an exclusive lock on both timestamp keys to ensure coherency
+            byte[][] get = this.multiGetTimestampsForUpdate(txn, allKeyBytes);
 
-                //obtain an exclusive lock on both timestamp keys to ensure coherency
+            List<POS> out = new ArrayList<>(length);
+            byte[] timestampArray = writeLongLE(metadata.timestamp());
+            ByteBuf buf = ByteBufAllocator.DEFAULT.heapBuffer();
+            try {
+                for (int i = 0; i < length; i++) {
+                    byte[] timestampBytes = get[(i << 1) + 0];
+                    long timestamp = timestampBytes != null
+                            ? readLongLE(timestampBytes) //timestamp for this tile exists, extract it from the byte array
+                            : TIMESTAMP_BLANK;
+
+                    byte[] dirtyTimestampBytes = get[(i << 1) + 1];
+                    long dirtyTimestamp = dirtyTimestampBytes != null
+                            ? readLongLE(dirtyTimestampBytes) //dirty timestamp for this tile exists, extract it from the byte array
+                            : TIMESTAMP_BLANK;
+
+                    if (metadata.timestamp() <= timestamp) { //the new timestamp isn't newer than the existing one, so we can't replace it
+                        //skip this position
+                        continue;
+                    }
 
-                final int MAX_BATCH_SIZE = 65536;
-                if (keys.length <= MAX_BATCH_SIZE) {
-                    get = txn.multiGetForUpdate(READ_OPTIONS, Arrays.asList(handles), keys);
-                } else { //workaround for https://github.com/facebook/rocksdb/issues/9006
-                    get = new byte[keys.length][];
+                    byte[] keyBytes = allKeyBytes[i];
 
-                    for (int i = 0; i < keys.length; ) {
-                        int batchSize = min(keys.length - i, MAX_BATCH_SIZE);
+                    //store new timestamp in db
+                    txn.put(this.cfTileTimestamp, keyBytes, timestampArray);
 
-                        byte[][] tmp = txn.multiGetForUpdate(READ_OPTIONS, Arrays.asList(handles).subList(i, i + batchSize), Arrays.copyOfRange(keys, i, i + batchSize));
-                        System.arraycopy(tmp, 0, get, i, batchSize);
+                    //clear dirty timestamp if needed
+                    if (metadata.timestamp() >= dirtyTimestamp) {
+                        txn.delete(this.cfTileDirtyTimestamp, keyBytes);
+                    }
 
-                        i += batchSize;
+                    //encode tile and store it in db
+                    buf.clear();
+                    if (tiles.get(positions.get(i)).write(buf)) { //the tile was empty, remove it from the db!
+                        txn.delete(this.cfTileData, keyBytes);
+                    } else { //the tile was non-empty, store it in the db
+                        txn.put(this.cfTileData, keyBytes, Arrays.copyOfRange(buf.array(), buf.arrayOffset(), buf.arrayOffset() + buf.writerIndex()));
+                        this.metricBytesWritten.add(buf.writerIndex());
                     }
+
+                    //save the position to return it as part of the result stream
+                    out.add(positions.get(i));
                 }
+            } finally {
+                buf.release();
             }
 
+            if (!out.isEmpty()) { //non-empty list indicates that at least some positions were modified, so we should commit the transaction
+                txn.commit();
+                this.metricWriteDuration.recordNanosSince(startTime);
+
+                this.listeners.forEach(listener -> listener.tilesChanged(out.stream()));
+                return out.stream();
+            } else { //no positions were modified...
+                return Stream.empty();
+            }
+        }
+    }
+
+    @Override
+    @SneakyThrows(RocksDBException.class)
+    public Stream<POS> markAllDirty(@NonNull Stream<POS> positionsIn, long dirtyTimestamp) {
+        //we'll buffer all the positions, lock all of them at once, compare each one and then commit as many as needed. the logic here is identical to
+        //  RocksTileHandle#markDirty(long), but in bulk, and since RocksTileHandle doesn't cache anything internally, we don't need to get any instances
+        //  of RocksTileHandle or do any additional synchronization.
+
+        List<POS> positions = positionsIn.distinct().collect(Collectors.toList());
+        int length = positions.size();
+
+        if (length == 0) { //nothing to do!
+            return Stream.empty();
+        }
+
+        try (Transaction txn = this.db.beginTransaction(WRITE_OPTIONS)) {
+            //convert positions to key bytes
+            byte[][] allKeyBytes = positions.stream().map(POS::toBytes).toArray(byte[][]::new);
+
+            //obtain an exclusive lock on both timestamp keys to ensure coherency
+            byte[][] get = this.multiGetTimestampsForUpdate(txn, allKeyBytes);
+
             //iterate through positions, updating the dirty timestamps as needed
             List<POS> out = new ArrayList<>(length);
             byte[] dirtyTimestampArray = new byte[Long.BYTES];
@@ -301,6 +404,7 @@ public class RocksStorage<POS extends IFarPos, T extends IFarTile> implements IF
 
             if (!out.isEmpty()) { //non-empty list indicates that at least some positions were modified, so we should commit the transaction
                 txn.commit();
+                this.metricTilesDirtied.add(out.size());
 
                 this.listeners.forEach(listener -> listener.tilesDirty(out.stream()));
                 return out.stream();
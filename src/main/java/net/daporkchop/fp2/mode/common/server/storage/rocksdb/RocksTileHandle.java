@@ -67,6 +67,7 @@ public class RocksTileHandle<POS extends IFarPos, T extends IFarTile> implements
     @Override
     @SneakyThrows(RocksDBException.class)
     public ITileSnapshot<POS, T> snapshot() {
+        long startTime = this.storage.metricReadDuration.nanoTime();
         byte[] keyBytes = this.pos.toBytes();
 
         //read timestamp and tile bytes using multiGet to ensure coherency
@@ -77,6 +78,11 @@ public class RocksTileHandle<POS extends IFarPos, T extends IFarTile> implements
         byte[] timestampBytes = valueBytes.get(0);
         byte[] tileBytes = valueBytes.get(1);
 
+        this.storage.metricReadDuration.recordNanosSince(startTime);
+        if (tileBytes != null) {
+            this.storage.metricBytesRead.add(tileBytes.length);
+        }
+
         return timestampBytes != null
                 ? new TileSnapshot<>(this.pos, readLongLE(timestampBytes), tileBytes)
                 : null;
@@ -85,6 +91,7 @@ public class RocksTileHandle<POS extends IFarPos, T extends IFarTile> implements
     @Override
     @SneakyThrows(RocksDBException.class)
     public boolean set(@NonNull ITileMetadata metadata, @NonNull T tile) {
+        long startTime = this.storage.metricWriteDuration.nanoTime();
         try (Transaction txn = this.storage.db.beginTransaction(WRITE_OPTIONS)) {
             byte[] keyBytes = this.pos.toBytes();
 
@@ -123,6 +130,7 @@ public class RocksTileHandle<POS extends IFarPos, T extends IFarTile> implements
                     txn.delete(this.storage.cfTileData, keyBytes);
                 } else { //the tile was non-empty, store it in the db
                     txn.put(this.storage.cfTileData, keyBytes, Arrays.copyOfRange(buf.array(), buf.arrayOffset(), buf.arrayOffset() + buf.writerIndex()));
+                    this.storage.metricBytesWritten.add(buf.writerIndex());
                 }
             } finally {
                 buf.release();
@@ -130,6 +138,7 @@ public class RocksTileHandle<POS extends IFarPos, T extends IFarTile> implements
 
             //commit transaction and report that a change was made
             txn.commit();
+            this.storage.metricWriteDuration.recordNanosSince(startTime);
 
             this.storage.listeners.forEach(listener -> listener.tilesChanged(Stream.of(this.pos)));
             return true;
@@ -177,6 +186,7 @@ public class RocksTileHandle<POS extends IFarPos, T extends IFarTile> implements
 
             //commit transaction and report that a change was made
             txn.commit();
+            this.storage.metricTilesDirtied.inc();
 
             this.storage.listeners.forEach(listener -> listener.tilesDirty(Stream.of(this.pos)));
             return true;
@@ -76,6 +76,9 @@ public abstract class AbstractTracker<POS extends IFarPos, T extends IFarTile, S
     protected final Set<POS> waitingPositions = ConcurrentHashMap.newKeySet();
     protected final Queue<POS> doneWaitingPositions = new ConcurrentLinkedQueue<>();
 
+    //only accessed from the server thread
+    protected final MotionEstimator motion = new MotionEstimator();
+
     //these are using a single object reference instead of flattened fields to allow the value to be replaced atomically. to ensure coherent access to the values,
     // readers must take care never to dereference the fields more than once.
     protected volatile STATE lastState;
@@ -100,6 +103,8 @@ public abstract class AbstractTracker<POS extends IFarPos, T extends IFarTile, S
     @CalledFromServerThread
     @Override
     public void update() {
+        this.motion.update(this.context.player().fp2_IFarPlayer_position());
+
         STATE lastState = this.lastState;
         STATE nextState = this.currentState(this.context);
         if (lastState == null || this.shouldTriggerUpdate(lastState, nextState)) {
@@ -152,9 +157,26 @@ public abstract class AbstractTracker<POS extends IFarPos, T extends IFarTile, S
     }
 
     protected synchronized void updateState(STATE lastState, @NonNull STATE nextState, @NonNull SimpleSet<POS> untrackingPositions) {
-        long startTime = System.nanoTime();
+        long startTime = this.manager.metricUpdateDuration.nanoTime();
+        int queuedBefore = this.queuedPositions.size();
+
+        if (lastState != null && this.shouldReset(lastState, nextState)) { //the old and new states are unrelated, so diffing them would only waste time
+            //throw away the old queue instead of filtering it, and unload every tile which isn't visible any more
+            this.queuedPositions.clear();
+            this.loadedPositions.forEach(pos -> {
+                if (!this.isVisible(nextState, pos)) {
+                    untrackingPositions.add(pos);
+                }
+            });
+            untrackingPositions.forEach(this.loadedPositions::remove);
 
-        if (lastState != null) { //if lastState exists, we can diff the positions (which is faster than iterating over all of them)
+            //queue every visible position which isn't already loaded
+            this.allPositions(nextState, pos -> {
+                if (!this.loadedPositions.contains(pos)) {
+                    this.queuedPositions.add(pos);
+                }
+            });
+        } else if (lastState != null) { //if lastState exists, we can diff the positions (which is faster than iterating over all of them)
             //unqueue all positions which are no longer visible.
             //  this is O(n), whereas removing them during the deltaPositions 'removed' callback would be O(n*m) (where n=queue size, m=number of positions in render
             //  distance). the savings from this are significant - when flying around with 1level@400cutoff, tracker updates are reduced from 5000-10000ms to about 40-50ms.
@@ -176,7 +198,11 @@ public abstract class AbstractTracker<POS extends IFarPos, T extends IFarTile, S
         //sort queue
         this.queuedPositions.sort(this.comparatorFor(nextState));
 
-        this.lastUpdateTime = System.nanoTime() - startTime;
+        this.manager.metricTilesQueued.add(this.queuedPositions.size() - queuedBefore);
+
+        long duration = this.manager.metricUpdateDuration.nanoTime() - startTime;
+        this.manager.metricUpdateDuration.record(duration);
+        this.lastUpdateTime = duration;
     }
 
     /**
@@ -202,14 +228,13 @@ public abstract class AbstractTracker<POS extends IFarPos, T extends IFarTile, S
      */
     protected synchronized void clearWaiting() {
         //move completed positions from waitingPositions to loadedPositions
-        for (POS pos; (pos = this.doneWaitingPositions.poll()) != null; ) {
-            this.waitingPositions.remove(pos);
-            this.loadedPositions.add(pos);
-        }
+        this.drainDoneWaiting();
 
         //remove the rest of the waiting positions, stop tracking them and re-add them to the load queue
         List<POS> waitingPositions = new ArrayList<>(this.waitingPositions);
         this.waitingPositions.clear();
+        this.manager.metricTilesWaiting.add(-waitingPositions.size());
+        this.manager.metricTilesQueued.add(waitingPositions.size());
 
         //stop tracking all positions in the set
         waitingPositions.forEach(pos -> this.manager.stopTracking(this, pos));
@@ -241,10 +266,7 @@ public abstract class AbstractTracker<POS extends IFarPos, T extends IFarTile, S
 
             try {
                 //move completed positions from waitingPositions to loadedPositions
-                for (POS pos; (pos = this.doneWaitingPositions.poll()) != null; ) {
-                    this.waitingPositions.remove(pos);
-                    this.loadedPositions.add(pos);
-                }
+                this.drainDoneWaiting();
 
                 if (this.queuedPositions.isEmpty()) { //the queue is empty, so there's nothing left to do
                     return;
@@ -260,17 +282,33 @@ public abstract class AbstractTracker<POS extends IFarPos, T extends IFarTile, S
                     //buffer the positions we want to add in a list (we don't want to being tracking them while holding the monitor since that could deadlock)
                     positions.add(pos);
                 }
+                this.manager.metricTilesQueued.add(-positions.size());
             } finally {
                 PUnsafe.monitorExit(this);
             }
 
             //begin tracking all of the added positions
             this.waitingPositions.addAll(positions);
+            this.manager.metricTilesWaiting.add(positions.size());
             positions.forEach(pos -> this.manager.beginTracking(this, pos));
             positions.clear();
         } while (!this.doneWaitingPositions.isEmpty() || this.waitingPositions.size() < targetLoadQueueSize);
     }
 
+    /**
+     * Moves all positions which are done waiting from {@link #waitingPositions} to {@link #loadedPositions}.
+     * <p>
+     * Must be called while holding this tracker's monitor.
+     */
+    protected void drainDoneWaiting() {
+        for (POS pos; (pos = this.doneWaitingPositions.poll()) != null; ) {
+            if (this.waitingPositions.remove(pos)) {
+                this.manager.metricTilesWaiting.dec();
+            }
+            this.loadedPositions.add(pos);
+        }
+    }
+
     /**
      * Notifies the tracker that the tile data at the given position has been modified.
      * <p>
@@ -282,6 +320,7 @@ public abstract class AbstractTracker<POS extends IFarPos, T extends IFarTile, S
     protected void notifyChanged(@NonNull ITileSnapshot<POS, T> snapshot) {
         try {
             this.context.sendTile(uncheckedCast(snapshot));
+            this.manager.metricTilesSent.inc();
 
             POS pos = snapshot.pos();
             if (this.waitingPositions.contains(pos)) { //this tile has been initially loaded
@@ -307,6 +346,7 @@ public abstract class AbstractTracker<POS extends IFarPos, T extends IFarTile, S
     @CalledFromAnyThread
     protected void notifyUnloaded(@NonNull POS pos) {
         this.context.sendTileUnload(pos);
+        this.manager.metricTilesUnloaded.inc();
     }
 
     @CalledFromServerThread
@@ -320,6 +360,7 @@ public abstract class AbstractTracker<POS extends IFarPos, T extends IFarTile, S
 
         //tell the client to unload all tiles
         this.context.sendMultiTileUnload(this.loadedPositions);
+        this.manager.metricTilesUnloaded.add(this.loadedPositions.count());
 
         //untrack all positions
         //  (using temporary set to avoid CME)
@@ -330,6 +371,11 @@ public abstract class AbstractTracker<POS extends IFarPos, T extends IFarTile, S
             tmp.forEach(pos -> this.manager.stopTracking(this, pos));
         }
 
+        //remove this tracker's contribution to the aggregated metrics
+        this.manager.metricTrackers.dec();
+        this.manager.metricTilesQueued.add(-this.queuedPositions.size());
+        this.manager.metricTilesWaiting.add(-this.waitingPositions.size());
+
         //release everything
         this.queuedPositions.close();
         this.loadedPositions.close();
@@ -369,6 +415,16 @@ public abstract class AbstractTracker<POS extends IFarPos, T extends IFarTile, S
      */
     protected abstract boolean shouldTriggerUpdate(@NonNull STATE oldState, @NonNull STATE newState);
 
+    /**
+     * Checks whether or not the two given {@link STATE}s are unrelated to each other (e.g. because the player teleported), in which case the tracking state
+     * should be rebuilt from scratch instead of being updated incrementally.
+     *
+     * @param oldState the old {@link STATE}
+     * @param newState the new {@link STATE}
+     * @return whether or not the tracking state should be reset
+     */
+    protected abstract boolean shouldReset(@NonNull STATE oldState, @NonNull STATE newState);
+
     /**
      * Enumerates every tile position visible in the given {@link STATE}.
      *
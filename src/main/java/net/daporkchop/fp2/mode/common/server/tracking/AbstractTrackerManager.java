@@ -24,6 +24,10 @@ import lombok.Getter;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.ToString;
+import net.daporkchop.fp2.common.util.metrics.Counter;
+import net.daporkchop.fp2.common.util.metrics.Gauge;
+import net.daporkchop.fp2.common.util.metrics.Histogram;
+import net.daporkchop.fp2.common.util.metrics.MetricsScope;
 import net.daporkchop.fp2.config.FP2Config;
 import net.daporkchop.fp2.mode.api.IFarPos;
 import net.daporkchop.fp2.mode.api.IFarTile;
@@ -73,9 +77,26 @@ public abstract class AbstractTrackerManager<POS extends IFarPos, T extends IFar
 
     protected final int generationThreads = FP2Config.global().performance().terrainThreads();
 
+    //these are aggregated over all of the trackers belonging to this manager
+    protected final Gauge metricTrackers;
+    protected final Gauge metricTilesQueued;
+    protected final Gauge metricTilesWaiting;
+    protected final Counter metricTilesSent;
+    protected final Counter metricTilesUnloaded;
+    protected final Histogram metricUpdateDuration;
+
     public AbstractTrackerManager(@NonNull IFarTileProvider<POS, T> tileProvider) {
         this.tileProvider = tileProvider;
 
+        MetricsScope metrics = tileProvider.metrics().scope("tracker");
+        this.metricTrackers = metrics.gauge("trackers");
+        this.metricTilesQueued = metrics.gauge("tiles.queued");
+        this.metricTilesWaiting = metrics.gauge("tiles.waiting");
+        this.metricTilesSent = metrics.counter("tiles.sent");
+        this.metricTilesUnloaded = metrics.counter("tiles.unloaded");
+        this.metricUpdateDuration = metrics.histogram("update.duration");
+        metrics.gauge("tiles.tracked", this.entries::size);
+
         this.scheduler = new NoFutureScheduler<>(AbstractTracker::doUpdate,
                 ThreadingHelper.workerGroupBuilder()
                         .world(tileProvider.world())
@@ -100,6 +121,7 @@ public abstract class AbstractTrackerManager<POS extends IFarPos, T extends IFar
         return this.trackers.compute(context, (ctx, tracker) -> {
             checkArg(tracker == null, "tracker for %s already exists!", ctx);
 
+            this.metricTrackers.inc();
             return this.createTrackerFor(ctx);
         });
     }
@@ -0,0 +1,109 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package net.daporkchop.fp2.mode.common.server.tracking;
+
+import lombok.Getter;
+import lombok.NonNull;
+import net.daporkchop.lib.math.vector.Vec3d;
+
+import static net.daporkchop.fp2.util.Constants.*;
+import static net.daporkchop.fp2.util.math.MathUtil.*;
+
+/**
+ * Estimates a player's velocity from the positions observed by successive tracker updates.
+ * <p>
+ * Not thread-safe, should only be accessed from the server thread.
+ *
+ * @author DaPorkchop_
+ */
+public class MotionEstimator {
+    /**
+     * The weight given to the most recent sample when smoothing the velocity estimate.
+     */
+    public static final double SMOOTHING_FACTOR = 0.25d;
+
+    /**
+     * The squared distance a player must move between two samples in order for the movement to be treated as a teleport rather than regular motion.
+     * <p>
+     * The default value of {@code (T_VOXELS * 8)²} is well beyond the distance that can be covered in a single tick by flying with an elytra.
+     */
+    public static final double TELEPORT_DISTANCE_SQUARED = sq(T_VOXELS << 3);
+
+    @Getter
+    protected double velocityX;
+    @Getter
+    protected double velocityY;
+    @Getter
+    protected double velocityZ;
+
+    /**
+     * The number of teleports which have been observed so far.
+     */
+    @Getter
+    protected int teleports;
+
+    protected double lastX;
+    protected double lastY;
+    protected double lastZ;
+    protected boolean hasSample;
+
+    /**
+     * Updates this estimate with the player's current position.
+     *
+     * @see #update(double, double, double)
+     */
+    public MotionEstimator update(@NonNull Vec3d pos) {
+        return this.update(pos.x(), pos.y(), pos.z());
+    }
+
+    /**
+     * Updates this estimate with the player's current position.
+     * <p>
+     * Should be called once per tick.
+     *
+     * @param x the player's X coordinate
+     * @param y the player's Y coordinate
+     * @param z the player's Z coordinate
+     * @return this instance
+     */
+    public MotionEstimator update(double x, double y, double z) {
+        if (this.hasSample) {
+            double dx = x - this.lastX;
+            double dy = y - this.lastY;
+            double dz = z - this.lastZ;
+
+            if (sq(dx) + sq(dy) + sq(dz) >= TELEPORT_DISTANCE_SQUARED) { //the player teleported, forget everything we know about their motion
+                this.velocityX = this.velocityY = this.velocityZ = 0.0d;
+                this.teleports++;
+            } else { //exponential moving average
+                this.velocityX += (dx - this.velocityX) * SMOOTHING_FACTOR;
+                this.velocityY += (dy - this.velocityY) * SMOOTHING_FACTOR;
+                this.velocityZ += (dz - this.velocityZ) * SMOOTHING_FACTOR;
+            }
+        }
+
+        this.lastX = x;
+        this.lastY = y;
+        this.lastZ = z;
+        this.hasSample = true;
+        return this;
+    }
+}
@@ -37,20 +37,82 @@ import static net.daporkchop.fp2.util.math.MathUtil.*;
  */
 @Data
 public class TrackingState {
-    public static TrackingState createDefault(@NonNull IFarServerContext<?, ?> context) {
+    /**
+     * The number of ticks to look ahead along the player's estimated velocity when picking the center of the tracked volume.
+     */
+    public static final double VOLUME_LOOKAHEAD_TICKS = 20.0d;
+
+    /**
+     * The number of ticks to look ahead along the player's estimated velocity when prioritizing tiles to load.
+     */
+    public static final double PRIORITY_LOOKAHEAD_TICKS = 40.0d;
+
+    public static TrackingState createDefault(@NonNull IFarServerContext<?, ?> context, @NonNull MotionEstimator motion) {
         Vec3d pos = context.player().fp2_IFarPlayer_position();
         FP2Config config = context.config();
 
-        return new TrackingState(pos.x(), pos.y(), pos.z(),
+        return create(pos.x(), pos.y(), pos.z(), motion,
                 asrRound(config.cutoffDistance(), T_SHIFT),
                 FP2_DEBUG && !config.debug().levelZeroTracking() ? 1 : 0,
                 config.maxLevels());
     }
 
+    /**
+     * Creates a new {@link TrackingState} for a player at the given position, biased towards the direction the player is moving in.
+     * <p>
+     * The look-ahead is bounded so that the player is always well inside the tracked volume: the volume center is offset by at most a quarter of the cutoff
+     * distance, and the priority center by at most half of it.
+     *
+     * @param x        the player's X coordinate
+     * @param y        the player's Y coordinate
+     * @param z        the player's Z coordinate
+     * @param motion   the {@link MotionEstimator} for the player's motion
+     * @param cutoff   the cutoff distance, in tiles
+     * @param minLevel the minimum tracked level (inclusive)
+     * @param maxLevel the maximum tracked level (exclusive)
+     * @return the new {@link TrackingState}
+     */
+    public static TrackingState create(double x, double y, double z, @NonNull MotionEstimator motion, int cutoff, int minLevel, int maxLevel) {
+        double vx = motion.velocityX();
+        double vy = motion.velocityY();
+        double vz = motion.velocityZ();
+        double speed = Math.sqrt(sq(vx) + sq(vy) + sq(vz));
+
+        double cutoffBlocks = (double) cutoff * T_VOXELS;
+        double volumeScale = lookaheadScale(speed, VOLUME_LOOKAHEAD_TICKS, cutoffBlocks * 0.25d);
+        double priorityScale = lookaheadScale(speed, PRIORITY_LOOKAHEAD_TICKS, cutoffBlocks * 0.5d);
+
+        return new TrackingState(x, y, z,
+                x + vx * volumeScale, y + vy * volumeScale, z + vz * volumeScale,
+                x + vx * priorityScale, y + vy * priorityScale, z + vz * priorityScale,
+                motion.teleports(),
+                cutoff, minLevel, maxLevel);
+    }
+
+    /**
+     * Computes the factor to multiply the velocity by in order to look ahead the given number of ticks, without going further than the given distance.
+     */
+    protected static double lookaheadScale(double speed, double ticks, double maxDistance) {
+        return speed * ticks > maxDistance ? maxDistance / speed : ticks;
+    }
+
+    //the player's actual position
     protected final double x;
     protected final double y;
     protected final double z;
 
+    //the center of the tracked volume
+    protected final double volumeX;
+    protected final double volumeY;
+    protected final double volumeZ;
+
+    //the point which tiles are prioritized by their distance from
+    protected final double priorityX;
+    protected final double priorityY;
+    protected final double priorityZ;
+
+    protected final int teleports;
+
     protected final int cutoff;
 
     protected final int minLevel;
@@ -65,4 +127,16 @@ public class TrackingState {
     public boolean hasLevel(int level) {
         return level >= this.minLevel && level < this.maxLevel;
     }
+
+    /**
+     * Checks whether or not the player has teleported since the given state was created.
+     * <p>
+     * If so, the two states' tracked volumes are unrelated to each other, and there is no point in diffing them.
+     *
+     * @param oldState the old {@link TrackingState}
+     * @return whether or not the player has teleported
+     */
+    public boolean teleportedSince(@NonNull TrackingState oldState) {
+        return this.teleports != oldState.teleports;
+    }
 }
@@ -0,0 +1,201 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package net.daporkchop.fp2.mode.common.util;
+
+import io.netty.buffer.ByteBuf;
+import lombok.NonNull;
+import lombok.experimental.UtilityClass;
+import net.daporkchop.fp2.mode.api.IFarDirectPosAccess;
+import net.daporkchop.fp2.mode.api.IFarPos;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+import static net.daporkchop.fp2.util.Constants.*;
+import static net.daporkchop.lib.common.util.PValidation.*;
+
+/**
+ * Compact binary encoding for large sets of tile positions, such as those sent in bulk packets.
+ * <p>
+ * Positions are grouped into cells of 64 tiles on the same level ({@code 8²} tiles for 2D positions, {@code 4³} tiles for 3D positions). Each non-empty cell
+ * is written as the difference between its coordinates and those of the previous cell, followed by a bitmask indicating which tiles in the cell are present:
+ * <pre>{@code
+ * varint cellCount;
+ * struct Cell {
+ *     varint levelDelta;         //cells are sorted by level; if non-zero, the previous cell's coordinates are reset to 0
+ *     zigzag varint axisDelta[axisCount];
+ *     u8 tag;                    //0: every tile in the cell is present, 1-7: the number of tiles present, 8: a raw bitmask follows
+ *     u8 index[tag];             //only if tag is in [1, 7]: the index of each present tile in the cell
+ *     u64 mask;                  //only if tag is 8
+ * } cells[cellCount];
+ * }</pre>
+ * Sets of positions covering a solid volume, which is what tracker updates generally produce, therefore only take a few bytes per 64 tiles.
+ *
+ * @author DaPorkchop_
+ */
+@UtilityClass
+public class PosSetEncoding {
+    /**
+     * log2 of the number of tiles in a cell.
+     */
+    private static final int CELL_BITS = 6;
+
+    private static final int TAG_FULL = 0;
+    private static final int MAX_SPARSE_COUNT = 7;
+    private static final int TAG_RAW = MAX_SPARSE_COUNT + 1;
+
+    private static int axisBits(int axisCount) {
+        checkArg(axisCount > 0 && CELL_BITS % axisCount == 0, "unsupported axis count: %d", axisCount);
+        return CELL_BITS / axisCount;
+    }
+
+    private static int compareKeys(int[] a, int[] b) {
+        for (int i = 0; i < a.length; i++) {
+            int d = Integer.compare(a[i], b[i]);
+            if (d != 0) {
+                return d;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Encodes the given positions.
+     * <p>
+     * Duplicate positions are only encoded once.
+     *
+     * @param access    the {@link IFarDirectPosAccess} for the position type
+     * @param positions the positions to encode
+     * @param dst       the {@link ByteBuf} to write the encoded positions to
+     */
+    public static <POS extends IFarPos> void write(@NonNull IFarDirectPosAccess<POS> access, @NonNull Iterable<? extends POS> positions, @NonNull ByteBuf dst) {
+        int axisCount = access.axisCount();
+        int axisBits = axisBits(axisCount);
+        int axisMask = (1 << axisBits) - 1;
+
+        //group the positions into cells, sorted by level and then by cell coordinates. keys are { level, cellAxis0, ..., cellAxisN }
+        NavigableMap<int[], long[]> cells = new TreeMap<>(PosSetEncoding::compareKeys);
+        for (POS pos : positions) {
+            int[] key = new int[1 + axisCount];
+            key[0] = pos.level();
+
+            int index = 0;
+            for (int axis = 0; axis < axisCount; axis++) {
+                int coord = access.getAxisHeap(pos, axis);
+                key[1 + axis] = coord >> axisBits;
+                index |= (coord & axisMask) << (axis * axisBits);
+            }
+
+            cells.computeIfAbsent(key, k -> new long[1])[0] |= 1L << index;
+        }
+
+        writeVarInt(dst, cells.size());
+
+        int[] prev = new int[1 + axisCount];
+        for (Map.Entry<int[], long[]> entry : cells.entrySet()) {
+            int[] key = entry.getKey();
+
+            writeVarInt(dst, key[0] - prev[0]);
+            if (key[0] != prev[0]) { //the level changed, start over from the origin
+                Arrays.fill(prev, 0);
+                prev[0] = key[0];
+            }
+
+            for (int i = 1; i <= axisCount; i++) {
+                writeVarIntZigZag(dst, key[i] - prev[i]);
+                prev[i] = key[i];
+            }
+
+            writeMask(dst, entry.getValue()[0]);
+        }
+    }
+
+    private static void writeMask(@NonNull ByteBuf dst, long mask) {
+        int count = Long.bitCount(mask);
+        if (count == Long.SIZE) {
+            dst.writeByte(TAG_FULL);
+        } else if (count <= MAX_SPARSE_COUNT) {
+            dst.writeByte(count);
+            for (; mask != 0L; mask &= mask - 1L) {
+                dst.writeByte(Long.numberOfTrailingZeros(mask));
+            }
+        } else {
+            dst.writeByte(TAG_RAW).writeLong(mask);
+        }
+    }
+
+    /**
+     * Decodes positions which were encoded using {@link #write(IFarDirectPosAccess, Iterable, ByteBuf)}.
+     * <p>
+     * Positions are decoded in ascending order of level.
+     *
+     * @param access   the {@link IFarDirectPosAccess} for the position type
+     * @param src      the {@link ByteBuf} to read the encoded positions from
+     * @param callback a callback function which will be called once for every decoded position
+     */
+    public static <POS extends IFarPos> void read(@NonNull IFarDirectPosAccess<POS> access, @NonNull ByteBuf src, @NonNull Consumer<? super POS> callback) {
+        int axisCount = access.axisCount();
+        int axisBits = axisBits(axisCount);
+        int axisMask = (1 << axisBits) - 1;
+
+        int[] key = new int[1 + axisCount];
+        int[] axes = new int[axisCount];
+        for (int cell = 0, cellCount = readVarInt(src); cell < cellCount; cell++) {
+            int levelDelta = readVarInt(src);
+            if (levelDelta != 0) { //the level changed, start over from the origin
+                key[0] += levelDelta;
+                Arrays.fill(key, 1, key.length, 0);
+            }
+
+            for (int i = 1; i <= axisCount; i++) {
+                key[i] += readVarIntZigZag(src);
+            }
+
+            for (long mask = readMask(src); mask != 0L; mask &= mask - 1L) {
+                int index = Long.numberOfTrailingZeros(mask);
+                for (int axis = 0; axis < axisCount; axis++) {
+                    axes[axis] = (key[1 + axis] << axisBits) | ((index >>> (axis * axisBits)) & axisMask);
+                }
+                callback.accept(access.fromAxes(key[0], axes));
+            }
+        }
+    }
+
+    private static long readMask(@NonNull ByteBuf src) {
+        int tag = src.readUnsignedByte();
+        if (tag == TAG_FULL) {
+            return -1L;
+        } else if (tag <= MAX_SPARSE_COUNT) {
+            long mask = 0L;
+            for (int i = 0; i < tag; i++) {
+                mask |= 1L << checkIndex(Long.SIZE, src.readUnsignedByte());
+            }
+            return mask;
+        } else if (tag == TAG_RAW) {
+            return src.readLong();
+        } else {
+            throw new IllegalArgumentException("invalid cell tag: " + tag);
+        }
+    }
+}
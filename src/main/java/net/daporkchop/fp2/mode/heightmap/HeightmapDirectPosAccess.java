@@ -123,6 +123,12 @@ public class HeightmapDirectPosAccess implements IFarDirectPosAccess<HeightmapPo
         return PUnsafe.getInt(addr + (long) checkIndex(2, axis) * INT_SIZE);
     }
 
+    @Override
+    public HeightmapPos fromAxes(int level, @NonNull int[] axes) {
+        checkArg(axes.length == 2, "expected 2 axes, but found %d", axes.length);
+        return new HeightmapPos(level, axes[0], axes[1]);
+    }
+
     @Override
     public boolean equalsPos(long addr1, long addr2) {
         return _x(addr1) == _x(addr2)
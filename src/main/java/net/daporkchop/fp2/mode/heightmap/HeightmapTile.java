@@ -175,6 +175,15 @@ public class HeightmapTile implements IFarTile {
         writeLayer(this.addr + layerOffset(x, z, layer), data);
     }
 
+    public void copyLayerTo(int srcX, int srcZ, int layer, @NonNull HeightmapTile dst, int dstX, int dstZ) {
+        //set layer flag
+        long entry = dst.addr + entryOffset(dstX, dstZ);
+        PUnsafe.putInt(entry, PUnsafe.getInt(entry) | layerFlag(layer));
+
+        //copy the encoded layer data as-is
+        PUnsafe.copyMemory(this.addr + layerOffset(srcX, srcZ, layer), dst.addr + layerOffset(dstX, dstZ, layer), LAYER_SIZE_BYTES);
+    }
+
     public void unsetLayer(int x, int z, int layer) {
         long entry = this.addr + entryOffset(x, z);
         int layer_flags = PUnsafe.getInt(entry);
@@ -22,7 +22,9 @@ package net.daporkchop.fp2.mode.heightmap.client;
 
 import lombok.NonNull;
 import net.daporkchop.fp2.client.texture.TextureUVs;
+import net.daporkchop.fp2.config.FP2Config;
 import net.daporkchop.fp2.gl.attribute.AttributeWriter;
+import net.daporkchop.fp2.gl.draw.index.IndexWriter;
 import net.daporkchop.fp2.mode.common.client.bake.IRenderBaker;
 import net.daporkchop.fp2.mode.common.client.bake.indexed.IndexedBakeOutput;
 import net.daporkchop.fp2.mode.heightmap.HeightmapData;
@@ -31,12 +33,19 @@ import net.daporkchop.fp2.mode.heightmap.HeightmapTile;
 import net.daporkchop.fp2.mode.heightmap.client.struct.HeightmapGlobalAttributes;
 import net.daporkchop.fp2.mode.heightmap.client.struct.HeightmapLocalAttributes;
 import net.daporkchop.fp2.util.SingleBiomeBlockAccess;
+import net.daporkchop.lib.common.pool.array.ArrayAllocator;
+import net.daporkchop.lib.common.reference.ReferenceStrength;
+import net.daporkchop.lib.common.reference.cache.Cached;
+import net.minecraft.block.state.IBlockState;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.biome.Biome;
 
 import java.util.Arrays;
 import java.util.BitSet;
 import java.util.stream.Stream;
 
+import static java.lang.Math.*;
+import static net.daporkchop.fp2.mode.common.client.RenderConstants.*;
 import static net.daporkchop.fp2.mode.heightmap.HeightmapConstants.*;
 import static net.daporkchop.fp2.mode.heightmap.HeightmapTile.*;
 import static net.daporkchop.fp2.util.BlockType.*;
@@ -48,10 +57,25 @@ import static net.daporkchop.fp2.util.Constants.*;
  * @author DaPorkchop_
  */
 public class HeightmapBaker implements IRenderBaker<HeightmapPos, HeightmapTile, IndexedBakeOutput<HeightmapGlobalAttributes, HeightmapLocalAttributes>> {
-    protected static int vertexMapIndex(int x, int z, int layer) {
+    //scratch objects are re-used between bakes, so that baking a tile doesn't allocate any garbage per vertex
+    protected static final Cached<BakeContext> CONTEXT = Cached.threadLocal(BakeContext::new, ReferenceStrength.WEAK);
+
+    public static int vertexMapIndex(int x, int z, int layer) {
         return (x * T_VERTS + z) * MAX_LAYERS + layer;
     }
 
+    public static int vertexMapX(int index) {
+        return index / (T_VERTS * MAX_LAYERS);
+    }
+
+    public static int vertexMapZ(int index) {
+        return (index / MAX_LAYERS) % T_VERTS;
+    }
+
+    public static int vertexMapLayer(int index) {
+        return index % MAX_LAYERS;
+    }
+
     @Override
     public Stream<HeightmapPos> bakeOutputs(@NonNull HeightmapPos srcPos) {
         int x = srcPos.x();
@@ -90,67 +114,109 @@ public class HeightmapBaker implements IRenderBaker<HeightmapPos, HeightmapTile,
             return;
         }
 
+        final BakeContext ctx = CONTEXT.get();
+
         //write globals
-        output.globals().put(new HeightmapGlobalAttributes(pos.x(), pos.z(), pos.level()));
+        HeightmapGlobalAttributes globals = ctx.globals;
+        globals.tilePosX = pos.x();
+        globals.tilePosZ = pos.z();
+        globals.tilePosLevel = pos.level();
+        output.globals().put(globals);
 
         final int level = pos.level();
         final int blockX = pos.blockX();
         final int blockZ = pos.blockZ();
 
-        final BlockPos.MutableBlockPos blockPos = new BlockPos.MutableBlockPos();
-        final SingleBiomeBlockAccess biomeAccess = new SingleBiomeBlockAccess();
-        final HeightmapData data = new HeightmapData();
-        final HeightmapLocalAttributes attributes = new HeightmapLocalAttributes();
+        final BlockPos.MutableBlockPos blockPos = ctx.blockPos;
+        final SingleBiomeBlockAccess biomeAccess = ctx.biomeAccess;
+        final HeightmapData data = ctx.vertexData;
+        final HeightmapLocalAttributes attributes = ctx.attributes;
 
-        final int[] map = new int[T_VERTS * T_VERTS * MAX_LAYERS];
-        Arrays.fill(map, -1);
-
-        //write vertices and build index
-        for (int i = 0; i < 4; i++) {
-            HeightmapTile src = srcs[i];
-            if (src == null) {
-                continue;
-            }
+        final AttributeWriter<HeightmapLocalAttributes> verts = output.verts();
+        final IndexWriter[] indices = output.indices();
 
-            int maxX = CONNECTION_INTERSECTION_AREAS[i * 2 + 0];
-            int maxZ = CONNECTION_INTERSECTION_AREAS[i * 2 + 1];
+        ArrayAllocator<int[]> alloc = ALLOC_INT.get();
+        final int[] map = alloc.atLeast(T_VERTS * T_VERTS * MAX_LAYERS);
+        Arrays.fill(map, 0, T_VERTS * T_VERTS * MAX_LAYERS, -1);
 
-            for (int dx = 0; dx < maxX; dx++) {
-                for (int dz = 0; dz < maxZ; dz++) {
-                    for (int layerFlags = src._getLayerFlags(dx, dz), layer = 0; layer < MAX_LAYERS; layer++) {
-                        if ((layerFlags & layerFlag(layer)) == 0) { //layer is unset
-                            continue;
-                        }
+        try {
+            this.buildMesh(srcs, FP2Config.global().performance().heightmapAdaptiveMeshing(), new MeshConsumer() {
+                @Override
+                public void quad(int renderType, int oppositeCorner, int c0, int c1, int provoking) {
+                    indices[renderType].appendQuad(this.vertex(oppositeCorner), this.vertex(c0), this.vertex(c1), this.vertex(provoking));
+                }
 
-                        int x = dx + (((i >> 1) & 1) << T_SHIFT);
-                        int z = dz + ((i & 1) << T_SHIFT);
+                @Override
+                public void triangle(int renderType, int a, int b, int provoking) {
+                    indices[renderType].appendTriangleAsQuad(this.vertex(a), this.vertex(b), this.vertex(provoking));
+                }
 
-                        map[vertexMapIndex(x, z, layer)] = this.writeVertex(blockX, blockZ, level, src, x, z, layer, output.verts(), blockPos, biomeAccess, data, attributes);
+                private int vertex(int index) {
+                    int vertex = map[index];
+                    if (vertex < 0) { //vertices are only written once they're actually used
+                        int x = vertexMapX(index);
+                        int z = vertexMapZ(index);
+                        map[index] = vertex = HeightmapBaker.this.writeVertex(blockX, blockZ, level, srcs[((x >> T_SHIFT) << 1) | (z >> T_SHIFT)], x, z, vertexMapLayer(index), verts, blockPos, biomeAccess, data, attributes);
                     }
+                    return vertex;
                 }
+            });
+        } finally {
+            alloc.release(map);
+        }
+    }
+
+    /**
+     * Generates the geometry for the given source tiles without writing any vertex data.
+     * <p>
+     * Vertices are identified by their {@link #vertexMapIndex(int, int, int) vertex map index}.
+     *
+     * @param srcs     the source tiles
+     * @param adaptive whether or not to merge flat areas into larger primitives
+     * @param consumer the {@link MeshConsumer} to pass the generated geometry to
+     */
+    public void buildMesh(@NonNull HeightmapTile[] srcs, boolean adaptive, @NonNull MeshConsumer consumer) {
+        if (srcs[0] == null) {
+            return;
+        }
+
+        final BakeContext ctx = CONTEXT.get();
+        final HeightmapData data = ctx.meshData;
+
+        //find all the vertices which exist
+        final int[] flags = ctx.flags;
+        for (int x = 0; x < T_VERTS; x++) {
+            for (int z = 0; z < T_VERTS; z++) {
+                HeightmapTile src = srcs[((x >> T_SHIFT) << 1) | (z >> T_SHIFT)];
+                flags[x * T_VERTS + z] = src != null ? src._getLayerFlags(x & T_MASK, z & T_MASK) : 0;
             }
         }
 
-        final BitSet rendered = new BitSet(T_VERTS * T_VERTS * MAX_LAYERS);
+        final BitSet rendered = ctx.rendered;
+        rendered.clear();
+
+        if (adaptive) {
+            this.mergeFlatAreas(srcs, flags, rendered, consumer);
+        }
 
         //write indices
         for (int x = 0; x < T_VOXELS; x++) {
             for (int z = 0; z < T_VOXELS; z++) {
-                for (int layerFlags = srcs[0]._getLayerFlags(x, z), layer = 0; layer < MAX_LAYERS; layer++) {
-                    if ((layerFlags & layerFlag(layer)) == 0) { //layer is unset
+                for (int layerFlags = flags[x * T_VERTS + z], layer = 0; layer < MAX_LAYERS; layer++) {
+                    if ((layerFlags & layerFlag(layer)) == 0 //layer is unset
+                        || rendered.get(vertexMapIndex(x, z, layer))) { //the face has already been merged into a larger one
                         continue;
                     }
                     srcs[0]._getLayerUnchecked(x, z, layer, data);
 
-                    int oppositeCorner, c0, c1, provoking;
-                    if ((provoking = map[vertexMapIndex(x, z, layer)]) < 0
-                        || ((c0 = map[vertexMapIndex(x, z + 1, layer)]) < 0 && (c0 = map[vertexMapIndex(x, z + 1, data.secondaryConnection)]) < 0)
-                        || ((c1 = map[vertexMapIndex(x + 1, z, layer)]) < 0 && (c1 = map[vertexMapIndex(x + 1, z, data.secondaryConnection)]) < 0)
-                        || ((oppositeCorner = map[vertexMapIndex(x + 1, z + 1, layer)]) < 0 && (oppositeCorner = map[vertexMapIndex(x + 1, z + 1, data.secondaryConnection)]) < 0)) {
+                    int oppositeCorner, c0, c1, provoking = vertexMapIndex(x, z, layer);
+                    if ((c0 = connect(flags, x, z + 1, layer, data.secondaryConnection)) < 0
+                        || (c1 = connect(flags, x + 1, z, layer, data.secondaryConnection)) < 0
+                        || (oppositeCorner = connect(flags, x + 1, z + 1, layer, data.secondaryConnection)) < 0) {
                         continue; //skip if any of the vertices are missing
                     }
 
-                    output.indices()[renderType(data.state)].appendQuad(oppositeCorner, c1, c0, provoking);
+                    consumer.quad(renderType(data.state), oppositeCorner, c1, c0, provoking);
                     rendered.set(vertexMapIndex(x, z, layer));
                 }
             }
@@ -164,13 +230,13 @@ public class HeightmapBaker implements IRenderBaker<HeightmapPos, HeightmapTile,
                     continue;
                 }
 
-                for (int layerFlags = src._getLayerFlags(x & T_MASK, z & T_MASK), layer = 0; layer < MAX_LAYERS; layer++) {
+                for (int layerFlags = flags[x * T_VERTS + z], layer = 0; layer < MAX_LAYERS; layer++) {
                     if ((layerFlags & layerFlag(layer)) == 0) {  //layer is unset
                         continue;
                     }
 
                     src._getLayerUnchecked(x & T_MASK, z & T_MASK, layer, data);
-                    int provoking = map[vertexMapIndex(x, z, layer)];
+                    int provoking = vertexMapIndex(x, z, layer);
 
                     for (int dx = -1; dx <= 1; dx += 2) {
                         for (int dz = -1; dz <= 1; dz += 2) {
@@ -178,13 +244,13 @@ public class HeightmapBaker implements IRenderBaker<HeightmapPos, HeightmapTile,
                             if ((dx | dz) >= 0 //at least one offset must be negative - the +,+ quadrant is always handled properly by the first pass
                                 || x + dx == T_VERTS || z + dz == T_VERTS //avoid out of bounds (will never happen in negative direction)
                                 || rendered.get(vertexMapIndex(x + dx, z + dz, layer)) //face behind was rendered correctly
-                                || ((c0 = map[vertexMapIndex(x, z + dz, layer)]) < 0 && (c0 = map[vertexMapIndex(x, z + dz, data.secondaryConnection)]) < 0)
-                                || ((c1 = map[vertexMapIndex(x + dx, z, layer)]) < 0 && (c1 = map[vertexMapIndex(x + dx, z, data.secondaryConnection)]) < 0)
-                                || ((oppositeCorner = map[vertexMapIndex(x + dx, z + dz, layer)]) < 0 && (oppositeCorner = map[vertexMapIndex(x + dx, z + dz, data.secondaryConnection)]) < 0)) {
+                                || (c0 = connect(flags, x, z + dz, layer, data.secondaryConnection)) < 0
+                                || (c1 = connect(flags, x + dx, z, layer, data.secondaryConnection)) < 0
+                                || (oppositeCorner = connect(flags, x + dx, z + dz, layer, data.secondaryConnection)) < 0) {
                                 continue; //skip if any of the vertices are missing
                             }
 
-                            output.indices()[renderType(data.state)].appendQuad(oppositeCorner, c1, c0, provoking);
+                            consumer.quad(renderType(data.state), oppositeCorner, c1, c0, provoking);
                         }
                     }
                 }
@@ -192,6 +258,158 @@ public class HeightmapBaker implements IRenderBaker<HeightmapPos, HeightmapTile,
         }
     }
 
+    /**
+     * Gets the index of the vertex which a face should connect to at the given position.
+     *
+     * @return the vertex' index, or {@code -1} if neither the given layer nor the secondary layer exist at the given position
+     */
+    protected static int connect(int[] flags, int x, int z, int layer, int secondaryLayer) {
+        int layerFlags = flags[x * T_VERTS + z];
+        if ((layerFlags & layerFlag(layer)) != 0) {
+            return vertexMapIndex(x, z, layer);
+        } else if ((layerFlags & layerFlag(secondaryLayer)) != 0) {
+            return vertexMapIndex(x, z, secondaryLayer);
+        } else {
+            return -1;
+        }
+    }
+
+    /**
+     * Greedily merges rectangular areas of faces which lie in the same plane and have identical attributes.
+     * <p>
+     * Each merged area is emitted as a fan of triangles around one of its interior vertices, using every vertex on the area's border. This ensures that
+     * merged areas share the exact same edges as the faces (and tiles) around them, so no T-junctions are introduced.
+     * <p>
+     * Every merged face is marked as rendered.
+     */
+    protected void mergeFlatAreas(HeightmapTile[] srcs, int[] flags, BitSet rendered, MeshConsumer consumer) {
+        final BakeContext ctx = CONTEXT.get();
+        final HeightmapData data = ctx.mergeData;
+        final long[] heights = ctx.heights;
+        final IBlockState[] states = ctx.states;
+        final Biome[] biomes = ctx.biomes;
+        final int[] lights = ctx.lights;
+
+        //faces on a layer which ends next to a vertex may connect to that vertex on another layer (see HeightmapData#secondaryConnection). such vertices
+        //  must stay part of the mesh on every layer, so they're excluded from merging entirely.
+        final BitSet pinned = ctx.pinned;
+        pinned.clear();
+        for (int x = 0; x < T_VERTS; x++) {
+            for (int z = 0; z < T_VERTS; z++) {
+                int neighborFlags = 0;
+                for (int nx = max(x - 1, 0); nx <= min(x + 1, T_VOXELS); nx++) {
+                    for (int nz = max(z - 1, 0); nz <= min(z + 1, T_VOXELS); nz++) {
+                        neighborFlags |= flags[nx * T_VERTS + nz];
+                    }
+                }
+                if ((neighborFlags & ~flags[x * T_VERTS + z]) != 0) { //some layer exists next to this vertex, but not at it
+                    pinned.set(x * T_VERTS + z);
+                }
+            }
+        }
+
+        for (int layer = 0; layer < MAX_LAYERS; layer++) {
+            //load all of the vertices on this layer
+            for (int x = 0; x < T_VERTS; x++) {
+                for (int z = 0; z < T_VERTS; z++) {
+                    int i = x * T_VERTS + z;
+                    if ((flags[i] & layerFlag(layer)) == 0 || pinned.get(i)) { //layer is unset, or the vertex may not be merged
+                        states[i] = null;
+                        continue;
+                    }
+
+                    srcs[((x >> T_SHIFT) << 1) | (z >> T_SHIFT)]._getLayerUnchecked(x & T_MASK, z & T_MASK, layer, data);
+                    heights[i] = ((long) data.height_int << 8L) + data.height_frac;
+                    states[i] = data.state;
+                    biomes[i] = data.biome;
+                    lights[i] = data.light;
+                }
+            }
+
+            for (int x0 = 0; x0 < T_VOXELS; x0++) {
+                for (int z0 = 0; z0 < T_VOXELS; z0++) {
+                    int i0 = x0 * T_VERTS + z0;
+                    if (states[i0] == null || states[i0 + T_VERTS] == null || states[i0 + 1] == null || rendered.get(vertexMapIndex(x0, z0, layer))) {
+                        continue;
+                    }
+
+                    //the plane is defined by the face's first three vertices
+                    long slopeX = heights[i0 + T_VERTS] - heights[i0];
+                    long slopeZ = heights[i0 + 1] - heights[i0];
+
+                    //grow the area as far as possible along the x axis, then along the z axis
+                    int x1 = x0;
+                    while (x1 < T_VOXELS && cellMatches(x1, z0, layer, i0, slopeX, slopeZ, heights, states, biomes, lights, rendered)) {
+                        x1++;
+                    }
+                    if (x1 == x0) { //the face itself isn't flat
+                        continue;
+                    }
+
+                    int z1 = z0 + 1;
+                    GROW_Z:
+                    for (; z1 < T_VOXELS; z1++) {
+                        for (int x = x0; x < x1; x++) {
+                            if (!cellMatches(x, z1, layer, i0, slopeX, slopeZ, heights, states, biomes, lights, rendered)) {
+                                break GROW_Z;
+                            }
+                        }
+                    }
+
+                    int w = x1 - x0;
+                    int h = z1 - z0;
+                    if (w * h < (w + h) << 1) { //the fan would need more triangles than there are faces, leave the faces as they are
+                        continue;
+                    }
+
+                    //emit a fan of triangles around a vertex in the middle of the area, walking along the border in the same direction as the faces' winding
+                    int renderType = renderType(states[i0]);
+                    int center = vertexMapIndex((x0 + x1) >> 1, (z0 + z1) >> 1, layer);
+                    for (int x = x0; x < x1; x++) {
+                        consumer.triangle(renderType, vertexMapIndex(x, z1, layer), vertexMapIndex(x + 1, z1, layer), center);
+                    }
+                    for (int z = z1; z > z0; z--) {
+                        consumer.triangle(renderType, vertexMapIndex(x1, z, layer), vertexMapIndex(x1, z - 1, layer), center);
+                    }
+                    for (int x = x1; x > x0; x--) {
+                        consumer.triangle(renderType, vertexMapIndex(x, z0, layer), vertexMapIndex(x - 1, z0, layer), center);
+                    }
+                    for (int z = z0; z < z1; z++) {
+                        consumer.triangle(renderType, vertexMapIndex(x0, z, layer), vertexMapIndex(x0, z + 1, layer), center);
+                    }
+
+                    for (int x = x0; x < x1; x++) {
+                        for (int z = z0; z < z1; z++) {
+                            rendered.set(vertexMapIndex(x, z, layer));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks whether all of the vertices of the face at the given position lie on the given plane and have the same attributes as the given vertex.
+     */
+    protected static boolean cellMatches(int x, int z, int layer, int i0, long slopeX, long slopeZ, long[] heights, IBlockState[] states, Biome[] biomes, int[] lights, BitSet rendered) {
+        if (rendered.get(vertexMapIndex(x, z, layer))) {
+            return false;
+        }
+
+        int x0 = i0 / T_VERTS;
+        int z0 = i0 % T_VERTS;
+        for (int dx = 0; dx <= 1; dx++) {
+            for (int dz = 0; dz <= 1; dz++) {
+                int i = (x + dx) * T_VERTS + (z + dz);
+                if (states[i] != states[i0] || biomes[i] != biomes[i0] || lights[i] != lights[i0]
+                    || heights[i] != heights[i0] + slopeX * (x + dx - x0) + slopeZ * (z + dz - z0)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
     private int writeVertex(int baseX, int baseZ, int level, HeightmapTile tile, int x, int z, int layer, AttributeWriter<HeightmapLocalAttributes> out, BlockPos.MutableBlockPos pos, SingleBiomeBlockAccess biomeAccess, HeightmapData data, HeightmapLocalAttributes attributes) {
         baseX += (x & T_VOXELS) << level;
         baseZ += (z & T_VOXELS) << level;
@@ -206,11 +424,7 @@ public class HeightmapBaker implements IRenderBaker<HeightmapPos, HeightmapTile,
 
         attributes.state = TextureUVs.STATEID_TO_INDEXID.get(data.state);
 
-        int blockLight = data.light & 0xF;
-        int skyLight = data.light >> 4;
-        attributes.lightBlock = (byte) (blockLight | (blockLight << 4));
-        attributes.lightSky = (byte) (skyLight | (skyLight << 4));
-        attributes.color = MC.getBlockColors().colorMultiplier(data.state, biomeAccess, pos, 0);
+        attributes.color = packColorAndLight(MC.getBlockColors().colorMultiplier(data.state, biomeAccess, pos, 0), data.light);
 
         attributes.posHorizX = (byte) x;
         attributes.posHorizZ = (byte) z;
@@ -219,4 +433,52 @@ public class HeightmapBaker implements IRenderBaker<HeightmapPos, HeightmapTile,
 
         return out.put(attributes);
     }
+
+    /**
+     * Per-thread scratch objects used while baking.
+     * <p>
+     * Each stage of the mesh generation gets its own {@link HeightmapData}, as vertices are written by the {@link MeshConsumer} while the mesh is still being
+     * built.
+     *
+     * @author DaPorkchop_
+     */
+    protected static final class BakeContext {
+        protected final BlockPos.MutableBlockPos blockPos = new BlockPos.MutableBlockPos();
+        protected final SingleBiomeBlockAccess biomeAccess = new SingleBiomeBlockAccess();
+
+        protected final HeightmapData vertexData = new HeightmapData();
+        protected final HeightmapData meshData = new HeightmapData();
+        protected final HeightmapData mergeData = new HeightmapData();
+
+        protected final HeightmapGlobalAttributes globals = new HeightmapGlobalAttributes();
+        protected final HeightmapLocalAttributes attributes = new HeightmapLocalAttributes();
+
+        protected final int[] flags = new int[T_VERTS * T_VERTS];
+        protected final BitSet rendered = new BitSet(T_VERTS * T_VERTS * MAX_LAYERS);
+
+        protected final long[] heights = new long[T_VERTS * T_VERTS];
+        protected final IBlockState[] states = new IBlockState[T_VERTS * T_VERTS];
+        protected final Biome[] biomes = new Biome[T_VERTS * T_VERTS];
+        protected final int[] lights = new int[T_VERTS * T_VERTS];
+        protected final BitSet pinned = new BitSet(T_VERTS * T_VERTS);
+    }
+
+    /**
+     * Consumes the geometry generated by {@link #buildMesh(HeightmapTile[], boolean, MeshConsumer)}.
+     * <p>
+     * All parameters are in the same order as expected by {@link IndexWriter}.
+     *
+     * @author DaPorkchop_
+     */
+    public interface MeshConsumer {
+        /**
+         * @see IndexWriter#appendQuad(int, int, int, int)
+         */
+        void quad(int renderType, int oppositeCorner, int c0, int c1, int provoking);
+
+        /**
+         * @see IndexWriter#appendTriangleAsQuad(int, int, int)
+         */
+        void triangle(int renderType, int a, int b, int provoking);
+    }
 }
@@ -29,6 +29,12 @@ import net.daporkchop.fp2.mode.heightmap.HeightmapTile;
 import net.minecraftforge.fml.relauncher.Side;
 import net.minecraftforge.fml.relauncher.SideOnly;
 
+import java.util.Comparator;
+
+import static net.daporkchop.fp2.util.Constants.*;
+import static net.daporkchop.fp2.util.math.MathUtil.*;
+import static net.daporkchop.lib.common.math.PMath.*;
+
 /**
  * @author DaPorkchop_
  */
@@ -38,6 +44,26 @@ public abstract class HeightmapRenderer extends AbstractFarRenderer<HeightmapPos
         super(context);
     }
 
+    @Override
+    protected Comparator<HeightmapPos> uploadComparatorFor(double x, double y, double z) {
+        class HeightmapPosAndComparator extends HeightmapPos implements Comparator<HeightmapPos> {
+            public HeightmapPosAndComparator(int level, int x, int z) {
+                super(level, x, z);
+            }
+
+            @Override
+            public int compare(HeightmapPos o1, HeightmapPos o2) {
+                int d;
+                if ((d = o1.level() - o2.level()) != 0) {
+                    return d;
+                }
+                return Integer.compare(this.manhattanDistance(o1), this.manhattanDistance(o2));
+            }
+        }
+
+        return new HeightmapPosAndComparator(0, asrRound(floorI(x), T_SHIFT), asrRound(floorI(z), T_SHIFT));
+    }
+
     public static class ShaderMultidraw extends HeightmapRenderer {
         public ShaderMultidraw(@NonNull IFarClientContext<HeightmapPos, HeightmapTile> context) {
             super(context);
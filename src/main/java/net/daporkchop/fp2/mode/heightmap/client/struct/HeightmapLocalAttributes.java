@@ -38,39 +38,24 @@ public class HeightmapLocalAttributes {
     @Attribute
     public int state;
 
-    @FieldsAsArrayAttribute(
-            attribute = @Attribute(name = "light"),
-            names = { "lightBlock", "lightSky" },
-            scalarType = @ScalarType(convert = {
-                    @ScalarConvert(ScalarConvert.Type.TO_UNSIGNED),
-                    @ScalarConvert(value = ScalarConvert.Type.TO_FLOAT, normalized = true)
-            }),
-            transform = @ArrayTransform(ArrayTransform.Type.TO_VECTOR))
-    public byte lightBlock;
-    public byte lightSky;
-
+    //RGB color multiplier, with the block and sky light levels packed into the two nibbles of the alpha channel (see RenderConstants#packColorAndLight)
     @Attribute
     @ScalarType(expand = @ScalarExpand(
-            value = ScalarExpand.Type.INT_ARGB8_TO_BYTE_VECTOR_RGBA, alpha = false,
+            value = ScalarExpand.Type.INT_ARGB8_TO_BYTE_VECTOR_RGBA, alpha = true,
             thenConvert = @ScalarConvert(value = ScalarConvert.Type.TO_FLOAT, normalized = true)))
     public int color;
 
+    //the fractional part of the height shares an attribute with the horizontal position, as a separate attribute would be padded out to a whole word
     @FieldsAsArrayAttribute(
-            attribute = @Attribute(name = "posHoriz"),
-            names = { "posHorizX", "posHorizZ" },
+            attribute = @Attribute(name = "posLow"),
+            names = { "posHorizX", "posHorizZ", "heightFrac" },
             scalarType = @ScalarType(convert = @ScalarConvert(ScalarConvert.Type.TO_UNSIGNED)),
             transform = @ArrayTransform(ArrayTransform.Type.TO_VECTOR))
     public byte posHorizX;
     public byte posHorizZ;
+    public byte heightFrac;
 
     @Attribute
     @ScalarType(convert = @ScalarConvert(ScalarConvert.Type.TO_UNSIGNED))
     public int heightInt;
-
-    @Attribute
-    @ScalarType(convert = {
-            @ScalarConvert(ScalarConvert.Type.TO_UNSIGNED),
-            @ScalarConvert(value = ScalarConvert.Type.TO_FLOAT, normalized = false)
-    })
-    public byte heightFrac;
 }
@@ -28,6 +28,7 @@ import net.daporkchop.fp2.mode.api.server.gen.IFarScaler;
 import net.daporkchop.fp2.mode.common.server.AbstractFarTileProvider;
 import net.daporkchop.fp2.mode.heightmap.HeightmapTile;
 import net.daporkchop.fp2.mode.heightmap.HeightmapPos;
+import net.daporkchop.fp2.mode.heightmap.server.scale.HeightmapPyramidBuilder;
 import net.daporkchop.fp2.mode.heightmap.server.scale.HeightmapScalerMinMax;
 import net.daporkchop.fp2.mode.heightmap.server.tracking.HeightmapTrackerManager;
 import net.minecraft.nbt.NBTTagCompound;
@@ -35,12 +36,20 @@ import net.minecraft.world.World;
 import net.minecraft.world.WorldServer;
 import net.minecraft.world.chunk.Chunk;
 
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
 /**
  * @author DaPorkchop_
  */
 public abstract class HeightmapTileProvider extends AbstractFarTileProvider<HeightmapPos, HeightmapTile> {
+    protected final HeightmapPyramidBuilder pyramidBuilder;
+
     public HeightmapTileProvider(@NonNull WorldServer world, @NonNull IFarRenderMode<HeightmapPos, HeightmapTile> mode) {
         super(world, mode);
+
+        this.pyramidBuilder = new HeightmapPyramidBuilder((HeightmapScalerMinMax) this.scaler);
     }
 
     @Override
@@ -58,6 +67,16 @@ public abstract class HeightmapTileProvider extends AbstractFarTileProvider<Heig
         return this.blockAccess().anyColumnIntersects(pos.x(), pos.z(), pos.level());
     }
 
+    @Override
+    protected int scalePyramidLevels() {
+        return HeightmapPyramidBuilder.TASK_LEVELS;
+    }
+
+    @Override
+    protected Map<HeightmapPos, HeightmapTile> scalePyramid(@NonNull HeightmapPos root, @NonNull Predicate<HeightmapPos> isBase, @NonNull Function<HeightmapPos, HeightmapTile> source) {
+        return this.pyramidBuilder.build(root, isBase, source, this.mode.tileRecycler());
+    }
+
     @Override
     public void onColumnSaved(@NonNull World world, int columnX, int columnZ, @NonNull NBTTagCompound nbt, @NonNull Chunk column) {
         this.scheduleForUpdate(new HeightmapPos(0, columnX, columnZ));
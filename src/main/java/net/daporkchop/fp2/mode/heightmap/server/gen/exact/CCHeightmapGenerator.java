@@ -22,6 +22,8 @@ package net.daporkchop.fp2.mode.heightmap.server.gen.exact;
 
 import io.github.opencubicchunks.cubicchunks.api.util.Coords;
 import lombok.NonNull;
+import net.daporkchop.fp2.compat.cc.cube.CubeSummary;
+import net.daporkchop.fp2.compat.cc.cube.ICubeSummaryAccess;
 import net.daporkchop.fp2.compat.vanilla.IBlockHeightAccess;
 import net.daporkchop.fp2.mode.heightmap.HeightmapPos;
 import net.minecraft.block.state.IBlockState;
@@ -31,9 +33,10 @@ import net.minecraft.util.math.ChunkPos;
 import net.minecraft.util.math.Vec3i;
 import net.minecraft.world.WorldServer;
 
-import java.util.stream.IntStream;
+import java.util.Arrays;
 import java.util.stream.Stream;
 
+import static java.lang.Math.*;
 import static net.daporkchop.fp2.mode.heightmap.HeightmapConstants.*;
 import static net.daporkchop.fp2.util.Constants.*;
 
@@ -43,6 +46,9 @@ import static net.daporkchop.fp2.util.Constants.*;
 public class CCHeightmapGenerator extends AbstractExactHeightmapGenerator {
     protected static final int Y_LIMIT = Integer.MIN_VALUE + Character.MAX_VALUE; //the minimum Y coordinate that will be considered for heightmap samples
 
+    //a cube with all of these flags set can't contain any blocks which would be visited by the surface search
+    protected static final int SKIPPABLE_CUBE_FLAGS = CubeSummary.FLAG_NO_OPAQUE | CubeSummary.FLAG_NO_SOLID | CubeSummary.FLAG_NO_LIQUID;
+
     public CCHeightmapGenerator(@NonNull WorldServer world) {
         super(world);
     }
@@ -54,15 +60,31 @@ public class CCHeightmapGenerator extends AbstractExactHeightmapGenerator {
 
     @Override
     public Stream<Vec3i> neededCubes(@NonNull IBlockHeightAccess world, @NonNull HeightmapPos pos) {
-        return IntStream.range(0, T_VOXELS * T_VOXELS)
-                .map(packed -> {
-                    int blockX = pos.blockX() + (packed & T_MASK);
-                    int blockZ = pos.blockZ() + ((packed >> T_SHIFT) & T_MASK);
-                    return Coords.blockToCube(world.getTopBlockY(blockX, blockZ));
-                })
-                .distinct() //we don't want a bunch of identical cube Y coordinates
-                .filter(cubeY -> cubeY > Coords.blockToCube(Y_LIMIT))
-                .mapToObj(cubeY -> new Vec3i(pos.flooredChunkX(), cubeY, pos.flooredChunkZ()));
+        int blockX = pos.blockX();
+        int blockZ = pos.blockZ();
+
+        //collect the Y coordinate of the cube containing the top block of each column
+        int[] cubeYs = new int[T_VOXELS * T_VOXELS];
+        int count = 0;
+        for (int dx = 0; dx < T_VOXELS; dx++) {
+            for (int dz = 0; dz < T_VOXELS; dz++) {
+                int cubeY = Coords.blockToCube(world.getTopBlockY(blockX + dx, blockZ + dz));
+                if (cubeY > Coords.blockToCube(Y_LIMIT)) {
+                    cubeYs[count++] = cubeY;
+                }
+            }
+        }
+
+        //sort them to make duplicates adjacent, then only keep the distinct ones (we don't want a bunch of identical cube Y coordinates)
+        Arrays.sort(cubeYs, 0, count);
+        Vec3i[] cubes = new Vec3i[count];
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == 0 || cubeYs[i] != cubeYs[i - 1]) {
+                cubes[distinct++] = new Vec3i(pos.flooredChunkX(), cubeYs[i], pos.flooredChunkZ());
+            }
+        }
+        return Arrays.stream(cubes, 0, distinct);
     }
 
     @Override
@@ -76,57 +98,89 @@ public class CCHeightmapGenerator extends AbstractExactHeightmapGenerator {
         //  need to take the frustratingly inexact and slow approach of using the heightmap to find the highest block, then searching manually from there.
         //  the heightmap, conveniently, seems to be taking water blocks into account. this allows us to simply check the block state at the heightmap, and then:
         //  - if it's opaque, there is a solid surface there so no need to look any further
-        //  - otherwise, we iterate down through every block just like in vanilla
-        //   this has the unfortunate consequence that it could, theoretically, cause huge numbers of cubes to be generated. honestly, i'm not sure if
-        //  there's any way around that without either rewriting CC's surface tracking or somehow taking rough generator output into account.
-
-        int usedExtraLayers = 0;
+        //  - otherwise, we search downwards until we find an opaque block
+        //   naively iterating down through every block could cause huge numbers of cubes to be loaded. instead, we make use of two facts:
+        //  - every opaque block has a non-zero light opacity, and is therefore tracked by the opacity index. the next opaque block can't be any lower than the
+        //    next block reported by getTopBlockYBelow(), and if there is no such block there's nothing left to find.
+        //  - the blocks in between have no light opacity, but could still be visible (e.g. glass). we only need to check them one-by-one if the cube they're
+        //    in could contain anything visible, which we can tell from the cube's summary.
 
         pos.setY(y);
         IBlockState state = world.getBlockState(pos);
-        if (state.isOpaqueCube()) {
-            elevations[DEFAULT_LAYER] = y;
-            return;
-        } else if (state.getBlock() == Blocks.WATER) {
-            elevations[WATER_LAYER] = y;
-        } else if (state.getMaterial().isSolid() || state.getMaterial().isLiquid()) {
-            elevations[EXTRA_LAYERS[usedExtraLayers++]] = y;
-        } else {
+        int usedExtraLayers = visit(elevations, state, y, 0);
+        if (usedExtraLayers < 0 || (usedExtraLayers == 0 && elevations[WATER_LAYER] == Integer.MIN_VALUE)) { //either we found an opaque block, or the top block isn't visible
             return;
         }
 
-        //first pass: sample blocks in increasingly large intervals, as a quick test to make sure that an opaque surface actually exists
-        //TODO: this is inaccurate...
-        for (int dy = -1; y + dy < y; dy <<= 1) {
-            pos.setY(y + dy);
-            if ((state = world.getBlockState(pos)).isOpaqueCube()) {
-                break;
+        ICubeSummaryAccess summaries = world instanceof ICubeSummaryAccess ? (ICubeSummaryAccess) world : null;
+        int cubeX = Coords.blockToCube(blockX);
+        int cubeZ = Coords.blockToCube(blockZ);
+        int summaryCubeY = Coords.blockToCube(y);
+        boolean skippable = false;
+
+        for (IBlockState prevState = state; ; ) {
+            //the min() call ensures that we always make progress, regardless of whether the opacity index's lower bound is inclusive or not
+            int next = min(world.getTopBlockYBelow(blockX, y, blockZ), y - 1);
+            if (next < Y_LIMIT) { //there are no more opaque blocks below, we never found a solid surface
+                return;
             }
-        }
 
-        if (!state.isOpaqueCube()) { //we never found a solid surface, abort!
-            return;
-        }
+            //visit all of the blocks between the current position and the next block in the opacity index
+            while (--y > next) {
+                int cubeY = Coords.blockToCube(y);
+                if (cubeY != summaryCubeY) { //we've entered a new cube, check its summary
+                    summaryCubeY = cubeY;
+                    skippable = summaries != null && CubeSummary.hasAll(summaries.getCubeSummary(cubeX, cubeY, cubeZ), SKIPPABLE_CUBE_FLAGS);
+                }
 
-        for (IBlockState prevState = state; --y >= Y_LIMIT; ) {
-            pos.setY(y);
-            state = world.getBlockState(pos);
+                if (skippable) { //this cube contains nothing that could be visible, skip it (or at least the part of it that we still need to search)
+                    y = max(Coords.cubeToMinBlock(cubeY), next + 1);
+                    prevState = null;
+                    continue;
+                }
 
-            if (state == prevState) { //skip duplicate block states
-                continue;
+                pos.setY(y);
+                if ((state = world.getBlockState(pos)) == prevState) { //skip duplicate block states
+                    continue;
+                }
+                prevState = state;
+
+                if ((usedExtraLayers = visit(elevations, state, y, usedExtraLayers)) < 0) { //this can't happen in vanilla, but mods might add opaque blocks without any light opacity
+                    return;
+                }
             }
-            prevState = state;
 
-            if (state.isOpaqueCube()) { //solid block: save elevation and immediately return, no other layers will be visible
-                elevations[DEFAULT_LAYER] = y;
-                return;
-            } else if (state.getBlock() == Blocks.WATER) { //water: remember the first Y value we meet it at, discard all other occurrences
-                if (elevations[WATER_LAYER] == Integer.MIN_VALUE) {
-                    elevations[WATER_LAYER] = y;
+            //visit the next block in the opacity index itself
+            pos.setY(y);
+            if ((state = world.getBlockState(pos)) != prevState) {
+                prevState = state;
+                if ((usedExtraLayers = visit(elevations, state, y, usedExtraLayers)) < 0) {
+                    return;
                 }
-            } else if (usedExtraLayers < EXTRA_LAYERS.length && (state.getMaterial().isSolid() || state.getMaterial().isLiquid())) { //all other blocks: put the first few on extra layers, discard everything else
-                elevations[EXTRA_LAYERS[usedExtraLayers++]] = y;
             }
         }
     }
+
+    /**
+     * Visits a single block state during the surface search.
+     *
+     * @param elevations      the elevations array
+     * @param state           the block state
+     * @param y               the block state's Y coordinate
+     * @param usedExtraLayers the number of extra layers which have already been used
+     * @return the new number of used extra layers, or {@code -1} if the block is opaque and the search should stop
+     */
+    protected static int visit(@NonNull int[] elevations, @NonNull IBlockState state, int y, int usedExtraLayers) {
+        if (state.isOpaqueCube()) { //solid block: save elevation and immediately return, no other layers will be visible
+            elevations[DEFAULT_LAYER] = y;
+            return -1;
+        } else if (state.getBlock() == Blocks.WATER) { //water: remember the first Y value we meet it at, discard all other occurrences
+            if (elevations[WATER_LAYER] == Integer.MIN_VALUE) {
+                elevations[WATER_LAYER] = y;
+            }
+        } else if (usedExtraLayers < EXTRA_LAYERS.length && (state.getMaterial().isSolid() || state.getMaterial().isLiquid())) { //all other blocks: put the first few on extra layers, discard everything else
+            elevations[EXTRA_LAYERS[usedExtraLayers++]] = y;
+        }
+        return usedExtraLayers;
+    }
 }
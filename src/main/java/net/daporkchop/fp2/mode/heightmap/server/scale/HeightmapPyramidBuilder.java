@@ -0,0 +1,159 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package net.daporkchop.fp2.mode.heightmap.server.scale;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import net.daporkchop.fp2.mode.api.server.storage.IFarStorage;
+import net.daporkchop.fp2.mode.api.tile.ITileMetadata;
+import net.daporkchop.fp2.mode.heightmap.HeightmapPos;
+import net.daporkchop.fp2.mode.heightmap.HeightmapTile;
+import net.daporkchop.fp2.util.SimpleRecycler;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import static net.daporkchop.lib.common.util.PValidation.*;
+
+/**
+ * Builds every tile in a pyramid of heightmap tiles from the tiles at its base in a single pass.
+ * <p>
+ * The output is identical to applying the {@link HeightmapScalerMinMax} one level at a time, but each base tile is only requested once and none of the
+ * intermediate levels ever need to be written to and read back from storage. Tiles are visited in Z-order, so each output tile is scaled as soon as its four
+ * inputs are complete, and the whole pyramid can then be written to storage in a single batch using {@link IFarStorage#setAll(ITileMetadata, Map)}.
+ * <p>
+ * The base usually consists of level-0 tiles, but any tile may be made part of it (e.g. because it's already up-to-date in storage), in which case it's
+ * requested from the source instead of being built from the tiles below it.
+ *
+ * @author DaPorkchop_
+ */
+@RequiredArgsConstructor
+public class HeightmapPyramidBuilder {
+    /**
+     * The number of levels which a scale task builds at once.
+     * <p>
+     * A pyramid with {@code n} levels has {@code 4^n} base tiles, all of which are kept in memory until the whole pyramid has been written.
+     */
+    public static final int TASK_LEVELS = 3;
+
+    @NonNull
+    protected final HeightmapScalerMinMax scaler;
+
+    /**
+     * Builds the tile at the given position, along with every tile below it down to (but not including) level 0.
+     * <p>
+     * The returned tiles are allocated from the given {@link SimpleRecycler}, and must be released by the caller (e.g. using {@link #release(Map, SimpleRecycler)})
+     * once they are no longer needed.
+     *
+     * @param root     the position of the tile at the top of the pyramid. Must be above level 0.
+     * @param source   a function which provides the level-0 tile at a given position. Tiles returned by the function are only borrowed for the duration of
+     *                 this method call, and are not modified.
+     * @param recycler the {@link SimpleRecycler} to allocate output tiles from
+     * @return all of the tiles in the pyramid, in the order in which they were built (the root tile is last)
+     */
+    public Map<HeightmapPos, HeightmapTile> build(@NonNull HeightmapPos root, @NonNull Function<HeightmapPos, HeightmapTile> source, @NonNull SimpleRecycler<HeightmapTile> recycler) {
+        return this.build(root, pos -> false, source, recycler);
+    }
+
+    /**
+     * Builds the tile at the given position, along with every tile below it down to (but not including) the given base.
+     * <p>
+     * The returned tiles are allocated from the given {@link SimpleRecycler}, and must be released by the caller (e.g. using {@link #release(Map, SimpleRecycler)})
+     * once they are no longer needed.
+     *
+     * @param root     the position of the tile at the top of the pyramid. Must be above level 0, and must not be part of the base.
+     * @param isBase   a function which checks whether or not the tile at a given position is part of the pyramid's base. Level-0 tiles are always part of the
+     *                 base.
+     * @param source   a function which provides the base tile at a given position. Tiles returned by the function are only borrowed for the duration of this
+     *                 method call, and are not modified. {@code null} may be returned for empty tiles, and will be passed on to the scaler.
+     * @param recycler the {@link SimpleRecycler} to allocate output tiles from
+     * @return all of the tiles in the pyramid above the base, in the order in which they were built (the root tile is last)
+     */
+    public Map<HeightmapPos, HeightmapTile> build(@NonNull HeightmapPos root, @NonNull Predicate<HeightmapPos> isBase, @NonNull Function<HeightmapPos, HeightmapTile> source,
+                                                  @NonNull SimpleRecycler<HeightmapTile> recycler) {
+        checkArg(root.level() > 0 && !isBase.test(root), "root tile must be above the base! (%s)", root);
+
+        Map<HeightmapPos, HeightmapTile> out = new LinkedHashMap<>();
+        try {
+            this.build0(root, isBase, source, recycler, out);
+            return out;
+        } catch (Throwable t) { //release any tiles which have already been built
+            release(out, recycler);
+            throw t;
+        }
+    }
+
+    protected HeightmapTile build0(@NonNull HeightmapPos pos, @NonNull Predicate<HeightmapPos> isBase, @NonNull Function<HeightmapPos, HeightmapTile> source,
+                                   @NonNull SimpleRecycler<HeightmapTile> recycler, @NonNull Map<HeightmapPos, HeightmapTile> out) {
+        if (pos.level() == 0 || isBase.test(pos)) {
+            return source.apply(pos);
+        }
+
+        //recursively build inputs, in the same order the scaler expects them
+        HeightmapPos[] inputs = this.scaler.inputs(pos).toArray(HeightmapPos[]::new);
+        HeightmapTile[] srcs = new HeightmapTile[inputs.length];
+        for (int i = 0; i < inputs.length; i++) {
+            srcs[i] = this.build0(inputs[i], isBase, source, recycler, out);
+        }
+
+        HeightmapTile dst = recycler.allocate();
+        out.put(pos, dst);
+        this.scaler.scale(srcs, dst);
+        return dst;
+    }
+
+    /**
+     * Builds the tile at the given position along with every tile below it down to level 1, and writes them all to the given {@link IFarStorage} in a single
+     * batch.
+     *
+     * @param root     the position of the tile at the top of the pyramid. Must be above level 0.
+     * @param source   a function which provides the level-0 tile at a given position
+     * @param recycler the {@link SimpleRecycler} to allocate temporary tiles from
+     * @param storage  the {@link IFarStorage} to write the tiles to
+     * @param metadata the metadata to store alongside the tiles
+     * @return the positions which were actually written
+     * @see #build(HeightmapPos, Function, SimpleRecycler)
+     * @see IFarStorage#setAll(ITileMetadata, Map)
+     */
+    public Stream<HeightmapPos> buildAndStore(@NonNull HeightmapPos root, @NonNull Function<HeightmapPos, HeightmapTile> source, @NonNull SimpleRecycler<HeightmapTile> recycler,
+                                              @NonNull IFarStorage<HeightmapPos, HeightmapTile> storage, @NonNull ITileMetadata metadata) {
+        Map<HeightmapPos, HeightmapTile> tiles = this.build(root, source, recycler);
+        try {
+            return storage.setAll(metadata, tiles);
+        } finally {
+            release(tiles, recycler);
+        }
+    }
+
+    /**
+     * Releases all of the tiles returned by {@link #build(HeightmapPos, Function, SimpleRecycler)}.
+     *
+     * @param tiles    the tiles to release
+     * @param recycler the {@link SimpleRecycler} which the tiles were allocated from
+     */
+    public static void release(@NonNull Map<HeightmapPos, HeightmapTile> tiles, @NonNull SimpleRecycler<HeightmapTile> recycler) {
+        tiles.values().forEach(recycler::release);
+        tiles.clear();
+    }
+}
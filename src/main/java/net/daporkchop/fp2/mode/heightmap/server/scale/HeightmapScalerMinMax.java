@@ -22,7 +22,6 @@ package net.daporkchop.fp2.mode.heightmap.server.scale;
 
 import lombok.NonNull;
 import net.daporkchop.fp2.mode.api.server.gen.IFarScaler;
-import net.daporkchop.fp2.mode.heightmap.HeightmapData;
 import net.daporkchop.fp2.mode.heightmap.HeightmapPos;
 import net.daporkchop.fp2.mode.heightmap.HeightmapTile;
 
@@ -63,8 +62,6 @@ public class HeightmapScalerMinMax implements IFarScaler<HeightmapPos, Heightmap
 
     @Override
     public long scale(@NonNull HeightmapTile[] srcs, @NonNull HeightmapTile dst) {
-        HeightmapData data = new HeightmapData();
-
         for (int subX = 0; subX < 2; subX++) {
             for (int subZ = 0; subZ < 2; subZ++) {
                 HeightmapTile src = srcs[subX * 2 + subZ];
@@ -77,9 +74,7 @@ public class HeightmapScalerMinMax implements IFarScaler<HeightmapPos, Heightmap
                         int dstZ = baseZ + (z >> 1);
 
                         for (int layer = 0; layer < MAX_LAYERS; layer++) {
-                            if (this.scaleSample(src, x, z, layer, data)) {
-                                dst.setLayer(dstX, dstZ, layer, data);
-                            }
+                            this.scaleSample(src, x, z, layer, dst, dstX, dstZ);
                         }
                     }
                 }
@@ -89,7 +84,7 @@ public class HeightmapScalerMinMax implements IFarScaler<HeightmapPos, Heightmap
         return 0L;
     }
 
-    protected boolean scaleSample(HeightmapTile src, int srcX, int srcZ, int layer, HeightmapData data) {
+    protected boolean scaleSample(HeightmapTile src, int srcX, int srcZ, int layer, HeightmapTile dst, int dstX, int dstZ) {
         double height0 = src.getLayerOnlyHeight(srcX, srcZ, layer);
         double height1 = src.getLayerOnlyHeight(srcX, srcZ + 1, layer);
         double height2 = src.getLayerOnlyHeight(srcX + 1, srcZ, layer);
@@ -125,14 +120,15 @@ public class HeightmapScalerMinMax implements IFarScaler<HeightmapPos, Heightmap
         double d2 = Double.isNaN(height2) ? Double.NEGATIVE_INFINITY : abs(height2 - avg);
         double d3 = Double.isNaN(height3) ? Double.NEGATIVE_INFINITY : abs(height3 - avg);
 
+        //copy the raw sample rather than decoding and re-encoding it, there's no need to look anything up in the block or biome registries
         if (!Double.isNaN(height0) && d0 >= d1 && d0 >= d2 && d0 >= d3) {
-            src.getLayer(srcX, srcZ, layer, data);
+            src.copyLayerTo(srcX, srcZ, layer, dst, dstX, dstZ);
         } else if (!Double.isNaN(height1) && d1 >= d0 && d1 >= d2 && d1 >= d3) {
-            src.getLayer(srcX, srcZ + 1, layer, data);
+            src.copyLayerTo(srcX, srcZ + 1, layer, dst, dstX, dstZ);
         } else if (!Double.isNaN(height2) && d2 >= d0 && d2 >= d1 && d2 >= d3) {
-            src.getLayer(srcX + 1, srcZ, layer, data);
+            src.copyLayerTo(srcX + 1, srcZ, layer, dst, dstX, dstZ);
         } else {
-            src.getLayer(srcX + 1, srcZ + 1, layer, data);
+            src.copyLayerTo(srcX + 1, srcZ + 1, layer, dst, dstX, dstZ);
         }
         return true;
     }
@@ -53,7 +53,7 @@ public class HeightmapTracker extends AbstractTracker<HeightmapPos, HeightmapTil
 
     @Override
     protected TrackingState currentState(@NonNull IFarServerContext<HeightmapPos, HeightmapTile> context) {
-        return TrackingState.createDefault(context);
+        return TrackingState.createDefault(context, this.motion);
     }
 
     @Override
@@ -61,13 +61,20 @@ public class HeightmapTracker extends AbstractTracker<HeightmapPos, HeightmapTil
         return oldState.cutoff() != newState.cutoff()
                || oldState.minLevel() != newState.minLevel()
                || oldState.maxLevel() != newState.maxLevel()
-               || sq(oldState.x() - newState.x()) + sq(oldState.z() - newState.z()) >= UPDATE_TRIGGER_DISTANCE_SQUARED;
+               || newState.teleportedSince(oldState)
+               || sq(oldState.volumeX() - newState.volumeX()) + sq(oldState.volumeZ() - newState.volumeZ()) >= UPDATE_TRIGGER_DISTANCE_SQUARED
+               || sq(oldState.priorityX() - newState.priorityX()) + sq(oldState.priorityZ() - newState.priorityZ()) >= UPDATE_TRIGGER_DISTANCE_SQUARED;
+    }
+
+    @Override
+    protected boolean shouldReset(@NonNull TrackingState oldState, @NonNull TrackingState newState) {
+        return newState.teleportedSince(oldState);
     }
 
     @Override
     protected void allPositions(@NonNull TrackingState state, @NonNull Consumer<HeightmapPos> callback) {
-        final int playerX = floorI(state.x());
-        final int playerZ = floorI(state.z());
+        final int playerX = floorI(state.volumeX());
+        final int playerZ = floorI(state.volumeZ());
 
         for (int lvl = state.minLevel(); lvl < state.maxLevel(); lvl++) {
             final int baseX = asrRound(playerX, T_SHIFT + lvl);
@@ -89,10 +96,10 @@ public class HeightmapTracker extends AbstractTracker<HeightmapPos, HeightmapTil
 
     @Override
     protected void deltaPositions(@NonNull TrackingState oldState, @NonNull TrackingState newState, @NonNull Consumer<HeightmapPos> added, @NonNull Consumer<HeightmapPos> removed) {
-        final int oldPlayerX = floorI(oldState.x());
-        final int oldPlayerZ = floorI(oldState.z());
-        final int newPlayerX = floorI(newState.x());
-        final int newPlayerZ = floorI(newState.z());
+        final int oldPlayerX = floorI(oldState.volumeX());
+        final int oldPlayerZ = floorI(oldState.volumeZ());
+        final int newPlayerX = floorI(newState.volumeX());
+        final int newPlayerZ = floorI(newState.volumeZ());
 
         for (int lvl = min(oldState.minLevel(), newState.minLevel()); lvl < max(oldState.maxLevel(), newState.maxLevel()); lvl++) {
             final int oldBaseX = asrRound(oldPlayerX, T_SHIFT + lvl);
@@ -145,12 +152,17 @@ public class HeightmapTracker extends AbstractTracker<HeightmapPos, HeightmapTil
     protected boolean isVisible(@NonNull TrackingState state, @NonNull HeightmapPos pos) {
         return state.hasLevel(pos.level())
                && this.coordLimits[pos.level()].contains2d(pos.x(), pos.z())
-               && abs(pos.x() - asrRound(floorI(state.x()), T_SHIFT + pos.level())) <= state.cutoff()
-               && abs(pos.z() - asrRound(floorI(state.z()), T_SHIFT + pos.level())) <= state.cutoff();
+               && abs(pos.x() - asrRound(floorI(state.volumeX()), T_SHIFT + pos.level())) <= state.cutoff()
+               && abs(pos.z() - asrRound(floorI(state.volumeZ()), T_SHIFT + pos.level())) <= state.cutoff();
     }
 
-    @Override
-    protected Comparator<HeightmapPos> comparatorFor(@NonNull TrackingState state) {
+    /**
+     * Gets a {@link Comparator} which orders tile positions by their distance from the given {@link TrackingState}'s priority center.
+     *
+     * @param state the {@link TrackingState}
+     * @return a {@link Comparator} for sorting tile positions by their load priority
+     */
+    public static Comparator<HeightmapPos> priorityComparator(@NonNull TrackingState state) {
         class HeightmapPosAndComparator extends HeightmapPos implements Comparator<HeightmapPos> {
             public HeightmapPosAndComparator(int level, int x, int z) {
                 super(level, x, z);
@@ -166,6 +178,11 @@ public class HeightmapTracker extends AbstractTracker<HeightmapPos, HeightmapTil
             }
         }
 
-        return new HeightmapPosAndComparator(0, asrRound(floorI(state.x()), T_SHIFT), asrRound(floorI(state.z()), T_SHIFT));
+        return new HeightmapPosAndComparator(0, asrRound(floorI(state.priorityX()), T_SHIFT), asrRound(floorI(state.priorityZ()), T_SHIFT));
+    }
+
+    @Override
+    protected Comparator<HeightmapPos> comparatorFor(@NonNull TrackingState state) {
+        return priorityComparator(state);
     }
 }
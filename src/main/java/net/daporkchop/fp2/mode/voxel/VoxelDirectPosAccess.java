@@ -136,6 +136,12 @@ public class VoxelDirectPosAccess implements IFarDirectPosAccess<VoxelPos> {
         return PUnsafe.getInt(addr + (long) checkIndex(3, axis) * INT_SIZE);
     }
 
+    @Override
+    public VoxelPos fromAxes(int level, @NonNull int[] axes) {
+        checkArg(axes.length == 3, "expected 3 axes, but found %d", axes.length);
+        return new VoxelPos(level, axes[0], axes[1], axes[2]);
+    }
+
     @Override
     public boolean equalsPos(long addr1, long addr2) {
         return _x(addr1) == _x(addr2)
@@ -154,13 +154,17 @@ public class VoxelTile implements IFarTile {
     }
 
     public VoxelTile set(int x, int y, int z, VoxelData data) {
-        long indexAddr = this.addr + VoxelTile.index(x, y, z) * 2L;
+        int pos = VoxelTile.index(x, y, z);
+        long indexAddr = this.addr + pos * 2L;
         int index = PUnsafe.getShort(indexAddr);
         if (index < 0) { //index is unset, allocate new one
             PUnsafe.putShort(indexAddr, (short) (index = this.count++));
         }
 
-        VoxelTile.writeData(this.addr + VoxelTile.INDEX_SIZE + index * VoxelTile.ENTRY_DATA_SIZE_BYTES, data);
+        //entries are laid out the same way read() lays them out: prefixed with their position, using the full entry stride
+        long base = this.addr + VoxelTile.INDEX_SIZE + index * VoxelTile.ENTRY_FULL_SIZE_BYTES;
+        PUnsafe.putChar(base, (char) pos);
+        VoxelTile.writeData(base + 2L, data);
         return this;
     }
 
@@ -208,7 +212,7 @@ public class VoxelTile implements IFarTile {
             int index = PUnsafe.getShort(this.addr + i * 2L);
             if (index >= 0) { //voxel is set
                 dst.writeShortLE(i); //write position
-                long base = this.addr + VoxelTile.INDEX_SIZE + index * VoxelTile.ENTRY_DATA_SIZE_BYTES;
+                long base = this.addr + VoxelTile.INDEX_SIZE + index * VoxelTile.ENTRY_FULL_SIZE_BYTES + 2L;
                 for (int j = 0; j < VoxelTile.ENTRY_DATA_SIZE; j++) { //write voxel data
                     dst.writeIntLE(PUnsafe.getInt(base + j * 4L));
                 }
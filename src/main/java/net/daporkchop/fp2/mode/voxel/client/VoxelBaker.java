@@ -20,9 +20,12 @@
 
 package net.daporkchop.fp2.mode.voxel.client;
 
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
 import lombok.NonNull;
 import net.daporkchop.fp2.client.texture.TextureUVs;
 import net.daporkchop.fp2.compat.vanilla.FastRegistry;
+import net.daporkchop.fp2.config.FP2Config;
 import net.daporkchop.fp2.gl.attribute.AttributeWriter;
 import net.daporkchop.fp2.gl.draw.index.IndexWriter;
 import net.daporkchop.fp2.mode.common.client.bake.IRenderBaker;
@@ -34,6 +37,8 @@ import net.daporkchop.fp2.mode.voxel.client.struct.VoxelGlobalAttributes;
 import net.daporkchop.fp2.mode.voxel.client.struct.VoxelLocalAttributes;
 import net.daporkchop.fp2.util.SingleBiomeBlockAccess;
 import net.daporkchop.lib.common.pool.array.ArrayAllocator;
+import net.daporkchop.lib.common.reference.ReferenceStrength;
+import net.daporkchop.lib.common.reference.cache.Cached;
 import net.minecraft.block.state.IBlockState;
 import net.minecraft.init.Biomes;
 import net.minecraft.init.Blocks;
@@ -42,6 +47,7 @@ import net.minecraft.util.math.BlockPos;
 import java.util.Arrays;
 import java.util.stream.Stream;
 
+import static net.daporkchop.fp2.mode.common.client.RenderConstants.*;
 import static net.daporkchop.fp2.mode.voxel.VoxelConstants.*;
 import static net.daporkchop.fp2.util.BlockType.*;
 import static net.daporkchop.fp2.util.Constants.*;
@@ -53,6 +59,9 @@ import static net.daporkchop.fp2.util.math.MathUtil.*;
  * @author DaPorkchop_
  */
 public class VoxelBaker implements IRenderBaker<VoxelPos, VoxelTile, IndexedBakeOutput<VoxelGlobalAttributes, VoxelLocalAttributes>> {
+    //scratch objects are re-used between bakes, so that baking a tile doesn't allocate any garbage per voxel
+    protected static final Cached<BakeContext> CONTEXT = Cached.threadLocal(BakeContext::new, ReferenceStrength.WEAK);
+
     protected static int vertexMapIndex(int dx, int dy, int dz, int i, int edge) {
         int j = CONNECTION_INDICES[i];
         int ddx = dx + ((j >> 2) & 1);
@@ -100,6 +109,20 @@ public class VoxelBaker implements IRenderBaker<VoxelPos, VoxelTile, IndexedBake
         return Stream.of(arr);
     }
 
+    /**
+     * Gets the maximum distance (in voxels) by which the geometry of a tile at the given detail level may be moved by simplification.
+     * <p>
+     * Since a voxel at level {@code n} is {@code 2^n} blocks wide, the maximum error in blocks doubles with each level. Tiles at level 0 are never
+     * simplified.
+     *
+     * @param level           the detail level
+     * @param configuredError the configured maximum error, in eighths of a voxel (i.e. units of {@code 1 / POS_ONE})
+     * @return the maximum error, in voxels
+     */
+    public static double maxSimplificationError(int level, int configuredError) {
+        return level == 0 ? 0.0d : configuredError / (double) POS_ONE;
+    }
+
     @Override
     public void bake(@NonNull VoxelPos pos, @NonNull VoxelTile[] srcs, @NonNull IndexedBakeOutput<VoxelGlobalAttributes, VoxelLocalAttributes> output) {
         if (srcs[0] == null) {
@@ -107,7 +130,18 @@ public class VoxelBaker implements IRenderBaker<VoxelPos, VoxelTile, IndexedBake
         }
 
         //write globals
-        output.globals().put(new VoxelGlobalAttributes(pos.x(), pos.y(), pos.z(), pos.level()));
+        VoxelGlobalAttributes globals = CONTEXT.get().globals;
+        globals.tilePosX = pos.x();
+        globals.tilePosY = pos.y();
+        globals.tilePosZ = pos.z();
+        globals.tilePosLevel = pos.level();
+        output.globals().put(globals);
+
+        double maxError = maxSimplificationError(pos.level(), FP2Config.global().performance().voxelSimplificationError());
+        if (maxError > 0.0d) {
+            this.bakeSimplified(pos, srcs, maxError, output);
+            return;
+        }
 
         ArrayAllocator<int[]> alloc = ALLOC_INT.get();
         int[] map = alloc.atLeast(cb(T_VERTS) * EDGE_COUNT);
@@ -124,11 +158,141 @@ public class VoxelBaker implements IRenderBaker<VoxelPos, VoxelTile, IndexedBake
         }
     }
 
+    protected void bakeSimplified(VoxelPos pos, VoxelTile[] srcs, double maxError, IndexedBakeOutput<VoxelGlobalAttributes, VoxelLocalAttributes> output) {
+        //step 1: build and simplify the mesh without writing anything
+        VoxelMeshSimplifier mesh = this.buildMesh(srcs);
+        mesh.simplify(maxError);
+
+        ArrayAllocator<int[]> alloc = ALLOC_INT.get();
+        int[] map = alloc.atLeast(mesh.vertexCount());
+        Arrays.fill(map, 0, mesh.vertexCount(), -1);
+
+        try {
+            //step 2: write only the vertices which are still referenced by the simplified mesh
+            this.writeMeshVertices(mesh, srcs, pos.blockX(), pos.blockY(), pos.blockZ(), pos.level(), map, output.verts());
+
+            //step 3: write the simplified mesh's triangles
+            IndexWriter[] indices = output.indices();
+            mesh.forEachTriangle((tag, a, b, provoking) -> {
+                IndexWriter buf = indices[tag >> 1];
+                buf.appendTriangleAsQuad(map[a], map[b], map[provoking]);
+                if ((tag & 1) != 0) { //the triangle is double-sided, output it again with the opposite winding
+                    buf.appendTriangleAsQuad(map[b], map[a], map[provoking]);
+                }
+            });
+        } finally {
+            alloc.release(map);
+        }
+    }
+
+    /**
+     * Builds a {@link VoxelMeshSimplifier} containing the geometry which would be baked for the given source tiles.
+     * <p>
+     * Vertices which lie on the tile's border are locked, so that simplification can't open cracks between neighboring tiles. Each vertex' payload stores
+     * the voxel and edge it was generated from, which can be decoded using {@link #meshVertexX(int)}, {@link #meshVertexY(int)}, {@link #meshVertexZ(int)} and
+     * {@link #meshVertexEdge(int)}. Each triangle's tag stores its render type, shifted left by 1, and whether or not it is double-sided in the lowest bit.
+     * <p>
+     * This doesn't access any client state other than block render layers.
+     *
+     * @param srcs the source tiles
+     * @return the mesh
+     */
+    public VoxelMeshSimplifier buildMesh(@NonNull VoxelTile[] srcs) {
+        VoxelMeshSimplifier mesh = new VoxelMeshSimplifier();
+        if (srcs[0] == null) {
+            return mesh;
+        }
+
+        ArrayAllocator<int[]> alloc = ALLOC_INT.get();
+        int[] map = alloc.atLeast(cb(T_VERTS) * EDGE_COUNT);
+        Arrays.fill(map, 0, cb(T_VERTS) * EDGE_COUNT, -1);
+
+        try {
+            final VoxelData data = new VoxelData();
+
+            //vertices may only be merged if they would have the same attributes, excluding position. the color multiplier is ignored here, as it can only
+            //  vary between positions with the same state and biome for a handful of blocks, where the difference isn't noticeable at a distance anyway.
+            final Long2IntMap classes = new Long2IntOpenHashMap();
+            classes.defaultReturnValue(-1);
+
+            for (int i = 0; i < 8; i++) {
+                VoxelTile src = srcs[i];
+                if (src == null) {
+                    continue;
+                }
+
+                int maxDx = CONNECTION_INTERSECTION_VOLUMES[i * 3 + 0];
+                int maxDy = CONNECTION_INTERSECTION_VOLUMES[i * 3 + 1];
+                int maxDz = CONNECTION_INTERSECTION_VOLUMES[i * 3 + 2];
+                for (int dx = 0; dx < maxDx; dx++) {
+                    for (int dy = 0; dy < maxDy; dy++) {
+                        for (int dz = 0; dz < maxDz; dz++) {
+                            if (!src.get(dx, dy, dz, data)) {
+                                continue;
+                            }
+
+                            int x = dx + (((i >> 2) & 1) << T_SHIFT);
+                            int y = dy + (((i >> 1) & 1) << T_SHIFT);
+                            int z = dz + ((i & 1) << T_SHIFT);
+                            int baseMapIndex = ((x * T_VERTS + y) * T_VERTS + z) * 3;
+
+                            double px = ((x << POS_FRACT_SHIFT) + data.x) / (double) POS_ONE;
+                            double py = ((y << POS_FRACT_SHIFT) + data.y) / (double) POS_ONE;
+                            double pz = ((z << POS_FRACT_SHIFT) + data.z) / (double) POS_ONE;
+                            boolean locked = x == 0 || x == T_VOXELS || y == 0 || y == T_VOXELS || z == 0 || z == T_VOXELS;
+
+                            EDGES:
+                            for (int edge = 0; edge < EDGE_COUNT; edge++) {
+                                for (int j = 0; j < edge; j++) {
+                                    if (data.states[j] == data.states[edge]) { //states match, don't duplicate vertex data for this edge
+                                        map[baseMapIndex + edge] = map[baseMapIndex + j];
+                                        continue EDGES;
+                                    }
+                                }
+
+                                long classKey = ((long) data.states[edge] << 16L) | (data.biome << 8) | data.light;
+                                int attributeClass = classes.get(classKey);
+                                if (attributeClass < 0) {
+                                    classes.put(classKey, attributeClass = classes.size());
+                                }
+
+                                map[baseMapIndex + edge] = mesh.addVertex(px, py, pz, attributeClass, (x << 12) | (y << 7) | (z << 2) | edge, locked);
+                            }
+                        }
+                    }
+                }
+            }
+
+            this.forEachQuad(srcs[0], map, (renderType, doubleSided, oppositeCorner, c0, c1, provoking) ->
+                    mesh.addQuad((renderType << 1) | (doubleSided ? 1 : 0), oppositeCorner, c0, c1, provoking));
+        } finally {
+            alloc.release(map);
+        }
+        return mesh;
+    }
+
+    public static int meshVertexX(int payload) {
+        return payload >>> 12;
+    }
+
+    public static int meshVertexY(int payload) {
+        return (payload >> 7) & 0x1F;
+    }
+
+    public static int meshVertexZ(int payload) {
+        return (payload >> 2) & 0x1F;
+    }
+
+    public static int meshVertexEdge(int payload) {
+        return payload & 3;
+    }
+
     protected void writeVertices(VoxelTile[] srcs, int blockX, int blockY, int blockZ, int level, int[] map, AttributeWriter<VoxelLocalAttributes> verts) {
-        final BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
-        final SingleBiomeBlockAccess biomeAccess = new SingleBiomeBlockAccess();
-        final VoxelData data = new VoxelData();
-        final VoxelLocalAttributes attributes = new VoxelLocalAttributes();
+        final BakeContext ctx = CONTEXT.get();
+        final BlockPos.MutableBlockPos pos = ctx.pos;
+        final SingleBiomeBlockAccess biomeAccess = ctx.biomeAccess;
+        final VoxelData data = ctx.vertexData;
+        final VoxelLocalAttributes attributes = ctx.attributes;
 
         int indexCounter = 0;
         for (int i = 0; i < 8; i++) {
@@ -154,28 +318,41 @@ public class VoxelBaker implements IRenderBaker<VoxelPos, VoxelTile, IndexedBake
         }
     }
 
-    protected int writeVertex(int baseX, int baseY, int baseZ, int level, int x, int y, int z, VoxelData data, AttributeWriter<VoxelLocalAttributes> vertices, BlockPos.MutableBlockPos pos, SingleBiomeBlockAccess biomeAccess, VoxelLocalAttributes attributes, int[] map, int indexCounter) {
-        baseX += (x & T_VOXELS) << level;
-        baseY += (y & T_VOXELS) << level;
-        baseZ += (z & T_VOXELS) << level;
+    protected void writeMeshVertices(VoxelMeshSimplifier mesh, VoxelTile[] srcs, int blockX, int blockY, int blockZ, int level, int[] map, AttributeWriter<VoxelLocalAttributes> verts) {
+        final BakeContext ctx = CONTEXT.get();
+        final BlockPos.MutableBlockPos pos = ctx.pos;
+        final SingleBiomeBlockAccess biomeAccess = ctx.biomeAccess;
+        final VoxelData data = ctx.vertexData;
+        final VoxelLocalAttributes attributes = ctx.attributes;
+
+        mesh.forEachTriangle((tag, a, b, provoking) -> {
+            this.writeMeshVertex(mesh, a, srcs, blockX, blockY, blockZ, level, data, verts, pos, biomeAccess, attributes, map);
+            this.writeMeshVertex(mesh, b, srcs, blockX, blockY, blockZ, level, data, verts, pos, biomeAccess, attributes, map);
+            this.writeMeshVertex(mesh, provoking, srcs, blockX, blockY, blockZ, level, data, verts, pos, biomeAccess, attributes, map);
+        });
+    }
 
-        int baseMapIndex = ((x * T_VERTS + y) * T_VERTS + z) * 3;
+    protected void writeMeshVertex(VoxelMeshSimplifier mesh, int vertex, VoxelTile[] srcs, int blockX, int blockY, int blockZ, int level, VoxelData data, AttributeWriter<VoxelLocalAttributes> vertices, BlockPos.MutableBlockPos pos, SingleBiomeBlockAccess biomeAccess, VoxelLocalAttributes attributes, int[] map) {
+        if (map[vertex] >= 0) { //the vertex has already been written
+            return;
+        }
 
-        final int blockX = baseX + ((x & ~(x & T_VOXELS)) << level);
-        final int blockY = baseY + ((y & ~(y & T_VOXELS)) << level);
-        final int blockZ = baseZ + ((z & ~(z & T_VOXELS)) << level);
+        //decode the voxel which the vertex was generated from and read it again
+        int payload = mesh.payload(vertex);
+        int x = meshVertexX(payload);
+        int y = meshVertexY(payload);
+        int z = meshVertexZ(payload);
+        srcs[((x >> T_SHIFT) << 2) | ((y >> T_SHIFT) << 1) | (z >> T_SHIFT)].get(x & T_MASK, y & T_MASK, z & T_MASK, data);
 
-        pos.setPos(blockX, blockY, blockZ);
-        biomeAccess.biome(FastRegistry.getBiome(data.biome, Biomes.PLAINS));
+        this.prepareVertex(blockX, blockY, blockZ, level, x, y, z, data, pos, biomeAccess, attributes);
+        this.prepareState(data.states[meshVertexEdge(payload)], data.light, pos, biomeAccess, attributes);
+        map[vertex] = vertices.put(attributes);
+    }
 
-        int blockLight = data.light & 0xF;
-        int skyLight = data.light >> 4;
-        attributes.lightBlock = (byte) (blockLight | (blockLight << 4));
-        attributes.lightSky = (byte) (skyLight | (skyLight << 4));
+    protected int writeVertex(int baseX, int baseY, int baseZ, int level, int x, int y, int z, VoxelData data, AttributeWriter<VoxelLocalAttributes> vertices, BlockPos.MutableBlockPos pos, SingleBiomeBlockAccess biomeAccess, VoxelLocalAttributes attributes, int[] map, int indexCounter) {
+        int baseMapIndex = ((x * T_VERTS + y) * T_VERTS + z) * 3;
 
-        attributes.posX = (byte) ((x << POS_FRACT_SHIFT) + data.x);
-        attributes.posY = (byte) ((y << POS_FRACT_SHIFT) + data.y);
-        attributes.posZ = (byte) ((z << POS_FRACT_SHIFT) + data.z);
+        this.prepareVertex(baseX, baseY, baseZ, level, x, y, z, data, pos, biomeAccess, attributes);
 
         EDGES:
         for (int edge = 0; edge < EDGE_COUNT; edge++) {
@@ -186,17 +363,47 @@ public class VoxelBaker implements IRenderBaker<VoxelPos, VoxelTile, IndexedBake
                 }
             }
 
-            IBlockState state = FastRegistry.getBlockState(data.states[edge]);
-            attributes.state = TextureUVs.STATEID_TO_INDEXID.get(state);
-            attributes.color = MC.getBlockColors().colorMultiplier(state, biomeAccess, pos, 0);
-
+            this.prepareState(data.states[edge], data.light, pos, biomeAccess, attributes);
             map[baseMapIndex + edge] = vertices.put(attributes);
         }
         return indexCounter;
     }
 
+    protected void prepareVertex(int baseX, int baseY, int baseZ, int level, int x, int y, int z, VoxelData data, BlockPos.MutableBlockPos pos, SingleBiomeBlockAccess biomeAccess, VoxelLocalAttributes attributes) {
+        baseX += (x & T_VOXELS) << level;
+        baseY += (y & T_VOXELS) << level;
+        baseZ += (z & T_VOXELS) << level;
+
+        final int blockX = baseX + ((x & ~(x & T_VOXELS)) << level);
+        final int blockY = baseY + ((y & ~(y & T_VOXELS)) << level);
+        final int blockZ = baseZ + ((z & ~(z & T_VOXELS)) << level);
+
+        pos.setPos(blockX, blockY, blockZ);
+        biomeAccess.biome(FastRegistry.getBiome(data.biome, Biomes.PLAINS));
+
+        attributes.posX = (byte) ((x << POS_FRACT_SHIFT) + data.x);
+        attributes.posY = (byte) ((y << POS_FRACT_SHIFT) + data.y);
+        attributes.posZ = (byte) ((z << POS_FRACT_SHIFT) + data.z);
+    }
+
+    protected void prepareState(int stateId, int light, BlockPos pos, SingleBiomeBlockAccess biomeAccess, VoxelLocalAttributes attributes) {
+        IBlockState state = FastRegistry.getBlockState(stateId);
+        attributes.state = TextureUVs.STATEID_TO_INDEXID.get(state);
+        attributes.color = packColorAndLight(MC.getBlockColors().colorMultiplier(state, biomeAccess, pos, 0), light);
+    }
+
     protected void writeIndices(VoxelTile src, int[] map, IndexWriter[] indices) {
-        final VoxelData data = new VoxelData();
+        this.forEachQuad(src, map, (renderType, doubleSided, oppositeCorner, c0, c1, provoking) -> {
+            IndexWriter buf = indices[renderType];
+            buf.appendQuad(oppositeCorner, c0, c1, provoking);
+            if (doubleSided) { //output the face again, flipped around
+                buf.appendQuad(oppositeCorner, c1, c0, provoking);
+            }
+        });
+    }
+
+    protected void forEachQuad(VoxelTile src, int[] map, QuadConsumer action) {
+        final VoxelData data = CONTEXT.get().quadData;
 
         for (int j = 0; j < src.count(); j++) {
             int voxelPos = src.get(j, data);
@@ -223,26 +430,59 @@ public class VoxelBaker implements IRenderBaker<VoxelPos, VoxelTile, IndexedBake
                 }
 
                 IBlockState state = FastRegistry.getBlockState(data.states[edge]);
-                IndexWriter buf = indices[renderType(state)];
 
                 boolean water = state.getBlock() == Blocks.WATER;
                 if (water) {
                     edges |= EDGE_DIR_BOTH << (edge << 1);
                 }
 
+                boolean doubleSided = false;
                 if ((edges & (EDGE_DIR_NEGATIVE << (edge << 1))) != 0) { //the face has the negative bit set
-                    if ((edges & (EDGE_DIR_POSITIVE << (edge << 1))) != 0) { //the positive bit is set as well, output the face once before flipping
-                        buf.appendQuad(oppositeCorner, c0, c1, provoking);
+                    if ((edges & (EDGE_DIR_POSITIVE << (edge << 1))) != 0) { //the positive bit is set as well, the face is visible from both sides
+                        doubleSided = true;
+                    } else { //flip the face around
+                        int i = c0;
+                        c0 = c1;
+                        c1 = i;
                     }
-
-                    //flip the face around
-                    int i = c0;
-                    c0 = c1;
-                    c1 = i;
                 }
 
-                buf.appendQuad(oppositeCorner, c0, c1, provoking);
+                action.accept(renderType(state), doubleSided, oppositeCorner, c0, c1, provoking);
             }
         }
     }
+
+    /**
+     * Per-thread scratch objects used while baking.
+     *
+     * @author DaPorkchop_
+     */
+    protected static final class BakeContext {
+        protected final BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+        protected final SingleBiomeBlockAccess biomeAccess = new SingleBiomeBlockAccess();
+
+        protected final VoxelData vertexData = new VoxelData();
+        protected final VoxelData quadData = new VoxelData(); //separate from vertexData, as quads may be visited while vertices are being written
+
+        protected final VoxelGlobalAttributes globals = new VoxelGlobalAttributes();
+        protected final VoxelLocalAttributes attributes = new VoxelLocalAttributes();
+    }
+
+    /**
+     * Consumes quads generated from a tile.
+     *
+     * @author DaPorkchop_
+     */
+    @FunctionalInterface
+    protected interface QuadConsumer {
+        /**
+         * @param renderType     the quad's render type
+         * @param doubleSided    whether or not the quad is visible from both sides. If {@code true}, the quad must also be output with the opposite winding
+         * @param oppositeCorner the index of the vertex in the corner opposite the provoking vertex
+         * @param c0             the index of one of the edge vertices
+         * @param c1             the index of the other edge vertex
+         * @param provoking      the index of the provoking vertex
+         */
+        void accept(int renderType, boolean doubleSided, int oppositeCorner, int c0, int c1, int provoking);
+    }
 }
@@ -0,0 +1,691 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package net.daporkchop.fp2.mode.voxel.client;
+
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import lombok.RequiredArgsConstructor;
+
+import java.util.PriorityQueue;
+
+import static java.lang.Math.*;
+import static net.daporkchop.lib.common.util.PValidation.*;
+
+/**
+ * Simplifies a triangle mesh by repeatedly collapsing vertices into one of their neighbors (half-edge collapse), using quadric error metrics to decide
+ * which collapses to try first.
+ * <p>
+ * Vertices are never moved, they can only be removed. Every removed vertex is guaranteed to remain within the error bound of the simplified mesh: each
+ * removed vertex is remembered by the vertex it was collapsed into, and a collapse is rejected if it would move any remembered vertex too far away from
+ * the surrounding triangles.
+ * <p>
+ * The following vertices are never removed:
+ * <ul>
+ *     <li>vertices which were explicitly locked when they were added (e.g. vertices shared with neighboring tiles)</li>
+ *     <li>vertices on an open boundary of the mesh, or on a non-manifold edge</li>
+ * </ul>
+ * A vertex may only be collapsed into a neighbor with the same attribute class. Since triangles are rendered with the attributes of their provoking vertex,
+ * this ensures that simplification doesn't change the appearance of any triangle other than its shape.
+ * <p>
+ * Instances are not thread-safe.
+ *
+ * @author DaPorkchop_
+ */
+public class VoxelMeshSimplifier {
+    protected static final double EPSILON = 1.0e-9d;
+
+    /**
+     * The minimum cosine of the angle between a triangle's normal vectors before and after a collapse. Collapses which would rotate a triangle more than
+     * this are rejected, which prevents triangles from folding over.
+     */
+    protected static final double MIN_NORMAL_COS = 0.25d;
+
+    //vertices
+    protected final DoubleArrayList positions = new DoubleArrayList();
+    protected final IntArrayList classes = new IntArrayList();
+    protected final IntArrayList payloads = new IntArrayList();
+    protected final IntArrayList flags = new IntArrayList();
+
+    protected static final int FLAG_LOCKED = 1 << 0;
+    protected static final int FLAG_REMOVED = 1 << 1;
+
+    //triangles, stored as (a, b, provoking, tag)
+    protected final IntArrayList triangles = new IntArrayList();
+
+    //simplification state, only valid during simplify()
+    protected IntArrayList[] incident;
+    protected IntArrayList[] absorbed;
+    protected double[] quadrics;
+    protected int[] versions;
+
+    /**
+     * @return the number of vertices which have been added
+     */
+    public int vertexCount() {
+        return this.classes.size();
+    }
+
+    /**
+     * @return the total number of triangles which have been added
+     */
+    public int triangleCapacity() {
+        return this.triangles.size() >> 2;
+    }
+
+    /**
+     * @return the number of triangles which haven't been removed by simplification
+     */
+    public int triangleCount() {
+        int count = 0;
+        for (int t = 0, capacity = this.triangleCapacity(); t < capacity; t++) {
+            if (this.triangleAlive(t)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Adds a new vertex.
+     *
+     * @param x              the vertex' X coordinate
+     * @param y              the vertex' Y coordinate
+     * @param z              the vertex' Z coordinate
+     * @param attributeClass the vertex' attribute class. Vertices may only be merged with other vertices in the same class
+     * @param payload        an arbitrary value associated with the vertex, for use by the caller
+     * @param locked         whether or not the vertex may never be removed
+     * @return the new vertex' index
+     */
+    public int addVertex(double x, double y, double z, int attributeClass, int payload, boolean locked) {
+        int index = this.classes.size();
+        this.positions.add(x);
+        this.positions.add(y);
+        this.positions.add(z);
+        this.classes.add(attributeClass);
+        this.payloads.add(payload);
+        this.flags.add(locked ? FLAG_LOCKED : 0);
+        return index;
+    }
+
+    /**
+     * Adds a new triangle.
+     *
+     * @param tag       an arbitrary value associated with the triangle, for use by the caller
+     * @param a         the index of the first vertex
+     * @param b         the index of the second vertex
+     * @param provoking the index of the third vertex, which is also the provoking vertex
+     */
+    public void addTriangle(int tag, int a, int b, int provoking) {
+        checkIndex(this.vertexCount(), a);
+        checkIndex(this.vertexCount(), b);
+        checkIndex(this.vertexCount(), provoking);
+
+        this.triangles.add(a);
+        this.triangles.add(b);
+        this.triangles.add(provoking);
+        this.triangles.add(tag);
+    }
+
+    /**
+     * Adds a new quad, in the same vertex order as accepted by {@code IndexWriter#appendQuad(int, int, int, int)}.
+     * <p>
+     * The quad is split into two triangles along the diagonal between the opposite corner and the provoking vertex, so that the provoking vertex is part of
+     * both triangles.
+     *
+     * @param tag            an arbitrary value associated with both of the quad's triangles, for use by the caller
+     * @param oppositeCorner the index of the vertex in the corner opposite the provoking vertex
+     * @param c0             the index of one of the edge vertices
+     * @param c1             the index of the other edge vertex
+     * @param provoking      the index of the provoking vertex
+     */
+    public void addQuad(int tag, int oppositeCorner, int c0, int c1, int provoking) {
+        this.addTriangle(tag, oppositeCorner, c0, provoking);
+        this.addTriangle(tag, c1, oppositeCorner, provoking);
+    }
+
+    public double x(int vertex) {
+        return this.positions.getDouble(vertex * 3 + 0);
+    }
+
+    public double y(int vertex) {
+        return this.positions.getDouble(vertex * 3 + 1);
+    }
+
+    public double z(int vertex) {
+        return this.positions.getDouble(vertex * 3 + 2);
+    }
+
+    public int payload(int vertex) {
+        return this.payloads.getInt(vertex);
+    }
+
+    public boolean locked(int vertex) {
+        return (this.flags.getInt(vertex) & FLAG_LOCKED) != 0;
+    }
+
+    public boolean removed(int vertex) {
+        return (this.flags.getInt(vertex) & FLAG_REMOVED) != 0;
+    }
+
+    protected boolean triangleAlive(int t) {
+        return this.triangles.getInt(t << 2) >= 0;
+    }
+
+    /**
+     * Iterates over all of the triangles which haven't been removed.
+     *
+     * @param action the action to run for each triangle
+     */
+    public void forEachTriangle(TriangleConsumer action) {
+        for (int t = 0, capacity = this.triangleCapacity(); t < capacity; t++) {
+            if (this.triangleAlive(t)) {
+                int base = t << 2;
+                action.accept(this.triangles.getInt(base + 3), this.triangles.getInt(base + 0), this.triangles.getInt(base + 1), this.triangles.getInt(base + 2));
+            }
+        }
+    }
+
+    /**
+     * Simplifies the mesh.
+     *
+     * @param maxError the maximum distance any removed vertex may be from the simplified mesh
+     * @return the number of vertices which were removed
+     */
+    public int simplify(double maxError) {
+        checkArg(maxError >= 0.0d, "maxError (%s) may not be negative", maxError);
+
+        int vertexCount = this.vertexCount();
+        int triangleCapacity = this.triangleCapacity();
+
+        this.incident = new IntArrayList[vertexCount];
+        this.absorbed = new IntArrayList[vertexCount];
+        this.quadrics = new double[vertexCount * 10];
+        this.versions = new int[vertexCount];
+        try {
+            for (int v = 0; v < vertexCount; v++) {
+                this.incident[v] = new IntArrayList();
+            }
+            for (int t = 0; t < triangleCapacity; t++) {
+                if (this.triangleAlive(t)) {
+                    for (int i = 0; i < 3; i++) {
+                        this.incident[this.triangles.getInt((t << 2) + i)].add(t);
+                    }
+                    this.accumulateQuadric(t);
+                }
+            }
+            this.lockBoundaryVertices();
+
+            //seed the queue with every possible collapse
+            PriorityQueue<Candidate> queue = new PriorityQueue<>();
+            for (int u = 0; u < vertexCount; u++) {
+                this.pushCandidates(queue, u);
+            }
+
+            double maxErrorSq = maxError * maxError + EPSILON;
+            int removed = 0;
+            for (Candidate candidate; (candidate = queue.poll()) != null; ) {
+                int u = candidate.u;
+                int v = candidate.v;
+                if (this.removed(u) || this.removed(v) || this.versions[u] != candidate.versionU || this.versions[v] != candidate.versionV) {
+                    continue; //the candidate is stale
+                }
+
+                if (this.canCollapse(u, v, maxErrorSq)) {
+                    this.collapse(u, v, queue);
+                    removed++;
+                }
+            }
+            return removed;
+        } finally {
+            this.incident = null;
+            this.absorbed = null;
+            this.quadrics = null;
+            this.versions = null;
+        }
+    }
+
+    protected void lockBoundaryVertices() {
+        //count the number of times each directed edge occurs
+        Long2IntOpenHashMap edges = new Long2IntOpenHashMap();
+        for (int t = 0, capacity = this.triangleCapacity(); t < capacity; t++) {
+            if (this.triangleAlive(t)) {
+                for (int i = 0; i < 3; i++) {
+                    edges.addTo(edgeKey(this.vertex(t, i), this.vertex(t, (i + 1) % 3)), 1);
+                }
+            }
+        }
+
+        //a vertex is on a boundary if any of its edges doesn't have exactly one opposite edge
+        for (Long2IntMap.Entry entry : edges.long2IntEntrySet()) {
+            long key = entry.getLongKey();
+            int a = (int) (key >>> 32);
+            int b = (int) key;
+            if (entry.getIntValue() != 1 || edges.get(edgeKey(b, a)) != 1) {
+                this.flags.set(a, this.flags.getInt(a) | FLAG_LOCKED);
+                this.flags.set(b, this.flags.getInt(b) | FLAG_LOCKED);
+            }
+        }
+    }
+
+    protected static long edgeKey(int a, int b) {
+        return ((long) a << 32) | (b & 0xFFFFFFFFL);
+    }
+
+    protected int vertex(int t, int i) {
+        return this.triangles.getInt((t << 2) + i);
+    }
+
+    protected void pushCandidates(PriorityQueue<Candidate> queue, int u) {
+        if (this.locked(u) || this.removed(u)) {
+            return;
+        }
+
+        int cls = this.classes.getInt(u);
+        IntSet neighbors = this.neighbors(u);
+        for (int v : neighbors) {
+            if (this.classes.getInt(v) == cls) {
+                queue.add(new Candidate(u, v, this.versions[u], this.versions[v], this.quadricError(u, v)));
+            }
+        }
+    }
+
+    protected IntSet neighbors(int u) {
+        IntSet neighbors = new IntOpenHashSet();
+        IntArrayList incident = this.incident[u];
+        for (int i = 0, size = incident.size(); i < size; i++) {
+            int t = incident.getInt(i);
+            for (int j = 0; j < 3; j++) {
+                neighbors.add(this.vertex(t, j));
+            }
+        }
+        neighbors.remove(u);
+        return neighbors;
+    }
+
+    protected void accumulateQuadric(int t) {
+        int a = this.vertex(t, 0);
+        int b = this.vertex(t, 1);
+        int c = this.vertex(t, 2);
+
+        double ux = this.x(b) - this.x(a);
+        double uy = this.y(b) - this.y(a);
+        double uz = this.z(b) - this.z(a);
+        double vx = this.x(c) - this.x(a);
+        double vy = this.y(c) - this.y(a);
+        double vz = this.z(c) - this.z(a);
+        double nx = uy * vz - uz * vy;
+        double ny = uz * vx - ux * vz;
+        double nz = ux * vy - uy * vx;
+        double len = sqrt(nx * nx + ny * ny + nz * nz);
+        if (len < EPSILON) { //degenerate triangle
+            return;
+        }
+
+        //area-weighted plane quadric
+        double area = len * 0.5d;
+        nx /= len;
+        ny /= len;
+        nz /= len;
+        double d = -(nx * this.x(a) + ny * this.y(a) + nz * this.z(a));
+
+        double[] q = { nx * nx, nx * ny, nx * nz, nx * d, ny * ny, ny * nz, ny * d, nz * nz, nz * d, d * d };
+        for (int i = 0; i < 3; i++) {
+            int base = this.vertex(t, i) * 10;
+            for (int j = 0; j < 10; j++) {
+                this.quadrics[base + j] += q[j] * area;
+            }
+        }
+    }
+
+    protected double quadricError(int u, int v) {
+        double x = this.x(v);
+        double y = this.y(v);
+        double z = this.z(v);
+        int bu = u * 10;
+        int bv = v * 10;
+
+        double[] q = this.quadrics;
+        double q0 = q[bu + 0] + q[bv + 0];
+        double q1 = q[bu + 1] + q[bv + 1];
+        double q2 = q[bu + 2] + q[bv + 2];
+        double q3 = q[bu + 3] + q[bv + 3];
+        double q4 = q[bu + 4] + q[bv + 4];
+        double q5 = q[bu + 5] + q[bv + 5];
+        double q6 = q[bu + 6] + q[bv + 6];
+        double q7 = q[bu + 7] + q[bv + 7];
+        double q8 = q[bu + 8] + q[bv + 8];
+        double q9 = q[bu + 9] + q[bv + 9];
+
+        return q0 * x * x + 2.0d * q1 * x * y + 2.0d * q2 * x * z + 2.0d * q3 * x
+               + q4 * y * y + 2.0d * q5 * y * z + 2.0d * q6 * y
+               + q7 * z * z + 2.0d * q8 * z
+               + q9;
+    }
+
+    protected boolean canCollapse(int u, int v, double maxErrorSq) {
+        IntArrayList incidentU = this.incident[u];
+
+        //link condition: the only vertices adjacent to both u and v must be the ones opposite the edge (u, v), otherwise the collapse would make the mesh
+        //  non-manifold
+        IntSet neighborsU = this.neighbors(u);
+        IntSet neighborsV = this.neighbors(v);
+        IntSet opposite = new IntOpenHashSet();
+        for (int i = 0, size = incidentU.size(); i < size; i++) {
+            int t = incidentU.getInt(i);
+            if (this.triangleContains(t, v)) {
+                for (int j = 0; j < 3; j++) {
+                    opposite.add(this.vertex(t, j));
+                }
+            }
+        }
+        opposite.remove(u);
+        opposite.remove(v);
+        if (opposite.isEmpty()) { //u and v aren't connected by an edge
+            return false;
+        }
+        for (int w : neighborsU) {
+            if (w != v && neighborsV.contains(w) && !opposite.contains(w)) {
+                return false;
+            }
+        }
+
+        //make sure that none of the triangles which would be moved fold over
+        for (int i = 0, size = incidentU.size(); i < size; i++) {
+            int t = incidentU.getInt(i);
+            if (!this.triangleContains(t, v) && !this.normalPreserved(t, u, v)) {
+                return false;
+            }
+        }
+
+        //make sure that every vertex which has been removed so far is still close enough to the triangles around the vertex it was collapsed into
+        if (!this.withinError(u, v, u, v, maxErrorSq) || !this.absorbedWithinError(u, v, u, v, maxErrorSq) || !this.absorbedWithinError(v, v, u, v, maxErrorSq)) {
+            return false;
+        }
+        for (int w : neighborsU) {
+            if (w != v && !this.absorbedWithinError(w, w, u, v, maxErrorSq)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    protected boolean triangleContains(int t, int vertex) {
+        return this.vertex(t, 0) == vertex || this.vertex(t, 1) == vertex || this.vertex(t, 2) == vertex;
+    }
+
+    protected boolean normalPreserved(int t, int u, int v) {
+        double[] before = this.normal(t, -1, -1);
+        double[] after = this.normal(t, u, v);
+        double lenBefore = sqrt(before[0] * before[0] + before[1] * before[1] + before[2] * before[2]);
+        double lenAfter = sqrt(after[0] * after[0] + after[1] * after[1] + after[2] * after[2]);
+        if (lenAfter < EPSILON) { //the triangle would become degenerate
+            return false;
+        } else if (lenBefore < EPSILON) { //the triangle was already degenerate
+            return true;
+        }
+        return (before[0] * after[0] + before[1] * after[1] + before[2] * after[2]) / (lenBefore * lenAfter) >= MIN_NORMAL_COS;
+    }
+
+    /**
+     * Computes the (non-normalized) normal vector of the given triangle, optionally replacing one of its vertices with another.
+     */
+    protected double[] normal(int t, int from, int to) {
+        int a = this.vertex(t, 0);
+        int b = this.vertex(t, 1);
+        int c = this.vertex(t, 2);
+        if (a == from) {
+            a = to;
+        }
+        if (b == from) {
+            b = to;
+        }
+        if (c == from) {
+            c = to;
+        }
+
+        double ux = this.x(b) - this.x(a);
+        double uy = this.y(b) - this.y(a);
+        double uz = this.z(b) - this.z(a);
+        double vx = this.x(c) - this.x(a);
+        double vy = this.y(c) - this.y(a);
+        double vz = this.z(c) - this.z(a);
+        return new double[]{ uy * vz - uz * vy, uz * vx - ux * vz, ux * vy - uy * vx };
+    }
+
+    /**
+     * Checks whether all of the vertices absorbed by {@code owner} would be within the error bound of the triangles around {@code center} after collapsing
+     * {@code u} into {@code v}.
+     */
+    protected boolean absorbedWithinError(int owner, int center, int u, int v, double maxErrorSq) {
+        IntArrayList absorbed = this.absorbed[owner];
+        if (absorbed != null) {
+            for (int i = 0, size = absorbed.size(); i < size; i++) {
+                if (!this.withinError(absorbed.getInt(i), center, u, v, maxErrorSq)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether the given point would be within the error bound of the triangles around {@code center} after collapsing {@code u} into {@code v}.
+     */
+    protected boolean withinError(int point, int center, int u, int v, double maxErrorSq) {
+        double px = this.x(point);
+        double py = this.y(point);
+        double pz = this.z(point);
+
+        if (center == v) { //after the collapse, v will additionally be part of every triangle which currently contains u
+            return this.withinErrorOf(this.incident[v], px, py, pz, u, v, maxErrorSq) || this.withinErrorOf(this.incident[u], px, py, pz, u, v, maxErrorSq);
+        } else {
+            return this.withinErrorOf(this.incident[center], px, py, pz, u, v, maxErrorSq);
+        }
+    }
+
+    protected boolean withinErrorOf(IntArrayList triangles, double px, double py, double pz, int u, int v, double maxErrorSq) {
+        for (int i = 0, size = triangles.size(); i < size; i++) {
+            int t = triangles.getInt(i);
+            int a = this.vertex(t, 0);
+            int b = this.vertex(t, 1);
+            int c = this.vertex(t, 2);
+            if ((a == u || b == u || c == u) && (a == v || b == v || c == v)) { //this triangle will be removed by the collapse
+                continue;
+            }
+
+            if (a == u) {
+                a = v;
+            }
+            if (b == u) {
+                b = v;
+            }
+            if (c == u) {
+                c = v;
+            }
+            if (this.pointTriangleDistanceSq(px, py, pz, a, b, c) <= maxErrorSq) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    protected double pointTriangleDistanceSq(double px, double py, double pz, int a, int b, int c) {
+        return pointTriangleDistanceSq(px, py, pz,
+                this.x(a), this.y(a), this.z(a),
+                this.x(b), this.y(b), this.z(b),
+                this.x(c), this.y(c), this.z(c));
+    }
+
+    /**
+     * Computes the squared distance between a point and a triangle.
+     * <p>
+     * Based on the closest point algorithm from Real-Time Collision Detection (Ericson, 2005).
+     */
+    public static double pointTriangleDistanceSq(double px, double py, double pz, double ax, double ay, double az, double bx, double by, double bz, double cx, double cy, double cz) {
+        double abx = bx - ax, aby = by - ay, abz = bz - az;
+        double acx = cx - ax, acy = cy - ay, acz = cz - az;
+        double apx = px - ax, apy = py - ay, apz = pz - az;
+
+        double qx, qy, qz;
+        double d1 = abx * apx + aby * apy + abz * apz;
+        double d2 = acx * apx + acy * apy + acz * apz;
+        if (d1 <= 0.0d && d2 <= 0.0d) { //vertex region a
+            qx = ax;
+            qy = ay;
+            qz = az;
+        } else {
+            double bpx = px - bx, bpy = py - by, bpz = pz - bz;
+            double d3 = abx * bpx + aby * bpy + abz * bpz;
+            double d4 = acx * bpx + acy * bpy + acz * bpz;
+            double cpx = px - cx, cpy = py - cy, cpz = pz - cz;
+            double d5 = abx * cpx + aby * cpy + abz * cpz;
+            double d6 = acx * cpx + acy * cpy + acz * cpz;
+
+            double vc = d1 * d4 - d3 * d2;
+            double vb = d5 * d2 - d1 * d6;
+            double va = d3 * d6 - d5 * d4;
+            if (d3 >= 0.0d && d4 <= d3) { //vertex region b
+                qx = bx;
+                qy = by;
+                qz = bz;
+            } else if (vc <= 0.0d && d1 >= 0.0d && d3 <= 0.0d) { //edge region ab
+                double t = d1 / (d1 - d3);
+                qx = ax + abx * t;
+                qy = ay + aby * t;
+                qz = az + abz * t;
+            } else if (d6 >= 0.0d && d5 <= d6) { //vertex region c
+                qx = cx;
+                qy = cy;
+                qz = cz;
+            } else if (vb <= 0.0d && d2 >= 0.0d && d6 <= 0.0d) { //edge region ac
+                double t = d2 / (d2 - d6);
+                qx = ax + acx * t;
+                qy = ay + acy * t;
+                qz = az + acz * t;
+            } else if (va <= 0.0d && (d4 - d3) >= 0.0d && (d5 - d6) >= 0.0d) { //edge region bc
+                double t = (d4 - d3) / ((d4 - d3) + (d5 - d6));
+                qx = bx + (cx - bx) * t;
+                qy = by + (cy - by) * t;
+                qz = bz + (cz - bz) * t;
+            } else { //inside the face
+                double denom = va + vb + vc;
+                if (abs(denom) < EPSILON) { //degenerate triangle, fall back to the nearest vertex
+                    return min(apx * apx + apy * apy + apz * apz, min(bpx * bpx + bpy * bpy + bpz * bpz, cpx * cpx + cpy * cpy + cpz * cpz));
+                }
+                double v = vb / denom;
+                double w = vc / denom;
+                qx = ax + abx * v + acx * w;
+                qy = ay + aby * v + acy * w;
+                qz = az + abz * v + acz * w;
+            }
+        }
+
+        double dx = px - qx;
+        double dy = py - qy;
+        double dz = pz - qz;
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    protected void collapse(int u, int v, PriorityQueue<Candidate> queue) {
+        IntSet neighborsU = this.neighbors(u);
+
+        //update triangles
+        IntArrayList incidentU = this.incident[u];
+        for (int i = 0, size = incidentU.size(); i < size; i++) {
+            int t = incidentU.getInt(i);
+            int base = t << 2;
+            if (this.triangleContains(t, v)) { //the triangle becomes degenerate, remove it
+                for (int j = 0; j < 3; j++) {
+                    int w = this.triangles.getInt(base + j);
+                    if (w != u) {
+                        this.incident[w].rem(t);
+                    }
+                }
+                this.triangles.set(base + 0, -1);
+            } else { //replace u with v
+                for (int j = 0; j < 3; j++) {
+                    if (this.triangles.getInt(base + j) == u) {
+                        this.triangles.set(base + j, v);
+                    }
+                }
+                this.incident[v].add(t);
+            }
+        }
+        incidentU.clear();
+
+        //v now represents u and everything u represented
+        IntArrayList absorbedV = this.absorbed[v];
+        if (absorbedV == null) {
+            absorbedV = this.absorbed[v] = new IntArrayList();
+        }
+        absorbedV.add(u);
+        if (this.absorbed[u] != null) {
+            absorbedV.addAll(this.absorbed[u]);
+            this.absorbed[u] = null;
+        }
+        for (int j = 0; j < 10; j++) {
+            this.quadrics[v * 10 + j] += this.quadrics[u * 10 + j];
+        }
+        this.flags.set(u, this.flags.getInt(u) | FLAG_REMOVED);
+
+        //every collapse involving one of the affected vertices needs to be re-evaluated
+        neighborsU.add(v);
+        for (int w : neighborsU) {
+            this.versions[w]++;
+        }
+        for (int w : neighborsU) {
+            this.pushCandidates(queue, w);
+        }
+    }
+
+    /**
+     * A possible collapse.
+     *
+     * @author DaPorkchop_
+     */
+    @RequiredArgsConstructor
+    protected static final class Candidate implements Comparable<Candidate> {
+        protected final int u;
+        protected final int v;
+        protected final int versionU;
+        protected final int versionV;
+        protected final double cost;
+
+        @Override
+        public int compareTo(Candidate o) {
+            return Double.compare(this.cost, o.cost);
+        }
+    }
+
+    /**
+     * Consumes triangles.
+     *
+     * @author DaPorkchop_
+     */
+    @FunctionalInterface
+    public interface TriangleConsumer {
+        void accept(int tag, int a, int b, int provoking);
+    }
+}
@@ -27,6 +27,12 @@ import net.daporkchop.fp2.mode.common.client.strategy.IFarRenderStrategy;
 import net.daporkchop.fp2.mode.voxel.VoxelPos;
 import net.daporkchop.fp2.mode.voxel.VoxelTile;
 
+import java.util.Comparator;
+
+import static net.daporkchop.fp2.util.Constants.*;
+import static net.daporkchop.fp2.util.math.MathUtil.*;
+import static net.daporkchop.lib.common.math.PMath.*;
+
 /**
  * @author DaPorkchop_
  */
@@ -35,6 +41,26 @@ public abstract class VoxelRenderer extends AbstractFarRenderer<VoxelPos, VoxelT
         super(context);
     }
 
+    @Override
+    protected Comparator<VoxelPos> uploadComparatorFor(double x, double y, double z) {
+        class VoxelPosAndComparator extends VoxelPos implements Comparator<VoxelPos> {
+            public VoxelPosAndComparator(int level, int x, int y, int z) {
+                super(level, x, y, z);
+            }
+
+            @Override
+            public int compare(VoxelPos o1, VoxelPos o2) {
+                int d;
+                if ((d = o1.level() - o2.level()) != 0) {
+                    return d;
+                }
+                return Integer.compare(this.manhattanDistance(o1), this.manhattanDistance(o2));
+            }
+        }
+
+        return new VoxelPosAndComparator(0, asrRound(floorI(x), T_SHIFT), asrRound(floorI(y), T_SHIFT), asrRound(floorI(z), T_SHIFT));
+    }
+
     public static class ShaderMultidraw extends VoxelRenderer {
         public ShaderMultidraw(@NonNull IFarClientContext<VoxelPos, VoxelTile> context) {
             super(context);
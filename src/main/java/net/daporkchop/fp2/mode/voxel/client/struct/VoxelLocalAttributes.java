@@ -38,20 +38,10 @@ public class VoxelLocalAttributes {
     @Attribute
     public int state;
 
-    @FieldsAsArrayAttribute(
-            attribute = @Attribute(name = "light"),
-            names = { "lightBlock", "lightSky" },
-            scalarType = @ScalarType(convert = {
-                    @ScalarConvert(ScalarConvert.Type.TO_UNSIGNED),
-                    @ScalarConvert(value = ScalarConvert.Type.TO_FLOAT, normalized = true)
-            }),
-            transform = @ArrayTransform(ArrayTransform.Type.TO_VECTOR))
-    public byte lightBlock;
-    public byte lightSky;
-
+    //RGB color multiplier, with the block and sky light levels packed into the two nibbles of the alpha channel (see RenderConstants#packColorAndLight)
     @Attribute
     @ScalarType(expand = @ScalarExpand(
-            value = ScalarExpand.Type.INT_ARGB8_TO_BYTE_VECTOR_RGBA, alpha = false,
+            value = ScalarExpand.Type.INT_ARGB8_TO_BYTE_VECTOR_RGBA, alpha = true,
             thenConvert = @ScalarConvert(value = ScalarConvert.Type.TO_FLOAT, normalized = true)))
     public int color;
 
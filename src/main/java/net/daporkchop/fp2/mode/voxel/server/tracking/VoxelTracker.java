@@ -54,7 +54,7 @@ public class VoxelTracker extends AbstractTracker<VoxelPos, VoxelTile, TrackingS
 
     @Override
     protected TrackingState currentState(@NonNull IFarServerContext<VoxelPos, VoxelTile> context) {
-        return TrackingState.createDefault(context);
+        return TrackingState.createDefault(context, this.motion);
     }
 
     @Override
@@ -62,14 +62,21 @@ public class VoxelTracker extends AbstractTracker<VoxelPos, VoxelTile, TrackingS
         return oldState.cutoff() != newState.cutoff()
                || oldState.minLevel() != newState.minLevel()
                || oldState.maxLevel() != newState.maxLevel()
-               || sq(oldState.x() - newState.x()) + sq(oldState.y() - newState.y()) + sq(oldState.z() - newState.z()) >= UPDATE_TRIGGER_DISTANCE_SQUARED;
+               || newState.teleportedSince(oldState)
+               || sq(oldState.volumeX() - newState.volumeX()) + sq(oldState.volumeY() - newState.volumeY()) + sq(oldState.volumeZ() - newState.volumeZ()) >= UPDATE_TRIGGER_DISTANCE_SQUARED
+               || sq(oldState.priorityX() - newState.priorityX()) + sq(oldState.priorityY() - newState.priorityY()) + sq(oldState.priorityZ() - newState.priorityZ()) >= UPDATE_TRIGGER_DISTANCE_SQUARED;
+    }
+
+    @Override
+    protected boolean shouldReset(@NonNull TrackingState oldState, @NonNull TrackingState newState) {
+        return newState.teleportedSince(oldState);
     }
 
     @Override
     protected void allPositions(@NonNull TrackingState state, @NonNull Consumer<VoxelPos> callback) {
-        final int playerX = floorI(state.x());
-        final int playerY = floorI(state.y());
-        final int playerZ = floorI(state.z());
+        final int playerX = floorI(state.volumeX());
+        final int playerY = floorI(state.volumeY());
+        final int playerZ = floorI(state.volumeZ());
 
         for (int lvl = state.minLevel(); lvl < state.maxLevel(); lvl++) {
             final int baseX = asrRound(playerX, T_SHIFT + lvl);
@@ -96,12 +103,12 @@ public class VoxelTracker extends AbstractTracker<VoxelPos, VoxelTile, TrackingS
 
     @Override
     protected void deltaPositions(@NonNull TrackingState oldState, @NonNull TrackingState newState, @NonNull Consumer<VoxelPos> added, @NonNull Consumer<VoxelPos> removed) {
-        final int oldPlayerX = floorI(oldState.x());
-        final int oldPlayerY = floorI(oldState.y());
-        final int oldPlayerZ = floorI(oldState.z());
-        final int newPlayerX = floorI(newState.x());
-        final int newPlayerY = floorI(newState.y());
-        final int newPlayerZ = floorI(newState.z());
+        final int oldPlayerX = floorI(oldState.volumeX());
+        final int oldPlayerY = floorI(oldState.volumeY());
+        final int oldPlayerZ = floorI(oldState.volumeZ());
+        final int newPlayerX = floorI(newState.volumeX());
+        final int newPlayerY = floorI(newState.volumeY());
+        final int newPlayerZ = floorI(newState.volumeZ());
 
         for (int lvl = min(oldState.minLevel(), newState.minLevel()); lvl < max(oldState.maxLevel(), newState.maxLevel()); lvl++) {
             final int oldBaseX = asrRound(oldPlayerX, T_SHIFT + lvl);
@@ -164,13 +171,18 @@ public class VoxelTracker extends AbstractTracker<VoxelPos, VoxelTile, TrackingS
     protected boolean isVisible(@NonNull TrackingState state, @NonNull VoxelPos pos) {
         return state.hasLevel(pos.level())
                && this.coordLimits[pos.level()].contains(pos.x(), pos.y(), pos.z())
-               && abs(pos.x() - asrRound(floorI(state.x()), T_SHIFT + pos.level())) <= state.cutoff()
-               && abs(pos.y() - asrRound(floorI(state.y()), T_SHIFT + pos.level())) <= state.cutoff()
-               && abs(pos.z() - asrRound(floorI(state.z()), T_SHIFT + pos.level())) <= state.cutoff();
+               && abs(pos.x() - asrRound(floorI(state.volumeX()), T_SHIFT + pos.level())) <= state.cutoff()
+               && abs(pos.y() - asrRound(floorI(state.volumeY()), T_SHIFT + pos.level())) <= state.cutoff()
+               && abs(pos.z() - asrRound(floorI(state.volumeZ()), T_SHIFT + pos.level())) <= state.cutoff();
     }
 
-    @Override
-    protected Comparator<VoxelPos> comparatorFor(@NonNull TrackingState state) {
+    /**
+     * Gets a {@link Comparator} which orders tile positions by their distance from the given {@link TrackingState}'s priority center.
+     *
+     * @param state the {@link TrackingState}
+     * @return a {@link Comparator} for sorting tile positions by their load priority
+     */
+    public static Comparator<VoxelPos> priorityComparator(@NonNull TrackingState state) {
         class VoxelPosAndComparator extends VoxelPos implements Comparator<VoxelPos> {
             public VoxelPosAndComparator(int level, int x, int y, int z) {
                 super(level, x, y, z);
@@ -186,6 +198,11 @@ public class VoxelTracker extends AbstractTracker<VoxelPos, VoxelTile, TrackingS
             }
         }
 
-        return new VoxelPosAndComparator(0, asrRound(floorI(state.x()), T_SHIFT), asrRound(floorI(state.y()), T_SHIFT), asrRound(floorI(state.z()), T_SHIFT));
+        return new VoxelPosAndComparator(0, asrRound(floorI(state.priorityX()), T_SHIFT), asrRound(floorI(state.priorityY()), T_SHIFT), asrRound(floorI(state.priorityZ()), T_SHIFT));
+    }
+
+    @Override
+    protected Comparator<VoxelPos> comparatorFor(@NonNull TrackingState state) {
+        return priorityComparator(state);
     }
 }
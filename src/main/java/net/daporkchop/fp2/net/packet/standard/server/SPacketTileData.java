@@ -26,6 +26,7 @@ import lombok.NonNull;
 import lombok.Setter;
 import net.daporkchop.fp2.mode.api.IFarRenderMode;
 import net.daporkchop.fp2.mode.api.tile.TileSnapshot;
+import net.daporkchop.fp2.server.FP2Metrics;
 import net.daporkchop.fp2.util.Constants;
 import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
 
@@ -48,7 +49,9 @@ public class SPacketTileData implements IMessage {
 
     @Override
     public void toBytes(ByteBuf buf) {
+        int startIndex = buf.writerIndex();
         Constants.writeString(buf, this.mode.name());
         this.tile.write(buf);
+        FP2Metrics.NET_TILE_BYTES_SENT.add(buf.writerIndex() - startIndex);
     }
 }
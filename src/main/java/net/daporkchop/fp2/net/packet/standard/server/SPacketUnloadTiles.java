@@ -26,18 +26,30 @@ import lombok.NonNull;
 import lombok.Setter;
 import net.daporkchop.fp2.mode.api.IFarPos;
 import net.daporkchop.fp2.mode.api.IFarRenderMode;
+import net.daporkchop.fp2.mode.common.util.PosSetEncoding;
 import net.daporkchop.fp2.util.Constants;
 import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
 
 import java.util.ArrayList;
 import java.util.Collection;
 
+import static net.daporkchop.lib.common.util.PorkUtil.*;
+
 /**
+ * Unloads many tiles at once.
+ * <p>
+ * The positions are encoded using {@link PosSetEncoding}, which is much more compact than writing each position individually.
+ *
  * @author DaPorkchop_
  */
 @Getter
 @Setter
 public class SPacketUnloadTiles implements IMessage {
+    /**
+     * The maximum number of positions which should be sent in a single packet.
+     */
+    public static final int MAX_POSITIONS = 1 << 14;
+
     @NonNull
     protected IFarRenderMode<?, ?> mode;
     @NonNull
@@ -46,17 +58,13 @@ public class SPacketUnloadTiles implements IMessage {
     @Override
     public void fromBytes(ByteBuf buf) {
         this.mode = IFarRenderMode.REGISTRY.get(Constants.readString(buf));
-        int size = Constants.readVarInt(buf);
-        this.positions = new ArrayList<>(size);
-        for (int i = 0; i < size; i++) {
-            this.positions.add(this.mode.readPos(buf));
-        }
+        this.positions = new ArrayList<>();
+        PosSetEncoding.read(this.mode.directPosAccess(), buf, this.positions::add);
     }
 
     @Override
     public void toBytes(ByteBuf buf) {
         Constants.writeString(buf, this.mode.name());
-        Constants.writeVarInt(buf, this.positions.size());
-        this.positions.forEach(pos -> pos.writePos(buf));
+        PosSetEncoding.write(uncheckedCast(this.mode.directPosAccess()), this.positions, buf);
     }
 }
@@ -0,0 +1,118 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package net.daporkchop.fp2.server;
+
+import lombok.NonNull;
+import lombok.experimental.UtilityClass;
+import net.daporkchop.fp2.common.util.metrics.Counter;
+import net.daporkchop.fp2.common.util.metrics.JsonLinesMetricsExporter;
+import net.daporkchop.fp2.common.util.metrics.MetricsRegistry;
+import net.daporkchop.fp2.common.util.metrics.MetricsReporter;
+import net.daporkchop.fp2.common.util.metrics.MetricsScope;
+import net.daporkchop.fp2.mode.api.IFarRenderMode;
+import net.daporkchop.lib.common.misc.string.PStrings;
+import net.minecraftforge.fml.common.event.FMLServerStartingEvent;
+import net.minecraftforge.fml.common.event.FMLServerStoppedEvent;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import static net.daporkchop.fp2.util.Constants.*;
+
+/**
+ * Container class for FP2's global {@link MetricsRegistry}.
+ * <p>
+ * Metrics are always recorded, but are only exported if the {@code fp2.metrics.file} system property is set to the path of a file which snapshots should be
+ * appended to. The export interval (in seconds) may be configured using {@code fp2.metrics.interval}. Because this is controlled entirely by JVM arguments,
+ * it works the same way on dedicated servers as it does in singleplayer.
+ *
+ * @author DaPorkchop_
+ */
+@UtilityClass
+public class FP2Metrics {
+    /**
+     * The file which metrics snapshots will be appended to, or {@code null} if metrics exporting is disabled.
+     */
+    public static final String METRICS_FILE = System.getProperty("fp2.metrics.file");
+
+    /**
+     * The interval between metrics snapshots, in seconds.
+     */
+    public static final long METRICS_INTERVAL = Long.getLong("fp2.metrics.interval", 10L);
+
+    /**
+     * The global {@link MetricsRegistry}.
+     */
+    public static final MetricsRegistry REGISTRY = new MetricsRegistry();
+
+    public static final Counter NET_TILES_SENT = REGISTRY.counter("net.tiles.sent");
+    public static final Counter NET_TILES_UNLOADED = REGISTRY.counter("net.tiles.unloaded");
+    public static final Counter NET_TILE_BYTES_SENT = REGISTRY.counter("net.tiles.bytes");
+
+    private static MetricsReporter REPORTER;
+
+    /**
+     * Gets the {@link MetricsScope} for the given render mode in the given dimension.
+     *
+     * @param mode        the {@link IFarRenderMode}
+     * @param dimensionId the dimension ID
+     * @return the {@link MetricsScope}
+     */
+    public MetricsScope scopeFor(@NonNull IFarRenderMode<?, ?> mode, int dimensionId) {
+        return REGISTRY.scope(PStrings.fastFormat("%s.dim%d", mode.name().toLowerCase(Locale.ROOT), dimensionId));
+    }
+
+    /**
+     * Called during {@link FMLServerStartingEvent}.
+     */
+    public synchronized void serverStarting() {
+        if (METRICS_FILE == null || REPORTER != null) {
+            return;
+        }
+
+        try {
+            Path file = Paths.get(METRICS_FILE).toAbsolutePath();
+            REPORTER = new MetricsReporter(REGISTRY, new JsonLinesMetricsExporter(file), METRICS_INTERVAL, TimeUnit.SECONDS);
+            FP2_LOG.info("Exporting metrics to {} every {}s", file, METRICS_INTERVAL);
+        } catch (Exception e) {
+            FP2_LOG.error("Unable to start exporting metrics to " + METRICS_FILE, e);
+        }
+    }
+
+    /**
+     * Called during {@link FMLServerStoppedEvent}.
+     */
+    public synchronized void serverStopped() {
+        if (REPORTER == null) {
+            return;
+        }
+
+        try {
+            REPORTER.close();
+        } catch (Exception e) {
+            FP2_LOG.error("Unable to stop exporting metrics", e);
+        } finally {
+            REPORTER = null;
+        }
+    }
+}
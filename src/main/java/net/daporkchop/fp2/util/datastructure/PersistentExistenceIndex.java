@@ -0,0 +1,347 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package net.daporkchop.fp2.util.datastructure;
+
+import lombok.Getter;
+import lombok.NonNull;
+import net.daporkchop.lib.common.function.throwing.ESupplier;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+import static net.daporkchop.lib.common.util.PValidation.*;
+
+/**
+ * An on-disk copy of a set of integer points, used to avoid having to scan an entire world's storage in order to find out which chunks/cubes exist.
+ * <p>
+ * The index consists of a snapshot file, which contains every point that existed at the time it was written, and a journal file, to which points added
+ * since then are appended by {@link #checkpoint()}. Each snapshot and journal checkpoint records the time at which it was written, and the index is only
+ * considered valid if the storage it describes was not modified after the most recent checkpoint. This allows detecting that the world was modified while the
+ * index wasn't being updated (e.g. by a crash or by the world being opened without fp2 installed), in which case the index must be rebuilt from a full scan.
+ * <p>
+ * The snapshot written by {@link #close(Consumer)} is flagged as such, and is still considered valid if the storage was modified up to
+ * {@link #CLOSE_GRACE_PERIOD} after it was written. Indices are closed when their world is unloaded, which happens before the game flushes the world's
+ * pending writes to disk, and those writes can only touch points which the index already knows about.
+ * <p>
+ * The journal is tagged with the timestamp of the snapshot it belongs to, and is ignored if the two don't match. Snapshots are written to a temporary file
+ * and atomically moved into place, so a crash at any point will never cause an incomplete index to be considered valid.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author DaPorkchop_
+ */
+public class PersistentExistenceIndex {
+    protected static final int SNAPSHOT_MAGIC = 0x46503249; //"FP2I"
+    protected static final int JOURNAL_MAGIC = 0x4650324A; //"FP2J"
+    protected static final int VERSION = 2;
+
+    /**
+     * The amount of time (in milliseconds) after a snapshot was written by {@link #close(Consumer)} during which the storage may still be modified without making
+     * the index stale.
+     */
+    public static final long CLOSE_GRACE_PERIOD = TimeUnit.MINUTES.toMillis(1L);
+
+    @Getter
+    protected final Path snapshotFile;
+    @Getter
+    protected final Path journalFile;
+    protected final int dimensions;
+    protected final LongSupplier clock;
+
+    protected final Queue<int[]> pending = new ConcurrentLinkedQueue<>();
+
+    protected long snapshotStamp = -1L; //the timestamp of the snapshot which the journal belongs to, or -1 if there is no valid snapshot
+    protected FileChannel journal;
+    protected boolean refreshStamp; //whether the next checkpoint must write a record even if no points have been added
+
+    public PersistentExistenceIndex(@NonNull Path snapshotFile, int dimensions) {
+        this(snapshotFile, dimensions, System::currentTimeMillis);
+    }
+
+    public PersistentExistenceIndex(@NonNull Path snapshotFile, int dimensions, @NonNull LongSupplier clock) {
+        this.snapshotFile = snapshotFile;
+        this.journalFile = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".journal");
+        this.dimensions = positive(dimensions, "dimensions");
+        this.clock = clock;
+    }
+
+    /**
+     * Attempts to load the points stored in this index.
+     *
+     * @param storageStamp the time at which the storage described by this index was last modified
+     * @return the points stored in the index, or {@code null} if the index is missing, corrupt or stale
+     */
+    public synchronized List<int[]> load(long storageStamp) throws IOException {
+        this.closeJournal();
+        this.snapshotStamp = -1L;
+
+        List<int[]> points = new ArrayList<>();
+
+        //read snapshot
+        long snapshotStamp;
+        boolean closed;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(this.snapshotFile)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != VERSION || in.readInt() != this.dimensions) {
+                return null;
+            }
+
+            snapshotStamp = in.readLong();
+            closed = in.readBoolean();
+            for (int count = in.readInt(); count > 0; count--) {
+                points.add(this.readPoint(in));
+            }
+
+            if (in.readInt() != SNAPSHOT_MAGIC) { //trailer is missing
+                return null;
+            }
+        } catch (NoSuchFileException | EOFException e) {
+            return null;
+        }
+
+        //replay journal
+        long validUntil = closed ? snapshotStamp + CLOSE_GRACE_PERIOD : snapshotStamp;
+        long journalLength = -1L; //the length of the valid portion of the journal, or -1 if the journal can't be used
+        try (FileChannel channel = FileChannel.open(this.journalFile, StandardOpenOption.READ);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)))) {
+            if (in.readInt() == JOURNAL_MAGIC && in.readInt() == VERSION && in.readInt() == this.dimensions && in.readLong() == snapshotStamp) {
+                journalLength = 3 * Integer.BYTES + Long.BYTES;
+
+                try {
+                    while (true) { //read records until we reach the end of the file or a partially written record
+                        int count = in.readInt();
+                        if (count < 0) { //corrupt record
+                            break;
+                        }
+
+                        List<int[]> recordPoints = new ArrayList<>();
+                        for (int i = 0; i < count; i++) {
+                            recordPoints.add(this.readPoint(in));
+                        }
+                        long checkpointStamp = in.readLong();
+
+                        points.addAll(recordPoints);
+                        validUntil = Math.max(validUntil, checkpointStamp);
+                        journalLength += Integer.BYTES + (long) count * this.dimensions * Integer.BYTES + Long.BYTES;
+                    }
+                } catch (EOFException e) {
+                    //end of journal
+                }
+            }
+        } catch (NoSuchFileException | EOFException e) {
+            //journal doesn't exist or is missing its header
+        }
+
+        if (storageStamp > validUntil) { //the storage was modified after the index was last updated
+            return null;
+        }
+
+        //the index is valid, prepare the journal for appending further checkpoints
+        this.snapshotStamp = snapshotStamp;
+        if (journalLength >= 0L) { //discard any partially written record at the end of the journal
+            this.journal = FileChannel.open(this.journalFile, StandardOpenOption.WRITE);
+            this.journal.truncate(journalLength).position(journalLength);
+        }
+        return points;
+    }
+
+    /**
+     * Rebuilds this index from scratch.
+     * <p>
+     * Any points added while the rebuild is in progress will be included in the next checkpoint. Checkpoints made while the rebuild is in progress are
+     * written to a journal belonging to the new snapshot, and will only be considered valid once the new snapshot has been written.
+     *
+     * @param scanner a function which scans the storage and returns all the points in it
+     * @return the points returned by the scanner
+     */
+    public Collection<int[]> rebuild(@NonNull ESupplier<? extends Collection<int[]>> scanner) throws IOException {
+        long stamp;
+        synchronized (this) { //start a new journal before scanning, so that checkpoints made during the scan belong to the new snapshot
+            this.closeJournal();
+            stamp = this.clock.getAsLong();
+            this.snapshotStamp = stamp;
+            Files.deleteIfExists(this.journalFile);
+        }
+
+        Collection<int[]> points = scanner.get();
+
+        synchronized (this) {
+            if (this.snapshotStamp == stamp) { //nobody else has started another rebuild in the meantime
+                this.writeSnapshot(stamp, false, points);
+            }
+        }
+        return points;
+    }
+
+    /**
+     * Notifies this index that a point has been added.
+     * <p>
+     * The point will be persisted by the next call to {@link #checkpoint()}.
+     *
+     * @param point the point
+     */
+    public void add(@NonNull int... point) {
+        checkArg(point.length == this.dimensions, "expected %d-dimensional point, got %d", this.dimensions, point.length);
+        this.pending.add(point.clone());
+    }
+
+    /**
+     * Appends all points added since the last checkpoint to the journal.
+     * <p>
+     * If no points have been added since the last checkpoint, nothing is written (apart from a single record which only refreshes the journal's timestamp,
+     * see below). This makes checkpoints of an idle index free, so they may safely be made frequently.
+     */
+    public synchronized void checkpoint() throws IOException {
+        if (this.snapshotStamp < 0L) { //there's no snapshot for the journal to belong to
+            return;
+        }
+
+        //get the timestamp before draining the queue: every point which was saved to the storage before this time has already been added to the queue,
+        //  so the journal will be up-to-date as of this time
+        long stamp = this.clock.getAsLong();
+
+        List<int[]> points = new ArrayList<>();
+        for (int[] point; (point = this.pending.poll()) != null; ) {
+            points.add(point);
+        }
+
+        if (points.isEmpty()) {
+            //points are usually added before they are actually written to the storage, so the storage may have been modified slightly after the last record's
+            //  timestamp. writing one more (empty) record after the storage goes idle moves the timestamp past those writes, after that there's nothing to do.
+            if (!this.refreshStamp) {
+                return;
+            }
+            this.refreshStamp = false;
+        } else {
+            this.refreshStamp = true;
+        }
+
+        if (this.journal == null) { //start a new journal
+            this.journal = FileChannel.open(this.journalFile, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(this.journal)));
+            out.writeInt(JOURNAL_MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(this.dimensions);
+            out.writeLong(this.snapshotStamp);
+            out.flush();
+        }
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(this.journal)));
+        out.writeInt(points.size());
+        for (int[] point : points) {
+            this.writePoint(out, point);
+        }
+        out.writeLong(stamp);
+        out.flush();
+        this.journal.force(false);
+    }
+
+    /**
+     * Closes this index, compacting the journal into a new snapshot.
+     * <p>
+     * Any modifications to the storage which are still pending when this is called must only affect points which are already in the index, and must be written
+     * within {@link #CLOSE_GRACE_PERIOD} afterwards.
+     *
+     * @param allPoints a function which provides every point which currently exists
+     */
+    public synchronized void close(@NonNull Consumer<Consumer<int[]>> allPoints) throws IOException {
+        this.closeJournal();
+        this.pending.clear();
+
+        if (this.snapshotStamp < 0L) { //the index was never loaded or rebuilt, so we don't know if the given points are complete
+            return;
+        }
+
+        long stamp = this.clock.getAsLong();
+        List<int[]> points = new ArrayList<>();
+        allPoints.accept(points::add);
+
+        this.writeSnapshot(stamp, true, points);
+        Files.deleteIfExists(this.journalFile);
+        this.snapshotStamp = -1L;
+    }
+
+    protected void writeSnapshot(long stamp, boolean closed, @NonNull Collection<int[]> points) throws IOException {
+        Files.createDirectories(this.snapshotFile.toAbsolutePath().getParent());
+
+        Path tmpFile = this.snapshotFile.resolveSibling(this.snapshotFile.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmpFile, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(this.dimensions);
+            out.writeLong(stamp);
+            out.writeBoolean(closed);
+            out.writeInt(points.size());
+            for (int[] point : points) {
+                this.writePoint(out, point);
+            }
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.flush();
+            channel.force(false);
+        }
+
+        //replace the old snapshot. a journal belonging to the old snapshot will no longer match, and will be discarded on the next load
+        Files.move(tmpFile, this.snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    protected void closeJournal() throws IOException {
+        if (this.journal != null) {
+            try {
+                this.journal.close();
+            } finally {
+                this.journal = null;
+            }
+        }
+    }
+
+    protected int[] readPoint(@NonNull DataInputStream in) throws IOException {
+        int[] point = new int[this.dimensions];
+        for (int i = 0; i < this.dimensions; i++) {
+            point[i] = in.readInt();
+        }
+        return point;
+    }
+
+    protected void writePoint(@NonNull DataOutputStream out, @NonNull int[] point) throws IOException {
+        for (int i = 0; i < this.dimensions; i++) {
+            out.writeInt(point[i]);
+        }
+    }
+}
@@ -23,6 +23,7 @@ package net.daporkchop.fp2.util.datastructure.java;
 import net.daporkchop.fp2.util.datastructure.Datastructures;
 import net.daporkchop.fp2.util.datastructure.NDimensionalIntSegtreeSet;
 import net.daporkchop.fp2.util.datastructure.NDimensionalIntSet;
+import net.daporkchop.fp2.util.datastructure.java.ndimensionalintsegtree.BitmapNDimensionalIntSegtreeSet;
 import net.daporkchop.fp2.util.datastructure.java.ndimensionalintsegtree.JavaNDimensionalIntSegtreeSet;
 import net.daporkchop.fp2.util.datastructure.java.ndimensionalintsegtree.SynchronizedNDimensionalIntSegtreeSet;
 import net.daporkchop.fp2.util.datastructure.java.ndimensionalintsegtree.AsyncInitializedNDimensionalIntSegtreeSet;
@@ -83,7 +84,9 @@ public class JavaDatastructures implements Datastructures {
 
             @Override
             protected NDimensionalIntSegtreeSet buildNotThreadSafe() {
-                NDimensionalIntSegtreeSet set = new JavaNDimensionalIntSegtreeSet(this.dimensions, JavaDatastructures.this);
+                NDimensionalIntSegtreeSet set = BitmapNDimensionalIntSegtreeSet.isSupported(this.dimensions)
+                        ? new BitmapNDimensionalIntSegtreeSet(this.dimensions)
+                        : new JavaNDimensionalIntSegtreeSet(this.dimensions, JavaDatastructures.this);
                 if (!this.threadSafe && this.initialPoints != null) {
                     try (Stream<int[]> stream = this.initialPoints.get()) {
                         stream.forEach(set::add);
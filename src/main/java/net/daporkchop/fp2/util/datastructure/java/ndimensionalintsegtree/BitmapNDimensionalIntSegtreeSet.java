@@ -0,0 +1,528 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package net.daporkchop.fp2.util.datastructure.java.ndimensionalintsegtree;
+
+import lombok.Getter;
+import lombok.NonNull;
+import net.daporkchop.fp2.util.datastructure.NDimensionalIntSegtreeSet;
+import net.daporkchop.lib.common.misc.refcount.AbstractRefCounted;
+import net.daporkchop.lib.unsafe.util.exception.AlreadyReleasedException;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+import static net.daporkchop.lib.common.util.PValidation.*;
+
+/**
+ * A {@link NDimensionalIntSegtreeSet} which stores points as bitmaps in a hierarchy of hash tables.
+ * <p>
+ * Points are grouped into "bricks" of {@code 2^brickBits} points along each axis, where {@code brickBits} is chosen such that a whole brick fits into a single
+ * {@code long} (4x4x4 points for 3D, 8x8 for 2D, 64 for 1D). Each level of the hierarchy is a hash table mapping brick coordinates to the brick's bitmap,
+ * and the set of non-empty bricks on one level is exactly the set of points stored on the next level.
+ * <p>
+ * Compared to {@link JavaNDimensionalIntSegtreeSet}, which stores a separate hash set of points for every possible shift, this only needs one table for every
+ * {@code brickBits} shifts (16 instead of 31 for 3D, 11 for 2D). Queries for a shift which falls between two levels are answered by testing several bits of
+ * a single brick at once. Empty bricks are removed from the tables immediately, so removing a point never requires searching for its neighbors.
+ * <p>
+ * Arbitrary AABB queries descend from the top level, masking each brick with the part of the box it overlaps. Only bricks which lie on the box's boundary
+ * need to be descended into, as any set bit whose cell is entirely inside the box already proves that the box contains a point.
+ * <p>
+ * Only supports up to 6 dimensions. Not thread-safe.
+ *
+ * @author DaPorkchop_
+ */
+public class BitmapNDimensionalIntSegtreeSet extends AbstractRefCounted implements NDimensionalIntSegtreeSet {
+    protected static final int MAX_SHIFT = Integer.SIZE - 1; //queries for any shift above this simply check if the set is empty
+
+    /**
+     * @return whether or not the given number of dimensions is supported by this implementation
+     */
+    public static boolean isSupported(int dimensions) {
+        return dimensions > 0 && dimensions <= 6;
+    }
+
+    protected static int sar(int value, int shift) {
+        return value >> Math.min(shift, MAX_SHIFT);
+    }
+
+    @Getter
+    protected final int dimensions;
+    protected final int brickBits;
+    protected final int brickMask;
+
+    protected final Level[] levels;
+    protected final long[][] queryMasks; //queryMasks[r][i]: the bits in a brick covered by a box of size 2^r whose origin is at index i in the brick
+    protected final long[][] rangeMasks; //rangeMasks[i][(lo << brickBits) | hi]: the bits in a brick whose coordinate along axis i is in [lo, hi]
+
+    protected long count;
+
+    public BitmapNDimensionalIntSegtreeSet(int dimensions) {
+        checkArg(isSupported(dimensions), "unsupported number of dimensions: %d", dimensions);
+        this.dimensions = dimensions;
+        this.brickBits = 6 / dimensions;
+        this.brickMask = (1 << this.brickBits) - 1;
+
+        this.levels = new Level[(MAX_SHIFT + this.brickBits - 1) / this.brickBits];
+        for (int i = 0; i < this.levels.length; i++) {
+            this.levels[i] = new Level(dimensions);
+        }
+
+        //precompute the bitmasks used for queries whose shift isn't a multiple of brickBits
+        int bitsPerBrick = 1 << (this.brickBits * dimensions);
+        this.queryMasks = new long[this.brickBits][bitsPerBrick];
+        for (int r = 0; r < this.brickBits; r++) {
+            for (int origin = 0; origin < bitsPerBrick; origin++) {
+                long mask = 0L;
+                for (int bit = 0; bit < bitsPerBrick; bit++) {
+                    boolean inside = true;
+                    for (int i = 0; i < dimensions && inside; i++) {
+                        int axisShift = this.brickBits * (dimensions - 1 - i);
+                        int o = (origin >> axisShift) & this.brickMask;
+                        int c = (bit >> axisShift) & this.brickMask;
+                        inside = c >= o && c < o + (1 << r);
+                    }
+                    if (inside) {
+                        mask |= 1L << bit;
+                    }
+                }
+                this.queryMasks[r][origin] = mask;
+            }
+        }
+
+        //precompute the per-axis bitmasks used for AABB queries
+        this.rangeMasks = new long[dimensions][1 << (this.brickBits << 1)];
+        for (int i = 0; i < dimensions; i++) {
+            int axisShift = this.brickBits * (dimensions - 1 - i);
+            for (int lo = 0; lo <= this.brickMask; lo++) {
+                for (int hi = lo; hi <= this.brickMask; hi++) {
+                    long mask = 0L;
+                    for (int bit = 0; bit < bitsPerBrick; bit++) {
+                        int c = (bit >> axisShift) & this.brickMask;
+                        if (c >= lo && c <= hi) {
+                            mask |= 1L << bit;
+                        }
+                    }
+                    this.rangeMasks[i][(lo << this.brickBits) | hi] = mask;
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the index of the bit in a brick which corresponds to the given point at the given shift.
+     */
+    protected int bitIndex(@NonNull int[] point, int shift) {
+        int index = 0;
+        for (int i = 0; i < this.dimensions; i++) {
+            index = (index << this.brickBits) | (sar(point[i], shift) & this.brickMask);
+        }
+        return index;
+    }
+
+    @Override
+    public NDimensionalIntSegtreeSet retain() throws AlreadyReleasedException {
+        super.retain();
+        return this;
+    }
+
+    @Override
+    protected void doRelease() {
+        this.clear();
+    }
+
+    @Override
+    public long count() {
+        return this.count;
+    }
+
+    @Override
+    public void clear() {
+        for (Level level : this.levels) {
+            level.clear();
+        }
+        this.count = 0L;
+    }
+
+    @Override
+    public boolean containsAny(@NonNull int[] a, @NonNull int[] b) {
+        checkArg(a.length == this.dimensions && b.length == this.dimensions, this.dimensions);
+
+        if (this.count == 0L) {
+            return false;
+        }
+
+        int[] min = new int[this.dimensions];
+        int[] max = new int[this.dimensions];
+        for (int i = 0; i < this.dimensions; i++) {
+            min[i] = Math.min(a[i], b[i]);
+            max[i] = Math.max(a[i], b[i]);
+        }
+
+        //the top level's keys are all either 0 or -1, so the box can't overlap more than two of its bricks along any axis
+        int top = this.levels.length - 1;
+        int keyShift = (top + 1) * this.brickBits;
+        int[][] keys = new int[this.levels.length][this.dimensions];
+        int[] key = keys[top];
+        for (int i = 0; i < this.dimensions; i++) {
+            key[i] = sar(min[i], keyShift);
+        }
+
+        while (true) {
+            if (this.containsAnyInBrick(top, keys, min, max)) {
+                return true;
+            }
+
+            //advance to the next brick
+            int i = this.dimensions - 1;
+            for (; i >= 0 && key[i] == sar(max[i], keyShift); i--) {
+                key[i] = sar(min[i], keyShift);
+            }
+            if (i < 0) {
+                return false;
+            }
+            key[i]++;
+        }
+    }
+
+    /**
+     * Checks whether or not the brick on the given level with the key at {@code keys[lvl]} contains any points in the given AABB.
+     * <p>
+     * The keys on lower levels are used as scratch space when descending into the brick.
+     */
+    protected boolean containsAnyInBrick(int lvl, @NonNull int[][] keys, @NonNull int[] min, @NonNull int[] max) {
+        int[] key = keys[lvl];
+        long brick = this.levels[lvl].get(key, 0);
+
+        //clear all the bits which are outside of the box
+        int shift = lvl * this.brickBits;
+        for (int i = 0; i < this.dimensions && brick != 0L; i++) {
+            long base = (long) key[i] << this.brickBits;
+            long lo = Math.max(sar(min[i], shift) - base, 0L);
+            long hi = Math.min(sar(max[i], shift) - base, this.brickMask);
+            brick = lo <= hi ? brick & this.rangeMasks[i][((int) lo << this.brickBits) | (int) hi] : 0L;
+        }
+
+        if (brick == 0L) {
+            return false;
+        } else if (lvl == 0) { //every remaining bit is a point inside the box
+            return true;
+        }
+
+        //every remaining bit is a non-empty cell of 2^shift points. if it's entirely inside the box, it must contain a point inside the box; otherwise it's on the
+        //  box's boundary and we have to descend into the brick on the level below
+        int[] child = keys[lvl - 1];
+        for (; brick != 0L; brick &= brick - 1L) {
+            int bit = Long.numberOfTrailingZeros(brick);
+
+            boolean inside = true;
+            for (int i = 0; i < this.dimensions; i++) {
+                int c = (key[i] << this.brickBits) | ((bit >> (this.brickBits * (this.dimensions - 1 - i))) & this.brickMask);
+                child[i] = c;
+                inside &= ((long) c << shift) >= min[i] && (((long) c + 1L) << shift) - 1L <= max[i];
+            }
+
+            if (inside || this.containsAnyInBrick(lvl - 1, keys, min, max)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean containsAny(int shift, @NonNull int... point) {
+        checkArg(point.length == this.dimensions, this.dimensions);
+        notNegative(shift, "shift");
+
+        if (shift >= MAX_SHIFT) { //high levels will be 0 in any case, so we don't bother storing it
+            return this.count != 0L;
+        }
+
+        //the query box is aligned to 2^r on the given level, and is therefore contained entirely within a single brick
+        int r = shift % this.brickBits;
+        long brick = this.levels[shift / this.brickBits].get(point, this.brickBits - r);
+        if (brick == 0L) {
+            return false;
+        }
+
+        int origin = 0;
+        for (int i = 0; i < this.dimensions; i++) {
+            origin = (origin << this.brickBits) | ((point[i] << r) & this.brickMask);
+        }
+        return (brick & this.queryMasks[r][origin]) != 0L;
+    }
+
+    @Override
+    public boolean add(@NonNull int... point) {
+        checkArg(point.length == this.dimensions, this.dimensions);
+
+        for (int lvl = 0; lvl < this.levels.length; lvl++) {
+            int shift = lvl * this.brickBits;
+            long bit = 1L << this.bitIndex(point, shift);
+            long old = this.levels[lvl].or(point, shift + this.brickBits, bit);
+
+            if (lvl == 0) {
+                if ((old & bit) != 0L) { //the point was already present
+                    return false;
+                }
+                this.count++;
+            }
+
+            if (old != 0L) { //the brick already existed, so it's already present on all higher levels
+                break;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean remove(@NonNull int... point) {
+        checkArg(point.length == this.dimensions, this.dimensions);
+
+        for (int lvl = 0; lvl < this.levels.length; lvl++) {
+            int shift = lvl * this.brickBits;
+            long bit = 1L << this.bitIndex(point, shift);
+            long old = this.levels[lvl].andNot(point, shift + this.brickBits, bit);
+
+            if (lvl == 0) {
+                if ((old & bit) == 0L) { //the point wasn't present
+                    return false;
+                }
+                this.count--;
+            }
+
+            if ((old & ~bit) != 0L) { //the brick isn't empty yet, so it remains present on all higher levels
+                break;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean contains(@NonNull int... point) {
+        return this.containsAny(0, point);
+    }
+
+    @Override
+    public void forEach(@NonNull Consumer<int[]> callback) {
+        Level level = this.levels[0];
+        int[] keys = level.keys;
+        long[] values = level.values;
+        for (int slot = 0; slot < values.length; slot++) {
+            for (long brick = values[slot]; brick != 0L; brick &= brick - 1L) {
+                int bit = Long.numberOfTrailingZeros(brick);
+
+                int[] point = new int[this.dimensions];
+                for (int i = 0; i < this.dimensions; i++) {
+                    int local = (bit >> (this.brickBits * (this.dimensions - 1 - i))) & this.brickMask;
+                    point[i] = (keys[slot * this.dimensions + i] << this.brickBits) | local;
+                }
+                callback.accept(point);
+            }
+        }
+    }
+
+    /**
+     * @return the approximate number of bytes of memory used by this set's tables
+     */
+    public long memoryUsage() {
+        long total = 0L;
+        for (Level level : this.levels) {
+            total += (long) level.keys.length * Integer.BYTES + (long) level.values.length * Long.BYTES;
+        }
+        return total;
+    }
+
+    /**
+     * A single level of the hierarchy: an open-addressing hash table mapping brick coordinates to non-zero bitmaps.
+     * <p>
+     * Keys are never passed as arrays: instead, methods accept a point and a shift, and the key is the point with each component arithmetically shifted right
+     * by the given amount. Slots whose value is {@code 0} are empty.
+     *
+     * @author DaPorkchop_
+     */
+    protected static final class Level {
+        protected static final int[] EMPTY_KEYS = new int[0];
+        protected static final long[] EMPTY_VALUES = new long[0];
+
+        protected static final int DEFAULT_CAPACITY = 16;
+
+        protected final int dimensions;
+
+        protected int[] keys = EMPTY_KEYS;
+        protected long[] values = EMPTY_VALUES;
+        protected int size;
+
+        public Level(int dimensions) {
+            this.dimensions = dimensions;
+        }
+
+        private int hash(@NonNull int[] point, int shift) {
+            int hash = 0;
+            for (int i = 0; i < this.dimensions; i++) {
+                hash = hash * 0x9E3779B9 + sar(point[i], shift);
+            }
+            return hash ^ (hash >>> 16);
+        }
+
+        private int hashAt(int slot) {
+            int hash = 0;
+            for (int i = 0, base = slot * this.dimensions; i < this.dimensions; i++) {
+                hash = hash * 0x9E3779B9 + this.keys[base + i];
+            }
+            return hash ^ (hash >>> 16);
+        }
+
+        private boolean keyEquals(int slot, @NonNull int[] point, int shift) {
+            for (int i = 0, base = slot * this.dimensions; i < this.dimensions; i++) {
+                if (this.keys[base + i] != sar(point[i], shift)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return the slot containing the given key, or the index of the empty slot where it would be inserted (encoded as {@code -slot - 1})
+         */
+        private int find(@NonNull int[] point, int shift) {
+            int mask = this.values.length - 1;
+            for (int slot = this.hash(point, shift) & mask; ; slot = (slot + 1) & mask) {
+                if (this.values[slot] == 0L) {
+                    return -slot - 1;
+                } else if (this.keyEquals(slot, point, shift)) {
+                    return slot;
+                }
+            }
+        }
+
+        public long get(@NonNull int[] point, int shift) {
+            if (this.size == 0) {
+                return 0L;
+            }
+
+            int slot = this.find(point, shift);
+            return slot >= 0 ? this.values[slot] : 0L;
+        }
+
+        /**
+         * Sets the given bits in the bitmap with the given key, inserting it if necessary.
+         *
+         * @return the bitmap's previous value
+         */
+        public long or(@NonNull int[] point, int shift, long bits) {
+            if ((this.size + 1) * 4L > this.values.length * 3L) { //keep the load factor below 0.75
+                this.resize(Math.max(this.values.length << 1, DEFAULT_CAPACITY));
+            }
+
+            int slot = this.find(point, shift);
+            if (slot >= 0) {
+                long old = this.values[slot];
+                this.values[slot] = old | bits;
+                return old;
+            } else {
+                slot = -slot - 1;
+                for (int i = 0, base = slot * this.dimensions; i < this.dimensions; i++) {
+                    this.keys[base + i] = sar(point[i], shift);
+                }
+                this.values[slot] = bits;
+                this.size++;
+                return 0L;
+            }
+        }
+
+        /**
+         * Clears the given bits in the bitmap with the given key, removing it if it becomes empty.
+         *
+         * @return the bitmap's previous value
+         */
+        public long andNot(@NonNull int[] point, int shift, long bits) {
+            if (this.size == 0) {
+                return 0L;
+            }
+
+            int slot = this.find(point, shift);
+            if (slot < 0) {
+                return 0L;
+            }
+
+            long old = this.values[slot];
+            long value = old & ~bits;
+            if (value != 0L) {
+                this.values[slot] = value;
+            } else {
+                this.removeAt(slot);
+            }
+            return old;
+        }
+
+        private void removeAt(int slot) {
+            //backward-shift deletion: move entries which were displaced past the removed slot back to fill the gap
+            int mask = this.values.length - 1;
+            int gap = slot;
+            for (int next = (gap + 1) & mask; this.values[next] != 0L; next = (next + 1) & mask) {
+                int ideal = this.hashAt(next) & mask;
+                //the entry at next can be moved into the gap only if its ideal slot isn't cyclically in the range (gap, next]
+                if (gap <= next ? (ideal <= gap || ideal > next) : (ideal <= gap && ideal > next)) {
+                    System.arraycopy(this.keys, next * this.dimensions, this.keys, gap * this.dimensions, this.dimensions);
+                    this.values[gap] = this.values[next];
+                    gap = next;
+                }
+            }
+            this.values[gap] = 0L;
+            this.size--;
+
+            if (this.size == 0) { //free the table entirely
+                this.clear();
+            }
+        }
+
+        private void resize(int capacity) {
+            int[] oldKeys = this.keys;
+            long[] oldValues = this.values;
+
+            this.keys = new int[capacity * this.dimensions];
+            this.values = new long[capacity];
+
+            int mask = capacity - 1;
+            for (int oldSlot = 0; oldSlot < oldValues.length; oldSlot++) {
+                if (oldValues[oldSlot] != 0L) {
+                    int hash = 0;
+                    for (int i = 0, base = oldSlot * this.dimensions; i < this.dimensions; i++) {
+                        hash = hash * 0x9E3779B9 + oldKeys[base + i];
+                    }
+
+                    int slot = (hash ^ (hash >>> 16)) & mask;
+                    while (this.values[slot] != 0L) {
+                        slot = (slot + 1) & mask;
+                    }
+                    System.arraycopy(oldKeys, oldSlot * this.dimensions, this.keys, slot * this.dimensions, this.dimensions);
+                    this.values[slot] = oldValues[oldSlot];
+                }
+            }
+        }
+
+        public void clear() {
+            this.keys = EMPTY_KEYS;
+            this.values = EMPTY_VALUES;
+            this.size = 0;
+        }
+    }
+}
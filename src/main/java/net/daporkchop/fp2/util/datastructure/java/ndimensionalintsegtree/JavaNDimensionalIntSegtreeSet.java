@@ -139,7 +139,7 @@ public class JavaNDimensionalIntSegtreeSet extends AbstractRefCounted implements
         if (this.delegates[0].remove(point)) {
             point = point.clone();
             int lvl = 1;
-            while (lvl < this.delegates.length && allLSBPermutations(point).noneMatch(this.delegates[lvl]::contains)) {
+            while (lvl < this.delegates.length && allLSBPermutations(point).noneMatch(this.delegates[lvl - 1]::contains)) {
                 for (int i = 0; i < this.dimensions; i++) {
                     point[i] >>= 1;
                 }
@@ -106,6 +106,15 @@ public interface IAsyncBlockAccess extends IBlockHeightAccess {
      */
     boolean anyCubeIntersects(int tileX, int tileY, int tileZ, int level);
 
+    /**
+     * Releases any resources allocated by this instance.
+     * <p>
+     * Called when the world is unloaded.
+     */
+    default void close() {
+        //no-op
+    }
+
     /**
      * @see io.github.opencubicchunks.cubicchunks.api.world.IHeightMap#isOccluded(int, int, int)
      */
@@ -91,6 +91,16 @@ public abstract class AsyncCacheBase<K, V> implements IAsyncCache<K, V> {
         return state.get();
     }
 
+    @Override
+    public V getIfLoaded(@NonNull K key) {
+        Object value = this.map.get(key);
+        if (value instanceof Reference) {
+            V dereferenced = PorkUtil.<Reference<V>>uncheckedCast(value).get();
+            return dereferenced instanceof CompletedLazyFutureTask ? null : dereferenced; //a completed future is cached in place of values which don't exist
+        }
+        return null; //the value is either not cached, or is still being loaded
+    }
+
     /**
      * Invalidates the cached value for the given key, if any.
      *
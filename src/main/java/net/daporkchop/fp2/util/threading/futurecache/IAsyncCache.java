@@ -43,4 +43,14 @@ public interface IAsyncCache<K, V> {
      * @return a {@link ForkJoinTask} which will be completed with the value corresponding to the given key
      */
     LazyFutureTask<V> get(@NonNull K key, boolean allowGeneration);
+
+    /**
+     * Gets the value corresponding to the given key, but only if it is already loaded.
+     * <p>
+     * Unlike {@link #get(Object, boolean)}, this will never cause the value to be loaded or generated.
+     *
+     * @param key the key
+     * @return the value corresponding to the given key, or {@code null} if it isn't loaded
+     */
+    V getIfLoaded(@NonNull K key);
 }
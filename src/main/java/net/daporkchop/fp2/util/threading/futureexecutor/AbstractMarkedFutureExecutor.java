@@ -1,7 +1,7 @@
 /*
  * Adapted from The MIT License (MIT)
  *
- * Copyright (c) 2020-2021 DaPorkchop_
+ * Copyright (c) 2020-2022 DaPorkchop_
  *
  * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
  * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
@@ -23,104 +23,199 @@ package net.daporkchop.fp2.util.threading.futureexecutor;
 import lombok.AllArgsConstructor;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
-import lombok.SneakyThrows;
 import net.daporkchop.fp2.util.Constants;
 import net.daporkchop.lib.common.util.PorkUtil;
-import net.daporkchop.lib.unsafe.PUnsafe;
 
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
 import java.util.function.Supplier;
 
-import static net.daporkchop.fp2.util.Constants.*;
 import static net.daporkchop.lib.common.util.PValidation.*;
 import static net.daporkchop.lib.common.util.PorkUtil.*;
 
 /**
  * Simple base implementation of {@link MarkedFutureExecutor}.
+ * <p>
+ * Tasks are queued separately for each marker, and the executor thread works through the markers in round-robin order, running one task from each marker
+ * at a time. This prevents a single marker which submits a large number of tasks at once from starving all the others.
+ * <p>
+ * Submitting tasks is lock-free, and {@link #cancelAll(Object)} only needs to visit the tasks with the given marker.
+ * <p>
+ * The amount of time spent working can be limited using a time budget (see {@link #beginBudget(long)}).
  *
  * @author DaPorkchop_
  */
-@RequiredArgsConstructor
 public abstract class AbstractMarkedFutureExecutor implements MarkedFutureExecutor {
-    @NonNull
     protected final Thread thread;
+    protected final LongSupplier clock;
 
-    protected final Queue<Task<?>> queue = new LinkedList<>();
+    protected final Map<Object, MarkerQueue> queuesByMarker = new ConcurrentHashMap<>();
+    protected final Queue<MarkerQueue> readyQueues = new ConcurrentLinkedQueue<>();
+
+    protected long budgetStartTime;
+    protected long budgetNanos = Long.MAX_VALUE;
+    protected boolean budgetStarted = true;
 
     protected volatile boolean running = false;
 
+    public AbstractMarkedFutureExecutor(@NonNull Thread thread) {
+        this(thread, System::nanoTime);
+    }
+
+    /**
+     * @param thread the thread which is allowed to do this executor's work
+     * @param clock  the source of {@link System#nanoTime()}-style timestamps used for time budgets
+     */
+    public AbstractMarkedFutureExecutor(@NonNull Thread thread, @NonNull LongSupplier clock) {
+        this.thread = thread;
+        this.clock = clock;
+    }
+
     @Override
-    public synchronized void cancelAll(@NonNull Object marker) {
+    public void cancelAll(@NonNull Object marker) {
         checkState(this.running, "not running");
 
-        //cancel and remove all tasks scheduled by threads in this group
-        for (Iterator<Task<?>> itr = this.queue.iterator(); itr.hasNext(); ) {
-            Task<?> task = itr.next();
-            if (marker.equals(task.marker)) {
-                task.cancel(false);
-                itr.remove();
-            }
+        //remove the marker's whole queue at once. if the marker is currently scheduled for execution, the worker thread will notice that it's been
+        //  cancelled and drop it when it gets there.
+        MarkerQueue queue = this.queuesByMarker.remove(marker);
+        if (queue != null) {
+            queue.cancel();
         }
     }
 
     @Override
-    public synchronized CompletableFuture<Void> run(@NonNull Object marker, @NonNull Runnable runnable) {
+    public CompletableFuture<Void> run(@NonNull Object marker, @NonNull Runnable runnable) {
         checkState(this.running, "not running");
 
         Task<Void> task = new Task<>(marker, runnable);
-        this.queue.add(task);
+        this.submit(marker, task);
         return task;
     }
 
     @Override
-    public synchronized <V> CompletableFuture<V> supply(@NonNull Object marker, @NonNull Supplier<V> supplier) {
+    public <V> CompletableFuture<V> supply(@NonNull Object marker, @NonNull Supplier<V> supplier) {
         checkState(this.running, "not running");
 
         Task<V> task = new Task<>(marker, supplier);
-        this.queue.add(task);
+        this.submit(marker, task);
         return task;
     }
 
+    protected void submit(@NonNull Object marker, @NonNull Task<?> task) {
+        MarkerQueue queue = this.queuesByMarker.computeIfAbsent(marker, MarkerQueue::new);
+        queue.tasks.add(task);
+
+        if (queue.cancelled) { //the marker was cancelled concurrently, make sure the task we just added doesn't get stranded
+            queue.cancel();
+        } else {
+            this.schedule(queue);
+        }
+    }
+
+    protected void schedule(@NonNull MarkerQueue queue) {
+        if (queue.scheduled.compareAndSet(false, true)) { //the queue wasn't already scheduled, add it to the end of the round-robin order
+            this.readyQueues.add(queue);
+        }
+    }
+
     /**
-     * Does a single piece of work.
+     * Starts a new time budget.
+     * <p>
+     * The budget's clock only starts running at the next call to {@link #doWork()}, which will always run at least one task (if any are queued). Until the next
+     * time this method is called, subsequent calls to {@link #doWork()} will only run tasks until the given amount of time has elapsed since then.
+     * <p>
+     * This allows a new budget to be started at the beginning of a tick even if the executor's work is only done once the rest of the tick has completed: time
+     * spent doing other things in between doesn't count towards the budget, so a slow tick can't prevent tasks from running altogether.
      *
-     * @return whether or not there is more work remaining in the queue
+     * @param budgetNanos the time budget (in nanoseconds)
+     */
+    public void beginBudget(long budgetNanos) {
+        checkState(Thread.currentThread() == this.thread, "thread %s isn't allowed to do this executor's work (expected %s)", Thread.currentThread(), this.thread);
+        notNegative(budgetNanos, "budgetNanos");
+
+        this.budgetNanos = budgetNanos;
+        this.budgetStarted = false;
+    }
+
+    protected void startBudget() {
+        this.budgetStartTime = this.clock.getAsLong();
+        this.budgetStarted = true;
+    }
+
+    /**
+     * @return whether or not the current time budget has been used up
+     */
+    public boolean budgetExhausted() {
+        return this.budgetStarted && this.clock.getAsLong() - this.budgetStartTime >= this.budgetNanos;
+    }
+
+    /**
+     * Does a single piece of work, unless the current time budget has been used up.
+     * <p>
+     * The first call after a new budget has begun always does a piece of work (if any is queued).
+     *
+     * @return whether or not there is more work remaining in the queue which may be done within the current time budget
      */
     public boolean doWork() {
         checkState(Thread.currentThread() == this.thread, "thread %s isn't allowed to do this executor's work (expected %s)", Thread.currentThread(), this.thread);
 
-        Task<?> task;
-        synchronized (this) {
-            task = this.queue.poll();
+        if (!this.budgetStarted) { //this is the first piece of work since the budget began, start the clock now and always run at least one task
+            this.startBudget();
+            return this.doWork0() && !this.budgetExhausted();
         }
 
-        if (task != null) {
-            task.run();
-            return !this.queue.isEmpty();
-        } else {
-            return false; //task queue is empty, we're done for now
+        return !this.budgetExhausted() && this.doWork0() && !this.budgetExhausted();
+    }
+
+    /**
+     * Runs a single task from the next marker in the round-robin order, ignoring the time budget.
+     *
+     * @return whether or not there is more work remaining in the queue
+     */
+    protected boolean doWork0() {
+        for (MarkerQueue queue; (queue = this.readyQueues.poll()) != null; ) {
+            Task<?> task = queue.cancelled ? null : queue.tasks.poll();
+
+            //put the marker back at the end of the round-robin order if it has more tasks
+            queue.scheduled.set(false);
+            if (!queue.cancelled && !queue.tasks.isEmpty()) {
+                this.schedule(queue);
+            }
+
+            if (task != null) {
+                task.run();
+                return !this.readyQueues.isEmpty();
+            }
         }
+        return false; //task queue is empty, we're done for now
     }
 
     /**
-     * Does all of the work remaining in the task queue.
+     * Does as much of the work in the task queue as possible within the given time budget.
+     * <p>
+     * At least one task will always be run (if any are queued), to ensure that progress is made even if a single task exceeds the entire budget.
+     *
+     * @param budgetNanos the time budget (in nanoseconds)
      */
-    public void doAllWork() {
-        checkState(Thread.currentThread() == this.thread, "thread %s isn't allowed to do this executor's work (expected %s)", Thread.currentThread(), this.thread);
+    public void doWorkFor(long budgetNanos) {
+        this.beginBudget(budgetNanos);
+        this.startBudget();
 
         RuntimeException root = null; //this exception will contain all exceptions thrown by tasks, if any
-        while (true) {
+        for (boolean first = true; first || !this.budgetExhausted(); first = false) {
             try {
-                if (!this.doWork()) { //return value of false indicates that the queue is empty
+                if (!this.doWork0()) { //return value of false indicates that the queue is empty
                     break;
                 }
             } catch (Throwable t) {
                 if (root == null) { //create new root exception
-                    root = new RuntimeException("uncaught exception(s) while handling scheduled client tasks");
+                    root = new RuntimeException("uncaught exception(s) while handling scheduled tasks");
                 }
                 root.addSuppressed(t);
             }
@@ -131,6 +226,13 @@ public abstract class AbstractMarkedFutureExecutor implements MarkedFutureExecut
         }
     }
 
+    /**
+     * Does all of the work remaining in the task queue.
+     */
+    public void doAllWork() {
+        this.doWorkFor(Long.MAX_VALUE);
+    }
+
     protected synchronized void start() {
         checkState(!this.running, "already running");
         this.running = true;
@@ -141,8 +243,36 @@ public abstract class AbstractMarkedFutureExecutor implements MarkedFutureExecut
         checkState(this.running, "not running");
         this.running = false;
 
-        if (!this.queue.isEmpty()) {
-            Constants.bigWarning("%s: %d elements left in the queue after shutdown!", this, this.queue.size());
+        int remaining = this.queuesByMarker.values().stream().mapToInt(queue -> queue.tasks.size()).sum();
+        if (remaining != 0) {
+            Constants.bigWarning("%s: %d elements left in the queue after shutdown!", this, remaining);
+        }
+    }
+
+    /**
+     * The tasks queued with a single marker.
+     *
+     * @author DaPorkchop_
+     */
+    @RequiredArgsConstructor
+    protected static class MarkerQueue {
+        @NonNull
+        protected final Object marker;
+
+        protected final Queue<Task<?>> tasks = new ConcurrentLinkedQueue<>();
+        protected final AtomicBoolean scheduled = new AtomicBoolean(); //whether or not this queue is currently in the round-robin order
+
+        protected volatile boolean cancelled = false;
+
+        /**
+         * Marks this queue as cancelled, and cancels all of its tasks.
+         */
+        protected void cancel() {
+            this.cancelled = true;
+
+            for (Task<?> task; (task = this.tasks.poll()) != null; ) {
+                task.cancel(false);
+            }
         }
     }
 
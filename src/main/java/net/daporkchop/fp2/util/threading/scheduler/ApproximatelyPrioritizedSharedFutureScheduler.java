@@ -21,6 +21,7 @@
 package net.daporkchop.fp2.util.threading.scheduler;
 
 import lombok.NonNull;
+import net.daporkchop.fp2.common.util.metrics.MetricsScope;
 import net.daporkchop.fp2.util.datastructure.ConcurrentUnboundedPriorityBlockingQueue;
 import net.daporkchop.fp2.util.threading.workergroup.WorkerGroupBuilder;
 import net.daporkchop.lib.common.util.PorkUtil;
@@ -66,6 +67,12 @@ public class ApproximatelyPrioritizedSharedFutureScheduler<P, V> extends SharedF
         this.initialComparator = initialComparator;
     }
 
+    public ApproximatelyPrioritizedSharedFutureScheduler(@NonNull Function<Scheduler<P, V>, Function<P, V>> functionFactory, @NonNull WorkerGroupBuilder builder, @NonNull MetricsScope metrics, @NonNull Comparator<P> initialComparator) {
+        super(functionFactory, builder, metrics);
+
+        this.initialComparator = initialComparator;
+    }
+
     @Override
     protected Supplier<Deque<SharedFutureScheduler<P, V>.Task>> recursionStackFactory() {
         return () -> new ArrayDeque<SharedFutureScheduler<P, V>.Task>() {
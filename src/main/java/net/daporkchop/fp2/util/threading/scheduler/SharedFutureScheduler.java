@@ -23,6 +23,10 @@ package net.daporkchop.fp2.util.threading.scheduler;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.SneakyThrows;
+import net.daporkchop.fp2.common.util.metrics.Counter;
+import net.daporkchop.fp2.common.util.metrics.Histogram;
+import net.daporkchop.fp2.common.util.metrics.MetricsRegistry;
+import net.daporkchop.fp2.common.util.metrics.MetricsScope;
 import net.daporkchop.fp2.util.threading.ThreadingHelper;
 import net.daporkchop.fp2.util.threading.workergroup.WorkerGroupBuilder;
 import net.daporkchop.fp2.util.threading.workergroup.WorldWorkerGroup;
@@ -73,7 +77,28 @@ public class SharedFutureScheduler<P, V> implements Scheduler<P, V>, Runnable {
     protected final WorldWorkerGroup group;
     protected volatile boolean running = true;
 
+    protected final MetricsScope metrics;
+    protected final Counter metricTasksCreated;
+    protected final Counter metricTasksCompleted;
+    protected final Counter metricTasksFailed;
+    protected final Counter metricTasksCancelled;
+    protected final Histogram metricTaskDuration;
+
     public SharedFutureScheduler(@NonNull Function<Scheduler<P, V>, Function<P, V>> functionFactory, @NonNull WorkerGroupBuilder builder) {
+        //metrics recorded by a scheduler with no explicit scope are simply never exported
+        this(functionFactory, builder, new MetricsRegistry().scope("scheduler"));
+    }
+
+    public SharedFutureScheduler(@NonNull Function<Scheduler<P, V>, Function<P, V>> functionFactory, @NonNull WorkerGroupBuilder builder, @NonNull MetricsScope metrics) {
+        this.metrics = metrics;
+        this.metricTasksCreated = metrics.counter("tasks.created");
+        this.metricTasksCompleted = metrics.counter("tasks.completed");
+        this.metricTasksFailed = metrics.counter("tasks.failed");
+        this.metricTasksCancelled = metrics.counter("tasks.cancelled");
+        this.metricTaskDuration = metrics.histogram("tasks.duration");
+        metrics.gauge("tasks.pending", this.tasks::size);
+        metrics.gauge("queue.size", this.queue::size);
+
         this.function = functionFactory.apply(this);
 
         this.group = builder.build(this);
@@ -112,6 +137,8 @@ public class SharedFutureScheduler<P, V> implements Scheduler<P, V>, Runnable {
 
         //wait until all the workers have exited
         this.group.close();
+
+        this.metrics.close();
     }
 
     protected Task retainTask(@NonNull P _param) {
@@ -126,6 +153,7 @@ public class SharedFutureScheduler<P, V> implements Scheduler<P, V>, Runnable {
                     }
 
                     task = SharedFutureScheduler.this.createTask(param);
+                    SharedFutureScheduler.this.metricTasksCreated.inc();
 
                     //add task to execution queue
                     SharedFutureScheduler.this.enqueue(task);
@@ -136,6 +164,7 @@ public class SharedFutureScheduler<P, V> implements Scheduler<P, V>, Runnable {
 
                     Task previousTask = task;
                     task = SharedFutureScheduler.this.createTask(param);
+                    SharedFutureScheduler.this.metricTasksCreated.inc();
 
                     //remember the previous task instance for later
                     task.previous = previousTask;
@@ -188,6 +217,7 @@ public class SharedFutureScheduler<P, V> implements Scheduler<P, V>, Runnable {
 
                         SharedFutureScheduler.this.unqueue(task);
                         task.cancel0();
+                        SharedFutureScheduler.this.metricTasksCancelled.inc();
 
                         //save the task so we can cancel its dependents later (without holding a lock on the map entry)
                         this.task = task;
@@ -314,22 +344,28 @@ public class SharedFutureScheduler<P, V> implements Scheduler<P, V>, Runnable {
         Deque<Task> recursionStack = this.recursionStack.get();
         recursionStack.push(task);
 
+        //note that the measured duration of a recursive task includes the time spent executing its dependencies
+        long startTime = this.metricTaskDuration.nanoTime();
         try { //execute the task and complete future accordingly
             task.complete(this.function.apply(task.param));
+            this.metricTasksCompleted.inc();
         } catch (SchedulerClosedError e) { //catch and rethrow this separately to prevent it from being used to complete the future
             task.cancel0(); //cancel the future to make sure it has a return value
             throw e;
         } catch (RecursiveTaskCancelledError e) { //a dependent task was cancelled, which likely means this one was too (but we need to make sure of it)
             if (!task.isCancelled()) { //this should be impossible
                 task.completeExceptionally(e);
+                this.metricTasksFailed.inc();
                 ThreadingHelper.handle(this.group.world(), e);
             }
         } catch (Throwable t) {
             task.completeExceptionally(t);
+            this.metricTasksFailed.inc();
             if (this.running) { //only handle the exception if we aren't already shutting the scheduler down
                 ThreadingHelper.handle(this.group.world(), t);
             }
         } finally { //the task's been executed, remove it from the map
+            this.metricTaskDuration.recordNanosSince(startTime);
             this.deleteTask(task);
 
             checkState(task == recursionStack.pop());
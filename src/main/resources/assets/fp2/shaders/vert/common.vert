@@ -70,6 +70,12 @@ vec3(0., .5, 1.), vec3(.5, 0., 1.), vec3(5., 1., .5), vec3(5., 1., .5)
 //
 //
 
+vec2 unpackLight(float packedLight) {
+    //block and sky light are packed into the low and high nibbles of a normalized unsigned byte (see RenderConstants#packColorAndLight)
+    uint light = uint(packedLight * 255. + .5);
+    return vec2(light & 0xFu, light >> 4u) / 15.;
+}
+
 vec3 computeVertexColor(vec3 va_color, ivec4 tile_position) {
 #if FP2_DEBUG_COLORS_ENABLED
 #if FP2_DEBUG_COLORS_MODE == FP2_DEBUG_COLORS_MODE_LEVEL
@@ -24,11 +24,11 @@
 #include <"fp2:shaders/vert/fog.vert">
 
 ivec3 getLowOffsetPre(int level) {
-    return ivec3(dl_posHoriz.x << level, dl_heightInt, dl_posHoriz.y << level);
+    return ivec3(dl_posLow.x << level, dl_heightInt, dl_posLow.y << level);
 }
 
 vec3 getLowOffsetPost() {
-    return vec3(0., dl_heightFrac / 256., 0.);
+    return vec3(0., float(dl_posLow.z) / 256., 0.);
 }
 
 void main() {
@@ -47,7 +47,7 @@ void main() {
     vs_out.pos = vs_out.base_pos = vec3(relativePos);
 
     //copy trivial attributes
-    vs_out.light = dl_light;
+    vs_out.light = unpackLight(dl_color.a);
     vs_out.state = dl_state;
     vs_out.color = computeVertexColor(dl_color.rgb, ivec4(dg_tilePos.x, 0, dg_tilePos.yz));
 }
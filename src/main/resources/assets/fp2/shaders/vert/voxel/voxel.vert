@@ -38,7 +38,7 @@ void main() {
     vs_out.pos = vs_out.base_pos = vec3(relativePos);
 
     //copy trivial attributes
-    vs_out.light = dl_light;
+    vs_out.light = unpackLight(dl_color.a);
     vs_out.state = dl_state;
-    vs_out.color = computeVertexColor(dl_color, dg_tilePos);
+    vs_out.color = computeVertexColor(dl_color.rgb, dg_tilePos);
 }
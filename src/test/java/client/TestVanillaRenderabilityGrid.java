@@ -0,0 +1,202 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package client;
+
+import net.daporkchop.fp2.client.VanillaRenderabilityGrid;
+import net.daporkchop.fp2.common.util.alloc.DirectMemoryAllocator;
+import net.daporkchop.lib.unsafe.PUnsafe;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that incremental updates to a {@link VanillaRenderabilityGrid} produce the same results as a full recompute, using random sequences of chunk section
+ * loads and unloads. No GL context is required.
+ *
+ * @author DaPorkchop_
+ */
+public class TestVanillaRenderabilityGrid {
+    protected static final int SIZE_X = 13;
+    protected static final int SIZE_Y = 9;
+    protected static final int SIZE_Z = 11;
+
+    protected static void apply(VanillaRenderabilityGrid grid, Map<Long, Integer> previous, Map<Long, Integer> sections, int offsetX, int offsetY, int offsetZ) {
+        int oldOffsetX = grid.offsetX();
+        int oldOffsetY = grid.offsetY();
+        int oldOffsetZ = grid.offsetZ();
+
+        boolean reset = grid.begin(offsetX, offsetY, offsetZ, SIZE_X, SIZE_Y, SIZE_Z);
+        boolean moved = oldOffsetX != offsetX || oldOffsetY != offsetY || oldOffsetZ != offsetZ;
+
+        //only pass the sections which changed since the previous update (or which were previously outside of the grid), just like VanillaRenderabilityTracker
+        if (!reset) {
+            previous.keySet().forEach(key -> {
+                if (!sections.containsKey(key)) {
+                    grid.set(unpackX(key), unpackY(key), unpackZ(key), 0);
+                }
+            });
+        }
+        sections.forEach((key, flags) -> {
+            if (reset || !flags.equals(previous.get(key))
+                || (moved && !inBounds(unpackX(key) + oldOffsetX, unpackY(key) + oldOffsetY, unpackZ(key) + oldOffsetZ))) {
+                grid.set(unpackX(key), unpackY(key), unpackZ(key), flags);
+            }
+        });
+        grid.end();
+
+        previous.clear();
+        previous.putAll(sections);
+    }
+
+    protected static boolean inBounds(int x, int y, int z) {
+        return x >= 0 && x < SIZE_X && y >= 0 && y < SIZE_Y && z >= 0 && z < SIZE_Z;
+    }
+
+    protected static long pack(int x, int y, int z) {
+        return ((x & 0xFFFFFL) << 40) | ((y & 0xFFFFFL) << 20) | (z & 0xFFFFFL);
+    }
+
+    protected static int unpackX(long key) {
+        return (int) (key << 4 >> 44);
+    }
+
+    protected static int unpackY(long key) {
+        return (int) (key << 24 >> 44);
+    }
+
+    protected static int unpackZ(long key) {
+        return (int) (key << 44 >> 44);
+    }
+
+    protected static void assertGridsEqual(VanillaRenderabilityGrid expected, VanillaRenderabilityGrid actual) {
+        assertEquals(expected.sizeBytes(), actual.sizeBytes());
+        for (long i = 0L; i < expected.sizeBytes(); i++) {
+            assertEquals("byte " + i, PUnsafe.getByte(expected.addr() + i), PUnsafe.getByte(actual.addr() + i));
+        }
+    }
+
+    @Test
+    public void testRandomLoadUnload() {
+        SplittableRandom r = new SplittableRandom(1337L);
+        DirectMemoryAllocator alloc = new DirectMemoryAllocator();
+
+        VanillaRenderabilityGrid incremental = new VanillaRenderabilityGrid(alloc);
+        try {
+            Map<Long, Integer> previous = new HashMap<>();
+            Map<Long, Integer> sections = new HashMap<>();
+            int offsetX = 5;
+            int offsetY = 3;
+            int offsetZ = -2;
+
+            byte[] prev = new byte[0];
+            for (int step = 0; step < 500; step++) {
+                boolean moved = false;
+                if (step % 20 == 19) { //occasionally move the grid, its existing contents should be translated rather than rebuilt
+                    offsetX += r.nextInt(-2, 3);
+                    offsetY += r.nextInt(-2, 3);
+                    offsetZ += r.nextInt(-2, 3);
+                    moved = true;
+                }
+
+                //load and unload a few random sections
+                for (int i = r.nextInt(1, 16); i > 0; i--) {
+                    long key = pack(r.nextInt(SIZE_X) - offsetX, r.nextInt(SIZE_Y) - offsetY, r.nextInt(SIZE_Z) - offsetZ);
+                    if (r.nextInt(3) == 0) {
+                        sections.remove(key);
+                    } else {
+                        sections.put(key, VanillaRenderabilityGrid.FLAG_COMPILED | r.nextInt(1 << 6));
+                    }
+                }
+
+                apply(incremental, previous, sections, offsetX, offsetY, offsetZ);
+                if (moved) {
+                    assertFalse(incremental.resized());
+                }
+
+                //build a new grid from scratch, which will always do a full recompute
+                VanillaRenderabilityGrid full = new VanillaRenderabilityGrid(alloc);
+                try {
+                    apply(full, new HashMap<>(), sections, offsetX, offsetY, offsetZ);
+                    assertGridsEqual(full, incremental);
+                } finally {
+                    full.release();
+                }
+
+                //make sure that every modified byte is within the dirty range
+                byte[] curr = new byte[(int) incremental.sizeBytes()];
+                PUnsafe.copyMemory(null, incremental.addr(), curr, PUnsafe.ARRAY_BYTE_BASE_OFFSET, curr.length);
+                if (step != 0) {
+                    assertEquals(prev.length, curr.length);
+                    for (int i = 0; i < curr.length; i++) {
+                        if (prev[i] != curr[i]) {
+                            assertTrue("byte " + i + " was modified outside of the dirty range", i >= incremental.dirtyStart() && i < incremental.dirtyEnd());
+                        }
+                    }
+                }
+                incremental.markClean();
+                prev = curr;
+            }
+        } finally {
+            incremental.release();
+        }
+    }
+
+    @Test
+    public void testUnchangedIsClean() {
+        VanillaRenderabilityGrid grid = new VanillaRenderabilityGrid(new DirectMemoryAllocator());
+        try {
+            Map<Long, Integer> previous = new HashMap<>();
+            Map<Long, Integer> sections = new HashMap<>();
+            for (int x = 0; x < SIZE_X; x++) {
+                for (int y = 0; y < SIZE_Y; y++) {
+                    for (int z = 0; z < SIZE_Z; z++) {
+                        sections.put(pack(x, y, z), VanillaRenderabilityGrid.FLAG_COMPILED | 0x3F);
+                    }
+                }
+            }
+
+            apply(grid, previous, sections, 0, 0, 0);
+            assertTrue(grid.dirty());
+            assertTrue(grid.resized());
+            assertTrue(grid.vanillaBlocksFP2RenderingAtLevel0(1, 1, 1));
+            grid.markClean();
+
+            apply(grid, previous, sections, 0, 0, 0);
+            assertFalse(grid.dirty());
+
+            //unloading a single section should only affect the section and its neighbors
+            sections.remove(pack(4, 4, 4));
+            apply(grid, previous, sections, 0, 0, 0);
+            assertTrue(grid.dirty());
+            assertFalse(grid.resized());
+            assertFalse(grid.vanillaBlocksFP2RenderingAtLevel0(4, 4, 4));
+            assertFalse(grid.vanillaBlocksFP2RenderingAtLevel0(4, 5, 4));
+            assertFalse(grid.vanillaBlocksFP2RenderingAtLevel0(3, 4, 4));
+            assertTrue(grid.vanillaBlocksFP2RenderingAtLevel0(3, 3, 4));
+        } finally {
+            grid.release();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package common.util.alloc;
+
+import lombok.RequiredArgsConstructor;
+import net.daporkchop.fp2.common.util.alloc.Allocator;
+import net.daporkchop.fp2.common.util.alloc.SequentialSegregatedFitAllocator;
+import net.daporkchop.fp2.common.util.alloc.SequentialVariableSizedAllocator;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.function.BiFunction;
+
+import static net.daporkchop.lib.common.util.PValidation.*;
+
+/**
+ * Randomized allocate/free tests for variable-sized {@link Allocator} implementations.
+ *
+ * @author DaPorkchop_
+ */
+@RunWith(Parameterized.class)
+@RequiredArgsConstructor
+public class TestAllocatorFuzz {
+    @Parameterized.Parameters(name = "{0}, blockSize={1}")
+    public static Object[][] allocators() {
+        BiFunction<Long, Allocator.SequentialHeapManager, Allocator> variableSized = SequentialVariableSizedAllocator::new;
+        BiFunction<Long, Allocator.SequentialHeapManager, Allocator> segregatedFit = SequentialSegregatedFitAllocator::new;
+
+        return new Object[][]{
+                { "SequentialVariableSizedAllocator", 1L, variableSized },
+                { "SequentialVariableSizedAllocator", 24L, variableSized },
+                { "SequentialSegregatedFitAllocator", 1L, segregatedFit },
+                { "SequentialSegregatedFitAllocator", 24L, segregatedFit },
+        };
+    }
+
+    private final String name;
+    private final long blockSize;
+    private final BiFunction<Long, Allocator.SequentialHeapManager, Allocator> factory;
+
+    private long capacity;
+
+    private Allocator allocator() {
+        return this.factory.apply(this.blockSize, Allocator.SequentialHeapManager.unified(capacity -> this.capacity = capacity));
+    }
+
+    private static void checkNoOverlap(TreeMap<Long, Long> live, long address, long size) {
+        Map.Entry<Long, Long> below = live.floorEntry(address);
+        checkState(below == null || below.getKey() + below.getValue() <= address, "allocation at %d (size %d) overlaps allocation at %d (size %d)", address, size, below == null ? 0L : below.getKey(), below == null ? 0L : below.getValue());
+        Map.Entry<Long, Long> above = live.higherEntry(address);
+        checkState(above == null || address + size <= above.getKey(), "allocation at %d (size %d) overlaps allocation at %d", address, size, above == null ? 0L : above.getKey());
+    }
+
+    private void fuzz(long seed, int operations, int maxLive, int maxSize) {
+        SplittableRandom random = new SplittableRandom(seed);
+        Allocator allocator = this.allocator();
+
+        TreeMap<Long, Long> live = new TreeMap<>();
+        List<Long> addresses = new ArrayList<>();
+        long liveSpace = 0L;
+
+        for (int i = 0; i < operations; i++) {
+            if (addresses.size() < maxLive && (addresses.isEmpty() || random.nextInt(5) < 3)) {
+                long size = random.nextInt(1, maxSize + 1);
+                long address = allocator.alloc(size);
+
+                checkState(address % this.blockSize == 0L, "address %d isn't aligned to block size %d", address, this.blockSize);
+                checkState(address >= 0L && address + size <= this.capacity, "allocation at %d (size %d) is outside of the heap (capacity %d)", address, size, this.capacity);
+                checkNoOverlap(live, address, size);
+
+                live.put(address, size);
+                addresses.add(address);
+                liveSpace += size;
+            } else {
+                //swap-remove a random live allocation
+                int index = random.nextInt(addresses.size());
+                long address = addresses.get(index);
+                addresses.set(index, addresses.get(addresses.size() - 1));
+                addresses.remove(addresses.size() - 1);
+
+                allocator.free(address);
+                liveSpace -= live.remove(address);
+            }
+
+            if ((i & 1023) == 0) {
+                Allocator.Stats stats = allocator.stats();
+                checkState(stats.allocations() == live.size(), "allocator reports %d allocations, but there are %d", stats.allocations(), live.size());
+                checkState(stats.allocatedSpace() >= liveSpace, "allocator reports %d allocated, but %d is in use", stats.allocatedSpace(), liveSpace);
+                checkState(stats.totalSpace() == this.capacity, "allocator reports capacity %d, but the heap has capacity %d", stats.totalSpace(), this.capacity);
+            }
+        }
+
+        //free everything, after which all of the heap should be reusable for a single allocation
+        for (long address : addresses) {
+            allocator.free(address);
+        }
+        checkState(allocator.stats().allocations() == 0L);
+        checkState(allocator.stats().allocatedSpace() == 0L);
+
+        long capacity = this.capacity;
+        checkState(allocator.alloc(capacity - capacity % this.blockSize) == 0L, "the heap is still fragmented after freeing everything");
+        checkState(this.capacity == capacity, "the heap was expanded even though it was entirely free");
+    }
+
+    @Test
+    public void testSmall() {
+        this.fuzz(1337L, 200000, 512, 64);
+    }
+
+    @Test
+    public void testMixed() {
+        this.fuzz(42L, 200000, 256, 8192);
+    }
+
+    @Test
+    public void testLarge() {
+        this.fuzz(-1L, 20000, 64, 1 << 20);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDoubleFree() {
+        Allocator allocator = this.allocator();
+        long address = allocator.alloc(100L);
+        allocator.alloc(100L);
+        allocator.free(address);
+        allocator.free(address);
+    }
+}
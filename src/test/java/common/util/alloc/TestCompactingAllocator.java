@@ -0,0 +1,203 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package common.util.alloc;
+
+import lombok.RequiredArgsConstructor;
+import net.daporkchop.fp2.common.util.alloc.Allocator;
+import net.daporkchop.fp2.common.util.alloc.CompactingAllocator;
+import net.daporkchop.fp2.common.util.alloc.SequentialSegregatedFitAllocator;
+import net.daporkchop.fp2.common.util.alloc.SequentialVariableSizedAllocator;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.function.Function;
+
+import static net.daporkchop.lib.common.util.PValidation.*;
+
+/**
+ * Tests compaction of {@link CompactingAllocator} implementations against a simple heap backed by a {@code byte[]}.
+ *
+ * @author DaPorkchop_
+ */
+@RunWith(Parameterized.class)
+@RequiredArgsConstructor
+public class TestCompactingAllocator {
+    @Parameterized.Parameters(name = "{0}")
+    public static Object[][] allocators() {
+        return new Object[][]{
+                { "SequentialVariableSizedAllocator", (Function<Allocator.SequentialHeapManager, CompactingAllocator>) manager -> new SequentialVariableSizedAllocator(1L, manager) },
+                { "SequentialSegregatedFitAllocator", (Function<Allocator.SequentialHeapManager, CompactingAllocator>) manager -> new SequentialSegregatedFitAllocator(1L, manager) },
+        };
+    }
+
+    private final String name;
+    private final Function<Allocator.SequentialHeapManager, CompactingAllocator> factory;
+
+    private byte[] heap = new byte[0];
+
+    //maps the address of each live allocation to its size and the value used to fill it
+    private final Map<Long, long[]> live = new HashMap<>();
+
+    private CompactingAllocator allocator() {
+        return this.factory.apply(Allocator.SequentialHeapManager.unified(capacity -> this.heap = Arrays.copyOf(this.heap, toInt(capacity))));
+    }
+
+    private void alloc(CompactingAllocator allocator, long size, long tag) {
+        long address = allocator.alloc(size);
+        for (int i = 0; i < size; i++) {
+            this.heap[toInt(address + i)] = (byte) (tag * 31L + i);
+        }
+        checkState(this.live.put(address, new long[]{ size, tag }) == null, "address %d was allocated twice", address);
+    }
+
+    private void free(CompactingAllocator allocator, long address) {
+        allocator.free(address);
+        checkState(this.live.remove(address) != null);
+    }
+
+    private long compact(CompactingAllocator allocator, long budget) {
+        Map<Long, long[]> moved = new HashMap<>(this.live);
+        long movedSpace = allocator.compact(budget, new CompactingAllocator.Mover() {
+            @Override
+            public void copy(long src, long dst, long size) {
+                checkState(src >= dst + size || dst >= src + size, "overlapping copy from %d to %d (size %d)", src, dst, size);
+                System.arraycopy(TestCompactingAllocator.this.heap, toInt(src), TestCompactingAllocator.this.heap, toInt(dst), toInt(size));
+            }
+
+            @Override
+            public void moved(long oldAddress, long newAddress) {
+                long[] allocation = moved.remove(oldAddress);
+                checkState(allocation != null, "moved unknown allocation at %d", oldAddress);
+                checkState(moved.put(newAddress, allocation) == null, "moved allocation at %d onto another allocation at %d", oldAddress, newAddress);
+            }
+        });
+
+        this.live.clear();
+        this.live.putAll(moved);
+        this.validate();
+        return movedSpace;
+    }
+
+    private void validate() {
+        this.live.forEach((address, allocation) -> {
+            for (int i = 0; i < allocation[0]; i++) {
+                checkState(this.heap[toInt(address + i)] == (byte) (allocation[1] * 31L + i), "allocation at %d was corrupted", address);
+            }
+        });
+    }
+
+    private long liveSpace() {
+        return this.live.values().stream().mapToLong(allocation -> allocation[0]).sum();
+    }
+
+    @Test
+    public void testFullCompaction() {
+        CompactingAllocator allocator = this.allocator();
+        for (int i = 0; i < 256; i++) {
+            this.alloc(allocator, 100L + (i % 7) * 50L, i);
+        }
+
+        //free every other allocation
+        List<Long> addresses = new ArrayList<>(this.live.keySet());
+        addresses.sort(null);
+        for (int i = 0; i < addresses.size(); i += 2) {
+            this.free(allocator, addresses.get(i));
+        }
+        checkState(allocator.fragmentedSpace() > 0L);
+
+        this.compact(allocator, Long.MAX_VALUE);
+        checkState(allocator.fragmentedSpace() == 0L, "heap wasn't fully compacted");
+
+        //all live allocations should now be packed together at the start of the heap
+        long end = this.live.entrySet().stream().mapToLong(e -> e.getKey() + e.getValue()[0]).max().getAsLong();
+        checkState(end <= allocator.stats().allocatedSpace(), "live data ends at %d, but only %d are allocated", end, allocator.stats().allocatedSpace());
+
+        //the heap should have been shrunk
+        checkState(this.heap.length < addresses.stream().mapToLong(Long::longValue).max().getAsLong(), "heap wasn't shrunk");
+    }
+
+    @Test
+    public void testIncrementalCompaction() {
+        CompactingAllocator allocator = this.allocator();
+        for (int i = 0; i < 64; i++) {
+            this.alloc(allocator, 1000L, i);
+        }
+        for (long address : new ArrayList<>(this.live.keySet())) {
+            if (address % 3000L == 0L) {
+                this.free(allocator, address);
+            }
+        }
+
+        //each pass may exceed the budget by at most one allocation
+        int passes = 0;
+        while (allocator.fragmentedSpace() > 0L) {
+            long moved = this.compact(allocator, 2500L);
+            checkState(moved > 0L, "no progress was made");
+            checkState(moved < 2500L + 1000L, "moved %d, which is more than the budget allows", moved);
+            checkState(++passes < 1000, "compaction isn't converging");
+        }
+        checkState(passes > 1, "compaction should have needed multiple passes");
+    }
+
+    @Test
+    public void testSlide() {
+        //a gap which is too small for any allocation to fit into must be eliminated by sliding the following allocations down
+        CompactingAllocator allocator = this.allocator();
+        this.alloc(allocator, 10L, 0);
+        this.alloc(allocator, 1000L, 1);
+        this.alloc(allocator, 1000L, 2);
+        this.free(allocator, 0L);
+
+        this.compact(allocator, Long.MAX_VALUE);
+        checkState(allocator.fragmentedSpace() == 0L);
+        checkState(this.live.containsKey(0L), "live data wasn't moved to the start of the heap");
+    }
+
+    @Test
+    public void testRandom() {
+        SplittableRandom random = new SplittableRandom(1337L);
+        CompactingAllocator allocator = this.allocator();
+
+        for (int i = 0; i < 100000; i++) {
+            if (this.live.size() < 256 && (this.live.isEmpty() || random.nextInt(3) != 0)) {
+                this.alloc(allocator, random.nextInt(1, random.nextBoolean() ? 100 : 5000), i);
+            } else {
+                List<Long> addresses = new ArrayList<>(this.live.keySet());
+                this.free(allocator, addresses.get(random.nextInt(addresses.size())));
+            }
+
+            if (random.nextInt(64) == 0) {
+                this.compact(allocator, random.nextInt(20000));
+            }
+        }
+
+        this.compact(allocator, Long.MAX_VALUE);
+        checkState(allocator.fragmentedSpace() == 0L);
+        checkState(allocator.stats().allocatedSpace() >= this.liveSpace());
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package common.util.metrics;
+
+import net.daporkchop.fp2.common.util.metrics.Counter;
+import net.daporkchop.fp2.common.util.metrics.Gauge;
+import net.daporkchop.fp2.common.util.metrics.Histogram;
+import net.daporkchop.fp2.common.util.metrics.JsonLinesMetricsExporter;
+import net.daporkchop.fp2.common.util.metrics.MetricsRegistry;
+import net.daporkchop.fp2.common.util.metrics.MetricsReporter;
+import net.daporkchop.fp2.common.util.metrics.MetricsScope;
+import net.daporkchop.fp2.common.util.metrics.MetricsSnapshot;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author DaPorkchop_
+ */
+public class TestMetricsRegistry {
+    @Test
+    public void testCounterAndGauge() {
+        MetricsRegistry registry = new MetricsRegistry();
+
+        Counter counter = registry.counter("a.counter");
+        assertSame(counter, registry.counter("a.counter"));
+        IntStream.range(0, 1000).parallel().forEach(i -> counter.add(i));
+
+        Gauge gauge = registry.gauge("a.gauge");
+        gauge.add(10L);
+        gauge.dec();
+
+        AtomicLong backing = new AtomicLong(42L);
+        registry.gauge("a.callback", backing::get);
+
+        MetricsSnapshot snapshot = registry.snapshot();
+        assertEquals(999L * 1000L / 2L, snapshot.counters().get("a.counter").longValue());
+        assertEquals(9L, snapshot.gauges().get("a.gauge").longValue());
+        assertEquals(42L, snapshot.gauges().get("a.callback").longValue());
+
+        //callback gauges are evaluated when the snapshot is taken
+        backing.set(7L);
+        assertEquals(7L, registry.snapshot().gauges().get("a.callback").longValue());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testTypeMismatch() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("x");
+        registry.histogram("x");
+    }
+
+    @Test
+    public void testHistogram() {
+        Histogram histogram = new Histogram();
+        for (long i = 1L; i <= 100L; i++) {
+            histogram.record(i);
+        }
+        histogram.record(-5L); //clamped to 0
+
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(101L, snapshot.count());
+        assertEquals(5050L, snapshot.sum());
+        assertEquals(100L, snapshot.max());
+        assertEquals(1L, snapshot.bucket(0));
+        assertEquals(32L, snapshot.bucket(Histogram.bucketIndex(32L))); //[32, 64)
+
+        //quantiles are only accurate to within a factor of two, but must never underestimate or exceed the maximum
+        long p50 = snapshot.quantile(0.5d);
+        assertTrue("p50=" + p50, p50 >= 50L && p50 < 100L);
+        assertEquals(100L, snapshot.quantile(0.99d));
+        assertEquals(100L, snapshot.quantile(1.0d));
+        assertEquals(0L, snapshot.quantile(0.0d));
+
+        assertEquals(0L, new Histogram().snapshot().quantile(0.5d));
+    }
+
+    @Test
+    public void testHistogramClock() {
+        AtomicLong clock = new AtomicLong(1000L);
+        MetricsRegistry registry = new MetricsRegistry(clock::get);
+        Histogram histogram = registry.histogram("test");
+
+        long startTime = histogram.nanoTime();
+        clock.addAndGet(250L);
+        histogram.recordNanosSince(startTime);
+
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1L, snapshot.count());
+        assertEquals(250L, snapshot.sum());
+    }
+
+    @Test
+    public void testHistogramBuckets() {
+        assertEquals(0, Histogram.bucketIndex(0L));
+        assertEquals(1, Histogram.bucketIndex(1L));
+        assertEquals(2, Histogram.bucketIndex(2L));
+        assertEquals(2, Histogram.bucketIndex(3L));
+        assertEquals(Long.SIZE, Histogram.bucketIndex(Long.MAX_VALUE));
+
+        for (int i = 0; i < Histogram.BUCKET_COUNT; i++) {
+            assertEquals(i, Histogram.bucketIndex(Histogram.bucketUpperBound(i)));
+        }
+    }
+
+    @Test
+    public void testScope() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("other").inc();
+
+        MetricsScope scope = registry.scope("world");
+        scope.counter("c").inc();
+        scope.scope("child").histogram("h").record(5L);
+        scope.gauge("g", () -> 3L);
+
+        MetricsSnapshot snapshot = registry.snapshot();
+        assertEquals(1L, snapshot.counters().get("world.c").longValue());
+        assertEquals(1L, snapshot.histograms().get("world.child.h").count());
+        assertEquals(3L, snapshot.gauges().get("world.g").longValue());
+
+        scope.close();
+        snapshot = registry.snapshot();
+        assertEquals(1, snapshot.counters().size());
+        assertTrue(snapshot.counters().containsKey("other"));
+        assertTrue(snapshot.gauges().isEmpty());
+        assertTrue(snapshot.histograms().isEmpty());
+    }
+
+    @Test
+    public void testJson() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("b").add(3L);
+        registry.counter("a\"q").inc();
+        registry.gauge("g").set(-2L);
+        registry.histogram("h").record(4L);
+
+        String json = JsonLinesMetricsExporter.toJson(registry.snapshot());
+        assertFalse(json.contains("\n"));
+        assertTrue(json, json.contains("\"counters\":{\"a\\\"q\":1,\"b\":3}"));
+        assertTrue(json, json.contains("\"gauges\":{\"g\":-2}"));
+        assertTrue(json, json.contains("\"h\":{\"count\":1,\"sum\":4,\"max\":4,\"mean\":4.0,\"p50\":4,\"p90\":4,\"p99\":4}"));
+    }
+
+    @Test
+    public void testReporter() throws Exception {
+        MetricsRegistry registry = new MetricsRegistry();
+        Counter counter = registry.counter("c");
+
+        List<MetricsSnapshot> exported = new ArrayList<>();
+        MetricsReporter reporter = new MetricsReporter(registry, exported::add, 1L, TimeUnit.HOURS);
+
+        counter.inc();
+        assertTrue(reporter.report());
+        counter.inc();
+        reporter.close(); //exports a final snapshot
+
+        assertEquals(2, exported.size());
+        assertEquals(1L, exported.get(0).counters().get("c").longValue());
+        assertEquals(2L, exported.get(1).counters().get("c").longValue());
+        assertFalse(reporter.report());
+    }
+
+    @Test
+    public void testReporterFailure() throws Exception {
+        MetricsRegistry registry = new MetricsRegistry();
+        MetricsReporter reporter = new MetricsReporter(registry, snapshot -> {
+            throw new IOException("disk full");
+        }, 1L, TimeUnit.HOURS);
+
+        assertFalse(reporter.report());
+        assertEquals(1L, reporter.failures().count());
+        reporter.close();
+    }
+
+    @Test
+    public void testJsonLinesFile() throws Exception {
+        Path file = Files.createTempFile("fp2-metrics", ".jsonl");
+        try {
+            MetricsRegistry registry = new MetricsRegistry();
+            registry.counter("c").inc();
+
+            try (JsonLinesMetricsExporter exporter = new JsonLinesMetricsExporter(file)) {
+                exporter.export(registry.snapshot());
+                registry.counter("c").inc();
+                exporter.export(registry.snapshot());
+            }
+
+            List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            assertEquals(2, lines.size());
+            assertTrue(lines.get(0).contains("\"c\":1"));
+            assertTrue(lines.get(1).contains("\"c\":2"));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package compat.cwg;
+
+import io.github.opencubicchunks.cubicchunks.cubicgen.common.biome.IBiomeBlockReplacer;
+import io.github.opencubicchunks.cubicchunks.cubicgen.customcubic.CustomGeneratorSettings;
+import net.daporkchop.fp2.compat.cwg.CWGColumnCache;
+import net.daporkchop.fp2.compat.cwg.CWGContext;
+import net.daporkchop.fp2.compat.cwg.noise.CWGNoiseProvider;
+import net.daporkchop.fp2.compat.vanilla.biome.BiomeHelper;
+import net.daporkchop.fp2.compat.vanilla.biome.IBiomeProvider;
+import net.minecraft.world.GameType;
+import net.minecraft.world.WorldSettings;
+import net.minecraft.world.WorldType;
+import net.minecraft.world.biome.BiomeProvider;
+import net.minecraft.world.storage.WorldInfo;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import util.FP2Test;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+
+import static net.daporkchop.fp2.util.Constants.*;
+import static net.daporkchop.lib.common.math.PMath.*;
+import static net.daporkchop.lib.common.util.PorkUtil.*;
+import static org.junit.Assert.*;
+
+/**
+ * Checks that columns returned by {@link CWGColumnCache} are bit-identical to freshly computed ones, and that {@link CWGContext}s which share a cache
+ * generate exactly the same tile data as ones which don't.
+ *
+ * @author DaPorkchop_
+ */
+public class TestCwgColumnCache {
+    protected static final int SIZE = 17;
+
+    protected static CWGNoiseProvider.Configured CONFIGURED;
+
+    @BeforeClass
+    public static void setup() {
+        FP2Test.init();
+
+        CONFIGURED = CWGNoiseProvider.JAVA_INSTANCE.forSettings(new CustomGeneratorSettings(), 102978420983752L);
+    }
+
+    protected static void load(int baseX, int baseZ, int level, int size, int[] biomes, double[] heights, double[] variations, double[] depth) {
+        CONFIGURED.generateDepth2d(depth, baseX, baseZ, 1 << level, 1 << level, size, size);
+        CONFIGURED.generateDepth2d(heights, baseX + 12345, baseZ - 6789, 1 << level, 1 << level, size, size);
+        CONFIGURED.generateDepth2d(variations, baseX - 2468, baseZ + 1357, 1 << level, 1 << level, size, size);
+        for (int i = 0; i < sq(size); i++) {
+            biomes[i] = (int) (Double.doubleToRawLongBits(depth[i]) & 0xFF);
+        }
+    }
+
+    @Test
+    public void testBitIdentical() {
+        CWGColumnCache cache = new CWGColumnCache(16); //tiny capacity to force lots of collisions
+
+        SplittableRandom r = new SplittableRandom(1337L);
+        CompletableFuture<?>[] futures = uncheckedCast(new CompletableFuture[256]);
+        for (int i = 0; i < futures.length; i++) {
+            long seed = r.nextLong();
+            futures[i] = CompletableFuture.runAsync(() -> {
+                SplittableRandom random = new SplittableRandom(seed);
+                for (int j = 0; j < 64; j++) {
+                    int level = random.nextInt(4);
+                    int baseX = random.nextInt(-8, 8) * (SIZE << level);
+                    int baseZ = random.nextInt(-8, 8) * (SIZE << level);
+
+                    CWGColumnCache.Column column = cache.get(baseX, baseZ, level, SIZE, TestCwgColumnCache::load);
+                    assertEquals(baseX, column.baseX);
+                    assertEquals(baseZ, column.baseZ);
+                    assertEquals(level, column.level);
+                    assertEquals(SIZE, column.size);
+
+                    int[] biomes = new int[sq(SIZE)];
+                    double[] heights = new double[sq(SIZE)];
+                    double[] variations = new double[sq(SIZE)];
+                    double[] depth = new double[sq(SIZE)];
+                    load(baseX, baseZ, level, SIZE, biomes, heights, variations, depth);
+
+                    //Arrays.equals(double[], double[]) compares the raw bits of each element
+                    assertArrayEquals(biomes, column.biomes);
+                    assertTrue(Arrays.equals(heights, column.heights));
+                    assertTrue(Arrays.equals(variations, column.variations));
+                    assertTrue(Arrays.equals(depth, column.depth));
+                }
+            });
+        }
+        CompletableFuture.allOf(futures).join();
+    }
+
+    @Test
+    public void testCachedContextMatchesUncached() {
+        CustomGeneratorSettings conf = new CustomGeneratorSettings();
+        long seed = 102978420983752L;
+        IBiomeProvider biomeProvider = BiomeHelper.from(new BiomeProvider(new WorldInfo(new WorldSettings(seed, GameType.SURVIVAL, true, false, WorldType.DEFAULT), "test")));
+        IBiomeBlockReplacer[][] biomeBlockReplacers = new IBiomeBlockReplacer[0][];
+
+        //two cached contexts sharing a single cache, as two worker threads would
+        CWGColumnCache cache = new CWGColumnCache(16);
+        CWGContext uncached = new CWGContext(SIZE, 2, null, conf, seed, biomeProvider, biomeBlockReplacers);
+        CWGContext[] cached = {
+                new CWGContext(SIZE, 2, cache, conf, seed, biomeProvider, biomeBlockReplacers),
+                new CWGContext(SIZE, 2, cache, conf, seed, biomeProvider, biomeBlockReplacers)
+        };
+
+        double[] expected = new double[SIZE * SIZE * SIZE];
+        double[] actual = new double[SIZE * SIZE * SIZE];
+
+        SplittableRandom r = new SplittableRandom(1337L);
+        for (int i = 0; i < 64; i++) {
+            int level = r.nextInt(4);
+            int tileSize = T_VOXELS << level;
+            int baseX = r.nextInt(-64, 64) * tileSize;
+            int baseZ = r.nextInt(-64, 64) * tileSize;
+
+            //generate a column of vertically adjacent tiles, alternating between the cached contexts so that most tiles are served from the other context's entry
+            for (int tileY = -4; tileY < 4; tileY++) {
+                int baseY = tileY * tileSize;
+                CWGContext ctx = cached[tileY & 1];
+
+                uncached.init(baseX, baseZ, level);
+                ctx.init(baseX, baseZ, level);
+
+                uncached.get3d(expected, baseY);
+                ctx.get3d(actual, baseY);
+
+                //Arrays.equals(double[], double[]) compares the raw bits of each element
+                assertTrue("density differs at " + baseX + ',' + baseY + ',' + baseZ + "@" + level, Arrays.equals(expected, actual));
+                for (int dx = 0; dx < SIZE; dx++) {
+                    for (int dz = 0; dz < SIZE; dz++) {
+                        int x = baseX + (dx << level);
+                        int z = baseZ + (dz << level);
+                        assertEquals(uncached.getBiome(x, z), ctx.getBiome(x, z));
+                    }
+                }
+            }
+        }
+    }
+}
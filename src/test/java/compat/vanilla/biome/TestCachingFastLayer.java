@@ -0,0 +1,125 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package compat.vanilla.biome;
+
+import net.daporkchop.fp2.compat.vanilla.biome.layer.CachingFastLayer;
+import net.daporkchop.fp2.compat.vanilla.biome.layer.FastLayerProvider;
+import net.daporkchop.fp2.compat.vanilla.biome.layer.IFastLayer;
+import net.daporkchop.fp2.compat.vanilla.biome.layer.vanilla.GenLayerRandomValues;
+import net.daporkchop.lib.common.misc.string.PStrings;
+import net.minecraft.world.WorldType;
+import net.minecraft.world.gen.layer.GenLayer;
+import net.minecraft.world.gen.layer.GenLayerZoom;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import util.FP2Test;
+
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+import static net.daporkchop.fp2.util.Constants.*;
+
+/**
+ * @author DaPorkchop_
+ */
+public class TestCachingFastLayer {
+    @BeforeClass
+    public static void init() {
+        FP2Test.init();
+    }
+
+    @Test
+    public void testWrappedLayer() {
+        GenLayer vanilla = new GenLayerZoom(1L, new GenLayerZoom(1L, new GenLayerRandomValues(0L)));
+        vanilla.initWorldGenSeed(12345L);
+
+        IFastLayer uncached = FastLayerProvider.JAVA_INSTANCE.makeFast(false, vanilla)[0];
+        IFastLayer cached = new CachingFastLayer(uncached, 64); //small capacity to force lots of evictions
+
+        SplittableRandom r = new SplittableRandom(1337L);
+        for (int i = 0; i < 1024; i++) {
+            this.compareGrids(cached, uncached, r.nextInt(-100000, 100000), r.nextInt(-100000, 100000), r.nextInt(48) + 1, r.nextInt(48) + 1);
+        }
+
+        //requests covering more tiles than the cache would ever hold
+        this.compareGrids(cached, uncached, -1000, -1000, 300, 300);
+
+        for (int i = 0; i < 1024; i++) {
+            int x = r.nextInt(-100000, 100000);
+            int z = r.nextInt(-100000, 100000);
+            int expected = uncached.getSingle(ALLOC_INT.get(), x, z);
+            int[] grid = new int[1];
+            cached.getGrid(ALLOC_INT.get(), x, z, 1, 1, grid); //ensure the tile is cached
+            int fromGrid = grid[0];
+            int fromSingle = cached.getSingle(ALLOC_INT.get(), x, z);
+            if (expected != fromGrid || expected != fromSingle) {
+                throw new IllegalStateException(PStrings.fastFormat("single at (%d, %d): cached: %d/%d != expected: %d", x, z, fromGrid, fromSingle, expected));
+            }
+        }
+    }
+
+    @Test
+    public void testAdjacentTiles() {
+        this.testAdjacentTiles(GenLayer.initializeAllBiomeGenerators(1L, WorldType.DEFAULT, null)[0]);
+        this.testAdjacentTiles(GenLayer.initializeAllBiomeGenerators(1L, WorldType.LARGE_BIOMES, null)[0]);
+    }
+
+    private void testAdjacentTiles(GenLayer vanilla) {
+        IFastLayer cached = FastLayerProvider.INSTANCE.makeFast(true, vanilla)[0];
+        IFastLayer uncached = FastLayerProvider.INSTANCE.makeFast(false, vanilla)[0];
+
+        //simulate generating a square of adjacent tiles, in parallel and in no particular order
+        IntStream.range(0, 32 * 32).parallel().forEach(i -> {
+            int tileX = (i >> 5) - 16;
+            int tileZ = (i & 31) - 16;
+            this.compareGrids(cached, uncached, tileX * 16 - 1, tileZ * 16 - 1, 18, 18);
+        });
+
+        //multi-grids should also match
+        int size = 5;
+        int count = 16;
+        int[] cachedOut = new int[count * count * size * size];
+        int[] uncachedOut = new int[count * count * size * size];
+        cached.multiGetGrids(ALLOC_INT.get(), -3000, -3000, size, 64, 0, count, cachedOut);
+        uncached.multiGetGrids(ALLOC_INT.get(), -3000, -3000, size, 64, 0, count, uncachedOut);
+        for (int i = 0; i < cachedOut.length; i++) {
+            if (cachedOut[i] != uncachedOut[i]) {
+                throw new IllegalStateException(PStrings.fastFormat("multigrid at index %d: cached: %d != expected: %d", i, cachedOut[i], uncachedOut[i]));
+            }
+        }
+    }
+
+    private void compareGrids(IFastLayer cached, IFastLayer uncached, int x, int z, int sizeX, int sizeZ) {
+        int[] expected = new int[sizeX * sizeZ];
+        uncached.getGrid(ALLOC_INT.get(), x, z, sizeX, sizeZ, expected);
+
+        int[] actual = new int[sizeX * sizeZ];
+        cached.getGrid(ALLOC_INT.get(), x, z, sizeX, sizeZ, actual);
+
+        for (int i = 0, dx = 0; dx < sizeX; dx++) {
+            for (int dz = 0; dz < sizeZ; dz++, i++) {
+                if (expected[i] != actual[i]) {
+                    throw new IllegalStateException(PStrings.fastFormat("grid: at (%d, %d): cached: %d != expected: %d", x + dx, z + dz, actual[i], expected[i]));
+                }
+            }
+        }
+    }
+}
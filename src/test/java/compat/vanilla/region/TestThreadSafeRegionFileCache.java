@@ -0,0 +1,170 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package compat.vanilla.region;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import net.daporkchop.fp2.compat.vanilla.region.ThreadSafeRegionFileCache;
+import net.daporkchop.lib.common.misc.file.PFiles;
+import net.minecraft.util.math.ChunkPos;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import util.FP2Test;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static net.daporkchop.lib.common.util.PValidation.*;
+
+/**
+ * Stress-tests {@link ThreadSafeRegionFileCache} with many threads reading and writing a set of regions which is much larger than the cache's capacity.
+ *
+ * @author DaPorkchop_
+ */
+public class TestThreadSafeRegionFileCache {
+    private static final int THREADS = 16;
+    private static final int OPERATIONS = 4096;
+
+    private static final int REGIONS = 4; //regions along each axis
+    private static final int CHUNKS = REGIONS << 5;
+
+    @BeforeClass
+    public static void init() {
+        FP2Test.init();
+    }
+
+    private Path regionDir;
+
+    @Before
+    public void createDirectory() throws IOException {
+        this.regionDir = Files.createTempDirectory("fp2-test-region");
+    }
+
+    @After
+    public void deleteDirectory() {
+        PFiles.rm(this.regionDir.toFile());
+    }
+
+    @Test
+    public void testConcurrentReadWrite() throws IOException {
+        ThreadSafeRegionFileCache cache = new ThreadSafeRegionFileCache(3); //much smaller than the number of regions, to force constant eviction
+
+        //the version most recently written to each chunk. each chunk is only ever written by a single thread, but regions are shared between all threads.
+        AtomicIntegerArray versions = new AtomicIntegerArray(CHUNKS * CHUNKS);
+
+        CompletableFuture.allOf(IntStream.range(0, THREADS).mapToObj(thread -> CompletableFuture.runAsync(() -> {
+            try {
+                SplittableRandom r = new SplittableRandom(thread);
+                for (int i = 0; i < OPERATIONS; i++) {
+                    int chunkX = r.nextInt(CHUNKS);
+                    int chunkZ = r.nextInt(CHUNKS);
+                    int index = chunkX * CHUNKS + chunkZ;
+
+                    if (index % THREADS == thread && r.nextBoolean()) { //this chunk belongs to us, write a new version of it
+                        int version = versions.get(index) + 1;
+                        cache.write(this.regionDir, chunkX, chunkZ, data(chunkX, chunkZ, version));
+                        versions.set(index, version);
+                    } else { //read the chunk and make sure it's intact
+                        int expectedMinVersion = versions.get(index);
+                        int version = read(cache, this.regionDir, chunkX, chunkZ);
+                        checkState(version >= expectedMinVersion, "chunk (%d, %d): read version %d, but version %d had already been written", chunkX, chunkZ, version, expectedMinVersion);
+                    }
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        })).toArray(CompletableFuture[]::new)).join();
+
+        checkState(cache.size() <= THREADS + 3, "too many regions remain open: %d", cache.size());
+
+        //make sure everything is still correct after closing all the regions
+        cache.clear();
+        checkState(cache.size() == 0, "%d regions remain open after clear()", cache.size());
+
+        for (int chunkX = 0; chunkX < CHUNKS; chunkX++) {
+            for (int chunkZ = 0; chunkZ < CHUNKS; chunkZ++) {
+                int version = versions.get(chunkX * CHUNKS + chunkZ);
+                checkState(read(cache, this.regionDir, chunkX, chunkZ) == version, "chunk (%d, %d)", chunkX, chunkZ);
+                checkState(cache.exists(this.regionDir, chunkX, chunkZ) == (version != 0), "chunk (%d, %d)", chunkX, chunkZ);
+            }
+        }
+
+        //allChunks() should return exactly the chunks which have been written
+        Set<ChunkPos> expected = IntStream.range(0, CHUNKS * CHUNKS).filter(i -> versions.get(i) != 0)
+                .mapToObj(i -> new ChunkPos(i / CHUNKS, i % CHUNKS))
+                .collect(Collectors.toSet());
+        try (Stream<ChunkPos> stream = cache.allChunks(this.regionDir)) {
+            Set<ChunkPos> actual = stream.collect(Collectors.toSet());
+            checkState(expected.equals(actual), "allChunks() returned %d chunks, expected %d", actual.size(), expected.size());
+        }
+
+        cache.clear();
+    }
+
+    @Test
+    public void testMissingRegion() throws IOException {
+        ThreadSafeRegionFileCache cache = new ThreadSafeRegionFileCache(3);
+
+        checkState(cache.read(this.regionDir, 1000, 1000) == null);
+        checkState(!cache.exists(this.regionDir, 1000, 1000));
+        checkState(cache.size() == 0, "reading a missing region shouldn't create it");
+        checkState(Files.notExists(this.regionDir.resolve("r.31.31.mca")));
+    }
+
+    private static ByteBuf data(int chunkX, int chunkZ, int version) {
+        //vary the length with the version so that the region's sector allocation is exercised
+        int length = 3 + (version * 997 & 0x3FFF);
+        ByteBuf buf = Unpooled.buffer(length << 2);
+        buf.writeInt(chunkX).writeInt(chunkZ).writeInt(version);
+        for (int i = 3; i < length; i++) {
+            buf.writeInt(chunkX * 31 + chunkZ * 17 + version * 13 + i);
+        }
+        return buf;
+    }
+
+    private static int read(ThreadSafeRegionFileCache cache, Path regionDir, int chunkX, int chunkZ) throws IOException {
+        try (DataInputStream in = cache.read(regionDir, chunkX, chunkZ)) {
+            if (in == null) {
+                return 0;
+            }
+
+            checkState(in.readInt() == chunkX && in.readInt() == chunkZ, "chunk (%d, %d): read data for wrong chunk", chunkX, chunkZ);
+            int version = in.readInt();
+            int length = 3 + (version * 997 & 0x3FFF);
+            for (int i = 3; i < length; i++) {
+                checkState(in.readInt() == chunkX * 31 + chunkZ * 17 + version * 13 + i, "chunk (%d, %d): corrupted data at index %d", chunkX, chunkZ, i);
+            }
+            checkState(in.read() < 0, "chunk (%d, %d): trailing data", chunkX, chunkZ);
+            return version;
+        }
+    }
+}
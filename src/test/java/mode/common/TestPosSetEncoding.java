@@ -0,0 +1,228 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package mode.common;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import lombok.NonNull;
+import net.daporkchop.fp2.mode.api.IFarDirectPosAccess;
+import net.daporkchop.fp2.mode.api.IFarPos;
+import net.daporkchop.fp2.mode.common.util.PosSetEncoding;
+import net.daporkchop.fp2.mode.heightmap.HeightmapDirectPosAccess;
+import net.daporkchop.fp2.mode.heightmap.HeightmapPos;
+import net.daporkchop.fp2.mode.voxel.VoxelDirectPosAccess;
+import net.daporkchop.fp2.mode.voxel.VoxelPos;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import util.FP2Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import static net.daporkchop.fp2.util.Constants.*;
+import static org.junit.Assert.*;
+
+/**
+ * Checks that {@link PosSetEncoding} round-trips sets of positions, and that it's actually more compact than writing each position individually.
+ *
+ * @author DaPorkchop_
+ */
+public class TestPosSetEncoding {
+    @BeforeClass
+    public static void init() {
+        FP2Test.init();
+    }
+
+    protected static <POS extends IFarPos> ByteBuf encode(@NonNull IFarDirectPosAccess<POS> access, @NonNull Collection<POS> positions) {
+        ByteBuf buf = Unpooled.buffer();
+        PosSetEncoding.write(access, positions, buf);
+        return buf;
+    }
+
+    protected static <POS extends IFarPos> void roundTrip(@NonNull IFarDirectPosAccess<POS> access, @NonNull Collection<POS> positions) {
+        ByteBuf buf = encode(access, positions);
+        try {
+            List<POS> decoded = new ArrayList<>();
+            PosSetEncoding.read(access, buf, decoded::add);
+
+            assertFalse("trailing bytes", buf.isReadable());
+            assertEquals("duplicate positions were decoded", decoded.size(), new HashSet<>(decoded).size());
+            assertEquals(new HashSet<>(positions), new HashSet<>(decoded));
+        } finally {
+            buf.release();
+        }
+    }
+
+    /**
+     * @return the number of bytes used by the old encoding, which wrote each position individually
+     */
+    protected static int sizeIndividually(@NonNull Collection<? extends IFarPos> positions) {
+        ByteBuf buf = Unpooled.buffer();
+        try {
+            writeVarInt(buf, positions.size());
+            positions.forEach(pos -> pos.writePos(buf));
+            return buf.readableBytes();
+        } finally {
+            buf.release();
+        }
+    }
+
+    protected static <POS extends IFarPos> int sizeEncoded(@NonNull IFarDirectPosAccess<POS> access, @NonNull Collection<POS> positions) {
+        ByteBuf buf = encode(access, positions);
+        try {
+            return buf.readableBytes();
+        } finally {
+            buf.release();
+        }
+    }
+
+    //all the tiles tracked by a player at the given position, as would be unloaded after a teleport
+    protected static List<VoxelPos> voxelVolume(int x, int y, int z, int cutoff, int levels) {
+        List<VoxelPos> positions = new ArrayList<>();
+        for (int level = 0; level < levels; level++) {
+            for (int dx = -cutoff; dx <= cutoff; dx++) {
+                for (int dy = -cutoff; dy <= cutoff; dy++) {
+                    for (int dz = -cutoff; dz <= cutoff; dz++) {
+                        positions.add(new VoxelPos(level, (x >> level) + dx, (y >> level) + dy, (z >> level) + dz));
+                    }
+                }
+            }
+        }
+        return positions;
+    }
+
+    protected static List<HeightmapPos> heightmapVolume(int x, int z, int cutoff, int levels) {
+        List<HeightmapPos> positions = new ArrayList<>();
+        for (int level = 0; level < levels; level++) {
+            for (int dx = -cutoff; dx <= cutoff; dx++) {
+                for (int dz = -cutoff; dz <= cutoff; dz++) {
+                    positions.add(new HeightmapPos(level, (x >> level) + dx, (z >> level) + dz));
+                }
+            }
+        }
+        return positions;
+    }
+
+    @Test
+    public void testEmpty() {
+        roundTrip(VoxelDirectPosAccess.INSTANCE, Collections.emptyList());
+        roundTrip(HeightmapDirectPosAccess.INSTANCE, Collections.emptyList());
+    }
+
+    @Test
+    public void testDuplicates() {
+        List<HeightmapPos> positions = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            positions.add(new HeightmapPos(0, -1, 1));
+            positions.add(new HeightmapPos(3, 7, -8));
+        }
+        roundTrip(HeightmapDirectPosAccess.INSTANCE, positions);
+    }
+
+    @Test
+    public void testVolumes() {
+        roundTrip(VoxelDirectPosAccess.INSTANCE, voxelVolume(5000, 0, -3000, 8, 3));
+        roundTrip(VoxelDirectPosAccess.INSTANCE, voxelVolume(-3, -5, 7, 5, 5));
+        roundTrip(HeightmapDirectPosAccess.INSTANCE, heightmapVolume(-700, 1200, 32, 4));
+        roundTrip(HeightmapDirectPosAccess.INSTANCE, heightmapVolume(0, 0, 13, 8));
+    }
+
+    @Test
+    public void testRandom() {
+        SplittableRandom r = new SplittableRandom(1234L);
+        for (int i = 0; i < 64; i++) {
+            int range = 1 << r.nextInt(1, 24);
+            int count = r.nextInt(1, 5000);
+
+            Set<VoxelPos> voxelPositions = new HashSet<>();
+            Set<HeightmapPos> heightmapPositions = new HashSet<>();
+            for (int j = 0; j < count; j++) {
+                int level = r.nextInt(MAX_LODS);
+                voxelPositions.add(new VoxelPos(level, r.nextInt(-range, range), r.nextInt(-range, range), r.nextInt(-range, range)));
+                heightmapPositions.add(new HeightmapPos(level, r.nextInt(-range, range), r.nextInt(-range, range)));
+            }
+
+            roundTrip(VoxelDirectPosAccess.INSTANCE, voxelPositions);
+            roundTrip(HeightmapDirectPosAccess.INSTANCE, heightmapPositions);
+        }
+    }
+
+    @Test
+    public void testExtremeCoordinates() {
+        roundTrip(VoxelDirectPosAccess.INSTANCE, Arrays.asList(
+                new VoxelPos(0, Integer.MIN_VALUE, Integer.MAX_VALUE, 0),
+                new VoxelPos(0, Integer.MAX_VALUE, Integer.MIN_VALUE, -1),
+                new VoxelPos(0, 0, 0, 0)));
+    }
+
+    @Test
+    public void testSizeTeleport() {
+        List<VoxelPos> voxelPositions = voxelVolume(5000, 0, -3000, 8, 3);
+        int voxelEncoded = sizeEncoded(VoxelDirectPosAccess.INSTANCE, voxelPositions);
+        int voxelIndividually = sizeIndividually(voxelPositions);
+        assertTrue(voxelEncoded + " vs " + voxelIndividually, voxelEncoded * 20 < voxelIndividually);
+
+        List<HeightmapPos> heightmapPositions = heightmapVolume(-700, 1200, 32, 4);
+        int heightmapEncoded = sizeEncoded(HeightmapDirectPosAccess.INSTANCE, heightmapPositions);
+        int heightmapIndividually = sizeIndividually(heightmapPositions);
+        assertTrue(heightmapEncoded + " vs " + heightmapIndividually, heightmapEncoded * 20 < heightmapIndividually);
+    }
+
+    @Test
+    public void testSizeMovement() {
+        //the positions which are unloaded when a player moves a few tiles along the X axis
+        int cutoff = 32;
+        int moved = 3;
+
+        List<VoxelPos> voxelPositions = new ArrayList<>();
+        voxelVolume(0, 0, 0, cutoff, 1).stream().filter(pos -> Math.abs(pos.x() - moved) > cutoff).forEach(voxelPositions::add);
+        int voxelEncoded = sizeEncoded(VoxelDirectPosAccess.INSTANCE, voxelPositions);
+        int voxelIndividually = sizeIndividually(voxelPositions);
+        assertTrue(voxelEncoded + " vs " + voxelIndividually, voxelEncoded * 10 < voxelIndividually);
+
+        List<HeightmapPos> heightmapPositions = new ArrayList<>();
+        heightmapVolume(0, 0, cutoff, 1).stream().filter(pos -> Math.abs(pos.x() - moved) > cutoff).forEach(heightmapPositions::add);
+        int heightmapEncoded = sizeEncoded(HeightmapDirectPosAccess.INSTANCE, heightmapPositions);
+        int heightmapIndividually = sizeIndividually(heightmapPositions);
+        assertTrue(heightmapEncoded + " vs " + heightmapIndividually, heightmapEncoded * 10 < heightmapIndividually);
+    }
+
+    @Test
+    public void testSizeSparse() {
+        //widely scattered positions can't benefit from grouping, but shouldn't be any bigger than before
+        SplittableRandom r = new SplittableRandom(5678L);
+        Set<VoxelPos> voxelPositions = new HashSet<>();
+        Set<HeightmapPos> heightmapPositions = new HashSet<>();
+        for (int i = 0; i < 5000; i++) {
+            voxelPositions.add(new VoxelPos(r.nextInt(MAX_LODS), r.nextInt(-100000, 100000), r.nextInt(-2000, 2000), r.nextInt(-100000, 100000)));
+            heightmapPositions.add(new HeightmapPos(r.nextInt(MAX_LODS), r.nextInt(-100000, 100000), r.nextInt(-100000, 100000)));
+        }
+
+        assertTrue(sizeEncoded(VoxelDirectPosAccess.INSTANCE, voxelPositions) < sizeIndividually(voxelPositions));
+        assertTrue(sizeEncoded(HeightmapDirectPosAccess.INSTANCE, heightmapPositions) < sizeIndividually(heightmapPositions));
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package mode.common.client;
+
+import net.daporkchop.fp2.mode.common.client.BakeCoalescer;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author DaPorkchop_
+ */
+public class TestBakeCoalescer {
+    protected static List<Integer> drain(BakeCoalescer<Integer> coalescer) {
+        List<Integer> released = new ArrayList<>();
+        assertEquals(coalescer.drain(released::add), released.size());
+        Collections.sort(released);
+        return released;
+    }
+
+    @Test
+    public void testSettle() {
+        AtomicLong clock = new AtomicLong();
+        BakeCoalescer<Integer> coalescer = new BakeCoalescer<>(clock::get, 10L, 100L);
+
+        assertTrue(coalescer.notify(0));
+        assertTrue(coalescer.notify(1));
+        assertFalse(coalescer.notify(0));
+        assertEquals(2, coalescer.size());
+
+        clock.set(9L);
+        assertEquals(Collections.emptyList(), drain(coalescer));
+
+        clock.set(10L);
+        assertEquals(Arrays.asList(0, 1), drain(coalescer));
+        assertEquals(0, coalescer.size());
+        assertEquals(Collections.emptyList(), drain(coalescer));
+    }
+
+    @Test
+    public void testRenotifyDelays() {
+        AtomicLong clock = new AtomicLong();
+        BakeCoalescer<Integer> coalescer = new BakeCoalescer<>(clock::get, 10L, 100L);
+
+        coalescer.notify(0);
+        coalescer.notify(1);
+
+        clock.set(5L);
+        coalescer.notify(1);
+
+        clock.set(10L);
+        assertEquals(Collections.singletonList(0), drain(coalescer));
+
+        clock.set(15L);
+        assertEquals(Collections.singletonList(1), drain(coalescer));
+    }
+
+    @Test
+    public void testMaxDelay() {
+        AtomicLong clock = new AtomicLong();
+        BakeCoalescer<Integer> coalescer = new BakeCoalescer<>(clock::get, 10L, 100L);
+
+        //keep notifying the position more often than the settle delay, it should still be released once the maximum delay is reached
+        for (long time = 0L; time < 100L; time += 5L) {
+            clock.set(time);
+            coalescer.notify(0);
+            assertEquals(Collections.emptyList(), drain(coalescer));
+        }
+
+        clock.set(100L);
+        assertEquals(Collections.singletonList(0), drain(coalescer));
+    }
+
+    @Test
+    public void testZeroDelay() {
+        AtomicLong clock = new AtomicLong();
+        BakeCoalescer<Integer> coalescer = new BakeCoalescer<>(clock::get, 0L, 0L);
+
+        coalescer.notify(0);
+        coalescer.notify(0);
+        coalescer.notify(1);
+        assertEquals(Arrays.asList(0, 1), drain(coalescer));
+    }
+
+    @Test
+    public void testConcurrentNotify() throws InterruptedException {
+        AtomicLong clock = new AtomicLong();
+        BakeCoalescer<Integer> coalescer = new BakeCoalescer<>(clock::get, 0L, 0L);
+
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            (threads[i] = new Thread(() -> {
+                for (int j = 0; j < 10000; j++) {
+                    coalescer.notify(j & 1023);
+                }
+            })).start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        List<Integer> released = drain(coalescer);
+        assertEquals(1024, released.size());
+        for (int i = 0; i < 1024; i++) {
+            assertEquals(i, released.get(i).intValue());
+        }
+    }
+}
@@ -0,0 +1,286 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package mode.common.client.index;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import net.daporkchop.fp2.client.gl.camera.Frustum;
+import net.daporkchop.fp2.client.gl.camera.IFrustum;
+import net.daporkchop.fp2.mode.common.client.index.HierarchicalFrustumCuller;
+import net.daporkchop.fp2.mode.voxel.VoxelDirectPosAccess;
+import net.daporkchop.fp2.mode.voxel.VoxelPos;
+import net.daporkchop.lib.unsafe.PUnsafe;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import util.FP2Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.SplittableRandom;
+
+import static java.lang.Math.*;
+import static net.daporkchop.lib.common.util.PValidation.*;
+
+/**
+ * Checks that {@link HierarchicalFrustumCuller} produces the same results as testing every tile individually, using synthetic frustums. No GL context is
+ * required.
+ *
+ * @author DaPorkchop_
+ */
+public class TestHierarchicalFrustumCuller {
+    protected static final int LEVELS = 6;
+    protected static final int RADIUS = 8;
+
+    protected static final VoxelDirectPosAccess ACCESS = VoxelDirectPosAccess.INSTANCE;
+
+    protected static final long[] POSITIONS_ADDRS = new long[LEVELS];
+    protected static final int[] COUNTS = new int[LEVELS];
+    protected static final List<Map<VoxelPos, Integer>> SLOTS = new ArrayList<>();
+
+    @BeforeClass
+    public static void setup() {
+        FP2Test.init();
+
+        SplittableRandom r = new SplittableRandom(1337L);
+
+        for (int level = 0; level < LEVELS; level++) {
+            List<VoxelPos> positions = new ArrayList<>();
+            for (int x = -RADIUS; x < RADIUS; x++) {
+                for (int y = -RADIUS; y < RADIUS; y++) {
+                    for (int z = -RADIUS; z < RADIUS; z++) {
+                        positions.add(new VoxelPos(level, x, y, z));
+                    }
+                }
+            }
+
+            //assign slots in a random order, like a real render index would after a while
+            Collections.shuffle(positions, new Random(r.nextLong()));
+
+            long addr = POSITIONS_ADDRS[level] = PUnsafe.allocateMemory(positions.size() * ACCESS.posSize());
+            Map<VoxelPos, Integer> slots = new HashMap<>();
+            for (int slot = 0; slot < positions.size(); slot++) {
+                ACCESS.storePos(positions.get(slot), addr + slot * ACCESS.posSize());
+                slots.put(positions.get(slot), slot);
+            }
+            COUNTS[level] = positions.size();
+            SLOTS.add(slots);
+        }
+    }
+
+    @AfterClass
+    public static void teardown() {
+        for (long addr : POSITIONS_ADDRS) {
+            PUnsafe.freeMemory(addr);
+        }
+    }
+
+    protected static HierarchicalFrustumCuller<VoxelPos> createCuller(boolean parallel) {
+        HierarchicalFrustumCuller<VoxelPos> culler = new HierarchicalFrustumCuller<>(ACCESS, LEVELS, parallel);
+        for (int level = 0; level < LEVELS; level++) {
+            culler.capacity(level, COUNTS[level]);
+
+            Map<VoxelPos, Integer> parentSlots = level + 1 < LEVELS ? SLOTS.get(level + 1) : Collections.emptyMap();
+            for (Map.Entry<VoxelPos, Integer> entry : SLOTS.get(level).entrySet()) {
+                culler.occupy(level, entry.getValue(), parentSlots.getOrDefault(entry.getKey().up(), -1));
+            }
+        }
+        return culler;
+    }
+
+    protected static Frustum randomFrustum(@NonNull SplittableRandom r) {
+        return frustum(r.nextDouble(30.0d, 110.0d), r.nextDouble(0.5d, 2.5d), r.nextDouble(0.0d, 2.0d * PI), r.nextDouble(-PI * 0.5d, PI * 0.5d),
+                r.nextDouble(-256.0d, 256.0d), r.nextDouble(-256.0d, 256.0d), r.nextDouble(-256.0d, 256.0d));
+    }
+
+    protected static Frustum frustum(double fovyDegrees, double aspect, double yaw, double pitch, double x, double y, double z) {
+        //perspective projection
+        double fovy = toRadians(fovyDegrees);
+        double near = 0.05d;
+        double far = 1_000_000.0d;
+        double f = 1.0d / tan(fovy * 0.5d);
+
+        double[] projection = {
+                f / aspect, 0.0d, 0.0d, 0.0d,
+                0.0d, f, 0.0d, 0.0d,
+                0.0d, 0.0d, (far + near) / (near - far), -1.0d,
+                0.0d, 0.0d, 2.0d * far * near / (near - far), 0.0d
+        };
+
+        //rotation around the y axis, followed by rotation around the x axis
+        double[] rotY = {
+                cos(yaw), 0.0d, -sin(yaw), 0.0d,
+                0.0d, 1.0d, 0.0d, 0.0d,
+                sin(yaw), 0.0d, cos(yaw), 0.0d,
+                0.0d, 0.0d, 0.0d, 1.0d
+        };
+        double[] rotX = {
+                1.0d, 0.0d, 0.0d, 0.0d,
+                0.0d, cos(pitch), sin(pitch), 0.0d,
+                0.0d, -sin(pitch), cos(pitch), 0.0d,
+                0.0d, 0.0d, 0.0d, 1.0d
+        };
+
+        Frustum frustum = new Frustum();
+        frustum.init(multiply(projection, multiply(rotX, rotY)));
+        frustum.setPosition(x, y, z);
+        return frustum;
+    }
+
+    protected static double[] multiply(double[] a, double[] b) {
+        double[] dst = new double[16];
+        for (int col = 0; col < 4; col++) {
+            for (int row = 0; row < 4; row++) {
+                double sum = 0.0d;
+                for (int i = 0; i < 4; i++) {
+                    sum += a[i * 4 + row] * b[col * 4 + i];
+                }
+                dst[col * 4 + row] = sum;
+            }
+        }
+        return dst;
+    }
+
+    protected static void cullAll(@NonNull HierarchicalFrustumCuller<VoxelPos> culler, @NonNull IFrustum frustum) {
+        for (int level = LEVELS - 1; level >= 0; level--) {
+            culler.cull(level, POSITIONS_ADDRS[level], frustum);
+        }
+    }
+
+    @Test
+    public void testEquivalence() {
+        this.testEquivalence(false);
+    }
+
+    @Test
+    public void testEquivalenceParallel() {
+        this.testEquivalence(true);
+    }
+
+    protected void testEquivalence(boolean parallel) {
+        SplittableRandom r = new SplittableRandom(12345L);
+        HierarchicalFrustumCuller<VoxelPos> culler = createCuller(parallel);
+
+        for (int i = 0; i < 256; i++) {
+            Frustum frustum = randomFrustum(r);
+            cullAll(culler, frustum);
+
+            for (int level = 0; level < LEVELS; level++) {
+                long addr = POSITIONS_ADDRS[level];
+                for (int slot = 0; slot < COUNTS[level]; slot++) {
+                    boolean expected = ACCESS.inFrustum(addr + slot * ACCESS.posSize(), frustum);
+                    checkState(culler.visible(level, slot) == expected, "level %d slot %d: expected %s", level, slot, expected);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testReleasedParent() {
+        SplittableRandom r = new SplittableRandom(67890L);
+        HierarchicalFrustumCuller<VoxelPos> culler = createCuller(false);
+
+        //release every tile at level 1, and unlink the tiles at level 0 from them
+        for (int slot : SLOTS.get(1).values()) {
+            culler.release(1, slot);
+        }
+        for (int slot : SLOTS.get(0).values()) {
+            culler.parent(0, slot, -1);
+        }
+
+        for (int i = 0; i < 64; i++) {
+            Frustum frustum = randomFrustum(r);
+            cullAll(culler, frustum);
+
+            for (int slot = 0; slot < COUNTS[1]; slot++) {
+                checkState(!culler.visible(1, slot), "released slot %d is visible", slot);
+            }
+            for (int slot = 0; slot < COUNTS[0]; slot++) {
+                checkState(culler.visible(0, slot) == ACCESS.inFrustum(POSITIONS_ADDRS[0] + slot * ACCESS.posSize(), frustum));
+            }
+        }
+    }
+
+    @Test
+    public void testFewerFrustumTests() {
+        HierarchicalFrustumCuller<VoxelPos> culler = createCuller(false);
+
+        long flatTests = 0L;
+        for (int count : COUNTS) {
+            flatTests += count;
+        }
+
+        //a narrow frustum at the origin, looking along one axis. most of the highest level's tiles are outside of it, and all of them have children.
+        Frustum frustum = frustum(30.0d, 1.0d, 0.0d, 0.0d, 0.0d, 0.0d, 0.0d);
+        long posSize = ACCESS.posSize();
+
+        int rejectedTopLevelTiles = 0;
+        for (int slot = 0; slot < COUNTS[LEVELS - 1]; slot++) {
+            if (!ACCESS.inFrustum(POSITIONS_ADDRS[LEVELS - 1] + slot * posSize, frustum)) {
+                rejectedTopLevelTiles++;
+            }
+        }
+        checkState(rejectedTopLevelTiles > 0, "the frustum doesn't reject any of the highest level's tiles");
+
+        //a tile should be tested if and only if it has no parent, or its parent is inside the frustum
+        long expectedTests = 0L;
+        for (int level = 0; level < LEVELS; level++) {
+            for (VoxelPos pos : SLOTS.get(level).keySet()) {
+                Integer parentSlot = level + 1 < LEVELS ? SLOTS.get(level + 1).get(pos.up()) : null;
+                if (parentSlot == null || ACCESS.inFrustum(POSITIONS_ADDRS[level + 1] + parentSlot * posSize, frustum)) {
+                    expectedTests++;
+                }
+            }
+        }
+
+        CountingFrustum countingFrustum = new CountingFrustum(frustum);
+        cullAll(culler, countingFrustum);
+        checkState(countingFrustum.tests == expectedTests, "hierarchical culling did %d tests, expected %d", countingFrustum.tests, expectedTests);
+        checkState(countingFrustum.tests < flatTests, "hierarchical culling did %d tests, flat culling would have done %d", countingFrustum.tests, flatTests);
+    }
+
+    /**
+     * Wraps an {@link IFrustum}, counting the number of bounding box tests.
+     *
+     * @author DaPorkchop_
+     */
+    @RequiredArgsConstructor
+    protected static class CountingFrustum implements IFrustum {
+        @NonNull
+        protected final IFrustum delegate;
+        protected long tests;
+
+        @Override
+        public boolean containsPoint(double x, double y, double z) {
+            return this.delegate.containsPoint(x, y, z);
+        }
+
+        @Override
+        public synchronized boolean intersectsBB(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+            this.tests++;
+            return this.delegate.intersectsBB(minX, minY, minZ, maxX, maxY, maxZ);
+        }
+    }
+}
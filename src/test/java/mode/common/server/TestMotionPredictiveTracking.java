@@ -0,0 +1,202 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package mode.common.server;
+
+import net.daporkchop.fp2.mode.common.server.tracking.MotionEstimator;
+import net.daporkchop.fp2.mode.common.server.tracking.TrackingState;
+import net.daporkchop.fp2.mode.heightmap.HeightmapPos;
+import net.daporkchop.fp2.mode.heightmap.server.tracking.HeightmapTracker;
+import net.daporkchop.fp2.mode.voxel.VoxelPos;
+import net.daporkchop.fp2.mode.voxel.server.tracking.VoxelTracker;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import util.FP2Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static net.daporkchop.fp2.util.Constants.*;
+import static net.daporkchop.fp2.util.math.MathUtil.*;
+import static net.daporkchop.lib.common.math.PMath.*;
+import static org.junit.Assert.*;
+
+/**
+ * Drives {@link MotionEstimator} and {@link TrackingState} with synthetic movement traces, and checks that tiles are prioritized in the direction of travel.
+ *
+ * @author DaPorkchop_
+ */
+public class TestMotionPredictiveTracking {
+    protected static final int CUTOFF = 32;
+
+    //roughly the speed of a player flying with an elytra, in blocks/tick
+    protected static final double ELYTRA_SPEED = 1.7d;
+
+    @BeforeClass
+    public static void init() {
+        FP2Test.init();
+    }
+
+    /**
+     * Moves the player in a straight line for the given number of ticks, updating the given {@link MotionEstimator} once per tick.
+     *
+     * @return the player's final position
+     */
+    protected static double[] fly(MotionEstimator motion, double[] pos, double vx, double vy, double vz, int ticks) {
+        for (int i = 0; i < ticks; i++) {
+            pos[0] += vx;
+            pos[1] += vy;
+            pos[2] += vz;
+            motion.update(pos[0], pos[1], pos[2]);
+        }
+        return pos;
+    }
+
+    protected static TrackingState state(MotionEstimator motion, double[] pos) {
+        return TrackingState.create(pos[0], pos[1], pos[2], motion, CUTOFF, 0, 1);
+    }
+
+    @Test
+    public void testVelocityEstimate() {
+        MotionEstimator motion = new MotionEstimator();
+        fly(motion, new double[3], ELYTRA_SPEED, -0.25d, 0.0d, 100);
+
+        assertEquals(ELYTRA_SPEED, motion.velocityX(), 1e-6d);
+        assertEquals(-0.25d, motion.velocityY(), 1e-6d);
+        assertEquals(0.0d, motion.velocityZ(), 1e-6d);
+        assertEquals(0, motion.teleports());
+    }
+
+    @Test
+    public void testStationaryIsUnbiased() {
+        MotionEstimator motion = new MotionEstimator();
+        double[] pos = fly(motion, new double[]{ 100.5d, 64.0d, -30.5d }, 0.0d, 0.0d, 0.0d, 20);
+        TrackingState state = state(motion, pos);
+
+        assertEquals(state.x(), state.volumeX(), 0.0d);
+        assertEquals(state.y(), state.volumeY(), 0.0d);
+        assertEquals(state.z(), state.volumeZ(), 0.0d);
+        assertEquals(state.x(), state.priorityX(), 0.0d);
+        assertEquals(state.y(), state.priorityY(), 0.0d);
+        assertEquals(state.z(), state.priorityZ(), 0.0d);
+
+        //tiles at the same distance in front of and behind the player are equally important
+        Comparator<HeightmapPos> comparator = HeightmapTracker.priorityComparator(state);
+        int px = asrRound(floorI(state.x()), T_SHIFT);
+        int pz = asrRound(floorI(state.z()), T_SHIFT);
+        for (int d = 1; d < CUTOFF; d++) {
+            assertEquals(0, comparator.compare(new HeightmapPos(0, px + d, pz), new HeightmapPos(0, px - d, pz)));
+        }
+    }
+
+    @Test
+    public void testLookaheadIsBounded() {
+        MotionEstimator motion = new MotionEstimator();
+        //just below the teleport threshold
+        double speed = Math.sqrt(MotionEstimator.TELEPORT_DISTANCE_SQUARED) * 0.9d;
+        double[] pos = fly(motion, new double[3], speed, 0.0d, 0.0d, 100);
+        TrackingState state = state(motion, pos);
+
+        double cutoffBlocks = CUTOFF * T_VOXELS;
+        assertEquals(0, motion.teleports());
+        assertEquals(cutoffBlocks * 0.25d, state.volumeX() - state.x(), 1e-6d);
+        assertEquals(cutoffBlocks * 0.5d, state.priorityX() - state.x(), 1e-6d);
+        assertEquals(state.y(), state.volumeY(), 0.0d);
+        assertEquals(state.z(), state.priorityZ(), 0.0d);
+    }
+
+    @Test
+    public void testOrderingFollowsMotion() {
+        MotionEstimator motion = new MotionEstimator();
+        double[] pos = fly(motion, new double[]{ 0.5d, 100.0d, 0.5d }, ELYTRA_SPEED, 0.0d, 0.0d, 100);
+        TrackingState state = state(motion, pos);
+        assertTrue(state.priorityX() > state.volumeX() && state.volumeX() > state.x());
+
+        int px = asrRound(floorI(state.x()), T_SHIFT);
+        int pz = asrRound(floorI(state.z()), T_SHIFT);
+
+        List<HeightmapPos> positions = new ArrayList<>();
+        for (int dx = -CUTOFF; dx <= CUTOFF; dx++) {
+            for (int dz = -CUTOFF; dz <= CUTOFF; dz++) {
+                positions.add(new HeightmapPos(0, px + dx, pz + dz));
+            }
+        }
+        positions.sort(HeightmapTracker.priorityComparator(state));
+
+        //the first tile to be loaded should be ahead of the player
+        assertTrue(positions.get(0).x() > px);
+
+        //every tile ahead of the player should be loaded before the tile the same distance behind them
+        Comparator<HeightmapPos> comparator = HeightmapTracker.priorityComparator(state);
+        for (int d = 1; d < CUTOFF; d++) {
+            assertTrue(comparator.compare(new HeightmapPos(0, px + d, pz), new HeightmapPos(0, px - d, pz)) < 0);
+        }
+    }
+
+    @Test
+    public void testOrderingFollowsTurns() {
+        MotionEstimator motion = new MotionEstimator();
+        double[] pos = fly(motion, new double[]{ 0.5d, 100.0d, 0.5d }, ELYTRA_SPEED, 0.0d, 0.0d, 100);
+
+        //turn to fly diagonally downwards along +Z
+        pos = fly(motion, pos, 0.0d, -ELYTRA_SPEED * 0.5d, ELYTRA_SPEED, 100);
+        TrackingState state = state(motion, pos);
+
+        int px = asrRound(floorI(state.x()), T_SHIFT);
+        int py = asrRound(floorI(state.y()), T_SHIFT);
+        int pz = asrRound(floorI(state.z()), T_SHIFT);
+
+        Comparator<VoxelPos> comparator = VoxelTracker.priorityComparator(state);
+        for (int d = 1; d < CUTOFF; d++) {
+            //ahead and below is more important than behind and above
+            assertTrue(comparator.compare(new VoxelPos(0, px, py - d, pz + d), new VoxelPos(0, px, py + d, pz - d)) < 0);
+            //the old direction of travel isn't favored any more
+            assertTrue(comparator.compare(new VoxelPos(0, px, py, pz + d), new VoxelPos(0, px + d, py, pz)) < 0);
+        }
+    }
+
+    @Test
+    public void testTeleportResetsMotion() {
+        MotionEstimator motion = new MotionEstimator();
+        double[] pos = fly(motion, new double[3], ELYTRA_SPEED, 0.0d, 0.0d, 100);
+        TrackingState before = state(motion, pos);
+
+        //teleport far away
+        pos[0] += 100000.0d;
+        pos[2] -= 50000.0d;
+        motion.update(pos[0], pos[1], pos[2]);
+        TrackingState after = state(motion, pos);
+
+        assertEquals(1, motion.teleports());
+        assertTrue(after.teleportedSince(before));
+        assertFalse(after.teleportedSince(after));
+
+        //all knowledge of the previous motion is discarded, so there's no look-ahead in the direction the player was flying before the teleport
+        assertEquals(0.0d, motion.velocityX(), 0.0d);
+        assertEquals(after.x(), after.priorityX(), 0.0d);
+        assertEquals(after.x(), after.volumeX(), 0.0d);
+
+        //regular motion resumes afterwards
+        fly(motion, pos, 0.0d, 0.0d, ELYTRA_SPEED, 100);
+        assertEquals(1, motion.teleports());
+        assertEquals(ELYTRA_SPEED, motion.velocityZ(), 1e-6d);
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package mode.common.server;
+
+import net.daporkchop.fp2.common.util.metrics.MetricsRegistry;
+import net.daporkchop.fp2.mode.common.server.tracking.AbstractTracker;
+import net.daporkchop.fp2.mode.common.server.tracking.MotionEstimator;
+import net.daporkchop.fp2.mode.common.server.tracking.TrackingState;
+import net.daporkchop.fp2.mode.heightmap.HeightmapPos;
+import net.daporkchop.fp2.mode.heightmap.server.tracking.HeightmapTracker;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import util.FP2Test;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static net.daporkchop.fp2.util.Constants.*;
+import static net.daporkchop.fp2.util.math.MathUtil.*;
+import static net.daporkchop.lib.common.math.PMath.*;
+import static org.junit.Assert.*;
+
+/**
+ * Runs synthetic movement traces through {@link AbstractTracker}'s tracking updates, and checks the resulting queued, loaded and untracked positions.
+ *
+ * @author DaPorkchop_
+ */
+public class TestTrackerMotionTrace {
+    protected static final int CUTOFF = 16;
+    protected static final int MAX_LEVEL = 2;
+
+    //roughly the speed of a player flying with an elytra, in blocks/tick
+    protected static final double ELYTRA_SPEED = 1.7d;
+
+    //the number of ticks between tracker updates
+    protected static final int UPDATE_INTERVAL = 10;
+
+    @BeforeClass
+    public static void init() {
+        FP2Test.init();
+    }
+
+    protected static TrackingState state(MotionEstimator motion, double[] pos) {
+        return TrackingState.create(pos[0], pos[1], pos[2], motion, CUTOFF, 0, MAX_LEVEL);
+    }
+
+    /**
+     * Moves the player in a straight line for the given number of ticks, running a tracker update every {@link #UPDATE_INTERVAL} ticks. After each update, the
+     * given number of tiles are loaded from the front of the queue.
+     */
+    protected static void fly(TrackerHarness tracker, MotionEstimator motion, double[] pos, double vx, double vz, int ticks, int loadPerUpdate) {
+        for (int i = 1; i <= ticks; i++) {
+            pos[0] += vx;
+            pos[2] += vz;
+            motion.update(pos[0], pos[1], pos[2]);
+
+            if (i % UPDATE_INTERVAL == 0) {
+                update(tracker, state(motion, pos));
+                tracker.loadQueued(loadPerUpdate);
+            }
+        }
+    }
+
+    /**
+     * Runs a tracker update and checks that the tracker's state is consistent afterwards.
+     *
+     * @return the positions which were untracked
+     */
+    protected static Set<HeightmapPos> update(TrackerHarness tracker, TrackingState state) {
+        Set<HeightmapPos> loadedBefore = tracker.loaded();
+        Set<HeightmapPos> untracked = tracker.update(state);
+        Set<HeightmapPos> visible = tracker.visible();
+        Set<HeightmapPos> loaded = tracker.loaded();
+        List<HeightmapPos> queued = tracker.queued();
+
+        //every loaded tile which isn't visible any more is untracked, and nothing else
+        Set<HeightmapPos> expectedUntracked = new HashSet<>(loadedBefore);
+        expectedUntracked.removeAll(visible);
+        assertEquals(expectedUntracked, untracked);
+
+        Set<HeightmapPos> expectedLoaded = new HashSet<>(loadedBefore);
+        expectedLoaded.removeAll(untracked);
+        assertEquals(expectedLoaded, loaded);
+
+        //every visible tile which isn't loaded is queued exactly once
+        Set<HeightmapPos> expectedQueued = new HashSet<>(visible);
+        expectedQueued.removeAll(loaded);
+        assertEquals(expectedQueued, new HashSet<>(queued));
+        assertEquals(expectedQueued.size(), queued.size());
+
+        //the queue is sorted by priority
+        Comparator<HeightmapPos> comparator = HeightmapTracker.priorityComparator(state);
+        for (int i = 1; i < queued.size(); i++) {
+            assertTrue(comparator.compare(queued.get(i - 1), queued.get(i)) <= 0);
+        }
+        return untracked;
+    }
+
+    /**
+     * Checks that the queued level-0 tiles in the given direction from the player are loaded before those in the opposite direction.
+     */
+    protected static void assertAheadFirst(TrackerHarness tracker, int dx, int dz) {
+        TrackingState state = tracker.state();
+        int px = asrRound(floorI(state.x()), T_SHIFT);
+        int pz = asrRound(floorI(state.z()), T_SHIFT);
+
+        List<HeightmapPos> queued = tracker.queued();
+        Map<HeightmapPos, Integer> indices = new HashMap<>();
+        for (int i = 0; i < queued.size(); i++) {
+            indices.put(queued.get(i), i);
+        }
+
+        //the first tile to be loaded is ahead of the player
+        HeightmapPos first = queued.get(0);
+        assertEquals(0, first.level());
+        assertTrue((first.x() - px) * dx + (first.z() - pz) * dz > 0);
+
+        int compared = 0;
+        for (int d = 1; d <= CUTOFF; d++) {
+            Integer ahead = indices.get(new HeightmapPos(0, px + d * dx, pz + d * dz));
+            Integer behind = indices.get(new HeightmapPos(0, px - d * dx, pz - d * dz));
+            if (ahead != null && behind != null) {
+                assertTrue(ahead < behind);
+                compared++;
+            }
+        }
+        assertTrue(compared > 0);
+    }
+
+    @Test
+    public void testFlightAndFarTeleport() {
+        TrackerHarness tracker = new TrackerHarness(new MetricsRegistry().scope("tracker"));
+        MotionEstimator motion = new MotionEstimator();
+        double[] pos = { 0.5d, 100.0d, 0.5d };
+
+        //initial update queues everything
+        motion.update(pos[0], pos[1], pos[2]);
+        assertTrue(update(tracker, state(motion, pos)).isEmpty());
+        assertEquals(tracker.visible().size(), tracker.queued().size());
+
+        //fly along +X before anything has been loaded: the queue follows the tracked volume, and is ordered towards the direction of travel
+        fly(tracker, motion, pos, ELYTRA_SPEED, 0.0d, 100, 0);
+        assertTrue(tracker.loaded().isEmpty());
+        assertAheadFirst(tracker, 1, 0);
+
+        //keep flying, loading tiles a bit slower than they're queued. tiles which fall behind the player are untracked
+        tracker.loadQueued(Integer.MAX_VALUE);
+        fly(tracker, motion, pos, ELYTRA_SPEED, 0.0d, 200, 20);
+        assertFalse(tracker.loaded().isEmpty());
+        assertFalse(tracker.queued().isEmpty());
+        Set<HeightmapPos> loadedBeforeTeleport = tracker.loaded();
+
+        //teleport far away: every loaded tile is untracked, and the old queue is thrown away
+        pos[0] += 100000.0d;
+        pos[2] -= 50000.0d;
+        motion.update(pos[0], pos[1], pos[2]);
+        TrackingState teleported = state(motion, pos);
+        assertTrue(teleported.teleportedSince(tracker.state()));
+
+        assertEquals(loadedBeforeTeleport, update(tracker, teleported));
+        assertTrue(tracker.loaded().isEmpty());
+        assertEquals(tracker.visible(), new HashSet<>(tracker.queued()));
+
+        //fly along -Z without loading anything: the whole new volume stays queued, but is now ordered towards the new direction of travel
+        fly(tracker, motion, pos, 0.0d, -ELYTRA_SPEED, 100, 0);
+        assertTrue(tracker.loaded().isEmpty());
+        assertAheadFirst(tracker, 0, -1);
+    }
+
+    @Test
+    public void testNearTeleport() {
+        TrackerHarness tracker = new TrackerHarness(new MetricsRegistry().scope("tracker"));
+        MotionEstimator motion = new MotionEstimator();
+        double[] pos = { 0.5d, 100.0d, 0.5d };
+
+        motion.update(pos[0], pos[1], pos[2]);
+        update(tracker, state(motion, pos));
+        tracker.loadQueued(Integer.MAX_VALUE);
+
+        //teleport far enough to be detected as a teleport, but close enough that the old and new volumes overlap
+        pos[2] += (CUTOFF >> 1) * T_VOXELS + Math.sqrt(MotionEstimator.TELEPORT_DISTANCE_SQUARED);
+        motion.update(pos[0], pos[1], pos[2]);
+        assertEquals(1, motion.teleports());
+
+        //tiles which are still visible stay loaded and aren't queued again, everything else is untracked
+        Set<HeightmapPos> untracked = update(tracker, state(motion, pos));
+        assertFalse(untracked.isEmpty());
+        assertFalse(tracker.loaded().isEmpty());
+        assertFalse(tracker.queued().isEmpty());
+    }
+}
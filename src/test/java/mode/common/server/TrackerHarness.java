@@ -0,0 +1,211 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package mode.common.server;
+
+import lombok.Getter;
+import lombok.NonNull;
+import net.daporkchop.fp2.common.util.metrics.MetricsScope;
+import net.daporkchop.fp2.mode.api.IFarPos;
+import net.daporkchop.fp2.mode.api.IFarRenderMode;
+import net.daporkchop.fp2.mode.api.IFarTile;
+import net.daporkchop.fp2.mode.api.ctx.IFarServerContext;
+import net.daporkchop.fp2.mode.api.ctx.IFarWorldServer;
+import net.daporkchop.fp2.mode.api.server.IFarTileProvider;
+import net.daporkchop.fp2.mode.common.server.tracking.AbstractTrackerManager;
+import net.daporkchop.fp2.mode.common.server.tracking.TrackingState;
+import net.daporkchop.fp2.mode.heightmap.HeightmapPos;
+import net.daporkchop.fp2.mode.heightmap.HeightmapRenderMode;
+import net.daporkchop.fp2.mode.heightmap.HeightmapTile;
+import net.daporkchop.fp2.mode.heightmap.server.tracking.HeightmapTracker;
+import net.daporkchop.fp2.mode.heightmap.server.tracking.HeightmapTrackerManager;
+import net.daporkchop.fp2.util.datastructure.SimpleSet;
+import net.daporkchop.fp2.util.math.IntAxisAlignedBB;
+import net.daporkchop.fp2.util.threading.asyncblockaccess.IAsyncBlockAccess;
+import net.daporkchop.lib.unsafe.PUnsafe;
+import net.minecraft.world.WorldServer;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static net.daporkchop.fp2.util.Constants.*;
+import static net.daporkchop.lib.common.util.PorkUtil.*;
+
+/**
+ * Allows {@link HeightmapTracker}'s tracking logic to be run without a server, a world or a global configuration.
+ * <p>
+ * The {@link HeightmapTrackerManager} is allocated without running its constructor (which would start worker threads), and only has the fields which are needed
+ * to run tracking updates populated. Tiles are never actually loaded: instead, {@link #loadQueued(int)} simulates queued tiles being loaded instantly.
+ *
+ * @author DaPorkchop_
+ */
+public class TrackerHarness extends HeightmapTracker {
+    protected static <T> T unsupported(@NonNull Class<T> clazz) {
+        return uncheckedCast(Proxy.newProxyInstance(clazz.getClassLoader(), new Class[]{ clazz }, (proxy, method, args) -> {
+            throw new UnsupportedOperationException(method.toString());
+        }));
+    }
+
+    protected static HeightmapTrackerManager manager(@NonNull MetricsScope metrics) {
+        //the tracker only needs the tile provider's render mode and world, and the render mode only needs its directPosAccess()
+        HeightmapRenderMode mode = PUnsafe.allocateInstance(HeightmapRenderMode.class);
+        HarnessWorld world = PUnsafe.allocateInstance(HarnessWorld.class);
+        IFarTileProvider<HeightmapPos, HeightmapTile> tileProvider = uncheckedCast(Proxy.newProxyInstance(IFarTileProvider.class.getClassLoader(), new Class[]{ IFarTileProvider.class }, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "mode":
+                    return mode;
+                case "world":
+                    return world;
+                case "metrics":
+                    return metrics;
+                default:
+                    throw new UnsupportedOperationException(method.toString());
+            }
+        }));
+
+        HeightmapTrackerManager manager = PUnsafe.allocateInstance(HeightmapTrackerManager.class);
+        set(manager, "tileProvider", tileProvider);
+        set(manager, "metricTrackers", metrics.gauge("trackers"));
+        set(manager, "metricTilesQueued", metrics.gauge("tiles.queued"));
+        set(manager, "metricTilesWaiting", metrics.gauge("tiles.waiting"));
+        set(manager, "metricTilesSent", metrics.counter("tiles.sent"));
+        set(manager, "metricTilesUnloaded", metrics.counter("tiles.unloaded"));
+        set(manager, "metricUpdateDuration", metrics.histogram("update.duration"));
+        return manager;
+    }
+
+    protected static void set(@NonNull AbstractTrackerManager<?, ?> manager, @NonNull String field, @NonNull Object value) {
+        PUnsafe.putObject(manager, PUnsafe.pork_getOffset(AbstractTrackerManager.class, field), value);
+    }
+
+    @Getter
+    protected TrackingState state;
+
+    /**
+     * @param metrics the {@link MetricsScope} which the tracker's metrics will be recorded to
+     */
+    public TrackerHarness(@NonNull MetricsScope metrics) {
+        super(manager(metrics), unsupported(IFarServerContext.class));
+    }
+
+    /**
+     * Runs a tracking update from the previous state to the given one.
+     *
+     * @param nextState the new {@link TrackingState}
+     * @return the positions which were untracked by the update
+     */
+    public Set<HeightmapPos> update(@NonNull TrackingState nextState) {
+        Set<HeightmapPos> untracked = new HashSet<>();
+        try (SimpleSet<HeightmapPos> untrackingPositions = this.mode.directPosAccess().newPositionSet()) {
+            this.updateState(this.state, nextState, untrackingPositions);
+            untrackingPositions.forEach(untracked::add);
+        }
+        this.state = nextState;
+        return untracked;
+    }
+
+    /**
+     * @return the queued positions, in the order in which they would be loaded
+     */
+    public List<HeightmapPos> queued() {
+        return new ArrayList<>(this.queuedPositions);
+    }
+
+    /**
+     * @return the loaded positions
+     */
+    public Set<HeightmapPos> loaded() {
+        Set<HeightmapPos> loaded = new HashSet<>();
+        this.loadedPositions.forEach(loaded::add);
+        return loaded;
+    }
+
+    /**
+     * Simulates the given number of positions at the front of the queue being loaded.
+     *
+     * @param count the maximum number of positions to load
+     */
+    public void loadQueued(int count) {
+        for (HeightmapPos pos; count-- > 0 && (pos = this.queuedPositions.poll()) != null; ) {
+            this.loadedPositions.add(pos);
+            this.manager.metricTilesQueued().dec();
+        }
+    }
+
+    /**
+     * @return every position which is visible in the current state
+     */
+    public Set<HeightmapPos> visible() {
+        Set<HeightmapPos> visible = new HashSet<>();
+        this.allPositions(this.state, visible::add);
+        return visible;
+    }
+
+    /**
+     * A {@link WorldServer} which only implements {@link IFarWorldServer#fp2_IFarWorld_coordLimits()}. Instances must be allocated without running the
+     * constructor.
+     *
+     * @author DaPorkchop_
+     */
+    protected static class HarnessWorld extends WorldServer implements IFarWorldServer {
+        private HarnessWorld() {
+            super(null, null, null, 0, null);
+        }
+
+        @Override
+        public IntAxisAlignedBB[] fp2_IFarWorld_coordLimits() {
+            IntAxisAlignedBB[] limits = new IntAxisAlignedBB[MAX_LODS];
+            for (int lvl = 0; lvl < MAX_LODS; lvl++) {
+                int radius = 60_000_000 >> (T_SHIFT + lvl);
+                limits[lvl] = new IntAxisAlignedBB(-radius, Integer.MIN_VALUE, -radius, radius, Integer.MAX_VALUE, radius);
+            }
+            return limits;
+        }
+
+        @Override
+        public void fp2_IFarWorld_init() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void fp2_IFarWorld_close() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <POS extends IFarPos, T extends IFarTile> IFarTileProvider<POS, T> fp2_IFarWorldServer_tileProviderFor(@NonNull IFarRenderMode<POS, T> mode) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void fp2_IFarWorldServer_forEachTileProvider(@NonNull Consumer<IFarTileProvider<?, ?>> action) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public IAsyncBlockAccess fp2_IAsyncBlockAccess$Holder_asyncBlockAccess() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
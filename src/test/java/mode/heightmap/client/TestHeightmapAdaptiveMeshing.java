@@ -0,0 +1,328 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package mode.heightmap.client;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import net.daporkchop.fp2.mode.heightmap.HeightmapData;
+import net.daporkchop.fp2.mode.heightmap.HeightmapTile;
+import net.daporkchop.fp2.mode.heightmap.client.HeightmapBaker;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.init.Biomes;
+import net.minecraft.init.Blocks;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import util.FP2Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.lang.Math.*;
+import static net.daporkchop.fp2.mode.heightmap.HeightmapConstants.*;
+import static net.daporkchop.fp2.util.Constants.*;
+import static org.junit.Assert.*;
+
+/**
+ * @author DaPorkchop_
+ */
+public class TestHeightmapAdaptiveMeshing {
+    @BeforeClass
+    public static void init() {
+        FP2Test.init();
+    }
+
+    /**
+     * Builds the source tiles for a bake, setting every sample using the given function.
+     */
+    protected static HeightmapTile[] tiles(Sampler sampler) {
+        HeightmapData data = new HeightmapData();
+
+        HeightmapTile[] srcs = new HeightmapTile[4];
+        for (int i = 0; i < 4; i++) {
+            HeightmapTile tile = srcs[i] = new HeightmapTile();
+            for (int x = 0; x < T_VOXELS; x++) {
+                for (int z = 0; z < T_VOXELS; z++) {
+                    for (int layer = 0; layer < MAX_LAYERS; layer++) {
+                        data.reset();
+                        data.biome = Biomes.PLAINS;
+                        data.light = 0xF0;
+                        if (sampler.sample((((i >> 1) & 1) << T_SHIFT) + x, ((i & 1) << T_SHIFT) + z, layer, data)) {
+                            tile.setLayer(x, z, layer, data);
+                        }
+                    }
+                }
+            }
+        }
+        return srcs;
+    }
+
+    protected static void setHeight(HeightmapData data, long height) {
+        data.height_int = toIntExact(height >> 8L);
+        data.height_frac = (int) (height & 0xFFL);
+    }
+
+    protected static Mesh bake(HeightmapTile[] srcs, boolean adaptive) {
+        Mesh mesh = new Mesh(srcs);
+        new HeightmapBaker().buildMesh(srcs, adaptive, new HeightmapBaker.MeshConsumer() {
+            @Override
+            public void quad(int renderType, int oppositeCorner, int c0, int c1, int provoking) {
+                //same vertex order as IndexWriter#appendQuad
+                mesh.triangle(renderType, c1, oppositeCorner, c0);
+                mesh.triangle(renderType, c1, c0, provoking);
+                mesh.edges(c1, oppositeCorner, c0, provoking);
+            }
+
+            @Override
+            public void triangle(int renderType, int a, int b, int provoking) {
+                mesh.triangle(renderType, a, b, provoking);
+                mesh.edges(a, b, provoking);
+            }
+        });
+        return mesh;
+    }
+
+    protected static void checkEquivalent(HeightmapTile[] srcs) {
+        Mesh reference = bake(srcs, false);
+        Mesh adaptive = bake(srcs, true);
+
+        //the surface must be identical at every point
+        for (double x = 0.0137d; x < T_VOXELS; x += 0.25d) {
+            for (double z = 0.0071d; z < T_VOXELS; z += 0.25d) {
+                List<double[]> expected = reference.sample(x, z);
+                List<double[]> actual = adaptive.sample(x, z);
+                assertEquals("at (" + x + ", " + z + ')', expected.size(), actual.size());
+                for (int i = 0; i < expected.size(); i++) {
+                    assertArrayEquals("at (" + x + ", " + z + ')', expected.get(i), actual.get(i), 1.0e-6d);
+                }
+            }
+        }
+
+        //the edges along the tile's borders must be unchanged, otherwise the tile won't line up with its neighbors
+        assertEquals(reference.borderEdges(), adaptive.borderEdges());
+
+        //merged faces may not introduce any T-junctions
+        adaptive.checkNoTJunctions();
+
+        assertTrue(adaptive.vertices.size() <= reference.vertices.size());
+    }
+
+    @Test
+    public void testFlat() {
+        IBlockState state = Blocks.STONE.getDefaultState();
+        HeightmapTile[] srcs = tiles((x, z, layer, data) -> {
+            data.state = state;
+            data.height_int = 64;
+            return layer == DEFAULT_LAYER;
+        });
+        checkEquivalent(srcs);
+
+        assertEquals(T_VERTS * T_VERTS, bake(srcs, false).vertices.size());
+        assertEquals(T_VOXELS * 4 + 1, bake(srcs, true).vertices.size()); //only the border and a single vertex in the middle are used
+    }
+
+    @Test
+    public void testSlope() {
+        IBlockState state = Blocks.SAND.getDefaultState();
+        HeightmapTile[] srcs = tiles((x, z, layer, data) -> {
+            data.state = state;
+            setHeight(data, (64L << 8L) + x * 37L - z * 11L);
+            return layer == DEFAULT_LAYER;
+        });
+        checkEquivalent(srcs);
+
+        assertEquals(T_VOXELS * 4 + 1, bake(srcs, true).vertices.size());
+    }
+
+    @Test
+    public void testMixed() {
+        IBlockState stone = Blocks.STONE.getDefaultState();
+        IBlockState grass = Blocks.GRASS.getDefaultState();
+        IBlockState water = Blocks.WATER.getDefaultState();
+        HeightmapTile[] srcs = tiles((x, z, layer, data) -> {
+            if (layer == DEFAULT_LAYER) {
+                data.state = z < 10 ? stone : grass;
+                if (x < 12) { //a flat valley...
+                    setHeight(data, 50L << 8L);
+                } else { //...next to some hills
+                    setHeight(data, (50L << 8L) + (x - 12) * (x - 12) * 200L + (z & 3) * 90L);
+                }
+                return true;
+            } else if (layer == WATER_LAYER && x < 10 && z > 3) { //a lake covering part of the valley
+                data.state = water;
+                data.light = 0xE0;
+                data.secondaryConnection = DEFAULT_LAYER;
+                setHeight(data, (62L << 8L) + HEIGHT_FRAC_LIQUID);
+                return true;
+            }
+            return false;
+        });
+        checkEquivalent(srcs);
+
+        assertTrue(bake(srcs, true).vertices.size() < bake(srcs, false).vertices.size());
+    }
+
+    @Test
+    public void testNoise() {
+        IBlockState state = Blocks.DIRT.getDefaultState();
+        HeightmapTile[] srcs = tiles((x, z, layer, data) -> {
+            data.state = state;
+            setHeight(data, ((x * 73856093) ^ (z * 19349663)) * 0x9E3779B9 >>> 20);
+            return layer == DEFAULT_LAYER;
+        });
+        checkEquivalent(srcs);
+    }
+
+    /**
+     * Generates a single sample.
+     *
+     * @author DaPorkchop_
+     */
+    @FunctionalInterface
+    protected interface Sampler {
+        boolean sample(int x, int z, int layer, HeightmapData data);
+    }
+
+    /**
+     * A baked mesh, reduced to its geometry.
+     *
+     * @author DaPorkchop_
+     */
+    protected static class Mesh {
+        protected final HeightmapTile[] srcs;
+        protected final HeightmapData data = new HeightmapData();
+
+        protected final IntList triangles = new IntArrayList();
+        protected final IntSet vertices = new IntOpenHashSet();
+        protected final LongSet edges = new LongOpenHashSet();
+
+        public Mesh(HeightmapTile[] srcs) {
+            this.srcs = srcs;
+        }
+
+        public void triangle(int renderType, int a, int b, int c) {
+            this.triangles.add(renderType);
+            this.triangles.add(a);
+            this.triangles.add(b);
+            this.triangles.add(c);
+            this.vertices.add(a);
+            this.vertices.add(b);
+            this.vertices.add(c);
+        }
+
+        public void edges(int... polygon) {
+            for (int i = 0; i < polygon.length; i++) {
+                int a = polygon[i];
+                int b = polygon[(i + 1) % polygon.length];
+                this.edges.add(((long) min(a, b) << 32L) | max(a, b));
+            }
+        }
+
+        public double x(int vertex) {
+            return HeightmapBaker.vertexMapX(vertex);
+        }
+
+        public double z(int vertex) {
+            return HeightmapBaker.vertexMapZ(vertex);
+        }
+
+        public double y(int vertex) {
+            int x = HeightmapBaker.vertexMapX(vertex);
+            int z = HeightmapBaker.vertexMapZ(vertex);
+            assertTrue(this.srcs[((x >> T_SHIFT) << 1) | (z >> T_SHIFT)].getLayer(x & T_MASK, z & T_MASK, HeightmapBaker.vertexMapLayer(vertex), this.data));
+            return this.data.height_int + this.data.height_frac / 256.0d;
+        }
+
+        /**
+         * Finds every triangle covering the given horizontal position.
+         *
+         * @return a list of {@code (render type, winding, height)} for every triangle, sorted
+         */
+        public List<double[]> sample(double px, double pz) {
+            List<double[]> result = new ArrayList<>();
+            for (int i = 0; i < this.triangles.size(); i += 4) {
+                int a = this.triangles.getInt(i + 1);
+                int b = this.triangles.getInt(i + 2);
+                int c = this.triangles.getInt(i + 3);
+
+                double area = (this.x(b) - this.x(a)) * (this.z(c) - this.z(a)) - (this.z(b) - this.z(a)) * (this.x(c) - this.x(a));
+                double wa = ((this.x(b) - px) * (this.z(c) - pz) - (this.z(b) - pz) * (this.x(c) - px)) / area;
+                double wb = ((this.x(c) - px) * (this.z(a) - pz) - (this.z(c) - pz) * (this.x(a) - px)) / area;
+                double wc = 1.0d - wa - wb;
+                if (wa >= 0.0d && wb >= 0.0d && wc >= 0.0d) {
+                    result.add(new double[]{ this.triangles.getInt(i), signum(area), wa * this.y(a) + wb * this.y(b) + wc * this.y(c) });
+                }
+            }
+
+            result.sort((v0, v1) -> {
+                for (int i = 0; i < v0.length; i++) {
+                    int d = Double.compare(v0[i], v1[i]);
+                    if (d != 0) {
+                        return d;
+                    }
+                }
+                return 0;
+            });
+            return result;
+        }
+
+        /**
+         * @return every edge which lies on one of the tile's borders
+         */
+        public LongSet borderEdges() {
+            LongSet result = new LongOpenHashSet();
+            this.edges.forEach((Long edge) -> {
+                int a = (int) (edge >>> 32L);
+                int b = (int) (long) edge;
+                if ((this.x(a) == this.x(b) && this.x(a) % T_VOXELS == 0) || (this.z(a) == this.z(b) && this.z(a) % T_VOXELS == 0)) {
+                    result.add((long) edge);
+                }
+            });
+            return result;
+        }
+
+        /**
+         * Ensures that no vertex lies in the middle of any edge.
+         */
+        public void checkNoTJunctions() {
+            this.edges.forEach((Long edge) -> {
+                int a = (int) (edge >>> 32L);
+                int b = (int) (long) edge;
+                double dx = this.x(b) - this.x(a);
+                double dy = this.y(b) - this.y(a);
+                double dz = this.z(b) - this.z(a);
+
+                this.vertices.forEach((Integer v) -> {
+                    double t = ((this.x(v) - this.x(a)) * dx + (this.y(v) - this.y(a)) * dy + (this.z(v) - this.z(a)) * dz) / (dx * dx + dy * dy + dz * dz);
+                    if (t > 1.0e-9d && t < 1.0d - 1.0e-9d) {
+                        double ex = this.x(a) + dx * t - this.x(v);
+                        double ey = this.y(a) + dy * t - this.y(v);
+                        double ez = this.z(a) + dz * t - this.z(v);
+                        assertFalse("vertex " + v + " lies on edge (" + a + ", " + b + ')', ex * ex + ey * ey + ez * ez < 1.0e-12d);
+                    }
+                });
+            });
+        }
+    }
+}
@@ -0,0 +1,298 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package mode.heightmap.server;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import lombok.NonNull;
+import net.daporkchop.fp2.mode.api.server.storage.IFarStorage;
+import net.daporkchop.fp2.mode.api.tile.ITileHandle;
+import net.daporkchop.fp2.mode.api.tile.ITileMetadata;
+import net.daporkchop.fp2.mode.heightmap.HeightmapPos;
+import net.daporkchop.fp2.mode.heightmap.HeightmapTile;
+import net.daporkchop.fp2.mode.heightmap.server.scale.HeightmapPyramidBuilder;
+import net.daporkchop.fp2.mode.heightmap.server.scale.HeightmapScalerMinMax;
+import net.daporkchop.fp2.util.SimpleRecycler;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import util.FP2Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static net.daporkchop.fp2.mode.heightmap.HeightmapConstants.*;
+import static net.daporkchop.fp2.util.Constants.*;
+import static org.junit.Assert.*;
+
+/**
+ * Checks that {@link HeightmapPyramidBuilder} produces exactly the same tiles as chaining {@link HeightmapScalerMinMax} level by level.
+ *
+ * @author DaPorkchop_
+ */
+public class TestHeightmapPyramidBuilder {
+    @BeforeClass
+    public static void init() {
+        FP2Test.init();
+    }
+
+    /**
+     * Fills the given tile with random samples by deserializing raw tile data, which avoids needing to look anything up in the block registry.
+     */
+    protected static void fillRandom(HeightmapTile tile, SplittableRandom r) {
+        ByteBuf buf = Unpooled.buffer(HeightmapTile.TILE_SIZE_BYTES);
+        try {
+            int baseHeight = r.nextInt(-64, 256);
+            for (int i = 0; i < HeightmapTile.ENTRY_COUNT; i++) {
+                int flags = 0;
+                for (int layer = 0; layer < MAX_LAYERS; layer++) {
+                    if (r.nextInt(4) != 0) { //leave some layers unset so that the scaler has to deal with missing samples
+                        flags |= HeightmapTile.layerFlag(layer);
+                    }
+                }
+                buf.writeIntLE(flags);
+
+                for (int layer = 0; layer < MAX_LAYERS; layer++) {
+                    if ((flags & HeightmapTile.layerFlag(layer)) != 0) {
+                        buf.writeIntLE(baseHeight + r.nextInt(-8, 9)); //height_int
+                        buf.writeIntLE((r.nextInt(1 << 16) << 8) | r.nextInt(256)); //(state << 8) | height_frac
+                        buf.writeIntLE((DEFAULT_LAYER << 16) | (r.nextInt(16) << 8) | r.nextInt(256)); //(secondary_connection << 16) | (light << 8) | biome
+                    } else {
+                        buf.writeZero(HeightmapTile.LAYER_SIZE_BYTES);
+                    }
+                }
+            }
+            tile.read(buf);
+        } finally {
+            buf.release();
+        }
+    }
+
+    protected static String encode(HeightmapTile tile) {
+        ByteBuf buf = Unpooled.buffer();
+        try {
+            return tile.write(buf) ? "<empty>" : ByteBufUtil.hexDump(buf);
+        } finally {
+            buf.release();
+        }
+    }
+
+    protected static Map<HeightmapPos, HeightmapTile> randomBase(HeightmapPos root, long seed) {
+        SplittableRandom r = new SplittableRandom(seed);
+        int size = 1 << root.level();
+        Map<HeightmapPos, HeightmapTile> base = new HashMap<>();
+        for (int x = 0; x < size; x++) {
+            for (int z = 0; z < size; z++) {
+                HeightmapTile tile = new HeightmapTile();
+                fillRandom(tile, r);
+                base.put(new HeightmapPos(0, (root.x() << root.level()) + x, (root.z() << root.level()) + z), tile);
+            }
+        }
+        return base;
+    }
+
+    protected static Map<HeightmapPos, HeightmapTile> chained(HeightmapScalerMinMax scaler, HeightmapPos root, Map<HeightmapPos, HeightmapTile> base) {
+        Map<HeightmapPos, HeightmapTile> all = new HashMap<>(base);
+        Map<HeightmapPos, HeightmapTile> out = new HashMap<>();
+        for (int level = 1; level <= root.level(); level++) {
+            HeightmapPos levelRoot = root.downTo(level);
+            int size = 1 << (root.level() - level);
+            for (int x = 0; x < size; x++) {
+                for (int z = 0; z < size; z++) {
+                    HeightmapPos pos = new HeightmapPos(level, levelRoot.x() + x, levelRoot.z() + z);
+                    HeightmapTile dst = new HeightmapTile();
+                    scaler.scale(scaler.inputs(pos).map(all::get).toArray(HeightmapTile[]::new), dst);
+                    all.put(pos, dst);
+                    out.put(pos, dst);
+                }
+            }
+        }
+        return out;
+    }
+
+    @Test
+    public void testMatchesChainedScaler() {
+        HeightmapScalerMinMax scaler = new HeightmapScalerMinMax();
+        HeightmapPyramidBuilder builder = new HeightmapPyramidBuilder(scaler);
+        SimpleRecycler<HeightmapTile> recycler = new SimpleRecycler.OfReusablePersistent<>(HeightmapTile::new);
+
+        for (HeightmapPos root : new HeightmapPos[]{
+                new HeightmapPos(1, 0, 0),
+                new HeightmapPos(2, -1, 3),
+                new HeightmapPos(3, 5, -7),
+        }) {
+            Map<HeightmapPos, HeightmapTile> base = randomBase(root, root.hashCode());
+            Map<HeightmapPos, HeightmapTile> expected = chained(scaler, root, base);
+
+            List<HeightmapPos> requested = new ArrayList<>();
+            Map<HeightmapPos, HeightmapTile> actual = builder.build(root, pos -> {
+                requested.add(pos);
+                return base.get(pos);
+            }, recycler);
+
+            //each level-0 tile must be requested exactly once
+            assertEquals(base.size(), requested.size());
+            assertEquals(base.keySet(), requested.stream().collect(Collectors.toSet()));
+
+            //the root tile is built last, and the whole pyramid is built
+            assertEquals(expected.keySet(), actual.keySet());
+            assertEquals(root, new ArrayList<>(actual.keySet()).get(actual.size() - 1));
+
+            expected.forEach((pos, tile) -> assertEquals(pos.toString(), encode(tile), encode(actual.get(pos))));
+
+            HeightmapPyramidBuilder.release(actual, recycler);
+        }
+    }
+
+    @Test
+    public void testPartialBase() {
+        HeightmapScalerMinMax scaler = new HeightmapScalerMinMax();
+        HeightmapPyramidBuilder builder = new HeightmapPyramidBuilder(scaler);
+        SimpleRecycler<HeightmapTile> recycler = new SimpleRecycler.OfReusablePersistent<>(HeightmapTile::new);
+
+        HeightmapPos root = new HeightmapPos(3, 2, -1);
+        Map<HeightmapPos, HeightmapTile> base = randomBase(root, 42L);
+        Map<HeightmapPos, HeightmapTile> expected = chained(scaler, root, base);
+
+        //pretend that some of the tiles in the pyramid are already up-to-date, they should be taken from the source along with everything below them skipped
+        Map<HeightmapPos, HeightmapTile> all = new HashMap<>(base);
+        all.putAll(expected);
+        Set<HeightmapPos> upToDate = Stream.of(new HeightmapPos(2, 4, -2), new HeightmapPos(1, 10, -3)).collect(Collectors.toSet());
+        upToDate.forEach(pos -> assertTrue(pos.toString(), expected.containsKey(pos)));
+
+        List<HeightmapPos> requested = new ArrayList<>();
+        Map<HeightmapPos, HeightmapTile> actual = builder.build(root, upToDate::contains, pos -> {
+            requested.add(pos);
+            return all.get(pos);
+        }, recycler);
+
+        //only the base tiles are requested, each exactly once
+        Predicate<HeightmapPos> belowUpToDate = pos -> upToDate.stream().anyMatch(top -> top.level() > pos.level() && pos.upTo(top.level()).equals(top));
+        Set<HeightmapPos> expectedBase = all.keySet().stream()
+                .filter(pos -> (pos.level() == 0 || upToDate.contains(pos)) && !belowUpToDate.test(pos))
+                .collect(Collectors.toSet());
+        assertEquals(expectedBase.size(), requested.size());
+        assertEquals(expectedBase, new HashSet<>(requested));
+
+        //everything above the base is still identical to the chained scaler's output
+        Set<HeightmapPos> expectedBuilt = expected.keySet().stream()
+                .filter(pos -> !upToDate.contains(pos) && !belowUpToDate.test(pos))
+                .collect(Collectors.toSet());
+        assertEquals(expectedBuilt, actual.keySet());
+        actual.forEach((pos, tile) -> assertEquals(pos.toString(), encode(expected.get(pos)), encode(tile)));
+
+        HeightmapPyramidBuilder.release(actual, recycler);
+    }
+
+    @Test
+    public void testBuildAndStore() {
+        HeightmapScalerMinMax scaler = new HeightmapScalerMinMax();
+        HeightmapPyramidBuilder builder = new HeightmapPyramidBuilder(scaler);
+
+        int[] allocated = new int[1];
+        SimpleRecycler<HeightmapTile> recycler = new SimpleRecycler<HeightmapTile>() {
+            @Override
+            protected HeightmapTile allocate0() {
+                allocated[0]++;
+                return new HeightmapTile();
+            }
+
+            @Override
+            protected void reset0(@NonNull HeightmapTile value) {
+                value.reset();
+            }
+        };
+
+        HeightmapPos root = new HeightmapPos(2, 0, 0);
+        Map<HeightmapPos, HeightmapTile> base = randomBase(root, 1337L);
+        Map<HeightmapPos, HeightmapTile> expected = chained(scaler, root, base);
+
+        List<Map<HeightmapPos, String>> batches = new ArrayList<>();
+        BatchRecordingStorage storage = new BatchRecordingStorage(tiles -> batches.add(tiles.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, e -> encode(e.getValue())))));
+
+        List<HeightmapPos> written = builder.buildAndStore(root, base::get, recycler, storage, ITileMetadata.ofTimestamp(0L)).collect(Collectors.toList());
+        assertEquals(expected.size(), written.size());
+
+        //all tiles are written in a single batch
+        assertEquals(1, batches.size());
+        assertEquals(expected.size(), batches.get(0).size());
+        expected.forEach((pos, tile) -> assertEquals(pos.toString(), encode(tile), batches.get(0).get(pos)));
+
+        //every tile was returned to the recycler, so building another pyramid shouldn't allocate anything new
+        int allocatedBefore = allocated[0];
+        builder.buildAndStore(root, base::get, recycler, storage, ITileMetadata.ofTimestamp(1L));
+        assertEquals(allocatedBefore, allocated[0]);
+        assertEquals(expected.size(), allocatedBefore);
+    }
+
+    /**
+     * {@link IFarStorage} which only supports {@link #setAll(ITileMetadata, Map)}, and records each batch that is written.
+     *
+     * @author DaPorkchop_
+     */
+    protected static class BatchRecordingStorage implements IFarStorage<HeightmapPos, HeightmapTile> {
+        protected final Consumer<Map<HeightmapPos, HeightmapTile>> callback;
+
+        public BatchRecordingStorage(@NonNull Consumer<Map<HeightmapPos, HeightmapTile>> callback) {
+            this.callback = callback;
+        }
+
+        @Override
+        public Stream<HeightmapPos> setAll(@NonNull ITileMetadata metadata, @NonNull Map<HeightmapPos, HeightmapTile> tiles) {
+            this.callback.accept(tiles);
+            return new ArrayList<>(tiles.keySet()).stream();
+        }
+
+        @Override
+        public ITileHandle<HeightmapPos, HeightmapTile> handleFor(@NonNull HeightmapPos pos) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void forEachDirtyPos(@NonNull Consumer<HeightmapPos> callback) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public void addListener(@NonNull Listener<HeightmapPos, HeightmapTile> listener) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void removeListener(@NonNull Listener<HeightmapPos, HeightmapTile> listener) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,364 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package mode.heightmap.server.gen;
+
+import lombok.NonNull;
+import net.daporkchop.fp2.compat.cc.cube.CubeSummary;
+import net.daporkchop.fp2.compat.cc.cube.ICubeSummaryAccess;
+import net.daporkchop.fp2.compat.vanilla.IBlockHeightAccess;
+import net.daporkchop.fp2.mode.heightmap.HeightmapData;
+import net.daporkchop.fp2.mode.heightmap.HeightmapPos;
+import net.daporkchop.fp2.mode.heightmap.HeightmapTile;
+import net.daporkchop.fp2.mode.heightmap.server.gen.exact.CCHeightmapGenerator;
+import net.daporkchop.lib.unsafe.PUnsafe;
+import net.minecraft.block.BlockStainedGlass;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.init.Biomes;
+import net.minecraft.init.Blocks;
+import net.minecraft.item.EnumDyeColor;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.EnumFacing;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Vec3i;
+import net.minecraft.world.WorldType;
+import net.minecraft.world.biome.Biome;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import util.FP2Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import static java.lang.Math.*;
+import static net.daporkchop.fp2.mode.heightmap.HeightmapConstants.*;
+import static net.daporkchop.fp2.util.Constants.*;
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the cube-aware surface search in {@link CCHeightmapGenerator} finds exactly the same surfaces as a naive block-by-block search, while reading blocks
+ * from as few cubes as possible.
+ *
+ * @author DaPorkchop_
+ */
+public class TestCCHeightmapGenerator {
+    @BeforeClass
+    public static void init() {
+        FP2Test.init();
+    }
+
+    protected static final IBlockState AIR = Blocks.AIR.getDefaultState();
+
+    protected static CCHeightmapGenerator generator() {
+        //the generator only needs the world in order to get the sea level, which isn't used by the surface search
+        return PUnsafe.allocateInstance(CCHeightmapGenerator.class);
+    }
+
+    /**
+     * Naive reference implementation of the surface search: visits every block from the top block in the column down to the lowest block in the opacity index.
+     */
+    protected static int[] referenceElevations(SyntheticColumnWorld world, int blockX, int blockZ) {
+        int[] elevations = new int[MAX_LAYERS];
+        Arrays.fill(elevations, Integer.MIN_VALUE);
+
+        int top = world.getTopBlockY(blockX, blockZ);
+        if (top == Integer.MIN_VALUE) {
+            return elevations;
+        }
+
+        int lowest = top;
+        for (int y = top; y != Integer.MIN_VALUE; y = world.getTopBlockYBelow(blockX, y, blockZ)) {
+            lowest = y;
+        }
+
+        IBlockState state = world.peek(blockX, top, blockZ);
+        int usedExtraLayers = referenceVisit(elevations, state, top, 0);
+        if (usedExtraLayers < 0 || (usedExtraLayers == 0 && elevations[WATER_LAYER] == Integer.MIN_VALUE)) {
+            return elevations;
+        }
+
+        IBlockState prevState = state;
+        for (int y = top - 1; y >= lowest; y--) {
+            if ((state = world.peek(blockX, y, blockZ)) == prevState) {
+                continue;
+            }
+            prevState = state;
+
+            if ((usedExtraLayers = referenceVisit(elevations, state, y, usedExtraLayers)) < 0) {
+                break;
+            }
+        }
+        return elevations;
+    }
+
+    protected static int referenceVisit(int[] elevations, IBlockState state, int y, int usedExtraLayers) {
+        if (state.isOpaqueCube()) {
+            elevations[DEFAULT_LAYER] = y;
+            return -1;
+        } else if (state.getBlock() == Blocks.WATER) {
+            if (elevations[WATER_LAYER] == Integer.MIN_VALUE) {
+                elevations[WATER_LAYER] = y;
+            }
+        } else if (usedExtraLayers < EXTRA_LAYERS.length && (state.getMaterial().isSolid() || state.getMaterial().isLiquid())) {
+            elevations[EXTRA_LAYERS[usedExtraLayers++]] = y;
+        }
+        return usedExtraLayers;
+    }
+
+    protected static void checkMatchesReference(SyntheticColumnWorld world) {
+        HeightmapTile tile = new HeightmapTile();
+        generator().generate(world, new HeightmapPos(0, 0, 0), tile);
+
+        HeightmapData data = new HeightmapData();
+        for (int x = 0; x < T_VOXELS; x++) {
+            for (int z = 0; z < T_VOXELS; z++) {
+                int[] expected = referenceElevations(world, x, z);
+                for (int layer = 0; layer < MAX_LAYERS; layer++) {
+                    boolean set = tile.getLayer(x, z, layer, data);
+                    assertEquals("layer " + layer + " at (" + x + ", " + z + ')', expected[layer] != Integer.MIN_VALUE, set);
+                    if (set) {
+                        assertEquals("layer " + layer + " at (" + x + ", " + z + ')', expected[layer] + 1, data.height_int);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSkipsEmptyCubes() {
+        SyntheticColumnWorld world = new SyntheticColumnWorld();
+        for (int x = 0; x < T_VOXELS; x++) {
+            for (int z = 0; z < T_VOXELS; z++) {
+                //a single water block floating far above the ground, with nothing but air in between
+                world.set(x, 4000, z, Blocks.WATER.getDefaultState());
+                for (int y = -16; y < 0; y++) {
+                    world.set(x, y, z, Blocks.STONE.getDefaultState());
+                }
+            }
+        }
+
+        //put some glass in one of the empty cubes. it has no light opacity, so only the cube summary can tell us that it's there
+        world.set(3, 2000, 7, Blocks.GLASS.getDefaultState());
+
+        world.resetCounters();
+        checkMatchesReference(world);
+
+        //we should only ever have had to look at blocks in the cubes which actually contain something
+        assertEquals(Arrays.asList(-1, 2000 >> 4, 4000 >> 4), world.blockReads.keySet().stream().sorted().collect(Collectors.toList()));
+
+        //a block-by-block search would read every one of the ~4000 blocks between the top and the ground in each column. we should only need to read the
+        //  non-empty cubes, which is at most 3 cubes' worth of blocks per column (plus one more read per layer when generate() samples the block states)
+        assertTrue("too many block reads: " + world.totalBlockReads(), world.totalBlockReads() <= T_VOXELS * T_VOXELS * (3 * 16 + MAX_LAYERS));
+    }
+
+    @Test
+    public void testNoSurface() {
+        SyntheticColumnWorld world = new SyntheticColumnWorld();
+        for (int x = 0; x < T_VOXELS; x++) {
+            for (int z = 0; z < T_VOXELS; z++) {
+                //glass and water layers, but no opaque blocks at all
+                world.set(x, 100, z, Blocks.WATER.getDefaultState());
+                world.set(x, 50, z, Blocks.GLASS.getDefaultState());
+                world.set(x, -3000, z, Blocks.WATER.getDefaultState());
+            }
+        }
+
+        world.resetCounters();
+        checkMatchesReference(world);
+        assertEquals(Arrays.asList(-3000 >> 4, 50 >> 4, 100 >> 4), world.blockReads.keySet().stream().sorted().collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testRandomColumns() {
+        IBlockState[] palette = {
+                AIR, AIR, AIR, AIR, AIR, AIR,
+                Blocks.STONE.getDefaultState(),
+                Blocks.WATER.getDefaultState(),
+                Blocks.ICE.getDefaultState(),
+                Blocks.GLASS.getDefaultState(),
+                Blocks.STAINED_GLASS.getDefaultState().withProperty(BlockStainedGlass.COLOR, EnumDyeColor.RED),
+                Blocks.STAINED_GLASS.getDefaultState().withProperty(BlockStainedGlass.COLOR, EnumDyeColor.BLUE),
+                Blocks.TALLGRASS.getDefaultState(),
+        };
+
+        SplittableRandom r = new SplittableRandom(1337L);
+        for (int i = 0; i < 32; i++) {
+            SyntheticColumnWorld world = new SyntheticColumnWorld();
+
+            //decide which cubes are completely empty up front, so that there are plenty of empty cubes to skip
+            boolean[] emptyCubes = new boolean[16];
+            for (int cubeY = 0; cubeY < emptyCubes.length; cubeY++) {
+                emptyCubes[cubeY] = r.nextInt(3) == 0;
+            }
+
+            for (int x = 0; x < T_VOXELS; x++) {
+                for (int z = 0; z < T_VOXELS; z++) {
+                    //fill each column with runs of random blocks
+                    for (int y = emptyCubes.length * 16 - 1; y >= 0; ) {
+                        IBlockState state = palette[r.nextInt(palette.length)];
+                        for (int run = r.nextInt(1, 24); run > 0 && y >= 0; run--, y--) {
+                            if (!emptyCubes[y >> 4]) {
+                                world.set(x, y - 128, z, state);
+                            }
+                        }
+                    }
+                }
+            }
+
+            checkMatchesReference(world);
+        }
+    }
+
+    @Test
+    public void testNeededCubes() {
+        SyntheticColumnWorld world = new SyntheticColumnWorld();
+        for (int x = 0; x < T_VOXELS; x++) {
+            for (int z = 0; z < T_VOXELS; z++) {
+                world.set(x, ((x + z) & 3) * 100 - 150, z, Blocks.STONE.getDefaultState());
+            }
+        }
+
+        assertEquals(
+                Arrays.asList(new Vec3i(0, -150 >> 4, 0), new Vec3i(0, -50 >> 4, 0), new Vec3i(0, 50 >> 4, 0), new Vec3i(0, 150 >> 4, 0)),
+                generator().neededCubes(world, new HeightmapPos(0, 0, 0)).collect(Collectors.toList()));
+    }
+
+    /**
+     * A single column of cubes with block-level access counting.
+     * <p>
+     * The opacity index is emulated by treating every block with a non-zero light opacity as part of the index, which is what cubic chunks does.
+     *
+     * @author DaPorkchop_
+     */
+    protected static class SyntheticColumnWorld implements IBlockHeightAccess, ICubeSummaryAccess {
+        protected final NavigableMap<Integer, IBlockState[]> cubes = new TreeMap<>();
+        protected final Map<Integer, Integer> blockReads = new HashMap<>();
+
+        protected static int index(int x, int y, int z) {
+            return ((x & 0xF) * 16 + (z & 0xF)) * 16 + (y & 0xF);
+        }
+
+        public void set(int x, int y, int z, @NonNull IBlockState state) {
+            IBlockState[] cube = this.cubes.computeIfAbsent(y >> 4, cubeY -> {
+                IBlockState[] arr = new IBlockState[16 * 16 * 16];
+                Arrays.fill(arr, AIR);
+                return arr;
+            });
+            cube[index(x, y, z)] = state;
+        }
+
+        public IBlockState peek(int x, int y, int z) {
+            IBlockState[] cube = this.cubes.get(y >> 4);
+            return cube != null ? cube[index(x, y, z)] : AIR;
+        }
+
+        public void resetCounters() {
+            this.blockReads.clear();
+        }
+
+        public int totalBlockReads() {
+            return this.blockReads.values().stream().mapToInt(Integer::intValue).sum();
+        }
+
+        @Override
+        public int getTopBlockY(int blockX, int blockZ) {
+            return this.getTopBlockYBelow(blockX, Integer.MAX_VALUE, blockZ);
+        }
+
+        @Override
+        public int getTopBlockYBelow(int blockX, int blockY, int blockZ) {
+            int startY = blockY - 1;
+            for (Map.Entry<Integer, IBlockState[]> entry : this.cubes.headMap(startY >> 4, true).descendingMap().entrySet()) {
+                int cubeY = entry.getKey();
+                for (int y = min(startY, (cubeY << 4) + 15); y >= cubeY << 4; y--) {
+                    if (entry.getValue()[index(blockX, y, blockZ)].getLightOpacity() > 0) {
+                        return y;
+                    }
+                }
+            }
+            return Integer.MIN_VALUE;
+        }
+
+        @Override
+        public int getCubeSummary(int cubeX, int cubeY, int cubeZ) {
+            IBlockState[] cube = this.cubes.get(cubeY);
+            if (cube == null) {
+                return CubeSummary.ALL;
+            }
+
+            int summary = CubeSummary.ALL;
+            for (IBlockState state : cube) {
+                summary &= CubeSummary.summarize(state);
+            }
+            return summary;
+        }
+
+        @Override
+        public IBlockState getBlockState(BlockPos pos) {
+            this.blockReads.merge(pos.getY() >> 4, 1, Integer::sum);
+            return this.peek(pos.getX(), pos.getY(), pos.getZ());
+        }
+
+        @Override
+        public Biome getBiome(BlockPos pos) {
+            return Biomes.PLAINS;
+        }
+
+        @Override
+        public int getSkyLight(BlockPos pos) {
+            return 15;
+        }
+
+        @Override
+        public int getBlockLight(BlockPos pos) {
+            return 0;
+        }
+
+        @Override
+        public TileEntity getTileEntity(BlockPos pos) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isAirBlock(BlockPos pos) {
+            return this.peek(pos.getX(), pos.getY(), pos.getZ()) == AIR;
+        }
+
+        @Override
+        public int getStrongPower(BlockPos pos, EnumFacing direction) {
+            return 0;
+        }
+
+        @Override
+        public WorldType getWorldType() {
+            return WorldType.DEFAULT;
+        }
+
+        @Override
+        public boolean isSideSolid(BlockPos pos, EnumFacing side, boolean _default) {
+            return _default;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package mode.voxel.client;
+
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import net.daporkchop.fp2.compat.vanilla.FastRegistry;
+import net.daporkchop.fp2.mode.voxel.VoxelData;
+import net.daporkchop.fp2.mode.voxel.VoxelTile;
+import net.daporkchop.fp2.mode.voxel.client.VoxelBaker;
+import net.daporkchop.fp2.mode.voxel.client.VoxelMeshSimplifier;
+import net.minecraft.init.Blocks;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import util.FP2Test;
+
+import java.util.function.IntBinaryOperator;
+
+import static java.lang.Math.*;
+import static net.daporkchop.fp2.mode.voxel.VoxelConstants.*;
+import static net.daporkchop.fp2.util.Constants.*;
+import static org.junit.Assert.*;
+
+/**
+ * @author DaPorkchop_
+ */
+public class TestVoxelMeshSimplifier {
+    protected static final int SURFACE_Y = T_VOXELS >> 1;
+
+    @BeforeClass
+    public static void init() {
+        FP2Test.init();
+    }
+
+    /**
+     * Builds the source tiles for a single horizontal surface in the middle of the tile, whose sub-voxel height at each voxel is given by the given function.
+     */
+    protected static VoxelTile[] surface(IntBinaryOperator heights) {
+        int state = FastRegistry.getId(Blocks.STONE.getDefaultState());
+        VoxelData data = new VoxelData();
+
+        VoxelTile[] srcs = new VoxelTile[8];
+        for (int i : new int[]{ 0, 1, 4, 5 }) { //the surface never reaches into the tiles above it
+            int tileX = (i >> 2) & 1;
+            int tileZ = i & 1;
+
+            VoxelTile tile = srcs[i] = new VoxelTile();
+            for (int x = 0; x < T_VOXELS; x++) {
+                for (int z = 0; z < T_VOXELS; z++) {
+                    data.reset();
+                    data.x = POS_ONE >> 1;
+                    data.y = heights.applyAsInt((tileX << T_SHIFT) + x, (tileZ << T_SHIFT) + z);
+                    data.z = POS_ONE >> 1;
+                    data.edges = EDGE_DIR_POSITIVE << 2;
+                    data.states[0] = data.states[1] = data.states[2] = state;
+                    data.light = 0xF0;
+                    tile.set(x, SURFACE_Y, z, data);
+                }
+            }
+        }
+        return srcs;
+    }
+
+    protected static LongSet openEdges(VoxelMeshSimplifier mesh) {
+        LongSet directed = new LongOpenHashSet();
+        mesh.forEachTriangle((tag, a, b, provoking) -> {
+            directed.add(edge(a, b));
+            directed.add(edge(b, provoking));
+            directed.add(edge(provoking, a));
+        });
+
+        LongSet open = new LongOpenHashSet();
+        for (LongIterator itr = directed.iterator(); itr.hasNext(); ) {
+            long edge = itr.nextLong();
+            if (!directed.contains((edge << 32L) | (edge >>> 32L))) {
+                open.add(edge);
+            }
+        }
+        return open;
+    }
+
+    protected static long edge(int a, int b) {
+        return ((long) a << 32L) | (b & 0xFFFFFFFFL);
+    }
+
+    protected static double normalY(VoxelMeshSimplifier mesh, int a, int b, int c) {
+        double ux = mesh.x(b) - mesh.x(a);
+        double uz = mesh.z(b) - mesh.z(a);
+        double vx = mesh.x(c) - mesh.x(a);
+        double vz = mesh.z(c) - mesh.z(a);
+        return uz * vx - ux * vz;
+    }
+
+    protected static void checkSimplification(VoxelTile[] srcs, double maxError) {
+        VoxelMeshSimplifier mesh = new VoxelBaker().buildMesh(srcs);
+        int originalTriangles = mesh.triangleCount();
+        assertEquals(2 * T_VOXELS * T_VOXELS, originalTriangles);
+
+        LongSet originalOpenEdges = openEdges(mesh);
+        double[] originalFacing = new double[1];
+        mesh.forEachTriangle((tag, a, b, provoking) -> originalFacing[0] = signum(normalY(mesh, a, b, provoking)));
+
+        assertNotEquals(0, mesh.simplify(maxError));
+        assertTrue(mesh.triangleCount() < originalTriangles);
+
+        //tile borders must be left untouched, otherwise there would be cracks between neighboring tiles
+        assertEquals(originalOpenEdges, openEdges(mesh));
+        for (int v = 0; v < mesh.vertexCount(); v++) {
+            int payload = mesh.payload(v);
+            if (VoxelBaker.meshVertexX(payload) % T_VOXELS == 0 || VoxelBaker.meshVertexZ(payload) % T_VOXELS == 0) {
+                assertFalse(mesh.removed(v));
+            }
+        }
+
+        //no triangle may have been flipped around
+        mesh.forEachTriangle((tag, a, b, provoking) -> assertEquals(originalFacing[0], signum(normalY(mesh, a, b, provoking)), 0.0d));
+
+        //every original vertex must still be close enough to the simplified surface
+        for (int v = 0; v < mesh.vertexCount(); v++) {
+            double px = mesh.x(v);
+            double py = mesh.y(v);
+            double pz = mesh.z(v);
+
+            double[] closest = { Double.POSITIVE_INFINITY };
+            mesh.forEachTriangle((tag, a, b, provoking) -> closest[0] = min(closest[0], VoxelMeshSimplifier.pointTriangleDistanceSq(px, py, pz,
+                    mesh.x(a), mesh.y(a), mesh.z(a),
+                    mesh.x(b), mesh.y(b), mesh.z(b),
+                    mesh.x(provoking), mesh.y(provoking), mesh.z(provoking))));
+            assertTrue("vertex " + v + " is " + sqrt(closest[0]) + " voxels away from the simplified mesh", sqrt(closest[0]) <= maxError + 1.0e-6d);
+        }
+    }
+
+    @Test
+    public void testFlat() {
+        checkSimplification(surface((x, z) -> POS_ONE >> 1), 0.125d);
+    }
+
+    @Test
+    public void testRolling() {
+        checkSimplification(surface((x, z) -> (int) round(3.5d + 3.5d * sin(x * 0.4d) * cos(z * 0.3d))), 0.25d);
+    }
+
+    @Test
+    public void testNoise() {
+        checkSimplification(surface((x, z) -> ((x * 73856093) ^ (z * 19349663)) * 0x9E3779B9 >>> 29), 0.5d);
+    }
+
+    @Test
+    public void testErrorBound() {
+        assertEquals(0.0d, VoxelBaker.maxSimplificationError(0, POS_ONE), 0.0d);
+        assertEquals(1.0d, VoxelBaker.maxSimplificationError(1, POS_ONE), 0.0d);
+        assertEquals(0.5d, VoxelBaker.maxSimplificationError(4, POS_ONE >> 1), 0.0d);
+        assertEquals(0.0d, VoxelBaker.maxSimplificationError(4, 0), 0.0d);
+    }
+}
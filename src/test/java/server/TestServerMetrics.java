@@ -0,0 +1,197 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package server;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import mode.common.server.TrackerHarness;
+import net.daporkchop.fp2.common.util.metrics.Histogram;
+import net.daporkchop.fp2.common.util.metrics.MetricsRegistry;
+import net.daporkchop.fp2.common.util.metrics.MetricsScope;
+import net.daporkchop.fp2.common.util.metrics.MetricsSnapshot;
+import net.daporkchop.fp2.mode.api.IFarRenderMode;
+import net.daporkchop.fp2.mode.api.tile.ITileMetadata;
+import net.daporkchop.fp2.mode.api.tile.TileSnapshot;
+import net.daporkchop.fp2.mode.common.server.AbstractFarTileProvider;
+import net.daporkchop.fp2.mode.common.server.storage.rocksdb.RocksStorage;
+import net.daporkchop.fp2.mode.common.server.tracking.MotionEstimator;
+import net.daporkchop.fp2.mode.common.server.tracking.TrackingState;
+import net.daporkchop.fp2.mode.heightmap.HeightmapPos;
+import net.daporkchop.fp2.mode.heightmap.HeightmapRenderMode;
+import net.daporkchop.fp2.mode.heightmap.HeightmapTile;
+import net.daporkchop.fp2.mode.heightmap.server.HeightmapTileProvider;
+import net.daporkchop.fp2.net.packet.standard.server.SPacketTileData;
+import net.daporkchop.fp2.server.FP2Metrics;
+import net.daporkchop.lib.common.misc.file.PFiles;
+import net.daporkchop.lib.unsafe.PUnsafe;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import util.FP2Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static net.daporkchop.lib.common.util.PorkUtil.*;
+import static org.junit.Assert.*;
+
+/**
+ * Runs the server-side code paths which record metrics, and checks the recorded values.
+ * <p>
+ * All durations are measured using a fake clock which advances by exactly {@link #CLOCK_STEP} every time it is read, so every recorded duration is exactly
+ * {@link #CLOCK_STEP}.
+ *
+ * @author DaPorkchop_
+ */
+public class TestServerMetrics {
+    protected static final long CLOCK_STEP = 1000L;
+
+    @BeforeClass
+    public static void init() {
+        FP2Test.init();
+    }
+
+    protected static MetricsRegistry registry() {
+        AtomicLong clock = new AtomicLong();
+        return new MetricsRegistry(() -> clock.addAndGet(CLOCK_STEP));
+    }
+
+    protected static void assertDurations(MetricsSnapshot snapshot, String name, long count) {
+        Histogram.Snapshot histogram = snapshot.histograms().get(name);
+        assertEquals(count, histogram.count());
+        assertEquals(count * CLOCK_STEP, histogram.sum());
+        assertEquals(count == 0L ? 0L : CLOCK_STEP, histogram.max());
+    }
+
+    protected static int encodedSize(HeightmapTile tile) {
+        ByteBuf buf = Unpooled.buffer();
+        try {
+            tile.write(buf);
+            return buf.writerIndex();
+        } finally {
+            buf.release();
+        }
+    }
+
+    @Test
+    public void testTracker() {
+        MetricsRegistry registry = registry();
+        TrackerHarness tracker = new TrackerHarness(registry.scope("tracker"));
+        MotionEstimator motion = new MotionEstimator();
+
+        tracker.update(TrackingState.create(0.5d, 100.0d, 0.5d, motion, 8, 0, 2));
+        MetricsSnapshot snapshot = registry.snapshot();
+        assertEquals(tracker.queued().size(), snapshot.gauges().get("tracker.tiles.queued").longValue());
+        assertDurations(snapshot, "tracker.update.duration", 1L);
+
+        tracker.loadQueued(50);
+        assertEquals(tracker.queued().size(), registry.snapshot().gauges().get("tracker.tiles.queued").longValue());
+
+        //move far enough for the tracked volume to change
+        tracker.update(TrackingState.create(200.5d, 100.0d, 0.5d, motion, 8, 0, 2));
+        snapshot = registry.snapshot();
+        assertEquals(tracker.queued().size(), snapshot.gauges().get("tracker.tiles.queued").longValue());
+        assertEquals(0L, snapshot.gauges().get("tracker.tiles.waiting").longValue());
+        assertDurations(snapshot, "tracker.update.duration", 2L);
+    }
+
+    @Test
+    public void testRocksStorage() throws IOException {
+        MetricsRegistry registry = registry();
+        MetricsScope metrics = registry.scope("heightmap");
+
+        //the storage only needs the tile provider's render mode and metrics
+        HeightmapTileProvider provider = PUnsafe.allocateInstance(HeightmapTileProvider.Vanilla.class);
+        PUnsafe.putObject(provider, PUnsafe.pork_getOffset(AbstractFarTileProvider.class, "mode"), PUnsafe.allocateInstance(HeightmapRenderMode.class));
+        PUnsafe.putObject(provider, PUnsafe.pork_getOffset(AbstractFarTileProvider.class, "metrics"), metrics);
+
+        HeightmapTile tile = new HeightmapTile();
+        long tileSize = encodedSize(tile);
+
+        File root = Files.createTempDirectory("fp2-test-storage").toFile();
+        try (RocksStorage<HeightmapPos, HeightmapTile> storage = new RocksStorage<>(provider, root)) {
+            HeightmapPos pos = new HeightmapPos(0, 1, 2);
+
+            //a successful write records its duration and size
+            assertTrue(storage.handleFor(pos).set(ITileMetadata.ofTimestamp(10L), tile));
+            MetricsSnapshot snapshot = registry.snapshot();
+            assertDurations(snapshot, "heightmap.storage.write.duration", 1L);
+            assertEquals(tileSize, snapshot.counters().get("heightmap.storage.write.bytes").longValue());
+
+            //a rejected write doesn't record anything
+            assertFalse(storage.handleFor(pos).set(ITileMetadata.ofTimestamp(10L), tile));
+            snapshot = registry.snapshot();
+            assertDurations(snapshot, "heightmap.storage.write.duration", 1L);
+            assertEquals(tileSize, snapshot.counters().get("heightmap.storage.write.bytes").longValue());
+
+            //reads record their duration, and the size of the tile data if there is any
+            assertNotNull(storage.handleFor(pos).snapshot());
+            assertNull(storage.handleFor(new HeightmapPos(0, 3, 4)).snapshot());
+            snapshot = registry.snapshot();
+            assertDurations(snapshot, "heightmap.storage.read.duration", 2L);
+            assertEquals(tileSize, snapshot.counters().get("heightmap.storage.read.bytes").longValue());
+
+            //a batched write is recorded as a single write
+            Map<HeightmapPos, HeightmapTile> tiles = new HashMap<>();
+            for (int i = 0; i < 3; i++) {
+                tiles.put(new HeightmapPos(1, i, 0), tile);
+            }
+            assertEquals(3L, storage.setAll(ITileMetadata.ofTimestamp(10L), tiles).count());
+            snapshot = registry.snapshot();
+            assertDurations(snapshot, "heightmap.storage.write.duration", 2L);
+            assertEquals(4L * tileSize, snapshot.counters().get("heightmap.storage.write.bytes").longValue());
+        } finally {
+            PFiles.rm(root);
+        }
+    }
+
+    @Test
+    public void testTileDataPacket() {
+        //the packet only needs the render mode's name
+        IFarRenderMode<HeightmapPos, HeightmapTile> mode = uncheckedCast(Proxy.newProxyInstance(IFarRenderMode.class.getClassLoader(), new Class[]{ IFarRenderMode.class }, (proxy, method, args) -> {
+            if ("name".equals(method.getName())) {
+                return "heightmap";
+            }
+            throw new UnsupportedOperationException(method.toString());
+        }));
+
+        ByteBuf tileData = Unpooled.buffer();
+        new HeightmapTile().write(tileData);
+        byte[] data = new byte[tileData.readableBytes()];
+        tileData.readBytes(data).release();
+
+        ByteBuf buf = Unpooled.buffer();
+        try {
+            long before = FP2Metrics.NET_TILE_BYTES_SENT.count();
+            new SPacketTileData().mode(mode).tile(new TileSnapshot<>(new HeightmapPos(0, 1, 2), 10L, data)).toBytes(buf);
+
+            //every byte written by the packet is counted
+            assertTrue(buf.writerIndex() > data.length);
+            assertEquals(buf.writerIndex(), FP2Metrics.NET_TILE_BYTES_SENT.count() - before);
+        } finally {
+            buf.release();
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package util.datastructure;
+
+import net.daporkchop.fp2.util.datastructure.Datastructures;
+import net.daporkchop.fp2.util.datastructure.NDimensionalIntSegtreeSet;
+import net.daporkchop.fp2.util.datastructure.java.ndimensionalintsegtree.BitmapNDimensionalIntSegtreeSet;
+import net.daporkchop.fp2.util.datastructure.java.ndimensionalintsegtree.JavaNDimensionalIntSegtreeSet;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import static net.daporkchop.lib.common.util.PValidation.*;
+
+/**
+ * Differential tests of {@link BitmapNDimensionalIntSegtreeSet} against {@link JavaNDimensionalIntSegtreeSet}.
+ * <p>
+ * {@link JavaNDimensionalIntSegtreeSet} doesn't support arbitrary AABB queries, so those are checked against a linear scan over all the points instead.
+ *
+ * @author DaPorkchop_
+ */
+public class TestNDimensionalIntSegtreeSet {
+    @Test
+    public void test1D() {
+        this.test(1, 256);
+    }
+
+    @Test
+    public void test2D() {
+        this.test(2, 256);
+    }
+
+    @Test
+    public void test3D() {
+        this.test(3, 64);
+    }
+
+    @Test
+    public void test4D() {
+        this.test(4, 8);
+    }
+
+    private void test(int dimensions, int range) {
+        SplittableRandom r = new SplittableRandom(dimensions * 31L);
+
+        NDimensionalIntSegtreeSet reference = new JavaNDimensionalIntSegtreeSet(dimensions, Datastructures.INSTANCE);
+        NDimensionalIntSegtreeSet bitmap = new BitmapNDimensionalIntSegtreeSet(dimensions);
+        try {
+            List<int[]> points = new ArrayList<>();
+
+            for (int i = 0; i < 50000; i++) {
+                if (!points.isEmpty() && r.nextInt(3) == 0) { //remove an existing point
+                    int[] point = points.remove(r.nextInt(points.size()));
+                    checkState(reference.remove(point) && bitmap.remove(point), "remove %s", Arrays.toString(point));
+                } else { //add a random point, occasionally with a huge coordinate
+                    int[] point = new int[dimensions];
+                    for (int d = 0; d < dimensions; d++) {
+                        point[d] = r.nextInt(16) == 0 ? r.nextInt() : r.nextInt(-range, range);
+                    }
+
+                    boolean added = reference.add(point);
+                    checkState(bitmap.add(point) == added, "add %s", Arrays.toString(point));
+                    if (added) {
+                        points.add(point);
+                    }
+                }
+                checkState(reference.count() == bitmap.count(), "count: %d != %d", bitmap.count(), reference.count());
+
+                //query a few random tiles at random levels, biased towards ones which contain a point
+                for (int j = 0; j < 4; j++) {
+                    int shift = r.nextInt(Integer.SIZE + 1);
+                    int[] query = new int[dimensions];
+                    for (int d = 0; d < dimensions; d++) {
+                        int coord = !points.isEmpty() && (j & 1) == 0
+                                ? points.get(r.nextInt(points.size()))[d]
+                                : r.nextInt(-range, range);
+                        query[d] = coord >> Math.min(shift, Integer.SIZE - 1);
+                    }
+
+                    checkState(reference.containsAny(shift, query) == bitmap.containsAny(shift, query), "containsAny(%d, %s)", shift, Arrays.toString(query));
+                    checkState(reference.contains(query) == bitmap.contains(query), "contains(%s)", Arrays.toString(query));
+                }
+
+                //query a random AABB of random size, usually with one corner near a point
+                if ((i & 7) == 0) {
+                    int[] a = new int[dimensions];
+                    int[] b = new int[dimensions];
+                    for (int d = 0; d < dimensions; d++) {
+                        long coord = !points.isEmpty() && r.nextBoolean()
+                                ? points.get(r.nextInt(points.size()))[d] + r.nextInt(-2, 3)
+                                : r.nextInt(-range, range);
+                        long extent = 1L << r.nextInt(Integer.SIZE);
+                        a[d] = clamp(coord);
+                        b[d] = clamp(coord + r.nextLong(-extent, extent));
+                    }
+
+                    checkState(bitmap.containsAny(a, b) == containsAny(points, a, b), "containsAny(%s, %s)", Arrays.toString(a), Arrays.toString(b));
+                }
+            }
+
+            //both sets should contain exactly the same points
+            Set<List<Integer>> referencePoints = new HashSet<>();
+            reference.forEach(point -> referencePoints.add(toList(point)));
+            Set<List<Integer>> bitmapPoints = new HashSet<>();
+            bitmap.forEach(point -> bitmapPoints.add(toList(point)));
+            checkState(referencePoints.equals(bitmapPoints), "forEach");
+
+            int[] min = new int[dimensions];
+            int[] max = new int[dimensions];
+            Arrays.fill(min, Integer.MIN_VALUE);
+            Arrays.fill(max, Integer.MAX_VALUE);
+            checkState(bitmap.containsAny(min, max) == !points.isEmpty(), "containsAny(everything)");
+
+            //removing everything should leave both sets completely empty
+            points.forEach(point -> checkState(bitmap.remove(point)));
+            checkState(bitmap.isEmpty() && ((BitmapNDimensionalIntSegtreeSet) bitmap).memoryUsage() == 0L, "bitmap set isn't empty after removing all points");
+            checkState(!bitmap.containsAny(min, max));
+            for (int shift = 0; shift <= Integer.SIZE; shift++) {
+                checkState(!bitmap.containsAny(shift, new int[dimensions]));
+            }
+        } finally {
+            reference.release();
+            bitmap.release();
+        }
+    }
+
+    private static boolean containsAny(List<int[]> points, int[] a, int[] b) {
+        return points.stream().anyMatch(point -> {
+            for (int d = 0; d < point.length; d++) {
+                if (point[d] < Math.min(a[d], b[d]) || point[d] > Math.max(a[d], b[d])) {
+                    return false;
+                }
+            }
+            return true;
+        });
+    }
+
+    private static int clamp(long value) {
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, value));
+    }
+
+    private static List<Integer> toList(int[] point) {
+        List<Integer> list = new ArrayList<>(point.length);
+        for (int coord : point) {
+            list.add(coord);
+        }
+        return list;
+    }
+}
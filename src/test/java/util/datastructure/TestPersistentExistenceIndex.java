@@ -0,0 +1,240 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package util.datastructure;
+
+import net.daporkchop.fp2.util.datastructure.PersistentExistenceIndex;
+import net.daporkchop.lib.common.misc.file.PFiles;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static net.daporkchop.lib.common.util.PValidation.*;
+
+/**
+ * @author DaPorkchop_
+ */
+public class TestPersistentExistenceIndex {
+    private Path dir;
+    private Path file;
+    private final AtomicLong clock = new AtomicLong(1000L);
+
+    @Before
+    public void createDirectory() throws IOException {
+        this.dir = Files.createTempDirectory("fp2-test-index");
+        this.file = this.dir.resolve("cubes.idx");
+    }
+
+    @After
+    public void deleteDirectory() {
+        PFiles.rm(this.dir.toFile());
+    }
+
+    private PersistentExistenceIndex index() {
+        return new PersistentExistenceIndex(this.file, 3, this.clock::get);
+    }
+
+    private static Set<List<Integer>> toSet(Collection<int[]> points) {
+        return points.stream().map(p -> Arrays.asList(p[0], p[1], p[2])).collect(Collectors.toSet());
+    }
+
+    private static Set<List<Integer>> points(int... coords) {
+        Set<List<Integer>> set = new HashSet<>();
+        for (int i = 0; i < coords.length; i += 3) {
+            set.add(Arrays.asList(coords[i], coords[i + 1], coords[i + 2]));
+        }
+        return set;
+    }
+
+    @Test
+    public void testRebuild() throws IOException {
+        PersistentExistenceIndex index = this.index();
+        checkState(index.load(0L) == null, "missing index should not load");
+
+        Collection<int[]> scanned = index.rebuild(() -> Arrays.asList(new int[]{ 1, 2, 3 }, new int[]{ -4, -5, -6 }));
+        checkState(toSet(scanned).equals(points(1, 2, 3, -4, -5, -6)));
+
+        //the rebuilt index is valid for any storage modified before the rebuild started
+        this.clock.set(2000L);
+        List<int[]> loaded = this.index().load(1000L);
+        checkState(loaded != null && toSet(loaded).equals(points(1, 2, 3, -4, -5, -6)));
+    }
+
+    @Test
+    public void testIncrementalUpdate() throws IOException {
+        PersistentExistenceIndex index = this.index();
+        index.rebuild(() -> Arrays.asList(new int[]{ 0, 0, 0 }));
+
+        this.clock.set(2000L);
+        index.add(1, 1, 1);
+        index.add(2, 2, 2);
+        index.checkpoint();
+
+        this.clock.set(3000L);
+        index.add(3, 3, 3);
+        index.checkpoint();
+
+        //a crash would leave the journal open, simulate that by loading with another instance without closing the first one
+        List<int[]> loaded = this.index().load(3000L);
+        checkState(loaded != null && toSet(loaded).equals(points(0, 0, 0, 1, 1, 1, 2, 2, 2, 3, 3, 3)));
+
+        //points added after the last checkpoint aren't persisted
+        this.clock.set(4000L);
+        index.add(4, 4, 4);
+        checkState(this.index().load(3500L) == null, "storage modified after the last checkpoint should make the index stale");
+
+        //closing the index compacts everything into a new snapshot
+        index.close(callback -> points(0, 0, 0, 1, 1, 1, 2, 2, 2, 3, 3, 3, 4, 4, 4).forEach(p -> callback.accept(new int[]{ p.get(0), p.get(1), p.get(2) })));
+        checkState(Files.notExists(index.journalFile()), "journal should be deleted after compaction");
+        loaded = this.index().load(4000L);
+        checkState(loaded != null && toSet(loaded).equals(points(0, 0, 0, 1, 1, 1, 2, 2, 2, 3, 3, 3, 4, 4, 4)));
+    }
+
+    @Test
+    public void testIdleCheckpoint() throws IOException {
+        PersistentExistenceIndex index = this.index();
+        index.rebuild(() -> Arrays.asList(new int[]{ 0, 0, 0 }));
+
+        //checkpoints without any new points don't create a journal
+        this.clock.set(1500L);
+        index.checkpoint();
+        checkState(Files.notExists(index.journalFile()), "idle checkpoint shouldn't create a journal");
+
+        this.clock.set(2000L);
+        index.add(1, 1, 1);
+        index.checkpoint();
+        long size = Files.size(index.journalFile());
+
+        //the first idle checkpoint after some points were added refreshes the journal's timestamp, any further ones don't write anything
+        this.clock.set(3000L);
+        index.checkpoint();
+        checkState(Files.size(index.journalFile()) > size, "first idle checkpoint should refresh the timestamp");
+        size = Files.size(index.journalFile());
+
+        this.clock.set(4000L);
+        index.checkpoint();
+        index.checkpoint();
+        checkState(Files.size(index.journalFile()) == size, "further idle checkpoints shouldn't write anything");
+
+        List<int[]> loaded = this.index().load(3000L);
+        checkState(loaded != null && toSet(loaded).equals(points(0, 0, 0, 1, 1, 1)));
+    }
+
+    @Test
+    public void testPartialJournalRecord() throws IOException {
+        PersistentExistenceIndex index = this.index();
+        index.rebuild(() -> Arrays.asList(new int[]{ 0, 0, 0 }));
+
+        this.clock.set(2000L);
+        index.add(1, 1, 1);
+        index.checkpoint();
+
+        //simulate a crash in the middle of writing a record
+        Files.write(index.journalFile(), new byte[]{ 0, 0, 0, 5, 1, 2, 3 }, StandardOpenOption.APPEND);
+
+        PersistentExistenceIndex reloaded = this.index();
+        List<int[]> loaded = reloaded.load(2000L);
+        checkState(loaded != null && toSet(loaded).equals(points(0, 0, 0, 1, 1, 1)));
+
+        //the partial record should have been discarded, so new checkpoints can be appended after it
+        this.clock.set(3000L);
+        reloaded.add(2, 2, 2);
+        reloaded.checkpoint();
+
+        loaded = this.index().load(3000L);
+        checkState(loaded != null && toSet(loaded).equals(points(0, 0, 0, 1, 1, 1, 2, 2, 2)));
+    }
+
+    @Test
+    public void testLateWriteAfterClose() throws IOException {
+        this.clock.set(System.currentTimeMillis());
+        PersistentExistenceIndex index = this.index();
+        index.rebuild(() -> Arrays.asList(new int[]{ 0, 0, 0 }));
+        index.add(1, 1, 1);
+        index.checkpoint();
+
+        //the world is unloaded, which closes the index before the storage's queued writes have been flushed
+        long closeStamp = this.clock.addAndGet(1000L);
+        index.close(callback -> points(0, 0, 0, 1, 1, 1).forEach(p -> callback.accept(new int[]{ p.get(0), p.get(1), p.get(2) })));
+
+        Path region = Files.write(this.dir.resolve("r.0.0.0.3dr"), new byte[]{ 1, 2, 3, 4 });
+        long storageStamp = Math.max(Files.getLastModifiedTime(region).toMillis(), closeStamp + 1L);
+
+        PersistentExistenceIndex reloaded = this.index();
+        List<int[]> loaded = reloaded.load(storageStamp);
+        checkState(loaded != null && toSet(loaded).equals(points(0, 0, 0, 1, 1, 1)), "writes flushed shortly after closing shouldn't make the index stale");
+        checkState(this.index().load(closeStamp + PersistentExistenceIndex.CLOSE_GRACE_PERIOD + 1L) == null,
+                "storage modified long after closing should make the index stale");
+
+        //the reloaded index continues journaling on top of the closed snapshot
+        this.clock.set(storageStamp + 1000L);
+        reloaded.add(2, 2, 2);
+        reloaded.checkpoint();
+        loaded = this.index().load(storageStamp + 1000L);
+        checkState(loaded != null && toSet(loaded).equals(points(0, 0, 0, 1, 1, 1, 2, 2, 2)));
+    }
+
+    @Test
+    public void testStaleDetection() throws IOException {
+        PersistentExistenceIndex index = this.index();
+        index.rebuild(() -> Arrays.asList(new int[]{ 0, 0, 0 }));
+
+        //the world was modified after the snapshot was made, without the index being updated
+        checkState(this.index().load(1001L) == null, "index should be stale");
+        checkState(this.index().load(1000L) != null, "index should be valid");
+
+        //a rebuild which was interrupted before the snapshot could be written must not cause the new journal to be applied to the old snapshot
+        this.clock.set(5000L);
+        PersistentExistenceIndex interrupted = this.index();
+        try {
+            interrupted.rebuild(() -> {
+                interrupted.add(7, 7, 7);
+                interrupted.checkpoint();
+                throw new IOException("simulated crash");
+            });
+            throw new IllegalStateException();
+        } catch (IOException e) {
+            //expected
+        }
+        checkState(this.index().load(2000L) == null, "journal from interrupted rebuild must be ignored, leaving the old snapshot stale");
+        List<int[]> loaded = this.index().load(1000L);
+        checkState(loaded != null && toSet(loaded).equals(points(0, 0, 0)), "old snapshot should still be usable on its own");
+
+        //corrupted snapshot
+        Files.write(this.file, new byte[]{ 1, 2, 3, 4 });
+        checkState(this.index().load(0L) == null, "corrupt index should not load");
+
+        //wrong dimensionality
+        index.rebuild(() -> Arrays.asList(new int[]{ 0, 0, 0 }));
+        checkState(new PersistentExistenceIndex(this.file, 2, this.clock::get).load(0L) == null, "index with wrong dimensionality should not load");
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package util.threading.futureexecutor;
+
+import lombok.NonNull;
+import net.daporkchop.fp2.util.threading.futureexecutor.AbstractMarkedFutureExecutor;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import util.FP2Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the scheduling behavior of {@link AbstractMarkedFutureExecutor} using a controllable clock.
+ *
+ * @author DaPorkchop_
+ */
+public class TestMarkedFutureExecutor {
+    @BeforeClass
+    public static void init() {
+        FP2Test.init();
+    }
+
+    @Test
+    public void testRoundRobin() {
+        TestExecutor executor = new TestExecutor(Thread.currentThread(), new AtomicLong()::get);
+        List<String> order = new ArrayList<>();
+
+        for (int i = 0; i < 5; i++) {
+            executor.run("a", () -> order.add("a"));
+        }
+        for (int i = 0; i < 2; i++) {
+            executor.run("b", () -> order.add("b"));
+        }
+        executor.run("c", () -> order.add("c"));
+
+        executor.doAllWork();
+        assertEquals(Arrays.asList("a", "b", "c", "a", "b", "a", "a", "a"), order);
+
+        executor.close();
+    }
+
+    @Test
+    public void testTimeBudget() {
+        AtomicLong clock = new AtomicLong();
+        TestExecutor executor = new TestExecutor(Thread.currentThread(), clock::get);
+        AtomicInteger count = new AtomicInteger();
+
+        //each task takes 3ms
+        Runnable task = () -> {
+            clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(3L));
+            count.incrementAndGet();
+        };
+        for (int i = 0; i < 16; i++) {
+            executor.run(i & 1, task);
+        }
+
+        //the budget is only checked between tasks, so the fourth task is the one which exceeds it
+        executor.doWorkFor(TimeUnit.MILLISECONDS.toNanos(10L));
+        assertEquals(4, count.get());
+
+        //even with no budget at all, at least one task must run
+        executor.doWorkFor(0L);
+        assertEquals(5, count.get());
+
+        //doWork() should stop reporting more work once the budget is used up, and refuse to do any more until a new budget begins
+        executor.beginBudget(TimeUnit.MILLISECONDS.toNanos(5L));
+        assertTrue(executor.doWork());
+        assertFalse(executor.doWork());
+        assertEquals(7, count.get());
+        assertFalse(executor.doWork());
+        assertEquals(7, count.get());
+
+        //the budget only starts once work begins, so time spent between starting the budget and the first call to doWork() (e.g. the rest of a slow tick)
+        //  doesn't prevent tasks from running
+        executor.beginBudget(TimeUnit.MILLISECONDS.toNanos(5L));
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(20L));
+        assertTrue(executor.doWork());
+        assertFalse(executor.doWork());
+        assertEquals(9, count.get());
+
+        //even with no budget at all, the first call to doWork() must run a task
+        executor.beginBudget(0L);
+        assertFalse(executor.doWork());
+        assertEquals(10, count.get());
+        assertFalse(executor.doWork());
+        assertEquals(10, count.get());
+
+        //once work has begun, time passing without running any tasks also counts towards the budget
+        executor.beginBudget(TimeUnit.MILLISECONDS.toNanos(5L));
+        assertTrue(executor.doWork());
+        assertEquals(11, count.get());
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(2L));
+        assertFalse(executor.doWork());
+        assertEquals(11, count.get());
+
+        executor.doAllWork();
+        assertEquals(16, count.get());
+
+        executor.close();
+    }
+
+    @Test
+    public void testCancelAll() {
+        TestExecutor executor = new TestExecutor(Thread.currentThread(), new AtomicLong()::get);
+        Object markerA = new Object();
+        Object markerB = new Object();
+        AtomicInteger ranA = new AtomicInteger();
+        AtomicInteger ranB = new AtomicInteger();
+
+        List<CompletableFuture<Void>> futuresA = new ArrayList<>();
+        List<CompletableFuture<Void>> futuresB = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            futuresA.add(executor.run(markerA, ranA::incrementAndGet));
+            futuresB.add(executor.run(markerB, ranB::incrementAndGet));
+        }
+
+        //run a few tasks, then cancel everything that's left for marker A
+        executor.doWorkFor(0L);
+        executor.doWorkFor(0L);
+        executor.cancelAll(markerA);
+        assertFalse(executor.hasQueueFor(markerA));
+        assertTrue(executor.hasQueueFor(markerB));
+
+        executor.doAllWork();
+        assertEquals(1, ranA.get());
+        assertEquals(100, ranB.get());
+        assertTrue(futuresA.get(0).isDone() && !futuresA.get(0).isCancelled());
+        assertTrue(futuresA.stream().skip(1L).allMatch(CompletableFuture::isCancelled));
+        assertTrue(futuresB.stream().noneMatch(CompletableFuture::isCancelled));
+
+        //the marker can be re-used after it's been cancelled
+        CompletableFuture<Void> future = executor.run(markerA, ranA::incrementAndGet);
+        executor.doAllWork();
+        assertTrue(future.isDone() && !future.isCancelled());
+        assertEquals(2, ranA.get());
+
+        executor.close();
+    }
+
+    @Test
+    public void testExceptions() {
+        TestExecutor executor = new TestExecutor(Thread.currentThread(), new AtomicLong()::get);
+        AtomicInteger count = new AtomicInteger();
+
+        CompletableFuture<Void> failed = executor.run("a", () -> {
+            throw new IllegalStateException("expected");
+        });
+        executor.run("a", count::incrementAndGet);
+        executor.run("b", count::incrementAndGet);
+
+        try {
+            executor.doAllWork();
+            fail();
+        } catch (RuntimeException e) {
+            assertEquals(1, e.getSuppressed().length);
+            assertTrue(e.getSuppressed()[0] instanceof IllegalStateException);
+        }
+
+        //the exception must not have prevented the remaining tasks from running
+        assertEquals(2, count.get());
+        assertTrue(failed.isCompletedExceptionally());
+
+        executor.close();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testWrongThread() {
+        TestExecutor executor = new TestExecutor(new Thread(() -> {}), new AtomicLong()::get);
+        executor.run("a", () -> {});
+        executor.doWork();
+    }
+
+    @Test
+    public void testConcurrentSubmitAndCancel() throws InterruptedException {
+        TestExecutor executor = new TestExecutor(Thread.currentThread(), System::nanoTime);
+        int threads = 4;
+        int tasksPerThread = 10000;
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        AtomicInteger ran = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(threads);
+
+        List<Thread> submitters = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Object marker = i;
+            submitters.add(new Thread(() -> {
+                try {
+                    for (int j = 0; j < tasksPerThread; j++) {
+                        CompletableFuture<Void> future = executor.run(marker, ran::incrementAndGet);
+                        synchronized (futures) {
+                            futures.add(future);
+                        }
+                        if (j % 1000 == 999) { //cancel the marker's queue every so often, while other threads are still submitting to their own markers
+                            executor.cancelAll(marker);
+                        }
+                    }
+                } finally {
+                    done.countDown();
+                }
+            }));
+        }
+        submitters.forEach(Thread::start);
+
+        //keep working while the submitters are running
+        do {
+            executor.doWorkFor(TimeUnit.MILLISECONDS.toNanos(1L));
+        } while (!done.await(0L, TimeUnit.MILLISECONDS));
+        executor.doAllWork();
+
+        //every task must have either been run exactly once or cancelled
+        synchronized (futures) {
+            assertEquals(threads * tasksPerThread, futures.size());
+            assertTrue(futures.stream().allMatch(CompletableFuture::isDone));
+            assertEquals(futures.stream().filter(future -> !future.isCancelled()).count(), ran.get());
+        }
+
+        executor.close();
+    }
+
+    /**
+     * @author DaPorkchop_
+     */
+    protected static class TestExecutor extends AbstractMarkedFutureExecutor {
+        public TestExecutor(@NonNull Thread thread, @NonNull LongSupplier clock) {
+            super(thread, clock);
+            this.start();
+        }
+
+        public boolean hasQueueFor(@NonNull Object marker) {
+            return this.queuesByMarker.containsKey(marker);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Adapted from The MIT License (MIT)
+ *
+ * Copyright (c) 2020-2022 DaPorkchop_
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * Any persons and/or organizations using this software must include the above copyright notice and this permission notice,
+ * provide sufficient credit to the original authors of the project (IE: DaPorkchop_), as well as provide a link to the original project.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package util.threading.scheduler;
+
+import com.google.common.collect.ImmutableSet;
+import lombok.Getter;
+import lombok.NonNull;
+import net.daporkchop.fp2.common.util.metrics.Counter;
+import net.daporkchop.fp2.common.util.metrics.Histogram;
+import net.daporkchop.fp2.common.util.metrics.MetricsRegistry;
+import net.daporkchop.fp2.common.util.metrics.MetricsSnapshot;
+import net.daporkchop.fp2.util.threading.futureexecutor.FutureExecutor;
+import net.daporkchop.fp2.util.threading.scheduler.SharedFutureScheduler;
+import net.daporkchop.fp2.util.threading.workergroup.WorkerGroupBuilder;
+import net.daporkchop.fp2.util.threading.workergroup.WorldWorkerGroup;
+import net.daporkchop.lib.unsafe.util.AbstractReleasable;
+import net.minecraft.world.World;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import util.FP2Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Drives a {@link SharedFutureScheduler} and checks the metrics it records.
+ *
+ * @author DaPorkchop_
+ */
+public class TestSchedulerMetrics {
+    @BeforeClass
+    public static void init() {
+        FP2Test.init();
+    }
+
+    private static WorkerGroupBuilder workers(int threads) {
+        return new WorkerGroupBuilder() {
+            @Override
+            public WorldWorkerGroup build(@NonNull Runnable task) {
+                return new TestWorkerGroup(IntStream.range(0, this.threads())
+                        .mapToObj(i -> this.threadFactory().newThread(task))
+                        .collect(Collectors.toSet()));
+            }
+        }.threads(threads);
+    }
+
+    @Test
+    public void testCompletedTasks() {
+        //time only advances while a task is running, and each task takes exactly 1ms
+        AtomicLong clock = new AtomicLong();
+        MetricsRegistry registry = new MetricsRegistry(clock::get);
+        SharedFutureScheduler<Integer, Integer> scheduler = new SharedFutureScheduler<>(s -> i -> {
+            clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1L));
+            return i * 2;
+        }, workers(1), registry.scope("test"));
+
+        //the metrics are removed from the registry when the scheduler is closed, so we need to keep references to them
+        Counter created = registry.counter("test.tasks.created");
+        Counter completed = registry.counter("test.tasks.completed");
+        Counter failed = registry.counter("test.tasks.failed");
+        Counter cancelled = registry.counter("test.tasks.cancelled");
+        Histogram duration = registry.histogram("test.tasks.duration");
+
+        try {
+            List<CompletableFuture<Integer>> futures = IntStream.range(0, 100).boxed().map(scheduler::schedule).collect(Collectors.toList());
+            for (int i = 0; i < 100; i++) {
+                assertEquals(i * 2, futures.get(i).join().intValue());
+            }
+        } finally {
+            //wait for the worker to exit, which guarantees that it's done recording metrics for every task
+            scheduler.close();
+        }
+
+        assertEquals(100L, created.count());
+        assertEquals(100L, completed.count());
+        assertEquals(0L, failed.count());
+        assertEquals(0L, cancelled.count());
+
+        Histogram.Snapshot durations = duration.snapshot();
+        assertEquals(100L, durations.count());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100L), durations.sum());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(1L), durations.max());
+
+        //closing the scheduler unregisters all of its metrics
+        MetricsSnapshot snapshot = registry.snapshot();
+        assertTrue(snapshot.counters().isEmpty());
+        assertTrue(snapshot.gauges().isEmpty());
+        assertTrue(snapshot.histograms().isEmpty());
+    }
+
+    @Test
+    public void testCancelledTasks() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        MetricsRegistry registry = new MetricsRegistry();
+        SharedFutureScheduler<Integer, Integer> scheduler = new SharedFutureScheduler<>(s -> i -> {
+            if (i == 0) { //block the only worker thread until we're ready
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            return i;
+        }, workers(1), registry.scope("test"));
+
+        Counter completed = registry.counter("test.tasks.completed");
+        Counter cancelled = registry.counter("test.tasks.cancelled");
+
+        try {
+            CompletableFuture<Integer> blocker = scheduler.schedule(0);
+            started.await();
+
+            CompletableFuture<Integer> a = scheduler.schedule(1);
+            CompletableFuture<Integer> b = scheduler.schedule(2);
+            CompletableFuture<Integer> c = scheduler.schedule(3);
+            assertSame(c, scheduler.schedule(3)); //retaining an existing task doesn't create a new one
+
+            MetricsSnapshot snapshot = registry.snapshot();
+            assertEquals(4L, snapshot.counters().get("test.tasks.created").longValue());
+            assertEquals(3L, snapshot.gauges().get("test.queue.size").longValue());
+            assertEquals(4L, snapshot.gauges().get("test.tasks.pending").longValue());
+
+            assertTrue(a.cancel(false));
+            assertTrue(b.cancel(false));
+            assertTrue(c.cancel(false)); //c is still referenced once, so it shouldn't be cancelled yet
+            assertFalse(c.isCancelled());
+            assertEquals(2L, registry.snapshot().counters().get("test.tasks.cancelled").longValue());
+
+            release.countDown();
+            assertEquals(0, blocker.join().intValue());
+            assertEquals(3, c.join().intValue());
+        } finally {
+            release.countDown();
+            scheduler.close();
+        }
+
+        //the cancelled tasks were skipped by the worker
+        assertEquals(2L, completed.count());
+        assertEquals(2L, cancelled.count());
+    }
+
+    /**
+     * A {@link WorldWorkerGroup} which isn't bound to a {@link World}.
+     *
+     * @author DaPorkchop_
+     */
+    @Getter
+    private static class TestWorkerGroup extends AbstractReleasable implements WorldWorkerGroup {
+        private final Set<Thread> threads;
+
+        public TestWorkerGroup(@NonNull Set<Thread> threads) {
+            this.threads = ImmutableSet.copyOf(threads);
+            this.threads.forEach(Thread::start);
+        }
+
+        @Override
+        public World world() {
+            return null;
+        }
+
+        @Override
+        public FutureExecutor worldExecutor() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        protected void doRelease() {
+            this.threads.forEach(thread -> {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+        }
+    }
+}